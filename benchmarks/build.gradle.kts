@@ -0,0 +1,83 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+repositories {
+    mavenCentral()
+    maven { url = uri("https://www.jitpack.io") }
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(11))
+    }
+}
+
+dependencies {
+    jmhImplementation(rootProject)
+    jmhImplementation("com.github.Tonic-Box:YABR:main-SNAPSHOT")
+    jmhImplementation("com.google.code.gson:gson:2.10.1")
+}
+
+// Generated jars, heap dumps and recordings are cached here and reused by every fork and every later run, so
+// results from different commits are measured against byte-identical inputs (see SyntheticInputs).
+val syntheticInputs = layout.buildDirectory.dir("synthetic-inputs")
+
+// Where jmhArchive keeps one result file per commit; override with -PjmhHistoryDir=... to keep it elsewhere.
+val historyDir = providers.gradleProperty("jmhHistoryDir")
+    .map { File(it) }
+    .orElse(layout.buildDirectory.dir("jmh-history").map { it.asFile })
+
+val resultsJson = layout.buildDirectory.file("results/jmh/results.json")
+
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(resultsJson)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    jvmArgsAppend.set(listOf(
+        "-Xmx6g",
+        "-Djava.awt.headless=true",
+        "-Djstudio.bench.inputs=" + syntheticInputs.get().asFile.absolutePath
+    ))
+    // ./gradlew :benchmarks:jmh -Pjmh.includes=Xref runs a subset
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.set(listOf(it)) }
+}
+
+val commitId = providers.exec {
+    commandLine("git", "rev-parse", "--short", "HEAD")
+    isIgnoreExitValue = true
+}.standardOutput.asText.map { it.trim().ifEmpty { "unknown" } }
+
+// Copies the latest results to <history>/<commit>.json so later runs can be compared against it.
+tasks.register<Copy>("jmhArchive") {
+    description = "Archives the latest JMH results under the current commit id"
+    group = "benchmark"
+    from(resultsJson)
+    into(historyDir)
+    rename { commitId.get() + ".json" }
+}
+
+// ./gradlew :benchmarks:jmhCompare -Pbaseline=<commit or file> [-Pcandidate=<commit or file>] [-Pthreshold=5]
+// Compares two result files benchmark by benchmark; the candidate defaults to the latest run.
+tasks.register<JavaExec>("jmhCompare") {
+    description = "Compares two JMH result files and flags regressions"
+    group = "benchmark"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.tonic.bench.CompareResults")
+    // Regressions are reported either way; -PfailOnRegression also fails the build on them
+    isIgnoreExitValue = !providers.gradleProperty("failOnRegression").isPresent
+    val history = historyDir.get()
+    fun resolve(ref: String) = File(ref).takeIf { it.isFile } ?: File(history, "$ref.json")
+    doFirst {
+        val baseline = providers.gradleProperty("baseline").orNull
+            ?: throw GradleException("Pass -Pbaseline=<commit id or results file>")
+        val candidate = providers.gradleProperty("candidate").map { resolve(it) }
+            .getOrElse(resultsJson.get().asFile)
+        args(resolve(baseline).absolutePath, candidate.absolutePath,
+            providers.gradleProperty("threshold").getOrElse("5"))
+    }
+}
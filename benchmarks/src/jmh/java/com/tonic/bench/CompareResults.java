@@ -0,0 +1,120 @@
+package com.tonic.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files. A benchmark regresses when it got worse by more than the threshold percentage
+ * and by more than the two runs' error margins combined, so noise alone does not flag it. Exits with 1 when anything
+ * regressed.
+ *
+ * <p>Usage: {@code CompareResults <baseline.json> <candidate.json> [thresholdPercent]}
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    private static final class Result {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> candidate = read(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Candidate", "Change");
+        for (Map.Entry<String, Result> entry : candidate.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now.score, "new");
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100.0;
+            double worse = now.higherIsBetter() ? before.score - now.score : now.score - before.score;
+            boolean regressed = worse > 0
+                && Math.abs(change) > threshold
+                && worse > before.error + now.error;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), before.score, now.score, change,
+                now.unit, regressed ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!candidate.containsKey(key)) {
+                System.out.printf("%-70s %14.3f %14s %9s%n", key, baseline.get(key).score, "-", "removed");
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+        System.out.println("No regressions above " + threshold + "%");
+    }
+
+    private static Map<String, Result> read(String path) throws IOException {
+        JsonArray runs;
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            runs = JsonParser.parseReader(reader).getAsJsonArray();
+        }
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            JsonObject metric = run.getAsJsonObject("primaryMetric");
+            results.put(key(run), new Result(
+                run.get("mode").getAsString(),
+                metric.get("score").getAsDouble(),
+                metric.get("scoreError").getAsDouble(),
+                metric.get("scoreUnit").getAsString()));
+        }
+        return results;
+    }
+
+    // Benchmark name plus its parameters in a stable order, e.g. XrefBenchmark.ensureDatabase{classes=1000}
+    private static String key(JsonObject run) {
+        String name = run.get("benchmark").getAsString();
+        name = name.startsWith("com.tonic.bench.") ? name.substring("com.tonic.bench.".length()) : name;
+        if (!run.has("params")) {
+            return name;
+        }
+        Map<String, String> params = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+            params.put(param.getKey(), param.getValue().getAsString());
+        }
+        return name + params.toString().replace(", ", ",");
+    }
+}
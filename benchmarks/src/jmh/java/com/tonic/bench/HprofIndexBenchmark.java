@@ -0,0 +1,68 @@
+package com.tonic.bench;
+
+import com.tonic.ui.live.heap.HprofSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening and indexing a heap dump, then answering one instance-count query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HprofIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int instances;
+
+    private File dump;
+    private File copy;
+    private HprofSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dump = SyntheticInputs.heapDump(instances);
+    }
+
+    // The snapshot deletes its file on close, so every invocation gets its own link to the cached dump
+    @Setup(Level.Invocation)
+    public void link() throws IOException {
+        Path target = new File(dump.getParentFile(), dump.getName() + ".run").toPath();
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, dump.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(dump.toPath(), target);
+        }
+        copy = target.toFile();
+    }
+
+    @Benchmark
+    public int index() throws IOException {
+        snapshot = new HprofSnapshot(copy);
+        return snapshot.countOf("com/synth/heap/Leaf");
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        if (snapshot != null) {
+            snapshot.close();
+            snapshot = null;
+        }
+        Files.deleteIfExists(copy.toPath());
+    }
+}
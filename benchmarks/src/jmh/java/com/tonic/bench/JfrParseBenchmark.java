@@ -0,0 +1,36 @@
+package com.tonic.bench;
+
+import com.tonic.ui.live.recorder.jfr.JfrRecording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a JFR recording into the recorder's CPU, allocation, lock and exception views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JfrParseBenchmark {
+
+    private File recording;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        recording = SyntheticInputs.recording();
+    }
+
+    @Benchmark
+    public JfrRecording parse() throws IOException {
+        return JfrRecording.parse(recording);
+    }
+}
@@ -0,0 +1,47 @@
+package com.tonic.bench;
+
+import com.tonic.model.ProjectModel;
+import com.tonic.service.ProjectService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a jar: reading and parsing every class and building the project model and class pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProjectLoadBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int classes;
+
+    private File jar;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        jar = SyntheticInputs.jar(classes);
+    }
+
+    @Benchmark
+    public ProjectModel loadJar() throws IOException {
+        return ProjectService.getInstance().loadJar(jar, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        ProjectService.getInstance().closeProject();
+    }
+}
@@ -0,0 +1,84 @@
+package com.tonic.bench;
+
+import com.tonic.script.engine.ScriptAST;
+import com.tonic.script.engine.ScriptInterpreter;
+import com.tonic.script.engine.ScriptLexer;
+import com.tonic.script.engine.ScriptParser;
+import com.tonic.script.engine.ScriptValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiling and running scripts with a fresh interpreter, so compilation is included the way it is for a user
+ * pressing Run. Parsing happens once in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScriptInterpreterBenchmark {
+
+    private static final String LOOP =
+        "let sum = 0;\n" +
+        "for (let i = 0; i < 200000; i++) {\n" +
+        "    if (i % 3 == 0) { sum += i; } else { sum -= 1; }\n" +
+        "}\n" +
+        "sum;";
+
+    private static final String FUNCTIONS =
+        "let fib = (n) => n < 2 ? n : fib(n - 1) + fib(n - 2);\n" +
+        "let square = (x) => x * x;\n" +
+        "let total = 0;\n" +
+        "for (let i = 0; i < 2000; i++) { total += square(i % 17); }\n" +
+        "total + fib(20);";
+
+    private static final String STRINGS =
+        "let out = \"\";\n" +
+        "for (let i = 0; i < 5000; i++) {\n" +
+        "    let name = \"com/synth/p\" + (i % 50) + \"/C\" + i;\n" +
+        "    if (name.indexOf(\"/p1\") >= 0) { out = name.substring(0, 10).toUpperCase(); }\n" +
+        "}\n" +
+        "out.length;";
+
+    @Param({"loop", "functions", "strings"})
+    public String script;
+
+    private List<ScriptAST> program;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        String source;
+        switch (script) {
+            case "loop":
+                source = LOOP;
+                break;
+            case "functions":
+                source = FUNCTIONS;
+                break;
+            case "strings":
+                source = STRINGS;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown script: " + script);
+        }
+        ScriptParser parser = new ScriptParser(new ScriptLexer(source).tokenize());
+        program = parser.parse();
+        if (!parser.getErrors().isEmpty()) {
+            throw new IllegalStateException("Benchmark script does not parse: " + parser.getErrors());
+        }
+    }
+
+    @Benchmark
+    public ScriptValue execute() {
+        return new ScriptInterpreter().execute(program);
+    }
+}
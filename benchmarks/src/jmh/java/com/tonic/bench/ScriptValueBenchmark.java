@@ -0,0 +1,97 @@
+package com.tonic.bench;
+
+import com.tonic.script.engine.ScriptValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Script number arithmetic, next to a boxed reference that stores numbers the way {@link ScriptValue} used to. Run
+ * with {@code -prof gc} to see allocation per operation; small-int arithmetic should allocate nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScriptValueBenchmark {
+
+    private static final int OPS = 100_000;
+
+    /** The previous representation: a type tag plus a boxed Double. */
+    private static final class Boxed {
+        final Object value;
+
+        Boxed(double value) {
+            this.value = value;
+        }
+
+        static Boxed add(Boxed left, Boxed right) {
+            return new Boxed((Double) left.value + (Double) right.value);
+        }
+
+        static int compare(Boxed left, Boxed right) {
+            return Double.compare((Double) left.value, (Double) right.value);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public long boxedSmallInt() {
+        Boxed sum = new Boxed(0);
+        Boxed one = new Boxed(1);
+        Boxed limit = new Boxed(1000);
+        long hits = 0;
+        for (int i = 0; i < OPS; i++) {
+            sum = Boxed.add(sum, one);
+            if (Boxed.compare(sum, limit) >= 0) {
+                sum = new Boxed(0);
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public long smallInt() {
+        ScriptValue sum = ScriptValue.number(0);
+        ScriptValue one = ScriptValue.number(1);
+        ScriptValue limit = ScriptValue.number(1000);
+        long hits = 0;
+        for (int i = 0; i < OPS; i++) {
+            sum = ScriptValue.add(sum, one);
+            if (ScriptValue.compare(sum, limit) >= 0) {
+                sum = ScriptValue.number(0);
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public double boxedDouble() {
+        Boxed sum = new Boxed(0.5);
+        Boxed step = new Boxed(0.25);
+        for (int i = 0; i < OPS; i++) {
+            sum = Boxed.add(sum, step);
+        }
+        return (Double) sum.value;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public double doubleArithmetic() {
+        ScriptValue sum = ScriptValue.number(0.5);
+        ScriptValue step = ScriptValue.number(0.25);
+        for (int i = 0; i < OPS; i++) {
+            sum = ScriptValue.add(sum, step);
+        }
+        return sum.asNumber();
+    }
+}
@@ -0,0 +1,194 @@
+package com.tonic.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes small, valid class files for synthetic projects. Each class has a static counter field, a constructor, a
+ * {@code run(I)I} that calls {@code run} on a few other classes and loads a string constant, and some leaf methods.
+ * The code is straight-line, so no StackMapTable is needed at class version 52. The classes are meant to be analysed,
+ * not run: the generated calls recurse without end.
+ */
+final class SyntheticClassWriter {
+
+    private static final int ACC_PUBLIC = 0x0001, ACC_STATIC = 0x0008, ACC_SUPER = 0x0020;
+
+    private final Map<String, Integer> constants = new LinkedHashMap<>();
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private int nextIndex = 1;
+
+    private SyntheticClassWriter() {
+    }
+
+    /**
+     * The class file for {@code name} (internal form) whose {@code run} calls {@code callees} in order.
+     */
+    static byte[] write(String name, List<String> callees, int leafMethods) {
+        try {
+            return new SyntheticClassWriter().emit(name, callees, leafMethods);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] emit(String name, List<String> callees, int leafMethods) throws IOException {
+        int thisClass = classRef(name);
+        int superClass = classRef("java/lang/Object");
+        int code = utf8("Code");
+        int counter = fieldRef(name, "counter", "I");
+        int objectInit = methodRef("java/lang/Object", "<init>", "()V");
+        int label = string("synthetic:" + name);
+        List<Integer> calls = new ArrayList<>(callees.size());
+        for (String callee : callees) {
+            calls.add(methodRef(callee, "run", "(I)I"));
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        // field: public static int counter
+        out.writeShort(1);
+        out.writeShort(ACC_PUBLIC | ACC_STATIC);
+        out.writeShort(utf8("counter"));
+        out.writeShort(utf8("I"));
+        out.writeShort(0);
+
+        out.writeShort(2 + leafMethods);
+
+        // public <init>()V
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(0x2a); // aload_0
+        init.write(0xb7); // invokespecial
+        u2(init, objectInit);
+        init.write(0xb1); // return
+        method(out, ACC_PUBLIC, "<init>", "()V", code, 1, 1, init.toByteArray());
+
+        // public static int run(int)
+        ByteArrayOutputStream run = new ByteArrayOutputStream();
+        run.write(0x12); // ldc
+        run.write(label);
+        run.write(0x57); // pop
+        for (int call : calls) {
+            run.write(0x1a); // iload_0
+            run.write(0xb8); // invokestatic
+            u2(run, call);
+            run.write(0x57); // pop
+        }
+        run.write(0xb2); // getstatic
+        u2(run, counter);
+        run.write(0x1a); // iload_0
+        run.write(0x60); // iadd
+        run.write(0xac); // ireturn
+        method(out, ACC_PUBLIC | ACC_STATIC, "run", "(I)I", code, 2, 1, run.toByteArray());
+
+        // public static int leafN(int) { return arg * N; }
+        for (int i = 0; i < leafMethods; i++) {
+            byte[] leaf = {0x1a, 0x10, (byte) (i + 2), 0x68, (byte) 0xac}; // iload_0, bipush, imul, ireturn
+            method(out, ACC_PUBLIC | ACC_STATIC, "leaf" + i, "(I)I", code, 2, 1, leaf);
+        }
+
+        out.writeShort(0); // class attributes
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(pool.size() + body.size() + 32);
+        DataOutputStream fileOut = new DataOutputStream(file);
+        fileOut.writeInt(0xCAFEBABE);
+        fileOut.writeShort(0);
+        fileOut.writeShort(52);
+        fileOut.writeShort(nextIndex);
+        pool.writeTo(file);
+        fileOut.writeShort(ACC_PUBLIC | ACC_SUPER);
+        fileOut.writeShort(thisClass);
+        fileOut.writeShort(superClass);
+        fileOut.writeShort(0); // interfaces
+        body.writeTo(file);
+        return file.toByteArray();
+    }
+
+    private void method(DataOutputStream out, int access, String name, String desc, int codeName,
+                        int maxStack, int maxLocals, byte[] bytecode) throws IOException {
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(desc));
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // code attributes
+    }
+
+    private static void u2(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private int utf8(String value) throws IOException {
+        Integer index = constants.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        poolOut.writeByte(1);
+        poolOut.writeUTF(value);
+        return add("U" + value);
+    }
+
+    private int classRef(String name) throws IOException {
+        int nameIndex = utf8(name);
+        return ref("C" + name, 7, nameIndex, -1);
+    }
+
+    private int string(String value) throws IOException {
+        int valueIndex = utf8(value);
+        int index = ref("S" + value, 8, valueIndex, -1);
+        if (index > 0xff) {
+            throw new IllegalStateException("ldc constant out of range: " + index);
+        }
+        return index;
+    }
+
+    private int nameAndType(String name, String desc) throws IOException {
+        int nameIndex = utf8(name);
+        int descIndex = utf8(desc);
+        return ref("N" + name + ":" + desc, 12, nameIndex, descIndex);
+    }
+
+    private int fieldRef(String owner, String name, String desc) throws IOException {
+        int ownerIndex = classRef(owner);
+        int nat = nameAndType(name, desc);
+        return ref("F" + owner + "." + name + ":" + desc, 9, ownerIndex, nat);
+    }
+
+    private int methodRef(String owner, String name, String desc) throws IOException {
+        int ownerIndex = classRef(owner);
+        int nat = nameAndType(name, desc);
+        return ref("M" + owner + "." + name + ":" + desc, 10, ownerIndex, nat);
+    }
+
+    private int ref(String key, int tag, int first, int second) throws IOException {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        poolOut.writeByte(tag);
+        poolOut.writeShort(first);
+        if (second >= 0) {
+            poolOut.writeShort(second);
+        }
+        return add(key);
+    }
+
+    private int add(String key) {
+        int index = nextIndex++;
+        constants.put(key, index);
+        return index;
+    }
+}
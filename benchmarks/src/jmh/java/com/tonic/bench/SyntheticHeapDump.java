@@ -0,0 +1,201 @@
+package com.tonic.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes HPROF 1.0.2 heap dumps of a synthetic object graph: linked {@code Node}/{@code Leaf} instances with int,
+ * double and reference fields, JDK 9+ style strings backed by {@code byte[]}, and object arrays holding them. Object
+ * ids are 8 bytes and the timestamp is fixed, so the same arguments always produce the same bytes.
+ */
+final class SyntheticHeapDump {
+
+    private static final int T_OBJECT = 2, T_BYTE = 8, T_INT = 10, T_LONG = 11, T_DOUBLE = 7;
+    private static final int SEGMENT_LIMIT = 1 << 20;
+    private static final int ARRAY_LENGTH = 64;
+
+    // Fixed ids: strings from 1, classes from 0x1000, objects from 0x100000
+    private static final long OBJECT_CLASS = 0x1000, STRING_CLASS = 0x1001, NODE_CLASS = 0x1002,
+            LEAF_CLASS = 0x1003, ARRAY_CLASS = 0x1004, BYTE_ARRAY_CLASS = 0x1005;
+    private static final long FIRST_OBJECT = 0x100000;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream segment = new ByteArrayOutputStream(SEGMENT_LIMIT + 4096);
+    private final DataOutputStream seg = new DataOutputStream(segment);
+    private long nextString = 1;
+
+    private SyntheticHeapDump(DataOutputStream out) {
+        this.out = out;
+    }
+
+    static void write(Path path, int instances, long seed) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            new SyntheticHeapDump(out).dump(instances, new Random(seed ^ instances));
+        }
+    }
+
+    private void dump(int instances, Random random) throws IOException {
+        out.write("JAVA PROFILE 1.0.2".getBytes(StandardCharsets.US_ASCII));
+        out.writeByte(0);
+        out.writeInt(8);
+        out.writeLong(0);
+
+        loadClass(1, OBJECT_CLASS, "java/lang/Object");
+        loadClass(2, STRING_CLASS, "java/lang/String");
+        loadClass(3, NODE_CLASS, "com/synth/heap/Node");
+        loadClass(4, LEAF_CLASS, "com/synth/heap/Leaf");
+        loadClass(5, ARRAY_CLASS, "[Lcom/synth/heap/Node;");
+        loadClass(6, BYTE_ARRAY_CLASS, "[B");
+
+        classDump(OBJECT_CLASS, 0, new String[0], new int[0]);
+        classDump(STRING_CLASS, OBJECT_CLASS, new String[]{"value", "coder", "hash"},
+            new int[]{T_OBJECT, T_BYTE, T_INT});
+        classDump(NODE_CLASS, OBJECT_CLASS, new String[]{"next", "label", "value", "weight"},
+            new int[]{T_OBJECT, T_OBJECT, T_INT, T_DOUBLE});
+        classDump(LEAF_CLASS, NODE_CLASS, new String[]{"id"}, new int[]{T_LONG});
+        classDump(ARRAY_CLASS, OBJECT_CLASS, new String[0], new int[0]);
+        classDump(BYTE_ARRAY_CLASS, OBJECT_CLASS, new String[0], new int[0]);
+
+        // Ids: node i at FIRST_OBJECT + 4i, its label string +1 and the string's byte[] +2; arrays after all nodes
+        for (int i = 0; i < instances; i++) {
+            long node = FIRST_OBJECT + 4L * i;
+            long next = FIRST_OBJECT + 4L * random.nextInt(instances);
+            boolean labelled = i % 8 == 0;
+            boolean leaf = i % 3 == 0;
+
+            ByteArrayOutputStream fields = new ByteArrayOutputStream(40);
+            DataOutputStream f = new DataOutputStream(fields);
+            if (leaf) {
+                f.writeLong(i);
+            }
+            f.writeLong(next);
+            f.writeLong(labelled ? node + 1 : 0);
+            f.writeInt(random.nextInt());
+            f.writeDouble(random.nextDouble());
+            instance(node, leaf ? LEAF_CLASS : NODE_CLASS, fields.toByteArray());
+
+            if (labelled) {
+                byte[] text = ("node-" + i).getBytes(StandardCharsets.ISO_8859_1);
+                ByteArrayOutputStream stringFields = new ByteArrayOutputStream(13);
+                DataOutputStream s = new DataOutputStream(stringFields);
+                s.writeLong(node + 2);
+                s.writeByte(0);
+                s.writeInt(0);
+                instance(node + 1, STRING_CLASS, stringFields.toByteArray());
+                byteArray(node + 2, text);
+            }
+        }
+        long arrays = FIRST_OBJECT + 4L * instances;
+        for (int a = 0; a * ARRAY_LENGTH < instances; a++) {
+            seg.writeByte(0x22); // OBJECT_ARRAY_DUMP
+            seg.writeLong(arrays + a);
+            seg.writeInt(0);
+            int length = Math.min(ARRAY_LENGTH, instances - a * ARRAY_LENGTH);
+            seg.writeInt(length);
+            seg.writeLong(ARRAY_CLASS);
+            for (int e = 0; e < length; e++) {
+                seg.writeLong(FIRST_OBJECT + 4L * (a * ARRAY_LENGTH + e));
+            }
+            seg.writeByte(0xFF); // ROOT_UNKNOWN
+            seg.writeLong(arrays + a);
+            flushIfFull();
+        }
+        flushSegment();
+
+        record(0x2C, new byte[0]); // HEAP_DUMP_END
+    }
+
+    private long string(String value) throws IOException {
+        long id = nextString++;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(8 + bytes.length);
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeLong(id);
+        b.write(bytes);
+        record(0x01, body.toByteArray());
+        return id;
+    }
+
+    private void loadClass(int serial, long classId, String name) throws IOException {
+        long nameId = string(name);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(24);
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeInt(serial);
+        b.writeLong(classId);
+        b.writeInt(0);
+        b.writeLong(nameId);
+        record(0x02, body.toByteArray());
+    }
+
+    private void classDump(long classId, long superId, String[] fieldNames, int[] fieldTypes) throws IOException {
+        long[] nameIds = new long[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            nameIds[i] = string(fieldNames[i]);
+        }
+        seg.writeByte(0x20);
+        seg.writeLong(classId);
+        seg.writeInt(0);
+        seg.writeLong(superId);
+        for (int i = 0; i < 5; i++) {
+            seg.writeLong(0); // loader, signers, protection domain, reserved x2
+        }
+        seg.writeInt(0); // instance size
+        seg.writeShort(0); // constant pool
+        seg.writeShort(0); // statics
+        seg.writeShort(fieldNames.length);
+        for (int i = 0; i < fieldNames.length; i++) {
+            seg.writeLong(nameIds[i]);
+            seg.writeByte(fieldTypes[i]);
+        }
+        flushIfFull();
+    }
+
+    private void instance(long objectId, long classId, byte[] fields) throws IOException {
+        seg.writeByte(0x21);
+        seg.writeLong(objectId);
+        seg.writeInt(0);
+        seg.writeLong(classId);
+        seg.writeInt(fields.length);
+        seg.write(fields);
+        flushIfFull();
+    }
+
+    private void byteArray(long objectId, byte[] data) throws IOException {
+        seg.writeByte(0x23);
+        seg.writeLong(objectId);
+        seg.writeInt(0);
+        seg.writeInt(data.length);
+        seg.writeByte(T_BYTE);
+        seg.write(data);
+        flushIfFull();
+    }
+
+    private void flushIfFull() throws IOException {
+        if (segment.size() >= SEGMENT_LIMIT) {
+            flushSegment();
+        }
+    }
+
+    private void flushSegment() throws IOException {
+        if (segment.size() > 0) {
+            out.writeByte(0x1C); // HEAP_DUMP_SEGMENT
+            out.writeInt(0);
+            out.writeInt(segment.size());
+            segment.writeTo(out);
+            segment.reset();
+        }
+    }
+
+    private void record(int tag, byte[] body) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(0);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tonic.bench;
+
+import com.tonic.model.ProjectModel;
+import com.tonic.service.ProjectService;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generated benchmark inputs, cached on disk under {@code -Djstudio.bench.inputs} so every fork and every later run
+ * reuses the same files. Generators are seeded, and file names carry {@link #VERSION}: bump it whenever a generator
+ * changes so results are never compared across different inputs.
+ */
+final class SyntheticInputs {
+
+    static final int VERSION = 1;
+    private static final long SEED = 0x6A5D_1E55L;
+
+    private static final int CLASSES_PER_PACKAGE = 100;
+    private static final int CALLS_PER_CLASS = 4;
+    private static final int LEAF_METHODS = 6;
+
+    private SyntheticInputs() {
+    }
+
+    /**
+     * A jar of {@code classes} generated classes spread over packages of {@value #CLASSES_PER_PACKAGE}, each calling
+     * a few others so xref and call-graph work has edges to follow.
+     */
+    static File jar(int classes) throws IOException {
+        return cached("classes-" + classes + ".jar", path -> writeJar(path, classes));
+    }
+
+    /**
+     * Loads {@link #jar} as the current project. Fails the trial when any class is missing, so a broken load path
+     * never shows up as a fast benchmark over an empty project.
+     */
+    static ProjectModel loadProject(int classes) throws IOException {
+        ProjectModel project = ProjectService.getInstance().loadJar(jar(classes), null);
+        if (project.getClassCount() != classes) {
+            throw new IllegalStateException("Loaded " + project.getClassCount() + " of " + classes + " classes");
+        }
+        return project;
+    }
+
+    /**
+     * A heap dump holding {@code instances} synthetic objects, in the HPROF format a JVM writes.
+     */
+    static File heapDump(int instances) throws IOException {
+        return cached("heap-" + instances + ".hprof", path -> SyntheticHeapDump.write(path, instances, SEED));
+    }
+
+    /**
+     * A JFR recording of a fixed synthetic workload. Execution samples depend on timing, but the workload, its
+     * custom events and their stacks are the same on every run.
+     */
+    static File recording() throws IOException {
+        return cached("workload.jfr", path -> SyntheticRecording.write(path, SEED));
+    }
+
+    static String className(int index) {
+        return "com/synth/p" + (index / CLASSES_PER_PACKAGE) + "/C" + index;
+    }
+
+    private interface Generator {
+        void generate(Path target) throws IOException;
+    }
+
+    private static File cached(String name, Generator generator) throws IOException {
+        Path dir = Paths.get(System.getProperty("jstudio.bench.inputs",
+            new File(System.getProperty("java.io.tmpdir"), "jstudio-bench").getPath()));
+        Path target = dir.resolve("v" + VERSION + "-" + name);
+        if (Files.isRegularFile(target)) {
+            return target.toFile();
+        }
+        Files.createDirectories(dir);
+        // Generate beside the target and move it into place, so a concurrent or interrupted run never sees half a file
+        Path partial = Files.createTempFile(dir, name, ".partial");
+        try {
+            generator.generate(partial);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return target.toFile();
+    }
+
+    private static void writeJar(Path path, int classes) throws IOException {
+        Random random = new Random(SEED ^ classes);
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+             JarOutputStream jar = new JarOutputStream(file)) {
+            for (int i = 0; i < classes; i++) {
+                List<String> callees = new ArrayList<>(CALLS_PER_CLASS);
+                for (int c = 0; c < CALLS_PER_CLASS; c++) {
+                    callees.add(className(random.nextInt(classes)));
+                }
+                String name = className(i);
+                JarEntry entry = new JarEntry(name + ".class");
+                entry.setTime(0);
+                jar.putNextEntry(entry);
+                jar.write(SyntheticClassWriter.write(name, callees, LEAF_METHODS));
+                jar.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tonic.bench;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Records a JFR file of a fixed synthetic workload: recursive CPU work, allocation, monitor contention and thrown
+ * exceptions on a few threads, plus a fixed number of custom events with stacks. The workload does the same amount of
+ * work every time rather than running for a wall-clock duration.
+ */
+final class SyntheticRecording {
+
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 4_000;
+    private static final Object[] LOCKS = {new Object(), new Object()};
+
+    @Name("com.tonic.bench.Synthetic")
+    @Label("Synthetic")
+    @StackTrace(true)
+    static final class SyntheticEvent extends Event {
+        @Label("Depth")
+        int depth;
+    }
+
+    private SyntheticRecording() {
+    }
+
+    static void write(Path path, long seed) throws IOException {
+        Configuration profile;
+        try {
+            profile = Configuration.getConfiguration("profile");
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+        try (Recording recording = new Recording(profile)) {
+            recording.enable(SyntheticEvent.class);
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(1));
+            recording.enable("jdk.JavaExceptionThrow");
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO);
+            recording.start();
+            runWorkload(seed);
+            recording.stop();
+            recording.dump(path);
+        }
+    }
+
+    private static void runWorkload(long seed) throws IOException {
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(seed + t);
+            Thread thread = new Thread(() -> {
+                long sink = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    sink += work(random.nextInt(12) + 4, random);
+                }
+                if (sink == 42) {
+                    System.out.println(sink);
+                }
+            }, "synthetic-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while recording", e);
+            }
+        }
+    }
+
+    private static long work(int depth, Random random) {
+        if (depth == 0) {
+            SyntheticEvent event = new SyntheticEvent();
+            event.depth = random.nextInt(100);
+            event.commit();
+            long[] chunk = new long[64 + random.nextInt(512)];
+            synchronized (LOCKS[random.nextInt(LOCKS.length)]) {
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = i * 31L + chunk.length;
+                }
+            }
+            if (random.nextInt(50) == 0) {
+                try {
+                    throw new IllegalStateException("synthetic");
+                } catch (IllegalStateException e) {
+                    return chunk.length;
+                }
+            }
+            return chunk[chunk.length - 1];
+        }
+        return work(depth - 1, random) + (depth % 2 == 0 ? spin(depth) : branch(depth - 1, random));
+    }
+
+    private static long spin(int n) {
+        long acc = n;
+        for (int i = 0; i < 2_000; i++) {
+            acc = acc * 6364136223846793005L + 1442695040888963407L;
+        }
+        return acc & 0xff;
+    }
+
+    private static long branch(int depth, Random random) {
+        return depth > 0 && random.nextBoolean() ? work(depth - 1, random) : spin(depth);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tonic.bench;
+
+import com.tonic.analysis.xref.XrefDatabase;
+import com.tonic.model.ProjectModel;
+import com.tonic.service.ProjectService;
+import com.tonic.service.XrefQueryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the cross-reference database from scratch ({@code XrefQueryService.ensureDatabase} on a project whose
+ * cached database was dropped).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class XrefBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int classes;
+
+    private ProjectModel project;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        project = SyntheticInputs.loadProject(classes);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        ProjectService.getInstance().closeProject();
+    }
+
+    @Benchmark
+    public XrefDatabase ensureDatabase() {
+        project.setXrefDatabase(null);
+        return XrefQueryService.ensureDatabase(project);
+    }
+}
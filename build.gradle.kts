@@ -22,6 +22,7 @@ publishing {
 
 application {
     mainClass.set("com.tonic.ui.JStudio")
+    applicationDefaultJvmArgs = listOf("--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED")
 }
 
 repositories {
@@ -107,6 +108,8 @@ tasks.jar {
     manifest {
         attributes["Main-Class"] = "com.tonic.ui.JStudio"
         attributes["Implementation-Version"] = project.version.toString()
+        // Lets the live scratch pad reuse javac contexts between snippets (SnippetCompiler.TaskPool)
+        attributes["Add-Exports"] = "jdk.compiler/com.sun.tools.javac.api"
     }
 }
 
@@ -117,6 +120,7 @@ tasks.shadowJar {
     manifest {
         attributes["Main-Class"] = "com.tonic.ui.JStudio"
         attributes["Implementation-Version"] = project.version.toString()
+        attributes["Add-Exports"] = "jdk.compiler/com.sun.tools.javac.api"
     }
 }
 
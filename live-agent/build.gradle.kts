@@ -15,6 +15,12 @@ repositories {
 dependencies {
     // Shares the wire-protocol constants with the client/native agent.
     implementation(project(":live-client"))
+    testImplementation(platform("org.junit:junit-bom:5.9.1"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 // The agent jar is loaded into a TARGET JVM via java.lang.instrument, so it must be self-contained
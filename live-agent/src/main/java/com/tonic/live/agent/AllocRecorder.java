@@ -0,0 +1,103 @@
+package com.tonic.live.agent;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The target-side half of allocation-site tracking. Tracked classes (rewritten by JStudio's
+ * {@code ProbeInstrumenter}) call {@link #alloc} right after each counted {@code new} or array creation. Counting
+ * every call would put an atomic increment on the hottest paths, so each thread only counts about one in
+ * {@code interval} calls: a per-thread countdown is reset to a random value averaging the interval, which keeps
+ * periodic allocation patterns from always (or never) landing on the sampled call. Reports scale hits back up by
+ * the interval.
+ *
+ * <p>Like {@link ProbeRecorder}, this is loaded from the bootstrap class path, so it must stay public and depend
+ * only on the JDK. The counter table exists only while tracking is enabled; a disabled {@link #alloc} is one
+ * volatile read.
+ */
+public final class AllocRecorder {
+
+    /** Site ids are pushed with {@code sipush}, so they stay below this. */
+    private static final int MAX_SITES = Short.MAX_VALUE + 1;
+
+    private static final ThreadLocal<int[]> COUNTDOWN = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** Sampled hits per site id since the last {@link #drain}; null while disabled. */
+    private static volatile AtomicLongArray counts;
+    private static volatile int interval = 1;
+
+    private AllocRecorder() {
+    }
+
+    public static void alloc(int site) {
+        AtomicLongArray table = counts;
+        if (table == null) {
+            return;
+        }
+        int[] countdown = COUNTDOWN.get();
+        if (--countdown[0] > 0) {
+            return;
+        }
+        int n = interval;
+        countdown[0] = n <= 1 ? 1 : 1 + ThreadLocalRandom.current().nextInt(2 * n - 1);
+        table.incrementAndGet(site);
+    }
+
+    /** Starts (or keeps) counting, sampling about one in {@code sampleInterval} allocations per thread. */
+    public static synchronized void enable(int sampleInterval) {
+        interval = Math.max(1, sampleInterval);
+        if (counts == null) {
+            counts = new AtomicLongArray(MAX_SITES);
+        }
+    }
+
+    /** Stops counting and drops the counts not yet drained. */
+    public static synchronized void disable() {
+        counts = null;
+    }
+
+    public static boolean isEnabled() {
+        return counts != null;
+    }
+
+    /**
+     * Writes the {@code EVT_ALLOC_SITES} body for the {@code topK} busiest sites and resets every count; the other
+     * sites are folded into one total. Hits racing with the reset land in this report or the next one.
+     */
+    public static void drain(DataOutputStream out, int topK) throws IOException {
+        AtomicLongArray table = counts;
+        int n = interval;
+        // hits << 15 | site, so sorting orders sites by hits
+        long[] packed = new long[64];
+        int used = 0;
+        if (table != null) {
+            for (int site = 0; site < MAX_SITES; site++) {
+                if (table.get(site) != 0) {
+                    long hits = table.getAndSet(site, 0);
+                    if (hits != 0) {
+                        if (used == packed.length) {
+                            packed = Arrays.copyOf(packed, used * 2);
+                        }
+                        packed[used++] = (hits << 15) | site;
+                    }
+                }
+            }
+        }
+        Arrays.sort(packed, 0, used);
+        int reported = Math.min(used, topK);
+        long other = 0;
+        for (int i = 0; i < used - reported; i++) {
+            other += packed[i] >>> 15;
+        }
+        out.writeInt(n);
+        out.writeLong(other * n);
+        out.writeInt(reported);
+        for (int i = used - 1; i >= used - reported; i--) {
+            out.writeInt((int) (packed[i] & 0x7FFF));
+            out.writeLong((packed[i] >>> 15) * n);
+        }
+    }
+}
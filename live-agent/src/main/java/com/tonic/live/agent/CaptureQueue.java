@@ -0,0 +1,233 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runtime class-load capture ({@link LiveProtocol#MSG_SET_CAPTURE_LOADS}) between the class-loading threads and
+ * the connection. {@link #offer} runs inside {@code ClassFileTransformer.transform}, so it only copies the bytes
+ * into a bounded ring and returns; one sender thread drains the ring and writes the frames, so a slow socket or a
+ * startup burst of thousands of classes never holds up the target's class loading.
+ *
+ * <p>The ring holds at most {@link #CAPACITY} classes and {@link #MAX_PENDING_BYTES} of class bytes. A class that
+ * would exceed the byte budget is <em>spilled</em>: queued by name only, for the client to fetch the bytes later.
+ * A class arriving at a full ring is <em>dropped</em> and counted in the next batch. The sender takes whatever has
+ * queued up since its last frame (up to {@link #MAX_BATCH_CLASSES} classes or {@link #MAX_BATCH_BYTES}) as one
+ * {@link LiveProtocol#EVT_CLASSES_LOADED}, or as single {@link LiveProtocol#EVT_CLASS_LOADED} frames for a client
+ * that did not ask for batches. Single events have no way to say "fetch the bytes yourself", so in that mode a
+ * spilled class is counted as lost along with the dropped ones, and losses are reported in an
+ * {@code EVT_CLASSES_LOADED} holding no classes, which a client that predates batches ignores. (Re-reading the
+ * bytes would cost a scan of all loaded classes and a retransform per spilled class.)
+ *
+ * <p>Every {@link #arm} and {@link #disarm} starts a new generation. A batch remembers the generation it was taken
+ * in, and its frames are dropped once that has changed, so a batch taken just before a disarm never reaches the
+ * client that arms capture next.
+ *
+ * <p>The monitor is taken on class-loading threads, so nothing under it may load a class or block.
+ */
+final class CaptureQueue {
+
+    static final int CAPACITY = 8192;
+    static final long MAX_PENDING_BYTES = 32L << 20;
+    private static final int MAX_BATCH_CLASSES = 512;
+    private static final int MAX_BATCH_BYTES = 1 << 20;
+
+    private final int capacity;
+    private final long maxPendingBytes;
+    private final String[] names;
+    private final byte[][] bytes;
+    private int head;
+    private int count;
+    private long pendingBytes;
+    private int dropped;
+
+    private volatile boolean armed;
+    private int generation;
+    private boolean batched;
+    private ProbeController.FrameSink sink;
+    private Thread sender;
+
+    CaptureQueue() {
+        this(CAPACITY, MAX_PENDING_BYTES);
+    }
+
+    CaptureQueue(int capacity, long maxPendingBytes) {
+        this.capacity = capacity;
+        this.maxPendingBytes = maxPendingBytes;
+        this.names = new String[capacity];
+        this.bytes = new byte[capacity][];
+    }
+
+    /** Starts capturing; {@code batch} chooses {@code EVT_CLASSES_LOADED} over single events. */
+    synchronized void arm(boolean batch, ProbeController.FrameSink frameSink) {
+        armed = true;
+        generation++;
+        batched = batch;
+        sink = frameSink;
+        if (sender == null) {
+            sender = new Thread(this::drainLoop, "jstudio-live-capture");
+            sender.setDaemon(true);
+            sender.start();
+        }
+    }
+
+    /** Stops capturing and forgets anything not sent yet. */
+    synchronized void disarm() {
+        armed = false;
+        generation++;
+        clear();
+    }
+
+    boolean isArmed() {
+        return armed;
+    }
+
+    /** Queues a loaded class; never blocks. {@code classfile} is copied, as the transformer must not keep it. */
+    void offer(String className, byte[] classfile) {
+        if (!armed) {
+            return;
+        }
+        byte[] copy = classfile.clone();
+        synchronized (this) {
+            if (!armed) {
+                return;
+            }
+            if (count == capacity) {
+                dropped++;
+                return;
+            }
+            int slot = (head + count++) % capacity;
+            names[slot] = className;
+            if (pendingBytes + copy.length <= maxPendingBytes) {
+                bytes[slot] = copy;
+                pendingBytes += copy.length;
+            }
+            if (count == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            String[] batchNames;
+            byte[][] batchBytes;
+            int lost;
+            boolean asBatch;
+            ProbeController.FrameSink out;
+            int taken;
+            synchronized (this) {
+                while (count == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                int n = 0;
+                long size = 0;
+                while (n < count && n < MAX_BATCH_CLASSES && (n == 0 || size < MAX_BATCH_BYTES)) {
+                    byte[] b = bytes[(head + n) % capacity];
+                    size += b != null ? b.length : 0;
+                    n++;
+                }
+                batchNames = new String[n];
+                batchBytes = new byte[n][];
+                for (int i = 0; i < n; i++) {
+                    int slot = (head + i) % capacity;
+                    batchNames[i] = names[slot];
+                    batchBytes[i] = bytes[slot];
+                    names[slot] = null;
+                    bytes[slot] = null;
+                }
+                head = (head + n) % capacity;
+                count -= n;
+                pendingBytes -= size;
+                lost = dropped;
+                dropped = 0;
+                asBatch = batched;
+                out = sink;
+                taken = generation;
+            }
+            try {
+                send(out, taken, asBatch, lost, batchNames, batchBytes);
+            } catch (IOException | RuntimeException e) {
+                // connection gone: the server loop disarms capture when it notices
+            }
+        }
+    }
+
+    private void send(ProbeController.FrameSink out, int taken, boolean asBatch, int lost, String[] batchNames,
+                      byte[][] batchBytes) throws IOException {
+        if (!asBatch) {
+            for (int i = 0; i < batchNames.length; i++) {
+                if (batchBytes[i] == null) {
+                    lost++;
+                } else if (isCurrent(taken)) {
+                    out.send(frame(batchNames, batchBytes, i, i + 1, -1));
+                } else {
+                    return;
+                }
+            }
+            if (lost > 0 && isCurrent(taken)) {
+                out.send(frame(batchNames, batchBytes, 0, 0, lost));
+            }
+            return;
+        }
+        if (isCurrent(taken)) {
+            out.send(frame(batchNames, batchBytes, 0, batchNames.length, lost));
+        }
+    }
+
+    /** Whether a batch taken in generation {@code taken} may still be sent. */
+    private synchronized boolean isCurrent(int taken) {
+        return armed && generation == taken;
+    }
+
+    /** One {@code EVT_CLASSES_LOADED}, or an {@code EVT_CLASS_LOADED} for the single class when {@code lost < 0}. */
+    private static byte[] frame(String[] batchNames, byte[][] batchBytes, int from, int to, int lost)
+            throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bo);
+        if (lost < 0) {
+            out.writeByte(LiveProtocol.EVT_CLASS_LOADED);
+        } else {
+            out.writeByte(LiveProtocol.EVT_CLASSES_LOADED);
+            out.writeInt(lost);
+            out.writeInt(to - from);
+        }
+        for (int i = from; i < to; i++) {
+            writeString(out, batchNames[i]);
+            byte[] b = batchBytes[i];
+            out.writeInt(b != null ? b.length : 0);
+            if (b != null) {
+                out.write(b);
+            }
+        }
+        out.flush();
+        return bo.toByteArray();
+    }
+
+    private void clear() {
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % capacity;
+            names[slot] = null;
+            bytes[slot] = null;
+        }
+        head = 0;
+        count = 0;
+        pendingBytes = 0;
+        dropped = 0;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(b.length, 0xFFFF);
+        out.writeShort(length);
+        out.write(b, 0, length);
+    }
+}
@@ -1,5 +1,6 @@
 package com.tonic.live.agent;
 
+import com.tonic.live.protocol.FrameCodec;
 import com.tonic.live.protocol.LiveProtocol;
 
 import java.io.ByteArrayOutputStream;
@@ -10,6 +11,9 @@ import java.io.IOException;
 import java.lang.instrument.ClassDefinition;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.management.ClassLoadingMXBean;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
@@ -52,13 +56,18 @@ public final class JavaAgent {
     private static volatile Instrumentation inst;
     private static volatile Socket client;
     private static final Object WRITE_LOCK = new Object();
+    /** The connection's compact-frame encoder once HELLO negotiated it; guarded by {@link #WRITE_LOCK}. */
+    private static FrameCodec.Encoder frameEncoder;
 
     private static volatile String captureTargetName;
     private static volatile byte[] capturedBytes;
-    private static volatile boolean captureLoadsArmed;
     private static final java.util.concurrent.atomic.AtomicInteger heapDumpCounter =
             new java.util.concurrent.atomic.AtomicInteger();
     private static final JfrController jfr = new JfrController();
+    private static final ProbeController probes = new ProbeController();
+    private static final StackSampler sampler = new StackSampler();
+    private static final MetricsStreamer metrics = new MetricsStreamer();
+    private static final CaptureQueue captures = new CaptureQueue();
 
     private JavaAgent() {
     }
@@ -143,7 +152,12 @@ public final class JavaAgent {
                     // peer closed
                 } finally {
                     client = null;
+                    captures.disarm();
+                    endCompactFrames();
                     jfr.discard();
+                    probes.reset(inst);
+                    sampler.stop(null);
+                    metrics.stop();
                 }
             }
         } catch (IOException e) {
@@ -178,7 +192,8 @@ public final class JavaAgent {
     private static byte[] dispatch(int type, DataInputStream in) throws IOException {
         switch (type) {
             case LiveProtocol.MSG_HELLO:
-                return handleHello();
+                handleHello(in);
+                return null;
             case LiveProtocol.MSG_LIST_CLASSES:
                 return handleListClasses();
             case LiveProtocol.MSG_GET_CLASS_BYTES:
@@ -188,7 +203,12 @@ public final class JavaAgent {
             case LiveProtocol.MSG_REDEFINE_CLASS:
                 return handleRedefine(in);
             case LiveProtocol.MSG_SET_CAPTURE_LOADS:
-                captureLoadsArmed = in.readUnsignedByte() != 0;
+                int captureFlags = in.readUnsignedByte();
+                if (captureFlags != 0) {
+                    captures.arm((captureFlags & LiveProtocol.CAPTURE_BATCHED) != 0, JavaAgent::sendFrame);
+                } else {
+                    captures.disarm();
+                }
                 return resp(LiveProtocol.MSG_SET_CAPTURE_LOADS, 1);
             case LiveProtocol.MSG_GET_CONTENTION:
                 return handleContention();
@@ -234,22 +254,74 @@ public final class JavaAgent {
                 return handleInstanceFields(in);
             case LiveProtocol.MSG_SET_INSTANCE_FIELD:
                 return handleSetInstanceField(in);
+            case LiveProtocol.MSG_PROBE_ENABLE:
+                return handleProbeEnable(in);
+            case LiveProtocol.MSG_PROBE_DISABLE:
+                probes.disable(in.readInt());
+                return resp(LiveProtocol.MSG_PROBE_DISABLE, 1);
+            case LiveProtocol.MSG_LOGPOINT_SET:
+                return handleLogpointSet(in);
+            case LiveProtocol.MSG_LOGPOINT_CLEAR:
+                probes.clearLogpoint(in.readInt());
+                return resp(LiveProtocol.MSG_LOGPOINT_CLEAR, 1);
+            case LiveProtocol.MSG_SAMPLER_START:
+                sampler.start(in.readInt(), in.readInt(), JavaAgent::sendFrame);
+                return resp(LiveProtocol.MSG_SAMPLER_START, 1);
+            case LiveProtocol.MSG_SAMPLER_STOP:
+                sampler.stop(JavaAgent::sendFrame);
+                return resp(LiveProtocol.MSG_SAMPLER_STOP, 1);
+            case LiveProtocol.MSG_METRICS_SUBSCRIBE:
+                metrics.start(in.readInt(), JavaAgent::sendFrame);
+                return resp(LiveProtocol.MSG_METRICS_SUBSCRIBE, 1);
+            case LiveProtocol.MSG_METRICS_UNSUBSCRIBE:
+                metrics.stop();
+                return resp(LiveProtocol.MSG_METRICS_UNSUBSCRIBE, 1);
+            case LiveProtocol.MSG_ALLOC_TRACK:
+                return handleAllocTrack(in);
+            case LiveProtocol.MSG_ALLOC_UNTRACK:
+                probes.untrackAllocations(readString(in));
+                return resp(LiveProtocol.MSG_ALLOC_UNTRACK, 1);
             default:
                 return error("operation not supported by the JStudio Live agent");
         }
     }
 
-    private static byte[] handleHello() throws IOException {
+    /**
+     * Replies to HELLO itself: the reply must go out plain, and when the client asked for compact frames the
+     * encoder is installed under the same lock, so every frame after it is encoded.
+     */
+    private static void handleHello(DataInputStream in) throws IOException {
+        int flags = in.available() > 0 ? in.readUnsignedByte() : 0;
         Buf b = new Buf();
         b.u8(LiveProtocol.MSG_HELLO);
         b.u32(0); // version marker (unused)
-        int caps = LiveProtocol.CAP_REDEFINE | LiveProtocol.CAP_RETRANSFORM | LiveProtocol.CAP_BYTECODES;
+        int caps = LiveProtocol.CAP_REDEFINE | LiveProtocol.CAP_RETRANSFORM | LiveProtocol.CAP_BYTECODES
+                | LiveProtocol.CAP_SAMPLING | LiveProtocol.CAP_METRICS_STREAM;
         if (JfrController.isAvailable()) {
             caps |= LiveProtocol.CAP_JFR;
         }
+        if (ProbeController.isAvailable() && inst.isRedefineClassesSupported()) {
+            caps |= LiveProtocol.CAP_PROBES | LiveProtocol.CAP_LOGPOINTS | LiveProtocol.CAP_ALLOC_SITES;
+        }
+        caps |= LiveProtocol.CAP_COMPACT_FRAMES;
         b.u32(caps);
         b.u32(inst.getAllLoadedClasses().length);
-        return b.toBytes();
+        synchronized (WRITE_LOCK) {
+            endCompactFrames();
+            sendFrame(b.toBytes());
+            if ((flags & LiveProtocol.HELLO_COMPACT_FRAMES) != 0) {
+                frameEncoder = new FrameCodec.Encoder();
+            }
+        }
+    }
+
+    private static void endCompactFrames() {
+        synchronized (WRITE_LOCK) {
+            if (frameEncoder != null) {
+                frameEncoder.close();
+                frameEncoder = null;
+            }
+        }
     }
 
     private static byte[] handleGetMetrics() throws IOException {
@@ -342,8 +414,23 @@ public final class JavaAgent {
         if (target == null) {
             return error("class not loaded: " + internalName);
         }
+        byte[] bytes;
+        try {
+            bytes = captureBytes(target, internalName);
+        } catch (IllegalStateException e) {
+            return error(e.getMessage());
+        }
+        Buf b = new Buf();
+        b.u8(LiveProtocol.MSG_GET_CLASS_BYTES);
+        b.u32(bytes.length);
+        b.raw(bytes);
+        return b.toBytes();
+    }
+
+    /** The class's current bytes, captured by retransforming it through {@link CaptureTransformer}. */
+    private static byte[] captureBytes(Class<?> target, String internalName) {
         if (!inst.isModifiableClass(target) || !inst.isRetransformClassesSupported()) {
-            return error("class not retransformable: " + internalName);
+            throw new IllegalStateException("class not retransformable: " + internalName);
         }
         synchronized (JavaAgent.class) {
             captureTargetName = internalName;
@@ -352,18 +439,14 @@ public final class JavaAgent {
                 inst.retransformClasses(target);
             } catch (Throwable t) {
                 captureTargetName = null;
-                return error("retransform failed: " + t.getMessage());
+                throw new IllegalStateException("retransform failed: " + t.getMessage());
             }
             byte[] bytes = capturedBytes;
             captureTargetName = null;
             if (bytes == null) {
-                return error("capture produced no bytes for " + internalName);
+                throw new IllegalStateException("capture produced no bytes for " + internalName);
             }
-            Buf b = new Buf();
-            b.u8(LiveProtocol.MSG_GET_CLASS_BYTES);
-            b.u32(bytes.length);
-            b.raw(bytes);
-            return b.toBytes();
+            return bytes;
         }
     }
 
@@ -489,16 +572,8 @@ public final class JavaAgent {
                 }
                 return null;
             }
-            if (captureLoadsArmed && loader != null && !isAgentClass(className)) {
-                try {
-                    Buf b = new Buf();
-                    b.u8(LiveProtocol.EVT_CLASS_LOADED);
-                    b.str(className);
-                    b.u32(classfileBuffer.length);
-                    b.raw(classfileBuffer);
-                    sendFrame(b.toBytes());
-                } catch (IOException ignored) {
-                }
+            if (captures.isArmed() && loader != null && !isAgentClass(className)) {
+                captures.offer(className, classfileBuffer);
             }
             return null;
         }
@@ -965,6 +1040,109 @@ public final class JavaAgent {
         }
     }
 
+    // ---- method timing probes ----------------------------------------------------------------------
+
+    private static byte[] handleProbeEnable(DataInputStream in) throws IOException {
+        int probeId = in.readInt();
+        String className = readString(in);
+        Class<?> target = findLoaded(className);
+        if (target == null) {
+            return error("class not loaded: " + className);
+        }
+        if (target.getClassLoader() == null) {
+            // The recorder itself runs on bootstrap classes; probing them would recurse into the probe
+            return error("bootstrap classes cannot be probed: " + className);
+        }
+        try {
+            byte[] original = probes.enable(inst, probeId, target, captureBytes(target, className),
+                    JavaAgent::sendFrame);
+            Buf b = new Buf();
+            b.u8(LiveProtocol.MSG_PROBE_ENABLE);
+            b.u32(original.length);
+            b.raw(original);
+            return b.toBytes();
+        } catch (Throwable t) {
+            return error("probe enable failed: " + describe(t));
+        }
+    }
+
+    private static byte[] handleAllocTrack(DataInputStream in) throws IOException {
+        String className = readString(in);
+        int sampleInterval = in.readInt();
+        Class<?> target = findLoaded(className);
+        if (target == null) {
+            return error("class not loaded: " + className);
+        }
+        if (target.getClassLoader() == null) {
+            // The recorder's own allocations would count themselves
+            return error("bootstrap classes cannot be tracked: " + className);
+        }
+        try {
+            byte[] original = probes.trackAllocations(inst, target, captureBytes(target, className),
+                    sampleInterval, JavaAgent::sendFrame);
+            Buf b = new Buf();
+            b.u8(LiveProtocol.MSG_ALLOC_TRACK);
+            b.u32(original.length);
+            b.raw(original);
+            return b.toBytes();
+        } catch (Throwable t) {
+            return error("allocation tracking failed: " + describe(t));
+        }
+    }
+
+    /**
+     * Defines a logpoint's snippet classes in a loader under the target class's own (so the snippet sees what
+     * the target sees) and hands its {@code run(Object, Object[])} to the recorder. The loader is kept for as
+     * long as the logpoint is installed.
+     */
+    private static byte[] handleLogpointSet(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String className = readString(in);
+        int flags = in.readUnsignedByte();
+        int classCount = in.readInt();
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            String name = readString(in);
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            classes.put(name, bytes);
+        }
+        String mainBinaryName = readString(in);
+        Class<?> target = findLoaded(className);
+        if (target == null) {
+            return error("class not loaded: " + className);
+        }
+        if (target.getClassLoader() == null) {
+            return error("bootstrap classes cannot carry logpoints: " + className);
+        }
+        try {
+            ScratchLoader loader = new ScratchLoader(target.getClassLoader());
+            Class<?> main = null;
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Class<?> defined = loader.define(entry.getKey(), entry.getValue());
+                if (entry.getKey().equals(mainBinaryName)) {
+                    main = defined;
+                }
+            }
+            if (main == null) {
+                return error("logpoint snippet class missing: " + mainBinaryName);
+            }
+            Method run = main.getDeclaredMethod("run", Object.class, Object[].class);
+            run.setAccessible(true);
+            MethodHandle snippet = MethodHandles.lookup().unreflect(run)
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+            byte[] original = probes.setLogpoint(inst, id, target, captureBytes(target, className), snippet, flags,
+                    JavaAgent::sendFrame);
+            Buf b = new Buf();
+            b.u8(LiveProtocol.MSG_LOGPOINT_SET);
+            b.u32(original.length);
+            b.raw(original);
+            return b.toBytes();
+        } catch (Throwable t) {
+            return error("logpoint setup failed: " + describe(t));
+        }
+    }
+
     // ---- JFR recorder -------------------------------------------------------------------------------
 
     private static byte[] handleJfrStart(DataInputStream in) throws IOException {
@@ -1045,7 +1223,7 @@ public final class JavaAgent {
         }
     }
 
-    private static Class<?> findLoaded(String internalName) {
+    static Class<?> findLoaded(String internalName) {
         String binary = internalName.replace('/', '.');
         for (Class<?> c : inst.getAllLoadedClasses()) {
             if (c.getName().equals(binary)) {
@@ -1061,9 +1239,10 @@ public final class JavaAgent {
             return;
         }
         synchronized (WRITE_LOCK) {
+            byte[] body = frameEncoder != null ? frameEncoder.encode(payload) : payload;
             DataOutputStream out = new DataOutputStream(s.getOutputStream());
-            out.writeInt(payload.length);
-            out.write(payload);
+            out.writeInt(body.length);
+            out.write(body);
             out.flush();
         }
     }
@@ -1101,7 +1280,7 @@ public final class JavaAgent {
         out.write(b);
     }
 
-    private static void log(String message) {
+    static void log(String message) {
         System.err.println("[jstudio-live-java] " + message);
     }
 
@@ -0,0 +1,191 @@
+package com.tonic.live.agent;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The target-side half of logpoints and conditional breakpoints. Rewritten methods (see JStudio's
+ * {@code ProbeInstrumenter.Hook}) call {@link #hit} at the logpoint's offset with the receiver and arguments; the
+ * logpoint's compiled snippet runs right there, in the hitting thread, and decides what happens:
+ * {@code null} or {@code false} means "no hit", {@code true} a hit with no message, anything else a hit whose
+ * message is the value's string form. Hits go into a bounded ring that {@link ProbeController} drains in batches;
+ * when the ring is full the oldest hits are overwritten and counted as dropped.
+ *
+ * <p>A logpoint set to suspend calls {@link #pause} on a hit. It does nothing by itself: JStudio's debugger puts
+ * its breakpoint there, so the thread only stops when the condition matched.
+ *
+ * <p>Like {@link ProbeRecorder} this class is loaded from the bootstrap class path and must depend only on the JDK.
+ */
+public final class LogpointRecorder {
+
+    /** Flag bit: stop the hitting thread in {@link #pause} after recording a hit. */
+    public static final int SUSPEND = 1;
+
+    private static final int RING_SIZE = 4096;
+    private static final int MAX_MESSAGE = 2000;
+
+    /** Set while a snippet runs, so code it calls cannot hit logpoints (and recurse) on the same thread. */
+    private static final ThreadLocal<boolean[]> EVALUATING = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    /** Logpoints indexed by id; replaced wholesale (never mutated) when logpoints come and go. */
+    private static volatile Logpoint[] slots = new Logpoint[0];
+
+    private static final Object RING_LOCK = new Object();
+    private static final int[] ringIds = new int[RING_SIZE];
+    private static final long[] ringTimes = new long[RING_SIZE];
+    private static final String[] ringThreads = new String[RING_SIZE];
+    private static final String[] ringMessages = new String[RING_SIZE];
+    private static int ringStart;
+    private static int ringCount;
+    private static int dropped;
+
+    private LogpointRecorder() {
+    }
+
+    public static void hit(int id, Object self, Object[] args) {
+        Logpoint[] table = slots;
+        if (id >= table.length || table[id] == null) {
+            return;
+        }
+        boolean[] evaluating = EVALUATING.get();
+        if (evaluating[0]) {
+            return;
+        }
+        Logpoint logpoint = table[id];
+        String message;
+        evaluating[0] = true;
+        try {
+            Object result = (Object) logpoint.snippet.invokeExact(self, args);
+            if (result == null || Boolean.FALSE.equals(result)) {
+                return;
+            }
+            message = Boolean.TRUE.equals(result) ? "" : String.valueOf(result);
+        } catch (Throwable t) {
+            message = "<snippet threw " + t + ">";
+        } finally {
+            evaluating[0] = false;
+        }
+        record(id, message);
+        if ((logpoint.flags & SUSPEND) != 0) {
+            pause(id);
+        }
+    }
+
+    /** The debugger's breakpoint target for suspending logpoints; see the class comment. */
+    public static void pause(int id) {
+    }
+
+    /** Installs (or replaces) logpoint {@code id}; {@code snippet} has type {@code (Object, Object[])Object}. */
+    public static synchronized void set(int id, MethodHandle snippet, int flags) {
+        Logpoint[] next = Arrays.copyOf(slots, Math.max(slots.length, id + 1));
+        next[id] = new Logpoint(snippet, flags);
+        slots = next;
+    }
+
+    public static synchronized void clear(int id) {
+        Logpoint[] table = slots;
+        if (id < table.length && table[id] != null) {
+            Logpoint[] next = table.clone();
+            next[id] = null;
+            slots = next;
+        }
+    }
+
+    public static synchronized void clearAll() {
+        slots = new Logpoint[0];
+        synchronized (RING_LOCK) {
+            Arrays.fill(ringThreads, null);
+            Arrays.fill(ringMessages, null);
+            ringStart = 0;
+            ringCount = 0;
+            dropped = 0;
+        }
+    }
+
+    /** Whether there are buffered hits or dropped-hit counts to report. */
+    public static boolean hasPending() {
+        synchronized (RING_LOCK) {
+            return ringCount > 0 || dropped > 0;
+        }
+    }
+
+    /** Writes the buffered hits in the {@code EVT_LOGPOINT_HITS} body layout and empties the ring. */
+    public static void drain(DataOutputStream out) throws IOException {
+        int count;
+        int lost;
+        int[] ids;
+        long[] times;
+        String[] threads;
+        String[] messages;
+        synchronized (RING_LOCK) {
+            count = ringCount;
+            lost = dropped;
+            ids = new int[count];
+            times = new long[count];
+            threads = new String[count];
+            messages = new String[count];
+            for (int i = 0; i < count; i++) {
+                int at = (ringStart + i) % RING_SIZE;
+                ids[i] = ringIds[at];
+                times[i] = ringTimes[at];
+                threads[i] = ringThreads[at];
+                messages[i] = ringMessages[at];
+                ringThreads[at] = null;
+                ringMessages[at] = null;
+            }
+            ringStart = 0;
+            ringCount = 0;
+            dropped = 0;
+        }
+        out.writeInt(lost);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(ids[i]);
+            out.writeLong(times[i]);
+            writeString(out, threads[i]);
+            writeString(out, messages[i]);
+        }
+    }
+
+    private static void record(int id, String message) {
+        if (message.length() > MAX_MESSAGE) {
+            message = message.substring(0, MAX_MESSAGE) + "...";
+        }
+        long now = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        synchronized (RING_LOCK) {
+            int at;
+            if (ringCount == RING_SIZE) {
+                at = ringStart;
+                ringStart = (ringStart + 1) % RING_SIZE;
+                dropped++;
+            } else {
+                at = (ringStart + ringCount++) % RING_SIZE;
+            }
+            ringIds[at] = id;
+            ringTimes[at] = now;
+            ringThreads[at] = thread;
+            ringMessages[at] = message;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(b.length, 0xFFFF);
+        out.writeShort(length);
+        out.write(b, 0, length);
+    }
+
+    private static final class Logpoint {
+        final MethodHandle snippet;
+        final int flags;
+
+        Logpoint(MethodHandle snippet, int flags) {
+            this.snippet = snippet;
+            this.flags = flags;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics subscription ({@link LiveProtocol#MSG_METRICS_SUBSCRIBE}): one thread reads the MXBeans at a fixed
+ * rate into a preallocated ring of {@link LiveProtocol#METRIC_FIELDS}-wide rows, another drains the ring once a
+ * second as {@link LiveProtocol#EVT_METRICS}. Sampling never waits on the connection, so a busy socket delays a
+ * batch instead of leaving a gap; if the ring fills first, the oldest rows are overwritten and counted as dropped.
+ *
+ * <p>A batch's first row is absolute and the rest are differences from the row before, written as zigzag varints,
+ * so the slowly-moving counters cost a byte or two per field.
+ */
+final class MetricsStreamer {
+
+    private static final long REPORT_INTERVAL_MS = 1000;
+    private static final int MIN_PERIOD_MS = 50;
+    /** Rows kept while the connection is busy (12.8 s at the fastest period). */
+    private static final int RING_SIZE = 256;
+
+    private final long[][] ring = new long[RING_SIZE][LiveProtocol.METRIC_FIELDS];
+    private final long[] previous = new long[LiveProtocol.METRIC_FIELDS];
+    private int head;
+    private int count;
+    private int dropped;
+
+    private final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final MemoryPoolMXBean metaspace = findPool("Metaspace");
+
+    private ScheduledExecutorService executor;
+
+    /** (Re)subscribes: samples every {@code periodMs} from now on and pushes batches through {@code sink}. */
+    synchronized void start(int periodMs, ProbeController.FrameSink sink) {
+        stop();
+        synchronized (ring) {
+            head = 0;
+            count = 0;
+            dropped = 0;
+        }
+        executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "jstudio-live-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::sample, 0, Math.max(MIN_PERIOD_MS, periodMs), TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(() -> report(sink), REPORT_INTERVAL_MS, REPORT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void sample() {
+        try {
+            synchronized (ring) {
+                int slot;
+                if (count == RING_SIZE) {
+                    slot = head;
+                    head = (head + 1) % RING_SIZE;
+                    dropped++;
+                } else {
+                    slot = (head + count++) % RING_SIZE;
+                }
+                read(ring[slot]);
+            }
+        } catch (Throwable t) {
+            JavaAgent.log("metrics sample error: " + t);
+        }
+    }
+
+    private void read(long[] row) {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage meta = metaspace != null ? metaspace.getUsage() : null;
+        row[LiveProtocol.METRIC_UPTIME_MS] = runtime.getUptime();
+        row[LiveProtocol.METRIC_HEAP_USED] = heap.getUsed();
+        row[LiveProtocol.METRIC_HEAP_COMMITTED] = heap.getCommitted();
+        row[LiveProtocol.METRIC_HEAP_MAX] = heap.getMax();
+        row[LiveProtocol.METRIC_NON_HEAP_USED] = memory.getNonHeapMemoryUsage().getUsed();
+        row[LiveProtocol.METRIC_METASPACE_USED] = meta != null ? meta.getUsed() : -1;
+        row[LiveProtocol.METRIC_METASPACE_COMMITTED] = meta != null ? meta.getCommitted() : -1;
+        long processCpu = -1;
+        long systemCpu = -1;
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean ext = (com.sun.management.OperatingSystemMXBean) os;
+            processCpu = cpuLoad(ext.getProcessCpuLoad());
+            systemCpu = cpuLoad(ext.getSystemCpuLoad());
+        }
+        row[LiveProtocol.METRIC_PROCESS_CPU] = processCpu;
+        row[LiveProtocol.METRIC_SYSTEM_CPU] = systemCpu;
+        row[LiveProtocol.METRIC_PROCESSORS] = os.getAvailableProcessors();
+        row[LiveProtocol.METRIC_THREADS] = threads.getThreadCount();
+        row[LiveProtocol.METRIC_DAEMON_THREADS] = threads.getDaemonThreadCount();
+        row[LiveProtocol.METRIC_PEAK_THREADS] = threads.getPeakThreadCount();
+        row[LiveProtocol.METRIC_LOADED_CLASSES] = classes.getLoadedClassCount();
+        row[LiveProtocol.METRIC_UNLOADED_CLASSES] = classes.getUnloadedClassCount();
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTime += Math.max(0, gc.getCollectionTime());
+        }
+        row[LiveProtocol.METRIC_GC_COUNT] = gcCount;
+        row[LiveProtocol.METRIC_GC_TIME_MS] = gcTime;
+    }
+
+    private void report(ProbeController.FrameSink sink) {
+        byte[] frame;
+        try {
+            synchronized (ring) {
+                if (count == 0) {
+                    return;
+                }
+                frame = encode();
+            }
+            sink.send(frame);
+        } catch (IOException ignored) {
+            // peer gone; the connection teardown stops the stream
+        }
+    }
+
+    /** Layout as documented on {@link LiveProtocol#EVT_METRICS}; empties the ring. */
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * LiveProtocol.METRIC_FIELDS * 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LiveProtocol.EVT_METRICS);
+        out.writeInt(dropped);
+        out.writeInt(LiveProtocol.METRIC_FIELDS);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            long[] row = ring[(head + i) % RING_SIZE];
+            for (int f = 0; f < LiveProtocol.METRIC_FIELDS; f++) {
+                writeVarLong(out, i == 0 ? row[f] : row[f] - previous[f]);
+                previous[f] = row[f];
+            }
+        }
+        out.flush();
+        head = 0;
+        count = 0;
+        dropped = 0;
+        return bytes.toByteArray();
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long cpuLoad(double load) {
+        return load < 0 ? -1 : Math.round(load * 10_000);
+    }
+
+    private static MemoryPoolMXBean findPool(String name) {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().contains(name)) {
+                return pool;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,270 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.ClassDefinition;
+import java.lang.invoke.MethodHandle;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Method timing probes, logpoints and allocation sites, agent side. JStudio does the bytecode rewriting and
+ * redefines the class itself; this keeps the bookkeeping around it: which probes, logpoints and allocation-tracked
+ * classes are enabled, each instrumented class's bytes from before its first instrumentation (so the class can be
+ * put back if JStudio goes away without removing it), a once-a-second stream of {@link ProbeRecorder} histograms
+ * and {@link AllocRecorder} counts while they are enabled, and batches of {@link LogpointRecorder} hits as they
+ * come in.
+ *
+ * <p>Instrumented code may live in any class loader, so the recorders are loaded from the bootstrap class path:
+ * on first use their class files are copied into a small jar appended to the boot search path. Only those classes
+ * go there - the rest of the agent stays in the system loader, where the module openings it relies on apply.
+ */
+final class ProbeController {
+
+    /**
+     * Logpoint hits are drained this often; probe histograms and allocation counts every
+     * {@link #PROBE_REPORT_TICKS} drains.
+     */
+    private static final long REPORT_INTERVAL_MS = 250;
+    private static final int PROBE_REPORT_TICKS = 4;
+    /** Busiest allocation sites reported by name each second; the rest are summed. */
+    private static final int ALLOC_TOP_SITES = 64;
+    private static final String[] BOOT_CLASSES = {
+        "com/tonic/live/agent/ProbeRecorder",
+        "com/tonic/live/agent/ProbeRecorder$Histogram",
+        "com/tonic/live/agent/LogpointRecorder",
+        "com/tonic/live/agent/LogpointRecorder$Logpoint",
+        "com/tonic/live/agent/AllocRecorder",
+        "com/tonic/live/protocol/LatencyBuckets",
+    };
+    /** Set once the boot jar is appended, so a second attach into the same JVM does not append it again. */
+    private static final String BOOTSTRAPPED_PROPERTY = "jstudio.live.probes.bootstrapped";
+
+    interface FrameSink {
+        void send(byte[] frame) throws IOException;
+    }
+
+    private final Map<Integer, String> probeClasses = new HashMap<>();
+    private final Map<Integer, String> logpointClasses = new HashMap<>();
+    private final Set<String> allocClasses = new HashSet<>();
+    private final Map<String, byte[]> originals = new HashMap<>();
+    private ScheduledExecutorService reporter;
+    private ScheduledFuture<?> reporting;
+    private int ticks;
+
+    /** Whether probes can work here: the recorder's class files must be readable to copy to the boot path. */
+    static boolean isAvailable() {
+        return JavaAgent.class.getResource("/" + BOOT_CLASSES[0] + ".class") != null;
+    }
+
+    /**
+     * Enables {@code probeId} on {@code target}, whose current bytes are {@code currentBytes}. Returns the class's
+     * bytes from before any probe - {@code currentBytes} itself for the first probe on the class.
+     */
+    synchronized byte[] enable(Instrumentation inst, int probeId, Class<?> target, byte[] currentBytes,
+                               FrameSink sink) throws IOException {
+        String className = prepare(inst, target);
+        byte[] original = originals.computeIfAbsent(className, k -> currentBytes);
+        probeClasses.put(probeId, className);
+        ProbeRecorder.enable(probeId);
+        startReporting(sink);
+        return original;
+    }
+
+    synchronized void disable(int probeId) {
+        String className = probeClasses.remove(probeId);
+        ProbeRecorder.disable(probeId);
+        release(className);
+    }
+
+    /**
+     * Installs logpoint {@code id} on {@code target} with its compiled {@code snippet}. Returns the class's bytes
+     * from before any probe or logpoint, like {@link #enable}.
+     */
+    synchronized byte[] setLogpoint(Instrumentation inst, int id, Class<?> target, byte[] currentBytes,
+                                    MethodHandle snippet, int flags, FrameSink sink) throws IOException {
+        String className = prepare(inst, target);
+        byte[] original = originals.computeIfAbsent(className, k -> currentBytes);
+        logpointClasses.put(id, className);
+        LogpointRecorder.set(id, snippet, flags);
+        startReporting(sink);
+        return original;
+    }
+
+    synchronized void clearLogpoint(int id) {
+        String className = logpointClasses.remove(id);
+        LogpointRecorder.clear(id);
+        release(className);
+    }
+
+    /**
+     * Starts counting allocations in {@code target}, sampling about one in {@code sampleInterval} per thread (the
+     * latest interval applies to every tracked class). Returns the class's bytes from before any instrumentation,
+     * like {@link #enable}.
+     */
+    synchronized byte[] trackAllocations(Instrumentation inst, Class<?> target, byte[] currentBytes,
+                                         int sampleInterval, FrameSink sink) throws IOException {
+        String className = prepare(inst, target);
+        byte[] original = originals.computeIfAbsent(className, k -> currentBytes);
+        allocClasses.add(className);
+        AllocRecorder.enable(sampleInterval);
+        startReporting(sink);
+        return original;
+    }
+
+    synchronized void untrackAllocations(String className) {
+        if (allocClasses.remove(className) && allocClasses.isEmpty()) {
+            AllocRecorder.disable();
+        }
+        release(className);
+    }
+
+    /** Puts the recorders on the boot path and lets {@code target}'s module read them; returns its internal name. */
+    private static String prepare(Instrumentation inst, Class<?> target) throws IOException {
+        bootstrap(inst);
+        Module recorderModule = ProbeRecorder.class.getModule();
+        Module targetModule = target.getModule();
+        if (targetModule.isNamed() && !targetModule.canRead(recorderModule) && inst.isModifiableModule(targetModule)) {
+            inst.redefineModule(targetModule, Collections.singleton(recorderModule), Collections.emptyMap(),
+                    Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap());
+        }
+        return target.getName().replace('.', '/');
+    }
+
+    private void release(String className) {
+        if (probeClasses.isEmpty() && logpointClasses.isEmpty() && allocClasses.isEmpty()) {
+            stopReporting();
+        }
+        if (className != null && !probeClasses.containsValue(className)
+                && !logpointClasses.containsValue(className) && !allocClasses.contains(className)) {
+            originals.remove(className);
+        }
+    }
+
+    /**
+     * Drops every probe and redefines any still-probed class back to its original bytes. Called when JStudio
+     * disconnects, since nobody is left to read the histograms or remove the probes.
+     */
+    synchronized void reset(Instrumentation inst) {
+        if (originals.isEmpty() && probeClasses.isEmpty() && logpointClasses.isEmpty() && allocClasses.isEmpty()) {
+            return;
+        }
+        stopReporting();
+        ProbeRecorder.disableAll();
+        LogpointRecorder.clearAll();
+        AllocRecorder.disable();
+        for (Map.Entry<String, byte[]> entry : originals.entrySet()) {
+            Class<?> target = JavaAgent.findLoaded(entry.getKey());
+            if (target == null) {
+                continue;
+            }
+            try {
+                inst.redefineClasses(new ClassDefinition(target, entry.getValue()));
+            } catch (Throwable t) {
+                JavaAgent.log("could not restore probed class " + entry.getKey() + ": " + t);
+            }
+        }
+        originals.clear();
+        probeClasses.clear();
+        logpointClasses.clear();
+        allocClasses.clear();
+    }
+
+    private void startReporting(FrameSink sink) {
+        if (reporting != null) {
+            return;
+        }
+        if (reporter == null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jstudio-live-probes");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        ticks = 0;
+        reporting = reporter.scheduleAtFixedRate(() -> report(sink),
+                REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopReporting() {
+        if (reporting != null) {
+            reporting.cancel(false);
+            reporting = null;
+        }
+    }
+
+    private void report(FrameSink sink) {
+        try {
+            if (LogpointRecorder.hasPending()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(LiveProtocol.EVT_LOGPOINT_HITS);
+                LogpointRecorder.drain(out);
+                out.flush();
+                sink.send(bytes.toByteArray());
+            }
+            if (++ticks % PROBE_REPORT_TICKS != 0) {
+                return;
+            }
+            if (ProbeRecorder.enabledCount() > 0) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(LiveProtocol.EVT_PROBE_STATS);
+                ProbeRecorder.drain(out);
+                out.flush();
+                sink.send(bytes.toByteArray());
+            }
+            if (AllocRecorder.isEnabled()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(LiveProtocol.EVT_ALLOC_SITES);
+                AllocRecorder.drain(out, ALLOC_TOP_SITES);
+                out.flush();
+                sink.send(bytes.toByteArray());
+            }
+        } catch (IOException ignored) {
+            // peer gone; the connection teardown resets the probes
+        }
+    }
+
+    private static void bootstrap(Instrumentation inst) throws IOException {
+        if (System.getProperty(BOOTSTRAPPED_PROPERTY) != null) {
+            return;
+        }
+        File jar = File.createTempFile("jstudio-probes", ".jar");
+        jar.deleteOnExit();
+        try (OutputStream file = Files.newOutputStream(jar.toPath());
+             JarOutputStream out = new JarOutputStream(file)) {
+            for (String name : BOOT_CLASSES) {
+                try (InputStream in = JavaAgent.class.getResourceAsStream("/" + name + ".class")) {
+                    if (in == null) {
+                        throw new IOException("agent class missing: " + name);
+                    }
+                    out.putNextEntry(new JarEntry(name + ".class"));
+                    in.transferTo(out);
+                    out.closeEntry();
+                }
+            }
+        }
+        inst.appendToBootstrapClassLoaderSearch(new JarFile(jar));
+        System.setProperty(BOOTSTRAPPED_PROPERTY, jar.getAbsolutePath());
+    }
+}
@@ -0,0 +1,151 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LatencyBuckets;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The target-side half of method timing probes. Probed methods (rewritten by JStudio's {@code ProbeInstrumenter})
+ * call {@link #enter} on entry and {@link #exit} on every way out; the elapsed time lands in that probe's
+ * histogram. Start times live on a per-thread stack rather than in a new local, so probed methods keep their
+ * frame layout.
+ *
+ * <p>This class is loaded from the bootstrap class path (see {@link ProbeController}) so code in any class loader
+ * can call it. It must therefore stay public, self-contained, and depend only on the JDK and
+ * {@link LatencyBuckets}. Recording is lock-free: histogram buckets are atomic counters, and the slot table is
+ * copy-on-write.
+ */
+public final class ProbeRecorder {
+
+    private static final ThreadLocal<long[]> STARTS = ThreadLocal.withInitial(() -> new long[16]);
+
+    /** Histograms indexed by probe id; replaced wholesale (never mutated) when probes come and go. */
+    private static volatile Histogram[] slots = new Histogram[0];
+
+    private ProbeRecorder() {
+    }
+
+    public static void enter(int probeId) {
+        long[] stack = STARTS.get();
+        int depth = (int) stack[0] + 1;
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+            STARTS.set(stack);
+        }
+        stack[0] = depth;
+        stack[depth] = System.nanoTime();
+    }
+
+    public static void exit(int probeId) {
+        long now = System.nanoTime();
+        long[] stack = STARTS.get();
+        int depth = (int) stack[0];
+        if (depth == 0) {
+            return;
+        }
+        stack[0] = depth - 1;
+        Histogram[] table = slots;
+        if (probeId < table.length) {
+            Histogram histogram = table[probeId];
+            if (histogram != null) {
+                histogram.record(now - stack[depth]);
+            }
+        }
+    }
+
+    public static synchronized void enable(int probeId) {
+        Histogram[] table = slots;
+        if (probeId < table.length && table[probeId] != null) {
+            return;
+        }
+        Histogram[] next = Arrays.copyOf(table, Math.max(table.length, probeId + 1));
+        next[probeId] = new Histogram();
+        slots = next;
+    }
+
+    public static synchronized void disable(int probeId) {
+        Histogram[] table = slots;
+        if (probeId < table.length && table[probeId] != null) {
+            Histogram[] next = table.clone();
+            next[probeId] = null;
+            slots = next;
+        }
+    }
+
+    public static synchronized void disableAll() {
+        slots = new Histogram[0];
+    }
+
+    /** Number of enabled probes. */
+    public static int enabledCount() {
+        return enabledCount(slots);
+    }
+
+    /**
+     * Writes every enabled probe's histogram in the {@code EVT_PROBE_STATS} body layout and resets it. Calls racing
+     * with the reset land in this report or the next one, never in neither.
+     */
+    public static void drain(DataOutputStream out) throws IOException {
+        Histogram[] table = slots;
+        out.writeInt(enabledCount(table));
+        int[] buckets = new int[LatencyBuckets.COUNT];
+        long[] counts = new long[LatencyBuckets.COUNT];
+        for (int id = 0; id < table.length; id++) {
+            Histogram histogram = table[id];
+            if (histogram == null) {
+                continue;
+            }
+            int used = 0;
+            long calls = 0;
+            for (int b = 0; b < LatencyBuckets.COUNT; b++) {
+                if (histogram.buckets.get(b) != 0) {
+                    long n = histogram.buckets.getAndSet(b, 0);
+                    if (n != 0) {
+                        buckets[used] = b;
+                        counts[used++] = n;
+                        calls += n;
+                    }
+                }
+            }
+            out.writeInt(id);
+            out.writeLong(calls);
+            out.writeLong(histogram.totalNanos.getAndSet(0));
+            out.writeLong(histogram.maxNanos.getAndSet(0));
+            out.writeInt(used);
+            for (int i = 0; i < used; i++) {
+                out.writeShort(buckets[i]);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    private static int enabledCount(Histogram[] table) {
+        int count = 0;
+        for (Histogram histogram : table) {
+            if (histogram != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** One probe's latency distribution since the last {@link #drain}. */
+    private static final class Histogram {
+        final AtomicLongArray buckets = new AtomicLongArray(LatencyBuckets.COUNT);
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(LatencyBuckets.index(nanos));
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+                // lost a race with another thread's maximum; re-read and retry
+            }
+        }
+    }
+}
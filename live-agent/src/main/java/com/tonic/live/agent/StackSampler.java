@@ -0,0 +1,310 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A CPU sampling profiler that works without JFR. A daemon thread takes the stacks of all runnable threads from
+ * {@link ThreadMXBean} at a fixed interval and folds them into a call-path trie kept in primitive arrays: each
+ * distinct frame ({@link StackTraceElement}) is interned to an int id, and each trie node is a (parent, frame)
+ * pair with a self-sample count. Threads stopped in a native method are skipped, since the JVM reports them as
+ * runnable while they block on I/O or wait for references. Once a second only what changed is sent as {@link LiveProtocol#EVT_SAMPLES}: the
+ * frames and nodes created since the last report and the per-node count increments.
+ *
+ * <p>A stack cut at the requested depth is missing its outermost frames, so its innermost frames would otherwise
+ * pose as a thread's entry point. Such stacks hang under a synthetic {@link #TRUNCATED} frame (class
+ * {@code [truncated]}, empty method) below the root instead.
+ *
+ * <p>Memory is bounded: past {@link #MAX_FRAMES} frames or {@link #MAX_NODES} nodes, deeper frames are not added
+ * and their samples are attributed to the deepest node that already exists. Threads of the agent itself are not
+ * sampled.
+ */
+final class StackSampler {
+
+    private static final long REPORT_INTERVAL_MS = 1000;
+    private static final int MAX_FRAMES = 1 << 16;
+    private static final int MAX_NODES = 1 << 18;
+    private static final String AGENT_THREAD_PREFIX = "jstudio-live";
+    static final StackTraceElement TRUNCATED = new StackTraceElement("[truncated]", "", null, -1);
+
+    private final Object lock = new Object();
+    private Thread thread;
+    private volatile boolean running;
+
+    private final Map<StackTraceElement, Integer> frameIds = new HashMap<>();
+    private StackTraceElement[] frames = new StackTraceElement[256];
+    private int frameCount;
+    private int framesSent;
+
+    private int[] nodeParent = new int[1024];
+    private int[] nodeFrame = new int[1024];
+    /** Self samples per node since the last report. */
+    private int[] nodePending = new int[1024];
+    private int nodeCount = 1;
+    private int nodesSent = 1;
+    /** Nodes with a non-zero {@link #nodePending}, so a report does not scan the whole trie. */
+    private int[] dirty = new int[256];
+    private int dirtyCount;
+    private int samplesPending;
+
+    /** Child lookup: open addressing over {@code parent << 32 | frame} keys; {@code -1} marks an empty slot. */
+    private long[] childKeys = newKeyTable(2048);
+    private int[] childNodes = new int[2048];
+
+    /**
+     * (Re)starts sampling every {@code intervalMs} with stacks cut at {@code maxDepth} frames. Starting discards
+     * any previous profile, so ids in the reports that follow start from scratch.
+     */
+    void start(int intervalMs, int maxDepth, ProbeController.FrameSink sink) {
+        stop(null);
+        synchronized (lock) {
+            reset();
+        }
+        long interval = Math.max(1, intervalMs);
+        int depth = maxDepth <= 0 ? 128 : maxDepth;
+        running = true;
+        Thread t = new Thread(() -> run(interval, depth, sink), AGENT_THREAD_PREFIX + "-sampler");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    /** Stops sampling; with a {@code sink}, the samples not yet reported are sent first. */
+    void stop(ProbeController.FrameSink sink) {
+        Thread t = thread;
+        running = false;
+        thread = null;
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (sink != null) {
+            report(sink);
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    private void run(long intervalMs, int maxDepth, ProbeController.FrameSink sink) {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long nextReport = System.currentTimeMillis() + REPORT_INTERVAL_MS;
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                sample(mx.getThreadInfo(mx.getAllThreadIds(), maxDepth), maxDepth);
+            } catch (Throwable t) {
+                JavaAgent.log("sampler error: " + t);
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextReport) {
+                nextReport = now + REPORT_INTERVAL_MS;
+                if (!report(sink)) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    void sample(ThreadInfo[] infos, int maxDepth) {
+        synchronized (lock) {
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadState() != Thread.State.RUNNABLE
+                        || info.getThreadName().startsWith(AGENT_THREAD_PREFIX)) {
+                    continue;
+                }
+                StackTraceElement[] stack = info.getStackTrace();
+                if (stack.length == 0 || stack[0].isNativeMethod()) {
+                    continue;
+                }
+                int node = stack.length < maxDepth ? 0 : child(0, TRUNCATED);
+                if (node < 0) {
+                    // Tables full: count a cut stack at the root rather than place it as if it were complete
+                    node = 0;
+                } else {
+                    for (int i = stack.length - 1; i >= 0; i--) {
+                        int child = child(node, stack[i]);
+                        if (child < 0) {
+                            break;
+                        }
+                        node = child;
+                    }
+                }
+                if (nodePending[node]++ == 0) {
+                    if (dirtyCount == dirty.length) {
+                        dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+                    }
+                    dirty[dirtyCount++] = node;
+                }
+                samplesPending++;
+            }
+        }
+    }
+
+    /** The child of {@code parent} for {@code element}, created if needed; -1 once the tables are full. */
+    private int child(int parent, StackTraceElement element) {
+        Integer id = frameIds.get(element);
+        if (id == null) {
+            if (frameCount == MAX_FRAMES) {
+                return -1;
+            }
+            id = frameCount;
+            if (frameCount == frames.length) {
+                frames = Arrays.copyOf(frames, frameCount * 2);
+            }
+            frames[frameCount++] = element;
+            frameIds.put(element, id);
+        }
+        long key = ((long) parent << 32) | id;
+        int mask = childKeys.length - 1;
+        int slot = mix(key) & mask;
+        while (childKeys[slot] != -1) {
+            if (childKeys[slot] == key) {
+                return childNodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (nodeCount == MAX_NODES) {
+            return -1;
+        }
+        int node = nodeCount++;
+        if (node == nodeParent.length) {
+            nodeParent = Arrays.copyOf(nodeParent, node * 2);
+            nodeFrame = Arrays.copyOf(nodeFrame, node * 2);
+            nodePending = Arrays.copyOf(nodePending, node * 2);
+        }
+        nodeParent[node] = parent;
+        nodeFrame[node] = id;
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+        if (nodeCount * 2 > childKeys.length) {
+            growChildTable();
+        }
+        return node;
+    }
+
+    private void growChildTable() {
+        long[] oldKeys = childKeys;
+        int[] oldNodes = childNodes;
+        childKeys = newKeyTable(oldKeys.length * 2);
+        childNodes = new int[oldKeys.length * 2];
+        int mask = childKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != -1) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (childKeys[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                childKeys[slot] = oldKeys[i];
+                childNodes[slot] = oldNodes[i];
+            }
+        }
+    }
+
+    /** Sends the delta since the last report, if there is one. False if the peer is gone. */
+    private boolean report(ProbeController.FrameSink sink) {
+        byte[] frame;
+        synchronized (lock) {
+            if (samplesPending == 0 && framesSent == frameCount && nodesSent == nodeCount) {
+                return true;
+            }
+            try {
+                frame = encodeDelta();
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        try {
+            sink.send(frame);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Layout as documented on {@link LiveProtocol#EVT_SAMPLES}; marks everything encoded as sent. */
+    private byte[] encodeDelta() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LiveProtocol.EVT_SAMPLES);
+        out.writeInt(samplesPending);
+        out.writeInt(frameCount - framesSent);
+        for (int i = framesSent; i < frameCount; i++) {
+            StackTraceElement e = frames[i];
+            out.writeInt(i);
+            writeString(out, e.getClassName().replace('.', '/'));
+            writeString(out, e.getMethodName());
+            out.writeInt(e.getLineNumber());
+        }
+        out.writeInt(nodeCount - nodesSent);
+        for (int i = nodesSent; i < nodeCount; i++) {
+            out.writeInt(i);
+            out.writeInt(nodeParent[i]);
+            out.writeInt(nodeFrame[i]);
+        }
+        out.writeInt(dirtyCount);
+        for (int i = 0; i < dirtyCount; i++) {
+            int node = dirty[i];
+            out.writeInt(node);
+            out.writeInt(nodePending[node]);
+            nodePending[node] = 0;
+        }
+        out.flush();
+        framesSent = frameCount;
+        nodesSent = nodeCount;
+        dirtyCount = 0;
+        samplesPending = 0;
+        return bytes.toByteArray();
+    }
+
+    private void reset() {
+        frameIds.clear();
+        Arrays.fill(frames, null);
+        frameCount = 0;
+        framesSent = 0;
+        nodeCount = 1;
+        nodesSent = 1;
+        Arrays.fill(nodePending, 0);
+        dirtyCount = 0;
+        samplesPending = 0;
+        childKeys = newKeyTable(2048);
+        childNodes = new int[2048];
+    }
+
+    private static long[] newKeyTable(int size) {
+        long[] keys = new long[size];
+        Arrays.fill(keys, -1);
+        return keys;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(b.length, 0xFFFF);
+        out.writeShort(length);
+        out.write(b, 0, length);
+    }
+}
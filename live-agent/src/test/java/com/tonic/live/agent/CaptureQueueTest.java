@@ -0,0 +1,235 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureQueueTest {
+
+    private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+    /** Counted down when the sender first calls the sink; it then waits on {@link #gate}. */
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private CaptureQueue queue;
+
+    private final ProbeController.FrameSink sink = frame -> {
+        sending.countDown();
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        frames.add(frame);
+    };
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        if (queue != null) {
+            queue.disarm();
+        }
+    }
+
+    @Test
+    void batchCarriesNamesAndBytesInLoadOrder() throws Exception {
+        queue = new CaptureQueue(8, 1 << 20);
+        gate.countDown();
+        queue.arm(true, sink);
+
+        queue.offer("p/A", bytes(3));
+        queue.offer("p/B", bytes(2));
+
+        List<Loaded> loaded = new ArrayList<>();
+        while (loaded.size() < 2) {
+            Batch batch = Batch.read(nextFrame());
+            assertEquals(0, batch.lost);
+            loaded.addAll(batch.classes);
+        }
+        assertEquals("p/A", loaded.get(0).name);
+        assertArrayEquals(bytes(3), loaded.get(0).bytes);
+        assertEquals("p/B", loaded.get(1).name);
+        assertArrayEquals(bytes(2), loaded.get(1).bytes);
+    }
+
+    @Test
+    void fullRingDropsAndCountsInNextBatch() throws Exception {
+        queue = new CaptureQueue(4, 1 << 20);
+        queue.arm(true, sink);
+        holdSender();
+
+        for (int i = 1; i <= 6; i++) {
+            queue.offer("p/C" + i, bytes(1));
+        }
+        gate.countDown();
+
+        assertEquals(1, Batch.read(nextFrame()).classes.size());
+        Batch batch = Batch.read(nextFrame());
+        assertEquals(2, batch.lost);
+        assertEquals(4, batch.classes.size());
+        assertEquals("p/C1", batch.classes.get(0).name);
+        assertEquals("p/C4", batch.classes.get(3).name);
+    }
+
+    @Test
+    void classOverByteBudgetIsSpilledByName() throws Exception {
+        queue = new CaptureQueue(8, 10);
+        queue.arm(true, sink);
+        holdSender();
+
+        queue.offer("p/Big1", bytes(6));
+        queue.offer("p/Big2", bytes(6));
+        queue.offer("p/Small", bytes(3));
+        gate.countDown();
+
+        Batch.read(nextFrame());
+        Batch batch = Batch.read(nextFrame());
+        assertEquals(0, batch.lost);
+        assertEquals(6, batch.classes.get(0).bytes.length);
+        assertEquals("p/Big2", batch.classes.get(1).name);
+        assertEquals(0, batch.classes.get(1).bytes.length, "spilled: the client fetches the bytes itself");
+        assertEquals(3, batch.classes.get(2).bytes.length);
+    }
+
+    @Test
+    void singleEventsReportSpilledAndDroppedClassesAsLost() throws Exception {
+        queue = new CaptureQueue(2, 4);
+        queue.arm(false, sink);
+        holdSender();
+
+        queue.offer("p/Kept", bytes(3));
+        queue.offer("p/Spilled", bytes(5));
+        queue.offer("p/Dropped", bytes(1));
+        gate.countDown();
+
+        assertEquals("p/First", Loaded.read(nextFrame()).name);
+        Loaded kept = Loaded.read(nextFrame());
+        assertEquals("p/Kept", kept.name);
+        assertArrayEquals(bytes(3), kept.bytes);
+        Batch losses = Batch.read(nextFrame());
+        assertEquals(2, losses.lost, "one class spilled, one dropped at the full ring");
+        assertTrue(losses.classes.isEmpty());
+    }
+
+    @Test
+    void batchTakenBeforeDisarmIsNotSentAfterRearm() throws Exception {
+        Semaphore entered = new Semaphore(0);
+        Semaphore permits = new Semaphore(0);
+        ProbeController.FrameSink stepped = frame -> {
+            entered.release();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            frames.add(frame);
+        };
+        queue = new CaptureQueue(8, 1 << 20);
+        queue.arm(false, stepped);
+        try {
+            queue.offer("p/First", bytes(1));
+            assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+            queue.offer("p/A", bytes(1));
+            queue.offer("p/B", bytes(1));
+            permits.release();
+            assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS), "sender took [A, B] and is sending A");
+
+            queue.disarm();
+            queue.arm(false, stepped);
+            permits.release(Integer.MAX_VALUE / 2);
+            queue.offer("p/New", bytes(1));
+
+            assertEquals("p/First", Loaded.read(nextFrame()).name);
+            assertEquals("p/A", Loaded.read(nextFrame()).name, "already handed to the sink at the disarm");
+            assertEquals("p/New", Loaded.read(nextFrame()).name, "the rest of the stale batch is dropped");
+        } finally {
+            permits.release(Integer.MAX_VALUE / 2);
+        }
+    }
+
+    /** Offers one class and waits until the sender is blocked sending it, so later offers pile up in the ring. */
+    private void holdSender() throws InterruptedException {
+        queue.offer("p/First", bytes(1));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+    }
+
+    private byte[] nextFrame() throws InterruptedException {
+        byte[] frame = frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame, "no frame sent");
+        return frame;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) {
+            b[i] = (byte) (length + i);
+        }
+        return b;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static final class Loaded {
+        final String name;
+        final byte[] bytes;
+
+        Loaded(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        static Loaded read(byte[] frame) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            assertEquals(LiveProtocol.EVT_CLASS_LOADED, in.readUnsignedByte());
+            Loaded loaded = readEntry(in);
+            assertEquals(-1, in.read(), "one class per event");
+            return loaded;
+        }
+
+        static Loaded readEntry(DataInputStream in) throws IOException {
+            String name = readString(in);
+            byte[] b = new byte[in.readInt()];
+            in.readFully(b);
+            return new Loaded(name, b);
+        }
+    }
+
+    private static final class Batch {
+        final int lost;
+        final List<Loaded> classes = new ArrayList<>();
+
+        Batch(int lost) {
+            this.lost = lost;
+        }
+
+        static Batch read(byte[] frame) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+            assertEquals(LiveProtocol.EVT_CLASSES_LOADED, in.readUnsignedByte());
+            Batch batch = new Batch(in.readInt());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                batch.classes.add(Loaded.readEntry(in));
+            }
+            assertEquals(-1, in.read(), "frame fully consumed");
+            return batch;
+        }
+    }
+}
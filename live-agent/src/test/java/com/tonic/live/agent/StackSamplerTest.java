@@ -0,0 +1,129 @@
+package com.tonic.live.agent;
+
+import com.tonic.live.protocol.LiveProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StackSamplerTest {
+
+    private final StackSampler sampler = new StackSampler();
+    private final List<byte[]> frames = new ArrayList<>();
+    private volatile boolean spinning = true;
+    private Thread spinner;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        spinning = false;
+        if (spinner != null) {
+            spinner.join(2000);
+        }
+    }
+
+    @Test
+    void cutStacksHangUnderTheTruncatedRoot() throws Exception {
+        ThreadInfo info = spinAt(20, 4);
+        assertEquals(4, info.getStackTrace().length);
+
+        sampler.sample(new ThreadInfo[]{info}, 4);
+        Map<Integer, Integer> parents = new HashMap<>();
+        Map<Integer, String> classes = decode(parents);
+
+        int topLevel = 0;
+        for (Map.Entry<Integer, Integer> node : parents.entrySet()) {
+            if (node.getValue() == 0) {
+                topLevel++;
+                assertEquals("[truncated]", classes.get(node.getKey()));
+            }
+        }
+        assertEquals(1, topLevel);
+        assertEquals(5, parents.size(), "the synthetic root plus the four sampled frames");
+    }
+
+    @Test
+    void completeStacksStartAtTheRoot() throws Exception {
+        ThreadInfo info = spinAt(2, 64);
+        assertTrue(info.getStackTrace().length < 64);
+
+        sampler.sample(new ThreadInfo[]{info}, 64);
+        Map<Integer, Integer> parents = new HashMap<>();
+        Map<Integer, String> classes = decode(parents);
+
+        assertFalse(classes.containsValue("[truncated]"));
+        assertEquals(info.getStackTrace().length, parents.size());
+    }
+
+    /** Starts a thread spinning {@code depth} calls deep and takes its stack cut at {@code maxDepth} frames. */
+    private ThreadInfo spinAt(int depth, int maxDepth) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        spinner = new Thread(() -> recurse(depth, started), "sampled");
+        spinner.setDaemon(true);
+        spinner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int attempt = 0; attempt < 100; attempt++) {
+            ThreadInfo info = ManagementFactory.getThreadMXBean().getThreadInfo(spinner.getId(), maxDepth);
+            if (info.getThreadState() == Thread.State.RUNNABLE && info.getStackTrace().length > 0
+                    && info.getStackTrace()[0].getMethodName().equals("recurse")) {
+                return info;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("spinner was never caught in recurse");
+    }
+
+    private void recurse(int depth, CountDownLatch started) {
+        if (depth > 0) {
+            recurse(depth - 1, started);
+            return;
+        }
+        started.countDown();
+        while (spinning) {
+            // Runnable in recurse until the test ends
+        }
+    }
+
+    /** Reports the sampler's delta and returns frame class names by node id, with node parents in {@code parents}. */
+    private Map<Integer, String> decode(Map<Integer, Integer> parents) throws IOException {
+        sampler.stop(frames::add);
+        assertEquals(1, frames.size());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frames.get(0)));
+        assertEquals(LiveProtocol.EVT_SAMPLES, in.readUnsignedByte());
+        assertEquals(1, in.readInt());
+        Map<Integer, String> frameClasses = new HashMap<>();
+        int frameCount = in.readInt();
+        for (int i = 0; i < frameCount; i++) {
+            int id = in.readInt();
+            frameClasses.put(id, readString(in));
+            readString(in);
+            in.readInt();
+        }
+        Map<Integer, String> nodeClasses = new HashMap<>();
+        int nodeCount = in.readInt();
+        for (int i = 0; i < nodeCount; i++) {
+            int node = in.readInt();
+            parents.put(node, in.readInt());
+            nodeClasses.put(node, frameClasses.get(in.readInt()));
+        }
+        return nodeClasses;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -1,13 +1,20 @@
 package com.tonic.live;
 
 import com.tonic.live.protocol.AgentInfo;
+import com.tonic.live.protocol.AllocSiteBatch;
+import com.tonic.live.protocol.ClassLoadBatch;
 import com.tonic.live.protocol.ContentionEdge;
+import com.tonic.live.protocol.FrameCodec;
 import com.tonic.live.protocol.LiveEvent;
 import com.tonic.live.protocol.LiveField;
 import com.tonic.live.protocol.LiveInstance;
+import com.tonic.live.protocol.MetricsBatch;
 import com.tonic.live.protocol.MetricsSnapshot;
 import com.tonic.live.protocol.LiveProtocol;
 import com.tonic.live.protocol.LoadedClass;
+import com.tonic.live.protocol.LogpointHit;
+import com.tonic.live.protocol.ProbeSample;
+import com.tonic.live.protocol.SampleDelta;
 import com.tonic.live.protocol.ScanLocation;
 import com.tonic.live.protocol.ScanPage;
 import com.tonic.live.protocol.StackFrame;
@@ -27,6 +34,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -64,6 +72,21 @@ public final class LiveAgentClient implements Closeable {
     /** Last-resort backstop against a wedged-but-connected agent; a real disconnect unblocks immediately. */
     private static final long REQUEST_TIMEOUT_MS = 300_000;
     private volatile boolean closed;
+    /**
+     * Whether a request abandoned (its thread interrupted) before its response came closes the connection, which
+     * reports the disconnect like any other. When off, the connection is only marked {@link #outOfSync} and the owner
+     * replaces it; see {@link LiveFleet}.
+     */
+    private volatile boolean closeOnInterrupt = true;
+    /**
+     * Set instead of closing when {@link #closeOnInterrupt} is off: the abandoned response would be read as the next
+     * request's, so every later request fails until the owner replaces the connection.
+     */
+    private volatile boolean outOfSync;
+    /** Whether HELLO asks for compact frames; the reader switches to {@link #decoder} when the agent grants it. */
+    private volatile boolean compactRequested;
+    /** Set by the reader thread on the HELLO reply, used only by it. */
+    private FrameCodec.Decoder decoder;
 
     private LiveAgentClient(Socket socket) throws IOException {
         this.socket = socket;
@@ -111,6 +134,12 @@ public final class LiveAgentClient implements Closeable {
         addEventListener(listener);
     }
 
+    /** Hands every registered listener over to {@code other}, e.g. the connection replacing this one. */
+    void moveListenersTo(LiveAgentClient other) {
+        other.listeners.addAll(listeners);
+        listeners.clear();
+    }
+
     private void emit(LiveEvent event) {
         for (Consumer<LiveEvent> l : listeners) {
             try {
@@ -122,8 +151,14 @@ public final class LiveAgentClient implements Closeable {
 
     // ---- commands ---------------------------------------------------------------------------------
 
+    /**
+     * Handshake. Also negotiates compact frames: the agent's replies after this one are decoded by
+     * {@link FrameCodec} if it advertises {@link LiveProtocol#CAP_COMPACT_FRAMES}.
+     */
     public AgentInfo hello() throws IOException {
-        DataInputStream r = request(new byte[]{(byte) LiveProtocol.MSG_HELLO});
+        compactRequested = true;
+        DataInputStream r = request(new byte[]{
+                (byte) LiveProtocol.MSG_HELLO, (byte) LiveProtocol.HELLO_COMPACT_FRAMES});
         skipType(r, LiveProtocol.MSG_HELLO);
         return new AgentInfo(r.readInt(), r.readInt(), r.readInt());
     }
@@ -168,12 +203,125 @@ public final class LiveAgentClient implements Closeable {
         skipType(r, LiveProtocol.MSG_REDEFINE_CLASS);
     }
 
-    /** Arm/disarm streaming of runtime class loads as {@link LiveEvent.Kind#CLASS_LOADED} events. */
+    /**
+     * Arm/disarm streaming of runtime class loads, batched as {@link LiveEvent.Kind#CLASSES_LOADED} events (an
+     * older agent sends one {@link LiveEvent.Kind#CLASS_LOADED} per class instead).
+     */
     public void setCaptureLoads(boolean on) throws IOException {
-        DataInputStream r = request(payload(LiveProtocol.MSG_SET_CAPTURE_LOADS, b -> b.writeByte(on ? 1 : 0)));
+        int flags = on ? LiveProtocol.CAPTURE_ON | LiveProtocol.CAPTURE_BATCHED : 0;
+        DataInputStream r = request(payload(LiveProtocol.MSG_SET_CAPTURE_LOADS, b -> b.writeByte(flags)));
         skipType(r, LiveProtocol.MSG_SET_CAPTURE_LOADS);
     }
 
+    /**
+     * Enables timing probe {@code probeId} for a method of {@code className} and returns the class's bytes as they
+     * were before any probe, for the caller to instrument and redefine.
+     */
+    public byte[] probeEnable(int probeId, String className) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_PROBE_ENABLE, b -> {
+            b.writeInt(probeId);
+            writeString(b, className);
+        }));
+        skipType(r, LiveProtocol.MSG_PROBE_ENABLE);
+        byte[] bytes = new byte[r.readInt()];
+        r.readFully(bytes);
+        return bytes;
+    }
+
+    /** Disables timing probe {@code probeId}; its histogram is dropped and it stops being reported. */
+    public void probeDisable(int probeId) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_PROBE_DISABLE, b -> b.writeInt(probeId)));
+        skipType(r, LiveProtocol.MSG_PROBE_DISABLE);
+        r.readUnsignedByte();
+    }
+
+    /**
+     * Installs logpoint {@code id} on {@code className}: the agent defines the compiled snippet {@code classes}
+     * (whose {@code mainBinaryName} has {@code static Object run(Object, Object[])}) under the class's loader.
+     * Returns the class's bytes from before any probe or logpoint.
+     */
+    public byte[] logpointSet(int id, String className, int flags, Map<String, byte[]> classes,
+                              String mainBinaryName) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_LOGPOINT_SET, b -> {
+            b.writeInt(id);
+            writeString(b, className);
+            b.writeByte(flags);
+            b.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+                writeString(b, e.getKey());
+                b.writeInt(e.getValue().length);
+                b.write(e.getValue());
+            }
+            writeString(b, mainBinaryName);
+        }));
+        skipType(r, LiveProtocol.MSG_LOGPOINT_SET);
+        byte[] bytes = new byte[r.readInt()];
+        r.readFully(bytes);
+        return bytes;
+    }
+
+    /** Removes logpoint {@code id}; hits already buffered agent-side may still arrive. */
+    public void logpointClear(int id) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_LOGPOINT_CLEAR, b -> b.writeInt(id)));
+        skipType(r, LiveProtocol.MSG_LOGPOINT_CLEAR);
+        r.readUnsignedByte();
+    }
+
+    /**
+     * Starts the agent's stack sampler (restarting it, with a fresh profile, if it runs): runnable threads are
+     * sampled every {@code intervalMs}, {@code maxDepth} frames deep, and reported as {@link LiveEvent.Kind#SAMPLES}.
+     */
+    public void samplerStart(int intervalMs, int maxDepth) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_SAMPLER_START, b -> {
+            b.writeInt(intervalMs);
+            b.writeInt(maxDepth);
+        }));
+        skipType(r, LiveProtocol.MSG_SAMPLER_START);
+        r.readUnsignedByte();
+    }
+
+    /** Stops the stack sampler; the samples it has not reported yet arrive before this returns. */
+    public void samplerStop() throws IOException {
+        DataInputStream r = request(new byte[]{(byte) LiveProtocol.MSG_SAMPLER_STOP});
+        skipType(r, LiveProtocol.MSG_SAMPLER_STOP);
+        r.readUnsignedByte();
+    }
+
+    /** Subscribes to the metrics stream: the agent samples every {@code periodMs} and pushes EVT_METRICS batches. */
+    public void metricsSubscribe(int periodMs) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_METRICS_SUBSCRIBE, b -> b.writeInt(periodMs)));
+        skipType(r, LiveProtocol.MSG_METRICS_SUBSCRIBE);
+        r.readUnsignedByte();
+    }
+
+    public void metricsUnsubscribe() throws IOException {
+        DataInputStream r = request(new byte[]{(byte) LiveProtocol.MSG_METRICS_UNSUBSCRIBE});
+        skipType(r, LiveProtocol.MSG_METRICS_UNSUBSCRIBE);
+        r.readUnsignedByte();
+    }
+
+    /**
+     * Starts counting allocations in {@code className}, sampling about one in {@code sampleInterval} per thread, and
+     * returns the class's bytes from before any probe, logpoint or site, for the caller to instrument and redefine.
+     */
+    public byte[] allocTrack(String className, int sampleInterval) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_ALLOC_TRACK, b -> {
+            writeString(b, className);
+            b.writeInt(sampleInterval);
+        }));
+        skipType(r, LiveProtocol.MSG_ALLOC_TRACK);
+        byte[] bytes = new byte[r.readInt()];
+        r.readFully(bytes);
+        return bytes;
+    }
+
+    /** Stops counting allocations in {@code className}; the recorder is switched off with the last class. */
+    public void allocUntrack(String className) throws IOException {
+        DataInputStream r = request(payload(LiveProtocol.MSG_ALLOC_UNTRACK, b -> writeString(b, className)));
+        skipType(r, LiveProtocol.MSG_ALLOC_UNTRACK);
+        r.readUnsignedByte();
+    }
+
     /** Triggers a HotSpot heap dump in the target and returns the local file path of the .hprof. */
     public String heapDump() throws IOException {
         DataInputStream r = request(new byte[]{(byte) LiveProtocol.MSG_HEAP_DUMP});
@@ -488,7 +636,12 @@ public final class LiveAgentClient implements Closeable {
                 }
                 byte[] frame = new byte[len];
                 in.readFully(frame);
-                int type = len > 0 ? (frame[0] & 0xFF) : -1;
+                if (decoder != null) {
+                    frame = decoder.decode(frame);
+                } else if (compactRequested && isCompactHelloReply(frame)) {
+                    decoder = new FrameCodec.Decoder();   // every later frame is encoded
+                }
+                int type = frame.length > 0 ? (frame[0] & 0xFF) : -1;
                 // Async events occupy [0x40, 0x7F); MSG_ERROR (0x7F) is a response to the in-flight request.
                 if (type >= 0x40 && type != LiveProtocol.MSG_ERROR) {
                     final byte[] f = frame;
@@ -502,6 +655,9 @@ public final class LiveAgentClient implements Closeable {
         } catch (IOException e) {
             // connection error
         } finally {
+            if (decoder != null) {
+                decoder.close();
+            }
             // Wake any request blocked waiting for a response it will now never get.
             responses.offer(POISON);
             if (!closed) {
@@ -510,6 +666,15 @@ public final class LiveAgentClient implements Closeable {
         }
     }
 
+    /** A HELLO reply ({@code u8 type, u32 version, u32 caps, ...}) granting compact frames. */
+    private static boolean isCompactHelloReply(byte[] frame) {
+        if (frame.length < 9 || (frame[0] & 0xFF) != LiveProtocol.MSG_HELLO) {
+            return false;
+        }
+        int caps = (frame[5] & 0xFF) << 24 | (frame[6] & 0xFF) << 16 | (frame[7] & 0xFF) << 8 | (frame[8] & 0xFF);
+        return (caps & LiveProtocol.CAP_COMPACT_FRAMES) != 0;
+    }
+
     /** Runs an event task on the dedicated dispatch thread; a no-op once dispatch has been shut down. */
     private void dispatchAsync(Runnable task) {
         try {
@@ -530,15 +695,148 @@ public final class LiveAgentClient implements Closeable {
                 byte[] bytes = new byte[r.readInt()];
                 r.readFully(bytes);
                 emit(LiveEvent.classLoaded(name, bytes));
+            } else if (type == LiveProtocol.EVT_CLASSES_LOADED) {
+                emit(LiveEvent.classesLoaded(readClassLoadBatch(r)));
+            } else if (type == LiveProtocol.EVT_PROBE_STATS) {
+                emit(LiveEvent.probeStats(readProbeSamples(r)));
+            } else if (type == LiveProtocol.EVT_LOGPOINT_HITS) {
+                int dropped = r.readInt();
+                int count = r.readInt();
+                List<LogpointHit> hits = new ArrayList<>(Math.max(0, count));
+                for (int i = 0; i < count; i++) {
+                    hits.add(new LogpointHit(r.readInt(), r.readLong(), readString(r), readString(r)));
+                }
+                emit(LiveEvent.logpointHits(hits, dropped));
+            } else if (type == LiveProtocol.EVT_SAMPLES) {
+                emit(LiveEvent.samples(readSampleDelta(r)));
+            } else if (type == LiveProtocol.EVT_METRICS) {
+                emit(LiveEvent.metrics(readMetricsBatch(r)));
+            } else if (type == LiveProtocol.EVT_ALLOC_SITES) {
+                emit(LiveEvent.allocSites(readAllocSiteBatch(r)));
             }
         } catch (IOException ignored) {
         }
     }
 
+    private static SampleDelta readSampleDelta(DataInputStream r) throws IOException {
+        int samples = r.readInt();
+        int frames = r.readInt();
+        int[] frameIds = new int[frames];
+        String[] classes = new String[frames];
+        String[] methods = new String[frames];
+        int[] lines = new int[frames];
+        for (int i = 0; i < frames; i++) {
+            frameIds[i] = r.readInt();
+            classes[i] = readString(r);
+            methods[i] = readString(r);
+            lines[i] = r.readInt();
+        }
+        int nodes = r.readInt();
+        int[] nodeIds = new int[nodes];
+        int[] parents = new int[nodes];
+        int[] nodeFrames = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = r.readInt();
+            parents[i] = r.readInt();
+            nodeFrames[i] = r.readInt();
+        }
+        int changed = r.readInt();
+        int[] countNodes = new int[changed];
+        int[] counts = new int[changed];
+        for (int i = 0; i < changed; i++) {
+            countNodes[i] = r.readInt();
+            counts[i] = r.readInt();
+        }
+        return new SampleDelta(samples, frameIds, classes, methods, lines, nodeIds, parents, nodeFrames,
+                countNodes, counts);
+    }
+
+    private static AllocSiteBatch readAllocSiteBatch(DataInputStream r) throws IOException {
+        int interval = r.readInt();
+        long other = r.readLong();
+        int n = Math.max(0, r.readInt());
+        int[] sites = new int[n];
+        long[] allocations = new long[n];
+        for (int i = 0; i < n; i++) {
+            sites[i] = r.readInt();
+            allocations[i] = r.readLong();
+        }
+        return new AllocSiteBatch(interval, other, sites, allocations);
+    }
+
+    private static ClassLoadBatch readClassLoadBatch(DataInputStream r) throws IOException {
+        int dropped = r.readInt();
+        int n = Math.max(0, r.readInt());
+        String[] names = new String[n];
+        byte[][] bytes = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            names[i] = readString(r);
+            int len = r.readInt();
+            if (len > 0) {
+                bytes[i] = new byte[len];
+                r.readFully(bytes[i]);
+            }
+        }
+        return new ClassLoadBatch(dropped, names, bytes);
+    }
+
+    private static MetricsBatch readMetricsBatch(DataInputStream r) throws IOException {
+        int dropped = r.readInt();
+        int fields = r.readInt();
+        int count = r.readInt();
+        long[][] rows = new long[Math.max(0, count)][];
+        for (int i = 0; i < rows.length; i++) {
+            long[] row = new long[Math.max(fields, LiveProtocol.METRIC_FIELDS)];
+            Arrays.fill(row, fields, row.length, -1);
+            for (int f = 0; f < fields; f++) {
+                long v = readVarLong(r);
+                row[f] = i == 0 ? v : rows[i - 1][f] + v;
+            }
+            rows[i] = row;
+        }
+        return new MetricsBatch(dropped, rows);
+    }
+
+    /** A zigzag-encoded varint, as the agent writes metrics values. */
+    private static long readVarLong(DataInputStream r) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = r.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static List<ProbeSample> readProbeSamples(DataInputStream r) throws IOException {
+        int count = r.readInt();
+        List<ProbeSample> samples = new ArrayList<>(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            int probeId = r.readInt();
+            long calls = r.readLong();
+            long totalNanos = r.readLong();
+            long maxNanos = r.readLong();
+            int n = r.readInt();
+            int[] buckets = new int[n];
+            long[] counts = new long[n];
+            for (int j = 0; j < n; j++) {
+                buckets[j] = r.readUnsignedShort();
+                counts[j] = r.readLong();
+            }
+            samples.add(new ProbeSample(probeId, calls, totalNanos, maxNanos, buckets, counts));
+        }
+        return samples;
+    }
+
     private synchronized DataInputStream request(byte[] payload) throws IOException {
         if (closed) {
             throw new IOException("live agent connection is closed");
         }
+        if (outOfSync) {
+            throw new IOException("live agent connection is out of sync after an abandoned request");
+        }
         responses.clear();   // drop any straggler from a prior timed-out request
         out.writeInt(payload.length);
         out.write(payload);
@@ -547,7 +845,13 @@ public final class LiveAgentClient implements Closeable {
         try {
             resp = responses.poll(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
+            // The response is still coming and would be read as the next request's: the stream can't be reused
             Thread.currentThread().interrupt();
+            if (closeOnInterrupt) {
+                closeQuietly();
+            } else {
+                outOfSync = true;
+            }
             throw new IOException("interrupted waiting for response", e);
         }
         if (resp == null) {        // backstop timeout: agent wedged - tear the connection down
@@ -597,6 +901,16 @@ public final class LiveAgentClient implements Closeable {
         w.write(b);
     }
 
+    /** Keeps the connection open when a request is interrupted, marking it {@link #isOutOfSync out of sync} instead. */
+    public void setCloseOnInterrupt(boolean close) {
+        closeOnInterrupt = close;
+    }
+
+    /** Whether an abandoned request left this connection unusable; see {@link LiveSession#reconnect}. */
+    public boolean isOutOfSync() {
+        return outOfSync;
+    }
+
     @Override
     public void close() throws IOException {
         closed = true;
@@ -0,0 +1,257 @@
+package com.tonic.live;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Many {@link LiveSession}s driven together: the same request goes to every member at once on a bounded pool, and
+ * the answers come back side by side in member order. Each session's connection stays serial (one request at a
+ * time, as {@link LiveAgentClient} requires); the pool only overlaps different JVMs, so a fleet of 30 answers in
+ * roughly the time of its slowest member instead of the sum of all of them.
+ *
+ * <p>A member that fails or does not answer within the timeout gets an error result; the others are unaffected.
+ * A timed-out request is interrupted and its answer may still arrive. Members are kept open on interrupt, so such a
+ * connection only stops serving requests ({@link LiveSession#isOutOfSync}) and the fleet replaces it with a fresh
+ * one ({@link LiveSession#reconnect}) in the background. Closing the fleet closes every session.
+ */
+public final class LiveFleet implements Closeable {
+
+    /** Upper bound on concurrent requests, whatever the fleet size. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final List<LiveSession> members = new CopyOnWriteArrayList<>();
+    private final ExecutorService pool;
+
+    /** One request against one member. */
+    public interface Request<T> {
+        T apply(LiveSession session) throws Exception;
+    }
+
+    /** One member's answer: a value, or the error it failed with. */
+    @Getter
+    public static final class Result<T> {
+        private final String pid;
+        private final T value;
+        private final String error;
+        private final long elapsedMs;
+
+        Result(String pid, T value, String error, long elapsedMs) {
+            this.pid = pid;
+            this.value = value;
+            this.error = error;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public boolean isOk() {
+            return error == null;
+        }
+    }
+
+    public LiveFleet() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public LiveFleet(int parallelism) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "jstudio-fleet-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Attaches the agent to every pid concurrently and adds the sessions that connected. Returns one result per
+     * pid, in order; pids already in the fleet are reported as errors.
+     */
+    public List<Result<LiveSession>> attachAll(List<String> pids, String agentJarPath, long timeoutMs) {
+        List<Callable<Result<LiveSession>>> tasks = new ArrayList<>(pids.size());
+        for (String pid : pids) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                if (member(pid) != null) {
+                    return new Result<>(pid, null, "already in the fleet", 0);
+                }
+                try {
+                    LiveSession session = LiveSession.attach(pid, agentJarPath);
+                    session.setCloseOnInterrupt(false);
+                    members.add(session);
+                    return new Result<>(pid, session, null, elapsedMs(start));
+                } catch (Exception e) {
+                    return new Result<>(pid, null, describe(e), elapsedMs(start));
+                }
+            });
+        }
+        return await(pids, tasks, timeoutMs, i -> { });
+    }
+
+    /** Adds an already-connected session; from now on an interrupted request leaves it for the fleet to reconnect. */
+    public void add(LiveSession session) {
+        session.setCloseOnInterrupt(false);
+        members.add(session);
+    }
+
+    /** Removes and closes the member for {@code pid}, if there is one. */
+    public void remove(String pid) {
+        LiveSession session;
+        synchronized (members) {
+            session = member(pid);
+            if (session != null) {
+                members.remove(session);
+            }
+        }
+        if (session != null) {
+            closeQuietly(session);
+        }
+    }
+
+    public List<LiveSession> getMembers() {
+        return Collections.unmodifiableList(new ArrayList<>(members));
+    }
+
+    public LiveSession member(String pid) {
+        for (LiveSession s : members) {
+            if (s.getPid().equals(pid)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * Runs {@code request} against every member concurrently and waits up to {@code timeoutMs} for all of them.
+     * Returns one result per member, in member order. Blocks: call off the EDT.
+     */
+    public <T> List<Result<T>> call(Request<T> request, long timeoutMs) {
+        List<LiveSession> snapshot = new ArrayList<>(members);
+        List<String> pids = new ArrayList<>(snapshot.size());
+        List<Callable<Result<T>>> tasks = new ArrayList<>(snapshot.size());
+        for (LiveSession session : snapshot) {
+            pids.add(session.getPid());
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                try {
+                    return new Result<>(session.getPid(), request.apply(session), null, elapsedMs(start));
+                } catch (Exception e) {
+                    return new Result<>(session.getPid(), null, describe(e), elapsedMs(start));
+                }
+            });
+        }
+        Set<Integer> cancelled = new HashSet<>();
+        List<Result<T>> results = await(pids, tasks, timeoutMs, i -> {
+            cancelled.add(i);
+            reconnectLater(snapshot.get(i));
+        });
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (!cancelled.contains(i) && snapshot.get(i).isOutOfSync()) {
+                reconnectLater(snapshot.get(i));   // the fleet call itself was interrupted
+            }
+        }
+        return results;
+    }
+
+    private void reconnectLater(LiveSession stale) {
+        try {
+            pool.execute(() -> reconnect(stale));
+        } catch (RejectedExecutionException e) {
+            closeQuietly(stale);   // fleet closed meanwhile
+        }
+    }
+
+    /** Swaps {@code stale} for a fresh connection to the same agent, unless it was removed meanwhile. */
+    private void reconnect(LiveSession stale) {
+        LiveSession fresh;
+        try {
+            fresh = stale.reconnect();
+            fresh.setCloseOnInterrupt(false);
+        } catch (Exception e) {
+            return;   // stays in the fleet closed: its requests fail until it is removed
+        }
+        synchronized (members) {
+            int index = members.indexOf(stale);
+            if (index >= 0) {
+                members.set(index, fresh);
+                return;
+            }
+        }
+        closeQuietly(fresh);
+    }
+
+    /** Runs {@code tasks}; {@code timedOut} gets the index of each one cancelled at the deadline. */
+    private <T> List<Result<T>> await(List<String> pids, List<Callable<Result<T>>> tasks, long timeoutMs,
+                                      IntConsumer timedOut) {
+        List<Result<T>> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        List<Future<Result<T>>> futures;
+        try {
+            futures = pool.invokeAll(tasks, timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (String pid : pids) {
+                results.add(new Result<>(pid, null, "interrupted", 0));
+            }
+            return results;
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (CancellationException e) {
+                results.add(new Result<>(pids.get(i), null, "timed out after " + timeoutMs + " ms", timeoutMs));
+                timedOut.accept(i);
+            } catch (ExecutionException e) {
+                results.add(new Result<>(pids.get(i), null, describe(e.getCause()), 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new Result<>(pids.get(i), null, "interrupted", 0));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (LiveSession session : members) {
+            closeQuietly(session);
+        }
+        members.clear();
+    }
+
+    private static void closeQuietly(LiveSession session) {
+        try {
+            session.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static String describe(Throwable t) {
+        return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+    }
+}
@@ -33,11 +33,13 @@ import java.util.function.Consumer;
 public final class LiveSession implements Closeable {
 
     private final String pid;
+    private final int port;
     private final AgentInfo info;
     private final LiveAgentClient client;
 
-    private LiveSession(String pid, AgentInfo info, LiveAgentClient client) {
+    private LiveSession(String pid, int port, AgentInfo info, LiveAgentClient client) {
         this.pid = pid;
+        this.port = port;
         this.info = info;
         this.client = client;
     }
@@ -60,13 +62,38 @@ public final class LiveSession implements Closeable {
         LiveAgentClient client = LiveAgentClient.connect("127.0.0.1", port, 10_000);
         try {
             AgentInfo info = client.hello();
-            return new LiveSession(pid, info, client);
+            return new LiveSession(pid, port, info, client);
         } catch (IOException e) {
             client.close();
             throw e;
         }
     }
 
+    /**
+     * Closes this session and connects again to the same agent, moving the event listeners over. For a
+     * connection that can no longer be trusted, e.g. one whose request was abandoned before its response came.
+     * Streaming the agent runs per connection (sampler, class capture) stops with the old one.
+     */
+    public LiveSession reconnect() throws Exception {
+        close();
+        LiveSession fresh = connect(pid, port);
+        client.moveListenersTo(fresh.client);
+        return fresh;
+    }
+
+    /**
+     * Whether an interrupted request closes this session (the default) or only marks it {@link #isOutOfSync out of
+     * sync} for its owner to {@link #reconnect}.
+     */
+    void setCloseOnInterrupt(boolean close) {
+        client.setCloseOnInterrupt(close);
+    }
+
+    /** Whether a request on this session was abandoned mid-flight, so it must be {@link #reconnect reconnected}. */
+    public boolean isOutOfSync() {
+        return client.isOutOfSync();
+    }
+
     /** Eagerly enumerate all loaded classes (names + access flags); cheap, no bytecode transferred. */
     public List<LoadedClass> enumerateClasses() throws IOException {
         return client.listClasses();
@@ -98,7 +125,7 @@ public final class LiveSession implements Closeable {
         client.redefineClass(internalName, classBytes);
     }
 
-    /** Arm/disarm streaming of runtime class loads (CLASS_LOADED events with real bytes). */
+    /** Arm/disarm streaming of runtime class loads (CLASSES_LOADED batches, or CLASS_LOADED from older agents). */
     public void setCaptureLoads(boolean on) throws IOException {
         client.setCaptureLoads(on);
     }
@@ -133,6 +160,99 @@ public final class LiveSession implements Closeable {
         return client.jfrSnapshot();
     }
 
+    /** Whether the target's agent can record method timing probes. */
+    public boolean supportsProbes() {
+        return (info.getCapabilities() & com.tonic.live.protocol.LiveProtocol.CAP_PROBES) != 0;
+    }
+
+    /**
+     * Enables timing probe {@code probeId} for a method of {@code className} and returns the class's bytes from
+     * before any probe. The probe only records once the class is redefined with bytes from
+     * {@link com.tonic.live.probe.ProbeInstrumenter}; its histograms arrive as {@link LiveEvent.Kind#PROBE_STATS}.
+     */
+    public byte[] enableProbe(int probeId, String className) throws IOException {
+        return client.probeEnable(probeId, className);
+    }
+
+    /** Disables a timing probe. Redefine the class without it (or back to its original bytes) as well. */
+    public void disableProbe(int probeId) throws IOException {
+        client.probeDisable(probeId);
+    }
+
+    /** Whether the target's agent can evaluate logpoints and conditional breakpoints in-process. */
+    public boolean supportsLogpoints() {
+        return (info.getCapabilities() & com.tonic.live.protocol.LiveProtocol.CAP_LOGPOINTS) != 0;
+    }
+
+    /**
+     * Installs logpoint {@code id} on {@code className} with its compiled snippet and returns the class's bytes from
+     * before any probe or logpoint. Like probes, it only fires once the class is redefined with a
+     * {@link com.tonic.live.probe.ProbeInstrumenter.Hook} for it; hits arrive as {@link LiveEvent.Kind#LOGPOINT_HITS}.
+     */
+    public byte[] setLogpoint(int id, String className, int flags, Map<String, byte[]> classes,
+                              String mainBinaryName) throws IOException {
+        return client.logpointSet(id, className, flags, classes, mainBinaryName);
+    }
+
+    /** Removes a logpoint. Redefine the class without its hook as well. */
+    public void clearLogpoint(int id) throws IOException {
+        client.logpointClear(id);
+    }
+
+    /** Whether the target's agent can sample stacks itself (a CPU profile that does not need JFR). */
+    public boolean supportsSampling() {
+        return (info.getCapabilities() & com.tonic.live.protocol.LiveProtocol.CAP_SAMPLING) != 0;
+    }
+
+    /**
+     * Starts (or restarts, discarding the previous profile) the agent's stack sampler. Reports arrive as
+     * {@link LiveEvent.Kind#SAMPLES}; fold them with a {@link com.tonic.live.probe.SampleProfile}.
+     */
+    public void startSampling(int intervalMs, int maxDepth) throws IOException {
+        client.samplerStart(intervalMs, maxDepth);
+    }
+
+    public void stopSampling() throws IOException {
+        client.samplerStop();
+    }
+
+    /** Whether the target's agent can count allocations per site ({@link #trackAllocations}). */
+    public boolean supportsAllocationSites() {
+        return (info.getCapabilities() & com.tonic.live.protocol.LiveProtocol.CAP_ALLOC_SITES) != 0;
+    }
+
+    /**
+     * Starts counting allocations in {@code className} and returns its bytes from before any probe, logpoint or
+     * site. Counting starts once the class is redefined with the
+     * {@link com.tonic.live.probe.ProbeInstrumenter.AllocSite}s to count; counts arrive as
+     * {@link LiveEvent.Kind#ALLOC_SITES}.
+     */
+    public byte[] trackAllocations(String className, int sampleInterval) throws IOException {
+        return client.allocTrack(className, sampleInterval);
+    }
+
+    /** Stops counting allocations in {@code className}. Redefine the class without its sites as well. */
+    public void untrackAllocations(String className) throws IOException {
+        client.allocUntrack(className);
+    }
+
+    /** Whether the target's agent can push metrics ({@link #subscribeMetrics}) instead of being polled. */
+    public boolean supportsMetricsStream() {
+        return (info.getCapabilities() & com.tonic.live.protocol.LiveProtocol.CAP_METRICS_STREAM) != 0;
+    }
+
+    /**
+     * Has the agent sample the MXBeans every {@code periodMs} and push the rows once a second as
+     * {@link LiveEvent.Kind#METRICS}; subscribing again only changes the period.
+     */
+    public void subscribeMetrics(int periodMs) throws IOException {
+        client.metricsSubscribe(periodMs);
+    }
+
+    public void unsubscribeMetrics() throws IOException {
+        client.metricsUnsubscribe();
+    }
+
     /** Reads the live static fields of a class. */
     public List<StaticField> getStatics(String internalName) throws IOException {
         return client.getStatics(internalName);
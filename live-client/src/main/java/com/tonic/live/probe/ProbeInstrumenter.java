@@ -0,0 +1,1079 @@
+package com.tonic.live.probe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds entry/exit timing calls to methods of a class so they can be redefined into a live JVM as timing probes.
+ * Each probed method gets {@code ProbeRecorder.enter(id)} first, {@code ProbeRecorder.exit(id)} before every
+ * return, and a catch-all handler that calls {@code exit} and rethrows, so exceptional exits are timed too.
+ *
+ * <p>The same rewrite places logpoint {@link Hook}s: a call to {@code LogpointRecorder.hit(id, this, args)} just
+ * before the instruction at a given offset, which the agent answers by evaluating the logpoint's compiled snippet
+ * in-process. It also counts allocations: {@link AllocSite}s get {@code AllocRecorder.alloc(id)} right after their
+ * {@code new}/{@code newarray}/{@code anewarray}/{@code multianewarray}, so the call sees the allocation completed
+ * and an uninitialized {@code new} keeps the offset its stack map frames refer to. A class's probes, hooks and
+ * sites are always applied together, from its bytes before any of them.
+ *
+ * <p>The rewrite works on the raw class bytes and touches nothing but the probed methods' {@code Code}
+ * attributes and the constant pool (which it only appends to). Members, other methods and class attributes keep
+ * their exact bytes, which is what HotSpot's redefine requires. No locals are added (the agent keeps start times
+ * on a per-thread stack), so existing stack map frames stay valid once their offsets are relocated. Constructors
+ * and static initializers are not probed, though they can carry hooks and allocation sites.
+ */
+public final class ProbeInstrumenter {
+
+    /** Internal name of the agent class whose static {@code enter(I)V} / {@code exit(I)V} the probes call. */
+    public static final String RECORDER = "com/tonic/live/agent/ProbeRecorder";
+
+    /** Internal name of the agent class whose static {@code hit(ILjava/lang/Object;[Ljava/lang/Object;)V} hooks call. */
+    public static final String HOOK_RECORDER = "com/tonic/live/agent/LogpointRecorder";
+
+    /** Internal name of the agent class whose static {@code alloc(I)V} allocation sites call. */
+    public static final String ALLOC_RECORDER = "com/tonic/live/agent/AllocRecorder";
+
+    /** Probe ids are pushed with {@code sipush}, so they must fit in a signed short. */
+    public static final int MAX_PROBE_ID = Short.MAX_VALUE;
+
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_NATIVE = 0x0100;
+
+    private static final int ACC_STATIC = 0x0008;
+
+    /** Operand stack a hook needs on top of the method's own: id, self, array, dup, index and a wide value. */
+    private static final int HOOK_STACK = 7;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int AASTORE = 0x53;
+    private static final int DUP = 0x59;
+    private static final int NEW = 0xBB;
+    private static final int NEWARRAY = 0xBC;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int MULTIANEWARRAY = 0xC5;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int ATHROW = 0xBF;
+    private static final int TABLESWITCH = 0xAA;
+    private static final int LOOKUPSWITCH = 0xAB;
+    private static final int WIDE = 0xC4;
+    private static final int GOTO_W = 0xC8;
+    private static final int JSR_W = 0xC9;
+
+    private ProbeInstrumenter() {
+    }
+
+    /**
+     * A logpoint: call the hook recorder with {@code id}, the receiver ({@code null} in static methods and
+     * constructors) and the method's arguments (boxed, read from their parameter slots) just before the
+     * instruction at {@code pc} of {@code method} (name + descriptor). Branches to {@code pc} run the hook too.
+     */
+    public static final class Hook {
+        public final int id;
+        public final String method;
+        public final int pc;
+
+        public Hook(int id, String method, int pc) {
+            this.id = id;
+            this.method = method;
+            this.pc = pc;
+        }
+    }
+
+    /**
+     * An allocation site: the {@code new} or array-creation instruction at {@code pc} of {@code method} (name +
+     * descriptor). {@code type} is the internal name of the class a {@code new} creates, or the descriptor of the
+     * array the other instructions create; {@code line} is its source line, or -1 without line numbers.
+     */
+    public static final class AllocSite {
+        public final int id;
+        public final String method;
+        public final int pc;
+        public final String type;
+        public final int line;
+
+        public AllocSite(int id, String method, int pc, String type, int line) {
+            this.id = id;
+            this.method = method;
+            this.pc = pc;
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Lists the allocation sites of every method of {@code classBytes} (constructors and static initializers
+     * included), in method and offset order, numbered from {@code firstId}.
+     *
+     * @throws IllegalArgumentException if the class is malformed
+     */
+    public static List<AllocSite> allocationSites(byte[] classBytes, int firstId) {
+        try {
+            return new Rewrite(classBytes, RECORDER, HOOK_RECORDER, ALLOC_RECORDER).allocationSites(firstId);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("malformed class file", e);
+        }
+    }
+
+    /**
+     * Returns {@code classBytes} with probes added to the methods in {@code probes} (name + descriptor to probe
+     * id), calling {@link #RECORDER}.
+     *
+     * @throws IllegalArgumentException if a method is missing, has no code, is a constructor/initializer, or the
+     *                                  class is malformed
+     * @throws IllegalStateException    if a probed method would outgrow the class-file limits
+     */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes) {
+        return instrument(classBytes, probes, Collections.emptyList());
+    }
+
+    /** {@link #instrument(byte[], Map)} calling {@code recorder} instead of the agent's recorder. */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes, String recorder) {
+        return instrument(classBytes, probes, Collections.emptyList(), recorder, HOOK_RECORDER);
+    }
+
+    /**
+     * Returns {@code classBytes} with {@code probes} and logpoint {@code hooks} added.
+     *
+     * @throws IllegalArgumentException if a method or hook offset is missing, or as {@link #instrument(byte[], Map)}
+     */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes, List<Hook> hooks) {
+        return instrument(classBytes, probes, hooks, Collections.emptyList());
+    }
+
+    /**
+     * Returns {@code classBytes} with {@code probes}, logpoint {@code hooks} and counted allocation {@code sites}.
+     *
+     * @throws IllegalArgumentException if a site's offset is not an allocation, or as
+     *                                  {@link #instrument(byte[], Map, List)}
+     */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes, List<Hook> hooks,
+                                    List<AllocSite> sites) {
+        return instrument(classBytes, probes, hooks, sites, RECORDER, HOOK_RECORDER, ALLOC_RECORDER);
+    }
+
+    /** {@link #instrument(byte[], Map, List)} calling the given recorder classes instead of the agent's. */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes, List<Hook> hooks,
+                                    String recorder, String hookRecorder) {
+        return instrument(classBytes, probes, hooks, Collections.emptyList(), recorder, hookRecorder,
+                ALLOC_RECORDER);
+    }
+
+    /** {@link #instrument(byte[], Map, List, List)} calling the given recorder classes instead of the agent's. */
+    public static byte[] instrument(byte[] classBytes, Map<String, Integer> probes, List<Hook> hooks,
+                                    List<AllocSite> sites, String recorder, String hookRecorder,
+                                    String allocRecorder) {
+        for (AllocSite site : sites) {
+            if (site.id <= 0 || site.id > MAX_PROBE_ID) {
+                throw new IllegalArgumentException("allocation site id out of range for " + site.method + ": "
+                        + site.id);
+            }
+        }
+        for (Hook hook : hooks) {
+            if (hook.id <= 0 || hook.id > MAX_PROBE_ID) {
+                throw new IllegalArgumentException("logpoint id out of range for " + hook.method + ": " + hook.id);
+            }
+        }
+        for (Map.Entry<String, Integer> probe : probes.entrySet()) {
+            int id = probe.getValue();
+            if (id <= 0 || id > MAX_PROBE_ID) {
+                throw new IllegalArgumentException("probe id out of range for " + probe.getKey() + ": " + id);
+            }
+            if (probe.getKey().startsWith("<init>") || probe.getKey().startsWith("<clinit>")) {
+                throw new IllegalArgumentException("constructors and static initializers cannot be probed: "
+                        + probe.getKey());
+            }
+        }
+        try {
+            return new Rewrite(classBytes, recorder, hookRecorder, allocRecorder).run(probes, hooks, sites);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("malformed class file", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** One rewrite of one class: a cursor over the input plus the constant pool entries it appends. */
+    private static final class Rewrite {
+        private final byte[] in;
+        private final String recorder;
+        private final String hookRecorder;
+        private final String allocRecorder;
+        private int pos;
+
+        private int poolCount;
+        private int majorVersion;
+        private String[] utf8;
+        /** Name index of each {@code CONSTANT_Class} entry. */
+        private int[] classNames;
+        private final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        private final DataOutputStream appendOut = new DataOutputStream(appended);
+        private final Map<String, Integer> appendedUtf8 = new HashMap<>();
+        private final Map<String, Integer> appendedRefs = new HashMap<>();
+
+        private int enterRef;
+        private int exitRef;
+        private int allocRef;
+        private int throwableClass;
+        private int stackMapName;
+
+        Rewrite(byte[] in, String recorder, String hookRecorder, String allocRecorder) {
+            this.in = in;
+            this.recorder = recorder;
+            this.hookRecorder = hookRecorder;
+            this.allocRecorder = allocRecorder;
+        }
+
+        List<AllocSite> allocationSites(int firstId) {
+            if (u4(0) != 0xCAFEBABE) {
+                throw new IllegalArgumentException("not a class file");
+            }
+            pos = 8;
+            readPool();
+            pos += 8 + 2 * u2(pos + 6);   // access, this, super, interfaces
+            skipMembers();                 // fields
+            List<AllocSite> sites = new ArrayList<>();
+            int methods = u2(pos);
+            pos += 2;
+            for (int m = 0; m < methods; m++) {
+                String key = utf8[u2(pos + 2)] + utf8[u2(pos + 4)];
+                int attributes = u2(pos + 6);
+                pos += 8;
+                for (int a = 0; a < attributes; a++) {
+                    if ("Code".equals(utf8[u2(pos)])) {
+                        listSites(pos + 6, key, firstId + sites.size(), sites);
+                    }
+                    pos += 6 + u4(pos + 2);
+                }
+            }
+            return sites;
+        }
+
+        private void listSites(int start, String method, int nextId, List<AllocSite> sites) {
+            int codeLength = u4(start + 4);
+            int code = start + 8;
+            int p = code + codeLength;
+            p += 2 + 8 * u2(p);   // exception table
+            int[] lineStarts = new int[0];
+            int[] lines = new int[0];
+            int attributes = u2(p);
+            p += 2;
+            for (int i = 0; i < attributes; i++) {
+                if ("LineNumberTable".equals(utf8[u2(p)])) {
+                    int count = u2(p + 6);
+                    lineStarts = new int[count];
+                    lines = new int[count];
+                    for (int e = 0; e < count; e++) {
+                        lineStarts[e] = u2(p + 8 + 4 * e);
+                        lines[e] = u2(p + 10 + 4 * e);
+                    }
+                }
+                p += 6 + u4(p + 2);
+            }
+            int pc = 0;
+            while (pc < codeLength) {
+                String type = allocatedType(code, pc);
+                if (type != null) {
+                    int line = -1;
+                    int best = -1;
+                    for (int e = 0; e < lineStarts.length; e++) {
+                        if (lineStarts[e] <= pc && lineStarts[e] > best) {
+                            best = lineStarts[e];
+                            line = lines[e];
+                        }
+                    }
+                    sites.add(new AllocSite(nextId++, method, pc, type, line));
+                }
+                pc += instructionLength(code, pc);
+            }
+        }
+
+        /** What the instruction at {@code pc} allocates (see {@link AllocSite#type}), or null if nothing. */
+        private String allocatedType(int code, int pc) {
+            switch (in[code + pc] & 0xFF) {
+                case NEW:
+                    return className(u2(code + pc + 1));
+                case NEWARRAY:
+                    return "[" + "ZCFDBSIJ".charAt((in[code + pc + 1] & 0xFF) - 4);
+                case ANEWARRAY: {
+                    String element = className(u2(code + pc + 1));
+                    return element.startsWith("[") ? "[" + element : "[L" + element + ";";
+                }
+                case MULTIANEWARRAY:
+                    return className(u2(code + pc + 1));
+                default:
+                    return null;
+            }
+        }
+
+        private String className(int classIndex) {
+            return utf8[classNames[classIndex]];
+        }
+
+        byte[] run(Map<String, Integer> probes, List<Hook> hooks, List<AllocSite> sites) throws IOException {
+            Map<String, Map<Integer, List<Hook>>> hooksByMethod = new HashMap<>();
+            for (Hook hook : hooks) {
+                hooksByMethod.computeIfAbsent(hook.method, k -> new HashMap<>())
+                        .computeIfAbsent(hook.pc, k -> new ArrayList<>()).add(hook);
+            }
+            Map<String, Map<Integer, AllocSite>> sitesByMethod = new HashMap<>();
+            for (AllocSite site : sites) {
+                sitesByMethod.computeIfAbsent(site.method, k -> new HashMap<>()).put(site.pc, site);
+            }
+            if (u4(0) != 0xCAFEBABE) {
+                throw new IllegalArgumentException("not a class file");
+            }
+            majorVersion = u2(6);
+            pos = 8;
+            int poolStart = pos;
+            readPool();
+            int poolEnd = pos;
+
+            if (!probes.isEmpty()) {
+                enterRef = methodRef(recorder, "enter", "(I)V");
+                exitRef = methodRef(recorder, "exit", "(I)V");
+            }
+            if (!sites.isEmpty()) {
+                allocRef = methodRef(allocRecorder, "alloc", "(I)V");
+            }
+            throwableClass = classRef("java/lang/Throwable");
+            stackMapName = utf8("StackMapTable");
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream(in.length + 256);
+            DataOutputStream out = new DataOutputStream(body);
+
+            // access, this, super, interfaces
+            int interfaces = u2(poolEnd + 6);
+            int membersStart = poolEnd + 8 + 2 * interfaces;
+            out.write(in, poolEnd, membersStart - poolEnd);
+            pos = membersStart;
+
+            copyMembers(out);   // fields
+
+            Set<String> found = new HashSet<>();
+            int methods = u2(pos);
+            out.writeShort(methods);
+            pos += 2;
+            for (int m = 0; m < methods; m++) {
+                int start = pos;
+                int access = u2(pos);
+                String key = utf8[u2(pos + 2)] + utf8[u2(pos + 4)];
+                int attributes = u2(pos + 6);
+                pos += 8;
+                Integer probeId = probes.get(key);
+                Map<Integer, List<Hook>> methodHooks = hooksByMethod.get(key);
+                Map<Integer, AllocSite> methodSites = sitesByMethod.get(key);
+                if (probeId == null && methodHooks == null && methodSites == null) {
+                    skipAttributes(attributes);
+                    out.write(in, start, pos - start);
+                    continue;
+                }
+                if ((access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+                    throw new IllegalArgumentException(key + " has no bytecode to probe");
+                }
+                found.add(key);
+                out.write(in, start, 8);
+                for (int a = 0; a < attributes; a++) {
+                    int nameIndex = u2(pos);
+                    int length = u4(pos + 2);
+                    if ("Code".equals(utf8[nameIndex])) {
+                        String desc = utf8[u2(start + 4)];
+                        boolean hasReceiver = (access & ACC_STATIC) == 0 && !key.startsWith("<init>");
+                        byte[] code = rewriteCode(pos + 6, length, probeId,
+                                methodHooks == null ? Collections.emptyMap() : methodHooks,
+                                methodSites == null ? Collections.emptyMap() : methodSites, desc, hasReceiver,
+                                (access & ACC_STATIC) != 0);
+                        out.writeShort(nameIndex);
+                        out.writeInt(code.length);
+                        out.write(code);
+                    } else {
+                        out.write(in, pos, 6 + length);
+                    }
+                    pos += 6 + length;
+                }
+            }
+            for (String key : probes.keySet()) {
+                if (!found.contains(key)) {
+                    throw new IllegalArgumentException("no such method: " + key);
+                }
+            }
+            for (String key : hooksByMethod.keySet()) {
+                if (!found.contains(key)) {
+                    throw new IllegalArgumentException("no such method: " + key);
+                }
+            }
+            for (String key : sitesByMethod.keySet()) {
+                if (!found.contains(key)) {
+                    throw new IllegalArgumentException("no such method: " + key);
+                }
+            }
+            out.write(in, pos, in.length - pos);   // class attributes
+
+            int newCount = poolCount;
+            if (newCount > 0xFFFF) {
+                throw new IllegalStateException("constant pool overflow");
+            }
+            ByteArrayOutputStream result = new ByteArrayOutputStream(in.length + appended.size() + body.size());
+            DataOutputStream header = new DataOutputStream(result);
+            header.write(in, 0, 8);
+            header.writeShort(newCount);
+            header.write(in, poolStart + 2, poolEnd - poolStart - 2);
+            appended.writeTo(result);
+            body.writeTo(result);
+            return result.toByteArray();
+        }
+
+        // ---- constant pool ------------------------------------------------------------------------
+
+        private void readPool() {
+            poolCount = u2(pos);
+            utf8 = new String[poolCount];
+            classNames = new int[poolCount];
+            pos += 2;
+            for (int i = 1; i < poolCount; i++) {
+                int tag = in[pos] & 0xFF;
+                switch (tag) {
+                    case 1: {
+                        int length = u2(pos + 1);
+                        utf8[i] = decodeUtf8(pos + 3, length);
+                        pos += 3 + length;
+                        break;
+                    }
+                    case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                        pos += 5;
+                        break;
+                    case 5: case 6:
+                        pos += 9;
+                        i++;   // longs and doubles take two slots
+                        break;
+                    case 7:
+                        classNames[i] = u2(pos + 1);
+                        pos += 3;
+                        break;
+                    case 8: case 16: case 19: case 20:
+                        pos += 3;
+                        break;
+                    case 15:
+                        pos += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("bad constant pool tag " + tag + " at entry " + i);
+                }
+            }
+        }
+
+        private String decodeUtf8(int offset, int length) {
+            // Modified UTF-8; only ever compared against ASCII names here, so a plain decode is enough.
+            return new String(in, offset, length, StandardCharsets.UTF_8);
+        }
+
+        private int utf8(String value) throws IOException {
+            for (int i = 1; i < utf8.length; i++) {
+                if (value.equals(utf8[i])) {
+                    return i;
+                }
+            }
+            Integer index = appendedUtf8.get(value);
+            if (index != null) {
+                return index;
+            }
+            appendOut.writeByte(1);
+            appendOut.writeUTF(value);
+            appendedUtf8.put(value, poolCount);
+            return poolCount++;
+        }
+
+        private int classRef(String name) throws IOException {
+            Integer index = appendedRefs.get("C" + name);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            appendOut.writeByte(7);
+            appendOut.writeShort(nameIndex);
+            appendedRefs.put("C" + name, poolCount);
+            return poolCount++;
+        }
+
+        private int methodRef(String owner, String name, String descriptor) throws IOException {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = appendedRefs.get(key);
+            if (index == null) {
+                index = methodRef(classRef(owner), nameAndType(utf8(name), utf8(descriptor)));
+                appendedRefs.put(key, index);
+            }
+            return index;
+        }
+
+        private int nameAndType(int name, int descriptor) throws IOException {
+            appendOut.writeByte(12);
+            appendOut.writeShort(name);
+            appendOut.writeShort(descriptor);
+            return poolCount++;
+        }
+
+        private int methodRef(int owner, int nameAndType) throws IOException {
+            appendOut.writeByte(10);
+            appendOut.writeShort(owner);
+            appendOut.writeShort(nameAndType);
+            return poolCount++;
+        }
+
+        // ---- members ------------------------------------------------------------------------------
+
+        private void copyMembers(DataOutputStream out) throws IOException {
+            int start = pos;
+            int count = u2(pos);
+            pos += 2;
+            for (int i = 0; i < count; i++) {
+                int attributes = u2(pos + 6);
+                pos += 8;
+                skipAttributes(attributes);
+            }
+            out.write(in, start, pos - start);
+        }
+
+        private void skipMembers() {
+            int count = u2(pos);
+            pos += 2;
+            for (int i = 0; i < count; i++) {
+                int attributes = u2(pos + 6);
+                pos += 8;
+                skipAttributes(attributes);
+            }
+        }
+
+        private void skipAttributes(int count) {
+            for (int i = 0; i < count; i++) {
+                pos += 6 + u4(pos + 2);
+            }
+        }
+
+        // ---- code ---------------------------------------------------------------------------------
+
+        private byte[] rewriteCode(int start, int length, Integer probeId, Map<Integer, List<Hook>> hooks,
+                                   Map<Integer, AllocSite> sites, String descriptor, boolean hasReceiver,
+                                   boolean isStatic) throws IOException {
+            int maxStack = u2(start);
+            int maxLocals = u2(start + 2);
+            int codeLength = u4(start + 4);
+            int code = start + 8;
+            boolean probed = probeId != null;
+
+            // Lay out the new code: enter() first, hooks and exit() before their instructions, the catch-all
+            // handler last; allocation sites count right after their instruction. map[old offset] = new offset of
+            // the instruction, or of the first thing inserted before it, so branches to an instruction also run
+            // what was inserted there. own[old offset] = new offset of the instruction itself, for what names the
+            // instruction rather than a place to jump to (the `new` of an Uninitialized stack map type).
+            int[] map = new int[codeLength + 1];
+            int[] own = new int[codeLength + 1];
+            ByteArrayOutputStream newCode = new ByteArrayOutputStream(codeLength + 64);
+            List<int[]> branches = new ArrayList<>();   // [old pc, new pc] of instructions with branch offsets
+
+            if (probed) {
+                emitCall(newCode, probeId, enterRef);
+            }
+            int bodyStart = newCode.size();
+            Set<Integer> hooked = new HashSet<>();
+            Set<Integer> counted = new HashSet<>();
+            int pc = 0;
+            while (pc < codeLength) {
+                int opcode = in[code + pc] & 0xFF;
+                int size = instructionLength(code, pc);
+                map[pc] = newCode.size();
+                List<Hook> here = hooks.get(pc);
+                if (here != null) {
+                    hooked.add(pc);
+                    for (Hook hook : here) {
+                        emitHook(newCode, hook.id, descriptor, hasReceiver, isStatic);
+                    }
+                }
+                if (opcode >= 0xAC && opcode <= 0xB1 && probed) {   // ireturn .. return
+                    emitCall(newCode, probeId, exitRef);
+                    own[pc] = newCode.size();
+                    newCode.write(opcode);
+                } else if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+                    int at = newCode.size();
+                    own[pc] = at;
+                    branches.add(new int[]{pc, at});
+                    newCode.write(opcode);
+                    int oldPad = (4 - (pc + 1) % 4) % 4;
+                    int newPad = (4 - (at + 1) % 4) % 4;
+                    for (int p = 0; p < newPad; p++) {
+                        newCode.write(0);
+                    }
+                    // Operands are copied now and their offsets patched once every target is mapped
+                    newCode.write(in, code + pc + 1 + oldPad, size - 1 - oldPad);
+                } else {
+                    if (isBranch(opcode)) {
+                        branches.add(new int[]{pc, newCode.size()});
+                    }
+                    own[pc] = newCode.size();
+                    newCode.write(in, code + pc, size);
+                }
+                AllocSite site = sites.get(pc);
+                if (site != null) {
+                    if (allocatedType(code, pc) == null) {
+                        throw new IllegalArgumentException("no allocation at offset " + pc);
+                    }
+                    counted.add(pc);
+                    emitCall(newCode, site.id, allocRef);
+                }
+                pc += size;
+            }
+            map[codeLength] = newCode.size();
+            for (int hookPc : hooks.keySet()) {
+                if (!hooked.contains(hookPc)) {
+                    throw new IllegalArgumentException("no instruction at offset " + hookPc);
+                }
+            }
+            for (int sitePc : sites.keySet()) {
+                if (!counted.contains(sitePc)) {
+                    throw new IllegalArgumentException("no allocation at offset " + sitePc);
+                }
+            }
+            int handler = newCode.size();
+            if (probed) {
+                emitCall(newCode, probeId, exitRef);
+                newCode.write(ATHROW);
+            }
+
+            byte[] rewritten = newCode.toByteArray();
+            if (rewritten.length > 0xFFFF) {
+                throw new IllegalStateException("method too large to probe");
+            }
+            for (int[] branch : branches) {
+                relocateBranch(code, branch[0], rewritten, branch[1], map);
+            }
+
+            ByteArrayOutputStream attr = new ByteArrayOutputStream(length + 64);
+            DataOutputStream out = new DataOutputStream(attr);
+            int extraStack = Math.max(hooks.isEmpty() ? 0 : HOOK_STACK, sites.isEmpty() ? 0 : 1);
+            out.writeShort(probed ? Math.max(maxStack + Math.max(1, extraStack), 2) : maxStack + extraStack);
+            out.writeShort(maxLocals);
+            out.writeInt(rewritten.length);
+            out.write(rewritten);
+
+            int p = code + codeLength;
+            int exceptions = u2(p);
+            p += 2;
+            out.writeShort(probed ? exceptions + 1 : exceptions);
+            for (int i = 0; i < exceptions; i++) {
+                out.writeShort(map[u2(p)]);
+                out.writeShort(map[u2(p + 2)]);
+                out.writeShort(map[u2(p + 4)]);
+                out.writeShort(u2(p + 6));
+                p += 8;
+            }
+            if (probed) {
+                // Last, so the method's own handlers still see their exceptions first
+                out.writeShort(bodyStart);
+                out.writeShort(handler);
+                out.writeShort(handler);
+                out.writeShort(0);
+            }
+
+            int attributes = u2(p);
+            p += 2;
+            List<byte[]> kept = new ArrayList<>();
+            boolean hasStackMap = false;
+            for (int i = 0; i < attributes; i++) {
+                int nameIndex = u2(p);
+                int attrLength = u4(p + 2);
+                String name = utf8[nameIndex];
+                int data = p + 6;
+                p = data + attrLength;
+                byte[] relocated;
+                if ("StackMapTable".equals(name)) {
+                    relocated = relocateStackMap(data, map, own, probed ? handler : -1);
+                    hasStackMap = true;
+                } else if ("LineNumberTable".equals(name)) {
+                    relocated = relocateLineNumbers(data, map);
+                } else if ("LocalVariableTable".equals(name) || "LocalVariableTypeTable".equals(name)) {
+                    relocated = relocateLocals(data, map);
+                } else {
+                    // Other code attributes (type annotations, vendor data) carry offsets we cannot relocate
+                    continue;
+                }
+                kept.add(attribute(nameIndex, relocated));
+            }
+            if (!hasStackMap && probed && majorVersion >= 50) {
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                DataOutputStream f = new DataOutputStream(frames);
+                f.writeShort(1);
+                writeHandlerFrame(f, handler);
+                kept.add(attribute(stackMapName, frames.toByteArray()));
+            }
+            out.writeShort(kept.size());
+            for (byte[] a : kept) {
+                out.write(a);
+            }
+            return attr.toByteArray();
+        }
+
+        private void emitCall(ByteArrayOutputStream out, int probeId, int methodRef) {
+            out.write(SIPUSH);
+            out.write(probeId >>> 8);
+            out.write(probeId);
+            out.write(INVOKESTATIC);
+            out.write(methodRef >>> 8);
+            out.write(methodRef);
+        }
+
+        /**
+         * {@code hit(id, self, new Object[]{args...})}, boxing primitive arguments. Leaves the stack as it found
+         * it, so the hook can sit before any instruction.
+         */
+        private void emitHook(ByteArrayOutputStream out, int id, String descriptor, boolean hasReceiver,
+                              boolean isStatic) throws IOException {
+            List<String> params = parameterTypes(descriptor);
+            out.write(SIPUSH);
+            out.write(id >>> 8);
+            out.write(id);
+            out.write(hasReceiver ? ALOAD_0 : ACONST_NULL);
+            pushInt(out, params.size());
+            int objectClass = classRef("java/lang/Object");
+            out.write(ANEWARRAY);
+            out.write(objectClass >>> 8);
+            out.write(objectClass);
+            int slot = isStatic ? 0 : 1;
+            for (int i = 0; i < params.size(); i++) {
+                String type = params.get(i);
+                out.write(DUP);
+                pushInt(out, i);
+                loadAndBox(out, type, slot);
+                out.write(AASTORE);
+                slot += type.equals("J") || type.equals("D") ? 2 : 1;
+            }
+            int hit = methodRef(hookRecorder, "hit", "(ILjava/lang/Object;[Ljava/lang/Object;)V");
+            out.write(INVOKESTATIC);
+            out.write(hit >>> 8);
+            out.write(hit);
+        }
+
+        private void loadAndBox(ByteArrayOutputStream out, String type, int slot) throws IOException {
+            char kind = type.charAt(0);
+            int load;
+            String box = null;
+            switch (kind) {
+                case 'J': load = 0x16; box = "java/lang/Long"; break;
+                case 'F': load = 0x17; box = "java/lang/Float"; break;
+                case 'D': load = 0x18; box = "java/lang/Double"; break;
+                case 'L': case '[': load = 0x19; break;
+                case 'Z': load = 0x15; box = "java/lang/Boolean"; break;
+                case 'B': load = 0x15; box = "java/lang/Byte"; break;
+                case 'C': load = 0x15; box = "java/lang/Character"; break;
+                case 'S': load = 0x15; box = "java/lang/Short"; break;
+                default: load = 0x15; box = "java/lang/Integer"; break;
+            }
+            if (slot <= 0xFF) {
+                out.write(load);
+                out.write(slot);
+            } else {
+                out.write(WIDE);
+                out.write(load);
+                out.write(slot >>> 8);
+                out.write(slot);
+            }
+            if (box != null) {
+                int valueOf = methodRef(box, "valueOf", "(" + type + ")L" + box + ";");
+                out.write(INVOKESTATIC);
+                out.write(valueOf >>> 8);
+                out.write(valueOf);
+            }
+        }
+
+        private static void pushInt(ByteArrayOutputStream out, int value) {
+            if (value <= Byte.MAX_VALUE) {
+                out.write(BIPUSH);
+                out.write(value);
+            } else {
+                out.write(SIPUSH);
+                out.write(value >>> 8);
+                out.write(value);
+            }
+        }
+
+        private static List<String> parameterTypes(String descriptor) {
+            List<String> types = new ArrayList<>();
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                int startType = i;
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                i++;
+                types.add(descriptor.substring(startType, i));
+            }
+            return types;
+        }
+
+        private void relocateBranch(int code, int oldPc, byte[] out, int newPc, int[] map) {
+            int opcode = in[code + oldPc] & 0xFF;
+            if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+                int oldOperands = code + oldPc + 1 + (4 - (oldPc + 1) % 4) % 4;
+                int newOperands = newPc + 1 + (4 - (newPc + 1) % 4) % 4;
+                putInt(out, newOperands, target(oldPc, s4(oldOperands), map) - newPc);
+                int entries;
+                int firstOffset;
+                int stride;
+                if (opcode == TABLESWITCH) {
+                    entries = s4(oldOperands + 8) - s4(oldOperands + 4) + 1;
+                    firstOffset = 12;
+                    stride = 4;
+                } else {
+                    entries = s4(oldOperands + 4);
+                    firstOffset = 12;
+                    stride = 8;
+                }
+                for (int i = 0; i < entries; i++) {
+                    int at = firstOffset + i * stride;
+                    putInt(out, newOperands + at, target(oldPc, s4(oldOperands + at), map) - newPc);
+                }
+            } else if (opcode == GOTO_W || opcode == JSR_W) {
+                putInt(out, newPc + 1, target(oldPc, s4(code + oldPc + 1), map) - newPc);
+            } else {
+                int delta = target(oldPc, (short) u2(code + oldPc + 1), map) - newPc;
+                if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+                    throw new IllegalStateException("branch out of range after probing; method too large");
+                }
+                out[newPc + 1] = (byte) (delta >>> 8);
+                out[newPc + 2] = (byte) delta;
+            }
+        }
+
+        private static int target(int oldPc, int offset, int[] map) {
+            return map[oldPc + offset];
+        }
+
+        private byte[] relocateStackMap(int data, int[] map, int[] own, int handler) throws IOException {
+            int frames = u2(data);
+            int p = data + 2;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(handler >= 0 ? frames + 1 : frames);
+            int oldOffset = -1;
+            int newPrevious = -1;
+            for (int i = 0; i < frames; i++) {
+                int type = in[p] & 0xFF;
+                int delta;
+                int bodyStart;
+                if (type < 64) {
+                    delta = type;
+                    bodyStart = p + 1;
+                } else if (type < 128) {
+                    delta = type - 64;
+                    bodyStart = p + 1;
+                } else if (type >= 247) {
+                    delta = u2(p + 1);
+                    bodyStart = p + 3;
+                } else {
+                    throw new IllegalArgumentException("bad stack map frame type " + type);
+                }
+                oldOffset += delta + 1;
+                int newOffset = map[oldOffset];
+                int newDelta = newOffset - newPrevious - 1;
+                newPrevious = newOffset;
+
+                int end = frameEnd(type, bodyStart);
+                if (type < 64) {
+                    if (newDelta < 64) {
+                        out.writeByte(newDelta);
+                    } else {
+                        out.writeByte(251);   // same_frame_extended
+                        out.writeShort(newDelta);
+                    }
+                } else if (type < 128) {
+                    if (newDelta < 64) {
+                        out.writeByte(64 + newDelta);
+                    } else {
+                        out.writeByte(247);   // same_locals_1_stack_item_frame_extended
+                        out.writeShort(newDelta);
+                    }
+                    copyVerificationTypes(out, bodyStart, 1, own);
+                } else {
+                    out.writeByte(type);
+                    out.writeShort(newDelta);
+                    if (type == 247) {
+                        copyVerificationTypes(out, bodyStart, 1, own);
+                    } else if (type >= 252 && type <= 254) {
+                        copyVerificationTypes(out, bodyStart, type - 251, own);
+                    } else if (type == 255) {
+                        int locals = u2(bodyStart);
+                        out.writeShort(locals);
+                        int q = copyVerificationTypes(out, bodyStart + 2, locals, own);
+                        int stack = u2(q);
+                        out.writeShort(stack);
+                        copyVerificationTypes(out, q + 2, stack, own);
+                    }
+                }
+                p = end;
+            }
+            if (handler >= 0) {
+                writeHandlerFrame(out, handler - newPrevious - 1);
+            }
+            return bytes.toByteArray();
+        }
+
+        /** A full frame for the catch-all handler: no locals (all unused), the thrown Throwable on the stack. */
+        private void writeHandlerFrame(DataOutputStream out, int delta) throws IOException {
+            out.writeByte(255);
+            out.writeShort(delta);
+            out.writeShort(0);
+            out.writeShort(1);
+            out.writeByte(7);
+            out.writeShort(throwableClass);
+        }
+
+        private int frameEnd(int type, int bodyStart) {
+            if (type < 64 || (type >= 248 && type <= 251)) {
+                return bodyStart;
+            }
+            if (type < 128 || type == 247) {
+                return skipVerificationTypes(bodyStart, 1);
+            }
+            if (type <= 254) {
+                return skipVerificationTypes(bodyStart, type - 251);
+            }
+            int q = skipVerificationTypes(bodyStart + 2, u2(bodyStart));
+            return skipVerificationTypes(q + 2, u2(q));
+        }
+
+        private int skipVerificationTypes(int p, int count) {
+            for (int i = 0; i < count; i++) {
+                int tag = in[p] & 0xFF;
+                p += tag == 7 || tag == 8 ? 3 : 1;
+            }
+            return p;
+        }
+
+        private int copyVerificationTypes(DataOutputStream out, int p, int count, int[] own) throws IOException {
+            for (int i = 0; i < count; i++) {
+                int tag = in[p] & 0xFF;
+                out.writeByte(tag);
+                if (tag == 7) {
+                    out.writeShort(u2(p + 1));
+                    p += 3;
+                } else if (tag == 8) {
+                    out.writeShort(own[u2(p + 1)]);   // Uninitialized(offset of its `new` itself, not of a hook before it)
+                    p += 3;
+                } else {
+                    p += 1;
+                }
+            }
+            return p;
+        }
+
+        private byte[] relocateLineNumbers(int data, int[] map) throws IOException {
+            int count = u2(data);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + 4 * count);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(count);
+            for (int i = 0; i < count; i++) {
+                int entry = data + 2 + 4 * i;
+                out.writeShort(map[u2(entry)]);
+                out.writeShort(u2(entry + 2));
+            }
+            return bytes.toByteArray();
+        }
+
+        private byte[] relocateLocals(int data, int[] map) throws IOException {
+            int count = u2(data);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + 10 * count);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(count);
+            for (int i = 0; i < count; i++) {
+                int entry = data + 2 + 10 * i;
+                int startPc = u2(entry);
+                int endPc = startPc + u2(entry + 2);
+                out.writeShort(map[startPc]);
+                out.writeShort(map[endPc] - map[startPc]);
+                out.write(in, entry + 4, 6);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] attribute(int nameIndex, byte[] data) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(6 + data.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(nameIndex);
+            out.writeInt(data.length);
+            out.write(data);
+            return bytes.toByteArray();
+        }
+
+        private static boolean isBranch(int opcode) {
+            return (opcode >= 0x99 && opcode <= 0xA8) || opcode == 0xC6 || opcode == 0xC7
+                    || opcode == GOTO_W || opcode == JSR_W;
+        }
+
+        private int instructionLength(int code, int pc) {
+            int opcode = in[code + pc] & 0xFF;
+            switch (opcode) {
+                case 0x10: case 0x12: case 0x15: case 0x16: case 0x17: case 0x18: case 0x19:
+                case 0x36: case 0x37: case 0x38: case 0x39: case 0x3A: case 0xA9: case 0xBC:
+                    return 2;
+                case 0x11: case 0x13: case 0x14: case 0x84: case 0xB2: case 0xB3: case 0xB4: case 0xB5:
+                case 0xB6: case 0xB7: case 0xB8: case 0xBB: case 0xBD: case 0xC0: case 0xC1: case 0xC6: case 0xC7:
+                    return 3;
+                case 0xC5:
+                    return 4;
+                case 0xB9: case 0xBA: case GOTO_W: case JSR_W:
+                    return 5;
+                case WIDE:
+                    return (in[code + pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+                case TABLESWITCH: {
+                    int operands = code + pc + 1 + (4 - (pc + 1) % 4) % 4;
+                    int entries = s4(operands + 8) - s4(operands + 4) + 1;
+                    return operands + 12 + 4 * entries - (code + pc);
+                }
+                case LOOKUPSWITCH: {
+                    int operands = code + pc + 1 + (4 - (pc + 1) % 4) % 4;
+                    return operands + 8 + 8 * s4(operands + 4) - (code + pc);
+                }
+                default:
+                    if (opcode >= 0x99 && opcode <= 0xA8) {
+                        return 3;
+                    }
+                    if (opcode > JSR_W) {
+                        throw new IllegalArgumentException("bad opcode " + opcode + " at " + pc);
+                    }
+                    return 1;
+            }
+        }
+
+        // ---- byte access --------------------------------------------------------------------------
+
+        private int u2(int offset) {
+            return ((in[offset] & 0xFF) << 8) | (in[offset + 1] & 0xFF);
+        }
+
+        private int u4(int offset) {
+            return (u2(offset) << 16) | u2(offset + 2);
+        }
+
+        private int s4(int offset) {
+            return u4(offset);
+        }
+
+        private static void putInt(byte[] out, int offset, int value) {
+            out[offset] = (byte) (value >>> 24);
+            out[offset + 1] = (byte) (value >>> 16);
+            out[offset + 2] = (byte) (value >>> 8);
+            out[offset + 3] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.tonic.live.probe;
+
+import com.tonic.live.protocol.LatencyBuckets;
+import com.tonic.live.protocol.ProbeSample;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A sliding window over one probe's interval histograms ({@link ProbeSample}s, one per agent report), answering
+ * "calls, mean, p50/p99 and max over the last N reports". Samples are deltas, so the window keeps a running merged
+ * histogram: each new sample is added and the one falling out of the window subtracted. Not thread-safe.
+ */
+public final class ProbeWindow {
+
+    private final int capacity;
+    private final Deque<ProbeSample> samples = new ArrayDeque<>();
+    private final long[] merged = new long[LatencyBuckets.COUNT];
+    private long calls;
+    private long totalNanos;
+
+    /** A window over the last {@code capacity} samples (at one report per second, {@code 60} is a minute). */
+    public ProbeWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(ProbeSample sample) {
+        samples.addLast(sample);
+        apply(sample, 1);
+        if (samples.size() > capacity) {
+            apply(samples.removeFirst(), -1);
+        }
+    }
+
+    private void apply(ProbeSample sample, int sign) {
+        for (int i = 0; i < sample.buckets.length; i++) {
+            merged[sample.buckets[i]] += sign * sample.counts[i];
+        }
+        calls += sign * sample.calls;
+        totalNanos += sign * sample.totalNanos;
+    }
+
+    /** Number of samples currently in the window. */
+    public int size() {
+        return samples.size();
+    }
+
+    public long calls() {
+        return calls;
+    }
+
+    /** Calls per sample (per second at the agent's reporting rate), averaged over the window. */
+    public double callsPerSample() {
+        return samples.isEmpty() ? 0 : (double) calls / samples.size();
+    }
+
+    public double meanNanos() {
+        return calls == 0 ? 0 : (double) totalNanos / calls;
+    }
+
+    /** The largest single call in the window. */
+    public long maxNanos() {
+        long max = 0;
+        for (ProbeSample sample : samples) {
+            max = Math.max(max, sample.maxNanos);
+        }
+        return max;
+    }
+
+    /**
+     * The latency at {@code percentile} (0-100): the upper bound of the bucket holding that rank, capped at the
+     * window's maximum. Returns 0 when the window has no calls.
+     */
+    public long percentileNanos(double percentile) {
+        if (calls <= 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(calls * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int b = 0; b < merged.length; b++) {
+            seen += merged[b];
+            if (seen >= rank) {
+                return Math.min(LatencyBuckets.upperBound(b), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+}
@@ -0,0 +1,121 @@
+package com.tonic.live.probe;
+
+import com.tonic.live.protocol.SampleDelta;
+
+import java.util.Arrays;
+
+/**
+ * The client-side copy of one stack-sampler run: the agent's frame table and call-path trie, rebuilt from its
+ * {@link SampleDelta} reports, with self-sample counts summed. Node 0 is the root and every node's parent has a
+ * smaller id, so inclusive counts come from a single backwards pass ({@link #totals()}). Not thread-safe.
+ */
+public final class SampleProfile {
+
+    private String[] frameClasses = new String[256];
+    private String[] frameMethods = new String[256];
+    private int[] frameLines = new int[256];
+    private int frameCount;
+
+    private int[] nodeParent = new int[1024];
+    private int[] nodeFrame = new int[1024];
+    private long[] nodeSelf = new long[1024];
+    private int nodeCount = 1;
+
+    private long samples;
+
+    public void apply(SampleDelta delta) {
+        for (int i = 0; i < delta.frameIds.length; i++) {
+            int id = delta.frameIds[i];
+            if (id >= frameClasses.length) {
+                int size = Math.max(id + 1, frameClasses.length * 2);
+                frameClasses = Arrays.copyOf(frameClasses, size);
+                frameMethods = Arrays.copyOf(frameMethods, size);
+                frameLines = Arrays.copyOf(frameLines, size);
+            }
+            frameClasses[id] = delta.frameClasses[i];
+            frameMethods[id] = delta.frameMethods[i];
+            frameLines[id] = delta.frameLines[i];
+            frameCount = Math.max(frameCount, id + 1);
+        }
+        for (int i = 0; i < delta.nodeIds.length; i++) {
+            int id = delta.nodeIds[i];
+            ensureNode(id);
+            nodeParent[id] = delta.nodeParents[i];
+            nodeFrame[id] = delta.nodeFrames[i];
+            nodeCount = Math.max(nodeCount, id + 1);
+        }
+        for (int i = 0; i < delta.countNodes.length; i++) {
+            int id = delta.countNodes[i];
+            ensureNode(id);
+            nodeSelf[id] += delta.counts[i];
+        }
+        samples += delta.samples;
+    }
+
+    private void ensureNode(int id) {
+        if (id >= nodeParent.length) {
+            int size = Math.max(id + 1, nodeParent.length * 2);
+            nodeParent = Arrays.copyOf(nodeParent, size);
+            nodeFrame = Arrays.copyOf(nodeFrame, size);
+            nodeSelf = Arrays.copyOf(nodeSelf, size);
+        }
+    }
+
+    /** Thread stacks sampled so far. */
+    public long samples() {
+        return samples;
+    }
+
+    /** Number of nodes, including the root. */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    public int parent(int node) {
+        return nodeParent[node];
+    }
+
+    public int frame(int node) {
+        return nodeFrame[node];
+    }
+
+    /** Samples whose innermost frame was this node's. */
+    public long self(int node) {
+        return nodeSelf[node];
+    }
+
+    /** Declaring class of a frame, internal form. */
+    public String frameClass(int frame) {
+        return frameClasses[frame];
+    }
+
+    public String frameMethod(int frame) {
+        return frameMethods[frame];
+    }
+
+    public int frameLine(int frame) {
+        return frameLines[frame];
+    }
+
+    /** Inclusive samples per node (the node's own plus all of its descendants'), indexed by node id. */
+    public long[] totals() {
+        long[] totals = Arrays.copyOf(nodeSelf, nodeCount);
+        for (int node = nodeCount - 1; node > 0; node--) {
+            totals[nodeParent[node]] += totals[node];
+        }
+        return totals;
+    }
+
+    public void clear() {
+        Arrays.fill(frameClasses, 0, frameCount, null);
+        Arrays.fill(frameMethods, 0, frameCount, null);
+        Arrays.fill(nodeSelf, 0, nodeCount, 0);
+        frameCount = 0;
+        nodeCount = 1;
+        samples = 0;
+    }
+}
@@ -0,0 +1,21 @@
+package com.tonic.live.protocol;
+
+/**
+ * One second of allocation-site counts ({@link LiveProtocol#EVT_ALLOC_SITES}): the busiest sites, busiest first, as
+ * parallel arrays of site ids and estimated allocations (sampled hits times the sample interval). Allocations at
+ * sites outside the top are summed into {@link #otherAllocations}. Counts are deltas since the previous batch.
+ */
+public final class AllocSiteBatch {
+
+    public final int sampleInterval;
+    public final long otherAllocations;
+    public final int[] siteIds;
+    public final long[] allocations;
+
+    public AllocSiteBatch(int sampleInterval, long otherAllocations, int[] siteIds, long[] allocations) {
+        this.sampleInterval = sampleInterval;
+        this.otherAllocations = otherAllocations;
+        this.siteIds = siteIds;
+        this.allocations = allocations;
+    }
+}
@@ -0,0 +1,20 @@
+package com.tonic.live.protocol;
+
+/**
+ * Classes the target loaded while capture was armed ({@link LiveProtocol#EVT_CLASSES_LOADED}), in load order, as
+ * parallel arrays. A null {@link #bytes} entry was spilled by the agent's full capture queue: the class loaded,
+ * but its bytes must be fetched with {@link LiveProtocol#MSG_GET_CLASS_BYTES}. {@link #dropped} counts classes
+ * lost entirely since the previous batch.
+ */
+public final class ClassLoadBatch {
+
+    public final int dropped;
+    public final String[] names;
+    public final byte[][] bytes;
+
+    public ClassLoadBatch(int dropped, String[] names, byte[][] bytes) {
+        this.dropped = dropped;
+        this.names = names;
+        this.bytes = bytes;
+    }
+}
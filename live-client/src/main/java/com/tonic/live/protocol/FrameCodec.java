@@ -0,0 +1,144 @@
+package com.tonic.live.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact framing for agent-to-client frames, negotiated in {@link LiveProtocol#MSG_HELLO}
+ * ({@link LiveProtocol#HELLO_COMPACT_FRAMES} requested, {@link LiveProtocol#CAP_COMPACT_FRAMES} granted). After the
+ * HELLO reply every frame body starts with an encoding byte: {@link #RAW} and the payload as-is, or
+ * {@link #DEFLATED}, the payload's length and the next chunk of one deflate stream that lives as long as the
+ * connection.
+ *
+ * <p>Because the stream is never reset, its 32 KB window acts as a string table shared by consecutive frames:
+ * a package prefix, a thread name or a stack frame already sent is written again as a short back-reference, in
+ * the same frame or a later one, and the fixed-width integers' zero bytes cost almost nothing. A preset
+ * {@link #DICTIONARY} of common JDK names seeds the table for the first frames. Frames below
+ * {@link #MIN_DEFLATE} bytes skip compression (acks, single values) and do not enter the window.
+ *
+ * <p>The two sides must see the deflated chunks in the same order, so the encoder runs under the agent's frame
+ * write lock and the decoder on the client's reader thread. Neither is thread-safe.
+ */
+public final class FrameCodec {
+
+    public static final int RAW = 0;
+    public static final int DEFLATED = 1;
+    /** Payloads shorter than this are sent raw. */
+    public static final int MIN_DEFLATE = 256;
+
+    /** Most frequent last: deflate reaches nearer dictionary bytes with shorter distances. */
+    private static final byte[] DICTIONARY = String.join("",
+            "Ljava/lang/Class;", "Ljava/lang/Throwable;", "java/util/function/", "java/util/stream/",
+            "java/lang/ref/", "java/lang/reflect/", "java/lang/invoke/", "java/security/", "java/time/",
+            "java/net/", "java/nio/", "java/io/", "javax/", "sun/nio/", "sun/reflect/", "sun/security/",
+            "jdk/internal/misc/", "jdk/internal/reflect/", "jdk/internal/", "com/sun/", "SourceFile",
+            "LineNumberTable", "LocalVariableTable", "StackMapTable", "Code", "<clinit>", "<init>", ".java",
+            "TIMED_WAITING", "WAITING", "BLOCKED", "RUNNABLE", "Ljava/util/List;", "Ljava/util/Map;",
+            "Ljava/lang/Object;", "Ljava/lang/String;", "java/util/concurrent/locks/",
+            "java/util/concurrent/atomic/", "java/util/concurrent/", "java/util/", "java/lang/")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private FrameCodec() {
+    }
+
+    /** Agent side: turns payloads into v2 frame bodies. */
+    public static final class Encoder {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final byte[] chunk = new byte[8192];
+
+        public Encoder() {
+            deflater.setDictionary(DICTIONARY);
+        }
+
+        public byte[] encode(byte[] payload) {
+            out.reset();
+            if (payload.length < MIN_DEFLATE) {
+                out.write(RAW);
+                out.write(payload, 0, payload.length);
+                return out.toByteArray();
+            }
+            out.write(DEFLATED);
+            int n = payload.length;
+            out.write(n >>> 24);
+            out.write(n >>> 16);
+            out.write(n >>> 8);
+            out.write(n);
+            deflater.setInput(payload);
+            int written;
+            do {
+                written = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                out.write(chunk, 0, written);
+            } while (written == chunk.length || !deflater.needsInput());
+            return out.toByteArray();
+        }
+
+        /** Frees the native deflate state; the encoder is unusable afterwards. */
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    /** Client side: turns v2 frame bodies back into payloads. */
+    public static final class Decoder {
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] scratch = new byte[1];
+
+        public Decoder() {
+            inflater.setDictionary(DICTIONARY);
+        }
+
+        public byte[] decode(byte[] body) throws IOException {
+            if (body.length == 0) {
+                throw new IOException("empty compact frame");
+            }
+            if (body[0] == RAW) {
+                byte[] payload = new byte[body.length - 1];
+                System.arraycopy(body, 1, payload, 0, payload.length);
+                return payload;
+            }
+            if (body[0] != DEFLATED || body.length < 5) {
+                throw new IOException("unknown frame encoding " + (body[0] & 0xFF));
+            }
+            int n = (body[1] & 0xFF) << 24 | (body[2] & 0xFF) << 16 | (body[3] & 0xFF) << 8 | (body[4] & 0xFF);
+            if (n < 0 || n > (64 << 20)) {
+                throw new IOException("implausible inflated frame length: " + n);
+            }
+            byte[] payload = new byte[n];
+            inflater.setInput(body, 5, body.length - 5);
+            try {
+                int read = 0;
+                while (read < n) {
+                    int r = inflater.inflate(payload, read, n - read);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary() || inflater.finished())) {
+                        throw new IOException("truncated compact frame");
+                    }
+                    read += r;
+                }
+                // the sync-flush marker after the payload produces no output but must be consumed before the
+                // next setInput replaces the input
+                while (inflater.getRemaining() > 0) {
+                    int remaining = inflater.getRemaining();
+                    if (inflater.inflate(scratch) != 0) {
+                        throw new IOException("compact frame longer than declared");
+                    }
+                    if (inflater.getRemaining() == remaining) {
+                        throw new IOException("corrupt compact frame");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("corrupt compact frame", e);
+            }
+            return payload;
+        }
+
+        /** Frees the native inflate state; the decoder is unusable afterwards. */
+        public void close() {
+            inflater.end();
+        }
+    }
+}
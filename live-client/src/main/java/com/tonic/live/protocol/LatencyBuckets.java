@@ -0,0 +1,45 @@
+package com.tonic.live.protocol;
+
+/**
+ * The log-linear bucket layout shared by the agent's probe histograms and the client that reads them: exact
+ * buckets below 64ns, then 32 linear sub-buckets per power of two, so any recorded value is within about 3% of
+ * its bucket's bounds. Only bucket indexes travel on the wire ({@link LiveProtocol#EVT_PROBE_STATS}).
+ *
+ * <p>The agent also loads this class from the bootstrap class path, so it must only depend on the JDK.
+ */
+public final class LatencyBuckets {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /** Number of buckets; covers every non-negative {@code long}. */
+    public static final int COUNT = (63 - SUB_BITS + 1) * SUB_COUNT;
+
+    private LatencyBuckets() {
+    }
+
+    /** The bucket holding {@code nanos}; negative values (clock oddities) count as zero. */
+    public static int index(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return nanos <= 0 ? 0 : (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** The smallest value in bucket {@code index}. */
+    public static long lowerBound(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+
+    /** The largest value in bucket {@code index}, the value reported for a percentile landing in it. */
+    public static long upperBound(int index) {
+        return index + 1 >= COUNT ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+    }
+}
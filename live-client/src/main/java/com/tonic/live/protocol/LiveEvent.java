@@ -2,14 +2,21 @@ package com.tonic.live.protocol;
 
 import lombok.Getter;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
- * An asynchronous event pushed by the agent. With the pure-Java agent the only streamed event is a
- * runtime class load ({@link Kind#CLASS_LOADED}); {@link Kind#VM_DEATH} is synthesized client-side when
- * the connection drops.
+ * An asynchronous event pushed by the agent: a runtime class load ({@link Kind#CLASS_LOADED}) or a batch of them
+ * ({@link Kind#CLASSES_LOADED}), a round of method-probe histograms ({@link Kind#PROBE_STATS}), a batch of
+ * logpoint hits ({@link Kind#LOGPOINT_HITS}), a stack-sampler report ({@link Kind#SAMPLES}), a batch of the
+ * metrics stream ({@link Kind#METRICS}) or a second of allocation-site counts ({@link Kind#ALLOC_SITES});
+ * {@link Kind#VM_DEATH} is synthesized client-side when the connection drops.
  */
 @Getter
 public final class LiveEvent {
-    public enum Kind { VM_DEATH, CLASS_LOADED }
+    public enum Kind {
+        VM_DEATH, CLASS_LOADED, PROBE_STATS, LOGPOINT_HITS, SAMPLES, METRICS, ALLOC_SITES, CLASSES_LOADED
+    }
 
     private final Kind kind;
     /**
@@ -25,11 +32,45 @@ public final class LiveEvent {
      *  otherwise.
      */
     private final byte[] classBytes;
+    /** One interval's histogram per enabled probe for {@link Kind#PROBE_STATS}; empty otherwise. */
+    private final List<ProbeSample> probeSamples;
+    /** Hits in the order they happened for {@link Kind#LOGPOINT_HITS}; empty otherwise. */
+    private final List<LogpointHit> logpointHits;
+    /** Hits the agent's ring overwrote before this batch was sent ({@link Kind#LOGPOINT_HITS}); 0 otherwise. */
+    private final int droppedHits;
+    /** The sampler's report for {@link Kind#SAMPLES}; null otherwise. */
+    private final SampleDelta sampleDelta;
+    /** The sampled rows for {@link Kind#METRICS}; null otherwise. */
+    private final MetricsBatch metricsBatch;
+    /** The busiest allocation sites for {@link Kind#ALLOC_SITES}; null otherwise. */
+    private final AllocSiteBatch allocSites;
+    /** The captured classes for {@link Kind#CLASSES_LOADED}; null otherwise. */
+    private final ClassLoadBatch classLoads;
 
-    private LiveEvent(Kind kind, String className, byte[] classBytes) {
+    private LiveEvent(Kind kind, String className, byte[] classBytes, List<ProbeSample> probeSamples,
+                      List<LogpointHit> logpointHits, int droppedHits, SampleDelta sampleDelta,
+                      MetricsBatch metricsBatch, AllocSiteBatch allocSites) {
+        this(kind, className, classBytes, probeSamples, logpointHits, droppedHits, sampleDelta, metricsBatch,
+                allocSites, null);
+    }
+
+    private LiveEvent(Kind kind, String className, byte[] classBytes, List<ProbeSample> probeSamples,
+                      List<LogpointHit> logpointHits, int droppedHits, SampleDelta sampleDelta,
+                      MetricsBatch metricsBatch, AllocSiteBatch allocSites, ClassLoadBatch classLoads) {
         this.kind = kind;
         this.className = className;
         this.classBytes = classBytes;
+        this.probeSamples = probeSamples;
+        this.logpointHits = logpointHits;
+        this.droppedHits = droppedHits;
+        this.sampleDelta = sampleDelta;
+        this.metricsBatch = metricsBatch;
+        this.allocSites = allocSites;
+        this.classLoads = classLoads;
+    }
+
+    private LiveEvent(Kind kind, String className, byte[] classBytes) {
+        this(kind, className, classBytes, Collections.emptyList(), Collections.emptyList(), 0, null, null, null);
     }
 
     public static LiveEvent vmDeath() {
@@ -41,11 +82,63 @@ public final class LiveEvent {
         return new LiveEvent(Kind.CLASS_LOADED, internalName, classBytes);
     }
 
+    /** A batch of runtime class-load captures. */
+    public static LiveEvent classesLoaded(ClassLoadBatch batch) {
+        return new LiveEvent(Kind.CLASSES_LOADED, "", null, Collections.emptyList(), Collections.emptyList(), 0,
+                null, null, null, batch);
+    }
+
+    /** A round of probe histograms, one per enabled probe. */
+    public static LiveEvent probeStats(List<ProbeSample> samples) {
+        return new LiveEvent(Kind.PROBE_STATS, "", null, samples, Collections.emptyList(), 0, null, null, null);
+    }
+
+    /** A batch of logpoint hits, plus how many were lost to the agent's full ring since the last batch. */
+    public static LiveEvent logpointHits(List<LogpointHit> hits, int dropped) {
+        return new LiveEvent(Kind.LOGPOINT_HITS, "", null, Collections.emptyList(), hits, dropped, null, null, null);
+    }
+
+    /** One stack-sampler report. */
+    public static LiveEvent samples(SampleDelta delta) {
+        return new LiveEvent(Kind.SAMPLES, "", null, Collections.emptyList(), Collections.emptyList(), 0, delta,
+                null, null);
+    }
+
+    /** One batch of the metrics stream. */
+    public static LiveEvent metrics(MetricsBatch batch) {
+        return new LiveEvent(Kind.METRICS, "", null, Collections.emptyList(), Collections.emptyList(), 0, null,
+                batch, null);
+    }
+
+    /** One second of allocation-site counts. */
+    public static LiveEvent allocSites(AllocSiteBatch batch) {
+        return new LiveEvent(Kind.ALLOC_SITES, "", null, Collections.emptyList(), Collections.emptyList(), 0, null,
+                null, batch);
+    }
+
     @Override
     public String toString() {
         if (kind == Kind.VM_DEATH) {
             return "VM_DEATH";
         }
+        if (kind == Kind.PROBE_STATS) {
+            return "PROBE_STATS (" + probeSamples.size() + " probes)";
+        }
+        if (kind == Kind.SAMPLES) {
+            return "SAMPLES (" + sampleDelta.samples + " stacks)";
+        }
+        if (kind == Kind.METRICS) {
+            return "METRICS (" + metricsBatch.rows.length + " rows, " + metricsBatch.dropped + " dropped)";
+        }
+        if (kind == Kind.ALLOC_SITES) {
+            return "ALLOC_SITES (" + allocSites.siteIds.length + " sites)";
+        }
+        if (kind == Kind.CLASSES_LOADED) {
+            return "CLASSES_LOADED (" + classLoads.names.length + " classes, " + classLoads.dropped + " dropped)";
+        }
+        if (kind == Kind.LOGPOINT_HITS) {
+            return "LOGPOINT_HITS (" + logpointHits.size() + " hits, " + droppedHits + " dropped)";
+        }
         return "CLASS_LOADED " + className + " (" + (classBytes == null ? 0 : classBytes.length) + " bytes)";
     }
 }
@@ -6,19 +6,21 @@ package com.tonic.live.protocol;
  * <p>Framing: each message is {@code [uint32 big-endian length][payload]}, {@code payload[0]} = type, the
  * rest is the body. Integers big-endian; strings {@code [uint16 len][UTF-8]}; class names internal form
  * ({@code com/foo/Bar}). Types {@code >= 0x40} are unsolicited events; {@code MSG_ERROR} (0x7F) is a
- * response to the in-flight request (the client demuxes events as {@code [0x40, 0x7F)}).
+ * response to the in-flight request (the client demuxes events as {@code [0x40, 0x7F)}). When compact frames
+ * are negotiated in HELLO, agent-to-client frames after the HELLO reply wrap the payload as described in
+ * {@link FrameCodec}; requests stay plain.
  */
 public final class LiveProtocol {
 
     private LiveProtocol() {
     }
 
-    public static final int MSG_HELLO = 0x01;            // resp: u32 version, u32 capBits, u32 classCount
+    public static final int MSG_HELLO = 0x01;            // req: [u8 helloFlags]; resp: u32 version, u32 capBits, u32 classCount
     public static final int MSG_LIST_CLASSES = 0x02;     // resp: u32 count, [string name, u16 accessFlags]*
     public static final int MSG_GET_CLASS_BYTES = 0x03;  // req: string name; resp: u32 len, bytes
     public static final int MSG_GET_THREADS = 0x04;      // resp: u32 count, [u64 id, string name, u32 state]*
     public static final int MSG_REDEFINE_CLASS = 0x0B;   // req: string name, u32 len, bytes; resp: u8 ok
-    public static final int MSG_SET_CAPTURE_LOADS = 0x0E;// req: u8 on; resp: u8 ok (push EVT_CLASS_LOADED)
+    public static final int MSG_SET_CAPTURE_LOADS = 0x0E;// req: u8 captureFlags; resp: u8 ok (push EVT_CLASS_LOADED / EVT_CLASSES_LOADED)
     public static final int MSG_GET_CONTENTION = 0x16;   // resp: u32 count, [u64 tid, str tname, str monCls, u64 ownerId, str ownerName]*
     public static final int MSG_HEAP_DUMP = 0x17;        // req: empty; resp: str hprofFilePath (HotSpot heap dump)
     public static final int MSG_GET_STATICS = 0x18;      // req: str class; resp: u32 count, [str name, str typeDesc, str value, u8 kind]*
@@ -32,6 +34,17 @@ public final class LiveProtocol {
     public static final int MSG_JFR_STOP = 0x20;         // req: empty; resp: str localJfrPath (stops + clears the active recording)
     public static final int MSG_JFR_SNAPSHOT = 0x21;     // req: empty; resp: str localJfrPath (recording keeps running)
 
+    // Metrics subscription: the agent samples the MXBeans every periodMs into a ring and pushes the rows once a
+    // second as EVT_METRICS, instead of the client polling MSG_GET_METRICS. Subscribing again changes the period.
+    public static final int MSG_METRICS_SUBSCRIBE = 0x22;   // req: u32 periodMs; resp: u8 ok
+    public static final int MSG_METRICS_UNSUBSCRIBE = 0x23; // req: empty; resp: u8 ok
+
+    // Allocation sites: JStudio rewrites the class with AllocRecorder.alloc(siteId) calls after its new/newarray
+    // instructions and redefines it; the agent counts about one in sampleInterval allocations per thread and streams
+    // the busiest sites once a second as EVT_ALLOC_SITES. The latest sampleInterval applies to every tracked class.
+    public static final int MSG_ALLOC_TRACK = 0x24;   // req: str class,u32 sampleInterval; resp: u32 len,bytes (the class before any probe/logpoint/site)
+    public static final int MSG_ALLOC_UNTRACK = 0x25; // req: str class; resp: u8 ok
+
     // Live value scanner (Cheat-Engine-style): an agent-resident scan session holding live (object,field) handles.
     // A "location" wire record is: u64 id, str declaringClass, str fieldName, str fieldDesc, str displayPath,
     // str type, str value, u8 flags (FLAG_PINNED|FLAG_FROZEN|FLAG_COLLECTED). A "page" is: u32 total, u8 truncated,
@@ -50,6 +63,22 @@ public final class LiveProtocol {
     public static final int MSG_INSTANCE_FIELDS = 0x38;    // req: u64 handleId; resp: u32 count,[str name,str typeDesc,str display,u64 refId,u8 editable]*
     public static final int MSG_SET_INSTANCE_FIELD = 0x39; // req: u64 handleId,str field,u8 isNull,str value; resp: str newValue
 
+    // Method timing probes: JStudio rewrites the class with ProbeRecorder enter/exit calls and redefines it; the
+    // agent keeps a latency histogram per probe id and streams EVT_PROBE_STATS once a second while any are enabled.
+    public static final int MSG_PROBE_ENABLE = 0x3A;  // req: u32 probeId,str class; resp: u32 len,bytes (the class before any probe)
+    public static final int MSG_PROBE_DISABLE = 0x3B; // req: u32 probeId; resp: u8 ok
+
+    // Logpoints / conditional breakpoints: JStudio rewrites the class with LogpointRecorder.hit calls at the chosen
+    // offsets and redefines it; the agent runs each logpoint's compiled snippet in-process on every hit and streams
+    // the hits in batches as EVT_LOGPOINT_HITS. A snippet class has public static Object run(Object self, Object[] args).
+    public static final int MSG_LOGPOINT_SET = 0x3C;   // req: u32 id,str class,u8 flags,u32 classCount,[str name,u32 len,bytes]*,str mainName; resp: u32 len,bytes (the class before any probe/logpoint)
+    public static final int MSG_LOGPOINT_CLEAR = 0x3D; // req: u32 id; resp: u8 ok
+
+    // Stack sampling (a CPU profile without JFR): the agent samples runnable threads' stacks into a call-path trie
+    // and streams what changed once a second as EVT_SAMPLES. Starting discards the previous profile.
+    public static final int MSG_SAMPLER_START = 0x3E;  // req: u32 intervalMs,u32 maxDepth; resp: u8 ok
+    public static final int MSG_SAMPLER_STOP = 0x3F;   // req: empty; resp: u8 ok (remaining samples are sent first)
+
     public static final int MSG_ERROR = 0x7F;            // resp only: string message
 
     // Scanner value types (u8) - which kind of field to scan + how to parse the value strings.
@@ -95,12 +124,58 @@ public final class LiveProtocol {
     public static final int STATIC_REFERENCE = 3;        // object - only settable to null
 
     public static final int EVT_CLASS_LOADED = 0x43;     // string name, u32 len, bytes (runtime class capture)
+    public static final int EVT_PROBE_STATS = 0x44;      // u32 count, [u32 probeId, u64 calls, u64 totalNanos, u64 maxNanos, u32 n, [u16 bucket, u64 count]*]*
+    public static final int EVT_LOGPOINT_HITS = 0x45;    // u32 dropped, u32 count, [u32 id, u64 timeMillis, str thread, str message]*
+    public static final int EVT_SAMPLES = 0x46;          // u32 samples, u32 n, [u32 frameId, str cls, str method, i32 line]*, u32 n, [u32 nodeId, u32 parent, u32 frameId]*, u32 n, [u32 nodeId, u32 selfDelta]* (node 0 = root)
+    public static final int EVT_METRICS = 0x47;          // u32 dropped, u32 fields, u32 rows, [varint value]* per row (zigzag; row 0 absolute, later rows minus the row before)
+    public static final int EVT_ALLOC_SITES = 0x48;      // u32 sampleInterval, u64 otherAllocs, u32 n, [u32 siteId, u64 allocs]* (busiest first; counts are sampled hits x interval)
+    public static final int EVT_CLASSES_LOADED = 0x49;   // u32 dropped, u32 count, [str name, u32 len, bytes]* (len 0 = bytes spilled, fetch with MSG_GET_CLASS_BYTES)
+
+    // EVT_METRICS row fields, in wire order. Agents may append fields; clients ignore the ones they do not know.
+    public static final int METRIC_UPTIME_MS = 0;
+    public static final int METRIC_HEAP_USED = 1;
+    public static final int METRIC_HEAP_COMMITTED = 2;
+    public static final int METRIC_HEAP_MAX = 3;
+    public static final int METRIC_NON_HEAP_USED = 4;
+    public static final int METRIC_METASPACE_USED = 5;        // -1 without a Metaspace pool
+    public static final int METRIC_METASPACE_COMMITTED = 6;
+    public static final int METRIC_PROCESS_CPU = 7;           // load in 1/10000ths, -1 if unavailable
+    public static final int METRIC_SYSTEM_CPU = 8;
+    public static final int METRIC_PROCESSORS = 9;
+    public static final int METRIC_THREADS = 10;
+    public static final int METRIC_DAEMON_THREADS = 11;
+    public static final int METRIC_PEAK_THREADS = 12;
+    public static final int METRIC_LOADED_CLASSES = 13;
+    public static final int METRIC_UNLOADED_CLASSES = 14;
+    public static final int METRIC_GC_COUNT = 15;             // summed over all collectors
+    public static final int METRIC_GC_TIME_MS = 16;
+    public static final int METRIC_FIELDS = 17;
+
+    // MSG_SET_CAPTURE_LOADS flags (u8 bitset; an agent predating CAPTURE_BATCHED treats any non-zero value as on
+    // and sends one EVT_CLASS_LOADED per class). Captured classes are queued and sent by an agent thread, never on
+    // the loading thread; when the queue is full a class is spilled (name only) and, past that, dropped. Without
+    // CAPTURE_BATCHED the agent re-reads a spilled class's bytes, and reports classes it still lost in an
+    // EVT_CLASSES_LOADED with no classes.
+    public static final int CAPTURE_ON = 1;
+    public static final int CAPTURE_BATCHED = 1 << 1;    // send EVT_CLASSES_LOADED batches instead of single events
+
+    // MSG_LOGPOINT_SET flags (u8 bitset).
+    public static final int LOGPOINT_SUSPEND = 1;        // on a hit, call LogpointRecorder.pause (the debugger's breakpoint)
 
     // Capability bits reported in MSG_HELLO (the Java agent supports redefine/retransform/get-bytecode).
     public static final int CAP_REDEFINE = 1;
     public static final int CAP_RETRANSFORM = 1 << 1;
     public static final int CAP_BYTECODES = 1 << 2;
     public static final int CAP_JFR = 1 << 3;            // agent can drive Flight Recorder (MSG_JFR_*)
+    public static final int CAP_PROBES = 1 << 4;         // agent can record method timing probes (MSG_PROBE_*)
+    public static final int CAP_LOGPOINTS = 1 << 5;      // agent can evaluate logpoints (MSG_LOGPOINT_*)
+    public static final int CAP_SAMPLING = 1 << 6;       // agent can sample stacks without JFR (MSG_SAMPLER_*)
+    public static final int CAP_METRICS_STREAM = 1 << 7; // agent can push metrics (MSG_METRICS_SUBSCRIBE)
+    public static final int CAP_ALLOC_SITES = 1 << 8;    // agent can count allocation sites (MSG_ALLOC_*)
+    public static final int CAP_COMPACT_FRAMES = 1 << 9; // agent honours HELLO_COMPACT_FRAMES (see FrameCodec)
+
+    // MSG_HELLO request flags (u8 bitset; an agent predating them ignores the byte).
+    public static final int HELLO_COMPACT_FRAMES = 1;    // switch agent-to-client frames to FrameCodec after the reply
 
     // MSG_JFR_START event-category bits: which JFR event families to record (on top of the base profile).
     public static final int JFR_CAT_CPU = 1;             // execution sampling
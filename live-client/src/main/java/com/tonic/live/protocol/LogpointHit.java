@@ -0,0 +1,20 @@
+package com.tonic.live.protocol;
+
+/**
+ * One logpoint hit from an {@link LiveProtocol#EVT_LOGPOINT_HITS} batch: which logpoint, when (target wall clock),
+ * on which thread, and the message its snippet produced ({@code ""} for a plain condition match).
+ */
+public final class LogpointHit {
+
+    public final int logpointId;
+    public final long timeMillis;
+    public final String thread;
+    public final String message;
+
+    public LogpointHit(int logpointId, long timeMillis, String thread, String message) {
+        this.logpointId = logpointId;
+        this.timeMillis = timeMillis;
+        this.thread = thread;
+        this.message = message;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tonic.live.protocol;
+
+/**
+ * One push of the agent's metrics stream ({@link LiveProtocol#EVT_METRICS}): the rows sampled since the previous
+ * batch, oldest first, already decoded to absolute values. A row is indexed by the {@code LiveProtocol.METRIC_*}
+ * constants and is at least {@link LiveProtocol#METRIC_FIELDS} long; fields an older agent does not send are -1.
+ */
+public final class MetricsBatch {
+
+    /** Rows the agent's ring overwrote before this batch could be sent. */
+    public final int dropped;
+    public final long[][] rows;
+
+    public MetricsBatch(int dropped, long[][] rows) {
+        this.dropped = dropped;
+        this.rows = rows;
+    }
+
+    /** A CPU load field as a fraction in [0, 1], or -1 if the JVM cannot report it. */
+    public static double cpuLoad(long field) {
+        return field < 0 ? -1 : field / 10_000.0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.tonic.live.protocol;
+
+/**
+ * One probe's latency histogram for a single agent reporting interval ({@link LiveProtocol#EVT_PROBE_STATS}),
+ * sent sparsely: only non-empty buckets, as parallel arrays of {@link LatencyBuckets} indexes and counts. The agent
+ * resets its histogram after each report, so samples are deltas and can be summed over any window.
+ */
+public final class ProbeSample {
+
+    public final int probeId;
+    public final long calls;
+    public final long totalNanos;
+    public final long maxNanos;
+    public final int[] buckets;
+    public final long[] counts;
+
+    public ProbeSample(int probeId, long calls, long totalNanos, long maxNanos, int[] buckets, long[] counts) {
+        this.probeId = probeId;
+        this.calls = calls;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.buckets = buckets;
+        this.counts = counts;
+    }
+}
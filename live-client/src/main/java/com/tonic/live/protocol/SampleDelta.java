@@ -0,0 +1,38 @@
+package com.tonic.live.protocol;
+
+/**
+ * One report from the agent's stack sampler ({@link LiveProtocol#EVT_SAMPLES}): the frames and call-path trie nodes
+ * created since the previous report, and how many new self samples each touched node got. Everything is a delta
+ * against the previous report of the same sampling run, so a consumer keeps the tables and adds the counts up.
+ * Node 0 is the root; a node's parent always has a smaller id.
+ */
+public final class SampleDelta {
+
+    /** Thread stacks sampled since the previous report. */
+    public final int samples;
+    public final int[] frameIds;
+    /** Declaring class of each new frame, internal form. */
+    public final String[] frameClasses;
+    public final String[] frameMethods;
+    /** Source line of each new frame, or a negative value when unknown. */
+    public final int[] frameLines;
+    public final int[] nodeIds;
+    public final int[] nodeParents;
+    public final int[] nodeFrames;
+    public final int[] countNodes;
+    public final int[] counts;
+
+    public SampleDelta(int samples, int[] frameIds, String[] frameClasses, String[] frameMethods, int[] frameLines,
+                       int[] nodeIds, int[] nodeParents, int[] nodeFrames, int[] countNodes, int[] counts) {
+        this.samples = samples;
+        this.frameIds = frameIds;
+        this.frameClasses = frameClasses;
+        this.frameMethods = frameMethods;
+        this.frameLines = frameLines;
+        this.nodeIds = nodeIds;
+        this.nodeParents = nodeParents;
+        this.nodeFrames = nodeFrames;
+        this.countNodes = countNodes;
+        this.counts = counts;
+    }
+}
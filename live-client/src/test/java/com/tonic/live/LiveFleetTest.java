@@ -0,0 +1,171 @@
+package com.tonic.live;
+
+import com.tonic.live.protocol.LiveProtocol;
+import com.tonic.live.protocol.ThreadInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveFleetTest {
+
+    @Test
+    void timedOutMemberIsReconnectedAndTheLateAnswerIsNotMisread() throws Exception {
+        try (FakeAgent agent = new FakeAgent(); LiveFleet fleet = new LiveFleet(2)) {
+            LiveSession original = LiveSession.connect("1", agent.server.getLocalPort());
+            fleet.add(original);
+            agent.stallNext.set(true);
+
+            List<LiveFleet.Result<List<ThreadInfo>>> timedOut = fleet.call(LiveSession::getThreads, 200);
+            assertFalse(timedOut.get(0).isOk());
+
+            for (int i = 0; i < 250 && fleet.getMembers().get(0) == original; i++) {
+                Thread.sleep(20);
+            }
+            assertNotSame(original, fleet.getMembers().get(0));
+
+            List<LiveFleet.Result<List<ThreadInfo>>> next = fleet.call(LiveSession::getThreads, 5_000);
+            assertTrue(next.get(0).isOk(), next.get(0).getError());
+            assertEquals("fresh", next.get(0).getValue().get(0).getName());
+        }
+    }
+
+    @Test
+    void interruptedRequestClosesAStandaloneSession() throws Exception {
+        try (FakeAgent agent = new FakeAgent()) {
+            LiveSession session = LiveSession.connect("1", agent.server.getLocalPort());
+            agent.stallNext.set(true);
+
+            interruptDuringRequest(session);
+
+            assertFalse(session.isOutOfSync());
+            IOException refused = assertThrows(IOException.class, session::getThreads);
+            assertTrue(refused.getMessage().contains("closed"), refused.getMessage());
+        }
+    }
+
+    @Test
+    void interruptedRequestOnlyMarksAFleetMemberOutOfSync() throws Exception {
+        try (FakeAgent agent = new FakeAgent(); LiveFleet fleet = new LiveFleet(2)) {
+            LiveSession session = LiveSession.connect("1", agent.server.getLocalPort());
+            fleet.add(session);
+            agent.stallNext.set(true);
+
+            interruptDuringRequest(session);
+
+            assertTrue(session.isOutOfSync());
+            IOException refused = assertThrows(IOException.class, session::getThreads);
+            assertTrue(refused.getMessage().contains("out of sync"), refused.getMessage());
+
+            LiveSession fresh = session.reconnect();
+            assertFalse(fresh.isOutOfSync());
+            assertEquals("fresh", fresh.getThreads().get(0).getName());
+            fresh.close();
+        }
+    }
+
+    /** Starts {@code getThreads} on another thread and interrupts it while the agent is stalling the answer. */
+    private static void interruptDuringRequest(LiveSession session) throws InterruptedException {
+        Thread caller = new Thread(() -> {
+            try {
+                session.getThreads();
+            } catch (IOException expected) {
+                // interrupted
+            }
+        });
+        caller.start();
+        Thread.sleep(200);
+        caller.interrupt();
+        caller.join(5_000);
+    }
+
+    /**
+     * Answers HELLO (without compact frames) and GET_THREADS with one thread named "fresh"; when {@link #stallNext}
+     * is set, the next GET_THREADS is answered a second late with a thread named "late".
+     */
+    private static final class FakeAgent implements Closeable {
+        final ServerSocket server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+        final AtomicBoolean stallNext = new AtomicBoolean();
+
+        FakeAgent() throws IOException {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket s = server.accept();
+                        Thread handler = new Thread(() -> serve(s));
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException closed) {
+                    // test over
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void serve(Socket s) {
+            try (Socket socket = s) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                while (true) {
+                    byte[] request = new byte[in.readInt()];
+                    in.readFully(request);
+                    int type = request[0] & 0xFF;
+                    if (type == LiveProtocol.MSG_HELLO) {
+                        send(out, LiveProtocol.MSG_HELLO, b -> {
+                            b.writeInt(1);
+                            b.writeInt(0);
+                            b.writeInt(0);
+                        });
+                    } else if (type == LiveProtocol.MSG_GET_THREADS) {
+                        boolean stall = stallNext.getAndSet(false);
+                        if (stall) {
+                            Thread.sleep(1_000);
+                        }
+                        send(out, LiveProtocol.MSG_GET_THREADS, b -> {
+                            b.writeInt(1);
+                            b.writeLong(1);
+                            byte[] name = (stall ? "late" : "fresh").getBytes(StandardCharsets.UTF_8);
+                            b.writeShort(name.length);
+                            b.write(name);
+                            b.writeInt(0);
+                        });
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // client went away
+            }
+        }
+
+        private interface Body {
+            void write(DataOutputStream b) throws IOException;
+        }
+
+        private static void send(DataOutputStream out, int type, Body body) throws IOException {
+            ByteArrayOutputStream bo = new ByteArrayOutputStream();
+            DataOutputStream b = new DataOutputStream(bo);
+            b.writeByte(type);
+            body.write(b);
+            out.writeInt(bo.size());
+            out.write(bo.toByteArray());
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
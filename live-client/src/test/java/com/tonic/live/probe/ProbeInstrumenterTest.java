@@ -0,0 +1,255 @@
+package com.tonic.live.probe;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbeInstrumenterTest {
+
+    private static final String FIXTURE = Fixture.class.getName();
+    private static final String RECORDER = Recorder.class.getName().replace('.', '/');
+    private static final String HOOK_RECORDER = HookRecorder.class.getName().replace('.', '/');
+    private static final String ALLOC_RECORDER = AllocRecorder.class.getName().replace('.', '/');
+
+    /** Stands in for the agent's recorder: counts enters and exits per probe id. */
+    public static final class Recorder {
+        static final AtomicIntegerArray ENTERS = new AtomicIntegerArray(8);
+        static final AtomicIntegerArray EXITS = new AtomicIntegerArray(8);
+
+        public static void enter(int id) {
+            ENTERS.incrementAndGet(id);
+        }
+
+        public static void exit(int id) {
+            EXITS.incrementAndGet(id);
+        }
+    }
+
+    /** Stands in for the agent's logpoint recorder: keeps every hit as "id:receiver-class:args". */
+    public static final class HookRecorder {
+        static final List<String> HITS = Collections.synchronizedList(new ArrayList<>());
+
+        public static void hit(int id, Object self, Object[] args) {
+            String receiver = self == null ? "static" : self.getClass().getName();
+            HITS.add(id + ":" + receiver + ":" + Arrays.toString(args));
+        }
+    }
+
+    /** Stands in for the agent's allocation recorder: counts every hit per site id. */
+    public static final class AllocRecorder {
+        static final AtomicIntegerArray ALLOCS = new AtomicIntegerArray(64);
+
+        public static void alloc(int site) {
+            ALLOCS.incrementAndGet(site);
+        }
+    }
+
+    /** Methods with loops, a switch, a try/catch and wide returns - the shapes that need relocated offsets. */
+    public static class Fixture {
+        public static long sum(int n) {
+            long acc = 0;
+            for (int i = 0; i < n; i++) {
+                switch (i % 3) {
+                    case 0:
+                        acc += i;
+                        break;
+                    case 1:
+                        acc -= 1;
+                        break;
+                    default:
+                        acc *= 2;
+                }
+            }
+            return acc;
+        }
+
+        public static String classify(int k) {
+            try {
+                if (k < 0) {
+                    throw new IllegalArgumentException("negative");
+                }
+                return k % 2 == 0 ? "even" : "odd";
+            } catch (IllegalArgumentException e) {
+                return "caught";
+            }
+        }
+
+        public static int fail(int k) {
+            if (k > 0) {
+                throw new IllegalStateException("boom");
+            }
+            return k;
+        }
+
+        public static double untouched(double d) {
+            return d * 2;
+        }
+
+        public String describe(long n, String label, double scale) {
+            return label + (n * scale);
+        }
+
+        public static int allocate(int n) {
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                int[] row = new int[i + 1];
+                String[] names = new String[1];
+                total += row.length + names.length;
+            }
+            long[][] grid = new long[2][3];
+            return total + grid.length + new StringBuilder("x").length();
+        }
+
+        public static String wrap(boolean c) {
+            return new StringBuilder(c ? "a" : "b").append('!').toString();
+        }
+    }
+
+    private static byte[] fixtureBytes() throws IOException {
+        String resource = "/" + FIXTURE.replace('.', '/') + ".class";
+        try (InputStream in = ProbeInstrumenterTest.class.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Defines the rewritten fixture in its own loader; everything else (the recorder) comes from the parent. */
+    private static Class<?> load(byte[] bytes) throws ClassNotFoundException {
+        ClassLoader loader = new ClassLoader(ProbeInstrumenterTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals(FIXTURE)) {
+                    synchronized (getClassLoadingLock(name)) {
+                        Class<?> c = findLoadedClass(name);
+                        return c != null ? c : defineClass(name, bytes, 0, bytes.length);
+                    }
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        return Class.forName(FIXTURE, true, loader);
+    }
+
+    private static Object call(Class<?> c, String name, Class<?> type, Object arg) throws Exception {
+        Method m = c.getMethod(name, type);
+        return m.invoke(null, arg);
+    }
+
+    @Test
+    void probedMethodsBehaveTheSameAndBalanceEntersWithExits() throws Exception {
+        Map<String, Integer> probes = new LinkedHashMap<>();
+        probes.put("sum(I)J", 1);
+        probes.put("classify(I)Ljava/lang/String;", 2);
+        probes.put("fail(I)I", 3);
+        Class<?> probed = load(ProbeInstrumenter.instrument(fixtureBytes(), probes, RECORDER));
+
+        assertEquals(Fixture.sum(50), call(probed, "sum", int.class, 50));
+        assertEquals("even", call(probed, "classify", int.class, 4));
+        assertEquals("caught", call(probed, "classify", int.class, -1));
+        assertEquals(0, call(probed, "fail", int.class, 0));
+        InvocationTargetException thrown = assertThrows(InvocationTargetException.class,
+                () -> call(probed, "fail", int.class, 1));
+        assertTrue(thrown.getCause() instanceof IllegalStateException);
+        assertEquals(4.0, call(probed, "untouched", double.class, 2.0));
+
+        assertEquals(1, Recorder.ENTERS.get(1));
+        assertEquals(1, Recorder.EXITS.get(1));
+        assertEquals(2, Recorder.ENTERS.get(2));
+        assertEquals(2, Recorder.EXITS.get(2));
+        assertEquals(2, Recorder.ENTERS.get(3));
+        assertEquals(2, Recorder.EXITS.get(3), "the exceptional exit is timed too");
+        assertEquals(0, Recorder.ENTERS.get(0));
+    }
+
+    @Test
+    void hooksSeeTheReceiverAndArgumentsAtTheirOffset() throws Exception {
+        List<ProbeInstrumenter.Hook> hooks = Arrays.asList(
+                new ProbeInstrumenter.Hook(4, "describe(JLjava/lang/String;D)Ljava/lang/String;", 0),
+                new ProbeInstrumenter.Hook(5, "sum(I)J", 0));
+        Map<String, Integer> probes = Collections.singletonMap("sum(I)J", 6);
+        Class<?> hooked = load(ProbeInstrumenter.instrument(fixtureBytes(), probes, hooks, RECORDER, HOOK_RECORDER));
+        HookRecorder.HITS.clear();
+
+        Object fixture = hooked.getConstructor().newInstance();
+        Method describe = hooked.getMethod("describe", long.class, String.class, double.class);
+        assertEquals("x6.0", describe.invoke(fixture, 3L, "x", 2.0));
+        assertEquals(Fixture.sum(7), call(hooked, "sum", int.class, 7));
+
+        assertEquals(Arrays.asList("4:" + FIXTURE + ":[3, x, 2.0]", "5:static:[7]"), HookRecorder.HITS);
+        assertEquals(1, Recorder.ENTERS.get(6));
+        assertEquals(1, Recorder.EXITS.get(6));
+    }
+
+    @Test
+    void hookOnANewWhoseFramesCarryUninitializedKeepsTheFramesValid() throws Exception {
+        List<ProbeInstrumenter.Hook> hooks = Collections.singletonList(
+                new ProbeInstrumenter.Hook(7, "wrap(Z)Ljava/lang/String;", 0));
+        Class<?> hooked = load(ProbeInstrumenter.instrument(fixtureBytes(), Collections.emptyMap(), hooks,
+                RECORDER, HOOK_RECORDER));
+        HookRecorder.HITS.clear();
+
+        assertEquals("a!", call(hooked, "wrap", boolean.class, true));
+        assertEquals("b!", call(hooked, "wrap", boolean.class, false));
+        assertEquals(Arrays.asList("7:static:[true]", "7:static:[false]"), HookRecorder.HITS);
+    }
+
+    @Test
+    void rejectsWhatCannotBeProbed() throws Exception {
+        byte[] bytes = fixtureBytes();
+        assertThrows(IllegalArgumentException.class,
+                () -> ProbeInstrumenter.instrument(bytes, Collections.singletonMap("<init>()V", 1), RECORDER));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProbeInstrumenter.instrument(bytes, Collections.singletonMap("missing()V", 1), RECORDER));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProbeInstrumenter.instrument(bytes,
+                        Collections.singletonMap("sum(I)J", ProbeInstrumenter.MAX_PROBE_ID + 1), RECORDER));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProbeInstrumenter.instrument(bytes, Collections.emptyMap(),
+                        Collections.singletonList(new ProbeInstrumenter.Hook(1, "sum(I)J", 7))));
+    }
+
+    @Test
+    void allocationSitesAreListedAndCountedAfterTheirInstruction() throws Exception {
+        List<ProbeInstrumenter.AllocSite> sites = ProbeInstrumenter.allocationSites(fixtureBytes(), 10);
+        List<String> types = new ArrayList<>();
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (ProbeInstrumenter.AllocSite site : sites) {
+            assertTrue(site.line > 0);
+            if (site.method.equals("allocate(I)I")) {
+                types.add(site.type);
+                ids.put(site.type, site.id);
+            } else if (site.method.equals("classify(I)Ljava/lang/String;")) {
+                ids.put(site.type, site.id);
+            }
+        }
+        assertEquals(Arrays.asList("[I", "[Ljava/lang/String;", "[[J", "java/lang/StringBuilder"), types);
+        assertEquals(10, sites.get(0).id);
+
+        Class<?> tracked = load(ProbeInstrumenter.instrument(fixtureBytes(), Collections.emptyMap(),
+                Collections.emptyList(), sites, RECORDER, HOOK_RECORDER, ALLOC_RECORDER));
+        assertEquals(Fixture.allocate(5), call(tracked, "allocate", int.class, 5));
+        assertEquals("caught", call(tracked, "classify", int.class, -1));
+
+        assertEquals(5, AllocRecorder.ALLOCS.get(ids.get("[I")));
+        assertEquals(5, AllocRecorder.ALLOCS.get(ids.get("[Ljava/lang/String;")));
+        assertEquals(1, AllocRecorder.ALLOCS.get(ids.get("[[J")));
+        assertEquals(1, AllocRecorder.ALLOCS.get(ids.get("java/lang/StringBuilder")));
+        assertEquals(1, AllocRecorder.ALLOCS.get(ids.get("java/lang/IllegalArgumentException")));
+
+        ProbeInstrumenter.AllocSite notAnAllocation = new ProbeInstrumenter.AllocSite(1, "allocate(I)I", 0, "[I", -1);
+        assertThrows(IllegalArgumentException.class,
+                () -> ProbeInstrumenter.instrument(fixtureBytes(), Collections.emptyMap(), Collections.emptyList(),
+                        Collections.singletonList(notAnAllocation)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.tonic.live.probe;
+
+import com.tonic.live.protocol.LatencyBuckets;
+import com.tonic.live.protocol.ProbeSample;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbeWindowTest {
+
+    /** One report in which every call took {@code nanos}. */
+    private static ProbeSample sample(long calls, long nanos) {
+        return new ProbeSample(1, calls, calls * nanos, nanos,
+                new int[]{LatencyBuckets.index(nanos)}, new long[]{calls});
+    }
+
+    @Test
+    void bucketsBracketTheirValues() {
+        for (long v : new long[]{0, 1, 63, 64, 65, 1_000, 123_456, 2_097_151, 10_000_000_000L, Long.MAX_VALUE}) {
+            int b = LatencyBuckets.index(v);
+            assertTrue(LatencyBuckets.lowerBound(b) <= v && v <= LatencyBuckets.upperBound(b), "value " + v);
+            assertTrue(b < LatencyBuckets.COUNT);
+        }
+        assertEquals(LatencyBuckets.index(100), LatencyBuckets.index(LatencyBuckets.lowerBound(LatencyBuckets.index(100))));
+    }
+
+    @Test
+    void percentilesComeFromTheMergedWindow() {
+        ProbeWindow w = new ProbeWindow(60);
+        w.add(sample(90, 1_000));
+        w.add(sample(10, 1_000_000));
+
+        assertEquals(100, w.calls());
+        assertEquals(50.0, w.callsPerSample());
+        assertEquals((90 * 1_000.0 + 10 * 1_000_000.0) / 100, w.meanNanos(), 1e-9);
+        assertTrue(w.percentileNanos(50) >= 1_000 && w.percentileNanos(50) < 1_100);
+        assertTrue(w.percentileNanos(99) >= 1_000_000);
+        assertEquals(1_000_000, w.percentileNanos(100), "capped at the window maximum");
+    }
+
+    @Test
+    void oldSamplesFallOutOfTheWindow() {
+        ProbeWindow w = new ProbeWindow(2);
+        w.add(sample(5, 5_000_000));
+        w.add(sample(5, 100));
+        w.add(sample(5, 100));
+
+        assertEquals(2, w.size());
+        assertEquals(10, w.calls());
+        assertEquals(100, w.maxNanos());
+        assertEquals(100, w.percentileNanos(99));
+        assertEquals(0, new ProbeWindow(1).percentileNanos(50));
+    }
+}
@@ -0,0 +1,54 @@
+package com.tonic.live.probe;
+
+import com.tonic.live.protocol.SampleDelta;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleProfileTest {
+
+    private static final int[] NONE = new int[0];
+    private static final String[] NO_NAMES = new String[0];
+
+    @Test
+    void deltasAccumulateIntoInclusiveTotals() {
+        SampleProfile profile = new SampleProfile();
+        // main -> work (3 samples in work, 1 in main)
+        profile.apply(new SampleDelta(4,
+                new int[]{0, 1}, new String[]{"app/Main", "app/Work"}, new String[]{"main", "work"}, new int[]{5, 9},
+                new int[]{1, 2}, new int[]{0, 1}, new int[]{0, 1},
+                new int[]{2, 1}, new int[]{3, 1}));
+        // a new callee under work, and more samples in work
+        profile.apply(new SampleDelta(3,
+                new int[]{2}, new String[]{"app/Util"}, new String[]{"hash"}, new int[]{-1},
+                new int[]{3}, new int[]{2}, new int[]{2},
+                new int[]{3, 2}, new int[]{2, 1}));
+
+        assertEquals(7, profile.samples());
+        assertEquals(4, profile.nodeCount());
+        assertEquals(3, profile.frameCount());
+        assertEquals("app/Util", profile.frameClass(profile.frame(3)));
+        assertEquals(-1, profile.frameLine(profile.frame(3)));
+        assertEquals(2, profile.parent(3));
+        assertEquals(4, profile.self(2));
+
+        long[] totals = profile.totals();
+        assertEquals(7, totals[0]);
+        assertEquals(7, totals[1]);
+        assertEquals(6, totals[2]);
+        assertEquals(2, totals[3]);
+    }
+
+    @Test
+    void clearStartsOver() {
+        SampleProfile profile = new SampleProfile();
+        profile.apply(new SampleDelta(1, new int[]{0}, new String[]{"A"}, new String[]{"m"}, new int[]{1},
+                new int[]{1}, new int[]{0}, new int[]{0}, new int[]{1}, new int[]{1}));
+        profile.clear();
+        profile.apply(new SampleDelta(0, NONE, NO_NAMES, NO_NAMES, NONE, NONE, NONE, NONE, NONE, NONE));
+
+        assertEquals(0, profile.samples());
+        assertEquals(1, profile.nodeCount());
+        assertEquals(0, profile.totals()[0]);
+    }
+}
@@ -0,0 +1,77 @@
+package com.tonic.live.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCodecTest {
+
+    @Test
+    void smallFramesGoRawAndLargeOnesRoundTripDeflated() throws IOException {
+        FrameCodec.Encoder encoder = new FrameCodec.Encoder();
+        FrameCodec.Decoder decoder = new FrameCodec.Decoder();
+        byte[] ack = {(byte) LiveProtocol.MSG_PROBE_DISABLE, 1};
+        byte[] classes = classList(2000);
+        byte[] random = new byte[40_000];
+        new Random(7).nextBytes(random);
+
+        byte[] encodedAck = encoder.encode(ack);
+        assertEquals(FrameCodec.RAW, encodedAck[0]);
+        assertArrayEquals(ack, decoder.decode(encodedAck));
+
+        byte[] encodedClasses = encoder.encode(classes);
+        assertEquals(FrameCodec.DEFLATED, encodedClasses[0]);
+        assertTrue(encodedClasses.length < classes.length / 4, "repeated package prefixes should compress well");
+        assertArrayEquals(classes, decoder.decode(encodedClasses));
+
+        // incompressible and larger than the encoder's chunk buffer
+        assertArrayEquals(random, decoder.decode(encoder.encode(random)));
+        assertArrayEquals(ack, decoder.decode(encoder.encode(ack)));
+    }
+
+    @Test
+    void repeatedFramesBackReferenceEarlierOnes() throws IOException {
+        FrameCodec.Encoder encoder = new FrameCodec.Encoder();
+        FrameCodec.Decoder decoder = new FrameCodec.Decoder();
+        // random names barely compress on their own; repeated in the next frame they are back-references
+        byte[] stacks = new byte[8000];
+        Random random = new Random(11);
+        for (int i = 0; i < stacks.length; i++) {
+            stacks[i] = (byte) ('a' + random.nextInt(26));
+        }
+
+        byte[] first = encoder.encode(stacks);
+        byte[] second = encoder.encode(stacks);
+
+        assertTrue(first.length > stacks.length / 2);
+        assertTrue(second.length * 10 < first.length, "a frame already in the window is mostly back-references");
+        assertArrayEquals(stacks, decoder.decode(first));
+        assertArrayEquals(stacks, decoder.decode(second));
+    }
+
+    @Test
+    void unknownEncodingIsRejected() {
+        assertThrows(IOException.class, () -> new FrameCodec.Decoder().decode(new byte[]{9, 1, 2}));
+    }
+
+    /** A LIST_CLASSES-shaped payload. */
+    private static byte[] classList(int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LiveProtocol.MSG_LIST_CLASSES);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            byte[] name = ("com/example/service/internal/handler/Handler" + i).getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeShort(0x21);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -34,6 +34,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -46,6 +49,9 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public final class DebugSession {
 
+    /** Objects prefetched per {@link #variables} call, whatever the depth. */
+    private static final int PREFETCH_BUDGET = 64;
+
     private final VirtualMachine vm;
     private final DebugListener listener;
     private final Thread pump;
@@ -60,7 +66,19 @@ public final class DebugSession {
 
     /** Handles to the paused frame's reference values, for click-to-expand; cleared each pause. */
     private final Map<Long, ObjectReference> refHandles = new ConcurrentHashMap<>();
+    /** Handle per object (by JDI unique id), so an object reached twice in a pause shares one cache entry. */
+    private final Map<Long, Long> handlesByObject = new ConcurrentHashMap<>();
     private final AtomicLong refIds = new AtomicLong(1);
+    /** Fields and elements already fetched this pause; reset on every pause and resume. */
+    private final PauseCache cache = new PauseCache();
+    /** Levels of object fields fetched ahead with a frame's variables (0 = only on expand). */
+    private volatile int prefetchDepth;
+    /** Runs prefetches, so {@link #variables} returns as soon as the frame's own values are read. */
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "jstudio-jdi-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
 
     private final List<BreakpointSpec> breakpoints = new ArrayList<>();
     private final List<BreakpointRequest> installed = new ArrayList<>();
@@ -99,6 +117,16 @@ public final class DebugSession {
         return pausedThread != null;
     }
 
+    /**
+     * How many levels of object fields {@link #variables} fetches ahead, at most {@link #PREFETCH_BUDGET} objects
+     * per frame. Each object is one round trip taken in the background instead of on expand, which pays off over a
+     * slow (remote) JDWP link. Only suspend-all pauses prefetch: with other threads running, fetched values could
+     * not be cached.
+     */
+    public void setPrefetchDepth(int depth) {
+        this.prefetchDepth = Math.max(0, depth);
+    }
+
     /** Updates the suspend policy applied to breakpoints installed from now on (existing ones keep theirs). */
     public void setSuspendAll(boolean suspendAll) {
         this.suspendAll = suspendAll;
@@ -296,6 +324,7 @@ public final class DebugSession {
     public synchronized void resume() {
         ThreadReference t = pausedThread;
         pausedThread = null;
+        cache.reset(false);
         listener.onResumed();
         try {
             if (pausedAll || t == null) {
@@ -310,6 +339,7 @@ public final class DebugSession {
     /** Ends the session: disconnects JDI and stops the event pump. */
     public void dispose() {
         running = false;
+        prefetcher.shutdownNow();
         try {
             vm.dispose();
         } catch (Exception ignored) {
@@ -350,8 +380,11 @@ public final class DebugSession {
                         register(self), false, 0));
             }
             try {
-                for (LocalVariable lv : frame.visibleVariables()) {
-                    out.add(toVar(lv.name(), lv.signature(), frame.getValue(lv)));
+                // One StackFrame.GetValues request for all locals rather than one per local.
+                List<LocalVariable> locals = frame.visibleVariables();
+                Map<LocalVariable, Value> values = frame.getValues(locals);
+                for (LocalVariable lv : locals) {
+                    out.add(toVar(lv.name(), lv.signature(), values.get(lv)));
                 }
             } catch (AbsentInformationException noLvt) {
                 List<Value> args = frame.getArgumentValues();
@@ -361,9 +394,39 @@ public final class DebugSession {
             }
         } catch (Exception ignored) {
         }
+        int depth = prefetchDepth;
+        if (depth > 0 && cache.isStable()) {
+            List<DebugVariable> roots = new ArrayList<>(out);
+            long generation = cache.generation();
+            try {
+                prefetcher.execute(() -> prefetch(roots, depth, new int[]{PREFETCH_BUDGET}, generation));
+            } catch (RejectedExecutionException disposed) {
+                // session ended
+            }
+        }
         return out;
     }
 
+    /**
+     * Fetches the children of {@code vars}' references breadth-first into the cache, {@code depth} levels down;
+     * stops once the target resumes or pauses again.
+     */
+    private void prefetch(List<DebugVariable> vars, int depth, int[] budget, long generation) {
+        List<DebugVariable> next = new ArrayList<>();
+        for (DebugVariable v : vars) {
+            if (budget[0] <= 0 || cache.generation() != generation) {
+                return;
+            }
+            if (v.isReference() && !cache.contains(v.getRefHandle())) {
+                budget[0]--;
+                next.addAll(objectFields(v.getRefHandle()));
+            }
+        }
+        if (depth > 1 && !next.isEmpty()) {
+            prefetch(next, depth - 1, budget, generation);
+        }
+    }
+
     // ---- event pump ---------------------------------------------------------------------------------
 
     private void pumpLoop() {
@@ -405,6 +468,8 @@ public final class DebugSession {
         this.pausedThread = thread;
         this.pausedAll = suspendPolicy == EventRequest.SUSPEND_ALL;
         refHandles.clear();
+        handlesByObject.clear();
+        cache.reset(pausedAll);
         if (pausedAll) {
             resumeAgentThreads();
         }
@@ -552,22 +617,33 @@ public final class DebugSession {
     }
 
     private long register(ObjectReference o) {
-        long id = refIds.getAndIncrement();
-        refHandles.put(id, o);
-        return id;
+        return handlesByObject.computeIfAbsent(o.uniqueID(), uid -> {
+            long id = refIds.getAndIncrement();
+            refHandles.put(id, o);
+            return id;
+        });
     }
 
-    /** Fields (or array elements) of a previously-handed-out reference value, for click-to-expand drilling. */
+    /**
+     * Fields (or array elements) of a previously-handed-out reference value, for click-to-expand drilling. All
+     * fields come from one {@code ObjectReference.GetValues} request and, in a suspend-all pause, are cached for the
+     * rest of it.
+     */
     public List<DebugVariable> objectFields(long handle) {
-        List<DebugVariable> out = new ArrayList<>();
         ObjectReference o = refHandles.get(handle);
         if (o == null) {
-            return out;
+            return new ArrayList<>();
         }
+        if (o instanceof ArrayReference) {
+            return arrayElements(handle, 200);
+        }
+        long generation = cache.generation();
+        List<DebugVariable> cached = cache.get(handle);
+        if (cached != null) {
+            return cached;
+        }
+        List<DebugVariable> out = new ArrayList<>();
         try {
-            if (o instanceof ArrayReference) {
-                return arrayElements(handle, 200);
-            }
             List<Field> fields = new ArrayList<>();
             for (Field f : o.referenceType().allFields()) {
                 if (!f.isStatic()) {
@@ -578,27 +654,38 @@ public final class DebugSession {
             for (Field f : fields) {
                 out.add(toVar(f.name(), f.signature(), values.get(f)));
             }
+            cache.put(generation, handle, out);
         } catch (Exception ignored) {
         }
         return out;
     }
 
-    /** The first {@code max} elements of an array reference, index-labelled ({@code [0]}, {@code [1]}, ...). */
+    /**
+     * The first {@code max} elements of an array reference, index-labelled ({@code [0]}, {@code [1]}, ...), from
+     * one {@code ArrayReference.GetValues} request. In a suspend-all pause, a request no longer than one already
+     * made is served from the cache.
+     */
     public List<DebugVariable> arrayElements(long handle, int max) {
         List<DebugVariable> out = new ArrayList<>();
         ObjectReference o = refHandles.get(handle);
         if (!(o instanceof ArrayReference)) {
             return out;
         }
+        long generation = cache.generation();
         try {
             ArrayReference arr = (ArrayReference) o;
             int n = Math.min(arr.length(), Math.max(0, max));
+            List<DebugVariable> cached = cache.get(handle);
+            if (cached != null && cached.size() >= n) {
+                return new ArrayList<>(cached.subList(0, n));
+            }
             if (n > 0) {
                 List<Value> vals = arr.getValues(0, n);
                 for (int i = 0; i < vals.size(); i++) {
                     out.add(toVar("[" + i + "]", "", vals.get(i)));
                 }
             }
+            cache.put(generation, handle, out);
         } catch (Exception ignored) {
         }
         return out;
@@ -0,0 +1,55 @@
+package com.tonic.live.debug;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Children already fetched while the target is paused, by reference handle: an object's fields, or an array's
+ * elements (as many as were asked for). Re-expanding a node, or expanding a prefetched one, is then served without
+ * a round trip.
+ *
+ * <p>Values are only stable while the whole VM is suspended. After an event-thread-only pause the other threads
+ * keep running and mutating the heap, so nothing is cached; every pause and resume starts a new generation, and a
+ * fetch begun in an earlier generation is not stored.
+ */
+final class PauseCache {
+
+    private final Map<Long, List<DebugVariable>> children = new ConcurrentHashMap<>();
+    private volatile long generation;
+    private volatile boolean stable;
+
+    /** Drops everything cached and starts a new generation; {@code stable} when the whole VM is suspended. */
+    synchronized long reset(boolean stable) {
+        children.clear();
+        this.stable = stable;
+        return ++generation;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /** Whether values fetched now may be cached (and so are worth prefetching). */
+    boolean isStable() {
+        return stable;
+    }
+
+    /** The cached children of {@code handle}, or null. */
+    List<DebugVariable> get(long handle) {
+        List<DebugVariable> cached = children.get(handle);
+        return cached != null ? new ArrayList<>(cached) : null;
+    }
+
+    boolean contains(long handle) {
+        return children.containsKey(handle);
+    }
+
+    /** Caches {@code vars} if they were fetched in the current generation of a stable pause. */
+    synchronized void put(long fetchedIn, long handle, List<DebugVariable> vars) {
+        if (stable && fetchedIn == generation) {
+            children.put(handle, new ArrayList<>(vars));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tonic.live.debug;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PauseCacheTest {
+
+    private static final List<DebugVariable> FIELDS =
+            List.of(new DebugVariable("count", "I", "3", false, 0, false, 0));
+
+    @Test
+    void suspendAllPauseServesFetchedChildren() {
+        PauseCache cache = new PauseCache();
+        long generation = cache.reset(true);
+
+        cache.put(generation, 7, FIELDS);
+
+        assertTrue(cache.contains(7));
+        assertEquals("3", cache.get(7).get(0).getDisplay());
+    }
+
+    @Test
+    void eventThreadPauseCachesNothing() {
+        PauseCache cache = new PauseCache();
+        long generation = cache.reset(false);
+
+        cache.put(generation, 7, FIELDS);
+
+        assertFalse(cache.isStable());
+        assertNull(cache.get(7));
+    }
+
+    @Test
+    void resumeDropsChildrenAndLateFetchesAreNotStored() {
+        PauseCache cache = new PauseCache();
+        long paused = cache.reset(true);
+        cache.put(paused, 7, FIELDS);
+
+        cache.reset(false);
+        assertNull(cache.get(7));
+
+        cache.reset(true);
+        cache.put(paused, 8, FIELDS);
+        assertNull(cache.get(8), "a fetch started before the resume belongs to the old pause");
+    }
+}
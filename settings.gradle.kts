@@ -11,3 +11,6 @@ include(":live-agent")
 
 // Reference GUI plugin used to validate the plugin API (built against the app; not shipped in JStudio.jar).
 include(":sample-plugin")
+
+// JMH benchmarks over JStudio's hot paths, run against generated synthetic inputs (not shipped).
+include(":benchmarks")
@@ -10,12 +10,23 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @Command(
     name = "batch",
@@ -24,6 +35,10 @@ import java.util.concurrent.Future;
 )
 public class BatchCommand implements Callable<Integer> {
 
+    /** Heap reserved for even the smallest target: class pool, project model, plugin. */
+    private static final int MIN_TARGET_MB = 64;
+    private static final int HEAP_PER_ARCHIVE_BYTE = 12;
+
     @Parameters(description = "Target files or directories (supports glob patterns)")
     private List<File> targets;
 
@@ -51,6 +66,17 @@ public class BatchCommand implements Callable<Integer> {
     @Option(names = {"--continue-on-error"}, description = "Continue processing after errors")
     private boolean continueOnError;
 
+    @Option(names = {"--timeout"}, description = "Per-target timeout in seconds (0 = none). Interrupts the "
+            + "target's worker; work that ignores interrupts keeps running", defaultValue = "0")
+    private int timeoutSeconds;
+
+    @Option(names = {"--memory-budget"},
+            description = "Heap in MB that concurrently running targets may reserve (default: 3/4 of max heap)")
+    private Integer memoryBudgetMb;
+
+    @Option(names = {"--summary"}, description = "Write an aggregated report of all targets (format from -f)")
+    private File summaryFile;
+
     @Override
     public Integer call() {
         if (targets == null || targets.isEmpty()) {
@@ -67,53 +93,73 @@ public class BatchCommand implements Callable<Integer> {
             outputDir.mkdirs();
         }
 
-        int successCount = 0;
-        int failCount = 0;
-        long totalTime = 0;
+        int budgetMb = memoryBudgetMb != null ? memoryBudgetMb
+                : (int) Math.max(MIN_TARGET_MB, Runtime.getRuntime().maxMemory() / (1024 * 1024) * 3 / 4);
+        Semaphore memory = new Semaphore(budgetMb, true);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "batch-watchdog"));
+        Map<String, ExecutionResult> results = new LinkedHashMap<>();
 
-        if (parallel && targets.size() > 1) {
-            ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, targets.size()));
-            List<Future<ExecutionResult>> futures = new ArrayList<>();
+        try {
+            if (parallel && targets.size() > 1) {
+                ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, targets.size()),
+                        r -> daemon(r, "batch-worker"));
+                List<Future<ExecutionResult>> futures = new ArrayList<>();
 
-            for (File target : targets) {
-                futures.add(executor.submit(() -> processTarget(target)));
-            }
+                for (File target : targets) {
+                    futures.add(executor.submit(() -> runBounded(target, memory, budgetMb, watchdog)));
+                }
 
-            for (Future<ExecutionResult> future : futures) {
-                try {
-                    ExecutionResult result = future.get();
-                    if (result.isSuccess()) {
-                        successCount++;
-                    } else {
-                        failCount++;
+                for (int i = 0; i < futures.size(); i++) {
+                    ExecutionResult result;
+                    try {
+                        result = futures.get(i).get();
+                    } catch (Exception e) {
+                        result = ExecutionResult.failure(e.getMessage());
                     }
-                    totalTime += result.getDurationMs();
-                } catch (Exception e) {
-                    failCount++;
-                    if (!continueOnError) {
+                    results.put(targets.get(i).getPath(), result);
+                    if (!result.isSuccess() && !continueOnError) {
                         executor.shutdownNow();
                         break;
                     }
                 }
-            }
 
-            executor.shutdown();
-        } else {
-            for (File target : targets) {
-                try {
-                    ExecutionResult result = processTarget(target);
-                    if (result.isSuccess()) {
-                        successCount++;
-                    } else {
-                        failCount++;
-                        if (!continueOnError) break;
+                executor.shutdown();
+            } else {
+                for (File target : targets) {
+                    ExecutionResult result;
+                    try {
+                        result = runBounded(target, memory, budgetMb, watchdog);
+                    } catch (Exception e) {
+                        result = ExecutionResult.failure(e.getMessage());
+                    }
+                    results.put(target.getPath(), result);
+                    if (!result.isSuccess() && !continueOnError) {
+                        break;
                     }
-                    totalTime += result.getDurationMs();
-                } catch (Exception e) {
-                    failCount++;
-                    if (!continueOnError) break;
                 }
             }
+        } finally {
+            watchdog.shutdownNow();
+        }
+
+        int successCount = 0;
+        int failCount = 0;
+        long totalTime = 0;
+        for (ExecutionResult result : results.values()) {
+            if (result.isSuccess()) {
+                successCount++;
+            } else {
+                failCount++;
+            }
+            totalTime += result.getDurationMs();
+        }
+
+        if (summaryFile != null) {
+            try {
+                OutputHandler.forFormat(format, summaryFile).writeBatchSummary(results);
+            } catch (IOException e) {
+                System.err.println("Error: Failed to write summary: " + e.getMessage());
+            }
         }
 
         if (!quiet) {
@@ -128,6 +174,85 @@ public class BatchCommand implements Callable<Integer> {
         return failCount > 0 ? 1 : 0;
     }
 
+    /**
+     * Runs one target once its estimated heap is available from the shared budget, interrupting it past the
+     * timeout. A plugin that ignores interruption keeps its worker busy, but its target is still reported as
+     * timed out.
+     */
+    private ExecutionResult runBounded(File target, Semaphore memory, int budgetMb,
+                                       ScheduledExecutorService watchdog) throws InterruptedException {
+        int reserveMb = Math.min(budgetMb, estimateHeapMb(target));
+        memory.acquire(reserveMb);
+        long start = System.currentTimeMillis();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> alarm = null;
+        if (timeoutSeconds > 0) {
+            Thread worker = Thread.currentThread();
+            alarm = watchdog.schedule(() -> {
+                timedOut.set(true);
+                worker.interrupt();
+            }, timeoutSeconds, TimeUnit.SECONDS);
+        }
+        try {
+            ExecutionResult result = processTarget(target);
+            if (timedOut.get()) {
+                return timedOutResult(start);
+            }
+            return result;
+        } catch (Exception e) {
+            if (timedOut.get()) {
+                return timedOutResult(start);
+            }
+            return ExecutionResult.builder()
+                .success(false)
+                .errorMessage(e.getMessage())
+                .durationMs(System.currentTimeMillis() - start)
+                .build();
+        } finally {
+            if (alarm != null) {
+                alarm.cancel(false);
+            }
+            // Clear an interrupt that raced with completion so it cannot leak into the next target
+            Thread.interrupted();
+            memory.release(reserveMb);
+        }
+    }
+
+    private ExecutionResult timedOutResult(long start) {
+        return ExecutionResult.builder()
+            .success(false)
+            .errorMessage("Timed out after " + timeoutSeconds + "s")
+            .durationMs(System.currentTimeMillis() - start)
+            .build();
+    }
+
+    /**
+     * Rough peak heap for one target: parsed class files, models and analysis caches take a multiple of the
+     * compressed archive (or of the raw class bytes for a directory).
+     */
+    private static int estimateHeapMb(File target) {
+        long bytes;
+        if (target.isDirectory()) {
+            try (Stream<Path> paths = Files.walk(target.toPath())) {
+                bytes = paths.filter(p -> p.toString().endsWith(".class"))
+                        .mapToLong(p -> p.toFile().length())
+                        .sum() / 3;
+            } catch (IOException e) {
+                bytes = 0;
+            }
+        } else {
+            bytes = target.length();
+        }
+        long mb = bytes * HEAP_PER_ARCHIVE_BYTE / (1024 * 1024);
+        return (int) Math.max(MIN_TARGET_MB, Math.min(Integer.MAX_VALUE, mb));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
     private ExecutionResult processTarget(File target) throws Exception {
         if (!quiet) {
             System.out.println("Processing: " + target.getName());
@@ -7,6 +7,7 @@ import com.tonic.plugin.context.PluginContextImpl;
 import com.tonic.plugin.result.Finding;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
+import com.tonic.service.ProjectScope;
 import com.tonic.service.ProjectService;
 
 import java.io.File;
@@ -22,10 +23,14 @@ public class ExecutionEngine {
         this.pluginLoader = new PluginLoader();
     }
 
+    /**
+     * Loads the target and runs the plugin on it inside a fresh {@link ProjectScope}, so the project, its xrefs, the
+     * VM and the plugin context are private to this call and concurrent executions on other threads are independent.
+     */
     public ExecutionResult execute(ExecutionConfig config) {
         long startTime = System.currentTimeMillis();
 
-        try {
+        try (ProjectScope ignored = ProjectScope.open()) {
             ProjectModel project = loadTarget(config);
             if (project == null) {
                 return ExecutionResult.failure("Failed to load target: " + config.getTarget());
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Map;
 
 public abstract class OutputHandler {
 
@@ -18,6 +19,9 @@ public abstract class OutputHandler {
 
     public abstract void writeResult(ExecutionResult result) throws IOException;
 
+    /** Writes one aggregated report for a batch run: a row per target (keyed by target name, in run order). */
+    public abstract void writeBatchSummary(Map<String, ExecutionResult> results) throws IOException;
+
     public static OutputHandler forFormat(OutputFormat format, File outputFile) {
         switch (format) {
             case JSON:
@@ -81,6 +85,26 @@ public abstract class OutputHandler {
                 }
             }
         }
+
+        @Override
+        public void writeBatchSummary(Map<String, ExecutionResult> results) throws IOException {
+            try (PrintWriter out = getWriter()) {
+                out.println("=== Batch Summary (" + results.size() + " targets) ===");
+                for (Map.Entry<String, ExecutionResult> entry : results.entrySet()) {
+                    ExecutionResult result = entry.getValue();
+                    out.print(result.isSuccess() ? "[OK]     " : "[FAILED] ");
+                    out.print(entry.getKey());
+                    out.print("  " + result.getDurationMs() + "ms");
+                    if (result.isSuccess()) {
+                        out.print(", " + result.getClassesProcessed() + " classes, "
+                                + result.getFindingsCount() + " findings");
+                    } else if (result.getErrorMessage() != null) {
+                        out.print(" - " + result.getErrorMessage());
+                    }
+                    out.println();
+                }
+            }
+        }
     }
 
     private static class JsonOutputHandler extends OutputHandler {
@@ -124,6 +148,44 @@ public abstract class OutputHandler {
             }
         }
 
+        @Override
+        public void writeBatchSummary(Map<String, ExecutionResult> results) throws IOException {
+            int succeeded = 0;
+            long totalMs = 0;
+            for (ExecutionResult result : results.values()) {
+                if (result.isSuccess()) {
+                    succeeded++;
+                }
+                totalMs += result.getDurationMs();
+            }
+            try (PrintWriter out = getWriter()) {
+                out.println("{");
+                out.println("  \"targets\": " + results.size() + ",");
+                out.println("  \"succeeded\": " + succeeded + ",");
+                out.println("  \"failed\": " + (results.size() - succeeded) + ",");
+                out.println("  \"totalDurationMs\": " + totalMs + ",");
+                out.println("  \"results\": [");
+                int i = 0;
+                for (Map.Entry<String, ExecutionResult> entry : results.entrySet()) {
+                    ExecutionResult result = entry.getValue();
+                    out.print("    {");
+                    out.print("\"target\": \"" + escapeJson(entry.getKey()) + "\", ");
+                    out.print("\"success\": " + result.isSuccess() + ", ");
+                    out.print("\"durationMs\": " + result.getDurationMs() + ", ");
+                    out.print("\"classesProcessed\": " + result.getClassesProcessed() + ", ");
+                    out.print("\"methodsProcessed\": " + result.getMethodsProcessed() + ", ");
+                    out.print("\"findingsCount\": " + result.getFindingsCount());
+                    if (result.getErrorMessage() != null) {
+                        out.print(", \"error\": \"" + escapeJson(result.getErrorMessage()) + "\"");
+                    }
+                    out.print("}");
+                    out.println(++i < results.size() ? "," : "");
+                }
+                out.println("  ]");
+                out.println("}");
+            }
+        }
+
         private String escapeJson(String s) {
             if (s == null) return "";
             return s.replace("\\", "\\\\")
@@ -166,6 +228,30 @@ public abstract class OutputHandler {
             }
         }
 
+        @Override
+        public void writeBatchSummary(Map<String, ExecutionResult> results) throws IOException {
+            try (PrintWriter out = getWriter()) {
+                out.println("target,success,durationMs,classesProcessed,methodsProcessed,findingsCount,error");
+                for (Map.Entry<String, ExecutionResult> entry : results.entrySet()) {
+                    ExecutionResult result = entry.getValue();
+                    out.print(escapeCsv(entry.getKey()));
+                    out.print(",");
+                    out.print(result.isSuccess());
+                    out.print(",");
+                    out.print(result.getDurationMs());
+                    out.print(",");
+                    out.print(result.getClassesProcessed());
+                    out.print(",");
+                    out.print(result.getMethodsProcessed());
+                    out.print(",");
+                    out.print(result.getFindingsCount());
+                    out.print(",");
+                    out.print(escapeCsv(result.getErrorMessage()));
+                    out.println();
+                }
+            }
+        }
+
         private String escapeCsv(String s) {
             if (s == null) return "";
             if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
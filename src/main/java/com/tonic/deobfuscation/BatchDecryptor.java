@@ -0,0 +1,239 @@
+package com.tonic.deobfuscation;
+
+import com.tonic.analysis.execution.core.BytecodeContext;
+import com.tonic.analysis.execution.core.BytecodeEngine;
+import com.tonic.analysis.execution.core.BytecodeResult;
+import com.tonic.analysis.execution.core.ExecutionMode;
+import com.tonic.analysis.execution.heap.ObjectInstance;
+import com.tonic.analysis.execution.heap.SimpleHeapManager;
+import com.tonic.analysis.execution.resolve.ClassResolver;
+import com.tonic.analysis.execution.state.ConcreteValue;
+import com.tonic.deobfuscation.model.DecryptorCandidate;
+import com.tonic.deobfuscation.model.DeobfuscationResult;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ClassPool;
+import com.tonic.parser.MethodEntry;
+import com.tonic.ui.vm.SnapshotClassPool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Decrypts many constant-pool strings with one decryptor across several threads. Work is split by class: a worker
+ * takes all of one class's strings and decrypts them against a single heap, so static tables the decryptor's class
+ * builds in its {@code <clinit>} are built once per class rather than once per string. The heap starts fresh for each
+ * class, and again after any failed decryption, so state left behind by a half-run decryptor cannot leak into later
+ * results. Identical arguments within one class (the same encrypted value, or the same index for index-based
+ * decryptors) are decrypted once and shared; a value is never reused for another class, whose static state may differ.
+ * <p>
+ * Workers never run against the live project: the project's classes are frozen to bytes when the batch is created
+ * and each worker parses its own copies through a {@link SnapshotClassPool}, so neither an edit made while the batch
+ * runs nor another worker's interpreter can reach the classes or the decryptor method a worker is executing.
+ */
+final class BatchDecryptor {
+
+    private final ClassPool classPool;
+    private final Map<String, byte[]> frozenClasses;
+    private final DecryptorCandidate decryptor;
+    private final int maxInstructions;
+    private final int maxCallDepth;
+    private final Map<String, CompletableFuture<String>> memo = new ConcurrentHashMap<>();
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * @param classPool    the project's pool; only classes missing from {@code userClasses} (the JDK and libraries)
+     *                     are read from it while the batch runs
+     * @param userClasses  the project's classes, frozen here on the calling thread
+     */
+    BatchDecryptor(ClassPool classPool, Collection<ClassFile> userClasses, DecryptorCandidate decryptor,
+                   int maxInstructions, int maxCallDepth) {
+        this.classPool = classPool;
+        this.frozenClasses = new HashMap<>();
+        for (ClassFile cf : userClasses) {
+            freeze(cf);
+        }
+        freeze(decryptor.getClassFile());
+        this.decryptor = decryptor;
+        this.maxInstructions = maxInstructions;
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    private void freeze(ClassFile cf) {
+        try {
+            frozenClasses.put(cf.getClassName(), cf.write());
+        } catch (Exception ignored) {
+            // unserializable class - workers fall back to the project's instance
+        }
+    }
+
+    /**
+     * Decrypts every entry of {@code pending}, returning results in the same order. {@code onDecrypted} receives each
+     * result and its position as it finishes, on a worker thread.
+     */
+    List<DeobfuscationResult> decryptAll(List<DeobfuscationResult> pending, int threads,
+                                         ObjIntConsumer<DeobfuscationResult> onDecrypted) throws InterruptedException {
+        Map<String, List<Integer>> positionsByClass = new LinkedHashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            positionsByClass.computeIfAbsent(pending.get(i).getClassName(), k -> new ArrayList<>()).add(i);
+        }
+        DeobfuscationResult[] results = new DeobfuscationResult[pending.size()];
+
+        int poolSize = Math.max(1, Math.min(threads, positionsByClass.size()));
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "string-decrypt-" + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(positionsByClass.size());
+            for (List<Integer> positions : positionsByClass.values()) {
+                futures.add(executor.submit(() -> {
+                    Worker worker = workers.get();
+                    worker.reset();
+                    for (int position : positions) {
+                        DeobfuscationResult result = decrypt(worker, pending.get(position));
+                        results[position] = result;
+                        if (onDecrypted != null) {
+                            onDecrypted.accept(result, position);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Positions the failed task did not reach are filled in below
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<DeobfuscationResult> ordered = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            DeobfuscationResult result = results[i];
+            if (result == null) {
+                DeobfuscationResult entry = pending.get(i);
+                result = DeobfuscationResult.failure(entry.getClassName(), entry.getConstantPoolIndex(),
+                        entry.getOriginalValue(), "Not decrypted");
+            }
+            ordered.add(result);
+        }
+        return ordered;
+    }
+
+    private DeobfuscationResult decrypt(Worker worker, DeobfuscationResult entry) {
+        long startTime = System.currentTimeMillis();
+        boolean byIndex = decryptor.getType() == DecryptorCandidate.DecryptorType.INT_TO_STRING;
+        // Results depend on the class's own static state, so they are only shared within it
+        String key = entry.getClassName() + "#" + (byIndex ? entry.getConstantPoolIndex() : entry.getOriginalValue());
+
+        try {
+            String decrypted = memoized(memo, key, () -> worker.execute(entry, byIndex));
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (decrypted != null) {
+                return DeobfuscationResult.success(entry.getClassName(), entry.getConstantPoolIndex(),
+                        entry.getOriginalValue(), decrypted, decryptor.getMethod(), elapsed);
+            }
+            return DeobfuscationResult.failure(entry.getClassName(), entry.getConstantPoolIndex(),
+                    entry.getOriginalValue(), "Decryptor returned null");
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return DeobfuscationResult.failure(entry.getClassName(), entry.getConstantPoolIndex(),
+                    entry.getOriginalValue(), cause.getMessage() != null ? cause.getMessage() : cause.toString());
+        }
+    }
+
+    /**
+     * Runs {@code compute} for the first caller with {@code key}; later callers wait for its outcome and share it.
+     * Any failure, {@link Error}s included, is shared too, as a {@link java.util.concurrent.CompletionException}:
+     * a future left incomplete would block every other caller with the key forever.
+     */
+    static String memoized(Map<String, CompletableFuture<String>> memo, String key, Supplier<String> compute) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> shared = memo.putIfAbsent(key, mine);
+        if (shared == null) {
+            shared = mine;
+            try {
+                mine.complete(compute.get());
+            } catch (Throwable t) {
+                mine.completeExceptionally(t);
+            }
+        }
+        return shared.join();
+    }
+
+    /** One thread's interpreter: a private class pool for the whole batch, and a heap that is reset per class. */
+    private final class Worker {
+        private final ClassPool pool = new SnapshotClassPool(frozenClasses, classPool);
+        private final MethodEntry method = findMethod(pool, decryptor.getMethod());
+        private SimpleHeapManager heapManager;
+        private BytecodeContext context;
+
+        /** Discards every object and static initialized so far; the next call runs {@code <clinit>} again. */
+        void reset() {
+            ClassResolver classResolver = new ClassResolver(pool);
+            heapManager = new SimpleHeapManager();
+            heapManager.setClassResolver(classResolver);
+            context = new BytecodeContext.Builder()
+                .heapManager(heapManager)
+                .classResolver(classResolver)
+                .mode(ExecutionMode.RECURSIVE)
+                .maxInstructions(maxInstructions)
+                .maxCallDepth(maxCallDepth)
+                .build();
+        }
+
+        String execute(DeobfuscationResult entry, boolean byIndex) {
+            try {
+                ConcreteValue arg = byIndex
+                    ? ConcreteValue.intValue(entry.getConstantPoolIndex())
+                    : ConcreteValue.reference(heapManager.internString(entry.getOriginalValue()));
+
+                BytecodeResult result = new BytecodeEngine(context).execute(method, new ConcreteValue[] { arg });
+                if (!result.isSuccess()) {
+                    throw new RuntimeException("Execution failed: " +
+                        (result.getException() != null ? result.getException().toString() : "Unknown error"));
+                }
+
+                ConcreteValue returnVal = result.getReturnValue();
+                if (returnVal == null || returnVal.isNull()) {
+                    return null;
+                }
+                ObjectInstance returnObj = returnVal.asReference();
+                return heapManager.extractString(returnObj);
+            } catch (Throwable t) {
+                reset();
+                throw t;
+            }
+        }
+    }
+
+    /** {@code original}'s counterpart in {@code pool}, or {@code original} itself if the pool has no copy. */
+    private static MethodEntry findMethod(ClassPool pool, MethodEntry original) {
+        ClassFile owner = pool.get(original.getOwnerName());
+        if (owner != null) {
+            for (MethodEntry m : owner.getMethods()) {
+                if (m.getName().equals(original.getName()) && m.getDesc().equals(original.getDesc())) {
+                    return m;
+                }
+            }
+        }
+        return original;
+    }
+}
@@ -8,15 +8,18 @@ import com.tonic.analysis.execution.heap.ObjectInstance;
 import com.tonic.analysis.execution.heap.SimpleHeapManager;
 import com.tonic.analysis.execution.resolve.ClassResolver;
 import com.tonic.analysis.execution.state.ConcreteValue;
+import com.tonic.parser.ClassFile;
 import com.tonic.parser.ClassPool;
 import com.tonic.parser.MethodEntry;
 import com.tonic.deobfuscation.model.DecryptorCandidate;
 import com.tonic.deobfuscation.model.DeobfuscationResult;
+import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
 import com.tonic.service.ProjectService;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.function.ObjIntConsumer;
 
 public class DeobfuscationService {
 
@@ -167,4 +170,28 @@ public class DeobfuscationService {
         }
     }
 
+    /**
+     * Decrypts all {@code pending} strings with {@code decryptor} in parallel, returning results in the same order.
+     * Unlike {@link #decryptString}, the interpreter heap is kept for all of a class's strings, so the decryptor's
+     * class is initialized once per class instead of once per string. The batch runs against a snapshot of the
+     * project's classes taken here. {@code onDecrypted} receives each result and its position as it completes, on a
+     * worker thread.
+     */
+    public List<DeobfuscationResult> decryptAll(List<DeobfuscationResult> pending, DecryptorCandidate decryptor,
+                                                ObjIntConsumer<DeobfuscationResult> onDecrypted) throws InterruptedException {
+        if (!isInitialized()) {
+            initialize();
+        }
+        List<ClassFile> userClasses = new ArrayList<>();
+        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+        if (project != null) {
+            for (ClassEntryModel entry : project.getUserClasses()) {
+                userClasses.add(entry.getClassFile());
+            }
+        }
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new BatchDecryptor(classPool, userClasses, decryptor, maxInstructions, maxCallDepth)
+            .decryptAll(pending, threads, onDecrypted);
+    }
+
 }
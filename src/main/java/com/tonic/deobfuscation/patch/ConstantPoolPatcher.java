@@ -1,48 +1,38 @@
 package com.tonic.deobfuscation.patch;
 
 import com.tonic.parser.ClassFile;
-import com.tonic.parser.ConstPool;
 import com.tonic.parser.constpool.Item;
 import com.tonic.parser.constpool.StringRefItem;
 import com.tonic.parser.constpool.Utf8Item;
 import com.tonic.deobfuscation.model.DeobfuscationResult;
 import com.tonic.service.ConsoleLogService;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ConstantPoolPatcher {
 
     public void patchString(ClassFile classFile, int cpIndex, String newValue) {
-        ConstPool cp = classFile.getConstPool();
-        List<Item<?>> items = cp.getItems();
-
-        if (cpIndex < 0 || cpIndex >= items.size()) {
-            throw new IllegalArgumentException("CP index " + cpIndex + " is out of range");
-        }
-
-        Item<?> item = items.get(cpIndex);
-        if (!(item instanceof StringRefItem)) {
-            throw new IllegalArgumentException("CP index " + cpIndex + " is not a StringRef");
-        }
-
-        StringRefItem stringRef = (StringRefItem) item;
-        int utf8Index = stringRef.getValue();
-
-        if (utf8Index < 0 || utf8Index >= items.size()) {
-            throw new IllegalArgumentException("StringRef points to invalid UTF8 index");
-        }
-
-        Item<?> utf8Item = items.get(utf8Index);
-        if (!(utf8Item instanceof Utf8Item)) {
-            throw new IllegalArgumentException("StringRef points to non-UTF8 item");
-        }
-
-        Utf8Item utf8 = (Utf8Item) utf8Item;
+        List<Item<?>> items = classFile.getConstPool().getItems();
+        Utf8Item utf8 = (Utf8Item) items.get(resolveUtf8Index(items, cpIndex));
         utf8.setValue(newValue);
     }
 
+    /**
+     * Applies every successful, unapplied result for {@code classFile}. All patches are resolved against the constant
+     * pool first and then written in a single pass: a UTF8 entry shared by several string constants is written once,
+     * and is left untouched if those constants decrypted to different values.
+     */
     public int applyResults(ClassFile classFile, List<DeobfuscationResult> results) {
-        int applied = 0;
+        List<Item<?>> items = classFile.getConstPool().getItems();
+        Map<Integer, String> utf8Values = new LinkedHashMap<>();
+        Map<Integer, List<DeobfuscationResult>> byUtf8 = new HashMap<>();
+        Set<Integer> conflicts = new HashSet<>();
 
         for (DeobfuscationResult result : results) {
             if (!result.isSuccess() || result.isApplied()) {
@@ -53,17 +43,59 @@ public class ConstantPoolPatcher {
                 continue;
             }
 
+            int utf8Index;
             try {
-                patchString(classFile, result.getConstantPoolIndex(), result.getDecryptedValue());
-                result.setApplied(true);
-                applied++;
-            } catch (Exception e) {
+                utf8Index = resolveUtf8Index(items, result.getConstantPoolIndex());
+            } catch (IllegalArgumentException e) {
                 ConsoleLogService.getInstance().error("[ConstantPoolPatcher] Failed to apply patch at CP#" +
                     result.getConstantPoolIndex() + ": " + e.getMessage());
+                continue;
+            }
+
+            String previous = utf8Values.putIfAbsent(utf8Index, result.getDecryptedValue());
+            if (previous != null && !previous.equals(result.getDecryptedValue())) {
+                conflicts.add(utf8Index);
+            }
+            byUtf8.computeIfAbsent(utf8Index, k -> new ArrayList<>()).add(result);
+        }
+
+        int applied = 0;
+        for (Map.Entry<Integer, String> patch : utf8Values.entrySet()) {
+            List<DeobfuscationResult> patched = byUtf8.get(patch.getKey());
+            if (conflicts.contains(patch.getKey())) {
+                ConsoleLogService.getInstance().error("[ConstantPoolPatcher] Skipped UTF8 #" + patch.getKey() +
+                    ": shared by " + patched.size() + " strings that decrypted to different values");
+                continue;
+            }
+            ((Utf8Item) items.get(patch.getKey())).setValue(patch.getValue());
+            for (DeobfuscationResult result : patched) {
+                result.setApplied(true);
+                applied++;
             }
         }
 
         return applied;
     }
 
+    private static int resolveUtf8Index(List<Item<?>> items, int cpIndex) {
+        if (cpIndex < 0 || cpIndex >= items.size()) {
+            throw new IllegalArgumentException("CP index " + cpIndex + " is out of range");
+        }
+
+        Item<?> item = items.get(cpIndex);
+        if (!(item instanceof StringRefItem)) {
+            throw new IllegalArgumentException("CP index " + cpIndex + " is not a StringRef");
+        }
+
+        int utf8Index = ((StringRefItem) item).getValue();
+        if (utf8Index < 0 || utf8Index >= items.size()) {
+            throw new IllegalArgumentException("StringRef points to invalid UTF8 index");
+        }
+
+        if (!(items.get(utf8Index) instanceof Utf8Item)) {
+            throw new IllegalArgumentException("StringRef points to non-UTF8 item");
+        }
+        return utf8Index;
+    }
+
 }
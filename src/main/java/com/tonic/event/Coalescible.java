@@ -0,0 +1,22 @@
+package com.tonic.event;
+
+/**
+ * Marks an event type whose pending instances may be merged before delivery. When events of the same type and
+ * {@link #getCoalesceKey() key} are posted off the EDT back to back before the next dispatch batch, only one is
+ * delivered: the result of folding each newer event over the previous one with {@link #coalesce}. An event of any
+ * other type or key posted in between ends the run, so delivery order is kept. Events posted on the EDT are still
+ * delivered immediately and never coalesced.
+ */
+public interface Coalescible<E extends Event> {
+
+    /** Events of the same type with equal keys coalesce; {@code null} means one slot for the whole type. */
+    default Object getCoalesceKey() {
+        return null;
+    }
+
+    /** Merges this (newer) event with the pending {@code previous} one. Defaults to keeping the latest. */
+    @SuppressWarnings("unchecked")
+    default E coalesce(E previous) {
+        return (E) this;
+    }
+}
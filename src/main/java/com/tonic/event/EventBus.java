@@ -1,23 +1,50 @@
 package com.tonic.event;
 
+import com.tonic.util.ErrorHandler;
+
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Central event bus for JStudio.
  * Thread-safe and ensures event handlers are called on the EDT.
+ * <p>
+ * Events posted on the EDT are delivered synchronously. Events posted from other threads are queued and
+ * delivered together in a single EDT runnable, at most once per {@link #FRAME_MILLIS frame}, in posting order. A
+ * {@link Coalescible} event is merged into the newest pending event when that one has the same type and key, so
+ * merging never moves an event past another one. Per-type counters and post-to-delivery latency are available from
+ * {@link #getDispatchStats()}.
  */
 public class EventBus {
 
+    /** Minimum spacing between off-EDT dispatch batches (~60 per second). */
+    static final int FRAME_MILLIS = 16;
+
     private static final EventBus INSTANCE = new EventBus();
 
     private final Map<Class<?>, List<EventHandler<?>>> handlers = new HashMap<>();
 
+    private final Object pendingLock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private long lastFlushNanos;
+    private final Timer flushTimer;
+
+    private final Map<Class<?>, Counters> counters = new ConcurrentHashMap<>();
+
     private EventBus() {
+        flushTimer = new Timer(FRAME_MILLIS, e -> flush());
+        flushTimer.setRepeats(false);
+        lastFlushNanos = System.nanoTime() - FRAME_MILLIS * 1_000_000L;
     }
 
     public static EventBus getInstance() {
@@ -48,10 +75,79 @@ public class EventBus {
 
     /**
      * Post an event to all registered handlers.
-     * Handlers are invoked on the Swing EDT.
+     * Handlers are invoked on the Swing EDT: immediately when posting from the EDT, otherwise in the next
+     * dispatch batch.
      */
-    @SuppressWarnings("unchecked")
     public void post(Event event) {
+        if (!hasHandlers(event.getClass())) {
+            return;
+        }
+        long postedAt = System.nanoTime();
+        countersFor(event.getClass()).posted.incrementAndGet();
+
+        if (SwingUtilities.isEventDispatchThread()) {
+            dispatch(event, postedAt, false);
+        } else {
+            enqueue(event, postedAt);
+        }
+    }
+
+    private boolean hasHandlers(Class<?> eventType) {
+        synchronized (handlers) {
+            List<EventHandler<?>> list = handlers.get(eventType);
+            return list != null && !list.isEmpty();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void enqueue(Event event, long postedAt) {
+        long delayMillis = -1;
+        synchronized (pendingLock) {
+            CoalesceKey key = null;
+            if (event instanceof Coalescible) {
+                key = new CoalesceKey(event.getClass(), ((Coalescible<?>) event).getCoalesceKey());
+                int last = pending.size() - 1;
+                // Only the newest pending event may absorb this one, so no event overtakes another
+                if (last >= 0 && key.equals(pending.get(last).key)) {
+                    Pending previous = pending.remove(last);
+                    event = (Event) ((Coalescible) event).coalesce(previous.event);
+                    postedAt = previous.postedAt;
+                    countersFor(event.getClass()).coalesced.incrementAndGet();
+                }
+            }
+            pending.add(new Pending(event, postedAt, key));
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                long sinceLast = (System.nanoTime() - lastFlushNanos) / 1_000_000L;
+                delayMillis = Math.max(0, FRAME_MILLIS - sinceLast);
+            }
+        }
+
+        if (delayMillis == 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else if (delayMillis > 0) {
+            flushTimer.setInitialDelay((int) delayMillis);
+            flushTimer.restart();
+        }
+    }
+
+    /** Delivers every pending event in posting order. Runs on the EDT. */
+    private void flush() {
+        List<Pending> batch;
+        synchronized (pendingLock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+            lastFlushNanos = System.nanoTime();
+        }
+        for (Pending p : batch) {
+            dispatch(p.event, p.postedAt, true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(Event event, long postedAt, boolean batched) {
         List<EventHandler<?>> list;
         synchronized (handlers) {
             list = handlers.get(event.getClass());
@@ -63,22 +159,57 @@ public class EventBus {
         }
 
         for (EventHandler<?> handler : list) {
-            if (SwingUtilities.isEventDispatchThread()) {
+            if (!batched) {
                 ((EventHandler<Event>) handler).handle(event);
-            } else {
-                EventHandler<Event> h = (EventHandler<Event>) handler;
-                SwingUtilities.invokeLater(() -> h.handle(event));
+                continue;
             }
+            try {
+                ((EventHandler<Event>) handler).handle(event);
+            } catch (RuntimeException e) {
+                // One failing handler must not drop the rest of the batch
+                ErrorHandler.handle(e, "Event handler failed for " + event.getClass().getSimpleName());
+            }
+        }
+
+        Counters c = countersFor(event.getClass());
+        long latency = System.nanoTime() - postedAt;
+        c.delivered.incrementAndGet();
+        c.totalLatencyNanos.addAndGet(latency);
+        c.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    private Counters countersFor(Class<?> eventType) {
+        return counters.computeIfAbsent(eventType, k -> new Counters());
+    }
+
+    /**
+     * Snapshot of per-type dispatch counts and latency since startup (or the last {@link #resetDispatchStats()}).
+     */
+    public Map<Class<?>, EventDispatchStats> getDispatchStats() {
+        Map<Class<?>, EventDispatchStats> result = new LinkedHashMap<>();
+        for (Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+            Counters c = entry.getValue();
+            result.put(entry.getKey(), new EventDispatchStats(entry.getKey(), c.posted.get(), c.coalesced.get(),
+                    c.delivered.get(), c.totalLatencyNanos.get(), c.maxLatencyNanos.get()));
         }
+        return result;
+    }
+
+    public void resetDispatchStats() {
+        counters.clear();
     }
 
     /**
-     * Clear all handlers. Useful for testing.
+     * Clear all handlers, pending events and statistics. Useful for testing.
      */
     public void clear() {
         synchronized (handlers) {
             handlers.clear();
         }
+        synchronized (pendingLock) {
+            pending.clear();
+        }
+        counters.clear();
     }
 
     /**
@@ -88,4 +219,48 @@ public class EventBus {
     public interface EventHandler<T extends Event> {
         void handle(T event);
     }
+
+    private static final class Pending {
+        final Event event;
+        final long postedAt;
+        final CoalesceKey key;
+
+        Pending(Event event, long postedAt, CoalesceKey key) {
+            this.event = event;
+            this.postedAt = postedAt;
+            this.key = key;
+        }
+    }
+
+    private static final class CoalesceKey {
+        private final Class<?> type;
+        private final Object key;
+
+        CoalesceKey(Class<?> type, Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CoalesceKey)) {
+                return false;
+            }
+            CoalesceKey other = (CoalesceKey) o;
+            return type == other.type && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(key);
+        }
+    }
+
+    private static final class Counters {
+        final AtomicLong posted = new AtomicLong();
+        final AtomicLong coalesced = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+    }
 }
@@ -0,0 +1,43 @@
+package com.tonic.event;
+
+import lombok.Getter;
+
+/**
+ * Immutable snapshot of {@link EventBus} dispatch counters for one event type. Latency is measured from
+ * {@code post} to the end of delivery to all handlers, so it includes the time spent queued for the EDT.
+ */
+@Getter
+public final class EventDispatchStats {
+
+    private final Class<?> eventType;
+    private final long posted;
+    private final long coalesced;
+    private final long delivered;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+
+    EventDispatchStats(Class<?> eventType, long posted, long coalesced, long delivered,
+                       long totalLatencyNanos, long maxLatencyNanos) {
+        this.eventType = eventType;
+        this.posted = posted;
+        this.coalesced = coalesced;
+        this.delivered = delivered;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    public double getAverageLatencyMillis() {
+        return delivered == 0 ? 0 : totalLatencyNanos / (delivered * 1_000_000.0);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: posted=%d coalesced=%d delivered=%d avg=%.2fms max=%.2fms",
+                eventType.getSimpleName(), posted, coalesced, delivered,
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
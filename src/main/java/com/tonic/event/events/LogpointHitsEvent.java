@@ -0,0 +1,24 @@
+package com.tonic.event.events;
+
+import com.tonic.event.Event;
+import com.tonic.live.protocol.LogpointHit;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Posted when the attached JVM reports a batch of logpoint hits. {@code dropped} counts hits the agent's ring
+ * overwrote before they could be sent (the target was hitting faster than the batches drain).
+ */
+@Getter
+public class LogpointHitsEvent extends Event {
+
+    private final List<LogpointHit> hits;
+    private final int dropped;
+
+    public LogpointHitsEvent(Object source, List<LogpointHit> hits, int dropped) {
+        super(source);
+        this.hits = hits;
+        this.dropped = dropped;
+    }
+}
@@ -18,13 +18,22 @@ public class ProjectRenamedEvent extends Event {
     private final Kind kind;
     private final String oldClass;
     private final String newClass;
+    /** The member's old name for METHOD/FIELD renames; null for CLASS. */
     private final String member;
+    /** The member's new name for METHOD/FIELD renames; null for CLASS, or when the poster did not supply it. */
+    private final String newMember;
 
     public ProjectRenamedEvent(Object source, Kind kind, String oldClass, String newClass, String member) {
+        this(source, kind, oldClass, newClass, member, null);
+    }
+
+    public ProjectRenamedEvent(Object source, Kind kind, String oldClass, String newClass, String member,
+                               String newMember) {
         super(source);
         this.kind = kind;
         this.oldClass = oldClass;
         this.newClass = newClass;
         this.member = member;
+        this.newMember = newMember;
     }
 }
@@ -1,11 +1,16 @@
 package com.tonic.event.events;
 
+import com.tonic.event.Coalescible;
 import com.tonic.event.Event;
 import com.tonic.model.ProjectModel;
 import lombok.Getter;
 
+/**
+ * Classes were added to or removed from a project. Pending updates for the same project coalesce into one
+ * event whose {@code addedClassCount} is the sum.
+ */
 @Getter
-public class ProjectUpdatedEvent extends Event {
+public class ProjectUpdatedEvent extends Event implements Coalescible<ProjectUpdatedEvent> {
 
     private final ProjectModel project;
     private final int addedClassCount;
@@ -15,4 +20,14 @@ public class ProjectUpdatedEvent extends Event {
         this.project = project;
         this.addedClassCount = addedClassCount;
     }
+
+    @Override
+    public Object getCoalesceKey() {
+        return project;
+    }
+
+    @Override
+    public ProjectUpdatedEvent coalesce(ProjectUpdatedEvent previous) {
+        return new ProjectUpdatedEvent(getSource(), project, previous.addedClassCount + addedClassCount);
+    }
 }
@@ -1,10 +1,15 @@
 package com.tonic.event.events;
 
+import com.tonic.event.Coalescible;
 import com.tonic.event.Event;
 import lombok.Getter;
 
+/**
+ * Status bar message. Only the latest pending message is delivered when they are posted off the EDT faster
+ * than the bus dispatches, except that a pending warning or error is never replaced by a less severe message.
+ */
 @Getter
-public class StatusMessageEvent extends Event {
+public class StatusMessageEvent extends Event implements Coalescible<StatusMessageEvent> {
 
     public enum MessageType {
         INFO,
@@ -24,4 +29,9 @@ public class StatusMessageEvent extends Event {
         this.message = message;
         this.type = type;
     }
+
+    @Override
+    public StatusMessageEvent coalesce(StatusMessageEvent previous) {
+        return previous.type.compareTo(type) > 0 ? previous : this;
+    }
 }
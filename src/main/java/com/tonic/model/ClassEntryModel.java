@@ -1,12 +1,16 @@
 package com.tonic.model;
 
+import com.tonic.analysis.source.decompile.ClassDecompiler;
 import com.tonic.analysis.source.decompile.DecompileResult;
 import com.tonic.parser.ClassFile;
+import com.tonic.parser.ConstPool;
 import com.tonic.parser.FieldEntry;
 import com.tonic.parser.MethodEntry;
 import com.tonic.parser.constpool.ClassRefItem;
+import com.tonic.parser.constpool.Item;
 import com.tonic.parser.constpool.Utf8Item;
 import com.tonic.util.AccessFlags;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -15,6 +19,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 public class ClassEntryModel {
@@ -39,13 +45,14 @@ public class ClassEntryModel {
     private String displayName;
     private String iconKey;
 
-    // Decompilation cache
-    private String decompilationCache;
-    private long decompilationTimestamp;
-    private Map<String, NavigableMap<Integer, Integer>> sourceLineMaps;
-    private Map<String, DecompileResult.MethodSpan> methodSpans;
-    private Map<String, DecompileResult.MemberSpan> fieldSpans;
-    private DecompileResult.MemberSpan classSpan;
+    // Decompilation cache, bounded across all classes by DecompilationCache
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<DecompiledSource> decompiled = new AtomicReference<>();
+    @Getter(AccessLevel.NONE)
+    private final Object decompileLock = new Object();
+    /** Bumped by every {@link #invalidateDecompilationCache()}, see {@link #getEditCount()}. */
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong edits = new AtomicLong();
 
     public ClassEntryModel(ClassFile classFile) {
         this.classFile = classFile;
@@ -190,39 +197,154 @@ public class ClassEntryModel {
         return new ArrayList<>(fields.values());
     }
 
+    /**
+     * The cached decompilation, or null when the class has not been decompiled or its entry was evicted. Reads
+     * back a spilled entry when one exists and counts as a use for the cache's LRU order.
+     */
+    public DecompiledSource getDecompiled() {
+        DecompiledSource current = decompiled.get();
+        if (current != null) {
+            DecompilationCache.getInstance().touch(this);
+            return current;
+        }
+        DecompiledSource restored = DecompilationCache.getInstance().restore(this);
+        if (restored != null && decompiled.compareAndSet(null, restored)) {
+            DecompilationCache.getInstance().admit(this, restored);
+            return restored;
+        }
+        return decompiled.get();
+    }
+
+    public String getDecompilationCache() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getSource() : null;
+    }
+
+    public long getDecompilationTimestamp() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getTimestamp() : 0;
+    }
+
+    public Map<String, NavigableMap<Integer, Integer>> getSourceLineMaps() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getLineMaps() : null;
+    }
+
+    public Map<String, DecompileResult.MethodSpan> getMethodSpans() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getMethodSpans() : null;
+    }
+
+    public Map<String, DecompileResult.MemberSpan> getFieldSpans() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getFieldSpans() : null;
+    }
+
+    public DecompileResult.MemberSpan getClassSpan() {
+        DecompiledSource d = getDecompiled();
+        return d != null ? d.getClassSpan() : null;
+    }
+
     public void setDecompilationCache(String decompilationCache) {
-        this.decompilationCache = decompilationCache;
-        this.decompilationTimestamp = System.currentTimeMillis();
-        this.sourceLineMaps = null;
-        this.methodSpans = null;
-        this.fieldSpans = null;
-        this.classSpan = null;
+        setDecompilationCache(decompilationCache, null, null, null, null);
     }
 
     /**
      * Caches decompiled source together with its per-member spans and per-method offset-to-line maps,
      * so PC navigation and declaration lenses can resolve exact source lines. All are invalidated with
-     * the source.
+     * the source. A null source invalidates.
      */
     public void setDecompilationCache(String decompilationCache,
                                       Map<String, NavigableMap<Integer, Integer>> sourceLineMaps,
                                       Map<String, DecompileResult.MethodSpan> methodSpans,
                                       Map<String, DecompileResult.MemberSpan> fieldSpans,
                                       DecompileResult.MemberSpan classSpan) {
-        setDecompilationCache(decompilationCache);
-        this.sourceLineMaps = sourceLineMaps;
-        this.methodSpans = methodSpans;
-        this.fieldSpans = fieldSpans;
-        this.classSpan = classSpan;
+        if (decompilationCache == null) {
+            invalidateDecompilationCache();
+            return;
+        }
+        DecompiledSource source = new DecompiledSource(decompilationCache, sourceLineMaps, methodSpans,
+                fieldSpans, classSpan);
+        decompiled.set(source);
+        DecompilationCache.getInstance().admit(this, source);
+    }
+
+    /**
+     * Decompiles the current class file with line maps. Decompilations of one class run one at a time: the
+     * decompiler works on the shared {@link ClassFile}, and a prefetch thread may reach a class while the source
+     * view is decompiling it.
+     */
+    public DecompileResult decompile() {
+        synchronized (decompileLock) {
+            return new ClassDecompiler(classFile).decompileWithLineMap();
+        }
+    }
+
+    /**
+     * Installs a background decompilation only if nothing is cached yet and the bytecode it was produced from is
+     * still current, so a prefetch never overwrites an edit or a fresher result.
+     */
+    public boolean offerDecompiled(ClassFile basis, DecompiledSource source) {
+        if (classFile != basis) {
+            return false;
+        }
+        DecompiledSource current = decompiled.get();
+        if (current != null && !current.isRestored()) {
+            return false;
+        }
+        if (!decompiled.compareAndSet(current, source)) {
+            return false;
+        }
+        DecompilationCache.getInstance().admit(this, source);
+        return true;
+    }
+
+    /** Called by {@link DecompilationCache} on eviction; a no-op if the entry was replaced meanwhile. */
+    void dropDecompiled(DecompiledSource expected) {
+        decompiled.compareAndSet(expected, null);
+    }
+
+    /**
+     * How many times this class has been invalidated. Every edit path drops the edited class's decompilation, so
+     * this moves whenever the class's bytecode may have changed.
+     */
+    public long getEditCount() {
+        return edits.get();
     }
 
     public void invalidateDecompilationCache() {
-        this.decompilationCache = null;
-        this.decompilationTimestamp = 0;
-        this.sourceLineMaps = null;
-        this.methodSpans = null;
-        this.fieldSpans = null;
-        this.classSpan = null;
+        edits.incrementAndGet();
+        decompiled.set(null);
+        DecompilationCache.getInstance().remove(this);
+    }
+
+    /**
+     * Whether this class's constant pool mentions {@code symbol}: as an exact UTF-8 constant (a class's internal
+     * name, or a member name), as an object type inside a descriptor or signature, or as the outer class of a
+     * nested class ({@code symbol$Inner}). Its decompiled source can only show a renamed symbol if this holds.
+     */
+    public boolean referencesSymbol(String symbol) {
+        ConstPool cp = classFile.getConstPool();
+        if (cp == null) {
+            return true;
+        }
+        String asType = "L" + symbol + ";";
+        String asGeneric = "L" + symbol + "<";
+        // Nested classes of a class carry its name as a prefix, and their source names it as the outer class
+        String asOuter = symbol + "$";
+        String asOuterType = "L" + asOuter;
+        List<Item<?>> items = cp.getItems();
+        for (int i = 1; i < items.size(); i++) {
+            Item<?> item = items.get(i);
+            if (item instanceof Utf8Item) {
+                String value = ((Utf8Item) item).getValue();
+                if (value.equals(symbol) || value.contains(asType) || value.contains(asGeneric)
+                        || value.startsWith(asOuter) || value.contains(asOuterType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public void updateClassFile(ClassFile newClassFile) {
@@ -0,0 +1,292 @@
+package com.tonic.model;
+
+import com.tonic.util.ErrorHandler;
+import com.tonic.util.Settings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size-bounded, least-recently-used accounting for every {@link ClassEntryModel}'s {@link DecompiledSource}. Classes
+ * keep their own entry; this cache tracks the combined estimated size and, past the budget, drops the least recently
+ * read entries from their classes. With spilling enabled an evicted entry's source and line maps are gzip-written to
+ * a temp file on a background thread and read back transparently on the next access; spans are not spilled, so a
+ * restored entry is {@link DecompiledSource#isRestored() marked} for callers that need them.
+ * <p>
+ * Keys are class-entry identities (not class names), so classes of different projects never share an entry.
+ */
+public final class DecompilationCache {
+
+    private static final DecompilationCache INSTANCE = new DecompilationCache();
+    private static final int SPILL_FORMAT = 1;
+
+    private final LinkedHashMap<Key, DecompiledSource> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Key, File> spilled = new HashMap<>();
+    /** Spill writes in flight; a write only lands if its token is still current when it completes. */
+    private final Map<Key, Long> pendingSpills = new HashMap<>();
+    private final AtomicLong spillSeq = new AtomicLong();
+    private long usedBytes;
+    private long budgetBytes;
+    private boolean spillEnabled;
+    private File spillDir;
+    private ExecutorService spillWriter;
+
+    private DecompilationCache() {
+        budgetBytes = Settings.getInstance().getDecompileCacheMb() * 1024L * 1024L;
+        spillEnabled = Settings.getInstance().isDecompileSpillEnabled();
+    }
+
+    public static DecompilationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /** Sets the in-memory budget; shrinking it evicts immediately. */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        evictOverBudget();
+    }
+
+    public synchronized void setSpillEnabled(boolean spillEnabled) {
+        this.spillEnabled = spillEnabled;
+        if (!spillEnabled) {
+            for (File file : spilled.values()) {
+                file.delete();
+            }
+            spilled.clear();
+            pendingSpills.clear();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int size() {
+        return lru.size();
+    }
+
+    /** Whether speculative work (prefetch) may add entries without pushing out ones the user actually opened. */
+    public synchronized boolean hasHeadroom() {
+        return usedBytes < budgetBytes - budgetBytes / 4;
+    }
+
+    /** Records {@code source} as {@code entry}'s current decompilation, evicting older entries past the budget. */
+    synchronized void admit(ClassEntryModel entry, DecompiledSource source) {
+        Key key = new Key(entry);
+        discardSpill(key);
+        DecompiledSource previous = lru.put(key, source);
+        if (previous != null) {
+            usedBytes -= previous.getEstimatedBytes();
+        }
+        usedBytes += source.getEstimatedBytes();
+        evictOverBudget();
+    }
+
+    /** Marks {@code entry} as most recently used. */
+    synchronized void touch(ClassEntryModel entry) {
+        lru.get(new Key(entry));
+    }
+
+    /** Forgets {@code entry} entirely, including any spilled copy (its bytecode or naming changed). */
+    synchronized void remove(ClassEntryModel entry) {
+        Key key = new Key(entry);
+        DecompiledSource previous = lru.remove(key);
+        if (previous != null) {
+            usedBytes -= previous.getEstimatedBytes();
+        }
+        discardSpill(key);
+    }
+
+    /**
+     * Reads {@code entry}'s spilled decompilation back into memory, or returns null when nothing was spilled. The
+     * caller installs the result on the entry.
+     */
+    DecompiledSource restore(ClassEntryModel entry) {
+        File file;
+        synchronized (this) {
+            file = spilled.remove(new Key(entry));
+        }
+        if (file == null) {
+            return null;
+        }
+        try {
+            return readSpill(file);
+        } catch (IOException e) {
+            ErrorHandler.handle(e, "Failed to restore spilled source for " + entry.getClassName());
+            return null;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Key, DecompiledSource>> it = lru.entrySet().iterator();
+        // Always keep the most recent entry, even if it alone exceeds the budget
+        while (usedBytes > budgetBytes && lru.size() > 1 && it.hasNext()) {
+            Map.Entry<Key, DecompiledSource> eldest = it.next();
+            it.remove();
+            usedBytes -= eldest.getValue().getEstimatedBytes();
+            ClassEntryModel entry = eldest.getKey().entry;
+            entry.dropDecompiled(eldest.getValue());
+            if (spillEnabled) {
+                spill(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private void spill(Key key, DecompiledSource source) {
+        if (spillWriter == null) {
+            spillWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "decompile-spill");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+        Long token = spillSeq.incrementAndGet();
+        pendingSpills.put(key, token);
+        spillWriter.submit(() -> {
+            try {
+                File file = writeSpill(source, token);
+                synchronized (this) {
+                    // Removed or re-decompiled while the write was in flight: the spilled copy is stale
+                    if (!spillEnabled || !pendingSpills.remove(key, token)) {
+                        file.delete();
+                        return;
+                    }
+                    File previous = spilled.put(key, file);
+                    if (previous != null) {
+                        previous.delete();
+                    }
+                }
+            } catch (IOException e) {
+                ErrorHandler.handle(e, "Failed to spill decompiled source");
+            }
+        });
+    }
+
+    private void discardSpill(Key key) {
+        pendingSpills.remove(key);
+        File file = spilled.remove(key);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private File writeSpill(DecompiledSource source, long token) throws IOException {
+        File dir;
+        synchronized (this) {
+            if (spillDir == null) {
+                spillDir = new File(System.getProperty("java.io.tmpdir"),
+                        "jstudio-decompile-" + ProcessHandle.current().pid());
+                spillDir.mkdirs();
+                spillDir.deleteOnExit();
+            }
+            dir = spillDir;
+        }
+        File file = new File(dir, token + ".src.gz");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(SPILL_FORMAT);
+            out.writeLong(source.getTimestamp());
+            byte[] text = source.getSource().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            Map<String, NavigableMap<Integer, Integer>> lineMaps = source.getLineMaps();
+            out.writeInt(lineMaps != null ? lineMaps.size() : -1);
+            if (lineMaps != null) {
+                for (Map.Entry<String, NavigableMap<Integer, Integer>> method : lineMaps.entrySet()) {
+                    out.writeUTF(method.getKey());
+                    out.writeInt(method.getValue().size());
+                    for (Map.Entry<Integer, Integer> e : method.getValue().entrySet()) {
+                        out.writeInt(e.getKey());
+                        out.writeInt(e.getValue());
+                    }
+                }
+            }
+        }
+        return file;
+    }
+
+    private static DecompiledSource readSpill(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != SPILL_FORMAT) {
+                throw new IOException("Unknown spill format");
+            }
+            long timestamp = in.readLong();
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            int methodCount = in.readInt();
+            Map<String, NavigableMap<Integer, Integer>> lineMaps = null;
+            if (methodCount >= 0) {
+                lineMaps = new LinkedHashMap<>();
+                for (int i = 0; i < methodCount; i++) {
+                    String methodKey = in.readUTF();
+                    int n = in.readInt();
+                    NavigableMap<Integer, Integer> map = new TreeMap<>();
+                    for (int j = 0; j < n; j++) {
+                        map.put(in.readInt(), in.readInt());
+                    }
+                    lineMaps.put(methodKey, map);
+                }
+            }
+            return new DecompiledSource(new String(text, StandardCharsets.UTF_8), lineMaps, timestamp);
+        }
+    }
+
+    /** Drops every entry and spilled file. */
+    public synchronized void clear() {
+        for (Map.Entry<Key, DecompiledSource> e : lru.entrySet()) {
+            e.getKey().entry.dropDecompiled(e.getValue());
+        }
+        lru.clear();
+        usedBytes = 0;
+        for (File file : spilled.values()) {
+            file.delete();
+        }
+        spilled.clear();
+        pendingSpills.clear();
+    }
+
+    private static final class Key {
+        final ClassEntryModel entry;
+
+        Key(ClassEntryModel entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).entry == entry;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(entry);
+        }
+    }
+}
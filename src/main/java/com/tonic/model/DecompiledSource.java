@@ -0,0 +1,71 @@
+package com.tonic.model;
+
+import com.tonic.analysis.source.decompile.DecompileResult;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * One class's cached decompilation: the source text with its per-method offset-to-line maps and member spans. Held by
+ * {@link ClassEntryModel} and accounted in the shared {@link DecompilationCache}. An entry read back from a disk spill
+ * is {@link #isRestored() restored}: it carries the source and line maps but not the spans, which callers needing
+ * them regenerate from bytecode.
+ */
+@Getter
+public final class DecompiledSource {
+
+    private final String source;
+    private final Map<String, NavigableMap<Integer, Integer>> lineMaps;
+    private final Map<String, DecompileResult.MethodSpan> methodSpans;
+    private final Map<String, DecompileResult.MemberSpan> fieldSpans;
+    private final DecompileResult.MemberSpan classSpan;
+    private final long timestamp;
+    private final boolean restored;
+    private final long estimatedBytes;
+
+    public DecompiledSource(String source,
+                            Map<String, NavigableMap<Integer, Integer>> lineMaps,
+                            Map<String, DecompileResult.MethodSpan> methodSpans,
+                            Map<String, DecompileResult.MemberSpan> fieldSpans,
+                            DecompileResult.MemberSpan classSpan) {
+        this(source, lineMaps, methodSpans, fieldSpans, classSpan, System.currentTimeMillis(), false);
+    }
+
+    DecompiledSource(String source, Map<String, NavigableMap<Integer, Integer>> lineMaps, long timestamp) {
+        this(source, lineMaps, null, null, null, timestamp, true);
+    }
+
+    private DecompiledSource(String source,
+                             Map<String, NavigableMap<Integer, Integer>> lineMaps,
+                             Map<String, DecompileResult.MethodSpan> methodSpans,
+                             Map<String, DecompileResult.MemberSpan> fieldSpans,
+                             DecompileResult.MemberSpan classSpan,
+                             long timestamp, boolean restored) {
+        this.source = source;
+        this.lineMaps = lineMaps;
+        this.methodSpans = methodSpans;
+        this.fieldSpans = fieldSpans;
+        this.classSpan = classSpan;
+        this.timestamp = timestamp;
+        this.restored = restored;
+        this.estimatedBytes = estimateBytes();
+    }
+
+    /** Rough retained size: UTF-16 text plus boxed map entries. Only used to bound the cache, so it need not be exact. */
+    private long estimateBytes() {
+        long bytes = 64 + 2L * source.length();
+        if (lineMaps != null) {
+            for (NavigableMap<Integer, Integer> map : lineMaps.values()) {
+                bytes += 96 + 64L * map.size();
+            }
+        }
+        if (methodSpans != null) {
+            bytes += 96L * methodSpans.size();
+        }
+        if (fieldSpans != null) {
+            bytes += 80L * fieldSpans.size();
+        }
+        return bytes;
+    }
+}
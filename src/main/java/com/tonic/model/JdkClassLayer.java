@@ -0,0 +1,256 @@
+package com.tonic.model;
+
+import com.tonic.parser.ClassFile;
+import com.tonic.util.ErrorHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide, read-only view of the running JDK's classes, shared by every project's {@link LayeredClassPool}.
+ * A class is read from the runtime image and parsed the first time any project asks for it; after that all projects
+ * (and every pool rebuilt on class removal, live attach or history restore) get the same parsed instance.
+ * <p>
+ * Finding a class in the runtime image needs its module. The package-to-module index is built once per JDK and
+ * cached under {@code ~/.jstudio/cache}, keyed by the JDK's version and vendor, so later runs skip the image walk.
+ * <p>
+ * Instances from {@link #get} are shared and must only be read. Code that may edit a JDK class works on a private
+ * instance from {@link #copy}; {@link LayeredClassPool#editable} hands those out, so an edit never reaches another
+ * project.
+ */
+public final class JdkClassLayer {
+
+    private static final JdkClassLayer INSTANCE = new JdkClassLayer();
+    private static final String INDEX_FORMAT = "1";
+
+    /** Parsed classes by internal name; an empty value records a name the JDK does not have. */
+    private final Map<String, Optional<ClassFile>> classes = new ConcurrentHashMap<>();
+    private volatile Map<String, String> moduleByPackage;
+    private volatile List<String> classNames;
+    private FileSystem jrt;
+    private boolean unavailable;
+
+    private JdkClassLayer() {
+    }
+
+    public static JdkClassLayer getInstance() {
+        return INSTANCE;
+    }
+
+    /** The JDK class with the given internal name, or null when the running JDK has no such class. */
+    public ClassFile get(String internalName) {
+        if (internalName == null || internalName.startsWith("[")) {
+            return null;
+        }
+        Optional<ClassFile> cached = classes.get(internalName);
+        if (cached == null) {
+            cached = classes.computeIfAbsent(internalName, name -> Optional.ofNullable(load(name)));
+        }
+        return cached.orElse(null);
+    }
+
+    /** A freshly parsed, private instance of the JDK class, or null when the running JDK has no such class. */
+    public ClassFile copy(String internalName) {
+        if (internalName == null || internalName.startsWith("[")) {
+            return null;
+        }
+        return load(internalName);
+    }
+
+    /**
+     * Internal names of every class in the runtime image, sorted. Listing the image parses nothing; it is done once
+     * per process.
+     */
+    public List<String> classNames() {
+        List<String> names = classNames;
+        if (names == null) {
+            synchronized (this) {
+                names = classNames;
+                if (names == null) {
+                    names = listClassNames();
+                    classNames = names;
+                }
+            }
+        }
+        return names;
+    }
+
+    private List<String> listClassNames() {
+        FileSystem fs = jrt();
+        if (fs == null) {
+            return Collections.emptyList();
+        }
+        // A set: the jrt file system can list a class twice once it has been read
+        Set<String> names = new TreeSet<>();
+        try (Stream<Path> modules = Files.list(fs.getPath("modules"))) {
+            for (Path module : (Iterable<Path>) modules::iterator) {
+                try (Stream<Path> files = Files.walk(module)) {
+                    files.map(f -> module.relativize(f).toString())
+                            .filter(f -> f.endsWith(".class") && !f.equals("module-info.class"))
+                            .forEach(f -> names.add(f.substring(0, f.length() - ".class".length())));
+                }
+            }
+        } catch (IOException e) {
+            ErrorHandler.handle(e, "Failed to list JDK classes");
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(names));
+    }
+
+    private ClassFile load(String internalName) {
+        int slash = internalName.lastIndexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        Map<String, String> index = index();
+        String module = index.get(internalName.substring(0, slash));
+        if (module == null) {
+            return null;
+        }
+        try {
+            Path path = jrt().getPath("modules", module, internalName + ".class");
+            if (!Files.exists(path)) {
+                return null;
+            }
+            return new ClassFile(new ByteArrayInputStream(Files.readAllBytes(path)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private Map<String, String> index() {
+        Map<String, String> index = moduleByPackage;
+        if (index == null) {
+            synchronized (this) {
+                index = moduleByPackage;
+                if (index == null) {
+                    index = loadIndex();
+                    moduleByPackage = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<String, String> loadIndex() {
+        File cacheFile = indexFile();
+        Map<String, String> index = readIndex(cacheFile);
+        if (index != null) {
+            return index;
+        }
+        try {
+            index = buildIndex();
+        } catch (IOException e) {
+            ErrorHandler.handle(e, "Failed to index JDK classes");
+            return Collections.emptyMap();
+        }
+        writeIndex(cacheFile, index);
+        return index;
+    }
+
+    private Map<String, String> buildIndex() throws IOException {
+        FileSystem fs = jrt();
+        if (fs == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> index = new HashMap<>();
+        try (Stream<Path> packages = Files.list(fs.getPath("packages"))) {
+            for (Path pkg : (Iterable<Path>) packages::iterator) {
+                try (Stream<Path> modules = Files.list(pkg)) {
+                    // A split package is rare in the runtime image; the first module wins
+                    modules.findFirst().ifPresent(m ->
+                            index.put(pkg.getFileName().toString().replace('.', '/'), m.getFileName().toString()));
+                }
+            }
+        }
+        return index;
+    }
+
+    private static Map<String, String> readIndex(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!INDEX_FORMAT.equals(in.readLine())) {
+                return null;
+            }
+            Map<String, String> index = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    index.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+            return index.isEmpty() ? null : index;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeIndex(File file, Map<String, String> index) {
+        if (index.isEmpty()) {
+            return;
+        }
+        try {
+            File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                return;
+            }
+            // Written beside the target and moved into place, so a concurrent run never reads a partial index
+            File tmp = File.createTempFile("jdk-index", ".tmp", dir);
+            try (BufferedWriter out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                out.write(INDEX_FORMAT);
+                out.newLine();
+                for (Map.Entry<String, String> e : index.entrySet()) {
+                    out.write(e.getKey());
+                    out.write('\t');
+                    out.write(e.getValue());
+                    out.newLine();
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The index is only an optimization; it is rebuilt next run
+        }
+    }
+
+    private static File indexFile() {
+        String key = (System.getProperty("java.vendor", "") + "-" + System.getProperty("java.runtime.version",
+                System.getProperty("java.version", ""))).replaceAll("[^A-Za-z0-9._+-]", "_");
+        return new File(System.getProperty("user.home"), ".jstudio" + File.separator + "cache"
+                + File.separator + "jdk-" + key + ".idx");
+    }
+
+    private synchronized FileSystem jrt() {
+        if (jrt == null && !unavailable) {
+            try {
+                jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            } catch (FileSystemNotFoundException | IllegalArgumentException e) {
+                unavailable = true;
+            }
+        }
+        return jrt;
+    }
+}
@@ -0,0 +1,205 @@
+package com.tonic.model;
+
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ClassPool;
+import com.tonic.util.Settings;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A project's class pool: its own classes, in front of the shared {@link JdkClassLayer}. Lookups through
+ * {@link #get} fall through to the JDK layer for classes the project does not define, so building or rebuilding a
+ * pool costs nothing for the JDK. A class put into this pool shadows the JDK's copy for this project alone.
+ * <p>
+ * {@link #getClasses()} lists the project's classes followed by every JDK class, as a pool that loaded the JDK
+ * eagerly did. Like {@link #get}, the list hands out the shared JDK instances, which must only be read; code that
+ * edits a JDK class takes it from {@link #editable}, which makes a private copy for this pool on first use. Use
+ * {@link #ownClasses()} to walk only the project's classes.
+ */
+public final class LayeredClassPool extends ClassPool {
+
+    private final JdkClassLayer jdk;
+    /** This pool's private copies of JDK classes, see {@link #editable}. */
+    private final Map<String, ClassFile> copies = new ConcurrentHashMap<>();
+    /** JDK classes removed from this pool through {@link #getClasses()}. */
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+    /** Bumped whenever {@link #removed} changes; part of the key of {@link #listed}. */
+    private final AtomicInteger removedGeneration = new AtomicInteger();
+    /** The JDK names {@link #getClasses()} last listed, reused while nothing that hides a JDK class changed. */
+    private volatile ListedJdkNames listed;
+
+    public LayeredClassPool(JdkClassLayer jdk) {
+        super(true);
+        this.jdk = jdk;
+    }
+
+    /** A pool for a new or rebuilt project: layered over the JDK when JDK classes are enabled, otherwise empty. */
+    public static ClassPool create() {
+        if (!Settings.getInstance().isLoadJdkClassesEnabled()) {
+            return new ClassPool(true);
+        }
+        return new LayeredClassPool(JdkClassLayer.getInstance());
+    }
+
+    @Override
+    public ClassFile get(String internalName) {
+        ClassFile own = super.get(internalName);
+        if (own != null) {
+            return own;
+        }
+        if (internalName == null || removed.contains(internalName)) {
+            return null;
+        }
+        ClassFile copy = copies.get(internalName);
+        return copy != null ? copy : jdk.get(internalName);
+    }
+
+    /**
+     * The instance of {@code internalName} this project may edit: its own class, or else a private copy of the JDK
+     * class, made on first use. Null when neither exists.
+     */
+    public ClassFile editable(String internalName) {
+        ClassFile own = super.get(internalName);
+        if (own != null || internalName == null || removed.contains(internalName)) {
+            return own;
+        }
+        ClassFile copy = copies.get(internalName);
+        if (copy == null) {
+            ClassFile fresh = jdk.copy(internalName);
+            if (fresh == null) {
+                return null;
+            }
+            copy = copies.computeIfAbsent(internalName, k -> fresh);
+        }
+        return copy;
+    }
+
+    /** The project's own classes, without the JDK layer. */
+    public List<ClassFile> ownClasses() {
+        return super.getClasses();
+    }
+
+    @Override
+    public List<ClassFile> getClasses() {
+        List<ClassFile> own = super.getClasses();
+        return new ClassesView(own, jdkNames(own));
+    }
+
+    /**
+     * The JDK names neither shadowed by {@code own} nor removed, sorted. Rebuilt only when the set of shadowed names
+     * or the removals changed since the last call; a project shadows few JDK classes, so the check is cheap.
+     */
+    private List<String> jdkNames(List<ClassFile> own) {
+        List<String> all = jdk.classNames();
+        Set<String> shadowed = new HashSet<>();
+        for (ClassFile cf : own) {
+            String name = cf.getClassName();
+            if (Collections.binarySearch(all, name) >= 0) {
+                shadowed.add(name);
+            }
+        }
+        int generation = removedGeneration.get();
+        ListedJdkNames cached = listed;
+        if (cached != null && cached.generation == generation && cached.shadowed.equals(shadowed)) {
+            return cached.names;
+        }
+        List<String> names = new ArrayList<>(all.size());
+        for (String name : all) {
+            if (!shadowed.contains(name) && !removed.contains(name)) {
+                names.add(name);
+            }
+        }
+        names = Collections.unmodifiableList(names);
+        listed = new ListedJdkNames(generation, shadowed, names);
+        return names;
+    }
+
+    private void hide(String name) {
+        removed.add(name);
+        removedGeneration.incrementAndGet();
+    }
+
+    private void unhideAll() {
+        removed.clear();
+        removedGeneration.incrementAndGet();
+    }
+
+    /** The shared JDK instance of {@code name}, or this pool's copy of it once it has one. */
+    private ClassFile jdkClass(String name) {
+        ClassFile copy = copies.get(name);
+        return copy != null ? copy : jdk.get(name);
+    }
+
+    private static final class ListedJdkNames {
+        final int generation;
+        final Set<String> shadowed;
+        final List<String> names;
+
+        ListedJdkNames(int generation, Set<String> shadowed, List<String> names) {
+            this.generation = generation;
+            this.shadowed = shadowed;
+            this.names = names;
+        }
+    }
+
+    /**
+     * The project's classes followed by the JDK classes it does not shadow. Removing a JDK class hides it from this
+     * pool; clearing drops the project's classes and this pool's JDK copies and unhides every JDK class, so the JDK
+     * layer is listed in full again by the next {@link #getClasses()}.
+     */
+    private final class ClassesView extends AbstractList<ClassFile> {
+        private final List<ClassFile> own;
+        private List<String> jdkNames;
+
+        ClassesView(List<ClassFile> own, List<String> jdkNames) {
+            this.own = own;
+            this.jdkNames = jdkNames;
+        }
+
+        @Override
+        public ClassFile get(int index) {
+            int ownSize = own.size();
+            return index < ownSize ? own.get(index) : jdkClass(jdkNames.get(index - ownSize));
+        }
+
+        @Override
+        public int size() {
+            return own.size() + jdkNames.size();
+        }
+
+        @Override
+        public void add(int index, ClassFile classFile) {
+            put(classFile);
+        }
+
+        @Override
+        public ClassFile remove(int index) {
+            int ownSize = own.size();
+            if (index < ownSize) {
+                return own.remove(index);
+            }
+            String name = jdkNames.get(index - ownSize);
+            ClassFile removedClass = jdkClass(name);
+            hide(name);
+            copies.remove(name);
+            jdkNames = jdkNames(own);
+            return removedClass;
+        }
+
+        @Override
+        public void clear() {
+            own.clear();
+            copies.clear();
+            unhideAll();
+            jdkNames = Collections.emptyList();
+        }
+    }
+}
@@ -3,11 +3,9 @@ package com.tonic.model;
 import com.tonic.analysis.xref.XrefDatabase;
 import com.tonic.parser.ClassFile;
 import com.tonic.parser.ClassPool;
-import com.tonic.util.Settings;
 import lombok.Getter;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -16,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +31,9 @@ public class ProjectModel {
     private ClassPool classPool;
     @Getter
     private XrefDatabase xrefDatabase;
+    /** User-sourced usage counts derived from {@link #xrefDatabase}; cleared whenever the database is. */
+    @Getter
+    private final UsageCountIndex usageCounts = new UsageCountIndex();
     // Concurrent: live capture/attach pulls classes in on a background thread while the EDT iterates them
     // (navigator rebuild, etc.). Weakly-consistent iteration avoids ConcurrentModificationException.
     private final Map<String, ClassEntryModel> classEntries = new ConcurrentHashMap<>();
@@ -42,6 +44,8 @@ public class ProjectModel {
     /** Monotonic counter bumped on every bytecode mutation; the VM uses it to invalidate its cached class snapshot. */
     @Getter
     private long bytecodeVersion;
+    /** Per-project caches owned by other layers, by type (see {@link #cache}). */
+    private final Map<Class<?>, Object> caches = new ConcurrentHashMap<>();
 
     public ProjectModel() {
         this.projectName = "Untitled";
@@ -94,6 +98,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
 
         for (ClassEntryModel c : classEntries.values()) {
             c.invalidateDecompilationCache();
@@ -105,19 +110,10 @@ public class ProjectModel {
 
     /**
      * Rebuild the ClassPool from the current user classes.
-     * This creates a fresh ClassPool and repopulates it with all remaining classes.
+     * This creates a fresh ClassPool over the shared JDK layer and repopulates it with all remaining classes.
      */
     private void rebuildClassPool() {
-        ClassPool newPool;
-        if (!Settings.getInstance().isLoadJdkClassesEnabled()) {
-            newPool = new ClassPool(true);
-        } else {
-            try {
-                newPool = new ClassPool();
-            } catch (IOException e) {
-                newPool = new ClassPool(true);
-            }
-        }
+        ClassPool newPool = LayeredClassPool.create();
 
         for (ClassEntryModel entry : classEntries.values()) {
             newPool.put(entry.getClassFile());
@@ -140,6 +136,14 @@ public class ProjectModel {
         return new ArrayList<>(classEntries.values());
     }
 
+    /**
+     * Read-only live view of all class entries. Iteration is weakly consistent, so classes loaded or removed while
+     * iterating may or may not be seen; use {@link #getAllClasses()} for a stable copy.
+     */
+    public Collection<ClassEntryModel> getClassesView() {
+        return Collections.unmodifiableCollection(classEntries.values());
+    }
+
     /**
      * Drops every class's cached decompilation. A project mutation (rename, script transform) can change references
      * in any class, so a cache scoped to the mutated class alone leaves other classes showing stale source; clearing
@@ -151,6 +155,23 @@ public class ProjectModel {
         }
     }
 
+    /**
+     * Drops cached decompilation only for classes whose constant pool mentions {@code symbol} (see
+     * {@link ClassEntryModel#referencesSymbol}). After a rename, pass the new class internal name or member name:
+     * every class whose source now shows it references it, and every other class's cache is still accurate.
+     * Returns the number of classes invalidated.
+     */
+    public int invalidateDecompilationCachesReferencing(String symbol) {
+        int invalidated = 0;
+        for (ClassEntryModel entry : classEntries.values()) {
+            if (entry.referencesSymbol(symbol)) {
+                entry.invalidateDecompilationCache();
+                invalidated++;
+            }
+        }
+        return invalidated;
+    }
+
     /**
      * Get user classes only (classes explicitly loaded by user).
      */
@@ -239,10 +260,21 @@ public class ProjectModel {
         return resources.size();
     }
 
+    /**
+     * The project's instance of {@code type}, created by {@code factory} on first use. Meant for caches whose values
+     * may reference the project: held here instead of in a static map keyed by the project, they are collected with
+     * it, and {@link #clear} drops them.
+     */
+    public <T> T cache(Class<T> type, Supplier<T> factory) {
+        return type.cast(caches.computeIfAbsent(type, k -> factory.get()));
+    }
+
     /**
      * Clear all classes from the project.
      */
     public void clear() {
+        invalidateAllDecompilationCaches();
+        caches.clear();
         classEntries.clear();
         userClassNames.clear();
         resources.clear();
@@ -252,6 +284,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
         dirty = false;
     }
 
@@ -312,6 +345,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
 
         markDirty();
     }
@@ -335,6 +369,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
 
         markDirty();
     }
@@ -370,6 +405,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
         invalidateAllDecompilationCaches();
         markDirty();
     }
@@ -396,6 +432,7 @@ public class ProjectModel {
         if (xrefDatabase != null) {
             xrefDatabase.clear();
         }
+        usageCounts.clear();
         markDirty();
     }
 
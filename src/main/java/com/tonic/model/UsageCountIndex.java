@@ -0,0 +1,138 @@
+package com.tonic.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-project table of user-sourced usage counts, one {@link ClassCounts} per target class, so the editor's usage
+ * lenses for a whole file are a map lookup per member instead of a filtered xref list per member. Entries are filled
+ * lazily from the xref database (see {@code XrefQueryService#getUsageCounts}) and each remembers which classes
+ * contributed references to it. Editing one class then drops only the entries that class referenced before or
+ * references now ({@link #invalidateEditedClass}); every other class keeps its counts.
+ */
+public final class UsageCountIndex {
+
+    private final Map<String, ClassCounts> byClass = new ConcurrentHashMap<>();
+    private volatile long stamp;
+
+    /** Counts for one target class: references to the class as a type, plus per-member counts. */
+    public static final class ClassCounts {
+        private final int classCount;
+        private final Map<String, Integer> methodCounts;
+        private final Map<String, Integer> fieldCounts;
+        private final Set<String> sourceClasses;
+
+        private ClassCounts(Builder builder) {
+            this.classCount = builder.classCount;
+            this.methodCounts = builder.methodCounts;
+            this.fieldCounts = builder.fieldCounts;
+            this.sourceClasses = builder.sourceClasses;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public int getMethodCount(String name, String descriptor) {
+            return methodCounts.getOrDefault(name + descriptor, 0);
+        }
+
+        public int getFieldCount(String name, String descriptor) {
+            return fieldCounts.getOrDefault(name + descriptor, 0);
+        }
+
+        /** Internal names of the classes whose code referenced this class or its members. */
+        public Set<String> getSourceClasses() {
+            return Collections.unmodifiableSet(sourceClasses);
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static final class Builder {
+            private int classCount;
+            private final Map<String, Integer> methodCounts = new HashMap<>();
+            private final Map<String, Integer> fieldCounts = new HashMap<>();
+            private final Set<String> sourceClasses = new HashSet<>();
+
+            private Builder() {
+            }
+
+            public Builder classRef(String sourceClass) {
+                classCount++;
+                sourceClasses.add(sourceClass);
+                return this;
+            }
+
+            public Builder methodRef(String name, String descriptor, String sourceClass) {
+                methodCounts.merge(name + descriptor, 1, Integer::sum);
+                sourceClasses.add(sourceClass);
+                return this;
+            }
+
+            public Builder fieldRef(String name, String descriptor, String sourceClass) {
+                fieldCounts.merge(name + descriptor, 1, Integer::sum);
+                sourceClasses.add(sourceClass);
+                return this;
+            }
+
+            public ClassCounts build() {
+                return new ClassCounts(this);
+            }
+        }
+    }
+
+    /** Cached counts for a target class, or null when they must be (re)computed. */
+    public ClassCounts get(String className) {
+        return byClass.get(className);
+    }
+
+    /**
+     * Modification stamp; read it before computing counts and pass it to {@link #put} so a result computed
+     * against a database that was invalidated meanwhile is discarded rather than cached.
+     */
+    public long stamp() {
+        return stamp;
+    }
+
+    public synchronized void put(String className, ClassCounts counts, long computedAt) {
+        if (computedAt == stamp) {
+            byClass.put(className, counts);
+        }
+    }
+
+    /**
+     * Drops the entries an edit of {@code className} can change: the class itself, every class it contributed
+     * references to before the edit, and every class its new bytecode references ({@code referencedClasses},
+     * typically the constant pool's class entries - any member reference names its owner there).
+     */
+    public synchronized void invalidateEditedClass(String className, Collection<String> referencedClasses) {
+        stamp++;
+        byClass.remove(className);
+        for (String referenced : referencedClasses) {
+            byClass.remove(referenced);
+        }
+        Iterator<ClassCounts> it = byClass.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().sourceClasses.contains(className)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        stamp++;
+        byClass.clear();
+    }
+
+    public int size() {
+        return byClass.size();
+    }
+}
@@ -9,7 +9,6 @@ import com.tonic.analysis.query.exec.QueryBatchRunner;
 import com.tonic.analysis.query.exec.QueryService;
 import com.tonic.analysis.query.planner.QueryMatch;
 import com.tonic.analysis.query.planner.QueryTarget;
-import com.tonic.analysis.source.decompile.ClassDecompiler;
 import com.tonic.analysis.source.decompile.DecompileResult;
 import com.tonic.analysis.xref.Xref;
 import com.tonic.event.events.FindUsagesEvent;
@@ -783,7 +782,7 @@ public class AnalysisApiImpl implements AnalysisApi {
         if (cached != null && cls.getMethodSpans() != null) {
             return cached;
         }
-        DecompileResult result = new ClassDecompiler(cls.getClassFile()).decompileWithLineMap();
+        DecompileResult result = cls.decompile();
         cls.setDecompilationCache(result.getSource(), result.getLineMaps(), result.getMethodSpans(),
                 result.getFieldSpans(), result.getClassSpan());
         return result.getSource();
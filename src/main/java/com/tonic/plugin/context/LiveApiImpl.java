@@ -12,8 +12,8 @@ import com.tonic.plugin.api.LiveApi;
 import com.tonic.service.ProjectService;
 import com.tonic.ui.live.LiveAttachService;
 import com.tonic.ui.live.LiveHeapService;
-import com.tonic.ui.live.eval.ProjectClasspath;
 import com.tonic.ui.live.eval.SnippetCompiler;
+import com.tonic.ui.live.eval.SnippetCompilerService;
 import com.tonic.ui.live.heap.HprofSnapshot;
 
 import java.io.IOException;
@@ -205,8 +205,7 @@ public class LiveApiImpl implements LiveApi {
         }
         LiveSession s = session();
         try {
-            SnippetCompiler compiler = new SnippetCompiler(new ProjectClasspath(project), targetRelease(project));
-            SnippetCompiler.Result result = compiler.compile(code);
+            SnippetCompiler.Result result = SnippetCompilerService.get().compilerFor(project).compile(code);
             if (!result.isSuccess()) {
                 return new EvalResult(false, "Compilation failed:\n" + String.join("\n", result.getMessages()));
             }
@@ -255,17 +254,6 @@ public class LiveApiImpl implements LiveApi {
         }
     }
 
-    private static int targetRelease(ProjectModel project) {
-        int maxMajor = 0;
-        for (ClassEntryModel entry : project.getAllClasses()) {
-            int major = entry.getClassFile().getMajorVersion();
-            if (major > maxMajor) {
-                maxMajor = major;
-            }
-        }
-        return SnippetCompiler.releaseForMajorVersion(maxMajor);
-    }
-
     private static String defaultContext(ProjectModel project) {
         for (ClassEntryModel entry : project.getAllClasses()) {
             return entry.getClassName().replace('/', '.');
@@ -98,8 +98,9 @@ public class RefactorApiImpl implements RefactorApi {
             return fail("Rename failed: " + e.getMessage());
         }
         cls.invalidateDecompilationCache();
+        project.markDirty();
         EventBus.getInstance().post(
-                new ProjectRenamedEvent(this, ProjectRenamedEvent.Kind.METHOD, internal, internal, name));
+                new ProjectRenamedEvent(this, ProjectRenamedEvent.Kind.METHOD, internal, internal, name, newName));
         return ok("Renamed method " + name + desc + " -> " + newName + " in " + dotted(internal)
                 + " (all call sites updated).");
     }
@@ -139,8 +140,9 @@ public class RefactorApiImpl implements RefactorApi {
             return fail("Rename failed: " + e.getMessage());
         }
         cls.invalidateDecompilationCache();
+        project.markDirty();
         EventBus.getInstance().post(
-                new ProjectRenamedEvent(this, ProjectRenamedEvent.Kind.FIELD, internal, internal, name));
+                new ProjectRenamedEvent(this, ProjectRenamedEvent.Kind.FIELD, internal, internal, name, newName));
         return ok("Renamed field " + name + " -> " + newName + " in " + dotted(internal)
                 + " (all accesses updated).");
     }
@@ -194,7 +194,7 @@ public class YabrAccessImpl implements YabrAccess {
     public void removeClass(String name) {
         com.tonic.parser.ClassPool pool = projectModel.getClassPool();
         if (pool != null) {
-            pool.getClasses().removeIf(cf -> cf.getClassName().equals(name));
+            pool.remove(name);
         }
     }
 
@@ -176,7 +176,7 @@ public class BridgeRegistry {
     }
 
     public void registerPipeline() {
-        scriptPipeline = new ScriptPipeline(interpreter);
+        scriptPipeline = new ScriptPipeline(interpreter, projectModel);
         if (logCallback != null) {
             scriptPipeline.setLogCallback(logCallback);
         }
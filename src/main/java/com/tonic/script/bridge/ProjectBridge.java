@@ -17,6 +17,7 @@ import com.tonic.script.engine.ScriptInterpreter;
 import com.tonic.script.engine.ScriptValue;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 public class ProjectBridge extends AbstractBridge {
 
@@ -34,13 +35,25 @@ public class ProjectBridge extends AbstractBridge {
 
         props.put("classCount", ScriptValue.function(
             ScriptFunction.native0("classCount", () ->
-                ScriptValue.number(projectModel.getAllClasses().size()))
+                ScriptValue.number(projectModel.getClassCount()))
         ));
 
         props.put("getClasses", ScriptValue.function(
             ScriptFunction.native0("getClasses", this::getAllClasses)
         ));
 
+        props.put("classes", ScriptValue.function(
+            ScriptFunction.native1("classes", criteria -> classSequence(criteria).toScriptValue())
+        ));
+
+        props.put("methods", ScriptValue.function(
+            ScriptFunction.native1("methods", criteria -> methodSequence(criteria).toScriptValue())
+        ));
+
+        props.put("fields", ScriptValue.function(
+            ScriptFunction.native0("fields", () -> fieldSequence().toScriptValue())
+        ));
+
         props.put("forEachClass", ScriptValue.function(
             ScriptFunction.native1("forEachClass", this::forEachClass)
         ));
@@ -90,7 +103,7 @@ public class ProjectBridge extends AbstractBridge {
 
     private ScriptValue getAllClasses() {
         List<ScriptValue> classes = new ArrayList<>();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             classes.add(wrapClass(classEntry));
         }
         return ScriptValue.array(classes);
@@ -101,7 +114,7 @@ public class ProjectBridge extends AbstractBridge {
             throw new RuntimeException("forEachClass requires a function argument");
         }
         ScriptFunction fn = callback.asFunction();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             List<ScriptValue> args = new ArrayList<>();
             args.add(wrapClass(classEntry));
             fn.call(interpreter, args);
@@ -114,7 +127,7 @@ public class ProjectBridge extends AbstractBridge {
             throw new RuntimeException("forEachMethod requires a function argument");
         }
         ScriptFunction fn = callback.asFunction();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             for (MethodEntryModel methodModel : classEntry.getMethods()) {
                 List<ScriptValue> args = new ArrayList<>();
                 args.add(wrapMethod(classEntry, methodModel));
@@ -129,9 +142,9 @@ public class ProjectBridge extends AbstractBridge {
             throw new RuntimeException("forEachField requires a function argument");
         }
         ScriptFunction fn = callback.asFunction();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             ClassFile cf = classEntry.getClassFile();
-            for (FieldEntry field : cf.getFields()) {
+            for (FieldEntry field : new ArrayList<>(cf.getFields())) {
                 List<ScriptValue> args = new ArrayList<>();
                 args.add(wrapField(classEntry, field));
                 fn.call(interpreter, args);
@@ -140,103 +153,119 @@ public class ProjectBridge extends AbstractBridge {
         return ScriptValue.NULL;
     }
 
-    private ScriptValue findClasses(ScriptValue filter) {
-        List<ScriptValue> result = new ArrayList<>();
+    /**
+     * Lazy sequence of the project's classes, optionally narrowed by a criteria object. Criteria are checked against
+     * the class model, so classes that do not match are never wrapped.
+     */
+    private ScriptSequence classSequence(ScriptValue criteria) {
+        Predicate<ClassEntryModel> matcher = classMatcher(criteria);
+        return new ScriptSequence(interpreter, () -> projectModel.getClassesView().stream()
+            .filter(matcher)
+            .map(this::wrapClass));
+    }
+
+    /**
+     * Lazy sequence of every method in the project, optionally narrowed by a criteria object. Each class's members
+     * are copied as the walk reaches it: a callback may edit the class, which rebuilds its member maps.
+     */
+    private ScriptSequence methodSequence(ScriptValue criteria) {
+        Predicate<MethodEntry> matcher = methodMatcher(criteria);
+        return new ScriptSequence(interpreter, () -> projectModel.getClassesView().stream()
+            .flatMap(classEntry -> classEntry.getMethods().stream()
+                .filter(methodModel -> matcher.test(methodModel.getMethodEntry()))
+                .map(methodModel -> wrapMethod(classEntry, methodModel))));
+    }
+
+    private ScriptSequence fieldSequence() {
+        return new ScriptSequence(interpreter, () -> projectModel.getClassesView().stream()
+            .flatMap(classEntry -> new ArrayList<>(classEntry.getClassFile().getFields()).stream()
+                .map(field -> wrapField(classEntry, field))));
+    }
 
+    private ScriptValue findClasses(ScriptValue filter) {
         if (filter.isFunction()) {
-            ScriptFunction fn = filter.asFunction();
-            for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
-                List<ScriptValue> args = new ArrayList<>();
-                args.add(wrapClass(classEntry));
-                if (fn.call(interpreter, args).asBoolean()) {
-                    result.add(wrapClass(classEntry));
-                }
-            }
+            return ScriptValue.array(classSequence(ScriptValue.NULL).filter(filter.asFunction()).toList());
         } else if (filter.isObject()) {
-            Map<String, ScriptValue> criteria = filter.asObject();
-            String namePattern = criteria.containsKey("name") ? criteria.get("name").asString() : null;
-            String packagePattern = criteria.containsKey("package") ? criteria.get("package").asString() : null;
-            String access = criteria.containsKey("access") ? criteria.get("access").asString() : null;
-            String superClass = criteria.containsKey("extends") ? criteria.get("extends").asString() : null;
-            String impl = criteria.containsKey("implements") ? criteria.get("implements").asString() : null;
-
-            for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
-                ClassFile cf = classEntry.getClassFile();
-                boolean matches = namePattern == null || matchesPattern(classEntry.getSimpleName(), namePattern);
-
-                if (packagePattern != null && !matchesPattern(classEntry.getPackageName(), packagePattern)) {
-                    matches = false;
-                }
-                if (access != null && !matchesAccess(cf.getAccess(), access)) {
-                    matches = false;
-                }
-                if (superClass != null && !cf.getSuperClassName().contains(superClass)) {
-                    matches = false;
-                }
-                if (impl != null && !implementsInterface(cf, impl)) {
-                    matches = false;
-                }
-
-                if (matches) {
-                    result.add(wrapClass(classEntry));
-                }
-            }
+            return ScriptValue.array(classSequence(filter).toList());
         }
-
-        return ScriptValue.array(result);
+        interpreter.warn("findClasses expects a filter function or criteria object; returning no classes");
+        return ScriptValue.array(new ArrayList<>());
     }
 
     private ScriptValue findMethods(ScriptValue filter) {
-        List<ScriptValue> result = new ArrayList<>();
-
         if (filter.isFunction()) {
-            ScriptFunction fn = filter.asFunction();
-            for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
-                for (MethodEntryModel methodModel : classEntry.getMethods()) {
-                    List<ScriptValue> args = new ArrayList<>();
-                    args.add(wrapMethod(classEntry, methodModel));
-                    if (fn.call(interpreter, args).asBoolean()) {
-                        result.add(wrapMethod(classEntry, methodModel));
-                    }
-                }
-            }
+            return ScriptValue.array(methodSequence(ScriptValue.NULL).filter(filter.asFunction()).toList());
         } else if (filter.isObject()) {
-            Map<String, ScriptValue> criteria = filter.asObject();
-            String namePattern = criteria.containsKey("name") ? criteria.get("name").asString() : null;
-            String access = criteria.containsKey("access") ? criteria.get("access").asString() : null;
-            String returnType = criteria.containsKey("returns") ? criteria.get("returns").asString() : null;
-            boolean staticOnly = criteria.containsKey("static") && criteria.get("static").asBoolean();
-
-            for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
-                for (MethodEntryModel methodModel : classEntry.getMethods()) {
-                    MethodEntry method = methodModel.getMethodEntry();
-                    boolean matches = namePattern == null || matchesPattern(method.getName(), namePattern);
-
-                    if (access != null && !matchesAccess(method.getAccess(), access)) {
-                        matches = false;
-                    }
-                    if (staticOnly && (method.getAccess() & 0x0008) == 0) {
-                        matches = false;
-                    }
-                    if (returnType != null && !method.getDesc().endsWith(returnType)) {
-                        matches = false;
-                    }
+            return ScriptValue.array(methodSequence(filter).toList());
+        }
+        interpreter.warn("findMethods expects a filter function or criteria object; returning no methods");
+        return ScriptValue.array(new ArrayList<>());
+    }
 
-                    if (matches) {
-                        result.add(wrapMethod(classEntry, methodModel));
-                    }
-                }
-            }
+    /**
+     * Predicate for a {@code findClasses}-style criteria object; anything other than an object matches every class.
+     */
+    private Predicate<ClassEntryModel> classMatcher(ScriptValue filter) {
+        if (!filter.isObject()) {
+            return classEntry -> true;
         }
+        Map<String, ScriptValue> criteria = filter.asObject();
+        String namePattern = criteria.containsKey("name") ? criteria.get("name").asString() : null;
+        String packagePattern = criteria.containsKey("package") ? criteria.get("package").asString() : null;
+        String access = criteria.containsKey("access") ? criteria.get("access").asString() : null;
+        String superClass = criteria.containsKey("extends") ? criteria.get("extends").asString() : null;
+        String impl = criteria.containsKey("implements") ? criteria.get("implements").asString() : null;
+
+        return classEntry -> {
+            ClassFile cf = classEntry.getClassFile();
+            if (namePattern != null && !matchesPattern(classEntry.getSimpleName(), namePattern)) {
+                return false;
+            }
+            if (packagePattern != null && !matchesPattern(classEntry.getPackageName(), packagePattern)) {
+                return false;
+            }
+            if (access != null && !matchesAccess(cf.getAccess(), access)) {
+                return false;
+            }
+            if (superClass != null && !cf.getSuperClassName().contains(superClass)) {
+                return false;
+            }
+            return impl == null || implementsInterface(cf, impl);
+        };
+    }
 
-        return ScriptValue.array(result);
+    /**
+     * Predicate for a {@code findMethods}-style criteria object; anything other than an object matches every method.
+     */
+    private Predicate<MethodEntry> methodMatcher(ScriptValue filter) {
+        if (!filter.isObject()) {
+            return method -> true;
+        }
+        Map<String, ScriptValue> criteria = filter.asObject();
+        String namePattern = criteria.containsKey("name") ? criteria.get("name").asString() : null;
+        String access = criteria.containsKey("access") ? criteria.get("access").asString() : null;
+        String returnType = criteria.containsKey("returns") ? criteria.get("returns").asString() : null;
+        boolean staticOnly = criteria.containsKey("static") && criteria.get("static").asBoolean();
+
+        return method -> {
+            if (namePattern != null && !matchesPattern(method.getName(), namePattern)) {
+                return false;
+            }
+            if (access != null && !matchesAccess(method.getAccess(), access)) {
+                return false;
+            }
+            if (staticOnly && (method.getAccess() & 0x0008) == 0) {
+                return false;
+            }
+            return returnType == null || method.getDesc().endsWith(returnType);
+        };
     }
 
     private ScriptValue findAnnotated(ScriptValue annotationName) {
         String annoName = annotationName.asString();
         List<ScriptValue> result = new ArrayList<>();
 
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             ClassFile cf = classEntry.getClassFile();
 
             if (hasAnnotation(cf.getClassAttributes(), annoName, cf)) {
@@ -262,7 +291,7 @@ public class ProjectBridge extends AbstractBridge {
 
     private ScriptValue getClassByName(ScriptValue nameValue) {
         String name = nameValue.asString();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             if (classEntry.getClassName().equals(name) ||
                 classEntry.getSimpleName().equals(name) ||
                 classEntry.getClassName().endsWith("/" + name)) {
@@ -276,7 +305,7 @@ public class ProjectBridge extends AbstractBridge {
         String clsName = className.asString();
         String methodName = methodSig.asString();
 
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             if (classEntry.getClassName().equals(clsName) ||
                 classEntry.getSimpleName().equals(clsName)) {
                 for (MethodEntryModel methodModel : classEntry.getMethods()) {
@@ -308,7 +337,7 @@ public class ProjectBridge extends AbstractBridge {
             targetRef = target.asString();
         }
 
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             for (MethodEntryModel methodModel : classEntry.getMethods()) {
                 MethodEntry method = methodModel.getMethodEntry();
                 if (method.getCodeAttribute() != null) {
@@ -325,7 +354,7 @@ public class ProjectBridge extends AbstractBridge {
 
     private ScriptValue getPackages() {
         Set<String> packages = new TreeSet<>();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             String pkg = classEntry.getPackageName();
             if (pkg != null && !pkg.isEmpty()) {
                 packages.add(pkg);
@@ -341,7 +370,7 @@ public class ProjectBridge extends AbstractBridge {
     private ScriptValue getClassesInPackage(ScriptValue packageName) {
         String pkg = packageName.asString();
         List<ScriptValue> result = new ArrayList<>();
-        for (ClassEntryModel classEntry : projectModel.getAllClasses()) {
+        for (ClassEntryModel classEntry : projectModel.getClassesView()) {
             if (pkg.equals(classEntry.getPackageName())) {
                 result.add(wrapClass(classEntry));
             }
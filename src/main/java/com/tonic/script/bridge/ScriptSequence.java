@@ -0,0 +1,169 @@
+package com.tonic.script.bridge;
+
+import com.tonic.script.engine.ScriptFunction;
+import com.tonic.script.engine.ScriptInterpreter;
+import com.tonic.script.engine.ScriptValue;
+import com.tonic.service.ProjectScope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A lazy sequence of script values for project queries. Nothing is walked until a terminal operation runs, and
+ * {@code filter}/{@code map}/{@code skip}/{@code take} are fused into a single pass over the source, so
+ * {@code project.methods().filter(m => ...).take(10).toArray()} stops at the tenth match and only wraps the elements
+ * it actually looked at. A sequence can be consumed any number of times; each terminal operation walks it again.
+ * <p>
+ * {@code parallel()} evaluates the pipeline on the common fork-join pool. Elements are then unordered, and script
+ * callbacks run concurrently, so they must not assign variables outside their own body or edit classes; logging
+ * ({@code log}, {@code warn}, {@code error}) is safe. Callbacks run in the {@link ProjectScope} the sequence was
+ * created in, so under a batch scope they still see that scope's project.
+ */
+public final class ScriptSequence {
+
+    private final ScriptInterpreter interpreter;
+    private final Supplier<Stream<ScriptValue>> source;
+    private final List<UnaryOperator<Stream<ScriptValue>>> stages;
+    private final boolean parallel;
+    /** The scope callbacks run in: pool threads do not inherit the caller's. */
+    private final ProjectScope scope;
+
+    public ScriptSequence(ScriptInterpreter interpreter, Supplier<Stream<ScriptValue>> source) {
+        this(interpreter, source, Collections.emptyList(), false, ProjectScope.current());
+    }
+
+    private ScriptSequence(ScriptInterpreter interpreter, Supplier<Stream<ScriptValue>> source,
+                           List<UnaryOperator<Stream<ScriptValue>>> stages, boolean parallel, ProjectScope scope) {
+        this.interpreter = interpreter;
+        this.source = source;
+        this.stages = stages;
+        this.parallel = parallel;
+        this.scope = scope;
+    }
+
+    /**
+     * A fresh stream over this sequence.
+     */
+    public Stream<ScriptValue> stream() {
+        Stream<ScriptValue> stream = source.get();
+        if (parallel) {
+            // Unordered from the source on, so skip and take do not have to preserve encounter order
+            stream = stream.parallel().unordered();
+        }
+        for (UnaryOperator<Stream<ScriptValue>> stage : stages) {
+            stream = stage.apply(stream);
+        }
+        return stream;
+    }
+
+    public ScriptSequence filter(ScriptFunction predicate) {
+        return then(stream -> stream.filter(value -> call(predicate, value).asBoolean()));
+    }
+
+    public ScriptSequence map(ScriptFunction mapper) {
+        return then(stream -> stream.map(value -> call(mapper, value)));
+    }
+
+    public ScriptSequence skip(long count) {
+        return then(stream -> stream.skip(Math.max(0, count)));
+    }
+
+    public ScriptSequence take(long count) {
+        return then(stream -> stream.limit(Math.max(0, count)));
+    }
+
+    public ScriptSequence parallel() {
+        return new ScriptSequence(interpreter, source, stages, true, scope);
+    }
+
+    public long count() {
+        return stream().count();
+    }
+
+    public ScriptValue first() {
+        return stream().findFirst().orElse(ScriptValue.NULL);
+    }
+
+    public List<ScriptValue> toList() {
+        return stream().collect(Collectors.toList());
+    }
+
+    public boolean anyMatch(ScriptFunction predicate) {
+        return stream().anyMatch(value -> call(predicate, value).asBoolean());
+    }
+
+    public void forEach(ScriptFunction action) {
+        stream().forEach(value -> call(action, value));
+    }
+
+    /**
+     * The script-facing object for this sequence.
+     */
+    public ScriptValue toScriptValue() {
+        Map<String, ScriptValue> props = new HashMap<>();
+
+        props.put("filter", ScriptValue.function(
+            ScriptFunction.native1("filter", fn -> filter(requireFunction(fn, "filter")).toScriptValue())
+        ));
+        props.put("map", ScriptValue.function(
+            ScriptFunction.native1("map", fn -> map(requireFunction(fn, "map")).toScriptValue())
+        ));
+        props.put("skip", ScriptValue.function(
+            ScriptFunction.native1("skip", n -> skip((long) n.asNumber()).toScriptValue())
+        ));
+        props.put("take", ScriptValue.function(
+            ScriptFunction.native1("take", n -> take((long) n.asNumber()).toScriptValue())
+        ));
+        props.put("parallel", ScriptValue.function(
+            ScriptFunction.native0("parallel", () -> parallel().toScriptValue())
+        ));
+        props.put("count", ScriptValue.function(
+            ScriptFunction.native0("count", () -> ScriptValue.number(count()))
+        ));
+        props.put("first", ScriptValue.function(
+            ScriptFunction.native0("first", this::first)
+        ));
+        props.put("some", ScriptValue.function(
+            ScriptFunction.native1("some", fn -> ScriptValue.bool(anyMatch(requireFunction(fn, "some"))))
+        ));
+        props.put("forEach", ScriptValue.function(
+            ScriptFunction.native1("forEach", fn -> {
+                forEach(requireFunction(fn, "forEach"));
+                return ScriptValue.NULL;
+            })
+        ));
+        props.put("toArray", ScriptValue.function(
+            ScriptFunction.native0("toArray", () -> ScriptValue.array(new ArrayList<>(toList())))
+        ));
+
+        return ScriptValue.object(props);
+    }
+
+    private ScriptSequence then(UnaryOperator<Stream<ScriptValue>> stage) {
+        List<UnaryOperator<Stream<ScriptValue>>> next = new ArrayList<>(stages.size() + 1);
+        next.addAll(stages);
+        next.add(stage);
+        return new ScriptSequence(interpreter, source, next, parallel, scope);
+    }
+
+    private ScriptValue call(ScriptFunction fn, ScriptValue value) {
+        if (parallel) {
+            return ProjectScope.callIn(scope, () -> fn.call(interpreter, Collections.singletonList(value)));
+        }
+        return fn.call(interpreter, Collections.singletonList(value));
+    }
+
+    private static ScriptFunction requireFunction(ScriptValue value, String operation) {
+        if (!value.isFunction()) {
+            throw new RuntimeException(operation + " requires a function argument");
+        }
+        return value.asFunction();
+    }
+}
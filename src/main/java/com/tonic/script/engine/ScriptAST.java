@@ -153,10 +153,16 @@ public abstract class ScriptAST {
     public static class ArrowFunctionExpr extends ScriptAST {
         private final List<String> parameters;
         private final ScriptAST body; // Expression or BlockStmt
+        private final long sourceHash; // Hash of the function's tokens, 0 if unknown
 
         public ArrowFunctionExpr(List<String> parameters, ScriptAST body) {
+            this(parameters, body, 0);
+        }
+
+        public ArrowFunctionExpr(List<String> parameters, ScriptAST body, long sourceHash) {
             this.parameters = parameters;
             this.body = body;
+            this.sourceHash = sourceHash;
         }
 
         @Override
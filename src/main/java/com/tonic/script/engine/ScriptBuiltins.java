@@ -0,0 +1,330 @@
+package com.tonic.script.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Built-in methods of script strings and arrays. Each method takes its receiver as an argument rather than closing
+ * over it, so a compiled call like {@code name.startsWith("a")} invokes it directly instead of allocating a bound
+ * function per access.
+ */
+final class ScriptBuiltins {
+
+    /**
+     * A built-in method implementation.
+     */
+    interface Method {
+        ScriptValue invoke(ScriptInterpreter interpreter, ScriptValue self, List<ScriptValue> args);
+    }
+
+    private static final Map<String, Method> STRING_METHODS = new HashMap<>();
+    private static final Map<String, Method> ARRAY_METHODS = new HashMap<>();
+
+    private ScriptBuiltins() {
+    }
+
+    /**
+     * The string method named {@code name}, or null if strings have none.
+     */
+    static Method stringMethod(String name) {
+        return STRING_METHODS.get(name);
+    }
+
+    /**
+     * The array method named {@code name}, or null if arrays have none.
+     */
+    static Method arrayMethod(String name) {
+        return ARRAY_METHODS.get(name);
+    }
+
+    /**
+     * Binds a method to its receiver, for member accesses that are not called directly.
+     */
+    static ScriptValue bind(ScriptInterpreter interpreter, String name, Method method, ScriptValue self) {
+        return ScriptValue.function(ScriptFunction.nativeN(name, args -> method.invoke(interpreter, self, args)));
+    }
+
+    private static ScriptValue arg(List<ScriptValue> args, int index) {
+        return index < args.size() ? args.get(index) : ScriptValue.NULL;
+    }
+
+    private static ScriptFunction callback(List<ScriptValue> args, String method) {
+        ScriptValue callback = arg(args, 0);
+        if (!callback.isFunction()) {
+            throw new RuntimeException(method + " requires a function argument");
+        }
+        return callback.asFunction();
+    }
+
+    private static List<ScriptValue> elementArgs(ScriptValue element, int index, ScriptValue array) {
+        List<ScriptValue> args = new ArrayList<>(3);
+        args.add(element);
+        args.add(ScriptValue.number(index));
+        args.add(array);
+        return args;
+    }
+
+    static {
+        // ==================== Strings ====================
+
+        STRING_METHODS.put("toLowerCase", (interp, self, args) -> ScriptValue.string(self.asString().toLowerCase()));
+        STRING_METHODS.put("toUpperCase", (interp, self, args) -> ScriptValue.string(self.asString().toUpperCase()));
+        STRING_METHODS.put("trim", (interp, self, args) -> ScriptValue.string(self.asString().trim()));
+        STRING_METHODS.put("startsWith", (interp, self, args) ->
+            ScriptValue.bool(self.asString().startsWith(arg(args, 0).asString())));
+        STRING_METHODS.put("endsWith", (interp, self, args) ->
+            ScriptValue.bool(self.asString().endsWith(arg(args, 0).asString())));
+        Method includes = (interp, self, args) -> ScriptValue.bool(self.asString().contains(arg(args, 0).asString()));
+        STRING_METHODS.put("includes", includes);
+        STRING_METHODS.put("contains", includes);
+        STRING_METHODS.put("indexOf", (interp, self, args) ->
+            ScriptValue.number(self.asString().indexOf(arg(args, 0).asString())));
+        STRING_METHODS.put("substring", (interp, self, args) -> {
+            String s = self.asString();
+            int startIdx = (int) arg(args, 0).asNumber();
+            ScriptValue end = arg(args, 1);
+            if (end.isNull()) {
+                return ScriptValue.string(s.substring(startIdx));
+            }
+            return ScriptValue.string(s.substring(startIdx, (int) end.asNumber()));
+        });
+        STRING_METHODS.put("replace", (interp, self, args) ->
+            ScriptValue.string(self.asString().replace(arg(args, 0).asString(), arg(args, 1).asString())));
+        STRING_METHODS.put("split", (interp, self, args) -> {
+            String[] parts = self.asString().split(Pattern.quote(arg(args, 0).asString()));
+            List<ScriptValue> list = new ArrayList<>(parts.length);
+            for (String part : parts) {
+                list.add(ScriptValue.string(part));
+            }
+            return ScriptValue.array(list);
+        });
+
+        // ==================== Arrays ====================
+
+        ARRAY_METHODS.put("push", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            arr.addAll(args);
+            return ScriptValue.number(arr.size());
+        });
+
+        ARRAY_METHODS.put("pop", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            if (arr.isEmpty()) return ScriptValue.NULL;
+            return arr.remove(arr.size() - 1);
+        });
+
+        ARRAY_METHODS.put("shift", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            if (arr.isEmpty()) return ScriptValue.NULL;
+            return arr.remove(0);
+        });
+
+        ARRAY_METHODS.put("unshift", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            for (int i = args.size() - 1; i >= 0; i--) {
+                arr.add(0, args.get(i));
+            }
+            return ScriptValue.number(arr.size());
+        });
+
+        ARRAY_METHODS.put("indexOf", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            ScriptValue target = arg(args, 0);
+            for (int i = 0; i < arr.size(); i++) {
+                if (ScriptValue.equals(arr.get(i), target)) {
+                    return ScriptValue.number(i);
+                }
+            }
+            return ScriptValue.number(-1);
+        });
+
+        ARRAY_METHODS.put("includes", (interp, self, args) -> {
+            ScriptValue target = arg(args, 0);
+            for (ScriptValue item : self.asArray()) {
+                if (ScriptValue.equals(item, target)) {
+                    return ScriptValue.TRUE;
+                }
+            }
+            return ScriptValue.FALSE;
+        });
+
+        ARRAY_METHODS.put("join", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            ScriptValue separator = arg(args, 0);
+            StringBuilder sb = new StringBuilder();
+            String sep = separator.isNull() ? "," : separator.asString();
+            for (int i = 0; i < arr.size(); i++) {
+                if (i > 0) sb.append(sep);
+                sb.append(arr.get(i).asString());
+            }
+            return ScriptValue.string(sb.toString());
+        });
+
+        ARRAY_METHODS.put("slice", (interp, self, args) -> {
+            List<ScriptValue> arr = self.asArray();
+            ScriptValue endVal = arg(args, 1);
+            int start = (int) arg(args, 0).asNumber();
+            int end = endVal.isNull() ? arr.size() : (int) endVal.asNumber();
+            if (start < 0) start = Math.max(0, arr.size() + start);
+            if (end < 0) end = Math.max(0, arr.size() + end);
+            start = Math.min(start, arr.size());
+            end = Math.min(end, arr.size());
+            return ScriptValue.array(new ArrayList<>(arr.subList(start, end)));
+        });
+
+        ARRAY_METHODS.put("concat", (interp, self, args) -> {
+            List<ScriptValue> result = new ArrayList<>(self.asArray());
+            for (ScriptValue arg : args) {
+                if (arg.isArray()) {
+                    result.addAll(arg.asArray());
+                } else {
+                    result.add(arg);
+                }
+            }
+            return ScriptValue.array(result);
+        });
+
+        ARRAY_METHODS.put("reverse", (interp, self, args) -> {
+            Collections.reverse(self.asArray());
+            return self;
+        });
+
+        ARRAY_METHODS.put("forEach", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "forEach");
+            List<ScriptValue> arr = self.asArray();
+            for (int i = 0; i < arr.size(); i++) {
+                fn.call(interp, elementArgs(arr.get(i), i, self));
+            }
+            return ScriptValue.NULL;
+        });
+
+        ARRAY_METHODS.put("map", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "map");
+            List<ScriptValue> arr = self.asArray();
+            List<ScriptValue> result = new ArrayList<>(arr.size());
+            for (int i = 0; i < arr.size(); i++) {
+                result.add(fn.call(interp, elementArgs(arr.get(i), i, self)));
+            }
+            return ScriptValue.array(result);
+        });
+
+        ARRAY_METHODS.put("filter", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "filter");
+            List<ScriptValue> arr = self.asArray();
+            List<ScriptValue> result = new ArrayList<>();
+            for (int i = 0; i < arr.size(); i++) {
+                if (fn.call(interp, elementArgs(arr.get(i), i, self)).asBoolean()) {
+                    result.add(arr.get(i));
+                }
+            }
+            return ScriptValue.array(result);
+        });
+
+        ARRAY_METHODS.put("find", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "find");
+            List<ScriptValue> arr = self.asArray();
+            for (int i = 0; i < arr.size(); i++) {
+                if (fn.call(interp, elementArgs(arr.get(i), i, self)).asBoolean()) {
+                    return arr.get(i);
+                }
+            }
+            return ScriptValue.NULL;
+        });
+
+        ARRAY_METHODS.put("findIndex", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "findIndex");
+            List<ScriptValue> arr = self.asArray();
+            for (int i = 0; i < arr.size(); i++) {
+                if (fn.call(interp, elementArgs(arr.get(i), i, self)).asBoolean()) {
+                    return ScriptValue.number(i);
+                }
+            }
+            return ScriptValue.number(-1);
+        });
+
+        ARRAY_METHODS.put("some", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "some");
+            List<ScriptValue> arr = self.asArray();
+            for (int i = 0; i < arr.size(); i++) {
+                if (fn.call(interp, elementArgs(arr.get(i), i, self)).asBoolean()) {
+                    return ScriptValue.TRUE;
+                }
+            }
+            return ScriptValue.FALSE;
+        });
+
+        ARRAY_METHODS.put("every", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "every");
+            List<ScriptValue> arr = self.asArray();
+            for (int i = 0; i < arr.size(); i++) {
+                if (!fn.call(interp, elementArgs(arr.get(i), i, self)).asBoolean()) {
+                    return ScriptValue.FALSE;
+                }
+            }
+            return ScriptValue.TRUE;
+        });
+
+        ARRAY_METHODS.put("reduce", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "reduce");
+            List<ScriptValue> arr = self.asArray();
+            ScriptValue initial = arg(args, 1);
+            ScriptValue accumulator;
+            int startIdx;
+            if (initial.isNull() && arr.isEmpty()) {
+                throw new RuntimeException("reduce of empty array with no initial value");
+            } else if (initial.isNull()) {
+                accumulator = arr.get(0);
+                startIdx = 1;
+            } else {
+                accumulator = initial;
+                startIdx = 0;
+            }
+            for (int i = startIdx; i < arr.size(); i++) {
+                List<ScriptValue> callArgs = new ArrayList<>(4);
+                callArgs.add(accumulator);
+                callArgs.add(arr.get(i));
+                callArgs.add(ScriptValue.number(i));
+                callArgs.add(self);
+                accumulator = fn.call(interp, callArgs);
+            }
+            return accumulator;
+        });
+
+        ARRAY_METHODS.put("flat", (interp, self, args) -> {
+            ScriptValue depthVal = arg(args, 0);
+            int depth = depthVal.isNull() ? 1 : (int) depthVal.asNumber();
+            return ScriptValue.array(flattenArray(self.asArray(), depth));
+        });
+
+        ARRAY_METHODS.put("flatMap", (interp, self, args) -> {
+            ScriptFunction fn = callback(args, "flatMap");
+            List<ScriptValue> arr = self.asArray();
+            List<ScriptValue> result = new ArrayList<>();
+            for (int i = 0; i < arr.size(); i++) {
+                ScriptValue mapped = fn.call(interp, elementArgs(arr.get(i), i, self));
+                if (mapped.isArray()) {
+                    result.addAll(mapped.asArray());
+                } else {
+                    result.add(mapped);
+                }
+            }
+            return ScriptValue.array(result);
+        });
+    }
+
+    private static List<ScriptValue> flattenArray(List<ScriptValue> arr, int depth) {
+        List<ScriptValue> result = new ArrayList<>();
+        for (ScriptValue item : arr) {
+            if (depth > 0 && item.isArray()) {
+                result.addAll(flattenArray(item.asArray(), depth - 1));
+            } else {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,1043 @@
+package com.tonic.script.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+/**
+ * Compiles script ASTs into trees of pre-bound closures.
+ * <p>
+ * Each block, loop and function that declares variables gets a {@link Frame} of slots, and every identifier is
+ * resolved ahead of time to the frames and slots that may hold it, so a read is an array access rather than a walk up
+ * a chain of maps. Names that resolve to no enclosing declaration fall back to the base {@link ScriptContext}, which
+ * holds the interpreter's globals and bridge objects; those bindings are cached per node.
+ * <p>
+ * The compiled tree keeps the tree-walker's scoping: a name read before its declaration in the same scope still sees
+ * the outer variable, and assigning to an undeclared name defines it in the innermost scope. A slot holds
+ * {@code null} until its declaration has run, which is what lets those lookups fall through.
+ */
+final class ScriptCompiler implements ScriptAST.Visitor<ScriptCompiler.Node> {
+
+    private static final int NORMAL = 0;
+    private static final int BREAK = 1;
+    private static final int CONTINUE = 2;
+    private static final int RETURN = 3;
+
+    /**
+     * A compiled expression or statement.
+     */
+    interface Node {
+        ScriptValue eval(Frame frame);
+    }
+
+    /**
+     * A compiled top-level statement list, ready to run.
+     */
+    interface Program {
+        ScriptValue run();
+    }
+
+    private final ScriptInterpreter interpreter;
+    private final ScriptContext base;
+    private final List<Ref> refs = new ArrayList<>();
+    private final List<Scope> scopes = new ArrayList<>();
+    private Scope scope;
+    private int loopDepth;
+    private int seq;
+
+    ScriptCompiler(ScriptInterpreter interpreter, ScriptContext base) {
+        this.interpreter = interpreter;
+        this.base = base;
+    }
+
+    /**
+     * Compiles {@code statements} to run directly in the base context, as the interpreter runs a script.
+     */
+    Program compileProgram(List<ScriptAST> statements) {
+        Scope root = new Scope(null, true, true);
+        scopes.add(root);
+        scope = root;
+        Node body = sequence(statements);
+        link();
+        return () -> {
+            Frame frame = new Frame(null, root, base, new Activation());
+            return frame.activation.result(body.eval(frame));
+        };
+    }
+
+    // ==================== Scopes ====================
+
+    /**
+     * A lexical scope. Only scopes with slots allocate a frame at run time, except functions, whose frame also carries
+     * the activation's control-flow state.
+     */
+    static final class Scope {
+        final Scope parent;
+        final boolean function;
+        final boolean root;
+        final Map<String, Integer> slots = new HashMap<>();
+        /** For names declared directly in this scope, the point after which the declaration has always run. */
+        final Map<String, Integer> definiteAfter = new HashMap<>();
+        boolean constants;
+        int frameSize = -1;
+
+        Scope(Scope parent, boolean function, boolean root) {
+            this.parent = parent;
+            this.function = function;
+            this.root = root;
+        }
+
+        int slot(String name) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(name, slot);
+            }
+            return slot;
+        }
+
+        void definite(String name, int after) {
+            definiteAfter.putIfAbsent(name, after);
+        }
+
+        boolean ownsFrame() {
+            return function || !slots.isEmpty();
+        }
+    }
+
+    /**
+     * Control-flow state of one function call or program run, shared by all frames inside it.
+     */
+    static final class Activation {
+        int signal;
+        ScriptValue returnValue;
+
+        /**
+         * The value of a finished body: the returned value, or else the value of its last statement.
+         */
+        ScriptValue result(ScriptValue last) {
+            return signal == RETURN ? returnValue : last;
+        }
+    }
+
+    /**
+     * Run-time storage of a scope.
+     */
+    static final class Frame {
+        final Frame parent;
+        final ScriptValue[] slots;
+        final boolean[] constants;
+        final ScriptContext base;
+        final Activation activation;
+
+        Frame(Frame parent, Scope scope, ScriptContext base, Activation activation) {
+            this.parent = parent;
+            this.slots = new ScriptValue[Math.max(0, scope.frameSize)];
+            this.constants = scope.constants ? new boolean[slots.length] : null;
+            this.base = base;
+            this.activation = activation;
+        }
+
+        Frame(Frame parent, Scope scope) {
+            this(parent, scope, parent.base, parent.activation);
+        }
+
+        Frame up(int hops) {
+            Frame frame = this;
+            for (int i = 0; i < hops; i++) {
+                frame = frame.parent;
+            }
+            return frame;
+        }
+
+        void store(int slot, ScriptValue value, boolean constant) {
+            slots[slot] = value;
+            if (constants != null) {
+                constants[slot] = constant;
+            }
+        }
+    }
+
+    private Scope push(boolean function) {
+        Scope child = new Scope(scope, function, false);
+        scopes.add(child);
+        scope = child;
+        return child;
+    }
+
+    private void pop() {
+        scope = scope.parent;
+    }
+
+    private static Frame enter(Frame frame, Scope scope) {
+        return scope.frameSize < 0 ? frame : new Frame(frame, scope);
+    }
+
+    // ==================== Identifier Resolution ====================
+
+    /**
+     * A resolved identifier. The candidate slots are the declarations of the name that may be visible here, innermost
+     * first; the first one that has been set holds the variable. A candidate whose declaration has always run by this
+     * point ends the list, otherwise the lookup falls back to the base context.
+     */
+    private static final class Ref {
+        final String name;
+        final Scope scope;
+        final int position;
+        final boolean write;
+        int[] hops;
+        int[] slots;
+        boolean fallback;
+        int implicitSlot = -1;
+        BaseBinding cached;
+
+        Ref(String name, Scope scope, int position, boolean write) {
+            this.name = name;
+            this.scope = scope;
+            this.position = position;
+            this.write = write;
+        }
+
+        ScriptValue read(Frame frame) {
+            for (int i = 0; i < slots.length; i++) {
+                ScriptValue value = frame.up(hops[i]).slots[slots[i]];
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (!fallback) {
+                return ScriptValue.NULL;
+            }
+            ScriptContext.Binding binding = baseBinding(frame.base);
+            return binding != null ? binding.value : ScriptValue.NULL;
+        }
+
+        void write(Frame frame, ScriptValue value) {
+            for (int i = 0; i < slots.length; i++) {
+                Frame target = frame.up(hops[i]);
+                int slot = slots[i];
+                if (target.slots[slot] != null) {
+                    if (target.constants != null && target.constants[slot]) {
+                        throw new RuntimeException("Cannot reassign constant: " + name);
+                    }
+                    target.slots[slot] = value;
+                    return;
+                }
+            }
+            ScriptContext.Binding binding = fallback ? baseBinding(frame.base) : null;
+            if (binding != null) {
+                if (binding.constant) {
+                    throw new RuntimeException("Cannot reassign constant: " + name);
+                }
+                binding.value = value;
+            } else if (implicitSlot >= 0) {
+                frame.store(implicitSlot, value, false);
+            } else {
+                frame.base.set(name, value);
+            }
+        }
+
+        private ScriptContext.Binding baseBinding(ScriptContext context) {
+            BaseBinding hit = cached;
+            if (hit != null && hit.context == context) {
+                return hit.binding;
+            }
+            ScriptContext.Binding binding = context.local(name);
+            if (binding != null) {
+                // Bindings are updated in place, so one found directly in the base stays valid
+                cached = new BaseBinding(context, binding);
+                return binding;
+            }
+            return context.lookup(name);
+        }
+    }
+
+    private static final class BaseBinding {
+        final ScriptContext context;
+        final ScriptContext.Binding binding;
+
+        BaseBinding(ScriptContext context, ScriptContext.Binding binding) {
+            this.context = context;
+            this.binding = binding;
+        }
+    }
+
+    private Ref ref(String name, boolean write) {
+        Ref ref = new Ref(name, scope, ++seq, write);
+        refs.add(ref);
+        return ref;
+    }
+
+    /**
+     * Resolves every identifier once all declarations are known. Assignments that may find no variable get a slot in
+     * their own scope first, since that decides which scopes need frames and so how many frames each lookup skips.
+     */
+    private void link() {
+        for (Ref ref : refs) {
+            if (ref.write && !ref.scope.root && !alwaysBound(ref)) {
+                ref.implicitSlot = ref.scope.slot(ref.name);
+            }
+        }
+        for (Scope s : scopes) {
+            s.frameSize = s.ownsFrame() ? s.slots.size() : -1;
+        }
+        for (Ref ref : refs) {
+            resolve(ref);
+        }
+    }
+
+    private boolean alwaysBound(Ref ref) {
+        for (Scope s = ref.scope; s != null; s = s.parent) {
+            Integer after = s.definiteAfter.get(ref.name);
+            if (after != null && after < ref.position) {
+                return true;
+            }
+            if (s.root) {
+                return base.lookup(ref.name) != null;
+            }
+        }
+        return false;
+    }
+
+    private void resolve(Ref ref) {
+        List<int[]> candidates = new ArrayList<>();
+        boolean fallback = true;
+        int hops = 0;
+        for (Scope s = ref.scope; s != null && !s.root; s = s.parent) {
+            Integer slot = s.slots.get(ref.name);
+            if (slot != null) {
+                candidates.add(new int[]{hops, slot});
+                Integer after = s.definiteAfter.get(ref.name);
+                if (after != null && after < ref.position) {
+                    fallback = false;
+                    break;
+                }
+            }
+            if (s.ownsFrame()) {
+                hops++;
+            }
+        }
+        ref.hops = new int[candidates.size()];
+        ref.slots = new int[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            ref.hops[i] = candidates.get(i)[0];
+            ref.slots[i] = candidates.get(i)[1];
+        }
+        ref.fallback = fallback;
+    }
+
+    // ==================== Statement Lists ====================
+
+    private Node compile(ScriptAST node) {
+        return node.accept(this);
+    }
+
+    /**
+     * Compiles a statement list that runs in the current scope. Declarations made directly in the list have always
+     * run by the time later statements do, which lets later lookups stop at them.
+     */
+    private Node sequence(List<ScriptAST> statements) {
+        Node[] nodes = new Node[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            ScriptAST stmt = statements.get(i);
+            nodes[i] = compile(stmt);
+            if (stmt instanceof ScriptAST.VarDeclStmt) {
+                scope.definite(((ScriptAST.VarDeclStmt) stmt).getName(), ++seq);
+            }
+        }
+        return frame -> {
+            ScriptValue result = ScriptValue.NULL;
+            for (Node node : nodes) {
+                result = node.eval(frame);
+                if (frame.activation.signal != NORMAL) {
+                    return result;
+                }
+            }
+            return result;
+        };
+    }
+
+    private Node[] compileAll(List<ScriptAST> nodes) {
+        Node[] compiled = new Node[nodes.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(nodes.get(i));
+        }
+        return compiled;
+    }
+
+    private static List<ScriptValue> evalArgs(Node[] args, Frame frame) {
+        List<ScriptValue> values = new ArrayList<>(args.length);
+        for (Node arg : args) {
+            values.add(arg.eval(frame));
+        }
+        return values;
+    }
+
+    /**
+     * Consumes the signal left by a loop body. Returns true if the loop must stop.
+     */
+    private static boolean exitLoop(Activation activation) {
+        int signal = activation.signal;
+        if (signal == NORMAL) {
+            return false;
+        }
+        if (signal == RETURN) {
+            return true;
+        }
+        activation.signal = NORMAL;
+        return signal == BREAK;
+    }
+
+    // ==================== Expressions ====================
+
+    @Override
+    public Node visitLiteral(ScriptAST.LiteralExpr expr) {
+        ScriptValue value = ScriptValue.of(expr.getValue());
+        return frame -> value;
+    }
+
+    @Override
+    public Node visitIdentifier(ScriptAST.IdentifierExpr expr) {
+        Ref ref = ref(expr.getName(), false);
+        return ref::read;
+    }
+
+    @Override
+    public Node visitBinary(ScriptAST.BinaryExpr expr) {
+        String op = expr.getOperator();
+
+        if ("=".equals(op)) {
+            return compileAssign(expr.getLeft(), compile(expr.getRight()));
+        }
+
+        Node left = compile(expr.getLeft());
+        Node right = compile(expr.getRight());
+
+        switch (op) {
+            // Short-circuit evaluation for && and ||
+            case "&&":
+                return frame -> left.eval(frame).asBoolean()
+                    ? ScriptValue.bool(right.eval(frame).asBoolean())
+                    : ScriptValue.FALSE;
+            case "||":
+                return frame -> {
+                    ScriptValue l = left.eval(frame);
+                    return l.asBoolean() ? l : right.eval(frame);
+                };
+            case "+": return frame -> ScriptValue.add(left.eval(frame), right.eval(frame));
+            case "-": return frame -> ScriptValue.subtract(left.eval(frame), right.eval(frame));
+            case "*": return frame -> ScriptValue.multiply(left.eval(frame), right.eval(frame));
+            case "/": return frame -> ScriptValue.divide(left.eval(frame), right.eval(frame));
+            case "%": return frame -> ScriptValue.modulo(left.eval(frame), right.eval(frame));
+            case "==": return frame -> ScriptValue.bool(ScriptValue.equals(left.eval(frame), right.eval(frame)));
+            case "!=": return frame -> ScriptValue.bool(!ScriptValue.equals(left.eval(frame), right.eval(frame)));
+            case "<": return frame -> ScriptValue.bool(ScriptValue.compare(left.eval(frame), right.eval(frame)) < 0);
+            case "<=": return frame -> ScriptValue.bool(ScriptValue.compare(left.eval(frame), right.eval(frame)) <= 0);
+            case ">": return frame -> ScriptValue.bool(ScriptValue.compare(left.eval(frame), right.eval(frame)) > 0);
+            case ">=": return frame -> ScriptValue.bool(ScriptValue.compare(left.eval(frame), right.eval(frame)) >= 0);
+            default:
+                return frame -> {
+                    left.eval(frame);
+                    right.eval(frame);
+                    throw new RuntimeException("Unknown binary operator: " + op);
+                };
+        }
+    }
+
+    private Node compileAssign(ScriptAST target, Node value) {
+        if (target instanceof ScriptAST.IdentifierExpr) {
+            Ref ref = ref(((ScriptAST.IdentifierExpr) target).getName(), true);
+            return frame -> {
+                ScriptValue v = value.eval(frame);
+                ref.write(frame, v);
+                return v;
+            };
+        }
+        if (target instanceof ScriptAST.MemberAccessExpr) {
+            ScriptAST.MemberAccessExpr member = (ScriptAST.MemberAccessExpr) target;
+            Node object = compile(member.getObject());
+            String name = member.getMember();
+            return frame -> {
+                ScriptValue v = value.eval(frame);
+                object.eval(frame).setProperty(name, v);
+                return v;
+            };
+        }
+        return value;
+    }
+
+    @Override
+    public Node visitUnary(ScriptAST.UnaryExpr expr) {
+        Node operand = compile(expr.getOperand());
+        String op = expr.getOperator();
+
+        switch (op) {
+            case "-": return frame -> ScriptValue.negate(operand.eval(frame));
+            case "!": return frame -> ScriptValue.not(operand.eval(frame));
+            default:
+                return frame -> {
+                    operand.eval(frame);
+                    throw new RuntimeException("Unknown unary operator: " + op);
+                };
+        }
+    }
+
+    @Override
+    public Node visitCall(ScriptAST.CallExpr expr) {
+        if (expr.getCallee() instanceof ScriptAST.MemberAccessExpr) {
+            return compileMethodCall((ScriptAST.MemberAccessExpr) expr.getCallee(), compileAll(expr.getArguments()));
+        }
+
+        Node callee = compile(expr.getCallee());
+        Node[] args = compileAll(expr.getArguments());
+        ScriptInterpreter interp = interpreter;
+        return frame -> {
+            ScriptValue fn = callee.eval(frame);
+            if (!fn.isFunction()) {
+                throw new RuntimeException("Cannot call non-function: " + fn);
+            }
+            return fn.asFunction().call(interp, evalArgs(args, frame));
+        };
+    }
+
+    /**
+     * A call of a member. String and array built-ins are invoked on the receiver directly; anything else is looked up
+     * as a property and called.
+     */
+    private Node compileMethodCall(ScriptAST.MemberAccessExpr member, Node[] args) {
+        Node object = compile(member.getObject());
+        String name = member.getMember();
+        boolean optional = member.isOptional();
+        ScriptBuiltins.Method stringMethod = ScriptBuiltins.stringMethod(name);
+        ScriptBuiltins.Method arrayMethod = ScriptBuiltins.arrayMethod(name);
+        ScriptInterpreter interp = interpreter;
+        return frame -> {
+            ScriptValue self = object.eval(frame);
+            ScriptValue fn;
+            if (optional && self.isNull()) {
+                fn = ScriptValue.NULL;
+            } else if (self.isString()) {
+                if (stringMethod != null) {
+                    return stringMethod.invoke(interp, self, evalArgs(args, frame));
+                }
+                fn = self.getProperty(name);
+            } else if (self.isArray()) {
+                if (arrayMethod != null) {
+                    return arrayMethod.invoke(interp, self, evalArgs(args, frame));
+                }
+                fn = self.getProperty(name);
+            } else {
+                fn = self.getProperty(name);
+            }
+            if (!fn.isFunction()) {
+                throw new RuntimeException("Cannot call non-function: " + fn);
+            }
+            return fn.asFunction().call(interp, evalArgs(args, frame));
+        };
+    }
+
+    @Override
+    public Node visitMemberAccess(ScriptAST.MemberAccessExpr expr) {
+        Node object = compile(expr.getObject());
+        String name = expr.getMember();
+        boolean optional = expr.isOptional();
+        ScriptBuiltins.Method stringMethod = ScriptBuiltins.stringMethod(name);
+        ScriptBuiltins.Method arrayMethod = ScriptBuiltins.arrayMethod(name);
+        ScriptInterpreter interp = interpreter;
+        return frame -> {
+            ScriptValue self = object.eval(frame);
+
+            // Optional chaining
+            if (optional && self.isNull()) {
+                return ScriptValue.NULL;
+            }
+            if (self.isString()) {
+                return stringMethod != null ? ScriptBuiltins.bind(interp, name, stringMethod, self)
+                    : self.getProperty(name);
+            }
+            if (self.isArray()) {
+                return arrayMethod != null ? ScriptBuiltins.bind(interp, name, arrayMethod, self)
+                    : self.getProperty(name);
+            }
+            return self.getProperty(name);
+        };
+    }
+
+    @Override
+    public Node visitArrowFunction(ScriptAST.ArrowFunctionExpr expr) {
+        int outerLoopDepth = loopDepth;
+        loopDepth = 0;
+        Scope function = push(true);
+        List<String> parameters = expr.getParameters();
+        int[] parameterSlots = new int[parameters.size()];
+        for (int i = 0; i < parameterSlots.length; i++) {
+            parameterSlots[i] = function.slot(parameters.get(i));
+            function.definite(parameters.get(i), 0);
+        }
+        ScriptAST bodyAst = expr.getBody();
+        Node body = bodyAst instanceof ScriptAST.BlockStmt
+            ? sequence(((ScriptAST.BlockStmt) bodyAst).getStatements())
+            : compile(bodyAst);
+        pop();
+        loopDepth = outerLoopDepth;
+
+        long sourceHash = expr.getSourceHash();
+        return frame -> ScriptValue.function(
+            new ScriptFunction.UserFunction(parameters, function, parameterSlots, body, frame, sourceHash));
+    }
+
+    @Override
+    public Node visitArrayAccess(ScriptAST.ArrayAccessExpr expr) {
+        Node array = compile(expr.getArray());
+        Node index = compile(expr.getIndex());
+        return frame -> {
+            ScriptValue arr = array.eval(frame);
+            ScriptValue idx = index.eval(frame);
+
+            if (arr.isArray()) {
+                int i = (int) idx.asNumber();
+                List<ScriptValue> list = arr.asArray();
+                return i >= 0 && i < list.size() ? list.get(i) : ScriptValue.NULL;
+            }
+            if (arr.isString()) {
+                int i = (int) idx.asNumber();
+                String s = arr.asString();
+                return i >= 0 && i < s.length() ? ScriptValue.string(String.valueOf(s.charAt(i))) : ScriptValue.NULL;
+            }
+            if (arr.isObject()) {
+                return arr.getProperty(idx.asString());
+            }
+            return ScriptValue.NULL;
+        };
+    }
+
+    @Override
+    public Node visitTernary(ScriptAST.TernaryExpr expr) {
+        Node condition = compile(expr.getCondition());
+        Node thenBranch = compile(expr.getThenBranch());
+        Node elseBranch = compile(expr.getElseBranch());
+        return frame -> condition.eval(frame).asBoolean() ? thenBranch.eval(frame) : elseBranch.eval(frame);
+    }
+
+    // ==================== Statements ====================
+
+    @Override
+    public Node visitExpressionStmt(ScriptAST.ExpressionStmt stmt) {
+        return compile(stmt.getExpression());
+    }
+
+    @Override
+    public Node visitVarDecl(ScriptAST.VarDeclStmt stmt) {
+        Node initializer = stmt.getInitializer() != null ? compile(stmt.getInitializer()) : null;
+        String name = stmt.getName();
+        boolean constant = stmt.isConstant();
+
+        if (scope.root) {
+            return frame -> {
+                ScriptValue value = initializer != null ? initializer.eval(frame) : ScriptValue.NULL;
+                if (constant) {
+                    frame.base.defineConstant(name, value);
+                } else {
+                    frame.base.define(name, value);
+                }
+                return value;
+            };
+        }
+
+        int slot = scope.slot(name);
+        scope.constants |= constant;
+        return frame -> {
+            ScriptValue value = initializer != null ? initializer.eval(frame) : ScriptValue.NULL;
+            frame.store(slot, value, constant);
+            return value;
+        };
+    }
+
+    @Override
+    public Node visitIf(ScriptAST.IfStmt stmt) {
+        Node condition = compile(stmt.getCondition());
+        Node thenBranch = compile(stmt.getThenBranch());
+        Node elseBranch = stmt.getElseBranch() != null ? compile(stmt.getElseBranch()) : null;
+        return frame -> {
+            if (condition.eval(frame).asBoolean()) {
+                return thenBranch.eval(frame);
+            }
+            return elseBranch != null ? elseBranch.eval(frame) : ScriptValue.NULL;
+        };
+    }
+
+    @Override
+    public Node visitReturn(ScriptAST.ReturnStmt stmt) {
+        Node value = stmt.getValue() != null ? compile(stmt.getValue()) : null;
+        return frame -> {
+            ScriptValue result = value != null ? value.eval(frame) : ScriptValue.NULL;
+            frame.activation.returnValue = result;
+            frame.activation.signal = RETURN;
+            return result;
+        };
+    }
+
+    @Override
+    public Node visitBlock(ScriptAST.BlockStmt stmt) {
+        Scope block = push(false);
+        Node body = sequence(stmt.getStatements());
+        pop();
+        return frame -> body.eval(enter(frame, block));
+    }
+
+    // ==================== Loops ====================
+
+    @Override
+    public Node visitWhile(ScriptAST.WhileStmt stmt) {
+        Node condition = compile(stmt.getCondition());
+        loopDepth++;
+        Node body = compile(stmt.getBody());
+        loopDepth--;
+        return frame -> {
+            while (condition.eval(frame).asBoolean()) {
+                body.eval(frame);
+                if (exitLoop(frame.activation)) {
+                    break;
+                }
+            }
+            return ScriptValue.NULL;
+        };
+    }
+
+    @Override
+    public Node visitFor(ScriptAST.ForStmt stmt) {
+        Scope loop = push(false);
+        Node init = null;
+        if (stmt.getInit() != null) {
+            init = compile(stmt.getInit());
+            if (stmt.getInit() instanceof ScriptAST.VarDeclStmt) {
+                loop.definite(((ScriptAST.VarDeclStmt) stmt.getInit()).getName(), ++seq);
+            }
+        }
+        Node condition = stmt.getCondition() != null ? compile(stmt.getCondition()) : null;
+        Node update = stmt.getUpdate() != null ? compile(stmt.getUpdate()) : null;
+        loopDepth++;
+        Node body = compile(stmt.getBody());
+        loopDepth--;
+        pop();
+
+        Node initNode = init;
+        return outer -> {
+            Frame frame = enter(outer, loop);
+            if (initNode != null) {
+                initNode.eval(frame);
+            }
+            while (condition == null || condition.eval(frame).asBoolean()) {
+                body.eval(frame);
+                if (exitLoop(frame.activation)) {
+                    break;
+                }
+                if (update != null) {
+                    update.eval(frame);
+                }
+            }
+            return ScriptValue.NULL;
+        };
+    }
+
+    @Override
+    public Node visitForEach(ScriptAST.ForEachStmt stmt) {
+        Node iterable = compile(stmt.getIterable());
+        Scope iteration = push(false);
+        int slot = iteration.slot(stmt.getVarName());
+        iteration.definite(stmt.getVarName(), 0);
+        boolean constant = stmt.isConstant();
+        iteration.constants = constant;
+        loopDepth++;
+        Node body = compile(stmt.getBody());
+        loopDepth--;
+        pop();
+        boolean forIn = stmt.isForIn();
+
+        return frame -> {
+            ScriptValue value = iterable.eval(frame);
+            if (value.isArray()) {
+                List<ScriptValue> list = value.asArray();
+                if (forIn) {
+                    for (int i = 0; i < list.size(); i++) {
+                        if (iterate(frame, iteration, slot, constant, ScriptValue.number(i), body)) {
+                            break;
+                        }
+                    }
+                } else {
+                    for (ScriptValue item : list) {
+                        if (iterate(frame, iteration, slot, constant, item, body)) {
+                            break;
+                        }
+                    }
+                }
+            } else if (value.isObject()) {
+                Map<String, ScriptValue> obj = value.asObject();
+                if (forIn) {
+                    for (String key : obj.keySet()) {
+                        if (iterate(frame, iteration, slot, constant, ScriptValue.string(key), body)) {
+                            break;
+                        }
+                    }
+                } else {
+                    for (ScriptValue item : obj.values()) {
+                        if (iterate(frame, iteration, slot, constant, item, body)) {
+                            break;
+                        }
+                    }
+                }
+            } else if (value.isString()) {
+                String s = value.asString();
+                for (int i = 0; i < s.length(); i++) {
+                    ScriptValue item = forIn ? ScriptValue.number(i) : ScriptValue.string(String.valueOf(s.charAt(i)));
+                    if (iterate(frame, iteration, slot, constant, item, body)) {
+                        break;
+                    }
+                }
+            }
+            return ScriptValue.NULL;
+        };
+    }
+
+    /**
+     * Runs one for-each iteration in a fresh frame, so closures created by the body capture that iteration's value.
+     * Returns true if the loop must stop.
+     */
+    private static boolean iterate(Frame outer, Scope iteration, int slot, boolean constant, ScriptValue value,
+                                   Node body) {
+        Frame frame = new Frame(outer, iteration);
+        frame.store(slot, value, constant);
+        body.eval(frame);
+        return exitLoop(frame.activation);
+    }
+
+    @Override
+    public Node visitBreak(ScriptAST.BreakStmt stmt) {
+        if (loopDepth == 0) {
+            return frame -> {
+                throw new RuntimeException("'break' outside of loop");
+            };
+        }
+        return frame -> {
+            frame.activation.signal = BREAK;
+            return ScriptValue.NULL;
+        };
+    }
+
+    @Override
+    public Node visitContinue(ScriptAST.ContinueStmt stmt) {
+        if (loopDepth == 0) {
+            return frame -> {
+                throw new RuntimeException("'continue' outside of loop");
+            };
+        }
+        return frame -> {
+            frame.activation.signal = CONTINUE;
+            return ScriptValue.NULL;
+        };
+    }
+
+    // ==================== Exceptions ====================
+
+    @Override
+    public Node visitTry(ScriptAST.TryStmt stmt) {
+        Node tryBlock = compile(stmt.getTryBlock());
+        Node catchBlock = null;
+        Scope catchScope = null;
+        int catchSlot = -1;
+        if (stmt.getCatchBlock() != null) {
+            catchScope = push(false);
+            if (stmt.getCatchParam() != null) {
+                catchSlot = catchScope.slot(stmt.getCatchParam());
+                catchScope.definite(stmt.getCatchParam(), 0);
+            }
+            catchBlock = compile(stmt.getCatchBlock());
+            pop();
+        }
+        Node finallyBlock = stmt.getFinallyBlock() != null ? compile(stmt.getFinallyBlock()) : null;
+
+        Node catchNode = catchBlock;
+        Scope catchFrameScope = catchScope;
+        int slot = catchSlot;
+        return frame -> {
+            ScriptValue result = ScriptValue.NULL;
+            Throwable caught = null;
+
+            try {
+                result = tryBlock.eval(frame);
+            } catch (Throwable e) {
+                caught = e;
+            }
+
+            if (caught != null && catchNode != null) {
+                Frame catchFrame = enter(frame, catchFrameScope);
+                if (slot >= 0) {
+                    String message = caught.getMessage() != null ? caught.getMessage() : caught.toString();
+                    catchFrame.store(slot, ScriptValue.string(message), false);
+                }
+                result = catchNode.eval(catchFrame);
+            }
+
+            // A return, break or continue pending from the try or catch block still runs the finally block, and
+            // stays pending unless the finally block leaves by its own
+            if (finallyBlock != null) {
+                Activation activation = frame.activation;
+                int signal = activation.signal;
+                ScriptValue returnValue = activation.returnValue;
+                activation.signal = NORMAL;
+                finallyBlock.eval(frame);
+                if (activation.signal == NORMAL) {
+                    activation.signal = signal;
+                    activation.returnValue = returnValue;
+                }
+            }
+
+            return result;
+        };
+    }
+
+    @Override
+    public Node visitThrow(ScriptAST.ThrowStmt stmt) {
+        Node expression = compile(stmt.getExpression());
+        return frame -> {
+            throw new ScriptInterpreter.ScriptException(expression.eval(frame).asString());
+        };
+    }
+
+    // ==================== Update and Compound Assignment ====================
+
+    @Override
+    public Node visitUpdate(ScriptAST.UpdateExpr expr) {
+        ScriptAST operand = expr.getOperand();
+        String op = expr.getOperator();
+        int delta = "++".equals(op) ? 1 : -1;
+        boolean prefix = expr.isPrefix();
+
+        if (operand instanceof ScriptAST.IdentifierExpr) {
+            String name = ((ScriptAST.IdentifierExpr) operand).getName();
+            Ref ref = ref(name, true);
+            return frame -> {
+                ScriptValue current = ref.read(frame);
+                ScriptValue next = ScriptValue.increment(current, delta);
+                ref.write(frame, next);
+                return prefix ? next : numeric(current);
+            };
+        }
+        if (operand instanceof ScriptAST.MemberAccessExpr) {
+            ScriptAST.MemberAccessExpr member = (ScriptAST.MemberAccessExpr) operand;
+            Node object = compile(member.getObject());
+            String name = member.getMember();
+            return frame -> {
+                ScriptValue obj = object.eval(frame);
+                ScriptValue current = obj.getProperty(name);
+                ScriptValue next = ScriptValue.increment(current, delta);
+                obj.setProperty(name, next);
+                return prefix ? next : numeric(current);
+            };
+        }
+        if (operand instanceof ScriptAST.ArrayAccessExpr) {
+            ScriptAST.ArrayAccessExpr access = (ScriptAST.ArrayAccessExpr) operand;
+            Node array = compile(access.getArray());
+            Node index = compile(access.getIndex());
+            return frame -> {
+                ScriptValue arr = array.eval(frame);
+                int i = (int) index.eval(frame).asNumber();
+                if (!arr.isArray()) {
+                    throw new RuntimeException("Invalid operand for " + op);
+                }
+                List<ScriptValue> list = arr.asArray();
+                ScriptValue current = list.get(i);
+                ScriptValue next = ScriptValue.increment(current, delta);
+                list.set(i, next);
+                return prefix ? next : numeric(current);
+            };
+        }
+        return frame -> {
+            throw new RuntimeException("Invalid operand for " + op);
+        };
+    }
+
+    /**
+     * The numeric value of {@code value}, reusing it when it already is a number.
+     */
+    private static ScriptValue numeric(ScriptValue value) {
+        return value.isNumber() ? value : ScriptValue.number(value.asNumber());
+    }
+
+    @Override
+    public Node visitAssignment(ScriptAST.AssignmentExpr expr) {
+        ScriptAST target = expr.getTarget();
+        String op = expr.getOperator();
+        BinaryOperator<ScriptValue> apply = compoundOperator(op);
+        Node value = compile(expr.getValue());
+
+        if (target instanceof ScriptAST.IdentifierExpr) {
+            String name = ((ScriptAST.IdentifierExpr) target).getName();
+            Ref ref = ref(name, true);
+            return frame -> {
+                ScriptValue right = value.eval(frame);
+                ScriptValue result = apply.apply(ref.read(frame), right);
+                ref.write(frame, result);
+                return result;
+            };
+        }
+        if (target instanceof ScriptAST.MemberAccessExpr) {
+            ScriptAST.MemberAccessExpr member = (ScriptAST.MemberAccessExpr) target;
+            Node object = compile(member.getObject());
+            String name = member.getMember();
+            return frame -> {
+                ScriptValue right = value.eval(frame);
+                ScriptValue obj = object.eval(frame);
+                ScriptValue result = apply.apply(obj.getProperty(name), right);
+                obj.setProperty(name, result);
+                return result;
+            };
+        }
+        if (target instanceof ScriptAST.ArrayAccessExpr) {
+            ScriptAST.ArrayAccessExpr access = (ScriptAST.ArrayAccessExpr) target;
+            Node array = compile(access.getArray());
+            Node index = compile(access.getIndex());
+            return frame -> {
+                ScriptValue right = value.eval(frame);
+                ScriptValue arr = array.eval(frame);
+                int i = (int) index.eval(frame).asNumber();
+                if (!arr.isArray()) {
+                    throw new RuntimeException("Invalid compound assignment target");
+                }
+                List<ScriptValue> list = arr.asArray();
+                ScriptValue result = apply.apply(list.get(i), right);
+                list.set(i, result);
+                return result;
+            };
+        }
+        return frame -> {
+            value.eval(frame);
+            throw new RuntimeException("Invalid compound assignment target");
+        };
+    }
+
+    private static BinaryOperator<ScriptValue> compoundOperator(String op) {
+        switch (op) {
+            case "+=": return ScriptValue::add;
+            case "-=": return ScriptValue::subtract;
+            case "*=": return ScriptValue::multiply;
+            case "/=": return ScriptValue::divide;
+            default:
+                return (left, right) -> {
+                    throw new RuntimeException("Unknown compound operator: " + op);
+                };
+        }
+    }
+
+    /**
+     * Wraps a single node as a statement list, for function bodies and {@code executeInContext}.
+     */
+    static List<ScriptAST> statementsOf(ScriptAST node) {
+        return node instanceof ScriptAST.BlockStmt
+            ? ((ScriptAST.BlockStmt) node).getStatements()
+            : Collections.singletonList(node);
+    }
+}
@@ -7,13 +7,15 @@ import java.util.Map;
 
 /**
  * Variable scope for script execution.
+ * <p>
+ * Each variable lives in a {@link Binding} cell that is updated in place on redefinition, so compiled scripts can
+ * hold on to the cell of a global instead of repeating the map lookup.
  */
 public class ScriptContext {
 
     @Getter
     private final ScriptContext parent;
-    private final Map<String, ScriptValue> variables = new HashMap<>();
-    private final Map<String, Boolean> constants = new HashMap<>();
+    private final Map<String, Binding> variables = new HashMap<>();
 
     public ScriptContext() {
         this.parent = null;
@@ -27,63 +29,71 @@ public class ScriptContext {
      * Defines a new variable in this scope.
      */
     public void define(String name, ScriptValue value) {
-        variables.put(name, value);
-        constants.put(name, false);
+        bind(name, value, false);
     }
 
     /**
      * Defines a new constant in this scope.
      */
     public void defineConstant(String name, ScriptValue value) {
-        variables.put(name, value);
-        constants.put(name, true);
+        bind(name, value, true);
+    }
+
+    private void bind(String name, ScriptValue value, boolean constant) {
+        Binding binding = variables.get(name);
+        if (binding == null) {
+            variables.put(name, new Binding(value, constant));
+        } else {
+            binding.value = value;
+            binding.constant = constant;
+        }
     }
 
     /**
      * Gets a variable, searching up the scope chain.
      */
     public ScriptValue get(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        }
-        if (parent != null) {
-            return parent.get(name);
-        }
-        return ScriptValue.NULL;
+        Binding binding = lookup(name);
+        return binding != null ? binding.value : ScriptValue.NULL;
     }
 
     /**
      * Sets a variable, searching up the scope chain.
      */
     public void set(String name, ScriptValue value) {
-        // Find the scope where this variable is defined
-        ScriptContext scope = findScope(name);
+        Binding binding = lookup(name);
 
-        if (scope != null) {
-            if (scope.constants.getOrDefault(name, false)) {
+        if (binding != null) {
+            if (binding.constant) {
                 throw new RuntimeException("Cannot reassign constant: " + name);
             }
-            scope.variables.put(name, value);
+            binding.value = value;
         } else {
             // Define in current scope if not found
-            variables.put(name, value);
-            constants.put(name, false);
+            variables.put(name, new Binding(value, false));
         }
     }
 
     /**
-     * Finds the scope where a variable is defined.
+     * Finds the binding of a variable, searching up the scope chain.
      */
-    private ScriptContext findScope(String name) {
-        if (variables.containsKey(name)) {
-            return this;
-        }
-        if (parent != null) {
-            return parent.findScope(name);
+    Binding lookup(String name) {
+        for (ScriptContext scope = this; scope != null; scope = scope.parent) {
+            Binding binding = scope.variables.get(name);
+            if (binding != null) {
+                return binding;
+            }
         }
         return null;
     }
 
+    /**
+     * Gets the binding of a variable defined directly in this scope.
+     */
+    Binding local(String name) {
+        return variables.get(name);
+    }
+
     /**
      * Creates a child scope.
      */
@@ -91,4 +101,16 @@ public class ScriptContext {
         return new ScriptContext(this);
     }
 
+    /**
+     * A variable's storage cell.
+     */
+    static final class Binding {
+        ScriptValue value;
+        boolean constant;
+
+        Binding(ScriptValue value, boolean constant) {
+            this.value = value;
+            this.constant = constant;
+        }
+    }
 }
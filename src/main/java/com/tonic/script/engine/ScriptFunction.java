@@ -18,33 +18,42 @@ public abstract class ScriptFunction {
     public abstract ScriptValue call(ScriptInterpreter interpreter, List<ScriptValue> args);
 
     /**
-     * User-defined arrow function from script.
+     * User-defined arrow function from script, compiled by {@link ScriptCompiler}.
      */
-    @Getter
     public static class UserFunction extends ScriptFunction {
+        @Getter
         private final List<String> parameters;
-        private final ScriptAST body;
-        private final ScriptContext closure;
-
-        public UserFunction(List<String> parameters, ScriptAST body, ScriptContext closure) {
+        /** Hash of the function's source tokens, 0 if unknown. Captured variables are not part of it. */
+        @Getter
+        private final long sourceHash;
+        private final ScriptCompiler.Scope scope;
+        private final int[] parameterSlots;
+        private final ScriptCompiler.Node body;
+        private final ScriptCompiler.Frame closure;
+
+        UserFunction(List<String> parameters, ScriptCompiler.Scope scope, int[] parameterSlots,
+                     ScriptCompiler.Node body, ScriptCompiler.Frame closure, long sourceHash) {
             this.parameters = parameters;
+            this.scope = scope;
+            this.parameterSlots = parameterSlots;
             this.body = body;
             this.closure = closure;
+            this.sourceHash = sourceHash;
         }
 
         @Override
         public ScriptValue call(ScriptInterpreter interpreter, List<ScriptValue> args) {
-            // Create new scope with closure as parent
-            ScriptContext scope = new ScriptContext(closure);
+            // New frame with the closure's frame as parent
+            ScriptCompiler.Frame frame = new ScriptCompiler.Frame(closure, scope, closure.base,
+                new ScriptCompiler.Activation());
 
             // Bind arguments to parameters
-            for (int i = 0; i < parameters.size(); i++) {
-                ScriptValue arg = i < args.size() ? args.get(i) : ScriptValue.NULL;
-                scope.define(parameters.get(i), arg);
+            for (int i = 0; i < parameterSlots.length; i++) {
+                frame.slots[parameterSlots[i]] = i < args.size() ? args.get(i) : ScriptValue.NULL;
             }
 
             // Execute body
-            return interpreter.executeInContext(body, scope);
+            return frame.activation.result(body.eval(frame));
         }
     }
 
@@ -483,11 +483,12 @@ public class ScriptParser {
 
             // Single-param arrow function: x => expr
             if (check(ScriptToken.Type.ARROW)) {
+                int start = current - 1;
                 advance(); // consume '=>'
                 List<String> params = new ArrayList<>();
                 params.add(name);
                 ScriptAST body = parseArrowBody();
-                return new ScriptAST.ArrowFunctionExpr(params, body);
+                return new ScriptAST.ArrowFunctionExpr(params, body, hashTokens(start, current));
             }
 
             return new ScriptAST.IdentifierExpr(name);
@@ -517,6 +518,7 @@ public class ScriptParser {
     }
 
     private ScriptAST parseArrowFunction() {
+        int start = current;
         consume(ScriptToken.Type.LPAREN, "Expected '(' for arrow function");
 
         List<String> params = new ArrayList<>();
@@ -531,7 +533,25 @@ public class ScriptParser {
         consume(ScriptToken.Type.ARROW, "Expected '=>' after parameters");
 
         ScriptAST body = parseArrowBody();
-        return new ScriptAST.ArrowFunctionExpr(params, body);
+        return new ScriptAST.ArrowFunctionExpr(params, body, hashTokens(start, current));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the tokens in {@code [from, to)}. Covers token types and text only, so formatting and
+     * comments do not change it. Never returns 0, which marks an unknown hash.
+     */
+    private long hashTokens(int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            ScriptToken token = tokens.get(i);
+            hash = (hash ^ token.getType().ordinal()) * 0x100000001b3L;
+            String value = token.getValue();
+            for (int c = 0; value != null && c < value.length(); c++) {
+                hash = (hash ^ value.charAt(c)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0xff) * 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
     }
 
     private ScriptAST parseArrowBody() {
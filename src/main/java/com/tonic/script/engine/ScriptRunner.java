@@ -66,7 +66,7 @@ public final class ScriptRunner {
                         count += runOnMethod(source, mode, classEntry, methodModel, project, live, out);
                     }
                     if (count > before) {
-                        commitClass(classEntry, out);
+                        commitClass(classEntry, project, out);
                     }
                 }
             } else if (scope == Scope.CLASS) {
@@ -80,7 +80,7 @@ public final class ScriptRunner {
                     count += runOnMethod(source, mode, targetClass, methodModel, project, live, out);
                 }
                 if (count > before) {
-                    commitClass(targetClass, out);
+                    commitClass(targetClass, project, out);
                 }
             } else {
                 if (targetClass == null || targetMethod == null) {
@@ -91,7 +91,7 @@ public final class ScriptRunner {
                 count += runAnnotationsOnClass(source, targetClass, project, live, out);
                 count += runOnMethod(source, mode, targetClass, targetMethod, project, live, out);
                 if (count > before) {
-                    commitClass(targetClass, out);
+                    commitClass(targetClass, project, out);
                 }
             }
         } catch (Exception e) {
@@ -329,9 +329,9 @@ public final class ScriptRunner {
 
     /**
      * After a class was modified: recompute its stack-map frames, then invalidate JStudio's caches (decompiled
-     * source + per-method IR) so every view regenerates from the new bytecode.
+     * source + per-method IR) so every view regenerates from the new bytecode, and mark the project changed.
      */
-    private static void commitClass(ClassEntryModel classEntry, Consumer<String> out) {
+    private static void commitClass(ClassEntryModel classEntry, ProjectModel project, Consumer<String> out) {
         try {
             ClassFactory.computeFrames(classEntry.getClassFile());
         } catch (Exception e) {
@@ -341,5 +341,8 @@ public final class ScriptRunner {
         for (MethodEntryModel methodModel : classEntry.getMethods()) {
             methodModel.invalidateIRCache();
         }
+        if (project != null) {
+            project.markDirty();
+        }
     }
 }
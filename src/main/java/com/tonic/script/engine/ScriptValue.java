@@ -8,8 +8,12 @@ import java.util.Objects;
 
 /**
  * Runtime values for the script interpreter.
+ * <p>
+ * Numbers are never boxed. Integral values are kept as ints and everything else as raw double bits, tagged through
+ * the {@code value} field, so integer arithmetic runs on longs without converting to and from {@code double}.
+ * Integers in a small range are shared instances, which lets loop counters and opcode arithmetic in scripts run
+ * without allocating. Scripts still see a single number type with double semantics.
  */
-@Getter
 public class ScriptValue {
 
     public enum Type {
@@ -23,12 +27,34 @@ public class ScriptValue {
         NATIVE   // Java object wrapper
     }
 
+    /** Range of integers with a shared instance: covers loop indices, opcodes and most counts. */
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final ScriptValue[] SMALL_INTS = new ScriptValue[CACHE_HIGH - CACHE_LOW + 1];
+
+    /** Number tags held in {@code value}: {@code bits} is then an int, or the raw bits of a double. */
+    private static final Object INT = new Object();
+    private static final Object DOUBLE = new Object();
+
+    @Getter
     private final Type type;
     private final Object value;
+    private final long bits;
 
     private ScriptValue(Type type, Object value) {
+        this(type, value, 0);
+    }
+
+    private ScriptValue(Type type, Object value, long bits) {
         this.type = type;
         this.value = value;
+        this.bits = bits;
+    }
+
+    static {
+        for (int i = CACHE_LOW; i <= CACHE_HIGH; i++) {
+            SMALL_INTS[i - CACHE_LOW] = new ScriptValue(Type.NUMBER, INT, i);
+        }
     }
 
     // ==================== Factory Methods ====================
@@ -55,7 +81,25 @@ public class ScriptValue {
     }
 
     public static ScriptValue number(double value) {
-        return new ScriptValue(Type.NUMBER, value);
+        int i = (int) value;
+        // -0.0 compares equal to 0 but is a distinct value, so it stays a double
+        if (i == value && (i != 0 || Double.doubleToRawLongBits(value) == 0)) {
+            return number(i);
+        }
+        return new ScriptValue(Type.NUMBER, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public static ScriptValue number(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return SMALL_INTS[value - CACHE_LOW];
+        }
+        return new ScriptValue(Type.NUMBER, INT, value);
+    }
+
+    /** The result of exact integer arithmetic, which may have left the int range. */
+    private static ScriptValue integral(long value) {
+        int i = (int) value;
+        return i == value ? number(i) : new ScriptValue(Type.NUMBER, DOUBLE, Double.doubleToRawLongBits(value));
     }
 
     public static ScriptValue string(String value) {
@@ -117,13 +161,13 @@ public class ScriptValue {
     public boolean asBoolean() {
         if (type == Type.BOOLEAN) return (Boolean) value;
         if (type == Type.NULL) return false;
-        if (type == Type.NUMBER) return ((Double) value) != 0;
+        if (type == Type.NUMBER) return value == INT ? bits != 0 : Double.longBitsToDouble(bits) != 0;
         if (type == Type.STRING) return !((String) value).isEmpty();
         return true; // Objects, functions, arrays are truthy
     }
 
     public double asNumber() {
-        if (type == Type.NUMBER) return (Double) value;
+        if (type == Type.NUMBER) return value == INT ? bits : Double.longBitsToDouble(bits);
         if (type == Type.BOOLEAN) return (Boolean) value ? 1 : 0;
         if (type == Type.STRING) {
             try {
@@ -140,7 +184,8 @@ public class ScriptValue {
         if (type == Type.NULL) return "null";
         if (type == Type.BOOLEAN) return value.toString();
         if (type == Type.NUMBER) {
-            double d = (Double) value;
+            if (value == INT) return String.valueOf(bits);
+            double d = Double.longBitsToDouble(bits);
             if (d == (long) d) return String.valueOf((long) d);
             return String.valueOf(d);
         }
@@ -176,8 +221,15 @@ public class ScriptValue {
         throw new RuntimeException("Value is not a " + clazz.getSimpleName() + ": " + this);
     }
 
+    /**
+     * The underlying Java value; numbers are boxed to {@link Double} on demand.
+     */
+    public Object getValue() {
+        return type == Type.NUMBER ? Double.valueOf(asNumber()) : value;
+    }
+
     public Object unwrap() {
-        return value;
+        return getValue();
     }
 
     // ==================== Property Access ====================
@@ -208,6 +260,12 @@ public class ScriptValue {
     // ==================== Operators ====================
 
     public static ScriptValue add(ScriptValue left, ScriptValue right) {
+        if (left.value == INT && right.value == INT) {
+            return integral(left.bits + right.bits);
+        }
+        if (left.type == Type.NUMBER && right.type == Type.NUMBER) {
+            return number(left.asNumber() + right.asNumber());
+        }
         // String concatenation
         if (left.isString() || right.isString()) {
             return string(left.asString() + right.asString());
@@ -217,10 +275,21 @@ public class ScriptValue {
     }
 
     public static ScriptValue subtract(ScriptValue left, ScriptValue right) {
+        if (left.value == INT && right.value == INT) {
+            return integral(left.bits - right.bits);
+        }
         return number(left.asNumber() - right.asNumber());
     }
 
     public static ScriptValue multiply(ScriptValue left, ScriptValue right) {
+        if (left.value == INT && right.value == INT) {
+            long product = left.bits * right.bits;
+            // A zero product with a negative factor is -0.0 in double arithmetic
+            if (product == 0 && (left.bits < 0 || right.bits < 0)) {
+                return number(-0.0);
+            }
+            return integral(product);
+        }
         return number(left.asNumber() * right.asNumber());
     }
 
@@ -229,10 +298,31 @@ public class ScriptValue {
     }
 
     public static ScriptValue modulo(ScriptValue left, ScriptValue right) {
+        if (left.value == INT && right.value == INT && right.bits != 0) {
+            long remainder = left.bits % right.bits;
+            // The remainder takes the dividend's sign, including -0.0
+            if (remainder == 0 && left.bits < 0) {
+                return number(-0.0);
+            }
+            return integral(remainder);
+        }
         return number(left.asNumber() % right.asNumber());
     }
 
+    /**
+     * Adds a small constant, for {@code ++} and {@code --}.
+     */
+    public static ScriptValue increment(ScriptValue val, int delta) {
+        if (val.value == INT) {
+            return integral(val.bits + delta);
+        }
+        return number(val.asNumber() + delta);
+    }
+
     public static ScriptValue negate(ScriptValue val) {
+        if (val.value == INT && val.bits != 0) {
+            return integral(-val.bits);
+        }
         return number(-val.asNumber());
     }
 
@@ -243,10 +333,20 @@ public class ScriptValue {
     public static boolean equals(ScriptValue left, ScriptValue right) {
         if (left.type != right.type) return false;
         if (left.isNull()) return right.isNull();
+        if (left.type == Type.NUMBER) {
+            if (left.value == INT && right.value == INT) {
+                return left.bits == right.bits;
+            }
+            // Same as Double.equals: NaN equals NaN, 0.0 differs from -0.0
+            return Double.doubleToLongBits(left.asNumber()) == Double.doubleToLongBits(right.asNumber());
+        }
         return Objects.equals(left.value, right.value);
     }
 
     public static int compare(ScriptValue left, ScriptValue right) {
+        if (left.value == INT && right.value == INT) {
+            return Long.compare(left.bits, right.bits);
+        }
         return Double.compare(left.asNumber(), right.asNumber());
     }
 
@@ -265,6 +365,7 @@ public class ScriptValue {
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, value);
+        int valueHash = type == Type.NUMBER ? Double.hashCode(asNumber()) : Objects.hashCode(value);
+        return 31 * (31 + type.hashCode()) + valueHash;
     }
 }
@@ -4,6 +4,8 @@ import com.tonic.script.engine.ScriptFunction;
 import com.tonic.script.engine.ScriptValue;
 import lombok.Getter;
 
+import java.util.List;
+
 /**
  * Represents a single stage in a script pipeline.
  */
@@ -12,14 +14,22 @@ public class PipelineStage {
 
     private final String name;
     private final ScriptFunction action;
+    /** Names of the stages this one reads, or null to follow the previously added stage. */
+    private final List<String> dependencies;
     private StageStatus status = StageStatus.PENDING;
     private ScriptValue result;
     private String error;
     private long executionTimeMs;
+    private boolean cached;
 
     public PipelineStage(String name, ScriptFunction action) {
+        this(name, action, null);
+    }
+
+    public PipelineStage(String name, ScriptFunction action, List<String> dependencies) {
         this.name = name;
         this.action = action;
+        this.dependencies = dependencies;
     }
 
     public void setStatus(StageStatus status) {
@@ -38,6 +48,10 @@ public class PipelineStage {
         this.executionTimeMs = executionTimeMs;
     }
 
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
     public enum StageStatus {
         PENDING,
         RUNNING,
@@ -1,29 +1,59 @@
 package com.tonic.script.pipeline;
 
+import com.tonic.model.ProjectModel;
 import com.tonic.script.engine.ScriptFunction;
 import com.tonic.script.engine.ScriptInterpreter;
 import com.tonic.script.engine.ScriptValue;
+import com.tonic.service.ProjectScope;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * Multi-stage pipeline for script execution.
- * Allows defining and running sequential analysis workflows.
+ * Allows defining and running analysis workflows.
+ * <p>
+ * A stage added without dependencies reads the result of the stage added before it, so plain pipelines run in
+ * sequence as they always have. A stage may instead name the stages it reads. Stages run one at a time unless the
+ * script calls {@code setParallelism(n)}; then stages whose inputs are ready run concurrently on the same interpreter
+ * and bridges, so they must not share mutable script state (variables, the context object) or edit classes.
+ * <p>
+ * With memoization on, a stage's result is reused when the project's bytecode version, the stage's source and the
+ * keys of its inputs all match an earlier run, so editing one stage only reruns it and the stages downstream of it.
+ * A stage whose function takes the context parameter is never memoized, since the context is not part of the key.
+ * Memoized stages must not rely on other side effects, and values captured from enclosing scopes are not part of the
+ * key either. A memoized result's arrays and objects are copied into the cache and copied again on every reuse, so a
+ * downstream stage may change what it receives (push to an array, assign a property) without corrupting later runs;
+ * functions and native values inside them are references into the project, not data, and are shared.
  */
 public class ScriptPipeline {
 
     private final ScriptInterpreter interpreter;
+    private final ProjectModel projectModel;
+    private final StageCache cache;
     @Getter
     private final List<PipelineStage> stages = new ArrayList<>();
     private Consumer<String> logCallback;
     private boolean stopOnError = true;
+    private boolean memoize;
+    private int parallelism = 1;
     private ScriptValue context;
     private long totalExecutionTimeMs;
 
     public ScriptPipeline(ScriptInterpreter interpreter) {
+        this(interpreter, null);
+    }
+
+    public ScriptPipeline(ScriptInterpreter interpreter, ProjectModel projectModel) {
         this.interpreter = interpreter;
+        this.projectModel = projectModel;
+        this.cache = StageCache.forProject(projectModel);
         this.context = ScriptValue.object(new HashMap<>());
     }
 
@@ -41,13 +71,28 @@ public class ScriptPipeline {
         Map<String, ScriptValue> props = new HashMap<>();
 
         props.put("stage", ScriptValue.function(
-            ScriptFunction.native2("stage", this::addStage)
+            ScriptFunction.nativeN("stage", this::addStage)
         ));
 
         props.put("run", ScriptValue.function(
             ScriptFunction.native0("run", this::runPipeline)
         ));
 
+        props.put("setMemoize", ScriptValue.function(
+            ScriptFunction.native1("setMemoize", this::setMemoizeValue)
+        ));
+
+        props.put("setParallelism", ScriptValue.function(
+            ScriptFunction.native1("setParallelism", this::setParallelismValue)
+        ));
+
+        props.put("clearCache", ScriptValue.function(
+            ScriptFunction.native0("clearCache", () -> {
+                cache.clear();
+                return ScriptValue.NULL;
+            })
+        ));
+
         props.put("runAsync", ScriptValue.function(
             ScriptFunction.native0("runAsync", this::runPipelineAsync)
         ));
@@ -91,22 +136,64 @@ public class ScriptPipeline {
         return ScriptValue.object(props);
     }
 
-    private ScriptValue addStage(ScriptValue nameVal, ScriptValue actionVal) {
-        String name = nameVal.asString();
+    private ScriptValue addStage(List<ScriptValue> args) {
+        String name = (args.isEmpty() ? ScriptValue.NULL : args.get(0)).asString();
+        ScriptValue actionVal = args.size() > 1 ? args.get(1) : ScriptValue.NULL;
         if (!actionVal.isFunction()) {
             log("Stage action must be a function");
             return ScriptValue.bool(false);
         }
 
-        stages.add(new PipelineStage(name, actionVal.asFunction()));
+        List<String> dependencies = null;
+        if (args.size() > 2 && !args.get(2).isNull()) {
+            dependencies = new ArrayList<>();
+            for (String depName : dependencyNames(args.get(2))) {
+                // Dependencies must already exist, which also rules out cycles
+                if (findStage(depName) == null) {
+                    log("Stage '" + name + "' depends on unknown stage: " + depName);
+                    return ScriptValue.bool(false);
+                }
+                dependencies.add(depName);
+            }
+        }
+
+        stages.add(new PipelineStage(name, actionVal.asFunction(), dependencies));
         log("Added stage: " + name);
         return ScriptValue.object(createSelfReference());
     }
 
+    /**
+     * Dependency names from an array of names or a comma-separated string; an empty string means none.
+     */
+    private static List<String> dependencyNames(ScriptValue deps) {
+        List<String> names = new ArrayList<>();
+        if (deps.isArray()) {
+            for (ScriptValue dep : deps.asArray()) {
+                names.add(dep.asString());
+            }
+        } else {
+            for (String dep : deps.asString().split(",")) {
+                if (!dep.trim().isEmpty()) {
+                    names.add(dep.trim());
+                }
+            }
+        }
+        return names;
+    }
+
+    private PipelineStage findStage(String name) {
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (stages.get(i).getName().equals(name)) {
+                return stages.get(i);
+            }
+        }
+        return null;
+    }
+
     private Map<String, ScriptValue> createSelfReference() {
         Map<String, ScriptValue> self = new HashMap<>();
         self.put("stage", ScriptValue.function(
-            ScriptFunction.native2("stage", this::addStage)
+            ScriptFunction.nativeN("stage", this::addStage)
         ));
         self.put("run", ScriptValue.function(
             ScriptFunction.native0("run", this::runPipeline)
@@ -114,62 +201,235 @@ public class ScriptPipeline {
         return self;
     }
 
+    /**
+     * What a stage hands to the stages reading it. Failed and skipped stages pass their input through, the way the
+     * sequential pipeline kept the last successful result. A null key means the output cannot be memoized.
+     */
+    private static final class Outcome {
+        final ScriptValue output;
+        final Long key;
+        final boolean ok;
+
+        Outcome(ScriptValue output, Long key, boolean ok) {
+            this.output = output;
+            this.key = key;
+            this.ok = ok;
+        }
+    }
+
     private ScriptValue runPipeline() {
         if (stages.isEmpty()) {
             log("No stages to run");
             return ScriptValue.bool(false);
         }
 
-        log("Starting pipeline with " + stages.size() + " stages");
+        List<PipelineStage> run = new ArrayList<>(stages);
+        log("Starting pipeline with " + run.size() + " stages");
         long startTime = System.currentTimeMillis();
-        ScriptValue lastResult = ScriptValue.NULL;
+        for (PipelineStage stage : run) {
+            stage.setStatus(PipelineStage.StageStatus.PENDING);
+            stage.setResult(null);
+            stage.setError(null);
+            stage.setCached(false);
+            stage.setExecutionTimeMs(0);
+        }
 
-        for (int i = 0; i < stages.size(); i++) {
-            PipelineStage stage = stages.get(i);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, run.size())), r -> {
+            Thread thread = new Thread(r, "ScriptPipeline-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Stages run on pool threads; they resolve the project through the caller's scope, not the application's
+        ProjectScope scope = ProjectScope.current();
+        AtomicBoolean halted = new AtomicBoolean();
+        Map<String, CompletableFuture<Outcome>> byName = new HashMap<>();
+        List<CompletableFuture<Outcome>> all = new ArrayList<>();
+        CompletableFuture<Outcome> previous = null;
+        try {
+            for (int i = 0; i < run.size(); i++) {
+                PipelineStage stage = run.get(i);
+                List<CompletableFuture<Outcome>> inputs = new ArrayList<>();
+                if (stage.getDependencies() == null) {
+                    if (previous != null) {
+                        inputs.add(previous);
+                    }
+                } else {
+                    for (String dep : stage.getDependencies()) {
+                        inputs.add(byName.get(dep));
+                    }
+                }
+                int index = i;
+                CompletableFuture<Outcome> future = CompletableFuture.allOf(inputs.toArray(new CompletableFuture[0]))
+                    .thenApplyAsync(ignored -> ProjectScope.callIn(scope,
+                        () -> runStage(stage, index, run.size(), inputs, halted)), executor);
+                byName.put(stage.getName(), future);
+                all.add(future);
+                previous = future;
+            }
+            CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
 
-            log("Running stage " + (i + 1) + "/" + stages.size() + ": " + stage.getName());
-            stage.setStatus(PipelineStage.StageStatus.RUNNING);
+        totalExecutionTimeMs = System.currentTimeMillis() - startTime;
+        log("Pipeline completed in " + totalExecutionTimeMs + "ms");
 
-            long stageStart = System.currentTimeMillis();
+        return previous.join().output;
+    }
 
-            try {
-                List<ScriptValue> args = new ArrayList<>();
-                args.add(lastResult);
-                args.add(context);
+    private Outcome runStage(PipelineStage stage, int index, int count, List<CompletableFuture<Outcome>> inputs,
+                             AtomicBoolean halted) {
+        List<Outcome> resolved = new ArrayList<>(inputs.size());
+        for (CompletableFuture<Outcome> input : inputs) {
+            resolved.add(input.join());
+        }
+        ScriptValue input = inputValue(stage, resolved);
 
-                ScriptValue result = stage.getAction().call(interpreter, args);
+        if (halted.get()) {
+            stage.setStatus(PipelineStage.StageStatus.SKIPPED);
+            return new Outcome(input, null, false);
+        }
 
-                stage.setResult(result);
+        Long key = memoKey(stage, resolved);
+        if (key != null) {
+            ScriptValue cached = cache.get(key);
+            if (cached != null) {
+                cached = copyOf(cached, new IdentityHashMap<>());
+                stage.setResult(cached);
+                stage.setCached(true);
                 stage.setStatus(PipelineStage.StageStatus.COMPLETED);
-                stage.setExecutionTimeMs(System.currentTimeMillis() - stageStart);
+                log("Stage '" + stage.getName() + "' reused its cached result");
+                return new Outcome(cached, key, true);
+            }
+        }
 
-                lastResult = result;
-                log("Stage '" + stage.getName() + "' completed in " + stage.getExecutionTimeMs() + "ms");
+        log("Running stage " + (index + 1) + "/" + count + ": " + stage.getName());
+        stage.setStatus(PipelineStage.StageStatus.RUNNING);
+        long stageStart = System.currentTimeMillis();
 
-            } catch (Exception e) {
-                stage.setStatus(PipelineStage.StageStatus.FAILED);
-                stage.setError(e.getMessage());
-                stage.setExecutionTimeMs(System.currentTimeMillis() - stageStart);
+        try {
+            List<ScriptValue> args = new ArrayList<>();
+            args.add(input);
+            args.add(context);
 
-                log("Stage '" + stage.getName() + "' failed: " + e.getMessage());
+            ScriptValue result = stage.getAction().call(interpreter, args);
 
-                if (stopOnError) {
-                    for (int j = i + 1; j < stages.size(); j++) {
-                        stages.get(j).setStatus(PipelineStage.StageStatus.SKIPPED);
-                    }
-                    break;
-                }
+            stage.setResult(result);
+            stage.setStatus(PipelineStage.StageStatus.COMPLETED);
+            stage.setExecutionTimeMs(System.currentTimeMillis() - stageStart);
+            if (key != null) {
+                cache.put(key, copyOf(result, new IdentityHashMap<>()));
+            }
+
+            log("Stage '" + stage.getName() + "' completed in " + stage.getExecutionTimeMs() + "ms");
+            return new Outcome(result, key, true);
+
+        } catch (Exception e) {
+            stage.setStatus(PipelineStage.StageStatus.FAILED);
+            stage.setError(e.getMessage());
+            stage.setExecutionTimeMs(System.currentTimeMillis() - stageStart);
+
+            log("Stage '" + stage.getName() + "' failed: " + e.getMessage());
+
+            if (stopOnError) {
+                halted.set(true);
             }
+            return new Outcome(input, null, false);
         }
+    }
 
-        totalExecutionTimeMs = System.currentTimeMillis() - startTime;
-        log("Pipeline completed in " + totalExecutionTimeMs + "ms");
+    /**
+     * {@code value} with its arrays and objects copied, deeply and keeping shared or cyclic structure; every other
+     * value (numbers, strings, functions, natives) is immutable to scripts or not ours to copy, and is returned as is.
+     */
+    private static ScriptValue copyOf(ScriptValue value, Map<Object, ScriptValue> copies) {
+        if (value.isArray()) {
+            List<ScriptValue> items = value.asArray();
+            ScriptValue done = copies.get(items);
+            if (done != null) {
+                return done;
+            }
+            List<ScriptValue> copy = new ArrayList<>(items.size());
+            ScriptValue result = ScriptValue.array(copy);
+            copies.put(items, result);
+            for (ScriptValue item : items) {
+                copy.add(copyOf(item, copies));
+            }
+            return result;
+        }
+        if (value.isObject()) {
+            Map<String, ScriptValue> props = value.asObject();
+            ScriptValue done = copies.get(props);
+            if (done != null) {
+                return done;
+            }
+            Map<String, ScriptValue> copy = new LinkedHashMap<>();
+            ScriptValue result = ScriptValue.object(copy);
+            copies.put(props, result);
+            for (Map.Entry<String, ScriptValue> e : props.entrySet()) {
+                copy.put(e.getKey(), copyOf(e.getValue(), copies));
+            }
+            return result;
+        }
+        return value;
+    }
 
-        return lastResult;
+    /**
+     * The first argument a stage receives: nothing for a root stage, the single input's output, or an object of
+     * outputs by stage name when it depends on several.
+     */
+    private static ScriptValue inputValue(PipelineStage stage, List<Outcome> inputs) {
+        if (inputs.isEmpty()) {
+            return ScriptValue.NULL;
+        }
+        if (inputs.size() == 1) {
+            return inputs.get(0).output;
+        }
+        Map<String, ScriptValue> byName = new HashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            byName.put(stage.getDependencies().get(i), inputs.get(i).output);
+        }
+        return ScriptValue.object(byName);
+    }
+
+    /**
+     * Memo key over the bytecode version, the stage's name and source, and its inputs' keys; null when memoization
+     * is off, the stage has no source hash (native functions), reads the context, or an input was not computed
+     * normally.
+     */
+    private Long memoKey(PipelineStage stage, List<Outcome> inputs) {
+        if (!memoize || !(stage.getAction() instanceof ScriptFunction.UserFunction)) {
+            return null;
+        }
+        ScriptFunction.UserFunction action = (ScriptFunction.UserFunction) stage.getAction();
+        long sourceHash = action.getSourceHash();
+        if (sourceHash == 0) {
+            return null;
+        }
+        if (action.getParameters().size() > 1) {
+            log("Stage '" + stage.getName() + "' reads the pipeline context and is not memoized");
+            return null;
+        }
+        long key = mix(projectModel != null ? projectModel.getBytecodeVersion() : 0, sourceHash);
+        key = mix(key, stage.getName().hashCode());
+        for (Outcome input : inputs) {
+            if (!input.ok || input.key == null) {
+                return null;
+            }
+            key = mix(key, input.key);
+        }
+        return key;
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
     }
 
     private ScriptValue runPipelineAsync() {
-        Thread pipelineThread = new Thread(this::runPipeline);
+        ProjectScope scope = ProjectScope.current();
+        Thread pipelineThread = new Thread(() -> ProjectScope.callIn(scope, this::runPipeline));
         pipelineThread.setName("ScriptPipeline");
         pipelineThread.start();
         return ScriptValue.bool(true);
@@ -192,6 +452,14 @@ public class ScriptPipeline {
             info.put("name", ScriptValue.string(stage.getName()));
             info.put("status", ScriptValue.string(stage.getStatus().name()));
             info.put("executionTimeMs", ScriptValue.number(stage.getExecutionTimeMs()));
+            info.put("cached", ScriptValue.bool(stage.isCached()));
+            if (stage.getDependencies() != null) {
+                List<ScriptValue> deps = new ArrayList<>();
+                for (String dep : stage.getDependencies()) {
+                    deps.add(ScriptValue.string(dep));
+                }
+                info.put("dependencies", ScriptValue.array(deps));
+            }
             if (stage.getError() != null) {
                 info.put("error", ScriptValue.string(stage.getError()));
             }
@@ -244,6 +512,16 @@ public class ScriptPipeline {
         return ScriptValue.NULL;
     }
 
+    private ScriptValue setMemoizeValue(ScriptValue val) {
+        this.memoize = val.asBoolean();
+        return ScriptValue.NULL;
+    }
+
+    private ScriptValue setParallelismValue(ScriptValue val) {
+        this.parallelism = Math.max(1, (int) val.asNumber());
+        return ScriptValue.NULL;
+    }
+
     private ScriptValue setContextValue(ScriptValue val) {
         this.context = val;
         return ScriptValue.NULL;
@@ -260,7 +538,7 @@ public class ScriptPipeline {
     }
 
     private ScriptValue createNewPipeline() {
-        ScriptPipeline newPipeline = new ScriptPipeline(interpreter);
+        ScriptPipeline newPipeline = new ScriptPipeline(interpreter, projectModel);
         newPipeline.setLogCallback(logCallback);
         return newPipeline.createPipelineObject();
     }
@@ -0,0 +1,48 @@
+package com.tonic.script.pipeline;
+
+import com.tonic.model.ProjectModel;
+import com.tonic.script.engine.ScriptValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memoized stage results for one project, shared by every pipeline that runs against it so they survive from one
+ * script run to the next. Keys are computed by {@link ScriptPipeline}; least recently used results are dropped first.
+ * <p>
+ * Cached values can reference the project (a wrapped class keeps its bridge), so the cache is held by the project
+ * itself ({@link ProjectModel#cache}) rather than in a static map keyed by it, and goes away with the project.
+ */
+final class StageCache {
+
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<Long, ScriptValue> results = new LinkedHashMap<Long, ScriptValue>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ScriptValue> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * The cache for {@code project}, or a fresh unshared one when there is no project.
+     */
+    static StageCache forProject(ProjectModel project) {
+        if (project == null) {
+            return new StageCache();
+        }
+        return project.cache(StageCache.class, StageCache::new);
+    }
+
+    synchronized ScriptValue get(long key) {
+        return results.get(key);
+    }
+
+    synchronized void put(long key, ScriptValue result) {
+        results.put(key, result);
+    }
+
+    synchronized void clear() {
+        results.clear();
+    }
+}
@@ -0,0 +1,208 @@
+package com.tonic.service;
+
+import com.tonic.analysis.source.decompile.DecompileResult;
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.DecompilationCache;
+import com.tonic.model.DecompiledSource;
+import com.tonic.model.ProjectModel;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ConstPool;
+import com.tonic.parser.constpool.ClassRefItem;
+import com.tonic.parser.constpool.Item;
+import com.tonic.util.Settings;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Decompiles classes the user is likely to open next on low-priority background threads, so the source view finds
+ * them already in the {@link DecompilationCache}. Opening a class queues its navigator neighbours (the adjacent
+ * classes of the same package, in tree order) and the user classes its constant pool references. The queue is
+ * newest-first and short: stale requests fall off the tail as the user moves on, and prefetch pauses whenever the
+ * cache is near its budget so speculative entries never evict sources the user actually viewed.
+ */
+public final class DecompilationScheduler {
+
+    private static final DecompilationScheduler INSTANCE = new DecompilationScheduler();
+
+    /** Classes queued on each side of the opened class within its package. */
+    private static final int NEIGHBOURS = 3;
+    private static final int REFERENCED = 8;
+    private static final int MAX_QUEUED = 48;
+
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    private final Set<ClassEntryModel> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile int epoch;
+
+    private DecompilationScheduler() {
+        // Leave most cores to the foreground decompile and the UI
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::workLoop, "decompile-prefetch-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+        }
+    }
+
+    public static DecompilationScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /** Queues the navigator neighbours and referenced user classes of {@code opened}. Call after it is shown. */
+    public void prefetchAround(ProjectModel project, ClassEntryModel opened) {
+        if (project == null || opened == null || !Settings.getInstance().isDecompilePrefetchEnabled()) {
+            return;
+        }
+        Set<ClassEntryModel> targets = new LinkedHashSet<>();
+        targets.addAll(neighbours(project, opened));
+        targets.addAll(referenced(project, opened));
+        targets.remove(opened);
+        // Queued in reverse so the nearest neighbour ends up at the head of the newest-first queue
+        List<ClassEntryModel> ordered = new ArrayList<>(targets);
+        Collections.reverse(ordered);
+        for (ClassEntryModel entry : ordered) {
+            enqueue(entry, null);
+        }
+    }
+
+    /**
+     * Decompiles {@code entry} ahead of every prefetch, installing the full result (spans included) if its bytecode
+     * is unchanged, then runs {@code onDone} on the EDT. Used to complete an entry restored from a disk spill.
+     */
+    public void requestNow(ClassEntryModel entry, Runnable onDone) {
+        enqueue(entry, onDone);
+    }
+
+    /** Discards every queued request, e.g. when a different project is loaded. */
+    public void cancelPending() {
+        epoch++;
+        synchronized (queued) {
+            queue.clear();
+            queued.clear();
+        }
+    }
+
+    private void enqueue(ClassEntryModel entry, Runnable onDone) {
+        synchronized (queued) {
+            if (onDone == null && !queued.add(entry)) {
+                return;
+            }
+            queue.offerFirst(new Task(entry, epoch, onDone));
+            while (queue.size() > MAX_QUEUED) {
+                Task dropped = queue.pollLast();
+                if (dropped == null) {
+                    break;
+                }
+                queued.remove(dropped.entry);
+            }
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (queued) {
+                queued.remove(task.entry);
+            }
+            try {
+                run(task);
+            } catch (RuntimeException e) {
+                // A class the decompiler cannot handle is simply left for the on-demand path
+            }
+        }
+    }
+
+    private void run(Task task) {
+        if (task.epoch != epoch) {
+            return;
+        }
+        ClassEntryModel entry = task.entry;
+        if (task.onDone == null) {
+            DecompiledSource existing = entry.getDecompiled();
+            if (existing != null || !DecompilationCache.getInstance().hasHeadroom()) {
+                return;
+            }
+        }
+        ClassFile basis = entry.getClassFile();
+        DecompileResult result = entry.decompile();
+        entry.offerDecompiled(basis, new DecompiledSource(result.getSource(),
+                result.getLineMaps(), result.getMethodSpans(), result.getFieldSpans(), result.getClassSpan()));
+        if (task.onDone != null) {
+            SwingUtilities.invokeLater(task.onDone);
+        }
+    }
+
+    private static List<ClassEntryModel> neighbours(ProjectModel project, ClassEntryModel opened) {
+        String pkg = opened.getPackageName();
+        List<ClassEntryModel> siblings = new ArrayList<>();
+        for (ClassEntryModel entry : project.getUserClasses()) {
+            if (entry.getPackageName().equals(pkg)) {
+                siblings.add(entry);
+            }
+        }
+        siblings.sort(Comparator.comparing(ClassEntryModel::getClassName));
+        int at = siblings.indexOf(opened);
+        if (at < 0) {
+            return Collections.emptyList();
+        }
+        List<ClassEntryModel> result = new ArrayList<>();
+        for (int d = 1; d <= NEIGHBOURS; d++) {
+            if (at + d < siblings.size()) {
+                result.add(siblings.get(at + d));
+            }
+            if (at - d >= 0) {
+                result.add(siblings.get(at - d));
+            }
+        }
+        return result;
+    }
+
+    private static List<ClassEntryModel> referenced(ProjectModel project, ClassEntryModel opened) {
+        List<ClassEntryModel> result = new ArrayList<>();
+        ConstPool cp = opened.getClassFile().getConstPool();
+        if (cp == null) {
+            return result;
+        }
+        List<Item<?>> items = cp.getItems();
+        for (int i = 1; i < items.size() && result.size() < REFERENCED; i++) {
+            Item<?> item = items.get(i);
+            if (!(item instanceof ClassRefItem)) {
+                continue;
+            }
+            String name = ((ClassRefItem) item).getClassName();
+            if (name == null || name.startsWith("[") || !project.isUserClass(name)) {
+                continue;
+            }
+            ClassEntryModel target = project.getClass(name);
+            if (target != null) {
+                result.add(target);
+            }
+        }
+        return result;
+    }
+
+    private static final class Task {
+        final ClassEntryModel entry;
+        final int epoch;
+        final Runnable onDone;
+
+        Task(ClassEntryModel entry, int epoch, Runnable onDone) {
+            this.entry = entry;
+            this.epoch = epoch;
+            this.onDone = onDone;
+        }
+    }
+}
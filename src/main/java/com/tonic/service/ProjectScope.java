@@ -0,0 +1,107 @@
+package com.tonic.service;
+
+import com.tonic.model.ProjectModel;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A thread-bound project context for headless work. While a scope is open on a thread, {@link ProjectService}
+ * loads into and reports the scope's project instead of the shared current project, posts no UI events, and
+ * project-bound singletons such as the VM service hand out a per-scope instance (see {@link #service}). Each batch
+ * target runs in its own scope, so parallel targets never see each other's state.
+ * <p>
+ * Scopes nest: opening one inside another shadows it until closed, and closing restores the outer scope. Always
+ * open with try-with-resources on the thread that will use it.
+ * <p>
+ * Threads do not inherit a scope. A thread started inside one (by a plugin, say) sees the shared current project
+ * unless its task is wrapped with {@link #callIn}.
+ */
+public final class ProjectScope implements AutoCloseable {
+
+    private static final ThreadLocal<ProjectScope> CURRENT = new ThreadLocal<>();
+
+    private final ProjectScope outer;
+    private final Thread owner;
+    private final Map<Class<?>, Object> services = new ConcurrentHashMap<>();
+    @Getter
+    private volatile ProjectModel project;
+    private boolean closed;
+
+    private ProjectScope(ProjectScope outer) {
+        this.outer = outer;
+        this.owner = Thread.currentThread();
+    }
+
+    /** Opens a new, empty scope on the calling thread. */
+    public static ProjectScope open() {
+        ProjectScope scope = new ProjectScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /** The innermost scope open on the calling thread, or null outside any scope. */
+    public static ProjectScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code task} on the calling thread as if {@code scope} were open there, for work a scope hands to pool
+     * threads. The thread's own scope comes back afterwards and {@code scope} stays open; a null scope runs
+     * {@code task} outside any scope.
+     */
+    public static <T> T callIn(ProjectScope scope, Supplier<T> task) {
+        ProjectScope previous = CURRENT.get();
+        bind(scope);
+        try {
+            return task.get();
+        } finally {
+            bind(previous);
+        }
+    }
+
+    private static void bind(ProjectScope scope) {
+        if (scope != null) {
+            CURRENT.set(scope);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    void setProject(ProjectModel project) {
+        this.project = project;
+    }
+
+    /** The scope's instance of {@code type}, created by {@code factory} on first use. */
+    public <T> T service(Class<T> type, Supplier<T> factory) {
+        return type.cast(services.computeIfAbsent(type, k -> factory.get()));
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != owner || CURRENT.get() != this) {
+            throw new IllegalStateException("Project scopes must be closed innermost-first on their own thread");
+        }
+        closed = true;
+        for (Object service : services.values()) {
+            if (service instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) service).close();
+                } catch (Exception ignored) {
+                    // Best effort: the scope is going away regardless
+                }
+            }
+        }
+        services.clear();
+        if (project != null) {
+            // Release the scope's classes from the shared decompilation cache
+            project.invalidateAllDecompilationCaches();
+        }
+        bind(outer);
+    }
+}
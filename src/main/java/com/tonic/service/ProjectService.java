@@ -4,15 +4,16 @@ import com.tonic.parser.ClassFile;
 import com.tonic.parser.ClassPool;
 import com.tonic.live.LiveSession;
 import com.tonic.live.protocol.LoadedClass;
+import com.tonic.event.Event;
 import com.tonic.event.EventBus;
-import com.tonic.util.Settings;
 import com.tonic.event.events.ProjectLoadedEvent;
 import com.tonic.event.events.ProjectUpdatedEvent;
 import com.tonic.event.events.StatusMessageEvent;
 import com.tonic.model.ClassEntryModel;
+import com.tonic.model.DecompilationCache;
+import com.tonic.model.LayeredClassPool;
 import com.tonic.model.ProjectModel;
 import com.tonic.model.ResourceEntryModel;
-import lombok.Getter;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -23,22 +24,22 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Stream;
 
 /**
  * Service for loading and managing projects (JARs, directories, class files).
+ * <p>
+ * Inside an open {@link ProjectScope} the "current project" is the scope's: loads land there, reads return it, and
+ * no events are posted, so headless workers can load and process projects concurrently without disturbing the UI
+ * project or each other.
  */
-@Getter
 public class ProjectService {
 
     private static final ProjectService INSTANCE = new ProjectService();
 
-    /**
-     * -- GETTER --
-     *  Get the current project.
-     */
     private ProjectModel currentProject;
 
     private ProjectService() {
@@ -48,13 +49,42 @@ public class ProjectService {
         return INSTANCE;
     }
 
+    /**
+     * Get the current project: the calling thread's {@link ProjectScope} project when one is open, otherwise the
+     * application's.
+     */
+    public ProjectModel getCurrentProject() {
+        ProjectScope scope = ProjectScope.current();
+        return scope != null ? scope.getProject() : currentProject;
+    }
+
+    private void setCurrentProject(ProjectModel project) {
+        ProjectScope scope = ProjectScope.current();
+        if (scope != null) {
+            scope.setProject(project);
+        } else {
+            if (project != currentProject) {
+                // The cache is shared by every project: the outgoing one's sources and spill files are dead weight
+                DecompilationCache.getInstance().clear();
+            }
+            currentProject = project;
+        }
+    }
+
+    /** Posts to the application event bus; suppressed inside a {@link ProjectScope}, which has no UI to notify. */
+    private void post(Event event) {
+        if (ProjectScope.current() == null) {
+            EventBus.getInstance().post(event);
+        }
+    }
+
     /**
      * Create a new empty project.
      */
     public ProjectModel createProject(String name) {
         ProjectModel project = new ProjectModel();
         project.setProjectName(name);
-        this.currentProject = project;
+        setCurrentProject(project);
         return project;
     }
 
@@ -67,7 +97,7 @@ public class ProjectService {
         }
 
         String name = jarFile.getName();
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Loading " + name + "..."));
+        post(new StatusMessageEvent(this, "Loading " + name + "..."));
 
         List<ClassFile> classes = new ArrayList<>();
 
@@ -137,15 +167,15 @@ public class ProjectService {
             project.addResource(resource);
         }
 
-        this.currentProject = project;
+        setCurrentProject(project);
 
         String message = "Loaded " + classes.size() + " classes";
         if (!resources.isEmpty()) {
             message += ", " + resources.size() + " resources";
         }
         message += " from " + name;
-        EventBus.getInstance().post(new StatusMessageEvent(this, message));
-        EventBus.getInstance().post(new ProjectLoadedEvent(this, project));
+        post(new StatusMessageEvent(this, message));
+        post(new ProjectLoadedEvent(this, project));
 
         return project;
     }
@@ -169,11 +199,11 @@ public class ProjectService {
         project.setClassPool(pool);
         project.addClass(cf);
 
-        this.currentProject = project;
+        setCurrentProject(project);
 
-        EventBus.getInstance().post(new StatusMessageEvent(this,
+        post(new StatusMessageEvent(this,
                 "Loaded " + cf.getClassName()));
-        EventBus.getInstance().post(new ProjectLoadedEvent(this, project));
+        post(new ProjectLoadedEvent(this, project));
 
         return project;
     }
@@ -186,7 +216,7 @@ public class ProjectService {
             throw new IOException("Not a valid directory: " + directory.getAbsolutePath());
         }
 
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Loading " + directory.getName() + "..."));
+        post(new StatusMessageEvent(this, "Loading " + directory.getName() + "..."));
 
         List<Path> classPaths = new ArrayList<>();
         try (Stream<Path> paths = Files.walk(directory.toPath())) {
@@ -224,11 +254,11 @@ public class ProjectService {
             project.addClass(cf);
         }
 
-        this.currentProject = project;
+        setCurrentProject(project);
 
-        EventBus.getInstance().post(new StatusMessageEvent(this,
+        post(new StatusMessageEvent(this,
                 "Loaded " + classes.size() + " classes from " + directory.getName()));
-        EventBus.getInstance().post(new ProjectLoadedEvent(this, project));
+        post(new ProjectLoadedEvent(this, project));
 
         return project;
     }
@@ -241,12 +271,12 @@ public class ProjectService {
             throw new IOException("File not found: " + jarFile.getAbsolutePath());
         }
 
-        if (currentProject == null) {
+        if (getCurrentProject() == null) {
             loadJar(jarFile, progress);
-            return currentProject.getClassCount();
+            return getCurrentProject().getClassCount();
         }
 
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Appending " + jarFile.getName() + "..."));
+        post(new StatusMessageEvent(this, "Appending " + jarFile.getName() + "..."));
 
         int addedClassCount = 0;
         int addedResourceCount = 0;
@@ -274,7 +304,7 @@ public class ProjectService {
             for (JarEntry entry : classEntries) {
                 try (InputStream is = jar.getInputStream(entry)) {
                     ClassFile cf = new ClassFile(is);
-                    currentProject.addClass(cf);
+                    getCurrentProject().addClass(cf);
                     addedClassCount++;
                 } catch (Exception e) {
                     ConsoleLogService.getInstance().error("Failed to load class: " + entry.getName() + " - " + e.getMessage());
@@ -288,7 +318,7 @@ public class ProjectService {
             for (JarEntry entry : resourceEntries) {
                 try (InputStream is = jar.getInputStream(entry)) {
                     byte[] data = is.readAllBytes();
-                    currentProject.addResource(new ResourceEntryModel(entry.getName(), data));
+                    getCurrentProject().addResource(new ResourceEntryModel(entry.getName(), data));
                     addedResourceCount++;
                 } catch (Exception e) {
                     ConsoleLogService.getInstance().error("Failed to load resource: " + entry.getName() + " - " + e.getMessage());
@@ -305,8 +335,8 @@ public class ProjectService {
             message += ", " + addedResourceCount + " resources";
         }
         message += " from " + jarFile.getName();
-        EventBus.getInstance().post(new StatusMessageEvent(this, message));
-        EventBus.getInstance().post(new ProjectUpdatedEvent(this, currentProject, addedClassCount));
+        post(new StatusMessageEvent(this, message));
+        post(new ProjectUpdatedEvent(this, getCurrentProject(), addedClassCount));
 
         return addedClassCount;
     }
@@ -319,7 +349,7 @@ public class ProjectService {
             throw new IOException("File not found: " + classFile.getAbsolutePath());
         }
 
-        if (currentProject == null) {
+        if (getCurrentProject() == null) {
             loadClassFile(classFile);
             return 1;
         }
@@ -327,10 +357,10 @@ public class ProjectService {
         byte[] data = Files.readAllBytes(classFile.toPath());
         ClassFile cf = new ClassFile(new ByteArrayInputStream(data));
 
-        currentProject.addClass(cf);
+        getCurrentProject().addClass(cf);
 
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Appended " + cf.getClassName()));
-        EventBus.getInstance().post(new ProjectUpdatedEvent(this, currentProject, 1));
+        post(new StatusMessageEvent(this, "Appended " + cf.getClassName()));
+        post(new ProjectUpdatedEvent(this, getCurrentProject(), 1));
 
         return 1;
     }
@@ -343,12 +373,12 @@ public class ProjectService {
             throw new IOException("Not a valid directory: " + directory.getAbsolutePath());
         }
 
-        if (currentProject == null) {
+        if (getCurrentProject() == null) {
             loadDirectory(directory, progress);
-            return currentProject.getClassCount();
+            return getCurrentProject().getClassCount();
         }
 
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Appending " + directory.getName() + "..."));
+        post(new StatusMessageEvent(this, "Appending " + directory.getName() + "..."));
 
         List<Path> classPaths = new ArrayList<>();
         try (Stream<Path> paths = Files.walk(directory.toPath())) {
@@ -364,7 +394,7 @@ public class ProjectService {
             try {
                 byte[] data = Files.readAllBytes(path);
                 ClassFile cf = new ClassFile(new ByteArrayInputStream(data));
-                currentProject.addClass(cf);
+                getCurrentProject().addClass(cf);
                 addedCount++;
             } catch (Exception e) {
                 ConsoleLogService.getInstance().error("Failed to load class: " + path + " - " + e.getMessage());
@@ -376,9 +406,9 @@ public class ProjectService {
             }
         }
 
-        EventBus.getInstance().post(new StatusMessageEvent(this,
+        post(new StatusMessageEvent(this,
                 "Appended " + addedCount + " classes from " + directory.getName()));
-        EventBus.getInstance().post(new ProjectUpdatedEvent(this, currentProject, addedCount));
+        post(new ProjectUpdatedEvent(this, getCurrentProject(), addedCount));
 
         return addedCount;
     }
@@ -392,7 +422,7 @@ public class ProjectService {
                                         ProgressCallback progress) throws IOException {
         closeProject();
         String name = "live:" + session.getPid();
-        EventBus.getInstance().post(new StatusMessageEvent(this, "Enumerating classes in " + name + "..."));
+        post(new StatusMessageEvent(this, "Enumerating classes in " + name + "..."));
 
         List<LoadedClass> all = session.enumerateClasses();
         List<LoadedClass> wanted = new ArrayList<>();
@@ -426,10 +456,10 @@ public class ProjectService {
             }
         }
 
-        this.currentProject = project;
-        EventBus.getInstance().post(new StatusMessageEvent(this,
+        setCurrentProject(project);
+        post(new StatusMessageEvent(this,
                 "Attached to " + name + " - pulled " + loaded + "/" + total + " classes"));
-        EventBus.getInstance().post(new ProjectLoadedEvent(this, project));
+        post(new ProjectLoadedEvent(this, project));
         return project;
     }
 
@@ -439,7 +469,7 @@ public class ProjectService {
      */
     public int refreshLiveProject(LiveSession session, boolean includeJdk,
                                   ProgressCallback progress) throws IOException {
-        if (currentProject == null) {
+        if (getCurrentProject() == null) {
             return 0;
         }
         List<LoadedClass> all = session.enumerateClasses();
@@ -451,7 +481,7 @@ public class ProjectService {
             if (!includeJdk && isBootstrapName(lc.getInternalName())) {
                 continue;
             }
-            if (currentProject.getClass(lc.getInternalName()) == null) {
+            if (getCurrentProject().getClass(lc.getInternalName()) == null) {
                 missing.add(lc);
             }
         }
@@ -461,7 +491,7 @@ public class ProjectService {
         for (LoadedClass lc : missing) {
             try {
                 byte[] data = session.fetchClassBytes(lc.getInternalName());
-                currentProject.addClass(new ClassFile(new ByteArrayInputStream(data)));
+                getCurrentProject().addClass(new ClassFile(new ByteArrayInputStream(data)));
                 added++;
             } catch (Exception e) {
                 ConsoleLogService.getInstance().error("Failed to refresh live class " + lc.getInternalName() + ": " + e.getMessage());
@@ -472,7 +502,7 @@ public class ProjectService {
             }
         }
         if (added > 0) {
-            EventBus.getInstance().post(new ProjectUpdatedEvent(this, currentProject, added));
+            post(new ProjectUpdatedEvent(this, getCurrentProject(), added));
         }
         return added;
     }
@@ -482,22 +512,57 @@ public class ProjectService {
      * No-op if there is no project or the class is already present. Returns the added entry, or null.
      */
     public ClassEntryModel addCapturedLiveClass(String internalName, byte[] classBytes) {
-        if (currentProject == null || classBytes == null || classBytes.length == 0) {
+        if (getCurrentProject() == null || classBytes == null || classBytes.length == 0) {
             return null;
         }
+        ClassEntryModel entry = addCaptured(internalName, classBytes, null);
+        if (entry != null) {
+            post(new ProjectUpdatedEvent(this, getCurrentProject(), 1));
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a batch of runtime-captured classes (internal name to bytes, in load order) into the current live
+     * project with a single update for the whole batch. A null value is a class the agent spilled without its
+     * bytes; those are fetched from {@code session}. Returns the entries added.
+     */
+    public List<ClassEntryModel> addCapturedLiveClasses(LiveSession session, Map<String, byte[]> classes) {
+        List<ClassEntryModel> added = new ArrayList<>();
+        if (getCurrentProject() == null) {
+            return added;
+        }
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            ClassEntryModel entry = addCaptured(e.getKey(), e.getValue(), session);
+            if (entry != null) {
+                added.add(entry);
+            }
+        }
+        if (!added.isEmpty()) {
+            post(new ProjectUpdatedEvent(this, getCurrentProject(), added.size()));
+        }
+        return added;
+    }
+
+    private ClassEntryModel addCaptured(String internalName, byte[] classBytes, LiveSession session) {
         // Skip JVM-internal noise (e.g. jdk/internal/reflect/GeneratedMethodAccessor* synthesized when a
         // static is invoked reflectively through the agent, and hidden lambda/proxy bodies); only application
         // classes belong in the tree.
         if (isBootstrapName(internalName) || isHiddenClass(internalName)) {
             return null;
         }
-        if (currentProject.getClass(internalName) != null) {
+        if (getCurrentProject().getClass(internalName) != null) {
             return null;
         }
         try {
-            ClassEntryModel entry = currentProject.addClass(new ClassFile(new ByteArrayInputStream(classBytes)));
-            EventBus.getInstance().post(new ProjectUpdatedEvent(this, currentProject, 1));
-            return entry;
+            byte[] data = classBytes;
+            if ((data == null || data.length == 0) && session != null) {
+                data = session.fetchClassBytes(internalName);
+            }
+            if (data == null || data.length == 0) {
+                return null;
+            }
+            return getCurrentProject().addClass(new ClassFile(new ByteArrayInputStream(data)));
         } catch (IOException e) {
             ConsoleLogService.getInstance().error("Failed to add captured class " + internalName + ": " + e.getMessage());
             return null;
@@ -524,9 +589,10 @@ public class ProjectService {
      * Close the current project.
      */
     public void closeProject() {
-        if (currentProject != null) {
-            currentProject.clear();
-            currentProject = null;
+        ProjectModel project = getCurrentProject();
+        if (project != null) {
+            project.clear();
+            setCurrentProject(null);
         }
     }
 
@@ -534,23 +600,16 @@ public class ProjectService {
      * Check if there is a project open.
      */
     public boolean hasProject() {
-        return currentProject != null && currentProject.getClassCount() > 0;
+        ProjectModel project = getCurrentProject();
+        return project != null && project.getClassCount() > 0;
     }
 
     /**
-     * Create a class pool, optionally with JDK classes loaded.
-     * When JDK classes are loaded, recursive execution can step into JDK methods.
+     * Create a class pool, optionally layered over the shared JDK classes.
+     * When JDK classes are available, recursive execution can step into JDK methods.
      */
     private ClassPool createClassPoolWithJdk() {
-        if (!Settings.getInstance().isLoadJdkClassesEnabled()) {
-            return new ClassPool(true);
-        }
-        try {
-            return new ClassPool();
-        } catch (IOException e) {
-            ConsoleLogService.getInstance().warn("Failed to load JDK classes, falling back to empty pool: " + e.getMessage());
-            return new ClassPool(true);
-        }
+        return LayeredClassPool.create();
     }
 
     /**
@@ -4,16 +4,27 @@ import com.tonic.analysis.xref.Xref;
 import com.tonic.analysis.xref.XrefBuilder;
 import com.tonic.analysis.xref.XrefDatabase;
 import com.tonic.event.events.FindUsagesEvent;
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.FieldEntryModel;
+import com.tonic.model.MethodEntryModel;
 import com.tonic.model.ProjectModel;
+import com.tonic.model.UsageCountIndex;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ConstPool;
+import com.tonic.parser.constpool.ClassRefItem;
+import com.tonic.parser.constpool.Item;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Shared access point for the project's cross-reference database: lazy building and the
  * user-class-filtered usage queries. Both the Find Usages results panel and the editor's
- * usage-count lenses go through here, so their numbers always agree.
+ * usage-count lenses go through here, so their numbers always agree. Lenses read precomputed
+ * per-class counts from the project's {@link UsageCountIndex} rather than filtering lists.
  */
 public final class XrefQueryService {
 
@@ -62,18 +73,82 @@ public final class XrefQueryService {
         boolean classQuery = targetType == FindUsagesEvent.TargetType.CLASS;
         List<Xref> filtered = new ArrayList<>();
         for (Xref xref : results) {
-            if (!project.isUserClass(xref.getSourceClass()) || xref.getSourceMethod() == null) {
-                continue;
+            if (isCounted(project, xref, classQuery)) {
+                filtered.add(xref);
             }
-            // A class query indexes every ref whose target class matches, including reads/writes/calls
-            // of the class's own members (e.g. an internal `this.field = ...`). Those are member usages,
-            // not type usages, so a class search keeps only references to the class as a type
-            // (new/cast/instanceof/type positions, which carry no target member).
-            if (classQuery && xref.getTargetMember() != null) {
-                continue;
-            }
-            filtered.add(xref);
         }
         return filtered;
     }
+
+    /**
+     * Usage counts for a class and its declared members, with the same filtering as {@link #getUsages}. Served
+     * from the project's {@link UsageCountIndex} when cached; otherwise counted in one pass over the class's refs
+     * (building the database first if needed, so call off the EDT) and cached.
+     */
+    public static UsageCountIndex.ClassCounts getUsageCounts(ProjectModel project, ClassEntryModel classEntry) {
+        UsageCountIndex index = project.getUsageCounts();
+        String className = classEntry.getClassName();
+        UsageCountIndex.ClassCounts cached = index.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = index.stamp();
+        XrefDatabase db = ensureDatabase(project);
+
+        UsageCountIndex.ClassCounts.Builder builder = UsageCountIndex.ClassCounts.builder();
+        for (MethodEntryModel method : classEntry.getMethods()) {
+            for (Xref xref : db.getRefsToMethod(className, method.getName(), method.getDescriptor())) {
+                if (isCounted(project, xref, false)) {
+                    builder.methodRef(method.getName(), method.getDescriptor(), xref.getSourceClass());
+                }
+            }
+        }
+        for (FieldEntryModel field : classEntry.getFields()) {
+            for (Xref xref : db.getRefsToField(className, field.getName(), field.getDescriptor())) {
+                if (isCounted(project, xref, false)) {
+                    builder.fieldRef(field.getName(), field.getDescriptor(), xref.getSourceClass());
+                }
+            }
+        }
+        for (Xref xref : db.getRefsToClass(className)) {
+            if (isCounted(project, xref, true)) {
+                builder.classRef(xref.getSourceClass());
+            }
+        }
+        UsageCountIndex.ClassCounts counts = builder.build();
+        index.put(className, counts, stamp);
+        return counts;
+    }
+
+    /**
+     * Records that {@code edited} replaced its class's bytecode: drops the stale xref database and only the usage
+     * counts the edit can affect - the class itself, classes it referenced before, and classes named in its new
+     * constant pool. Counts for unrelated classes survive the next database rebuild untouched.
+     */
+    public static void classEdited(ProjectModel project, ClassFile edited) {
+        project.setXrefDatabase(null);
+        Set<String> referenced = new HashSet<>();
+        ConstPool cp = edited.getConstPool();
+        if (cp != null) {
+            List<Item<?>> items = cp.getItems();
+            for (int i = 1; i < items.size(); i++) {
+                Item<?> item = items.get(i);
+                if (item instanceof ClassRefItem) {
+                    referenced.add(((ClassRefItem) item).getClassName());
+                }
+            }
+        }
+        project.getUsageCounts().invalidateEditedClass(edited.getClassName(), referenced);
+    }
+
+    private static boolean isCounted(ProjectModel project, Xref xref, boolean classQuery) {
+        if (!project.isUserClass(xref.getSourceClass()) || xref.getSourceMethod() == null) {
+            return false;
+        }
+        // A class query indexes every ref whose target class matches, including reads/writes/calls
+        // of the class's own members (e.g. an internal `this.field = ...`). Those are member usages,
+        // not type usages, so a class search keeps only references to the class as a type
+        // (new/cast/instanceof/type positions, which carry no target member).
+        return !classQuery || xref.getTargetMember() == null;
+    }
 }
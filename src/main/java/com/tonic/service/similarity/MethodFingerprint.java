@@ -0,0 +1,228 @@
+package com.tonic.service.similarity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A method's compact similarity profile: hashes of its raw bytecode and of its opcode sequence, a few structural
+ * counts, and a MinHash signature over its opcode trigrams (plus coarse structural tokens). Two signatures agree in
+ * roughly the fraction of positions equal to the Jaccard similarity of the underlying trigram sets, which is what
+ * lets {@link MethodSimilarityIndex} find similar methods by bucketing instead of comparing every pair.
+ */
+@Getter
+public final class MethodFingerprint {
+
+    static final int SIGNATURE_LENGTH = 64;
+
+    private static final long[] SEEDS = new long[SIGNATURE_LENGTH];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final String className;
+    private final String methodName;
+    private final String descriptor;
+    /** Hash of the raw code bytes; equal only for byte-identical bodies. */
+    private final long codeHash;
+    /** Hash of the opcode sequence alone, ignoring operands (constant-pool indices, locals, branch offsets). */
+    private final long opcodeHash;
+    private final int instructionCount;
+    private final int branchCount;
+    private final int callCount;
+    @Getter(AccessLevel.NONE)
+    private final int[] signature;
+
+    MethodFingerprint(String className, String methodName, String descriptor, long codeHash, long opcodeHash,
+                      int instructionCount, int branchCount, int callCount, int[] signature) {
+        this.className = className;
+        this.methodName = methodName;
+        this.descriptor = descriptor;
+        this.codeHash = codeHash;
+        this.opcodeHash = opcodeHash;
+        this.instructionCount = instructionCount;
+        this.branchCount = branchCount;
+        this.callCount = callCount;
+        this.signature = signature;
+    }
+
+    /** Fingerprints a method from its code bytes. */
+    public static MethodFingerprint of(String className, String methodName, String descriptor, byte[] code) {
+        int[] opcodes = new int[code.length];
+        int n = 0;
+        int branches = 0;
+        int calls = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int op = Byte.toUnsignedInt(code[pc]);
+            opcodes[n++] = op;
+            if (isBranch(op)) {
+                branches++;
+            } else if (op >= 0xB6 && op <= 0xBA) {
+                calls++;
+            }
+            pc += Math.max(1, instructionLength(code, pc, op));
+        }
+
+        long opcodeHash = 1;
+        for (int i = 0; i < n; i++) {
+            opcodeHash = opcodeHash * 31 + opcodes[i];
+        }
+        opcodeHash = mix(opcodeHash);
+
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        if (n < 3) {
+            long shingle = 0;
+            for (int i = 0; i < n; i++) {
+                shingle = (shingle << 8) | opcodes[i];
+            }
+            addShingle(signature, shingle);
+        } else {
+            for (int i = 0; i + 2 < n; i++) {
+                addShingle(signature, ((long) opcodes[i] << 16) | (opcodes[i + 1] << 8) | opcodes[i + 2]);
+            }
+        }
+        // Coarse shape tokens, tagged above the trigram range, so bodies of similar size and branching lean together
+        addShingle(signature, (1L << 40) | log2Bucket(n));
+        addShingle(signature, (2L << 40) | log2Bucket(branches));
+        addShingle(signature, (3L << 40) | log2Bucket(calls));
+
+        return new MethodFingerprint(className, methodName, descriptor, hashBytes(code), opcodeHash,
+                n, branches, calls, signature);
+    }
+
+    /** Hash of raw code bytes, used to decide whether a stored fingerprint is still current. */
+    static long hashBytes(byte[] code) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : code) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return mix(h ^ code.length);
+    }
+
+    /** MinHash estimate of the opcode-trigram Jaccard similarity. */
+    public double estimateOpcodeSimilarity(MethodFingerprint other) {
+        int agree = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (signature[i] == other.signature[i]) {
+                agree++;
+            }
+        }
+        return agree / (double) SIGNATURE_LENGTH;
+    }
+
+    /** Agreement of instruction, branch and call counts, 1.0 when all three match. */
+    public double structuralSimilarity(MethodFingerprint other) {
+        return (ratio(instructionCount, other.instructionCount)
+                + ratio(branchCount, other.branchCount)
+                + ratio(callCount, other.callCount)) / 3.0;
+    }
+
+    /** Hash of signature rows {@code [from, from + rows)}: one LSH band key. */
+    long bandKey(int from, int rows) {
+        long h = from;
+        for (int i = from; i < from + rows; i++) {
+            h = h * 0x100000001B3L + signature[i];
+        }
+        return mix(h);
+    }
+
+    int signatureAt(int i) {
+        return signature[i];
+    }
+
+    public String getKey() {
+        return className + "." + methodName + descriptor;
+    }
+
+    public String getDisplayName() {
+        int slash = className.lastIndexOf('/');
+        return (slash >= 0 ? className.substring(slash + 1) : className) + "." + methodName;
+    }
+
+    public String getFullReference() {
+        return className.replace('/', '.') + "." + methodName + descriptor;
+    }
+
+    private static void addShingle(int[] signature, long shingle) {
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            int h = (int) (mix(shingle ^ SEEDS[i]) >>> 32);
+            if (h < signature[i]) {
+                signature[i] = h;
+            }
+        }
+    }
+
+    private static double ratio(int a, int b) {
+        if (a == b) {
+            return 1.0;
+        }
+        return Math.min(a, b) / (double) Math.max(a, b);
+    }
+
+    private static int log2Bucket(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static boolean isBranch(int op) {
+        return (op >= 0x99 && op <= 0xA8) || op == 0xAA || op == 0xAB || op == 0xC6 || op == 0xC7
+                || op == 0xC8 || op == 0xC9;
+    }
+
+    /** Length in bytes of the instruction at {@code pc}, including its operands. */
+    static int instructionLength(byte[] code, int pc, int op) {
+        switch (op) {
+            case 0x10: case 0x12: case 0x15: case 0x16: case 0x17: case 0x18: case 0x19:
+            case 0x36: case 0x37: case 0x38: case 0x39: case 0x3A: case 0xA9: case 0xBC:
+                return 2;
+            case 0x11: case 0x13: case 0x14: case 0x84: case 0xB2: case 0xB3: case 0xB4: case 0xB5:
+            case 0xB6: case 0xB7: case 0xB8: case 0xBB: case 0xBD: case 0xC0: case 0xC1: case 0xC6: case 0xC7:
+                return 3;
+            case 0xC5:
+                return 4;
+            case 0xB9: case 0xBA: case 0xC8: case 0xC9:
+                return 5;
+            case 0xC4:
+                return pc + 1 < code.length && Byte.toUnsignedInt(code[pc + 1]) == 0x84 ? 6 : 4;
+            case 0xAA: {
+                int at = pc + 1 + ((4 - ((pc + 1) % 4)) % 4);
+                if (at + 12 > code.length) {
+                    return code.length - pc;
+                }
+                long count = (long) readInt(code, at + 8) - readInt(code, at + 4) + 1;
+                return (int) Math.min(code.length - pc, at - pc + 12 + count * 4);
+            }
+            case 0xAB: {
+                int at = pc + 1 + ((4 - ((pc + 1) % 4)) % 4);
+                if (at + 8 > code.length) {
+                    return code.length - pc;
+                }
+                long pairs = readInt(code, at + 4);
+                return (int) Math.min(code.length - pc, at - pc + 8 + pairs * 8);
+            }
+            default:
+                if (op >= 0x99 && op <= 0xA8) {
+                    return 3;
+                }
+                return 1;
+        }
+    }
+
+    private static int readInt(byte[] code, int at) {
+        return ((code[at] & 0xFF) << 24) | ((code[at + 1] & 0xFF) << 16)
+                | ((code[at + 2] & 0xFF) << 8) | (code[at + 3] & 0xFF);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
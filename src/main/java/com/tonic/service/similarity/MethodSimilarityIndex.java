@@ -0,0 +1,430 @@
+package com.tonic.service.similarity;
+
+import com.tonic.analysis.similarity.SimilarityMetric;
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.ProjectModel;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.MethodEntry;
+import com.tonic.parser.attribute.CodeAttribute;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Locality-sensitive index over every user method's {@link MethodFingerprint}. Opcode and combined queries split the
+ * MinHash signatures into bands and only score pairs that share a band bucket, so the cost grows with the number of
+ * methods and actual matches rather than with every pair of methods. Structural queries compare method shapes
+ * (instruction, branch and call counts) within the count window the threshold allows, capped at
+ * {@link #MIN_SIZE_RATIO}. Exact-copy and renamed-copy
+ * queries are plain hash groupings.
+ * <p>
+ * Fingerprints are keyed by method and carry a hash of the method's code, so {@link #update} recomputes only methods
+ * whose bytecode changed. The index is saved per project under {@code ~/.jstudio/cache} and reloaded on the next
+ * build, which makes reopening a large jar cost one hash per method.
+ */
+public final class MethodSimilarityIndex {
+
+    /** Methods shorter than this (getters, setters, trivial bridges) are too common to be meaningful matches. */
+    static final int MIN_INSTRUCTIONS = 5;
+    /**
+     * A band bucket larger than this is split by the signature's next band, so only members that also agree there are
+     * paired. A group that cannot be split further (identical signatures, code hashes or shapes) is a cluster of
+     * near-identical methods: its members are chained to their next {@link #CHAIN} neighbours instead of paired
+     * exhaustively, which still reports the cluster without quadratic output. The methods affected are counted in
+     * {@link #getTruncatedMethodCount()}.
+     */
+    private static final int MAX_BUCKET = 256;
+    /**
+     * Smallest instruction-count ratio at which two shapes are compared for the structural metric. The threshold alone
+     * allows a ratio of {@code 3 * threshold - 2}, which reaches zero at 2/3: two methods with no branches or calls
+     * score at least 2/3 whatever their sizes, so lower thresholds would compare every pair of shapes. Below a
+     * threshold of 0.8, structural queries therefore only pair methods within 2.5x of each other's size.
+     */
+    static final double MIN_SIZE_RATIO = 0.4;
+    private static final int CHAIN = 8;
+    private static final int FILE_MAGIC = 0x4A534958;
+    private static final int FILE_FORMAT = 1;
+
+    private final Map<String, MethodFingerprint> byKey = new ConcurrentHashMap<>();
+    private volatile int truncatedMethodCount;
+
+    public int getMethodCount() {
+        return byKey.size();
+    }
+
+    /**
+     * Methods the most recent query compared with only their nearest neighbours because they belong to a cluster too
+     * large to pair exhaustively. Zero means the query considered every candidate pair.
+     */
+    public int getTruncatedMethodCount() {
+        return truncatedMethodCount;
+    }
+
+    /**
+     * Brings the index up to date with {@code project}'s user classes, fingerprinting (in parallel) only methods that
+     * are new or whose code changed, and dropping methods that no longer exist. Returns the number recomputed.
+     */
+    public int update(ProjectModel project, Consumer<String> progress) {
+        List<ClassEntryModel> classes = project.getUserClasses();
+        Set<String> live = ConcurrentHashMap.newKeySet();
+        AtomicInteger recomputed = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        classes.parallelStream().forEach(entry -> {
+            recomputed.addAndGet(updateClass(entry.getClassFile(), live));
+            int n = done.incrementAndGet();
+            if (progress != null && n % 500 == 0) {
+                progress.accept("Fingerprinting methods: " + n + "/" + classes.size() + " classes");
+            }
+        });
+        byKey.keySet().retainAll(live);
+        return recomputed.get();
+    }
+
+    private int updateClass(ClassFile classFile, Set<String> live) {
+        int recomputed = 0;
+        for (MethodEntry method : classFile.getMethods()) {
+            CodeAttribute code = method.getCodeAttribute();
+            if (code == null || code.getCode() == null || code.getCode().length == 0) {
+                continue;
+            }
+            byte[] bytes = code.getCode();
+            String key = classFile.getClassName() + "." + method.getName() + method.getDesc();
+            live.add(key);
+            MethodFingerprint existing = byKey.get(key);
+            if (existing != null && existing.getCodeHash() == MethodFingerprint.hashBytes(bytes)) {
+                continue;
+            }
+            byKey.put(key, MethodFingerprint.of(classFile.getClassName(), method.getName(), method.getDesc(), bytes));
+            recomputed++;
+        }
+        return recomputed;
+    }
+
+    /** Adds or replaces {@code fp}'s method. */
+    void add(MethodFingerprint fp) {
+        byKey.put(fp.getKey(), fp);
+    }
+
+    /** Pairs of methods scoring at least {@code threshold} on {@code metric}, best first. */
+    public List<SimilarPair> findSimilar(SimilarityMetric metric, double threshold, Consumer<String> progress) {
+        List<MethodFingerprint> methods = eligible();
+        Set<Integer> truncated = ConcurrentHashMap.newKeySet();
+        Set<Long> candidates;
+        switch (metric) {
+            case EXACT_BYTECODE:
+                candidates = grouped(methods, MethodFingerprint::getCodeHash, truncated);
+                break;
+            case STRUCTURAL:
+                candidates = structuralCandidates(methods, threshold, truncated);
+                break;
+            case OPCODE_SEQUENCE:
+                candidates = bandCandidates(methods, threshold, truncated, progress);
+                break;
+            default:
+                // Combined is 0.7 opcode + 0.3 structural: a pair reaching the threshold has at least this opcode score
+                candidates = bandCandidates(methods, (threshold - 0.3) / 0.7, truncated, progress);
+                break;
+        }
+        truncatedMethodCount = truncated.size();
+
+        if (progress != null) {
+            progress.accept("Scoring " + candidates.size() + " candidate pairs...");
+        }
+        return candidates.parallelStream()
+                .map(pair -> new SimilarPair(methods.get((int) (pair >>> 32)), methods.get((int) (long) pair), metric))
+                .filter(p -> p.getScore() >= threshold)
+                .sorted(Comparator.comparingDouble((SimilarPair p) -> p.getScore()).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /** Pairs sharing a MinHash band bucket: candidates for an opcode-trigram similarity of {@code threshold}. */
+    private static Set<Long> bandCandidates(List<MethodFingerprint> methods, double threshold, Set<Integer> truncated,
+                                            Consumer<String> progress) {
+        int rows = rowsFor(threshold);
+        int bands = MethodFingerprint.SIGNATURE_LENGTH / rows;
+        if (progress != null) {
+            progress.accept("Bucketing " + methods.size() + " methods (" + bands + " bands of " + rows + ")...");
+        }
+
+        Set<Long> candidates = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < methods.size(); i++) {
+                buckets.computeIfAbsent(methods.get(i).bandKey(band * rows, rows), k -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> bucket : buckets.values()) {
+                addBandPairs(methods, bucket, band, 1, rows, bands, candidates, truncated);
+            }
+        });
+        return candidates;
+    }
+
+    /**
+     * Pairs within a band bucket. An oversized bucket is regrouped by the band {@code depth} places after
+     * {@code band}, until its groups are small enough to pair exhaustively or every band has been used.
+     */
+    private static void addBandPairs(List<MethodFingerprint> methods, List<Integer> bucket, int band, int depth,
+                                     int rows, int bands, Set<Long> out, Set<Integer> truncated) {
+        if (bucket.size() <= MAX_BUCKET || depth >= bands) {
+            addPairs(bucket, out, truncated);
+            return;
+        }
+        int next = (band + depth) % bands;
+        Map<Long, List<Integer>> split = new HashMap<>();
+        for (int i : bucket) {
+            split.computeIfAbsent(methods.get(i).bandKey(next * rows, rows), k -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> group : split.values()) {
+            addBandPairs(methods, group, band, depth + 1, rows, bands, out, truncated);
+        }
+    }
+
+    /**
+     * Candidates for the structural metric, which the MinHash signatures say nothing about. Methods are grouped by
+     * shape (instruction, branch and call counts), and every pair within a shape scores 1.0. The score averages
+     * three count ratios, so two shapes can only reach {@code threshold} if their instruction counts are within a
+     * ratio of {@code 3 * threshold - 2}. Shapes sorted by instruction count are therefore compared only within
+     * that window, which is never wider than {@link #MIN_SIZE_RATIO}.
+     */
+    static Set<Long> structuralCandidates(List<MethodFingerprint> methods, double threshold,
+                                                  Set<Integer> truncated) {
+        Map<List<Integer>, List<Integer>> byShape = new HashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            MethodFingerprint fp = methods.get(i);
+            byShape.computeIfAbsent(Arrays.asList(fp.getInstructionCount(), fp.getBranchCount(), fp.getCallCount()),
+                    k -> new ArrayList<>()).add(i);
+        }
+        List<List<Integer>> shapes = new ArrayList<>(byShape.values());
+        shapes.sort(Comparator.comparingInt(shape -> methods.get(shape.get(0)).getInstructionCount()));
+        double minRatio = Math.max(3 * threshold - 2, MIN_SIZE_RATIO);
+
+        Set<Long> candidates = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, shapes.size()).parallel().forEach(i -> {
+            List<Integer> shape = shapes.get(i);
+            MethodFingerprint a = methods.get(shape.get(0));
+            addPairs(shape, candidates, truncated);
+            for (int j = i + 1; j < shapes.size(); j++) {
+                MethodFingerprint b = methods.get(shapes.get(j).get(0));
+                if (a.getInstructionCount() < minRatio * b.getInstructionCount()) {
+                    break;
+                }
+                if (a.structuralSimilarity(b) >= threshold) {
+                    addCrossPairs(shape, shapes.get(j), candidates, truncated);
+                }
+            }
+        });
+        return candidates;
+    }
+
+    /** Exact and near duplicates: a combined score of at least 95%. */
+    public List<SimilarPair> findDuplicates() {
+        return findSimilar(SimilarityMetric.COMBINED, 0.95, null);
+    }
+
+    /**
+     * Methods with identical instruction sequences but different names: copies that were renamed, typically by an
+     * obfuscator. Operands may differ, since renaming changes constant-pool indices.
+     */
+    public List<SimilarPair> findRenamedCopies() {
+        List<MethodFingerprint> methods = eligible();
+        Set<Integer> truncated = ConcurrentHashMap.newKeySet();
+        Set<Long> candidates = grouped(methods, MethodFingerprint::getOpcodeHash, truncated);
+        truncatedMethodCount = truncated.size();
+        return candidates.stream()
+                .map(pair -> new SimilarPair(methods.get((int) (pair >>> 32)), methods.get((int) (long) pair),
+                        SimilarityMetric.OPCODE_SEQUENCE))
+                .filter(p -> !p.getMethod1().getMethodName().equals(p.getMethod2().getMethodName()))
+                .sorted(Comparator.comparing((SimilarPair p) -> p.getMethod1().getKey()))
+                .collect(Collectors.toList());
+    }
+
+    /** Pairs of methods with equal {@code key}. */
+    private static Set<Long> grouped(List<MethodFingerprint> methods, Function<MethodFingerprint, Long> key,
+                                     Set<Integer> truncated) {
+        Map<Long, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            groups.computeIfAbsent(key.apply(methods.get(i)), k -> new ArrayList<>()).add(i);
+        }
+        Set<Long> candidates = ConcurrentHashMap.newKeySet();
+        for (List<Integer> group : groups.values()) {
+            addPairs(group, candidates, truncated);
+        }
+        return candidates;
+    }
+
+    /**
+     * Rows per band for a query threshold. Pairs collide in some band with probability 1 - (1 - s^r)^b for
+     * similarity s; the steepest curve whose midpoint (1/b)^(1/r) stays below the threshold keeps recall high
+     * while admitting as few dissimilar candidates as possible.
+     */
+    static int rowsFor(double threshold) {
+        int best = 2;
+        for (int rows = 2; rows <= 8; rows++) {
+            int bands = MethodFingerprint.SIGNATURE_LENGTH / rows;
+            if (Math.pow(1.0 / bands, 1.0 / rows) <= threshold * 0.85) {
+                best = rows;
+            }
+        }
+        return best;
+    }
+
+    private List<MethodFingerprint> eligible() {
+        List<MethodFingerprint> methods = new ArrayList<>();
+        for (MethodFingerprint fp : byKey.values()) {
+            if (fp.getInstructionCount() >= MIN_INSTRUCTIONS) {
+                methods.add(fp);
+            }
+        }
+        // Stable order, so the same project always reports pairs the same way round
+        methods.sort(Comparator.comparing(MethodFingerprint::getKey));
+        return methods;
+    }
+
+    private static void addPairs(List<Integer> bucket, Set<Long> out, Set<Integer> truncated) {
+        int n = bucket.size();
+        if (n < 2) {
+            return;
+        }
+        if (n > MAX_BUCKET) {
+            truncated.addAll(bucket);
+        }
+        for (int a = 0; a < n; a++) {
+            int limit = n <= MAX_BUCKET ? n : Math.min(n, a + 1 + CHAIN);
+            for (int b = a + 1; b < limit; b++) {
+                out.add(((long) bucket.get(a) << 32) | bucket.get(b));
+            }
+        }
+    }
+
+    /** Pairs across two buckets: every pair while that stays small, else each of {@code a} chained into {@code b}. */
+    private static void addCrossPairs(List<Integer> a, List<Integer> b, Set<Long> out, Set<Integer> truncated) {
+        int limit = (long) a.size() * b.size() <= (long) MAX_BUCKET * CHAIN ? b.size() : Math.min(b.size(), CHAIN);
+        if (limit < b.size()) {
+            truncated.addAll(a);
+        }
+        for (int x : a) {
+            for (int k = 0; k < limit; k++) {
+                int y = b.get(k);
+                out.add(((long) Math.min(x, y) << 32) | Math.max(x, y));
+            }
+        }
+    }
+
+    /**
+     * The cache file for {@code project}'s index, or null for a project without a source file. The name is a digest
+     * of the source's absolute path, so two projects never share a file.
+     */
+    public static File cacheFileFor(ProjectModel project) {
+        File source = project.getSourceFile();
+        if (source == null) {
+            return null;
+        }
+        String key = sha256Hex(source.getAbsolutePath());
+        return new File(System.getProperty("user.home"), ".jstudio" + File.separator + "cache"
+                + File.separator + "similarity-" + key + ".idx");
+    }
+
+    private static String sha256Hex(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    public void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = File.createTempFile("similarity", ".tmp", dir);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_FORMAT);
+            out.writeInt(MethodFingerprint.SIGNATURE_LENGTH);
+            List<MethodFingerprint> all = new ArrayList<>(byKey.values());
+            out.writeInt(all.size());
+            for (MethodFingerprint fp : all) {
+                out.writeUTF(fp.getClassName());
+                out.writeUTF(fp.getMethodName());
+                out.writeUTF(fp.getDescriptor());
+                out.writeLong(fp.getCodeHash());
+                out.writeLong(fp.getOpcodeHash());
+                out.writeInt(fp.getInstructionCount());
+                out.writeInt(fp.getBranchCount());
+                out.writeInt(fp.getCallCount());
+                for (int i = 0; i < MethodFingerprint.SIGNATURE_LENGTH; i++) {
+                    out.writeInt(fp.signatureAt(i));
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Reads a saved index; an unreadable or outdated file yields an empty index that {@link #update} fills. */
+    public static MethodSimilarityIndex load(File file) {
+        MethodSimilarityIndex index = new MethodSimilarityIndex();
+        if (file == null || !file.isFile()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT
+                    || in.readInt() != MethodFingerprint.SIGNATURE_LENGTH) {
+                return index;
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                String className = in.readUTF();
+                String methodName = in.readUTF();
+                String descriptor = in.readUTF();
+                long codeHash = in.readLong();
+                long opcodeHash = in.readLong();
+                int instructions = in.readInt();
+                int branches = in.readInt();
+                int calls = in.readInt();
+                int[] signature = new int[MethodFingerprint.SIGNATURE_LENGTH];
+                for (int i = 0; i < signature.length; i++) {
+                    signature[i] = in.readInt();
+                }
+                MethodFingerprint fp = new MethodFingerprint(className, methodName, descriptor, codeHash, opcodeHash,
+                        instructions, branches, calls, signature);
+                index.add(fp);
+            }
+        } catch (IOException e) {
+            index.byKey.clear();
+        }
+        return index;
+    }
+}
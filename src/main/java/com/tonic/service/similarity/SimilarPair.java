@@ -0,0 +1,69 @@
+package com.tonic.service.similarity;
+
+import com.tonic.analysis.similarity.SimilarityMetric;
+import lombok.Getter;
+
+/**
+ * Two methods reported as similar by {@link MethodSimilarityIndex}, with a score per metric. The opcode score is the
+ * MinHash estimate of trigram similarity, so it is accurate to within a few percent rather than exact.
+ */
+@Getter
+public final class SimilarPair {
+
+    private final MethodFingerprint method1;
+    private final MethodFingerprint method2;
+    private final SimilarityMetric primaryMetric;
+    private final double exactScore;
+    private final double opcodeScore;
+    private final double structuralScore;
+    private final double combinedScore;
+
+    SimilarPair(MethodFingerprint method1, MethodFingerprint method2, SimilarityMetric primaryMetric) {
+        this.method1 = method1;
+        this.method2 = method2;
+        this.primaryMetric = primaryMetric;
+        this.exactScore = method1.getCodeHash() == method2.getCodeHash() ? 1.0 : 0.0;
+        this.opcodeScore = method1.getOpcodeHash() == method2.getOpcodeHash()
+                ? 1.0 : method1.estimateOpcodeSimilarity(method2);
+        this.structuralScore = method1.structuralSimilarity(method2);
+        this.combinedScore = exactScore == 1.0 ? 1.0 : 0.7 * opcodeScore + 0.3 * structuralScore;
+    }
+
+    public double getScore(SimilarityMetric metric) {
+        switch (metric) {
+            case EXACT_BYTECODE:
+                return exactScore;
+            case OPCODE_SEQUENCE:
+                return opcodeScore;
+            case STRUCTURAL:
+                return structuralScore;
+            default:
+                return combinedScore;
+        }
+    }
+
+    public double getScore() {
+        return getScore(primaryMetric);
+    }
+
+    public int getScorePercent() {
+        return (int) Math.round(getScore() * 100);
+    }
+
+    public String getSummary() {
+        if (exactScore == 1.0) {
+            return "Exact copy";
+        }
+        if (method1.getOpcodeHash() == method2.getOpcodeHash()) {
+            return "Same instructions, different operands";
+        }
+        double score = getScore();
+        if (score >= 0.9) {
+            return "Near duplicate";
+        }
+        if (score >= 0.7) {
+            return "Very similar";
+        }
+        return "Similar";
+    }
+}
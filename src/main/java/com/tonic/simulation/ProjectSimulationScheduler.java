@@ -0,0 +1,134 @@
+package com.tonic.simulation;
+
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.MethodEntryModel;
+import com.tonic.simulation.listener.BudgetListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs simulation analysis over many classes on a work-stealing pool. Each class is one task - its methods share a
+ * constant pool that lifting reads, so they are simulated in order on one thread - and classes run in parallel.
+ * Every method gets its own instruction and time budget; methods over budget are skipped and counted. Results are
+ * handed to the {@link Listener} as they complete, from worker threads, so callers can stream them to the UI.
+ */
+public final class ProjectSimulationScheduler {
+
+    /** Receives results and progress from worker threads. */
+    public interface Listener {
+        void onResult(SimulationAnalysisResult result);
+
+        void onProgress(int methodsDone, int methodsTotal);
+
+        /** Called once, after the last method finished or was skipped, or after cancellation drained. */
+        void onFinished(Run run);
+    }
+
+    /** Handle on a running analysis. */
+    public static final class Run {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger pendingClasses = new AtomicInteger();
+        private final int total;
+
+        private Run(int total) {
+            this.total = total;
+        }
+
+        /** Stops the analysis: queued classes are dropped and running simulations abort at their next check. */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        public int getMethodsDone() {
+            return done.get();
+        }
+
+        public int getMethodsTotal() {
+            return total;
+        }
+
+        /** Methods abandoned for exceeding their budget. */
+        public int getMethodsSkipped() {
+            return skipped.get();
+        }
+    }
+
+    private ProjectSimulationScheduler() {
+    }
+
+    /**
+     * Starts analysing every method of {@code classes}. {@code maxInstructions} and {@code maxMillis} bound each
+     * method (0 for no bound).
+     */
+    public static Run start(List<ClassEntryModel> classes, long maxInstructions, long maxMillis, Listener listener) {
+        int total = 0;
+        for (ClassEntryModel classModel : classes) {
+            total += classModel.getMethods().size();
+        }
+        AtomicInteger seq = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                p -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    t.setName("simulation-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }, null, true);
+        Run run = new Run(total);
+
+        List<ClassEntryModel> work = new ArrayList<>(classes);
+        if (work.isEmpty()) {
+            pool.shutdown();
+            listener.onFinished(run);
+            return run;
+        }
+        run.pendingClasses.set(work.size());
+        for (ClassEntryModel classModel : work) {
+            pool.execute(() -> {
+                try {
+                    analyzeClass(classModel, maxInstructions, maxMillis, listener, run);
+                } finally {
+                    if (run.pendingClasses.decrementAndGet() == 0) {
+                        pool.shutdown();
+                        listener.onFinished(run);
+                    }
+                }
+            });
+        }
+        return run;
+    }
+
+    private static void analyzeClass(ClassEntryModel classModel, long maxInstructions, long maxMillis,
+                                     Listener listener, Run run) {
+        SimulationService service = SimulationService.getInstance();
+        for (MethodEntryModel methodModel : classModel.getMethods()) {
+            if (run.isCancelled()) {
+                return;
+            }
+            try {
+                SimulationAnalysisResult result = service.runAnalysis(methodModel,
+                        new BudgetListener(maxInstructions, maxMillis, run::isCancelled));
+                if (result != null && result.hasFindings()) {
+                    listener.onResult(result);
+                }
+            } catch (BudgetListener.BudgetExceededException e) {
+                if (!run.isCancelled()) {
+                    run.skipped.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                // A method the lifter or engine chokes on is not worth failing the whole project over
+            }
+            listener.onProgress(run.done.incrementAndGet(), run.total);
+        }
+    }
+}
@@ -10,13 +10,16 @@ import com.tonic.analysis.ssa.cfg.IRMethod;
 import com.tonic.parser.ClassFile;
 import com.tonic.parser.ClassPool;
 import com.tonic.parser.MethodEntry;
+import com.tonic.parser.attribute.CodeAttribute;
 import com.tonic.event.EventBus;
 import com.tonic.event.events.StatusMessageEvent;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.MethodEntryModel;
 import com.tonic.model.ProjectModel;
 import com.tonic.service.ProjectService;
+import com.tonic.util.Settings;
 
+import com.tonic.simulation.listener.BudgetListener;
 import com.tonic.simulation.listener.OpaquePredicateListener;
 import com.tonic.simulation.listener.StringDecryptionListener;
 import com.tonic.simulation.listener.TaintTrackingListener;
@@ -28,10 +31,10 @@ import com.tonic.simulation.model.TaintFlow;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for running symbolic simulation analysis on bytecode methods.
@@ -41,7 +44,7 @@ public class SimulationService {
 
     private static final SimulationService INSTANCE = new SimulationService();
 
-    private final Map<String, SimulationResultCache> resultCache = new ConcurrentHashMap<>();
+    private final long cacheBudgetBytes = Settings.getInstance().getSimulationCacheMb() * 1024L * 1024L;
 
     private SimulationService() {
     }
@@ -54,33 +57,58 @@ public class SimulationService {
      * Runs full simulation analysis on a method and caches the result.
      */
     public SimulationAnalysisResult runAnalysis(MethodEntryModel methodModel) {
+        return runAnalysis(methodModel, null);
+    }
+
+    /**
+     * Runs full simulation analysis on a method under {@code budget} (null for none) and caches the result. A method
+     * that runs over budget throws {@link BudgetListener.BudgetExceededException} and is not cached.
+     * <p>
+     * Results are cached on the current project, so loading or closing a project drops them. A result depends on
+     * the method's code, on the owning class's constant pool ({@link ClassEntryModel#getEditCount()}) and on every
+     * callee resolved through the class pool ({@link ProjectModel#getBytecodeVersion()}); a change to any of them
+     * makes it stale.
+     */
+    public SimulationAnalysisResult runAnalysis(MethodEntryModel methodModel, BudgetListener budget) {
         if (methodModel == null) {
             return null;
         }
 
-        String cacheKey = getCacheKey(methodModel);
-        SimulationResultCache cached = resultCache.get(cacheKey);
-        if (cached != null && !cached.isStale()) {
-            return cached.getResult();
-        }
-
         ClassEntryModel classModel = methodModel.getOwner();
         MethodEntry method = methodModel.getMethodEntry();
 
-        if (method.getCodeAttribute() == null) {
+        CodeAttribute code = method.getCodeAttribute();
+        if (code == null || code.getCode() == null) {
             return null;
         }
 
+        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+        SimulationResultCache resultCache = project != null
+                ? project.cache(SimulationResultCache.class, () -> new SimulationResultCache(cacheBudgetBytes))
+                : null;
+        String cacheKey = getCacheKey(methodModel);
+        // Read before simulating: an edit made meanwhile leaves the stored result already stale
+        long version = (codeVersion(code.getCode()) * 31 + classModel.getEditCount()) * 31
+                + (project != null ? project.getBytecodeVersion() : 0);
+        SimulationAnalysisResult cached = resultCache != null ? resultCache.get(cacheKey, version) : null;
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             IRMethod irMethod = liftToIR(classModel.getClassFile(), method);
             if (irMethod == null) {
                 return null;
             }
 
-            SimulationAnalysisResult result = runFullAnalysis(irMethod, classModel, methodModel);
-            resultCache.put(cacheKey, new SimulationResultCache(result));
+            SimulationAnalysisResult result = runFullAnalysis(project, irMethod, classModel, methodModel, budget);
+            if (resultCache != null) {
+                resultCache.put(cacheKey, version, result, code.getCode().length);
+            }
 
             return result;
+        } catch (BudgetListener.BudgetExceededException e) {
+            throw e;
         } catch (Exception e) {
             postStatus("Analysis error: " + e.getMessage());
             return null;
@@ -96,10 +124,11 @@ public class SimulationService {
         }
     }
 
-    private SimulationAnalysisResult runFullAnalysis(IRMethod irMethod,
+    private SimulationAnalysisResult runFullAnalysis(ProjectModel project,
+                                                      IRMethod irMethod,
                                                       ClassEntryModel classModel,
-                                                      MethodEntryModel methodModel) {
-        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+                                                      MethodEntryModel methodModel,
+                                                      BudgetListener budget) {
         ClassPool pool = project != null ? project.getClassPool() : null;
 
         SimulationContext ctx = SimulationContext.defaults()
@@ -118,6 +147,9 @@ public class SimulationService {
         engine.addListener(opaqueListener);
         engine.addListener(decryptionListener);
         engine.addListener(taintListener);
+        if (budget != null) {
+            engine.addListener(budget);
+        }
 
         SimulationResult result = engine.simulate(irMethod);
 
@@ -219,23 +251,68 @@ public class SimulationService {
     }
 
     /**
-     * Cache entry for simulation results.
+     * Hash of a method's code bytes. Cached results are keyed by it, so an edited method is re-simulated even when
+     * the edit bypassed {@link ClassEntryModel#invalidateDecompilationCache()}.
+     */
+    private static long codeVersion(byte[] code) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : code) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return h ^ code.length;
+    }
+
+    /**
+     * Size-bounded LRU of one project's simulation results. Sizes are estimates from the method's code length and
+     * finding counts - a result retains the method's lifted IR through its dead blocks and findings, which dominates.
      */
-    private static class SimulationResultCache {
-        private final SimulationAnalysisResult result;
-        private final long timestamp;
+    private static final class SimulationResultCache {
+        private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+        private final long budgetBytes;
+        private long usedBytes;
 
-        SimulationResultCache(SimulationAnalysisResult result) {
-            this.result = result;
-            this.timestamp = System.currentTimeMillis();
+        SimulationResultCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
         }
 
-        SimulationAnalysisResult getResult() {
-            return result;
+        synchronized SimulationAnalysisResult get(String key, long version) {
+            Entry entry = lru.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.version != version) {
+                lru.remove(key);
+                usedBytes -= entry.bytes;
+                return null;
+            }
+            return entry.result;
         }
 
-        boolean isStale() {
-            return System.currentTimeMillis() - timestamp > 5 * 60 * 1000;
+        synchronized void put(String key, long version, SimulationAnalysisResult result, int codeLength) {
+            long bytes = 1024 + 96L * codeLength
+                    + 256L * result.getFindings().size() + 64L * result.getDeadBlocks().size();
+            Entry previous = lru.put(key, new Entry(result, version, bytes));
+            if (previous != null) {
+                usedBytes -= previous.bytes;
+            }
+            usedBytes += bytes;
+            Iterator<Entry> it = lru.values().iterator();
+            while (usedBytes > budgetBytes && lru.size() > 1 && it.hasNext()) {
+                usedBytes -= it.next().bytes;
+                it.remove();
+            }
+        }
+
+        private static final class Entry {
+            final SimulationAnalysisResult result;
+            final long version;
+            final long bytes;
+
+            Entry(SimulationAnalysisResult result, long version, long bytes) {
+                this.result = result;
+                this.version = version;
+                this.bytes = bytes;
+            }
         }
     }
 }
@@ -0,0 +1,57 @@
+package com.tonic.simulation.listener;
+
+import com.tonic.analysis.simulation.core.SimulationState;
+import com.tonic.analysis.simulation.listener.AbstractListener;
+import com.tonic.analysis.ssa.ir.IRInstruction;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Listener that aborts a simulation once it exceeds an instruction or wall-clock budget, or when its batch is
+ * cancelled, by throwing {@link BudgetExceededException} out of the engine. Used by project-wide analysis so one
+ * pathological method (a huge switch, a flattened state machine) cannot stall a worker.
+ */
+public class BudgetListener extends AbstractListener {
+
+    /** Instructions between clock and cancellation checks; both are cheap but not free. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long maxInstructions;
+    private final long deadlineNanos;
+    private final BooleanSupplier cancelled;
+    private long instructions;
+
+    /**
+     * @param maxInstructions instruction budget, or 0 for none
+     * @param maxMillis       wall-clock budget from construction, or 0 for none
+     * @param cancelled       polled periodically; a true result aborts the simulation
+     */
+    public BudgetListener(long maxInstructions, long maxMillis, BooleanSupplier cancelled) {
+        this.maxInstructions = maxInstructions;
+        this.deadlineNanos = maxMillis > 0 ? System.nanoTime() + maxMillis * 1_000_000L : 0;
+        this.cancelled = cancelled;
+    }
+
+    @Override
+    public void onBeforeInstruction(IRInstruction instr, SimulationState state) {
+        instructions++;
+        if (maxInstructions > 0 && instructions > maxInstructions) {
+            throw new BudgetExceededException("instruction budget of " + maxInstructions + " exceeded");
+        }
+        if (instructions % CHECK_INTERVAL == 0) {
+            if (cancelled != null && cancelled.getAsBoolean()) {
+                throw new BudgetExceededException("cancelled");
+            }
+            if (deadlineNanos != 0 && System.nanoTime() > deadlineNanos) {
+                throw new BudgetExceededException("time budget exceeded");
+            }
+        }
+    }
+
+    /** Thrown through the simulation engine to stop a method that ran over budget. */
+    public static class BudgetExceededException extends RuntimeException {
+        public BudgetExceededException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
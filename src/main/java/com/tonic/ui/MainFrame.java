@@ -26,6 +26,7 @@ import com.tonic.ui.navigator.NavigatorPanel;
 import com.tonic.ui.properties.PropertiesPanel;
 import com.tonic.plugin.gui.GuiPluginManager;
 import com.tonic.service.ProjectDatabaseService;
+import com.tonic.service.DecompilationScheduler;
 import com.tonic.service.ProjectService;
 import com.tonic.service.history.LocalHistoryService;
 import com.tonic.model.Snapshot;
@@ -70,6 +71,7 @@ import com.tonic.service.run.RunService;
 import com.tonic.service.run.RunStateService;
 import com.tonic.ui.core.SwingWorkers;
 import com.tonic.ui.live.LiveAttachDialog;
+import com.tonic.ui.live.fleet.LiveFleetWindow;
 import com.tonic.ui.live.recorder.jfr.JfrAnalysisWindow;
 import com.tonic.ui.live.eval.LiveScratchPadDialog;
 import com.tonic.ui.live.LiveHeapService;
@@ -77,6 +79,14 @@ import com.tonic.ui.live.LiveCaptureService;
 import com.tonic.live.protocol.ContentionEdge;
 import com.tonic.live.Deadlocks;
 import com.tonic.ui.live.LivePatch;
+import com.tonic.ui.live.LiveProbeService;
+import com.tonic.ui.live.LiveSamplerService;
+import com.tonic.ui.live.LogpointPrompt;
+import com.tonic.ui.live.eval.SnippetCompiler;
+import com.tonic.ui.live.eval.SnippetCompilerService;
+import com.tonic.ui.debug.Breakpoint;
+import com.tonic.event.events.LogpointHitsEvent;
+import com.tonic.live.protocol.LogpointHit;
 import com.tonic.analysis.query.planner.QueryTarget;
 import lombok.Getter;
 
@@ -254,7 +264,7 @@ public class MainFrame extends JFrame {
                 }
                 rightToolWindow.addTool("Threads", liveThreadsPanel);
                 if (liveProfilerPanel == null) {
-                    liveProfilerPanel = new LiveProfilerPanel();
+                    liveProfilerPanel = new LiveProfilerPanel(this);
                 }
                 rightToolWindow.addTool("Profiler", liveProfilerPanel);
                 if (liveValueScannerPanel == null) {
@@ -268,7 +278,14 @@ public class MainFrame extends JFrame {
                     }
                     rightToolWindow.addTool("Recorder", liveRecorderPanel);
                 }
+                ProjectModel project = ProjectService.getInstance().getCurrentProject();
+                if (project != null) {
+                    SnippetCompilerService.get().warmUp(project);
+                }
             } else {
+                LiveProbeService.get().clear();
+                LiveSamplerService.get().clear();
+                SnippetCompilerService.get().clear();
                 // A live tool may have been moved to a tab/window; tear that float down (the session is gone) before
                 // the dock removal, which is then a clean no-op.
                 for (String tool : new String[]{"Threads", "Profiler", "Recorder", "Value Scanner"}) {
@@ -291,6 +308,21 @@ public class MainFrame extends JFrame {
             }
             // Re-arm breakpoint gutters on already-open tabs (they were opened before the session existed).
             editorPanel.refreshBreakpointGutters();
+            LiveProbeService.get().syncPauseBreakpoint();
+        });
+
+        // Logpoint hits from the attached JVM go to the console.
+        EventBus.getInstance().register(LogpointHitsEvent.class, e -> {
+            for (LogpointHit hit : e.getHits()) {
+                LiveProbeService.Logpoint logpoint = LiveProbeService.get().logpoint(hit.logpointId);
+                String where = logpoint == null ? "#" + hit.logpointId
+                        : logpoint.getClassName().substring(logpoint.getClassName().lastIndexOf('/') + 1)
+                        + "." + logpoint.getMethodName() + "@" + logpoint.getPc();
+                consolePanel.log("[logpoint " + where + " on " + hit.thread + "] " + hit.message);
+            }
+            if (e.getDropped() > 0) {
+                consolePanel.log("[logpoint] " + e.getDropped() + " hits dropped (target hit faster than reported).");
+            }
         });
 
         // On a breakpoint hit: navigate to the current line and focus the Debugger tool.
@@ -397,6 +429,7 @@ public class MainFrame extends JFrame {
         // Handle project loaded
         EventBus.getInstance().register(ProjectLoadedEvent.class, event -> {
             ProjectModel project = event.getProject();
+            DecompilationScheduler.getInstance().cancelPending();
             editorPanel.closeAllTabs();
             sidePanel.closeAllTabs();
             navigatorPanel.loadProject(project);
@@ -432,7 +465,7 @@ public class MainFrame extends JFrame {
                 if (event.getKind() == ProjectRenamedEvent.Kind.CLASS) {
                     refreshAfterRename(event.getOldClass(), event.getNewClass());
                 } else {
-                    refreshAfterProjectChange();
+                    refreshAfterSymbolRename(event.getNewMember());
                 }
             }));
 
@@ -440,7 +473,7 @@ public class MainFrame extends JFrame {
         EventBus.getInstance().register(ProjectUpdatedEvent.class, event -> {
             ProjectModel project = event.getProject();
             if (project != null) {
-                navigatorPanel.loadProject(project);
+                navigatorPanel.updateProject(project);
                 editorPanel.setProjectModel(project);
                 editorPanel.refreshWelcomeTab();
             }
@@ -737,7 +770,7 @@ public class MainFrame extends JFrame {
 
     public void refreshAfterRename(String oldClassName, String newClassName) {
         editorPanel.closeTabForClass(oldClassName);
-        refreshAfterProjectChange();
+        refreshAfterSymbolRename(newClassName);
         statusBar.setMessage("Renamed: " + oldClassName.replace('/', '.') +
                 " -> " + newClassName.replace('/', '.'));
     }
@@ -752,6 +785,27 @@ public class MainFrame extends JFrame {
         if (project != null) {
             project.invalidateAllDecompilationCaches();
         }
+        reloadAfterChange();
+    }
+
+    /**
+     * Refresh after a rename: only classes whose constant pool now mentions {@code newName} (the renamed class's new
+     * internal name, or a method/field's new name) can show it, so just their cached sources are dropped and the
+     * rest of the decompilation cache survives. Open tabs are still reloaded since their other views show names too.
+     */
+    public void refreshAfterSymbolRename(String newName) {
+        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+        if (project != null) {
+            if (newName != null) {
+                project.invalidateDecompilationCachesReferencing(newName);
+            } else {
+                project.invalidateAllDecompilationCaches();
+            }
+        }
+        reloadAfterChange();
+    }
+
+    private void reloadAfterChange() {
         editorPanel.reloadAllTabs();
         navigatorPanel.refresh();
         navigatorPanel.setLoading(false);
@@ -1063,7 +1117,7 @@ public class MainFrame extends JFrame {
                 LocalHistoryService.getInstance().snapshot("Rename method " + oldName, Snapshot.Trigger.RENAME);
                 Renamer renamer = new Renamer(classPool);
                 renamer.mapMethod(className, oldName, desc, newName).apply();
-                refreshAfterProjectChange();
+                refreshAfterSymbolRename(newName);
                 consolePanel.log("Renamed method: " + oldName + " -> " + newName + " in " + classEntry.getSimpleName());
                 statusBar.setMessage("Renamed method: " + oldName + " -> " + newName);
             } catch (RenameException e) {
@@ -1110,7 +1164,7 @@ public class MainFrame extends JFrame {
                 LocalHistoryService.getInstance().snapshot("Rename field " + oldName, Snapshot.Trigger.RENAME);
                 Renamer renamer = new Renamer(classPool);
                 renamer.mapField(className, oldName, desc, newName).apply();
-                refreshAfterProjectChange();
+                refreshAfterSymbolRename(newName);
                 consolePanel.log("Renamed field: " + oldName + " -> " + newName + " in " + classEntry.getSimpleName());
                 statusBar.setMessage("Renamed field: " + oldName + " -> " + newName);
             } catch (RenameException e) {
@@ -1228,6 +1282,18 @@ public class MainFrame extends JFrame {
         new LiveAttachDialog(this).setVisible(true);
     }
 
+    /**
+     * Opens (reusing one window) the fleet view: attach to several JVMs at once and compare them side by side.
+     * Its sessions are independent of the single attached session.
+     */
+    public void showLiveFleetWindow() {
+        if (liveFleetWindow == null) {
+            liveFleetWindow = new LiveFleetWindow(this);
+        }
+        liveFleetWindow.setVisible(true);
+        liveFleetWindow.toFront();
+    }
+
     /**
      * Opens the class for a JDI debug location and scrolls/highlights its source line, reusing the same
      * offset-to-source navigation that Find Usages uses. Called on a breakpoint hit and on a call-stack click.
@@ -1338,6 +1404,7 @@ public class MainFrame extends JFrame {
     private LiveScratchPadDialog liveScratchPadDialog;
     private LiveRecorderPanel liveRecorderPanel;
     private JfrAnalysisWindow jfrAnalysisWindow;
+    private LiveFleetWindow liveFleetWindow;
     private LiveCaptureService liveCaptureService;
     private LiveSession liveCaptureSession;
     private LiveThreadsPanel liveThreadsPanel;
@@ -1480,6 +1547,141 @@ public class MainFrame extends JFrame {
                 });
     }
 
+    /**
+     * Adds a timing probe to {@code method} in the attached JVM and focuses the Profiler tool, where its call rate
+     * and latency percentiles appear once the agent reports.
+     */
+    public void addLiveProbe(MethodEntryModel method) {
+        LiveAttachService svc = LiveAttachService.getInstance();
+        if (!svc.isAttached()) {
+            showWarning("Attach to a live JVM first (VM -> Attach to Live JVM).");
+            return;
+        }
+        final LiveSession session = svc.getSession();
+        final String owner = method.getOwner().getClassName();
+        final String label = method.getOwner().getSimpleName() + "." + method.getName();
+        SwingWorkers.run(
+                () -> LiveProbeService.get().addProbe(session, owner, method.getName(), method.getDescriptor()),
+                probe -> {
+                    consolePanel.log("Timing probe added to " + label + ".");
+                    rightToolWindow.select("Profiler");
+                },
+                err -> {
+                    consolePanel.log("Timing probe failed: " + err.getMessage());
+                    showWarning("Could not probe " + label + ": " + err.getMessage());
+                });
+    }
+
+    /**
+     * Counts the allocations of every {@code new} and array creation in {@code classes} in the attached JVM and
+     * focuses the Profiler tool, where the busiest sites appear once the agent reports. Classes the target has not
+     * loaded (or that allocate nothing) are skipped.
+     */
+    public void trackLiveAllocations(List<ClassEntryModel> classes, String label) {
+        LiveAttachService svc = LiveAttachService.getInstance();
+        if (!svc.isAttached()) {
+            showWarning("Attach to a live JVM first (VM -> Attach to Live JVM).");
+            return;
+        }
+        final LiveSession session = svc.getSession();
+        SwingWorkers.run(
+                () -> {
+                    int sites = 0;
+                    int tracked = 0;
+                    String firstError = null;
+                    for (ClassEntryModel cls : classes) {
+                        try {
+                            int found = LiveProbeService.get().trackAllocations(session, cls.getClassName()).size();
+                            sites += found;
+                            tracked += found > 0 ? 1 : 0;
+                        } catch (IOException | RuntimeException e) {
+                            if (firstError == null) {
+                                firstError = e.getMessage();
+                            }
+                        }
+                    }
+                    if (tracked == 0 && firstError != null) {
+                        throw new IOException(firstError);
+                    }
+                    return new int[]{tracked, sites};
+                },
+                counts -> {
+                    consolePanel.log("Tracking " + counts[1] + " allocation sites in " + counts[0] + " classes of "
+                            + label + ".");
+                    rightToolWindow.select("Profiler");
+                },
+                err -> {
+                    consolePanel.log("Allocation tracking failed: " + err.getMessage());
+                    showWarning("Could not track allocations in " + label + ": " + err.getMessage());
+                });
+    }
+
+    /** Stops counting the allocations in {@code classEntry}, restoring its bytes in the attached JVM. */
+    public void untrackLiveAllocations(ClassEntryModel classEntry) {
+        SwingWorkers.run(
+                () -> {
+                    LiveProbeService.get().untrackAllocations(classEntry.getClassName());
+                    return classEntry;
+                },
+                removed -> consolePanel.log("Stopped tracking allocations in " + classEntry.getSimpleName() + "."),
+                err -> consolePanel.log("Stopping allocation tracking failed: " + err.getMessage()));
+    }
+
+    /**
+     * Prompts for a condition and message and installs a logpoint at {@code location} in the attached JVM. The
+     * snippet is compiled here and evaluated in the target, so only hits (and suspends the user asked for) cost
+     * anything beyond the check itself.
+     */
+    public void addLiveLogpoint(Breakpoint location) {
+        LiveAttachService svc = LiveAttachService.getInstance();
+        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+        if (!svc.isAttached() || project == null) {
+            showWarning("Attach to a live JVM first (VM -> Attach to Live JVM).");
+            return;
+        }
+        LogpointPrompt prompt = LogpointPrompt.show(this, location);
+        if (prompt == null) {
+            return;
+        }
+        if (prompt.isSuspend() && !DebugManager.getInstance().isConnected()) {
+            showWarning("Suspending logpoints need the debugger connected; hits are logged until it is.");
+        }
+        final LiveSession session = svc.getSession();
+        final String owner = location.className.replace('.', '/');
+        SwingWorkers.run(
+                () -> {
+                    SnippetCompiler.Result compiled = SnippetCompilerService.get().compilerFor(project).compileHook(prompt.snippet(),
+                            LogpointPrompt.prologue(location.methodDesc));
+                    if (!compiled.isSuccess()) {
+                        throw new IllegalArgumentException(String.join("\n", compiled.getMessages()));
+                    }
+                    return LiveProbeService.get().addLogpoint(session, owner, location.methodName,
+                            location.methodDesc, (int) location.pc, compiled, prompt.label(), prompt.isSuspend());
+                },
+                logpoint -> consolePanel.log("Logpoint added to " + location.methodName + " @ " + location.pc
+                        + ": " + logpoint.getLabel()),
+                err -> {
+                    consolePanel.log("Logpoint failed: " + err.getMessage());
+                    showWarning("Could not add the logpoint: " + err.getMessage());
+                });
+    }
+
+    /** Removes the logpoint at {@code location}, if any, restoring the method's bytes in the attached JVM. */
+    public void removeLiveLogpoint(Breakpoint location) {
+        LiveProbeService.Logpoint logpoint = LiveProbeService.get().logpointAt(location.className.replace('.', '/'),
+                location.methodName, location.methodDesc, (int) location.pc);
+        if (logpoint == null) {
+            return;
+        }
+        SwingWorkers.run(
+                () -> {
+                    LiveProbeService.get().removeLogpoint(logpoint);
+                    return logpoint;
+                },
+                removed -> consolePanel.log("Logpoint removed from " + location.methodName + " @ " + location.pc + "."),
+                err -> consolePanel.log("Logpoint removal failed: " + err.getMessage()));
+    }
+
     public void showVMConsole() {
         dialogManager.showVMConsole();
     }
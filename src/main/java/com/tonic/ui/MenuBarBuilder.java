@@ -350,6 +350,9 @@ public class MenuBarBuilder {
 
         JMenuItem attach = createMenuItem("Attach to Live JVM...", 0, 0,
                 Icons.getIcon("live_attach"), e -> mainFrame.showLiveAttachDialog());
+        JMenuItem fleet = createMenuItem("Live Fleet...", 0, 0,
+                Icons.getIcon("live_attach"), e -> mainFrame.showLiveFleetWindow());
+        fleet.setToolTipText("Attach to several JVMs at once and compare metrics, statics and profiles side by side");
         JMenuItem detach = createMenuItem("Detach", 0, 0,
                 Icons.getIcon("live_detach"), e -> mainFrame.detachLive());
         JPopupMenu.Separator sep = new JPopupMenu.Separator();
@@ -369,8 +372,13 @@ public class MenuBarBuilder {
         JCheckBoxMenuItem suspendAll = new JCheckBoxMenuItem("Suspend All Threads on Breakpoint");
         suspendAll.setToolTipText("On a breakpoint hit, suspend the whole target VM (off = only the thread that hit)");
         suspendAll.addActionListener(e -> DebugManager.getInstance().setSuspendAll(suspendAll.isSelected()));
+        JCheckBoxMenuItem prefetch = new JCheckBoxMenuItem("Prefetch Object Fields on Pause");
+        prefetch.setToolTipText("Fetch the fields of a paused frame's objects up front, so expanding them is instant "
+                + "(helps over a remote debug connection)");
+        prefetch.addActionListener(e -> DebugManager.getInstance().setPrefetchDepth(prefetch.isSelected() ? 1 : 0));
 
         menu.add(attach);
+        menu.add(fleet);
         menu.add(detach);
         menu.add(sep);
         menu.add(deadlocks);
@@ -379,6 +387,7 @@ public class MenuBarBuilder {
         menu.add(capture);
         menu.add(enableDebugger);
         menu.add(suspendAll);
+        menu.add(prefetch);
 
         menu.addMenuListener(new MenuListener() {
             @Override
@@ -395,6 +404,8 @@ public class MenuBarBuilder {
                 enableDebugger.setVisible(connected && !debugging);
                 suspendAll.setVisible(debugging);
                 suspendAll.setSelected(DebugManager.getInstance().isSuspendAll());
+                prefetch.setVisible(debugging);
+                prefetch.setSelected(DebugManager.getInstance().getPrefetchDepth() > 0);
             }
 
             @Override
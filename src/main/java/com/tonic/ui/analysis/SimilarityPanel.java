@@ -1,17 +1,16 @@
 package com.tonic.ui.analysis;
 
-import com.tonic.analysis.similarity.MethodSimilarityAnalyzer;
-import com.tonic.analysis.similarity.MethodSignature;
 import com.tonic.analysis.similarity.SimilarityMetric;
-import com.tonic.analysis.similarity.SimilarityResult;
-import com.tonic.parser.ClassFile;
+import com.tonic.model.ClassEntryModel;
 import com.tonic.parser.MethodEntry;
+import com.tonic.service.similarity.MethodFingerprint;
+import com.tonic.service.similarity.MethodSimilarityIndex;
+import com.tonic.service.similarity.SimilarPair;
 import com.tonic.ui.editor.bytecode.BytecodeFormatter;
 import com.tonic.ui.core.component.ThemedJPanel;
 import com.tonic.ui.core.constants.UIConstants;
 import com.tonic.model.ProjectModel;
 import com.tonic.ui.theme.JStudioTheme;
-import com.tonic.ui.util.JdkClassFilter;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -29,13 +28,14 @@ import java.util.List;
 public class SimilarityPanel extends ThemedJPanel {
 
     private final ProjectModel project;
-    private MethodSimilarityAnalyzer analyzer;
+    private volatile MethodSimilarityIndex index;
 
     private JComboBox<SimilarityMetric> metricCombo;
     private JSlider thresholdSlider;
     private JLabel thresholdLabel;
     private JButton analyzeButton;
     private JButton findDuplicatesButton;
+    private JButton renamedButton;
     private JButton exportButton;
 
     private JTable resultsTable;
@@ -123,7 +123,7 @@ public class SimilarityPanel extends ThemedJPanel {
         findDuplicatesButton.addActionListener(e -> findDuplicates());
         panel.add(findDuplicatesButton);
 
-        JButton renamedButton = new JButton("Find Renamed");
+        renamedButton = new JButton("Find Renamed");
         renamedButton.setBackground(JStudioTheme.getBgTertiary());
         renamedButton.setForeground(JStudioTheme.getTextPrimary());
         renamedButton.setEnabled(false);
@@ -324,13 +324,21 @@ public class SimilarityPanel extends ThemedJPanel {
 
         updateStatus("Building method index...");
 
-        SwingWorker<Void, String> worker = new SwingWorker<>() {
+        SwingWorker<Integer, String> worker = new SwingWorker<>() {
             @Override
-            protected Void doInBackground() {
-                analyzer = new MethodSimilarityAnalyzer(project.getClassPool());
-                analyzer.setProgressCallback(this::publish);
-                analyzer.buildIndex();
-                return null;
+            protected Integer doInBackground() {
+                File cacheFile = MethodSimilarityIndex.cacheFileFor(project);
+                MethodSimilarityIndex built = index != null ? index : MethodSimilarityIndex.load(cacheFile);
+                int recomputed = built.update(project, this::publish);
+                if (cacheFile != null && recomputed > 0) {
+                    try {
+                        built.save(cacheFile);
+                    } catch (IOException e) {
+                        publish("Could not save similarity index: " + e.getMessage());
+                    }
+                }
+                index = built;
+                return recomputed;
             }
 
             @Override
@@ -342,9 +350,16 @@ public class SimilarityPanel extends ThemedJPanel {
 
             @Override
             protected void done() {
-                analyzeButton.setEnabled(true);
-                findDuplicatesButton.setEnabled(true);
-                updateStatus("Index built: " + analyzer.getMethodCount() + " methods. Ready for analysis.");
+                try {
+                    int recomputed = get();
+                    analyzeButton.setEnabled(true);
+                    findDuplicatesButton.setEnabled(true);
+                    renamedButton.setEnabled(true);
+                    updateStatus("Index built: " + index.getMethodCount() + " methods (" + recomputed
+                            + " fingerprinted). Ready for analysis.");
+                } catch (Exception e) {
+                    updateStatus("Index build failed: " + e.getMessage());
+                }
             }
         };
 
@@ -352,7 +367,7 @@ public class SimilarityPanel extends ThemedJPanel {
     }
 
     private void findSimilar() {
-        if (analyzer == null) {
+        if (index == null) {
             updateStatus("Build index first.");
             return;
         }
@@ -366,11 +381,10 @@ public class SimilarityPanel extends ThemedJPanel {
 
         updateStatus("Finding similar methods (" + metric.getDisplayName() + " >= " + thresholdSlider.getValue() + "%)...");
 
-        SwingWorker<List<SimilarityResult>, String> worker = new SwingWorker<>() {
+        SwingWorker<List<SimilarPair>, String> worker = new SwingWorker<>() {
             @Override
-            protected List<SimilarityResult> doInBackground() {
-                analyzer.setProgressCallback(this::publish);
-                return analyzer.findAllSimilar(metric, threshold);
+            protected List<SimilarPair> doInBackground() {
+                return index.findSimilar(metric, threshold, this::publish);
             }
 
             @Override
@@ -383,10 +397,10 @@ public class SimilarityPanel extends ThemedJPanel {
             @Override
             protected void done() {
                 try {
-                    List<SimilarityResult> results = get();
+                    List<SimilarPair> results = get();
                     tableModel.setResults(results);
                     exportButton.setEnabled(!results.isEmpty());
-                    updateStatus("Found " + results.size() + " similar method pairs.");
+                    updateStatus("Found " + results.size() + " similar method pairs. + truncationNote());
                 } catch (Exception e) {
                     updateStatus("Analysis failed: " + e.getMessage());
                 }
@@ -397,26 +411,26 @@ public class SimilarityPanel extends ThemedJPanel {
     }
 
     private void findDuplicates() {
-        if (analyzer == null) {
+        if (index == null) {
             updateStatus("Build index first.");
             return;
         }
 
         updateStatus("Finding exact/near duplicates...");
 
-        SwingWorker<List<SimilarityResult>, Void> worker = new SwingWorker<>() {
+        SwingWorker<List<SimilarPair>, Void> worker = new SwingWorker<>() {
             @Override
-            protected List<SimilarityResult> doInBackground() {
-                return analyzer.findDuplicates();
+            protected List<SimilarPair> doInBackground() {
+                return index.findDuplicates();
             }
 
             @Override
             protected void done() {
                 try {
-                    List<SimilarityResult> results = get();
+                    List<SimilarPair> results = get();
                     tableModel.setResults(results);
                     exportButton.setEnabled(!results.isEmpty());
-                    updateStatus("Found " + results.size() + " duplicate method pairs (>= 95% similarity).");
+                    updateStatus("Found " + results.size() + " duplicate method pairs (>= 95% similarity). + truncationNote());
                 } catch (Exception e) {
                     updateStatus("Analysis failed: " + e.getMessage());
                 }
@@ -427,26 +441,26 @@ public class SimilarityPanel extends ThemedJPanel {
     }
 
     private void findRenamed() {
-        if (analyzer == null) {
+        if (index == null) {
             updateStatus("Build index first.");
             return;
         }
 
         updateStatus("Finding renamed copies (potential obfuscation)...");
 
-        SwingWorker<List<SimilarityResult>, Void> worker = new SwingWorker<>() {
+        SwingWorker<List<SimilarPair>, Void> worker = new SwingWorker<>() {
             @Override
-            protected List<SimilarityResult> doInBackground() {
-                return analyzer.findRenamedCopies();
+            protected List<SimilarPair> doInBackground() {
+                return index.findRenamedCopies();
             }
 
             @Override
             protected void done() {
                 try {
-                    List<SimilarityResult> results = get();
+                    List<SimilarPair> results = get();
                     tableModel.setResults(results);
                     exportButton.setEnabled(!results.isEmpty());
-                    updateStatus("Found " + results.size() + " potentially renamed method pairs.");
+                    updateStatus("Found " + results.size() + " potentially renamed method pairs. + truncationNote());
                 } catch (Exception e) {
                     updateStatus("Analysis failed: " + e.getMessage());
                 }
@@ -456,11 +470,17 @@ public class SimilarityPanel extends ThemedJPanel {
         worker.execute();
     }
 
-    private void showComparison(SimilarityResult result) {
+    private String truncationNote() {
+        int truncated = index.getTruncatedMethodCount();
+        return truncated == 0 ? ""
+                : " " + truncated + " methods in very large clusters were compared with their nearest neighbours only.";
+    }
+
+    private void showComparison(SimilarPair result) {
         if (result == null) return;
 
-        MethodSignature sig1 = result.getMethod1();
-        MethodSignature sig2 = result.getMethod2();
+        MethodFingerprint sig1 = result.getMethod1();
+        MethodFingerprint sig2 = result.getMethod2();
         if (sig1 == null || sig2 == null) {
             return;
         }
@@ -502,28 +522,20 @@ public class SimilarityPanel extends ThemedJPanel {
         detailsArea.setText(details.toString());
     }
 
-    private String getMethodBytecode(MethodSignature sig) {
-        // Find the method in the class pool
-        if (project.getClassPool() == null) {
-            return "// Class pool not available";
+    private String getMethodBytecode(MethodFingerprint sig) {
+        ClassEntryModel classEntry = project.getClass(sig.getClassName());
+        if (classEntry == null) {
+            return "// Method not found";
         }
-
-        for (ClassFile cf : project.getClassPool().getClasses()) {
-            if (JdkClassFilter.isJdkClass(cf.getClassName())) {
-                continue;
-            }
-            if (cf.getClassName().equals(sig.getClassName())) {
-                for (MethodEntry method : cf.getMethods()) {
-                    if (method.getName().equals(sig.getMethodName()) &&
-                        method.getDesc().equals(sig.getDescriptor())) {
-                        // Get bytecode disassembly
-                        if (method.getCodeAttribute() != null) {
-                            BytecodeFormatter formatter = new BytecodeFormatter(method);
-                            return formatter.format();
-                        } else {
-                            return "// No code attribute (abstract/native)";
-                        }
-                    }
+        for (MethodEntry method : classEntry.getClassFile().getMethods()) {
+            if (method.getName().equals(sig.getMethodName()) &&
+                method.getDesc().equals(sig.getDescriptor())) {
+                // Get bytecode disassembly
+                if (method.getCodeAttribute() != null) {
+                    BytecodeFormatter formatter = new BytecodeFormatter(method);
+                    return formatter.format();
+                } else {
+                    return "// No code attribute (abstract/native)";
                 }
             }
         }
@@ -548,7 +560,7 @@ public class SimilarityPanel extends ThemedJPanel {
 
                 // Data
                 for (int i = 0; i < tableModel.getRowCount(); i++) {
-                    SimilarityResult result = tableModel.getResult(i);
+                    SimilarPair result = tableModel.getResult(i);
                     if (result == null) {
                         continue;
                     }
@@ -577,8 +589,8 @@ public class SimilarityPanel extends ThemedJPanel {
      * Refresh the panel.
      */
     public void refresh() {
-        if (analyzer != null) {
-            updateStatus("Index contains " + analyzer.getMethodCount() + " methods.");
+        if (index != null) {
+            updateStatus("Index contains " + index.getMethodCount() + " methods.");
         }
     }
 
@@ -586,14 +598,14 @@ public class SimilarityPanel extends ThemedJPanel {
 
     private static class SimilarityTableModel extends AbstractTableModel {
         private final String[] COLUMNS = {"Score", "Method 1", "Method 2", "Metric"};
-        private List<SimilarityResult> results = new ArrayList<>();
+        private List<SimilarPair> results = new ArrayList<>();
 
-        public void setResults(List<SimilarityResult> results) {
+        public void setResults(List<SimilarPair> results) {
             this.results = results != null ? results : new ArrayList<>();
             fireTableDataChanged();
         }
 
-        public SimilarityResult getResult(int row) {
+        public SimilarPair getResult(int row) {
             if (row >= 0 && row < results.size()) {
                 return results.get(row);
             }
@@ -622,7 +634,7 @@ public class SimilarityPanel extends ThemedJPanel {
 
         @Override
         public Object getValueAt(int row, int column) {
-            SimilarityResult result = results.get(row);
+            SimilarPair result = results.get(row);
             if (result == null) {
                 return column == 0 ? 0 : "";
             }
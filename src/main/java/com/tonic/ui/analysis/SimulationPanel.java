@@ -6,6 +6,7 @@ import com.tonic.event.events.MethodSelectedEvent;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.MethodEntryModel;
 import com.tonic.model.ProjectModel;
+import com.tonic.simulation.ProjectSimulationScheduler;
 import com.tonic.simulation.SimulationAnalysisResult;
 import com.tonic.simulation.SimulationService;
 import com.tonic.simulation.model.DeadCodeBlock;
@@ -17,6 +18,7 @@ import com.tonic.simulation.export.FindingsExporter;
 import com.tonic.ui.core.component.ThemedJPanel;
 import com.tonic.ui.core.constants.UIConstants;
 import com.tonic.ui.theme.JStudioTheme;
+import com.tonic.util.Settings;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
@@ -29,6 +31,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SimulationPanel extends ThemedJPanel {
 
@@ -42,10 +48,17 @@ public class SimulationPanel extends ThemedJPanel {
     private final JTextArea detailsArea;
     private final JComboBox<String> filterCombo;
 
+    private final JButton cancelButton;
+
     private final List<FindingEntry> allFindings = new ArrayList<>();
     private final List<FindingEntry> filteredFindings = new ArrayList<>();
     private String currentFilter = "All";
 
+    private volatile ProjectSimulationScheduler.Run currentRun;
+    private final Queue<SimulationAnalysisResult> pendingResults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger progressDone = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
     public SimulationPanel(ProjectModel project) {
         super(BackgroundStyle.SECONDARY, new BorderLayout());
         this.project = project;
@@ -99,6 +112,13 @@ public class SimulationPanel extends ThemedJPanel {
         progressBar.setVisible(false);
         toolbar.add(progressBar);
 
+        cancelButton = new JButton("Cancel");
+        cancelButton.setBackground(JStudioTheme.getBgTertiary());
+        cancelButton.setForeground(JStudioTheme.getTextPrimary());
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(e -> cancelAnalysis());
+        toolbar.add(cancelButton);
+
         add(toolbar, BorderLayout.NORTH);
 
         JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
@@ -277,39 +297,79 @@ public class SimulationPanel extends ThemedJPanel {
         progressBar.setMaximum(totalMethods);
         progressBar.setValue(0);
 
-        SwingWorker<Void, Integer> worker = new SwingWorker<>() {
-            @Override
-            protected Void doInBackground() {
-                int count = 0;
-                for (ClassEntryModel classModel : classes) {
-                    for (MethodEntryModel methodModel : classModel.getMethods()) {
-                        SimulationAnalysisResult result = SimulationService.getInstance().runAnalysis(methodModel);
-                        if (result != null && result.hasFindings()) {
-                            SwingUtilities.invokeLater(() -> addFindingsFromResult(result));
-                        }
-                        count++;
-                        publish(count);
+        progressDone.set(0);
+        pendingResults.clear();
+        Settings settings = Settings.getInstance();
+        currentRun = ProjectSimulationScheduler.start(classes,
+                settings.getSimulationMaxInstructions(), settings.getSimulationMaxMillis(),
+                new ProjectSimulationScheduler.Listener() {
+                    @Override
+                    public void onResult(SimulationAnalysisResult result) {
+                        pendingResults.add(result);
+                        scheduleDrain();
                     }
-                }
-                return null;
-            }
 
-            @Override
-            protected void process(List<Integer> chunks) {
-                if (!chunks.isEmpty()) {
-                    int value = chunks.get(chunks.size() - 1);
-                    progressBar.setValue(value);
-                    statusLabel.setText("Analyzing... (" + value + "/" + progressBar.getMaximum() + ")");
-                }
-            }
+                    @Override
+                    public void onProgress(int methodsDone, int methodsTotal) {
+                        progressDone.set(methodsDone);
+                        scheduleDrain();
+                    }
 
-            @Override
-            protected void done() {
-                setAnalyzing(false);
-                updateStatusWithCounts();
+                    @Override
+                    public void onFinished(ProjectSimulationScheduler.Run run) {
+                        SwingUtilities.invokeLater(() -> {
+                            drainPending();
+                            if (currentRun == run) {
+                                currentRun = null;
+                                setAnalyzing(false);
+                            }
+                            updateStatusWithCounts();
+                            if (run.isCancelled()) {
+                                statusLabel.setText(statusLabel.getText() + " | Cancelled");
+                            } else if (run.getMethodsSkipped() > 0) {
+                                statusLabel.setText(statusLabel.getText() + " | " + run.getMethodsSkipped()
+                                        + " methods over budget skipped");
+                            }
+                        });
+                    }
+                });
+        cancelButton.setVisible(true);
+    }
+
+    private void cancelAnalysis() {
+        ProjectSimulationScheduler.Run run = currentRun;
+        if (run != null) {
+            run.cancel();
+            statusLabel.setText("Cancelling...");
+        }
+    }
+
+    /** Coalesces worker-thread results and progress into one EDT update at a time. */
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drainPending);
+        }
+    }
+
+    private void drainPending() {
+        drainScheduled.set(false);
+        boolean added = false;
+        SimulationAnalysisResult result;
+        while ((result = pendingResults.poll()) != null) {
+            for (SimulationFinding finding : result.getFindings()) {
+                allFindings.add(new FindingEntry(finding, result.getMethod()));
             }
-        };
-        worker.execute();
+            added = true;
+        }
+        if (added) {
+            applyFilter();
+        }
+        if (currentRun != null) {
+            int value = progressDone.get();
+            progressBar.setValue(value);
+            statusLabel.setText("Analyzing... (" + value + "/" + progressBar.getMaximum() + ") | Findings: "
+                    + allFindings.size());
+        }
     }
 
     private void addFindingsFromResult(SimulationAnalysisResult result) {
@@ -424,6 +484,7 @@ public class SimulationPanel extends ThemedJPanel {
         analyzeCurrentButton.setEnabled(!analyzing);
         analyzeAllButton.setEnabled(!analyzing);
         progressBar.setVisible(analyzing);
+        cancelButton.setVisible(analyzing && currentRun != null);
         if (!analyzing) {
             progressBar.setValue(0);
         }
@@ -72,6 +72,7 @@ public final class DebugManager implements DebugListener {
         disconnect();
         session = DebugSession.attach(host, port, this, Settings.getInstance().isDebuggerSuspendAll(),
                 AGENT_THREAD_PREFIX);
+        session.setPrefetchDepth(Settings.getInstance().getDebuggerPrefetchDepth());
         BreakpointService.getInstance().reinstall();
         session.start();
         postSession(true);
@@ -128,6 +129,19 @@ public final class DebugManager implements DebugListener {
         }
     }
 
+    /** Levels of object fields fetched with a paused frame's variables, so expanding them needs no round trip. */
+    public int getPrefetchDepth() {
+        return Settings.getInstance().getDebuggerPrefetchDepth();
+    }
+
+    public void setPrefetchDepth(int depth) {
+        Settings.getInstance().setDebuggerPrefetchDepth(depth);
+        DebugSession s = session;
+        if (s != null) {
+            s.setPrefetchDepth(depth);
+        }
+    }
+
     // ---- breakpoints / control ----------------------------------------------------------------------
 
     public void addBreakpoint(String className, String methodName, String methodDesc, long pc) {
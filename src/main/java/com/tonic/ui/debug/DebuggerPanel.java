@@ -24,10 +24,12 @@ import javax.swing.JTable;
 import javax.swing.JToolBar;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The Debugger tool window (right dock): a step toolbar (Resume / Stop), the paused thread's call stack, and a
@@ -49,6 +51,8 @@ public final class DebuggerPanel extends JPanel {
     private final JTable varsTable = new JTable(varsModel);
     private final JButton resumeButton = new JButton("Resume");
     private final JLabel status = new JLabel("Running.");
+    /** Bumped per frame selection and on resume, so a late variables read for an older one is dropped. */
+    private int varsRequest;
 
     public DebuggerPanel(MainFrame mainFrame) {
         super(new BorderLayout());
@@ -140,6 +144,7 @@ public final class DebuggerPanel extends JPanel {
     }
 
     private void onResumed() {
+        varsRequest++;
         status.setText("Running.");
         updateButtons(false);
         stackModel.clear();
@@ -154,9 +159,27 @@ public final class DebuggerPanel extends JPanel {
         mainFrame.navigateToDebugLocation(frame.getLocation());
         EventBus.getInstance().post(new DebugFrameSelectedEvent(this, frame));
         varsModel.setRowCount(0);
-        for (DebugVariable v : DebugManager.getInstance().variables(frame.getIndex())) {
-            varsModel.addRow(new Object[]{v.getName(), prettyType(v.getTypeDescriptor()), v.getDisplay()});
-        }
+        int request = ++varsRequest;
+        // Reading the frame's values is a JDWP round trip (a slow one over a remote link): keep it off the EDT
+        new SwingWorker<List<DebugVariable>, Void>() {
+            @Override
+            protected List<DebugVariable> doInBackground() {
+                return DebugManager.getInstance().variables(frame.getIndex());
+            }
+
+            @Override
+            protected void done() {
+                if (request != varsRequest) {
+                    return;
+                }
+                try {
+                    for (DebugVariable v : get()) {
+                        varsModel.addRow(new Object[]{v.getName(), prettyType(v.getTypeDescriptor()), v.getDisplay()});
+                    }
+                } catch (InterruptedException | ExecutionException ignored) {
+                }
+            }
+        }.execute();
     }
 
     private void updateButtons(boolean paused) {
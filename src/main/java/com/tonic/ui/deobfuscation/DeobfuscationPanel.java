@@ -11,6 +11,7 @@ import com.tonic.deobfuscation.model.SuspiciousString;
 import com.tonic.deobfuscation.patch.ConstantPoolPatcher;
 import com.tonic.ui.core.component.ThemedJPanel;
 import com.tonic.ui.core.constants.UIConstants;
+import com.tonic.model.LayeredClassPool;
 import com.tonic.model.ProjectModel;
 import com.tonic.ui.theme.JStudioTheme;
 
@@ -268,7 +269,9 @@ public class DeobfuscationPanel extends ThemedJPanel {
         }
 
         ClassPool pool = projectModel.getClassPool();
-        for (ClassFile cf : pool.getClasses()) {
+        List<ClassFile> classes = pool instanceof LayeredClassPool
+                ? ((LayeredClassPool) pool).ownClasses() : pool.getClasses();
+        for (ClassFile cf : classes) {
             classSelector.addItem(cf);
         }
     }
@@ -369,28 +372,27 @@ public class DeobfuscationPanel extends ThemedJPanel {
 
         SwingWorker<Void, Integer> worker = new SwingWorker<>() {
             @Override
-            protected Void doInBackground() {
+            protected Void doInBackground() throws InterruptedException {
                 deobfuscationService.initialize();
 
+                List<Integer> pendingRows = new ArrayList<>();
+                List<DeobfuscationResult> pending = new ArrayList<>();
                 for (int row : rows) {
                     DeobfuscationResult result = results.get(row);
                     if (result.isSuccess()) continue;
+                    pendingRows.add(row);
+                    pending.add(result);
+                }
 
-                    DeobfuscationResult newResult = deobfuscationService.decryptString(
-                        result.getClassName(),
-                        result.getConstantPoolIndex(),
-                        result.getOriginalValue(),
-                        decryptor
-                    );
-
+                deobfuscationService.decryptAll(pending, decryptor, (newResult, i) -> {
+                    DeobfuscationResult result = pending.get(i);
                     result.setSuccess(newResult.isSuccess());
                     result.setDecryptedValue(newResult.getDecryptedValue());
                     result.setDecryptorUsed(newResult.getDecryptorUsed());
                     result.setErrorMessage(newResult.getErrorMessage());
                     result.setExecutionTimeMs(newResult.getExecutionTimeMs());
-
-                    publish(row);
-                }
+                    publish(pendingRows.get(i));
+                });
                 return null;
             }
 
@@ -3,11 +3,15 @@ package com.tonic.ui.editor.bytecode;
 import com.tonic.parser.MethodEntry;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.MethodEntryModel;
+import com.tonic.live.LiveSession;
+import com.tonic.ui.MainFrame;
 import com.tonic.ui.debug.Breakpoint;
 import com.tonic.ui.debug.BreakpointGutterController;
 import com.tonic.ui.editor.dual.BcLocation;
 import com.tonic.ui.editor.dual.BytecodeLineIndex;
 import com.tonic.ui.editor.view.AbstractTextView;
+import com.tonic.ui.live.LiveAttachService;
+import com.tonic.ui.live.LiveProbeService;
 import com.tonic.ui.theme.*;
 
 import org.fife.ui.rsyntaxtextarea.AbstractTokenMakerFactory;
@@ -18,6 +22,7 @@ import org.fife.ui.rsyntaxtextarea.TokenMakerFactory;
 import javax.swing.BorderFactory;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -131,7 +136,10 @@ public class BytecodeView extends AbstractTextView {
         });
     }
 
-    /** Right-click on an instruction line offers Add/Remove Breakpoint while the debugger is connected. */
+    /**
+     * Right-click on an instruction line offers Add/Remove Breakpoint while the debugger is connected, and
+     * Add/Remove Logpoint while attached to an agent that supports them.
+     */
     private void maybeShowBreakpointMenu(MouseEvent e) {
         if (!e.isPopupTrigger()) {
             return;
@@ -154,6 +162,23 @@ public class BytecodeView extends AbstractTextView {
         item.setForeground(JStudioTheme.getTextPrimary());
         item.addActionListener(ev -> breakpointGutter.toggle(bp));
         menu.add(item);
+        LiveSession live = LiveAttachService.getInstance().getSession();
+        MainFrame frame = (MainFrame) SwingUtilities.getAncestorOfClass(MainFrame.class, this);
+        if (live != null && live.supportsLogpoints() && frame != null) {
+            boolean hasLogpoint = LiveProbeService.get().logpointAt(bp.className.replace('.', '/'),
+                    bp.methodName, bp.methodDesc, (int) bp.pc) != null;
+            JMenuItem lpItem = new JMenuItem(hasLogpoint ? "Remove Logpoint" : "Add Logpoint...");
+            lpItem.setBackground(JStudioTheme.getBgSecondary());
+            lpItem.setForeground(JStudioTheme.getTextPrimary());
+            lpItem.addActionListener(ev -> {
+                if (hasLogpoint) {
+                    frame.removeLiveLogpoint(bp);
+                } else {
+                    frame.addLiveLogpoint(bp);
+                }
+            });
+            menu.add(lpItem);
+        }
         menu.show(textArea, e.getX(), e.getY());
     }
 
@@ -126,10 +126,8 @@ public class CallGraphView extends BaseGraphView {
         if (callGraph == null) {
             ClassPool pool = new ClassPool(true);
             if (projectModel != null && projectModel.getClassPool() != null) {
-                for (ClassFile cf : projectModel.getClassPool().getClasses()) {
-                    if (projectModel.isUserClass(cf.getClassName())) {
-                        pool.put(cf);
-                    }
+                for (ClassEntryModel entry : projectModel.getUserClasses()) {
+                    pool.put(entry.getClassFile());
                 }
             } else {
                 pool.put(classEntry.getClassFile());
@@ -0,0 +1,505 @@
+package com.tonic.ui.editor.hex;
+
+import com.tonic.ui.theme.JStudioTheme;
+
+import javax.swing.AbstractAction;
+import javax.swing.InputMap;
+import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.nio.ByteBuffer;
+
+/**
+ * Virtualized hex + ASCII dump. Only the rows intersecting the clip are painted, straight from the backing
+ * {@link ByteBuffer} (a wrapped array or a mapped file) into one reused {@code char[]} row, so the cost of a
+ * paint is independent of the data size and nothing is ever formatted into a document. Selection is a pair of
+ * byte offsets (anchor/caret); goto-offset and pattern search ({@link HexSearch}) work on the raw bytes.
+ * Host in a {@link javax.swing.JScrollPane}; the component sizes itself from the row count.
+ */
+public class HexDumpComponent extends JComponent implements Scrollable {
+
+    public static final int BYTES_PER_LINE = 16;
+
+    /** "XXXXXXXX  " offset column. */
+    private static final int HEX_COLUMN = 10;
+    /** 16 x "XX " plus the mid-row gap. */
+    private static final int HEX_WIDTH = BYTES_PER_LINE * 3 + 1;
+    private static final int ASCII_COLUMN = HEX_COLUMN + HEX_WIDTH + 1;
+    private static final int ROW_CHARS = ASCII_COLUMN + BYTES_PER_LINE;
+    private static final int PAD = 4;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private ByteBuffer data = ByteBuffer.allocate(0);
+    private int highlightLength;
+
+    private int anchor = -1;
+    private int caret = -1;
+    private HexSearch.Pattern lastPattern;
+
+    private final char[] row = new char[ROW_CHARS];
+    private int charWidth;
+    private int rowHeight;
+    private int ascent;
+
+    public HexDumpComponent() {
+        setOpaque(true);
+        setFocusable(true);
+        setFont(JStudioTheme.getCodeFont(12));
+        installMouse();
+        installKeys();
+    }
+
+    /** Shows {@code bytes} without copying them. */
+    public void setData(byte[] bytes) {
+        setData(ByteBuffer.wrap(bytes == null ? new byte[0] : bytes));
+    }
+
+    /** Shows the buffer's contents between 0 and its limit, read by absolute index (position is ignored). */
+    public void setData(ByteBuffer buffer) {
+        this.data = buffer;
+        this.anchor = -1;
+        this.caret = -1;
+        revalidate();
+        repaint();
+    }
+
+    public int getDataLength() {
+        return data.limit();
+    }
+
+    /** Draws the first {@code length} bytes in the warning color (e.g. the class file magic). */
+    public void setHighlightLength(int length) {
+        this.highlightLength = length;
+        repaint();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        FontMetrics fm = getFontMetrics(font);
+        charWidth = fm.charWidth('0');
+        rowHeight = fm.getHeight();
+        ascent = fm.getAscent();
+        revalidate();
+        repaint();
+    }
+
+    /** Header line matching the column layout, for a label above the scroll pane. */
+    public static String headerText() {
+        StringBuilder sb = new StringBuilder("Offset    ");
+        for (int i = 0; i < BYTES_PER_LINE; i++) {
+            sb.append(HEX_DIGITS[i >> 4]).append(HEX_DIGITS[i & 0xF]).append(' ');
+            if (i == 7) {
+                sb.append(' ');
+            }
+        }
+        return sb.append(" ASCII").toString();
+    }
+
+    // ---- Geometry ----
+
+    private int rowCount() {
+        return (data.limit() + BYTES_PER_LINE - 1) / BYTES_PER_LINE;
+    }
+
+    private static int hexColumnOf(int index) {
+        return HEX_COLUMN + index * 3 + (index >= 8 ? 1 : 0);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        long height = (long) rowCount() * rowHeight + PAD * 2L;
+        return new Dimension(ROW_CHARS * charWidth + PAD * 2, (int) Math.min(Integer.MAX_VALUE, height));
+    }
+
+    /** Byte offset under {@code p}, clamped to the data, or -1 when empty. */
+    private int offsetAt(Point p) {
+        int length = data.limit();
+        if (length == 0) {
+            return -1;
+        }
+        int line = Math.max(0, (p.y - PAD) / rowHeight);
+        int col = Math.max(0, (p.x - PAD) / charWidth);
+        int index;
+        if (col >= ASCII_COLUMN) {
+            index = col - ASCII_COLUMN;
+        } else if (col >= HEX_COLUMN) {
+            int rel = col - HEX_COLUMN;
+            index = rel < 24 ? rel / 3 : (rel - 1) / 3;
+        } else {
+            index = 0;
+        }
+        index = Math.min(BYTES_PER_LINE - 1, index);
+        long offset = (long) line * BYTES_PER_LINE + index;
+        return (int) Math.min(length - 1, offset);
+    }
+
+    private Rectangle rowBounds(int offset) {
+        int line = offset / BYTES_PER_LINE;
+        return new Rectangle(0, PAD + line * rowHeight, getWidth(), rowHeight);
+    }
+
+    // ---- Painting ----
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(JStudioTheme.getBgTertiary());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int rows = rowCount();
+        if (rows == 0) {
+            return;
+        }
+        g.setFont(getFont());
+
+        int first = Math.max(0, (clip.y - PAD) / rowHeight);
+        int last = Math.min(rows - 1, (clip.y + clip.height - PAD) / rowHeight);
+        int selStart = getSelectionStart();
+        int selEnd = getSelectionEnd();
+
+        Color offsetColor = JStudioTheme.getSuccess();
+        Color hexColor = JStudioTheme.getTextPrimary();
+        Color asciiColor = JStudioTheme.getAccent();
+        Color highlightColor = JStudioTheme.getWarning();
+        Color selectionColor = JStudioTheme.getSelection();
+
+        for (int line = first; line <= last; line++) {
+            int base = line * BYTES_PER_LINE;
+            int count = Math.min(BYTES_PER_LINE, data.limit() - base);
+            int y = PAD + line * rowHeight;
+            int baseline = y + ascent;
+
+            if (selStart >= 0 && selStart < base + count && selEnd >= base) {
+                int from = Math.max(selStart, base) - base;
+                int to = Math.min(selEnd, base + count - 1) - base;
+                g.setColor(selectionColor);
+                int hx = PAD + hexColumnOf(from) * charWidth;
+                g.fillRect(hx, y, (hexColumnOf(to) + 2) * charWidth + PAD - hx, rowHeight);
+                int ax = PAD + (ASCII_COLUMN + from) * charWidth;
+                g.fillRect(ax, y, (to - from + 1) * charWidth, rowHeight);
+            }
+
+            fillRow(base, count);
+            g.setColor(offsetColor);
+            g.drawChars(row, 0, HEX_COLUMN, PAD, baseline);
+            if (base < highlightLength) {
+                for (int i = 0; i < count; i++) {
+                    g.setColor(base + i < highlightLength ? highlightColor : hexColor);
+                    g.drawChars(row, hexColumnOf(i), 2, PAD + hexColumnOf(i) * charWidth, baseline);
+                }
+            } else {
+                g.setColor(hexColor);
+                g.drawChars(row, HEX_COLUMN, HEX_WIDTH, PAD + HEX_COLUMN * charWidth, baseline);
+            }
+            g.setColor(asciiColor);
+            g.drawChars(row, ASCII_COLUMN, BYTES_PER_LINE, PAD + ASCII_COLUMN * charWidth, baseline);
+        }
+    }
+
+    /** Formats one row into {@link #row}. */
+    private void fillRow(int base, int count) {
+        int v = base;
+        for (int i = 7; i >= 0; i--) {
+            row[i] = HEX_DIGITS[v & 0xF];
+            v >>>= 4;
+        }
+        row[8] = ' ';
+        row[9] = ' ';
+        for (int i = HEX_COLUMN; i < ROW_CHARS; i++) {
+            row[i] = ' ';
+        }
+        for (int i = 0; i < count; i++) {
+            int b = data.get(base + i) & 0xFF;
+            int col = hexColumnOf(i);
+            row[col] = HEX_DIGITS[b >> 4];
+            row[col + 1] = HEX_DIGITS[b & 0xF];
+            row[ASCII_COLUMN + i] = (b >= 32 && b < 127) ? (char) b : '.';
+        }
+    }
+
+    // ---- Selection & navigation ----
+
+    public int getSelectionStart() {
+        return anchor < 0 ? -1 : Math.min(anchor, caret);
+    }
+
+    /** Inclusive end of the selection, or -1. */
+    public int getSelectionEnd() {
+        return anchor < 0 ? -1 : Math.max(anchor, caret);
+    }
+
+    public int getCaretOffset() {
+        return caret;
+    }
+
+    /** Selects {@code [start, start + length)} and scrolls it into view. */
+    public void select(int start, int length) {
+        int limit = data.limit();
+        if (limit == 0 || start < 0 || start >= limit) {
+            return;
+        }
+        anchor = start;
+        caret = Math.min(limit - 1, start + Math.max(1, length) - 1);
+        scrollRectToVisible(rowBounds(anchor));
+        repaint();
+    }
+
+    /** Moves the caret to {@code offset} (clamped) and scrolls to it. */
+    public void goToOffset(int offset) {
+        int limit = data.limit();
+        if (limit == 0) {
+            return;
+        }
+        select(Math.max(0, Math.min(limit - 1, offset)), 1);
+    }
+
+    /** Scrolls so that the 1-based dump {@code line} is visible. */
+    public void goToRow(int line) {
+        goToOffset((line - 1) * BYTES_PER_LINE);
+    }
+
+    private void moveCaret(int delta, boolean extend) {
+        int limit = data.limit();
+        if (limit == 0) {
+            return;
+        }
+        int from = caret < 0 ? 0 : caret;
+        int target = (int) Math.max(0, Math.min(limit - 1L, (long) from + delta));
+        if (!extend || anchor < 0) {
+            anchor = target;
+        }
+        caret = target;
+        scrollRectToVisible(rowBounds(caret));
+        repaint();
+    }
+
+    /**
+     * Searches forward (wrapping) from just after the caret and selects the match.
+     *
+     * @return true if found
+     */
+    public boolean find(HexSearch.Pattern pattern) {
+        if (pattern == null) {
+            return false;
+        }
+        lastPattern = pattern;
+        int from = caret < 0 ? 0 : getSelectionStart() + 1;
+        int pos = HexSearch.indexOf(data, pattern, from);
+        if (pos < 0 && from > 0) {
+            pos = HexSearch.indexOf(data, pattern, 0);
+        }
+        if (pos >= 0) {
+            select(pos, pattern.length());
+            return true;
+        }
+        return false;
+    }
+
+    /** Repeats the last {@link #find} backwards (wrapping). */
+    public boolean findPrevious() {
+        if (lastPattern == null) {
+            return false;
+        }
+        int from = caret < 0 ? data.limit() : getSelectionStart() - 1;
+        int pos = HexSearch.lastIndexOf(data, lastPattern, from);
+        if (pos < 0) {
+            pos = HexSearch.lastIndexOf(data, lastPattern, data.limit());
+        }
+        if (pos >= 0) {
+            select(pos, lastPattern.length());
+            return true;
+        }
+        return false;
+    }
+
+    public boolean findNext() {
+        return find(lastPattern);
+    }
+
+    /** Prompts for a hex/ASCII pattern and selects the next match. */
+    public void showFindPrompt() {
+        String input = JOptionPane.showInputDialog(this,
+                "Find (hex bytes like 'CA FE ?? BE', or \"text\"):", "Find", JOptionPane.PLAIN_MESSAGE);
+        if (input == null || input.isEmpty()) {
+            return;
+        }
+        HexSearch.Pattern pattern = HexSearch.parse(input);
+        if (pattern == null) {
+            JOptionPane.showMessageDialog(this, "Invalid pattern: " + input, "Find", JOptionPane.WARNING_MESSAGE);
+        } else if (!find(pattern)) {
+            JOptionPane.showMessageDialog(this, "Pattern not found.", "Find", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /** Prompts for a hex (or decimal with a {@code #} prefix) offset and jumps to it. */
+    public void showGoToPrompt() {
+        String input = JOptionPane.showInputDialog(this, "Go to offset (hex, or #decimal):", "Go to Offset",
+                JOptionPane.PLAIN_MESSAGE);
+        if (input == null || input.trim().isEmpty()) {
+            return;
+        }
+        String text = input.trim();
+        try {
+            int offset;
+            if (text.startsWith("#")) {
+                offset = Integer.parseInt(text.substring(1));
+            } else {
+                if (text.startsWith("0x") || text.startsWith("0X")) {
+                    text = text.substring(2);
+                }
+                offset = Integer.parseUnsignedInt(text, 16);
+            }
+            goToOffset(offset);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid offset: " + input, "Go to Offset",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    // ---- Text export (explicit, bounded to what was asked for) ----
+
+    /** The selected bytes as space-separated hex, or null when nothing is selected. */
+    public String getSelectedHex() {
+        int start = getSelectionStart();
+        if (start < 0) {
+            return null;
+        }
+        int end = getSelectionEnd();
+        StringBuilder sb = new StringBuilder((end - start + 1) * 3);
+        for (int i = start; i <= end; i++) {
+            if (i > start) {
+                sb.append(' ');
+            }
+            int b = data.get(i) & 0xFF;
+            sb.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return sb.toString();
+    }
+
+    /** Formats rows covering {@code [start, end)} in the classic dump layout. */
+    public String formatDump(int start, int end) {
+        int from = Math.max(0, start) / BYTES_PER_LINE * BYTES_PER_LINE;
+        int to = Math.min(data.limit(), end);
+        StringBuilder sb = new StringBuilder(Math.max(0, (to - from) / BYTES_PER_LINE + 1) * (ROW_CHARS + 1));
+        for (int base = from; base < to; base += BYTES_PER_LINE) {
+            fillRow(base, Math.min(BYTES_PER_LINE, to - base));
+            sb.append(row).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // ---- Input ----
+
+    private void installMouse() {
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                int offset = offsetAt(e.getPoint());
+                if (offset < 0) {
+                    return;
+                }
+                if (!e.isShiftDown() || anchor < 0) {
+                    anchor = offset;
+                }
+                caret = offset;
+                repaint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                int offset = offsetAt(e.getPoint());
+                if (offset < 0 || anchor < 0) {
+                    return;
+                }
+                caret = offset;
+                scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                repaint();
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    private void installKeys() {
+        bindMove("left", KeyEvent.VK_LEFT, -1);
+        bindMove("right", KeyEvent.VK_RIGHT, 1);
+        bindMove("up", KeyEvent.VK_UP, -BYTES_PER_LINE);
+        bindMove("down", KeyEvent.VK_DOWN, BYTES_PER_LINE);
+        bindMove("home", KeyEvent.VK_HOME, Integer.MIN_VALUE / 2);
+        bindMove("end", KeyEvent.VK_END, Integer.MAX_VALUE / 2);
+        bindPage("pageUp", KeyEvent.VK_PAGE_UP, -1);
+        bindPage("pageDown", KeyEvent.VK_PAGE_DOWN, 1);
+        bind("goto", KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK), this::showGoToPrompt);
+        bind("findNext", KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), this::findNext);
+        bind("findPrevious", KeyStroke.getKeyStroke(KeyEvent.VK_F3, InputEvent.SHIFT_DOWN_MASK), this::findPrevious);
+    }
+
+    private void bindMove(String name, int key, int delta) {
+        bind(name, KeyStroke.getKeyStroke(key, 0), () -> moveCaret(delta, false));
+        bind(name + ".extend", KeyStroke.getKeyStroke(key, InputEvent.SHIFT_DOWN_MASK), () -> moveCaret(delta, true));
+    }
+
+    private void bindPage(String name, int key, int direction) {
+        Runnable page = () -> {
+            int rows = Math.max(1, getVisibleRect().height / rowHeight - 1);
+            moveCaret(direction * rows * BYTES_PER_LINE, false);
+        };
+        bind(name, KeyStroke.getKeyStroke(key, 0), page);
+    }
+
+    private void bind(String name, KeyStroke stroke, Runnable action) {
+        InputMap inputMap = getInputMap(JComponent.WHEN_FOCUSED);
+        inputMap.put(stroke, name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    // ---- Scrollable ----
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? rowHeight : charWidth;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL) {
+            return Math.max(rowHeight, visibleRect.height - rowHeight);
+        }
+        return Math.max(charWidth, visibleRect.width - charWidth);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() != null && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() != null && getParent().getHeight() > getPreferredSize().height;
+    }
+}
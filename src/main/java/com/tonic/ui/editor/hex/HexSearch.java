@@ -0,0 +1,113 @@
+package com.tonic.ui.editor.hex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-pattern parsing and search over raw buffers for the hex views. Patterns are either hex bytes
+ * ({@code "CA FE BA BE"}, {@code "cafebabe"}, with {@code ??} as a single-byte wildcard) or a quoted
+ * string ({@code "\"main\""}) matched as its UTF-8 bytes. Searches read the buffer in place by absolute
+ * index, so nothing is copied or formatted.
+ */
+public final class HexSearch {
+
+    private HexSearch() {
+    }
+
+    /** A parsed byte pattern; {@code wildcard[i]} means position {@code i} matches any byte. */
+    public static final class Pattern {
+        final byte[] bytes;
+        final boolean[] wildcard;
+
+        Pattern(byte[] bytes, boolean[] wildcard) {
+            this.bytes = bytes;
+            this.wildcard = wildcard;
+        }
+
+        public int length() {
+            return bytes.length;
+        }
+    }
+
+    /**
+     * Parses user input into a pattern.
+     *
+     * @return the pattern, or {@code null} if the input is empty or not valid hex
+     */
+    public static Pattern parse(String input) {
+        if (input == null) {
+            return null;
+        }
+        String text = input.trim();
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            byte[] bytes = text.substring(1, text.length() - 1).getBytes(StandardCharsets.UTF_8);
+            return bytes.length == 0 ? null : new Pattern(bytes, new boolean[bytes.length]);
+        }
+        String compact = text.replaceAll("[\\s,]", "");
+        if (compact.startsWith("0x") || compact.startsWith("0X")) {
+            compact = compact.substring(2);
+        }
+        if (compact.isEmpty() || (compact.length() & 1) != 0) {
+            return null;
+        }
+        int n = compact.length() / 2;
+        byte[] bytes = new byte[n];
+        boolean[] wildcard = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            char hi = compact.charAt(i * 2);
+            char lo = compact.charAt(i * 2 + 1);
+            if (hi == '?' && lo == '?') {
+                wildcard[i] = true;
+                continue;
+            }
+            int h = Character.digit(hi, 16);
+            int l = Character.digit(lo, 16);
+            if (h < 0 || l < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((h << 4) | l);
+        }
+        return new Pattern(bytes, wildcard);
+    }
+
+    /**
+     * Finds the first match of {@code pattern} in {@code buffer} at or after {@code from}.
+     *
+     * @return the absolute offset of the match, or -1
+     */
+    public static int indexOf(ByteBuffer buffer, Pattern pattern, int from) {
+        int limit = buffer.limit() - pattern.length();
+        for (int i = Math.max(0, from); i <= limit; i++) {
+            if (matchesAt(buffer, pattern, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last match of {@code pattern} in {@code buffer} starting at or before {@code from}.
+     *
+     * @return the absolute offset of the match, or -1
+     */
+    public static int lastIndexOf(ByteBuffer buffer, Pattern pattern, int from) {
+        int start = Math.min(from, buffer.limit() - pattern.length());
+        for (int i = start; i >= 0; i--) {
+            if (matchesAt(buffer, pattern, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matchesAt(ByteBuffer buffer, Pattern pattern, int at) {
+        byte[] bytes = pattern.bytes;
+        boolean[] wildcard = pattern.wildcard;
+        for (int j = 0; j < bytes.length; j++) {
+            if (!wildcard[j] && buffer.get(at + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
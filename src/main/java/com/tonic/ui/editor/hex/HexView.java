@@ -6,43 +6,30 @@ import com.tonic.ui.editor.view.AbstractEditorView;
 import com.tonic.ui.theme.JStudioTheme;
 
 import javax.swing.*;
-import javax.swing.text.*;
 import java.awt.*;
-import java.awt.datatransfer.StringSelection;
 
 /**
- * Hex view showing raw class file bytes in traditional hex dump format.
+ * Hex view showing raw class file bytes in traditional hex dump format. Rendering is virtualized by
+ * {@link HexDumpComponent}, so only the visible rows are ever formatted.
  */
 public class HexView extends AbstractEditorView {
 
+    /** Length of the class file magic, drawn in the highlight color. */
+    private static final int MAGIC_LENGTH = 4;
+
     private final ClassEntryModel classEntry;
-    private final JTextPane textPane;
+    private final HexDumpComponent hexDump;
     private final JScrollPane scrollPane;
     private final JPanel headerPanel;
     private final JLabel headerLabel;
 
-    private static final int BYTES_PER_LINE = 16;
-
-    // Style names
-    private static final String STYLE_OFFSET = "offset";
-    private static final String STYLE_HEX = "hex";
-    private static final String STYLE_ASCII = "ascii";
-    private static final String STYLE_SEPARATOR = "separator";
-    private static final String STYLE_HIGHLIGHT = "highlight";
-
     public HexView(ClassEntryModel classEntry) {
         this.classEntry = classEntry;
 
-        textPane = new JTextPane();
-        textPane.setEditable(false);
-        textPane.setFont(JStudioTheme.getCodeFont(12));
-        textPane.setBackground(JStudioTheme.getBgTertiary());
-        textPane.setForeground(JStudioTheme.getTextPrimary());
-        textPane.setCaretColor(JStudioTheme.getTextPrimary());
+        hexDump = new HexDumpComponent();
+        hexDump.setHighlightLength(MAGIC_LENGTH);
 
-        setupStyles();
-
-        scrollPane = new JScrollPane(textPane);
+        scrollPane = new JScrollPane(hexDump);
         scrollPane.setBorder(null);
         scrollPane.getViewport().setBackground(JStudioTheme.getBgTertiary());
 
@@ -51,7 +38,7 @@ public class HexView extends AbstractEditorView {
         headerPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         headerPanel.setBackground(JStudioTheme.getBgSecondary());
         headerPanel.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, JStudioTheme.getBorder()));
-        headerLabel = new JLabel("  Offset    00 01 02 03 04 05 06 07  08 09 0A 0B 0C 0D 0E 0F   ASCII");
+        headerLabel = new JLabel(HexDumpComponent.headerText());
         headerLabel.setFont(JStudioTheme.getCodeFont(12));
         headerLabel.setForeground(JStudioTheme.getTextSecondary());
         headerPanel.add(headerLabel);
@@ -60,42 +47,13 @@ public class HexView extends AbstractEditorView {
 
     @Override
     protected void applyChildThemes() {
-        textPane.setBackground(JStudioTheme.getBgTertiary());
-        textPane.setForeground(JStudioTheme.getTextPrimary());
-        textPane.setCaretColor(JStudioTheme.getTextPrimary());
-
         scrollPane.getViewport().setBackground(JStudioTheme.getBgTertiary());
 
         headerPanel.setBackground(JStudioTheme.getBgSecondary());
         headerPanel.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, JStudioTheme.getBorder()));
         headerLabel.setForeground(JStudioTheme.getTextSecondary());
 
-        setupStyles();
-        repaint();
-    }
-
-    private void setupStyles() {
-        StyledDocument doc = textPane.getStyledDocument();
-
-        // Offset style (address column)
-        Style offsetStyle = doc.addStyle(STYLE_OFFSET, null);
-        StyleConstants.setForeground(offsetStyle, JStudioTheme.getSuccess());
-
-        // Hex bytes style
-        Style hexStyle = doc.addStyle(STYLE_HEX, null);
-        StyleConstants.setForeground(hexStyle, JStudioTheme.getTextPrimary());
-
-        // ASCII style
-        Style asciiStyle = doc.addStyle(STYLE_ASCII, null);
-        StyleConstants.setForeground(asciiStyle, JStudioTheme.getAccent());
-
-        // Separator style
-        Style separatorStyle = doc.addStyle(STYLE_SEPARATOR, null);
-        StyleConstants.setForeground(separatorStyle, JStudioTheme.getTextSecondary());
-
-        // Highlight style for special bytes (magic number, etc.)
-        Style highlightStyle = doc.addStyle(STYLE_HIGHLIGHT, null);
-        StyleConstants.setForeground(highlightStyle, JStudioTheme.getWarning());
+        hexDump.repaint();
     }
 
     @Override
@@ -106,7 +64,8 @@ public class HexView extends AbstractEditorView {
 
         cancelCurrentWorker();
 
-        textPane.setText("");
+        hexDump.setData(new byte[0]);
+        headerLabel.setText(HexDumpComponent.headerText());
         loadingOverlay.showLoading("Loading hex dump...");
 
         SwingWorker<byte[], Void> worker = new SwingWorker<>() {
@@ -129,19 +88,13 @@ public class HexView extends AbstractEditorView {
                 try {
                     byte[] bytes = get();
                     if (bytes != null) {
-                        displayHexDump(bytes);
+                        hexDump.setData(bytes);
                         loaded = true;
                     } else {
-                        StyledDocument doc = textPane.getStyledDocument();
-                        doc.insertString(0, "Failed to read class file bytes", null);
+                        headerLabel.setText("Failed to read class file bytes");
                     }
                 } catch (Exception e) {
-                    try {
-                        StyledDocument doc = textPane.getStyledDocument();
-                        doc.insertString(0, "Failed to read class file bytes: " + e.getMessage(), null);
-                    } catch (BadLocationException ex) {
-                        // Ignore
-                    }
+                    headerLabel.setText("Failed to read class file bytes: " + e.getMessage());
                 }
             }
         };
@@ -149,96 +102,37 @@ public class HexView extends AbstractEditorView {
         worker.execute();
     }
 
-    private void displayHexDump(byte[] bytes) {
-        StyledDocument doc = textPane.getStyledDocument();
-
-        try {
-            for (int offset = 0; offset < bytes.length; offset += BYTES_PER_LINE) {
-                // Offset column
-                String offsetStr = String.format("%08X  ", offset);
-                doc.insertString(doc.getLength(), offsetStr, doc.getStyle(STYLE_OFFSET));
-
-                // Hex bytes
-                StringBuilder hexPart = new StringBuilder();
-                StringBuilder asciiPart = new StringBuilder();
-
-                for (int i = 0; i < BYTES_PER_LINE; i++) {
-                    int byteOffset = offset + i;
-                    if (byteOffset < bytes.length) {
-                        int b = bytes[byteOffset] & 0xFF;
-                        hexPart.append(String.format("%02X ", b));
-
-                        // ASCII representation
-                        if (b >= 32 && b < 127) {
-                            asciiPart.append((char) b);
-                        } else {
-                            asciiPart.append('.');
-                        }
-                    } else {
-                        hexPart.append("   ");
-                        asciiPart.append(' ');
-                    }
-
-                    // Add extra space after 8 bytes for readability
-                    if (i == 7) {
-                        hexPart.append(' ');
-                    }
-                }
-
-                // Choose style based on position (highlight magic number at start)
-                String style = (offset < 4) ? STYLE_HIGHLIGHT : STYLE_HEX;
-                doc.insertString(doc.getLength(), hexPart.toString(), doc.getStyle(style));
-
-                // Separator
-                doc.insertString(doc.getLength(), " ", doc.getStyle(STYLE_SEPARATOR));
-
-                // ASCII column
-                doc.insertString(doc.getLength(), asciiPart.toString(), doc.getStyle(STYLE_ASCII));
-
-                // Newline
-                doc.insertString(doc.getLength(), "\n", null);
-            }
-
-            // Scroll to top
-            textPane.setCaretPosition(0);
-
-        } catch (BadLocationException e) {
-            // Ignore
-        }
-    }
-
     /**
-     * Get the current text.
+     * Get the full dump as text. Formats every row, so only call on explicit export.
      */
     @Override
     public String getText() {
-        return textPane.getText();
+        return hexDump.formatDump(0, hexDump.getDataLength());
     }
 
     /**
-     * Copy current selection to clipboard.
+     * Copy the selected bytes to the clipboard as hex.
      */
     @Override
     public void copySelection() {
-        String selected = textPane.getSelectedText();
-        if (selected != null && !selected.isEmpty()) {
-            StringSelection selection = new StringSelection(selected);
-            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
-        }
+        copyToClipboard(hexDump.getSelectedHex());
     }
 
     /**
-     * Go to a specific line.
+     * Go to a specific dump line (16 bytes per line).
      */
     @Override
     public void goToLine(int line) {
-        try {
-            int offset = textPane.getDocument().getDefaultRootElement().getElement(line - 1).getStartOffset();
-            textPane.setCaretPosition(offset);
-            textPane.requestFocus();
-        } catch (Exception e) {
-            // Line out of range
-        }
+        hexDump.goToRow(line);
+        hexDump.requestFocusInWindow();
+    }
+
+    /**
+     * Go to a byte offset in the class file.
+     */
+    public void goToOffset(int offset) {
+        hexDump.goToOffset(offset);
+        hexDump.requestFocusInWindow();
     }
 
     /**
@@ -246,41 +140,24 @@ public class HexView extends AbstractEditorView {
      */
     @Override
     public void showFindDialog() {
-        String input = JOptionPane.showInputDialog(this, "Find (hex bytes like 'CA FE'):", "Find",
-                JOptionPane.PLAIN_MESSAGE);
-        if (input != null && !input.isEmpty()) {
-            String text = textPane.getText().toUpperCase();
-            String searchUpper = input.toUpperCase();
-            int pos = text.indexOf(searchUpper);
-            if (pos >= 0) {
-                textPane.setCaretPosition(pos);
-                textPane.select(pos, pos + input.length());
-            }
-        }
+        hexDump.showFindPrompt();
     }
 
     /**
-     * Get the selected text.
+     * Get the selected bytes as hex.
      */
     @Override
     public String getSelectedText() {
-        return textPane.getSelectedText();
+        return hexDump.getSelectedHex();
     }
 
     /**
-     * Scroll to text.
+     * Scroll to the first occurrence of a hex or quoted-text pattern.
      */
     @Override
     public void scrollToText(String text) {
         if (text == null || text.isEmpty()) return;
-
-        String content = textPane.getText().toUpperCase();
-        String searchUpper = text.toUpperCase();
-        int pos = content.indexOf(searchUpper);
-        if (pos >= 0) {
-            textPane.setCaretPosition(pos);
-            textPane.select(pos, pos + text.length());
-        }
+        hexDump.find(HexSearch.parse(text));
     }
 
     /**
@@ -288,6 +165,7 @@ public class HexView extends AbstractEditorView {
      */
     @Override
     public void setFontSize(int size) {
-        textPane.setFont(JStudioTheme.getCodeFont(size));
+        hexDump.setFont(JStudioTheme.getCodeFont(size));
+        headerLabel.setFont(JStudioTheme.getCodeFont(size));
     }
 }
@@ -1,6 +1,5 @@
 package com.tonic.ui.editor.source;
 
-import com.tonic.analysis.source.decompile.ClassDecompiler;
 import com.tonic.analysis.source.decompile.DecompileResult;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.ui.debug.Breakpoint;
@@ -36,7 +35,7 @@ final class SourceBreakpointMapper implements BreakpointMapper {
         Map<String, NavigableMap<Integer, Integer>> maps = classEntry.getSourceLineMaps();
         if (maps == null) {
             try {
-                DecompileResult r = new ClassDecompiler(classEntry.getClassFile()).decompileWithLineMap();
+                DecompileResult r = classEntry.decompile();
                 classEntry.setDecompilationCache(r.getSource(), r.getLineMaps(), r.getMethodSpans(),
                         r.getFieldSpans(), r.getClassSpan());
                 maps = classEntry.getSourceLineMaps();
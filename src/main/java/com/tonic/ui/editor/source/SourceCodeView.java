@@ -1,6 +1,5 @@
 package com.tonic.ui.editor.source;
 
-import com.tonic.analysis.source.decompile.ClassDecompiler;
 import com.tonic.analysis.source.decompile.DecompileResult;
 import com.tonic.parser.ClassFile;
 import com.tonic.parser.ClassPool;
@@ -10,17 +9,21 @@ import com.tonic.ui.editor.view.EditorView;
 import com.tonic.ui.MainFrame;
 import com.tonic.model.Bookmark;
 import com.tonic.model.ClassEntryModel;
+import com.tonic.model.DecompiledSource;
 import com.tonic.ui.debug.Breakpoint;
 import com.tonic.ui.debug.BreakpointGutterController;
 import com.tonic.model.ProjectModel;
 import com.tonic.model.Snapshot;
 import com.tonic.service.history.LocalHistoryService;
+import com.tonic.service.DecompilationScheduler;
 import com.tonic.service.LocalVariableRenamer;
 import com.tonic.service.ProjectDatabaseService;
+import com.tonic.service.XrefQueryService;
 import com.tonic.ui.dialog.RenameLocalDialog;
 import com.tonic.live.LiveSession;
 import com.tonic.ui.core.SwingWorkers;
 import com.tonic.ui.live.LiveAttachService;
+import com.tonic.ui.live.LiveProbeService;
 import com.tonic.ui.live.LivePatch;
 import com.tonic.ui.live.MethodBodyDiff;
 import com.tonic.ui.theme.*;
@@ -309,7 +312,7 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
                         classEntry.setDecompilationCache(source);
                         compilerParser.setOriginalClass(result.getCompiledClass());
                         if (projectModel != null) {
-                            projectModel.setXrefDatabase(null);
+                            XrefQueryService.classEdited(projectModel, result.getCompiledClass());
                             projectModel.markDirty();
                         }
                         originalSource = source;
@@ -493,6 +496,14 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
                     breakpointGutter.isSet(breakpoint) ? "Remove Breakpoint" : "Add Breakpoint", null);
             bpItem.addActionListener(ev -> breakpointGutter.toggle(breakpoint));
             menu.add(bpItem);
+            LiveSession live = LiveAttachService.getInstance().getSession();
+            if (live != null && live.supportsLogpoints()) {
+                boolean hasLogpoint = LiveProbeService.get().logpointAt(classEntry.getClassName(),
+                        breakpoint.methodName, breakpoint.methodDesc, (int) breakpoint.pc) != null;
+                JMenuItem lpItem = createMenuItem(hasLogpoint ? "Remove Logpoint" : "Add Logpoint...", null);
+                lpItem.addActionListener(ev -> toggleLogpoint(breakpoint, hasLogpoint));
+                menu.add(lpItem);
+            }
             menu.addSeparator();
         }
 
@@ -697,6 +708,21 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
         super.removeNotify();
     }
 
+    private void toggleLogpoint(Breakpoint location, boolean remove) {
+        Container parent = getParent();
+        while (parent != null && !(parent instanceof MainFrame)) {
+            parent = parent.getParent();
+        }
+        if (parent == null) {
+            return;
+        }
+        if (remove) {
+            ((MainFrame) parent).removeLiveLogpoint(location);
+        } else {
+            ((MainFrame) parent).addLiveLogpoint(location);
+        }
+    }
+
     private void runMainViaMainFrame() {
         Container parent = getParent();
         while (parent != null && !(parent instanceof MainFrame)) {
@@ -783,15 +809,23 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
     }
 
     public void refresh() {
-        String cachedSource = classEntry.getDecompilationCache();
-        if (cachedSource != null) {
-            String textToSet = applyAnnotationFilter(cachedSource);
+        DecompiledSource cached = classEntry.getDecompiled();
+        if (cached != null) {
+            String textToSet = applyAnnotationFilter(cached.getSource());
             applyTextToEditor(textToSet);
             loaded = true;
             commentGutter.updateIcons();
             runGutter.updateIcons();
             breakpointGutter.updateIcons();
             usageLens.scheduleUpdate();
+            if (cached.isRestored()) {
+                // Read back from a disk spill without spans: regenerate them (same bytecode, same text) for lenses
+                DecompilationScheduler.getInstance().requestNow(classEntry, () -> {
+                    runGutter.updateIcons();
+                    usageLens.scheduleUpdate();
+                });
+            }
+            DecompilationScheduler.getInstance().prefetchAround(projectModel, classEntry);
             return;
         }
 
@@ -809,7 +843,7 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
             @Override
             protected String doInBackground() {
                 try {
-                    DecompileResult result = new ClassDecompiler(classEntry.getClassFile()).decompileWithLineMap();
+                    DecompileResult result = classEntry.decompile();
                     decompileResult = result;
                     return result.getSource();
                 } catch (Exception e) {
@@ -842,6 +876,7 @@ public class SourceCodeView extends JPanel implements ThemeChangeListener, Edito
                     runGutter.updateIcons();
                     breakpointGutter.updateIcons();
                     usageLens.scheduleUpdate();
+                    DecompilationScheduler.getInstance().prefetchAround(projectModel, classEntry);
                     Runnable navigation = pendingNavigation;
                     pendingNavigation = null;
                     if (navigation != null) {
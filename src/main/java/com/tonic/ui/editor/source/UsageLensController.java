@@ -8,6 +8,7 @@ import com.tonic.model.ClassEntryModel;
 import com.tonic.model.FieldEntryModel;
 import com.tonic.model.MethodEntryModel;
 import com.tonic.model.ProjectModel;
+import com.tonic.model.UsageCountIndex;
 import com.tonic.service.XrefQueryService;
 import com.tonic.util.Settings;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
@@ -25,8 +26,8 @@ import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
 /**
- * Owns the editor's usage-count "lens" overlay: it recomputes per-member usage counts on a background worker (using
- * the same xref database Find Usages uses), supplies the painting for the host view's {@code paintComponent}, and
+ * Owns the editor's usage-count "lens" overlay: it reads per-member usage counts on a background worker (from the
+ * project's usage-count index, derived from the same xref database Find Usages uses), supplies the painting for the host view's {@code paintComponent}, and
  * opens Find Usages when a lens is clicked. Recompute is skipped/cleared when lenses are off, annotations are
  * filtered (line numbers shift), the source is dirty, or no project/span data is available.
  */
@@ -85,37 +86,37 @@ final class UsageLensController {
         new SwingWorker<List<UsageLens.LensTarget>, Void>() {
             @Override
             protected List<UsageLens.LensTarget> doInBackground() {
-                if (project.getXrefDatabase() == null || project.getXrefDatabase().isEmpty()) {
+                boolean needsDatabase = project.getUsageCounts().get(classEntry.getClassName()) == null
+                        && (project.getXrefDatabase() == null || project.getXrefDatabase().isEmpty());
+                if (needsDatabase) {
                     EventBus.getInstance().post(new StatusMessageEvent(this, "Building cross-reference database..."));
-                    XrefQueryService.ensureDatabase(project);
+                }
+                UsageCountIndex.ClassCounts counts = XrefQueryService.getUsageCounts(project, classEntry);
+                if (needsDatabase) {
                     EventBus.getInstance().post(new StatusMessageEvent(this, "Cross-reference database ready."));
                 }
                 List<UsageLens.LensTarget> targets = new ArrayList<>();
                 for (MethodEntryModel method : methods) {
                     DecompileResult.MemberSpan span = methodSpans.get(method.getName() + method.getDescriptor());
                     if (span != null) {
-                        int count = XrefQueryService.getUsages(project, FindUsagesEvent.TargetType.METHOD,
-                                className, method.getName(), method.getDescriptor()).size();
                         targets.add(new UsageLens.LensTarget(FindUsagesEvent.TargetType.METHOD,
-                                method.getName(), method.getDescriptor(), span, count));
+                                method.getName(), method.getDescriptor(), span,
+                                counts.getMethodCount(method.getName(), method.getDescriptor())));
                     }
                 }
                 if (fieldSpans != null) {
                     for (FieldEntryModel field : fields) {
                         DecompileResult.MemberSpan span = fieldSpans.get(field.getName() + field.getDescriptor());
                         if (span != null) {
-                            int count = XrefQueryService.getUsages(project, FindUsagesEvent.TargetType.FIELD,
-                                    className, field.getName(), field.getDescriptor()).size();
                             targets.add(new UsageLens.LensTarget(FindUsagesEvent.TargetType.FIELD,
-                                    field.getName(), field.getDescriptor(), span, count));
+                                    field.getName(), field.getDescriptor(), span,
+                                    counts.getFieldCount(field.getName(), field.getDescriptor())));
                         }
                     }
                 }
                 if (classSpan != null) {
-                    int count = XrefQueryService.getUsages(project, FindUsagesEvent.TargetType.CLASS,
-                            className, null, null).size();
                     targets.add(new UsageLens.LensTarget(FindUsagesEvent.TargetType.CLASS,
-                            className, null, classSpan, count));
+                            className, null, classSpan, counts.getClassCount()));
                 }
                 return targets;
             }
@@ -1,10 +1,15 @@
 package com.tonic.ui.live;
 
 import com.tonic.live.LiveSession;
+import com.tonic.live.protocol.ClassLoadBatch;
 import com.tonic.live.protocol.LiveEvent;
+import com.tonic.model.ClassEntryModel;
+import com.tonic.service.ConsoleLogService;
 import com.tonic.service.ProjectService;
 import lombok.Getter;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
@@ -14,9 +19,11 @@ import java.util.function.Consumer;
  * carrying real bytes) into the live project. This surfaces runtime-generated classes - packer output,
  * {@code defineHiddenClass}, ASM-emitted glue - that never existed on disk.
  *
- * <p>Threading: the capture event arrives on the client's reader thread, which must not issue protocol
- * requests. Adding a class uses only the bytes already delivered (no request), but ClassFile parsing is
- * offloaded to a single-thread executor to keep the reader thread responsive.
+ * <p>Threading: capture events arrive on the client's event thread, which must stay responsive. Captured classes
+ * are queued and added by a single worker, which takes everything queued since its last run as one batch: a
+ * startup burst of thousands of classes becomes a few project updates (one navigator refresh each) instead of
+ * one per class. Classes the agent spilled without bytes are fetched by the worker; classes it dropped are
+ * counted and reported to the console.
  */
 public final class LiveCaptureService {
 
@@ -31,6 +38,9 @@ public final class LiveCaptureService {
     private volatile Consumer<String> onCaptured;
     @Getter
     private volatile boolean armed;
+    /** Captured since the worker's last batch, in load order; a null value is a spilled class. */
+    private Map<String, byte[]> pending = new LinkedHashMap<>();
+    private boolean drainScheduled;
 
     public LiveCaptureService(LiveSession session) {
         this.session = session;
@@ -47,8 +57,15 @@ public final class LiveCaptureService {
             return;
         }
         session.addEventListener(hook);
-        session.setCaptureLoads(true);
+        // armed first: the agent may send the first batch before setCaptureLoads returns
         armed = true;
+        try {
+            session.setCaptureLoads(true);
+        } catch (Exception e) {
+            armed = false;
+            session.removeEventListener(hook);
+            throw e;
+        }
     }
 
     /** Stop streaming runtime class loads. */
@@ -57,6 +74,9 @@ public final class LiveCaptureService {
             return;
         }
         armed = false;
+        synchronized (this) {
+            pending.clear();
+        }
         try {
             session.setCaptureLoads(false);
         } catch (Exception ignored) {
@@ -70,18 +90,43 @@ public final class LiveCaptureService {
     }
 
     private void onEvent(LiveEvent e) {
-        if (e.getKind() != LiveEvent.Kind.CLASS_LOADED) {
+        if (e.getKind() == LiveEvent.Kind.CLASS_LOADED) {
+            enqueue(new String[]{e.getClassName()}, new byte[][]{e.getClassBytes()});
+        } else if (e.getKind() == LiveEvent.Kind.CLASSES_LOADED) {
+            ClassLoadBatch batch = e.getClassLoads();
+            if (batch.dropped > 0) {
+                ConsoleLogService.getInstance().warn("Live capture: the target loaded classes faster than they "
+                        + "could be sent; " + batch.dropped + " were not captured.");
+            }
+            enqueue(batch.names, batch.bytes);
+        }
+    }
+
+    private synchronized void enqueue(String[] names, byte[][] bytes) {
+        if (!armed) {
             return;
         }
-        final String name = e.getClassName();
-        final byte[] bytes = e.getClassBytes();
-        worker.submit(() -> {
-            if (ProjectService.getInstance().addCapturedLiveClass(name, bytes) != null) {
-                Consumer<String> cb = onCaptured;
-                if (cb != null) {
-                    cb.accept(name);
-                }
+        for (int i = 0; i < names.length; i++) {
+            pending.putIfAbsent(names[i], bytes[i]);
+        }
+        if (!drainScheduled) {
+            drainScheduled = true;
+            worker.submit(this::drain);
+        }
+    }
+
+    private void drain() {
+        Map<String, byte[]> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            drainScheduled = false;
+        }
+        Consumer<String> cb = onCaptured;
+        for (ClassEntryModel entry : ProjectService.getInstance().addCapturedLiveClasses(session, batch)) {
+            if (cb != null) {
+                cb.accept(entry.getClassName());
             }
-        });
+        }
     }
 }
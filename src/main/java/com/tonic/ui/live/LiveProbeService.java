@@ -0,0 +1,595 @@
+package com.tonic.ui.live;
+
+import com.tonic.event.EventBus;
+import com.tonic.event.events.LogpointHitsEvent;
+import com.tonic.live.LiveSession;
+import com.tonic.live.probe.ProbeInstrumenter;
+import com.tonic.live.probe.ProbeWindow;
+import com.tonic.live.protocol.AllocSiteBatch;
+import com.tonic.live.protocol.LiveEvent;
+import com.tonic.live.protocol.LiveProtocol;
+import com.tonic.live.protocol.ProbeSample;
+import com.tonic.ui.debug.DebugManager;
+import com.tonic.ui.live.eval.SnippetCompiler;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Method timing probes and logpoints on the live session. Adding a probe rewrites the method's class (from its
+ * bytes before any probe, so probes never stack) to report entry and exit to the agent's recorder, then redefines
+ * it; the agent streams one latency histogram per probe per second, and each probe keeps a one-minute
+ * {@link ProbeWindow} of them for the Profiler tool.
+ *
+ * <p>A logpoint is a compiled snippet the agent runs in the target, in the hitting thread, at a bytecode offset:
+ * its result decides whether the offset counts as a hit and what message to log, so conditions never round-trip
+ * through the debugger. Hits arrive in batches and are posted as {@link LogpointHitsEvent}s. A suspending
+ * logpoint stops the thread only on a hit, through a debugger breakpoint on the agent's
+ * {@code LogpointRecorder.pause}, which is kept installed while any suspending logpoint exists.
+ *
+ * <p>Allocation tracking counts a class's {@code new} and array-creation sites: each gets a call to the agent's
+ * recorder, which samples about one in {@link #ALLOC_SAMPLE_INTERVAL} allocations per thread and reports the
+ * busiest sites once a second. Each site keeps a one-minute window of those estimates for the Profiler tool.
+ *
+ * <p>All probes, logpoints and allocation sites on a class are applied in one rewrite, so adding or removing one
+ * re-instruments the class with its current set (or puts the original bytes back when none remain). The agent
+ * also restores the classes by itself if the connection drops. Add/remove issue protocol requests: call them off
+ * the EDT.
+ */
+public final class LiveProbeService {
+
+    private static final LiveProbeService INSTANCE = new LiveProbeService();
+    /** One minute at the agent's once-a-second reporting rate. */
+    private static final int WINDOW_SAMPLES = 60;
+    /** Where a suspending logpoint's hit parks the thread; the debugger breaks here. */
+    private static final String PAUSE_CLASS = "com.tonic.live.agent.LogpointRecorder";
+    private static final String PAUSE_METHOD = "pause";
+    private static final String PAUSE_DESC = "(I)V";
+    /** The agent counts one in this many allocations (per thread, on average) and scales the counts back up. */
+    private static final int ALLOC_SAMPLE_INTERVAL = 64;
+
+    private final Consumer<LiveEvent> hook = this::onEvent;
+    private final Map<Integer, Probe> probes = new LinkedHashMap<>();
+    private final Map<Integer, Logpoint> logpoints = new LinkedHashMap<>();
+    /** Allocation sites of each tracked class, in method and offset order. */
+    private final Map<String, List<AllocationSite>> allocationSites = new LinkedHashMap<>();
+    private final Map<Integer, AllocationSite> sitesById = new HashMap<>();
+    /** Allocations at sites outside the agent's per-report top list. */
+    private final RateWindow otherAllocations = new RateWindow(WINDOW_SAMPLES);
+    /** Bytes of each instrumented class from before its first probe, logpoint or site, as returned by the agent. */
+    private final Map<String, byte[]> originals = new HashMap<>();
+    private LiveSession session;
+    private int nextId = 1;
+    private int nextLogpointId = 1;
+    private int nextSiteId = 1;
+    /** Whether the debugger breakpoint on {@link #PAUSE_METHOD} is installed. */
+    private boolean pauseArmed;
+
+    private LiveProbeService() {
+    }
+
+    public static LiveProbeService get() {
+        return INSTANCE;
+    }
+
+    /** One probed method and its recent latency distribution. */
+    @Getter
+    public static final class Probe {
+        private final int id;
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final ProbeWindow window = new ProbeWindow(WINDOW_SAMPLES);
+
+        Probe(int id, String className, String methodName, String descriptor) {
+            this.id = id;
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+        }
+    }
+
+    /** One logpoint: a compiled snippet evaluated at {@code pc} of a method. */
+    @Getter
+    public static final class Logpoint {
+        private final int id;
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final int pc;
+        /** What the user typed, for display (the condition and/or message). */
+        private final String label;
+        private final boolean suspend;
+
+        Logpoint(int id, String className, String methodName, String descriptor, int pc, String label,
+                 boolean suspend) {
+            this.id = id;
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+            this.pc = pc;
+            this.label = label;
+            this.suspend = suspend;
+        }
+    }
+
+    /** One counted {@code new} or array creation and its recent allocation rate. */
+    @Getter
+    public static final class AllocationSite {
+        private final int id;
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final int pc;
+        /** Internal name of the class a {@code new} creates, or the descriptor of an array. */
+        private final String type;
+        /** Source line, or -1 if the class has no line numbers. */
+        private final int line;
+        private final RateWindow window = new RateWindow(WINDOW_SAMPLES);
+
+        AllocationSite(String className, ProbeInstrumenter.AllocSite site) {
+            int paren = site.method.indexOf('(');
+            this.id = site.id;
+            this.className = className;
+            this.methodName = site.method.substring(0, paren);
+            this.descriptor = site.method.substring(paren);
+            this.pc = site.pc;
+            this.type = site.type;
+            this.line = site.line;
+        }
+
+        ProbeInstrumenter.AllocSite toInstrumenterSite() {
+            return new ProbeInstrumenter.AllocSite(id, methodName + descriptor, pc, type, line);
+        }
+    }
+
+    /** The last {@code capacity} once-a-second allocation estimates, plus the total since tracking began. */
+    static final class RateWindow {
+        private final long[] samples;
+        private int head;
+        private int count;
+        private long sum;
+        private long total;
+
+        RateWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        void add(long value) {
+            if (count == samples.length) {
+                sum -= samples[head];
+                samples[head] = value;
+                head = (head + 1) % samples.length;
+            } else {
+                samples[(head + count++) % samples.length] = value;
+            }
+            sum += value;
+            total += value;
+        }
+
+        double perSecond() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        long total() {
+            return total;
+        }
+
+        void clear() {
+            head = 0;
+            count = 0;
+            sum = 0;
+            total = 0;
+        }
+    }
+
+    /** A point-in-time copy of one site's window, safe to hand to the EDT. */
+    @Getter
+    public static final class AllocationStats {
+        private final AllocationSite site;
+        private final double allocationsPerSecond;
+        private final long totalAllocations;
+
+        AllocationStats(AllocationSite site) {
+            this.site = site;
+            this.allocationsPerSecond = site.window.perSecond();
+            this.totalAllocations = site.window.total();
+        }
+    }
+
+    /** A point-in-time copy of one probe's window, safe to hand to the EDT. */
+    @Getter
+    public static final class ProbeStats {
+        private final Probe probe;
+        private final double callsPerSecond;
+        private final double meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        ProbeStats(Probe probe) {
+            ProbeWindow w = probe.window;
+            this.probe = probe;
+            this.callsPerSecond = w.callsPerSample();
+            this.meanNanos = w.meanNanos();
+            this.p50Nanos = w.percentileNanos(50);
+            this.p90Nanos = w.percentileNanos(90);
+            this.p99Nanos = w.percentileNanos(99);
+            this.maxNanos = w.maxNanos();
+        }
+    }
+
+    /**
+     * Probes {@code className.methodName descriptor} in the target. Returns the existing probe if the method is
+     * already probed. Call off the EDT.
+     */
+    public Probe addProbe(LiveSession target, String className, String methodName, String descriptor)
+            throws IOException {
+        synchronized (this) {
+            bind(target);
+            for (Probe p : probes.values()) {
+                if (p.className.equals(className) && p.methodName.equals(methodName)
+                        && p.descriptor.equals(descriptor)) {
+                    return p;
+                }
+            }
+            if (nextId > ProbeInstrumenter.MAX_PROBE_ID) {
+                throw new IllegalStateException("Probe limit reached for this session");
+            }
+            Probe probe = new Probe(nextId++, className, methodName, descriptor);
+            byte[] original = target.enableProbe(probe.id, className);
+            originals.putIfAbsent(className, original);
+            probes.put(probe.id, probe);
+            try {
+                redefine(target, className);
+            } catch (IOException | RuntimeException e) {
+                probes.remove(probe.id);
+                disableQuietly(target, probe.id, className);
+                throw e;
+            }
+            return probe;
+        }
+    }
+
+    /** Removes {@code probe}, re-instrumenting its class with the remaining probes. Call off the EDT. */
+    public void removeProbe(Probe probe) throws IOException {
+        synchronized (this) {
+            if (session == null || probes.remove(probe.id) == null) {
+                return;
+            }
+            LiveSession target = session;
+            try {
+                redefine(target, probe.className);
+            } finally {
+                disableQuietly(target, probe.id, probe.className);
+            }
+        }
+    }
+
+    /**
+     * Installs a logpoint at {@code pc} of {@code className.methodName descriptor}, running {@code snippet}
+     * (compiled with {@link SnippetCompiler#compileHook}) on every pass. With {@code suspend}, a hit also stops the
+     * thread in the connected debugger. Call off the EDT.
+     */
+    public Logpoint addLogpoint(LiveSession target, String className, String methodName, String descriptor, int pc,
+                                SnippetCompiler.Result snippet, String label, boolean suspend) throws IOException {
+        synchronized (this) {
+            bind(target);
+            if (nextLogpointId > ProbeInstrumenter.MAX_PROBE_ID) {
+                throw new IllegalStateException("Logpoint limit reached for this session");
+            }
+            Logpoint logpoint = new Logpoint(nextLogpointId++, className, methodName, descriptor, pc, label, suspend);
+            byte[] original = target.setLogpoint(logpoint.id, className,
+                    suspend ? LiveProtocol.LOGPOINT_SUSPEND : 0, snippet.getClasses(), snippet.getMainBinaryName());
+            originals.putIfAbsent(className, original);
+            logpoints.put(logpoint.id, logpoint);
+            try {
+                redefine(target, className);
+            } catch (IOException | RuntimeException e) {
+                logpoints.remove(logpoint.id);
+                clearQuietly(target, logpoint.id, className);
+                throw e;
+            }
+            syncPauseBreakpoint();
+            return logpoint;
+        }
+    }
+
+    /** Removes {@code logpoint}, re-instrumenting its class without it. Call off the EDT. */
+    public void removeLogpoint(Logpoint logpoint) throws IOException {
+        synchronized (this) {
+            if (session == null || logpoints.remove(logpoint.id) == null) {
+                return;
+            }
+            LiveSession target = session;
+            try {
+                redefine(target, logpoint.className);
+            } finally {
+                clearQuietly(target, logpoint.id, logpoint.className);
+                syncPauseBreakpoint();
+            }
+        }
+    }
+
+    /**
+     * Starts counting the allocations in {@code className}, instrumenting every {@code new} and array creation in
+     * it. Returns the class's sites (the existing ones if it is already tracked; none if it allocates nothing, in
+     * which case it is not tracked). Call off the EDT.
+     */
+    public List<AllocationSite> trackAllocations(LiveSession target, String className) throws IOException {
+        synchronized (this) {
+            bind(target);
+            List<AllocationSite> existing = allocationSites.get(className);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] original = target.trackAllocations(className, ALLOC_SAMPLE_INTERVAL);
+            originals.putIfAbsent(className, original);
+            List<AllocationSite> sites = new ArrayList<>();
+            try {
+                for (ProbeInstrumenter.AllocSite site : ProbeInstrumenter.allocationSites(originals.get(className),
+                        nextSiteId)) {
+                    sites.add(new AllocationSite(className, site));
+                }
+                if (sites.isEmpty()) {
+                    untrackQuietly(target, className);
+                    return sites;
+                }
+                if (nextSiteId + sites.size() - 1 > ProbeInstrumenter.MAX_PROBE_ID) {
+                    throw new IllegalStateException("Allocation site limit reached for this session");
+                }
+                nextSiteId += sites.size();
+                allocationSites.put(className, sites);
+                for (AllocationSite site : sites) {
+                    sitesById.put(site.id, site);
+                }
+                redefine(target, className);
+            } catch (IOException | RuntimeException e) {
+                forgetSites(className);
+                untrackQuietly(target, className);
+                throw e;
+            }
+            return sites;
+        }
+    }
+
+    /** Stops counting the allocations in {@code className}, re-instrumenting it without its sites. Call off the EDT. */
+    public void untrackAllocations(String className) throws IOException {
+        synchronized (this) {
+            if (session == null || forgetSites(className) == null) {
+                return;
+            }
+            LiveSession target = session;
+            try {
+                redefine(target, className);
+            } finally {
+                untrackQuietly(target, className);
+            }
+        }
+    }
+
+    public synchronized boolean isTrackingAllocations(String className) {
+        return allocationSites.containsKey(className);
+    }
+
+    public synchronized boolean hasAllocationSites() {
+        return !allocationSites.isEmpty();
+    }
+
+    /** Internal names of the classes whose allocations are counted, in the order they were added. */
+    public synchronized List<String> trackedAllocationClasses() {
+        return new ArrayList<>(allocationSites.keySet());
+    }
+
+    /** Tracked sites with a snapshot of their windows, busiest first; sites that have not allocated are left out. */
+    public synchronized List<AllocationStats> allocationStats() {
+        List<AllocationStats> out = new ArrayList<>();
+        for (AllocationSite site : sitesById.values()) {
+            if (site.window.total() > 0) {
+                out.add(new AllocationStats(site));
+            }
+        }
+        out.sort(Comparator.comparingDouble(AllocationStats::getAllocationsPerSecond).reversed());
+        return out;
+    }
+
+    /** Allocations per second at tracked sites outside the agent's per-report top list, over the last minute. */
+    public synchronized double otherAllocationsPerSecond() {
+        return otherAllocations.perSecond();
+    }
+
+    /** The logpoint at exactly this location, or null. */
+    public synchronized Logpoint logpointAt(String className, String methodName, String descriptor, int pc) {
+        for (Logpoint l : logpoints.values()) {
+            if (l.pc == pc && l.className.equals(className) && l.methodName.equals(methodName)
+                    && l.descriptor.equals(descriptor)) {
+                return l;
+            }
+        }
+        return null;
+    }
+
+    public synchronized Logpoint logpoint(int id) {
+        return logpoints.get(id);
+    }
+
+    /**
+     * Installs or removes the debugger breakpoint suspending logpoints rely on, to match the current logpoints and
+     * debug session. Called on changes here and when a debug session connects.
+     */
+    public synchronized void syncPauseBreakpoint() {
+        DebugManager debugger = DebugManager.getInstance();
+        boolean wanted = debugger.isConnected() && logpoints.values().stream().anyMatch(l -> l.suspend);
+        if (!debugger.isConnected()) {
+            pauseArmed = false;
+        } else if (wanted && !pauseArmed) {
+            debugger.addBreakpoint(PAUSE_CLASS, PAUSE_METHOD, PAUSE_DESC, 0);
+            pauseArmed = true;
+        } else if (!wanted && pauseArmed) {
+            debugger.removeBreakpoint(PAUSE_CLASS, PAUSE_METHOD, PAUSE_DESC, 0);
+            pauseArmed = false;
+        }
+    }
+
+    /** Current probes with a snapshot of their windows, in the order they were added. */
+    public synchronized List<ProbeStats> stats() {
+        List<ProbeStats> out = new ArrayList<>(probes.size());
+        for (Probe p : probes.values()) {
+            out.add(new ProbeStats(p));
+        }
+        return out;
+    }
+
+    public synchronized boolean hasProbes() {
+        return !probes.isEmpty();
+    }
+
+    /**
+     * Forgets every probe, logpoint and allocation site (called on detach). The agent restores the instrumented
+     * classes itself when the connection closes, so nothing is sent.
+     */
+    public synchronized void clear() {
+        if (session != null) {
+            session.removeEventListener(hook);
+        }
+        session = null;
+        probes.clear();
+        logpoints.clear();
+        allocationSites.clear();
+        sitesById.clear();
+        otherAllocations.clear();
+        originals.clear();
+        nextId = 1;
+        nextLogpointId = 1;
+        nextSiteId = 1;
+        syncPauseBreakpoint();
+    }
+
+    private void bind(LiveSession target) {
+        if (session == target) {
+            return;
+        }
+        clear();
+        session = target;
+        target.addEventListener(hook);
+    }
+
+    /**
+     * Redefines {@code className} with all of its current probes, logpoints and allocation sites, or with its
+     * original bytes if none remain.
+     */
+    private void redefine(LiveSession target, String className) throws IOException {
+        byte[] original = originals.get(className);
+        Map<String, Integer> methods = new LinkedHashMap<>();
+        for (Probe p : probes.values()) {
+            if (p.className.equals(className)) {
+                methods.put(p.methodName + p.descriptor, p.id);
+            }
+        }
+        List<ProbeInstrumenter.Hook> hooks = new ArrayList<>();
+        for (Logpoint l : logpoints.values()) {
+            if (l.className.equals(className)) {
+                hooks.add(new ProbeInstrumenter.Hook(l.id, l.methodName + l.descriptor, l.pc));
+            }
+        }
+        List<ProbeInstrumenter.AllocSite> sites = new ArrayList<>();
+        for (AllocationSite site : allocationSites.getOrDefault(className, Collections.emptyList())) {
+            sites.add(site.toInstrumenterSite());
+        }
+        byte[] bytes = methods.isEmpty() && hooks.isEmpty() && sites.isEmpty()
+                ? original : ProbeInstrumenter.instrument(original, methods, hooks, sites);
+        target.redefineClass(className, bytes);
+    }
+
+    private void disableQuietly(LiveSession target, int probeId, String className) {
+        try {
+            target.disableProbe(probeId);
+        } catch (IOException ignored) {
+        }
+        forgetOriginalIfUnused(className);
+    }
+
+    private void clearQuietly(LiveSession target, int logpointId, String className) {
+        try {
+            target.clearLogpoint(logpointId);
+        } catch (IOException ignored) {
+        }
+        forgetOriginalIfUnused(className);
+    }
+
+    private void untrackQuietly(LiveSession target, String className) {
+        try {
+            target.untrackAllocations(className);
+        } catch (IOException ignored) {
+        }
+        forgetOriginalIfUnused(className);
+    }
+
+    /** Drops {@code className}'s sites; returns them, or null if it was not tracked. */
+    private List<AllocationSite> forgetSites(String className) {
+        List<AllocationSite> sites = allocationSites.remove(className);
+        if (sites != null) {
+            for (AllocationSite site : sites) {
+                sitesById.remove(site.id);
+            }
+        }
+        return sites;
+    }
+
+    private void forgetOriginalIfUnused(String className) {
+        boolean inUse = false;
+        for (Probe p : probes.values()) {
+            inUse |= p.className.equals(className);
+        }
+        for (Logpoint l : logpoints.values()) {
+            inUse |= l.className.equals(className);
+        }
+        inUse |= allocationSites.containsKey(className);
+        if (!inUse) {
+            originals.remove(className);
+        }
+    }
+
+    private void onEvent(LiveEvent e) {
+        if (e.getKind() == LiveEvent.Kind.LOGPOINT_HITS) {
+            EventBus.getInstance().post(new LogpointHitsEvent(this, e.getLogpointHits(), e.getDroppedHits()));
+            return;
+        }
+        if (e.getKind() == LiveEvent.Kind.ALLOC_SITES) {
+            onAllocSites(e.getAllocSites());
+            return;
+        }
+        if (e.getKind() != LiveEvent.Kind.PROBE_STATS) {
+            return;
+        }
+        synchronized (this) {
+            for (ProbeSample sample : e.getProbeSamples()) {
+                Probe probe = probes.get(sample.probeId);
+                if (probe != null) {
+                    probe.window.add(sample);
+                }
+            }
+        }
+    }
+
+    /** Adds one report to every tracked site's window; sites missing from it allocated nothing that second. */
+    private synchronized void onAllocSites(AllocSiteBatch batch) {
+        Map<Integer, Long> reported = new HashMap<>();
+        for (int i = 0; i < batch.siteIds.length; i++) {
+            reported.put(batch.siteIds[i], batch.allocations[i]);
+        }
+        for (AllocationSite site : sitesById.values()) {
+            site.window.add(reported.getOrDefault(site.id, 0L));
+        }
+        otherAllocations.add(batch.otherAllocations);
+    }
+}
@@ -0,0 +1,112 @@
+package com.tonic.ui.live;
+
+import com.tonic.live.LiveSession;
+import com.tonic.live.probe.SampleProfile;
+import com.tonic.live.protocol.LiveEvent;
+import com.tonic.ui.live.recorder.jfr.CallTreeNode;
+import com.tonic.ui.live.recorder.jfr.FrameKey;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The agent's stack sampler on the live session: a CPU profile for targets where JFR is unavailable or not
+ * allowed. The agent folds samples into a call-path trie and reports only what changed; this keeps the
+ * accumulated {@link SampleProfile} for the run and turns it into a {@link CallTreeNode} tree for the same flame
+ * graph the JFR analysis uses. Start/stop issue protocol requests: call them off the EDT.
+ */
+public final class LiveSamplerService {
+
+    private static final LiveSamplerService INSTANCE = new LiveSamplerService();
+    private static final int MAX_DEPTH = 128;
+
+    private final Consumer<LiveEvent> hook = this::onEvent;
+    private final SampleProfile profile = new SampleProfile();
+    private LiveSession session;
+    private boolean running;
+
+    private LiveSamplerService() {
+    }
+
+    public static LiveSamplerService get() {
+        return INSTANCE;
+    }
+
+    /** Starts sampling every {@code intervalMs}, discarding the previous profile. Call off the EDT. */
+    public void start(LiveSession target, int intervalMs) throws IOException {
+        synchronized (this) {
+            if (session != target) {
+                clear();
+                session = target;
+                target.addEventListener(hook);
+            }
+            target.startSampling(intervalMs, MAX_DEPTH);
+            profile.clear();
+            running = true;
+        }
+    }
+
+    /** Stops sampling; the profile so far is kept. Call off the EDT. */
+    public void stop() throws IOException {
+        synchronized (this) {
+            if (session == null || !running) {
+                return;
+            }
+            running = false;
+            session.stopSampling();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /** Thread stacks sampled in the current (or last) run. */
+    public synchronized long samples() {
+        return profile.samples();
+    }
+
+    /** The run's profile as a weighted call tree (weight = samples), built fresh on each call. */
+    public synchronized CallTreeNode callTree() {
+        return callTree(profile);
+    }
+
+    /** {@code profile} as a weighted call tree (weight = samples). */
+    public static CallTreeNode callTree(SampleProfile profile) {
+        long[] totals = profile.totals();
+        CallTreeNode[] nodes = new CallTreeNode[profile.nodeCount()];
+        CallTreeNode root = new CallTreeNode(null);
+        root.addTotal(totals[0]);
+        root.addSelf(profile.self(0));
+        nodes[0] = root;
+        for (int n = 1; n < nodes.length; n++) {
+            int frame = profile.frame(n);
+            int line = profile.frameLine(frame);
+            FrameKey key = new FrameKey(profile.frameClass(frame), profile.frameMethod(frame), line < 0 ? -1 : line);
+            CallTreeNode node = nodes[profile.parent(n)].child(key);
+            node.addTotal(totals[n]);
+            node.addSelf(profile.self(n));
+            nodes[n] = node;
+        }
+        return root;
+    }
+
+    /** Forgets the session and profile (called on detach); the agent stops its sampler when the connection closes. */
+    public synchronized void clear() {
+        if (session != null) {
+            session.removeEventListener(hook);
+        }
+        session = null;
+        running = false;
+        profile.clear();
+    }
+
+    private void onEvent(LiveEvent e) {
+        if (e.getKind() != LiveEvent.Kind.SAMPLES) {
+            return;
+        }
+        synchronized (this) {
+            profile.apply(e.getSampleDelta());
+        }
+    }
+}
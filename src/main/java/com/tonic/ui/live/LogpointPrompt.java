@@ -0,0 +1,182 @@
+package com.tonic.ui.live;
+
+import com.tonic.ui.debug.Breakpoint;
+
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import java.awt.Component;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asks for a logpoint's condition, message and suspend choice, and turns the answers into the snippet and
+ * prologue {@link com.tonic.ui.live.eval.SnippetCompiler#compileHook} expects. Both expressions are plain Java
+ * over {@code self} (the receiver, {@code null} in static code) and {@code arg0..argN}, the method's arguments
+ * typed from its descriptor (application types are {@code Object}, as the snippet cannot always see them).
+ */
+public final class LogpointPrompt {
+
+    private final String condition;
+    private final String message;
+    private final boolean suspend;
+
+    private LogpointPrompt(String condition, String message, boolean suspend) {
+        this.condition = condition;
+        this.message = message;
+        this.suspend = suspend;
+    }
+
+    /** Shows the dialog for {@code location}; null if cancelled or both fields were left empty. */
+    public static LogpointPrompt show(Component parent, Breakpoint location) {
+        JTextField conditionField = new JTextField(36);
+        JTextField messageField = new JTextField(36);
+        JCheckBox suspendBox = new JCheckBox("Suspend the thread when the condition holds (needs the debugger)");
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(2, 2, 2, 6);
+        c.anchor = GridBagConstraints.WEST;
+        c.gridx = 0;
+        c.gridy = 0;
+        c.gridwidth = 2;
+        panel.add(new JLabel("Variables: self, " + String.join(", ", argumentNames(location.methodDesc))), c);
+        c.gridwidth = 1;
+        c.gridy = 1;
+        panel.add(new JLabel("Condition:"), c);
+        c.gridx = 1;
+        panel.add(conditionField, c);
+        c.gridx = 0;
+        c.gridy = 2;
+        panel.add(new JLabel("Message:"), c);
+        c.gridx = 1;
+        panel.add(messageField, c);
+        c.gridx = 0;
+        c.gridy = 3;
+        c.gridwidth = 2;
+        panel.add(suspendBox, c);
+
+        String title = "Logpoint in " + location.methodName + " @ " + location.pc;
+        int result = JOptionPane.showConfirmDialog(parent, panel, title,
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return null;
+        }
+        String condition = conditionField.getText().trim();
+        String message = messageField.getText().trim();
+        if (condition.isEmpty() && message.isEmpty() && !suspendBox.isSelected()) {
+            return null;
+        }
+        return new LogpointPrompt(condition, message, suspendBox.isSelected());
+    }
+
+    public boolean isSuspend() {
+        return suspend;
+    }
+
+    /** Condition and message as typed, for lists and logs. */
+    public String label() {
+        if (condition.isEmpty()) {
+            return message.isEmpty() ? "(always)" : message;
+        }
+        return message.isEmpty() ? "when " + condition : message + " when " + condition;
+    }
+
+    /**
+     * The snippet body: line 1 is the condition and line 2 the message, so compiler messages point at the field
+     * that is wrong.
+     */
+    public String snippet() {
+        String test = condition.isEmpty() ? "" : "if (!(" + condition + ")) return null;";
+        String result = message.isEmpty() ? "return Boolean.TRUE;" : "return String.valueOf(" + message + ");";
+        return test + "\n" + result;
+    }
+
+    /** Declarations unpacking {@code args} into typed {@code argN} locals for a method with {@code descriptor}. */
+    public static String prologue(String descriptor) {
+        List<String> types = parameterTypes(descriptor);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < types.size(); i++) {
+            String type = types.get(i);
+            out.append(type).append(" arg").append(i).append(" = (").append(cast(type)).append(") args[")
+                    .append(i).append("]; ");
+        }
+        return out.toString();
+    }
+
+    private static List<String> argumentNames(String descriptor) {
+        List<String> names = new ArrayList<>();
+        List<String> types = parameterTypes(descriptor);
+        for (int i = 0; i < types.size(); i++) {
+            names.add(types.get(i) + " arg" + i);
+        }
+        return names;
+    }
+
+    /** Java source types of the parameters; application types become {@code Object}. */
+    private static List<String> parameterTypes(String descriptor) {
+        List<String> types = new ArrayList<>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            int dims = i - start;
+            String element;
+            if (descriptor.charAt(i) == 'L') {
+                int end = descriptor.indexOf(';', i);
+                String name = descriptor.substring(i + 1, end).replace('/', '.');
+                element = name.startsWith("java.") && name.indexOf('$') < 0 ? name : "Object";
+                if (dims > 0 && "Object".equals(element) && !name.startsWith("java.")) {
+                    // An application array is only known to be an Object.
+                    dims = 0;
+                }
+                i = end + 1;
+            } else {
+                element = primitive(descriptor.charAt(i));
+                i++;
+            }
+            StringBuilder type = new StringBuilder(element);
+            for (int d = 0; d < dims; d++) {
+                type.append("[]");
+            }
+            types.add(type.toString());
+        }
+        return types;
+    }
+
+    /** The cast that unboxes {@code type} from {@code Object}: its wrapper for primitives, itself otherwise. */
+    private static String cast(String type) {
+        switch (type) {
+            case "boolean": return "Boolean";
+            case "byte": return "Byte";
+            case "char": return "Character";
+            case "short": return "Short";
+            case "int": return "Integer";
+            case "long": return "Long";
+            case "float": return "Float";
+            case "double": return "Double";
+            default: return type;
+        }
+    }
+
+    private static String primitive(char c) {
+        switch (c) {
+            case 'Z': return "boolean";
+            case 'B': return "byte";
+            case 'C': return "char";
+            case 'S': return "short";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'F': return "float";
+            case 'D': return "double";
+            default: throw new IllegalArgumentException("bad descriptor type: " + c);
+        }
+    }
+}
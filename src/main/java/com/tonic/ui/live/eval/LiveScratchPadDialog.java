@@ -1,7 +1,6 @@
 package com.tonic.ui.live.eval;
 
 import com.tonic.live.LiveSession;
-import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
 import com.tonic.ui.core.SwingWorkers;
 import com.tonic.ui.editor.source.JavaEditorFactory;
@@ -62,7 +61,6 @@ public final class LiveScratchPadDialog extends JDialog {
     private final JButton runButton = new JButton("Run");
 
     private ProjectModel project;
-    private SnippetCompiler compiler;
     private AutoCompletion autoCompletion;
 
     public LiveScratchPadDialog(Frame owner) {
@@ -134,10 +132,9 @@ public final class LiveScratchPadDialog extends JDialog {
         });
     }
 
-    /** Binds the dialog to {@code project}: rebuilds the compiler, completion, and context list. */
+    /** Binds the dialog to {@code project}: rebuilds completion and the context list. */
     public void setProject(ProjectModel project) {
         this.project = project;
-        this.compiler = new SnippetCompiler(new ProjectClasspath(project), targetRelease(project));
 
         if (autoCompletion != null) {
             autoCompletion.uninstall();
@@ -168,25 +165,9 @@ public final class LiveScratchPadDialog extends JDialog {
         }
     }
 
-    /**
-     * The Java release to compile snippets for: derived from the highest class-file version among the target's
-     * pulled classes (which is at most the target JVM's runtime version), so a compiled snippet can always be
-     * defined by the attached JVM even when it is older than the JDK running JStudio.
-     */
-    private static int targetRelease(ProjectModel project) {
-        int maxMajor = 0;
-        for (ClassEntryModel entry : project.getAllClasses()) {
-            int major = entry.getClassFile().getMajorVersion();
-            if (major > maxMajor) {
-                maxMajor = major;
-            }
-        }
-        return SnippetCompiler.releaseForMajorVersion(maxMajor);
-    }
-
     private void runSnippet() {
         LiveAttachService service = LiveAttachService.getInstance();
-        if (!service.isAttached() || project == null || compiler == null) {
+        if (!service.isAttached() || project == null) {
             appendln("Not attached to a live JVM.");
             return;
         }
@@ -200,12 +181,13 @@ public final class LiveScratchPadDialog extends JDialog {
         }
         String snippet = editor.getText();
         LiveSession session = service.getSession();
+        ProjectModel target = project;
 
         runButton.setEnabled(false);
         appendln("> running...");
         SwingWorkers.run(
                 () -> {
-                    SnippetCompiler.Result result = compiler.compile(snippet);
+                    SnippetCompiler.Result result = SnippetCompilerService.get().compilerFor(target).compile(snippet);
                     if (!result.isSuccess()) {
                         return "compile failed:\n" + String.join("\n", result.getMessages());
                     }
@@ -2,9 +2,12 @@ package com.tonic.ui.live.eval;
 
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
+import com.tonic.parser.ClassFile;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,62 +17,130 @@ import java.util.Set;
  * the attached JVM's pulled classes. JDK platform packages ({@code java.*}, {@code sun.*}, etc.) are excluded
  * so {@code javac} resolves those from its own platform classpath rather than from project bytes.
  *
- * <p>The package -> class-name index is built once from a snapshot; class bytes are fetched lazily (and live)
- * via {@link ClassEntryModel#getClassFile()} so only the classes javac actually reads get serialized.
+ * <p>Meant to live as long as the project (see {@link SnippetCompilerService}). The package -> class-name index
+ * follows the project incrementally: when {@link ProjectModel#getBytecodeVersion()} moves, only the classes added
+ * or removed since are indexed or dropped. Class bytes are fetched lazily via {@link ClassEntryModel#getClassFile()}
+ * for the classes javac actually reads and kept; a changed version drops those of user classes (which may have
+ * been edited in place) and of classes whose {@link ClassFile} was replaced.
  */
 public final class ProjectClasspath implements SnippetCompiler.Classpath {
 
     private final ProjectModel project;
-    private final Map<String, Set<String>> packageToBinaryNames;
+    private final Map<String, Set<String>> packageToBinaryNames = new HashMap<>();
+    private final Set<String> indexedNames = new HashSet<>();
+    /** Project plus JDK class names for auto-imports; null until needed after the project names change. */
+    private Set<String> allClassNames;
+    private final Map<String, CachedBytes> bytes = new HashMap<>();
+    private long seenVersion = -1;
 
     public ProjectClasspath(ProjectModel project) {
         this.project = project;
-        this.packageToBinaryNames = buildIndex(project);
     }
 
-    private static Map<String, Set<String>> buildIndex(ProjectModel project) {
-        Map<String, Set<String>> index = new HashMap<>();
+    /**
+     * The Java release to compile snippets for: derived from the highest class-file version among the target's
+     * pulled classes (which is at most the target JVM's runtime version), so a compiled snippet can always be
+     * defined by the attached JVM even when it is older than the JDK running JStudio.
+     */
+    public static int targetRelease(ProjectModel project) {
+        int maxMajor = 0;
         for (ClassEntryModel entry : project.getAllClasses()) {
+            int major = entry.getClassFile().getMajorVersion();
+            if (major > maxMajor) {
+                maxMajor = major;
+            }
+        }
+        return SnippetCompiler.releaseForMajorVersion(maxMajor);
+    }
+
+    /** The project's bytecode version: brings the index and byte cache up to date with it first. */
+    @Override
+    public synchronized long stamp() {
+        long version = project.getBytecodeVersion();
+        if (version != seenVersion) {
+            seenVersion = version;
+            update();
+        }
+        return version;
+    }
+
+    private void update() {
+        Set<String> present = new HashSet<>();
+        boolean namesChanged = false;
+        for (ClassEntryModel entry : project.getClassesView()) {
             String internal = entry.getClassName();
             if (internal == null || isPlatform(internal)) {
                 continue;
             }
             String binary = internal.replace('/', '.');
-            int lastDot = binary.lastIndexOf('.');
-            String pkg = lastDot >= 0 ? binary.substring(0, lastDot) : "";
-            index.computeIfAbsent(pkg, k -> new HashSet<>()).add(binary);
+            present.add(binary);
+            if (indexedNames.add(binary)) {
+                packageToBinaryNames.computeIfAbsent(packageOf(binary), k -> new HashSet<>()).add(binary);
+                namesChanged = true;
+            }
+        }
+        for (Iterator<String> it = indexedNames.iterator(); it.hasNext(); ) {
+            String binary = it.next();
+            if (!present.contains(binary)) {
+                it.remove();
+                Set<String> names = packageToBinaryNames.get(packageOf(binary));
+                if (names != null && names.remove(binary) && names.isEmpty()) {
+                    packageToBinaryNames.remove(packageOf(binary));
+                }
+                namesChanged = true;
+            }
         }
-        return index;
+        if (namesChanged) {
+            allClassNames = null;
+        }
+        bytes.entrySet().removeIf(e -> {
+            String internal = e.getKey().replace('.', '/');
+            ClassEntryModel entry = project.getClass(internal);
+            return entry == null || entry.getClassFile() != e.getValue().source || project.isUserClass(internal);
+        });
+    }
+
+    private static String packageOf(String binary) {
+        int lastDot = binary.lastIndexOf('.');
+        return lastDot >= 0 ? binary.substring(0, lastDot) : "";
     }
 
     @Override
-    public Set<String> classesInPackage(String packageName) {
-        return packageToBinaryNames.getOrDefault(packageName, Set.of());
+    public synchronized Set<String> classesInPackage(String packageName) {
+        Set<String> names = packageToBinaryNames.get(packageName);
+        return names != null ? new HashSet<>(names) : Set.of();
     }
 
     @Override
-    public Set<String> allClassNames() {
-        Set<String> all = new HashSet<>();
-        for (Set<String> names : packageToBinaryNames.values()) {
-            all.addAll(names);
-        }
-        for (List<String> fqns : JdkClassIndex.simpleToFqn().values()) {
-            all.addAll(fqns);
+    public synchronized Set<String> allClassNames() {
+        if (allClassNames == null) {
+            Set<String> all = new HashSet<>(indexedNames);
+            for (List<String> fqns : JdkClassIndex.simpleToFqn().values()) {
+                all.addAll(fqns);
+            }
+            allClassNames = Collections.unmodifiableSet(all);
         }
-        return all;
+        return allClassNames;
     }
 
     @Override
-    public byte[] classBytes(String binaryName) {
+    public synchronized byte[] classBytes(String binaryName) {
         if (binaryName == null) {
             return null;
         }
+        CachedBytes cached = bytes.get(binaryName);
+        if (cached != null) {
+            return cached.bytes;
+        }
         ClassEntryModel entry = project.getClass(binaryName.replace('.', '/'));
         if (entry == null) {
             return null;
         }
         try {
-            return entry.getClassFile().write();
+            ClassFile classFile = entry.getClassFile();
+            byte[] written = classFile.write();
+            bytes.put(binaryName, new CachedBytes(classFile, written));
+            return written;
         } catch (Exception e) {
             return null;
         }
@@ -82,4 +153,14 @@ public final class ProjectClasspath implements SnippetCompiler.Classpath {
                 || internal.startsWith("sun/")
                 || internal.startsWith("com/sun/");
     }
+
+    private static final class CachedBytes {
+        final ClassFile source;
+        final byte[] bytes;
+
+        CachedBytes(ClassFile source, byte[] bytes) {
+            this.source = source;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -1,12 +1,15 @@
 package com.tonic.ui.live.eval;
 
+import com.sun.source.util.JavacTask;
 import lombok.Getter;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
@@ -17,6 +20,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -39,11 +46,20 @@ import java.util.regex.Pattern;
  * by simple name are auto-imported. The result carries every compiled class (the wrapper plus any
  * anonymous/local classes) so the agent can define them all together.
  *
+ * <p>An instance stays warm between compiles: it keeps one file manager (so javac's platform class index and
+ * opened JDK images are reused), the simple-name index used for auto-imports, and the results of recent
+ * snippets. When the JDK exports it (JStudio's jar manifest asks for it), compiles also go through javac's own
+ * {@code JavacTaskPool}, the reusable-context pool JShell uses, so the symbol table with the platform and
+ * project classes already read survives between snippets; without it every compile starts a fresh context.
+ * Everything derived from the project is dropped when the {@link Classpath#stamp() classpath changes}. Use one
+ * instance per project, e.g. via {@link SnippetCompilerService}, and {@link #close()} it when done.
+ *
  * <p>UI-free and pool-agnostic: the application classpath is supplied via {@link Classpath}.
  */
-public final class SnippetCompiler {
+public final class SnippetCompiler implements AutoCloseable {
 
     private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    private static final int MAX_CACHED_RESULTS = 32;
 
     /** Supplies application class bytes (the attached JVM's pulled classes) to the compiler. */
     public interface Classpath {
@@ -55,6 +71,15 @@ public final class SnippetCompiler {
 
         /** All known class binary names (dot-separated). Used to auto-import classes referenced by simple name. */
         Set<String> allClassNames();
+
+        /**
+         * A value that changes whenever the classes served change; indexes and results derived from the
+         * classpath are reused only while it holds. Called at the start of every compile, so an implementation
+         * may bring its own indexes up to date here. A constant (the default) means the classpath never changes.
+         */
+        default long stamp() {
+            return 0;
+        }
     }
 
     /** Outcome of a compile: the classes to ship (on success) and any compiler messages (snippet-relative). */
@@ -91,6 +116,15 @@ public final class SnippetCompiler {
     private final int targetRelease;
     private int counter;
 
+    private StandardJavaFileManager standardFileManager;
+    private PoolFileManager fileManager;
+    private TaskPool taskPool;
+    private boolean pooling = true;
+    private long stamp = Long.MIN_VALUE;
+    private Map<String, List<String>> simpleNames;
+    /** Recent results by wrapped source, least recently used first; a repeated snippet is not compiled again. */
+    private final Map<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+
     /**
      * @param targetRelease the Java feature version to compile for (e.g. 11), so the snippet's bytecode can be
      *                      defined by an older target JVM; 0 = use the running JDK's default.
@@ -107,30 +141,116 @@ public final class SnippetCompiler {
 
     /** Compiles {@code snippet} (a sequence of statements, optionally preceded by {@code import} lines). */
     public synchronized Result compile(String snippet) {
+        return compile(snippet, "run()", "");
+    }
+
+    /**
+     * Compiles a logpoint snippet as {@code static Object run(Object self, Object[] args)}, the shape the agent's
+     * logpoint recorder calls. {@code prologue} is single-line Java placed before the body (typically typed
+     * locals unpacked from {@code args}), so snippet line numbers in the messages are unchanged.
+     */
+    public synchronized Result compileHook(String snippet, String prologue) {
+        return compile(snippet, "run(Object self, Object[] args)", prologue.replace('\n', ' '));
+    }
+
+    /**
+     * Compiles a trivial snippet so javac's classes are loaded and JIT-compiled and the platform index is built
+     * before the first real snippet; worth calling on a background thread as soon as a target is attached.
+     */
+    public synchronized void warmUp() {
+        compile("return null;", "run()", "");
+    }
+
+    /** Releases the file manager; the next compile opens a new one. */
+    @Override
+    public synchronized void close() {
+        if (standardFileManager != null) {
+            try {
+                standardFileManager.close();
+            } catch (IOException ignored) {
+            }
+            standardFileManager = null;
+            fileManager = null;
+        }
+        taskPool = null;
+        results.clear();
+    }
+
+    private Result compile(String snippet, String signature, String prologue) {
         JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
         if (javac == null) {
             return new Result(false, Map.of(), null,
                     List.of("No system Java compiler is available (JStudio must run on a JDK, not a JRE)."));
         }
+        long current = classpath.stamp();
+        if (current != stamp) {
+            stamp = current;
+            simpleNames = null;
+            results.clear();
+            taskPool = null;   // pooled contexts hold symbols read from the old classes
+        }
+
+        // The wrapper's name is not part of the key: a repeat of the same text reuses the earlier classes.
+        String key = signature + '\0' + prologue + '\0' + snippet;
+        Result cached = results.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
         String binaryName = "Scratch_" + (++counter);
-        Wrapped wrapped = wrap(snippet, binaryName);
+        Wrapped wrapped = wrap(snippet, binaryName, signature, prologue);
 
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        StandardJavaFileManager standard = javac.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
         Map<String, byte[]> outputs = new LinkedHashMap<>();
-        try (PoolFileManager fileManager = new PoolFileManager(standard, classpath, outputs)) {
+        Result result;
+        try {
+            PoolFileManager manager = fileManager(javac);
+            manager.outputs = outputs;
             JavaFileObject source = new SourceObject(binaryName, wrapped.source);
-            boolean ok = javac.getTask(null, fileManager, diagnostics,
-                    compilerOptions(), null, List.of(source)).call();
+            boolean ok = call(javac, manager, diagnostics, List.of(source));
             List<String> messages = formatDiagnostics(diagnostics, wrapped.preambleLines);
-            if (!ok || !outputs.containsKey(binaryName)) {
-                return new Result(false, Map.of(), null, messages);
+            result = !ok || !outputs.containsKey(binaryName)
+                    ? new Result(false, Map.of(), null, messages)
+                    : new Result(true, outputs, binaryName, messages);
+        } catch (RuntimeException e) {
+            // A javac crash may leave the shared file manager in a bad state; start the next compile afresh.
+            close();
+            return new Result(false, Map.of(), null, List.of("Compile failed: " + e));
+        } finally {
+            if (fileManager != null) {
+                fileManager.outputs = null;
+            }
+        }
+        results.put(key, result);
+        if (results.size() > MAX_CACHED_RESULTS) {
+            results.remove(results.keySet().iterator().next());
+        }
+        return result;
+    }
+
+    private boolean call(JavaCompiler javac, PoolFileManager manager, DiagnosticCollector<JavaFileObject> diagnostics,
+                         List<JavaFileObject> sources) {
+        if (pooling && taskPool == null) {
+            taskPool = TaskPool.create();
+            pooling = taskPool != null;
+        }
+        if (pooling) {
+            try {
+                return taskPool.call(manager, diagnostics, compilerOptions(), sources);
+            } catch (ReflectiveOperationException e) {
+                pooling = false;
+                taskPool = null;
             }
-            return new Result(true, outputs, binaryName, messages);
-        } catch (IOException e) {
-            return new Result(false, Map.of(), null, List.of("Compile failed: " + e.getMessage()));
         }
+        return javac.getTask(null, manager, diagnostics, compilerOptions(), null, sources).call();
+    }
+
+    private PoolFileManager fileManager(JavaCompiler javac) {
+        if (fileManager == null) {
+            standardFileManager = javac.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+            fileManager = new PoolFileManager(standardFileManager, classpath);
+        }
+        return fileManager;
     }
 
     /**
@@ -150,7 +270,7 @@ public final class SnippetCompiler {
     }
 
     /** Splits leading {@code import} lines from the body, auto-imports referenced classes, and assembles the source. */
-    private Wrapped wrap(String snippet, String simpleName) {
+    private Wrapped wrap(String snippet, String simpleName, String signature, String prologue) {
         String[] lines = snippet.split("\n", -1);
         List<String> imports = new ArrayList<>();
         int firstBody = 0;
@@ -178,7 +298,8 @@ public final class SnippetCompiler {
             w.append(imp).append('\n');
         }
         w.append("public final class ").append(simpleName).append(" {\n");
-        w.append("    public static Object run() throws Throwable { if (true) {\n");
+        w.append("    public static Object ").append(signature).append(" throws Throwable { ")
+                .append(prologue).append(" if (true) {\n");
         int preambleLines = 2 + imports.size() + autoImports.size();
         w.append(body);
         if (!body.endsWith("\n")) {
@@ -225,14 +346,18 @@ public final class SnippetCompiler {
         return result;
     }
 
-    /** Index of simple class name -> matching binary names, across all project classes. */
+    /** Index of simple class name -> matching binary names, across all project classes; kept per stamp. */
     private Map<String, List<String>> simpleNameIndex() {
+        if (simpleNames != null) {
+            return simpleNames;
+        }
         Map<String, List<String>> index = new HashMap<>();
         for (String binary : classpath.allClassNames()) {
             int dot = binary.lastIndexOf('.');
             String simple = dot >= 0 ? binary.substring(dot + 1) : binary;
             index.computeIfAbsent(simple, k -> new ArrayList<>()).add(binary);
         }
+        simpleNames = index;
         return index;
     }
 
@@ -250,6 +375,57 @@ public final class SnippetCompiler {
         return messages;
     }
 
+    /**
+     * javac's {@code com.sun.tools.javac.api.JavacTaskPool}, reached reflectively because the package is only
+     * exported when the launcher asks for it ({@code Add-Exports} in the jar manifest).
+     */
+    private static final class TaskPool {
+        private final Object pool;
+        private final Method getTask;
+        private final Object worker;
+
+        private TaskPool(Object pool, Method getTask, Object worker) {
+            this.pool = pool;
+            this.getTask = getTask;
+            this.worker = worker;
+        }
+
+        /** A pool of one context, or null when javac's pool is missing or not exported to us. */
+        static TaskPool create() {
+            try {
+                Class<?> poolClass = Class.forName("com.sun.tools.javac.api.JavacTaskPool");
+                Class<?> workerClass = Class.forName("com.sun.tools.javac.api.JavacTaskPool$Worker");
+                Object pool = poolClass.getConstructor(int.class).newInstance(1);
+                Method getTask = poolClass.getMethod("getTask", Writer.class, JavaFileManager.class,
+                        DiagnosticListener.class, Iterable.class, Iterable.class, Iterable.class, workerClass);
+                Object worker = Proxy.newProxyInstance(workerClass.getClassLoader(), new Class<?>[]{workerClass},
+                        (proxy, method, args) -> {
+                            if (method.getDeclaringClass() == Object.class) {
+                                return "equals".equals(method.getName()) ? proxy == args[0]
+                                        : "hashCode".equals(method.getName()) ? System.identityHashCode(proxy)
+                                        : "JavacTaskPool.Worker";
+                            }
+                            return ((JavacTask) args[0]).call();
+                        });
+                return new TaskPool(pool, getTask, worker);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+
+        boolean call(JavaFileManager fileManager, DiagnosticListener<JavaFileObject> diagnostics,
+                     List<String> options, List<JavaFileObject> sources) throws ReflectiveOperationException {
+            try {
+                return (Boolean) getTask.invoke(pool, null, fileManager, diagnostics, options, null, sources, worker);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
     private static final class Wrapped {
         final String source;
         final int preambleLines;
@@ -260,15 +436,17 @@ public final class SnippetCompiler {
         }
     }
 
-    /** Serves application classes from {@link Classpath} on the compiler classpath; captures compiled output. */
+    /**
+     * Serves application classes from {@link Classpath} on the compiler classpath; captures compiled output into
+     * the map of the compile in progress.
+     */
     private static final class PoolFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
         private final Classpath classpath;
-        private final Map<String, byte[]> outputs;
+        private Map<String, byte[]> outputs;
 
-        PoolFileManager(StandardJavaFileManager delegate, Classpath classpath, Map<String, byte[]> outputs) {
+        PoolFileManager(StandardJavaFileManager delegate, Classpath classpath) {
             super(delegate);
             this.classpath = classpath;
-            this.outputs = outputs;
         }
 
         @Override
@@ -0,0 +1,72 @@
+package com.tonic.ui.live.eval;
+
+import com.tonic.model.ProjectModel;
+
+/**
+ * The one warm {@link SnippetCompiler} shared by the scratch pad, logpoints and the plugin API. javac's first
+ * compile costs about a second (loading and initializing the compiler, reading the platform classes); a compiler
+ * kept for the project's lifetime pays that once, and with its {@link ProjectClasspath} following the project
+ * incrementally later compiles only redo the snippet. It is rebuilt when the project or the release to compile
+ * for changes, and dropped on detach.
+ */
+public final class SnippetCompilerService {
+
+    private static final SnippetCompilerService INSTANCE = new SnippetCompilerService();
+
+    private ProjectModel project;
+    private SnippetCompiler compiler;
+    private int release;
+    /** Bytecode version the release was last derived at; re-derived only when the project changes. */
+    private long releaseVersion = -1;
+
+    private SnippetCompilerService() {
+    }
+
+    public static SnippetCompilerService get() {
+        return INSTANCE;
+    }
+
+    /** The compiler for {@code project}, created (or recreated for a new target release) as needed. */
+    public synchronized SnippetCompiler compilerFor(ProjectModel project) {
+        if (project != this.project) {
+            clear();
+            this.project = project;
+        }
+        long version = project.getBytecodeVersion();
+        if (compiler == null || version != releaseVersion) {
+            releaseVersion = version;
+            int targetRelease = ProjectClasspath.targetRelease(project);
+            if (compiler == null || targetRelease != release) {
+                if (compiler != null) {
+                    compiler.close();
+                }
+                release = targetRelease;
+                compiler = new SnippetCompiler(new ProjectClasspath(project), targetRelease);
+            }
+        }
+        return compiler;
+    }
+
+    /** Pays javac's start-up for {@code project} on a background thread, so the first real snippet is fast. */
+    public void warmUp(ProjectModel project) {
+        Thread t = new Thread(() -> {
+            try {
+                compilerFor(project).warmUp();
+            } catch (RuntimeException ignored) {
+                // only a head start; the first real compile reports any problem
+            }
+        }, "snippet-compiler-warmup");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Closes the compiler, releasing javac's state. */
+    public synchronized void clear() {
+        if (compiler != null) {
+            compiler.close();
+        }
+        compiler = null;
+        project = null;
+        releaseVersion = -1;
+    }
+}
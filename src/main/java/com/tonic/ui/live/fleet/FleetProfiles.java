@@ -0,0 +1,93 @@
+package com.tonic.ui.live.fleet;
+
+import com.tonic.ui.live.recorder.jfr.CallTreeNode;
+import com.tonic.ui.live.recorder.jfr.FrameKey;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the fleet members' sampled call trees: one merged tree for the flame graph (the fleet's profile as if
+ * it were one JVM), and per-method weights per member so a hot frame in the merged graph can be traced back to
+ * the JVMs it comes from.
+ */
+final class FleetProfiles {
+
+    private FleetProfiles() {
+    }
+
+    /** Sums {@code trees} into one tree; nodes with the same call path are merged. */
+    static CallTreeNode merge(List<CallTreeNode> trees) {
+        CallTreeNode root = new CallTreeNode(null);
+        for (CallTreeNode tree : trees) {
+            mergeInto(root, tree);
+        }
+        return root;
+    }
+
+    private static void mergeInto(CallTreeNode into, CallTreeNode from) {
+        into.addTotal(from.getTotalWeight());
+        into.addSelf(from.getSelfWeight());
+        for (CallTreeNode child : from.sortedChildren()) {
+            mergeInto(into.child(child.getFrame()), child);
+        }
+    }
+
+    /**
+     * Self and inclusive samples per method (class + name, lines folded) in {@code tree}. A method that recurses
+     * counts its inclusive samples once, at its outermost frame.
+     */
+    static Map<String, Weights> methodWeights(CallTreeNode tree) {
+        Map<String, Weights> out = new HashMap<>();
+        Map<String, Integer> onPath = new HashMap<>();
+        for (CallTreeNode child : tree.sortedChildren()) {
+            collect(child, out, onPath);
+        }
+        return out;
+    }
+
+    private static void collect(CallTreeNode node, Map<String, Weights> out, Map<String, Integer> onPath) {
+        String method = methodKey(node.getFrame());
+        Weights w = out.computeIfAbsent(method, k -> new Weights());
+        w.self += node.getSelfWeight();
+        int depth = onPath.getOrDefault(method, 0);
+        if (depth == 0) {
+            w.inclusive += node.getTotalWeight();
+        }
+        onPath.put(method, depth + 1);
+        for (CallTreeNode child : node.sortedChildren()) {
+            collect(child, out, onPath);
+        }
+        if (depth == 0) {
+            onPath.remove(method);
+        } else {
+            onPath.put(method, depth);
+        }
+    }
+
+    /**
+     * One row per member for {@code frame}'s method: each member's weights, in member order. Members whose
+     * profile never saw the method get zeros.
+     */
+    static Map<String, Weights> breakdown(FrameKey frame, Map<String, Map<String, Weights>> byMember) {
+        String method = methodKey(frame);
+        Map<String, Weights> rows = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Weights>> e : byMember.entrySet()) {
+            Weights w = e.getValue().get(method);
+            rows.put(e.getKey(), w != null ? w : new Weights());
+        }
+        return rows;
+    }
+
+    static String methodKey(FrameKey frame) {
+        return frame.getClassInternal() + "." + frame.getMethod();
+    }
+
+    /** Samples that ended in a method, and samples with the method anywhere on the stack. */
+    static final class Weights {
+        long self;
+        long inclusive;
+    }
+}
@@ -0,0 +1,169 @@
+package com.tonic.ui.live.fleet;
+
+import com.tonic.live.LiveFleet;
+import com.tonic.live.LiveSession;
+import com.tonic.live.probe.SampleProfile;
+import com.tonic.live.protocol.LiveEvent;
+import com.tonic.ui.live.LiveSamplerService;
+import com.tonic.ui.live.recorder.jfr.CallTreeNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The JVMs in the fleet view and what the view keeps about them. Its sessions are separate from
+ * {@code LiveAttachService}'s single session: the fleet is for comparing many targets side by side, not for
+ * opening one as the project. Each member's sampler deltas are folded into its own {@link SampleProfile} as they
+ * arrive, so the merged flame graph is built without asking the agents again. Everything that talks to an agent
+ * blocks: call it off the EDT.
+ */
+public final class LiveFleetService {
+
+    private static final LiveFleetService INSTANCE = new LiveFleetService();
+
+    /** How long one fleet-wide request waits for its slowest member. */
+    static final long REQUEST_TIMEOUT_MS = 15_000;
+    private static final long ATTACH_TIMEOUT_MS = 60_000;
+    private static final int SAMPLE_DEPTH = 128;
+
+    private LiveFleet fleet;
+    /** pid -> member state, in attach order. */
+    private final Map<String, Member> members = new LinkedHashMap<>();
+
+    private static final class Member {
+        final String label;
+        final SampleProfile profile = new SampleProfile();
+        Consumer<LiveEvent> hook;
+
+        Member(String label) {
+            this.label = label;
+        }
+    }
+
+    private LiveFleetService() {
+    }
+
+    public static LiveFleetService get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Attaches to every pid at once; {@code labels} are the display names shown as column headers. Returns the
+     * per-pid outcome, in order.
+     */
+    public List<LiveFleet.Result<LiveSession>> attach(List<String> pids, List<String> labels, String agentJar) {
+        LiveFleet target;
+        synchronized (this) {
+            if (fleet == null) {
+                fleet = new LiveFleet();
+            }
+            target = fleet;
+        }
+        List<LiveFleet.Result<LiveSession>> results = target.attachAll(pids, agentJar, ATTACH_TIMEOUT_MS);
+        synchronized (this) {
+            for (int i = 0; i < results.size(); i++) {
+                LiveFleet.Result<LiveSession> r = results.get(i);
+                if (r.isOk()) {
+                    Member m = new Member(labels.get(i));
+                    m.hook = e -> onEvent(m, e);
+                    r.getValue().addEventListener(m.hook);
+                    members.put(r.getPid(), m);
+                }
+            }
+        }
+        return results;
+    }
+
+    /** Disconnects one member; the agent stops its sampler when the connection closes. */
+    public synchronized void detach(String pid) {
+        if (fleet != null && members.remove(pid) != null) {
+            fleet.remove(pid);
+        }
+    }
+
+    public synchronized void detachAll() {
+        if (fleet != null) {
+            fleet.close();
+            fleet = null;
+        }
+        members.clear();
+    }
+
+    public synchronized int size() {
+        return members.size();
+    }
+
+    /** Member pids, in attach order. */
+    public synchronized List<String> pids() {
+        return new ArrayList<>(members.keySet());
+    }
+
+    public synchronized String label(String pid) {
+        Member m = members.get(pid);
+        return m != null ? m.label : pid;
+    }
+
+    /** Runs {@code request} on every member concurrently; one result per member, in attach order. */
+    public <T> List<LiveFleet.Result<T>> call(LiveFleet.Request<T> request) {
+        LiveFleet target;
+        synchronized (this) {
+            target = fleet;
+        }
+        return target == null ? new ArrayList<>() : target.call(request, REQUEST_TIMEOUT_MS);
+    }
+
+    /** Starts every member's sampler, discarding the profiles from the previous run. */
+    public List<LiveFleet.Result<Boolean>> startSampling(int intervalMs) {
+        synchronized (this) {
+            for (Member m : members.values()) {
+                synchronized (m.profile) {
+                    m.profile.clear();
+                }
+            }
+        }
+        return call(s -> {
+            if (!s.supportsSampling()) {
+                throw new UnsupportedOperationException("agent has no stack sampler");
+            }
+            s.startSampling(intervalMs, SAMPLE_DEPTH);
+            return Boolean.TRUE;
+        });
+    }
+
+    public List<LiveFleet.Result<Boolean>> stopSampling() {
+        return call(s -> {
+            if (s.supportsSampling()) {
+                s.stopSampling();
+            }
+            return Boolean.TRUE;
+        });
+    }
+
+    /** Each member's profile so far as a call tree, keyed by pid in attach order. */
+    public Map<String, CallTreeNode> callTrees() {
+        Map<String, CallTreeNode> out = new LinkedHashMap<>();
+        List<Map.Entry<String, Member>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(members.entrySet());
+        }
+        for (Map.Entry<String, Member> e : snapshot) {
+            SampleProfile profile = e.getValue().profile;
+            synchronized (profile) {
+                out.put(e.getKey(), LiveSamplerService.callTree(profile));
+            }
+        }
+        return out;
+    }
+
+    private void onEvent(Member m, LiveEvent e) {
+        if (e.getKind() != LiveEvent.Kind.SAMPLES) {
+            return;
+        }
+        synchronized (m.profile) {
+            m.profile.apply(e.getSampleDelta());
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.tonic.ui.live.fleet;
+
+import com.tonic.live.AttachLauncher;
+import com.tonic.live.LiveFleet;
+import com.tonic.live.LiveSession;
+import com.tonic.live.protocol.LiveProtocol;
+import com.tonic.live.protocol.MetricsSnapshot;
+import com.tonic.live.protocol.ScanLocation;
+import com.tonic.live.protocol.ScanPage;
+import com.tonic.live.protocol.StaticField;
+import com.tonic.live.protocol.ThreadInfo;
+import com.tonic.ui.MainFrame;
+import com.tonic.ui.core.SwingWorkers;
+import com.tonic.ui.core.component.ThemedJPanel;
+import com.tonic.ui.core.component.ThemedJPanel.BackgroundStyle;
+import com.tonic.ui.core.component.ThemedJScrollPane;
+import com.tonic.ui.core.component.ThemedJTable;
+import com.tonic.ui.live.LiveAttachService;
+import com.tonic.ui.live.recorder.jfr.CallTreeNode;
+import com.tonic.ui.live.recorder.jfr.FlameGraphPanel;
+import com.tonic.ui.live.recorder.jfr.FrameKey;
+import com.tonic.ui.theme.JStudioTheme;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.DefaultTableModel;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Side-by-side view of several live JVMs (e.g. the replicas of one service). Pick any number of local JVMs and
+ * attach to all of them at once; each tab then sends one request to every member in parallel and lays the
+ * answers out as one column (or row) per JVM: metrics, thread states, static field values, value-scan hits,
+ * class-bytes hashes (to spot a replica running different code), and a CPU profile merged across the fleet with
+ * a per-JVM breakdown of any frame.
+ */
+public final class LiveFleetWindow extends JFrame {
+
+    private static final int SAMPLE_INTERVAL_MS = 10;
+    private static final int SCAN_MAX_VISITED = 2_000_000;
+    private static final int SCAN_MAX_MATCHES = 50_000;
+    private static final int SCAN_PATHS_SHOWN = 3;
+    private static final String[] SCAN_TYPES = {"int", "long", "double", "boolean", "String", "any number"};
+    private static final int[] SCAN_TYPE_CODES = {LiveProtocol.SCAN_INT, LiveProtocol.SCAN_LONG,
+            LiveProtocol.SCAN_DOUBLE, LiveProtocol.SCAN_BOOLEAN, LiveProtocol.SCAN_STRING, LiveProtocol.SCAN_NUMBER};
+
+    private final LiveFleetService fleet = LiveFleetService.get();
+
+    private final DefaultListModel<AttachLauncher.JvmProcess> jvmModel = new DefaultListModel<>();
+    private final JList<AttachLauncher.JvmProcess> jvmList = new JList<>(jvmModel);
+    private final JButton attachButton = new JButton("Attach Selected");
+    private final JLabel status = new JLabel(" ");
+
+    private final DefaultTableModel metricsModel = readOnlyModel();
+    private final DefaultTableModel threadsModel = readOnlyModel();
+    private final DefaultTableModel staticsModel = readOnlyModel();
+    private final DefaultTableModel scanModel = readOnlyModel("JVM", "Matches", "First locations");
+    private final DefaultTableModel bytesModel = readOnlyModel("JVM", "Variant", "Size", "SHA-256");
+    private final DefaultTableModel breakdownModel = readOnlyModel("JVM", "Self", "Inclusive", "% of JVM");
+
+    private final JTextField staticsClass = new JTextField(28);
+    private final JTextField scanValue = new JTextField(16);
+    private final JComboBox<String> scanType = new JComboBox<>(SCAN_TYPES);
+    private final JTextField bytesClass = new JTextField(28);
+
+    private final ThemedJScrollPane flameScroll = new ThemedJScrollPane();
+    private final JLabel profileInfo = new JLabel(" ");
+    private final JLabel breakdownTitle = new JLabel("Double-click a frame for its per-JVM breakdown.");
+    private final JButton resetZoom = new JButton("Reset zoom");
+    private FlameGraphPanel flame;
+    private Map<String, Map<String, FleetProfiles.Weights>> weightsByMember = new LinkedHashMap<>();
+    private Map<String, Long> samplesByMember = new LinkedHashMap<>();
+
+    public LiveFleetWindow(MainFrame mainFrame) {
+        super("Live Fleet");
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setIconImages(mainFrame.getIconImages());
+        setSize(1200, 760);
+        setLocationRelativeTo(mainFrame);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.putClientProperty("JTabbedPane.tabType", "underlined");
+        tabs.putClientProperty("JTabbedPane.showTabSeparators", false);
+        tabs.addTab("Metrics", tablePanel(metricsModel, button("Refresh", this::refreshMetrics)));
+        tabs.addTab("Threads", tablePanel(threadsModel, button("Refresh", this::refreshThreads)));
+        tabs.addTab("Statics", tablePanel(staticsModel, new JLabel("Class:"), staticsClass,
+                button("Read", this::readStatics)));
+        tabs.addTab("Value Scan", tablePanel(scanModel, new JLabel("Type:"), scanType, new JLabel("Value:"),
+                scanValue, button("Scan", this::scan)));
+        tabs.addTab("Class Bytes", tablePanel(bytesModel, new JLabel("Class:"), bytesClass,
+                button("Compare", this::compareClassBytes)));
+        tabs.addTab("CPU Profile", profilePanel());
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, jvmPanel(), tabs);
+        split.setDividerLocation(300);
+
+        status.setForeground(JStudioTheme.getTextSecondary());
+        ThemedJPanel south = new ThemedJPanel(BackgroundStyle.PRIMARY, new FlowLayout(FlowLayout.LEFT, 8, 4));
+        south.add(status);
+
+        ThemedJPanel content = new ThemedJPanel(BackgroundStyle.PRIMARY, new BorderLayout());
+        content.add(split, BorderLayout.CENTER);
+        content.add(south, BorderLayout.SOUTH);
+        setContentPane(content);
+        reloadJvmList();
+    }
+
+    private ThemedJPanel jvmPanel() {
+        jvmList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        attachButton.addActionListener(e -> attachSelected());
+        ThemedJPanel buttons = new ThemedJPanel(BackgroundStyle.SECONDARY, new FlowLayout(FlowLayout.LEFT, 4, 4));
+        buttons.add(button("Refresh", this::reloadJvmList));
+        buttons.add(attachButton);
+        buttons.add(button("Detach All", this::detachAll));
+
+        ThemedJPanel panel = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
+        panel.add(new ThemedJScrollPane(jvmList), BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    private ThemedJPanel profilePanel() {
+        resetZoom.setFocusable(false);
+        resetZoom.setEnabled(false);
+        resetZoom.addActionListener(e -> flame.reset());
+        profileInfo.setForeground(JStudioTheme.getTextSecondary());
+        ThemedJPanel strip = new ThemedJPanel(BackgroundStyle.PRIMARY, new FlowLayout(FlowLayout.LEFT, 8, 4));
+        strip.add(button("Start Sampling", this::startSampling));
+        strip.add(button("Stop", this::stopSampling));
+        strip.add(button("Refresh", this::refreshProfile));
+        strip.add(resetZoom);
+        strip.add(profileInfo);
+
+        ThemedJPanel breakdown = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
+        breakdown.add(breakdownTitle, BorderLayout.NORTH);
+        breakdown.add(new ThemedJScrollPane(new ThemedJTable(breakdownModel)), BorderLayout.CENTER);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, flameScroll, breakdown);
+        split.setResizeWeight(0.7);
+
+        ThemedJPanel panel = new ThemedJPanel(BackgroundStyle.PRIMARY, new BorderLayout());
+        panel.add(strip, BorderLayout.NORTH);
+        panel.add(split, BorderLayout.CENTER);
+        return panel;
+    }
+
+    // ---- members ----
+
+    private void reloadJvmList() {
+        jvmModel.clear();
+        try {
+            String self = currentPid();
+            for (AttachLauncher.JvmProcess p : AttachLauncher.listJvms()) {
+                if (!p.getId().equals(self)) {
+                    jvmModel.addElement(p);
+                }
+            }
+            status.setText(jvmModel.isEmpty() ? "No attachable JVMs found." : "Select JVMs and Attach Selected.");
+        } catch (Throwable t) {
+            status.setText("Failed to list JVMs: " + t.getMessage());
+        }
+    }
+
+    private void attachSelected() {
+        List<AttachLauncher.JvmProcess> selected = jvmList.getSelectedValuesList();
+        if (selected.isEmpty()) {
+            status.setText("Select one or more JVMs first.");
+            return;
+        }
+        File agent = LiveAttachService.getInstance().resolveAgentJar();
+        if (agent == null) {
+            status.setText("Bundled live agent not found.");
+            return;
+        }
+        List<String> pids = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (AttachLauncher.JvmProcess p : selected) {
+            pids.add(p.getId());
+            labels.add(p.getId() + " " + shortName(p.getDisplayName()));
+        }
+        attachButton.setEnabled(false);
+        status.setText("Attaching to " + pids.size() + " JVM(s)...");
+        SwingWorkers.run(() -> fleet.attach(pids, labels, agent.getAbsolutePath()), results -> {
+            attachButton.setEnabled(true);
+            status.setText(fleet.size() + " JVM(s) in the fleet." + failures(results));
+            refreshMetrics();
+        }, err -> {
+            attachButton.setEnabled(true);
+            status.setText("Attach failed: " + err.getMessage());
+        });
+    }
+
+    private void detachAll() {
+        fleet.detachAll();
+        for (DefaultTableModel model : new DefaultTableModel[]{metricsModel, threadsModel, staticsModel,
+                scanModel, bytesModel, breakdownModel}) {
+            model.setRowCount(0);
+        }
+        flameScroll.setViewportView(null);
+        status.setText("Detached from every fleet JVM.");
+    }
+
+    // ---- tabs ----
+
+    private void refreshMetrics() {
+        request("metrics", LiveSession::getMetrics, results -> {
+            String[] names = {"Uptime", "Process CPU", "System CPU", "Processors", "Heap used", "Heap committed",
+                    "Heap max", "Non-heap used", "Threads", "Daemon threads", "Peak threads", "Loaded classes",
+                    "Unloaded classes", "GC collections", "GC time"};
+            Object[][] rows = new Object[names.length][results.size() + 1];
+            for (int r = 0; r < names.length; r++) {
+                rows[r][0] = names[r];
+            }
+            for (int c = 0; c < results.size(); c++) {
+                LiveFleet.Result<MetricsSnapshot> res = results.get(c);
+                MetricsSnapshot m = res.getValue();
+                Object[] values = m == null ? null : new Object[]{
+                        String.format("%,d s", m.uptimeMs / 1000), percent(m.processCpuLoad),
+                        percent(m.systemCpuLoad), m.availableProcessors, mb(m.heapUsed), mb(m.heapCommitted),
+                        mb(m.heapMax), mb(m.nonHeapUsed), m.threadCount, m.daemonThreadCount, m.peakThreadCount,
+                        m.loadedClassCount, m.unloadedClassCount, gcCount(m), String.format("%,d ms", gcTime(m))};
+                for (int r = 0; r < names.length; r++) {
+                    rows[r][c + 1] = values != null ? values[r] : r == 0 ? res.getError() : "";
+                }
+            }
+            metricsModel.setDataVector(rows, header("Metric", results));
+        });
+    }
+
+    private void refreshThreads() {
+        request("threads", LiveSession::getThreads, results -> {
+            Thread.State[] states = Thread.State.values();
+            Object[][] rows = new Object[states.length + 1][results.size() + 1];
+            for (int s = 0; s < states.length; s++) {
+                rows[s][0] = states[s].name();
+            }
+            rows[states.length][0] = "Total";
+            for (int c = 0; c < results.size(); c++) {
+                List<ThreadInfo> threads = results.get(c).getValue();
+                int[] counts = new int[states.length];
+                if (threads != null) {
+                    for (ThreadInfo t : threads) {
+                        if (t.getState() >= 0 && t.getState() < counts.length) {
+                            counts[t.getState()]++;
+                        }
+                    }
+                }
+                for (int s = 0; s < states.length; s++) {
+                    rows[s][c + 1] = threads != null ? counts[s] : s == 0 ? results.get(c).getError() : "";
+                }
+                rows[states.length][c + 1] = threads != null ? threads.size() : "";
+            }
+            threadsModel.setDataVector(rows, header("State", results));
+        });
+    }
+
+    private void readStatics() {
+        String internalName = internalName(staticsClass.getText());
+        if (internalName.isEmpty()) {
+            status.setText("Enter a class name.");
+            return;
+        }
+        request("statics of " + internalName, s -> s.getStatics(internalName), results -> {
+            Set<String> fields = new LinkedHashSet<>();
+            List<Map<String, String>> values = new ArrayList<>();
+            for (LiveFleet.Result<List<StaticField>> res : results) {
+                Map<String, String> byName = new LinkedHashMap<>();
+                if (res.getValue() != null) {
+                    for (StaticField f : res.getValue()) {
+                        fields.add(f.getName());
+                        byName.put(f.getName(), f.getValue());
+                    }
+                }
+                values.add(byName);
+            }
+            Object[][] rows = new Object[fields.size()][results.size() + 2];
+            int r = 0;
+            for (String field : fields) {
+                rows[r][0] = field;
+                Set<String> distinct = new LinkedHashSet<>();
+                for (int c = 0; c < results.size(); c++) {
+                    String v = results.get(c).isOk() ? values.get(c).get(field) : results.get(c).getError();
+                    rows[r][c + 1] = v;
+                    distinct.add(String.valueOf(v));
+                }
+                rows[r][results.size() + 1] = distinct.size() > 1 ? "differs" : "";
+                r++;
+            }
+            Object[] header = new Object[results.size() + 2];
+            System.arraycopy(header("Field", results), 0, header, 0, results.size() + 1);
+            header[results.size() + 1] = "";
+            staticsModel.setDataVector(rows, header);
+        });
+    }
+
+    private void scan() {
+        String value = scanValue.getText().trim();
+        if (value.isEmpty()) {
+            status.setText("Enter a value to scan for.");
+            return;
+        }
+        int type = SCAN_TYPE_CODES[scanType.getSelectedIndex()];
+        request("value scan", s -> s.scanFirst(type, LiveProtocol.SCANKIND_EXACT, value, "", "", true,
+                SCAN_MAX_VISITED, SCAN_MAX_MATCHES, SCAN_PATHS_SHOWN), results -> {
+            scanModel.setRowCount(0);
+            for (LiveFleet.Result<ScanPage> res : results) {
+                ScanPage page = res.getValue();
+                if (page == null) {
+                    scanModel.addRow(new Object[]{label(res), "", res.getError()});
+                    continue;
+                }
+                StringBuilder paths = new StringBuilder();
+                for (ScanLocation loc : page.getLocations()) {
+                    paths.append(paths.length() == 0 ? "" : ",  ").append(loc.getDisplayPath());
+                }
+                scanModel.addRow(new Object[]{label(res),
+                        String.format("%,d%s", page.getTotal(), page.isTruncated() ? "+" : ""), paths.toString()});
+            }
+        });
+    }
+
+    private void compareClassBytes() {
+        String internalName = internalName(bytesClass.getText());
+        if (internalName.isEmpty()) {
+            status.setText("Enter a class name.");
+            return;
+        }
+        request("bytes of " + internalName, s -> s.fetchClassBytes(internalName), results -> {
+            Map<String, Character> variants = new LinkedHashMap<>();
+            bytesModel.setRowCount(0);
+            for (LiveFleet.Result<byte[]> res : results) {
+                byte[] bytes = res.getValue();
+                if (bytes == null || bytes.length == 0) {
+                    bytesModel.addRow(new Object[]{label(res), "", "", res.isOk() ? "not loaded" : res.getError()});
+                    continue;
+                }
+                String hash = sha256(bytes);
+                char variant = variants.computeIfAbsent(hash, h -> (char) ('A' + variants.size()));
+                bytesModel.addRow(new Object[]{label(res), String.valueOf(variant),
+                        String.format("%,d", bytes.length), hash});
+            }
+            status.setText(variants.size() > 1
+                    ? internalName + ": " + variants.size() + " different versions across the fleet."
+                    : internalName + ": identical wherever loaded.");
+        });
+    }
+
+    // ---- CPU profile ----
+
+    private void startSampling() {
+        sampling("start sampling", () -> fleet.startSampling(SAMPLE_INTERVAL_MS),
+                () -> profileInfo.setText("Sampling every " + SAMPLE_INTERVAL_MS + " ms - Refresh to update."));
+    }
+
+    private void stopSampling() {
+        sampling("stop sampling", fleet::stopSampling, this::refreshProfile);
+    }
+
+    private void sampling(String what, Callable<List<LiveFleet.Result<Boolean>>> work, Runnable then) {
+        if (fleet.size() == 0) {
+            status.setText("Attach to one or more JVMs first.");
+            return;
+        }
+        SwingWorkers.run(work, results -> {
+            status.setText(what + ": " + results.size() + " JVM(s)." + failures(results));
+            then.run();
+        }, err -> status.setText(what + " failed: " + err.getMessage()));
+    }
+
+    private void refreshProfile() {
+        SwingWorkers.run(() -> {
+            Map<String, CallTreeNode> trees = fleet.callTrees();
+            Map<String, Map<String, FleetProfiles.Weights>> weights = new LinkedHashMap<>();
+            Map<String, Long> samples = new LinkedHashMap<>();
+            for (Map.Entry<String, CallTreeNode> e : trees.entrySet()) {
+                weights.put(e.getKey(), FleetProfiles.methodWeights(e.getValue()));
+                samples.put(e.getKey(), e.getValue().getTotalWeight());
+            }
+            return new Profile(FleetProfiles.merge(new ArrayList<>(trees.values())), weights, samples);
+        }, this::showProfile, err -> status.setText("Profile failed: " + err.getMessage()));
+    }
+
+    private void showProfile(Profile profile) {
+        weightsByMember = profile.weights;
+        samplesByMember = profile.samples;
+        String summary = String.format("%,d samples from %d JVM(s)", profile.merged.getTotalWeight(),
+                profile.samples.size());
+        flame = new FlameGraphPanel(profile.merged, n -> String.format("%,d samples", n), this::showBreakdown);
+        flame.setOnZoomChanged(() -> {
+            profileInfo.setText(flame.isZoomed() ? flame.pathLabel() : summary);
+            resetZoom.setEnabled(flame.isZoomed());
+        });
+        flameScroll.setViewportView(flame);
+        profileInfo.setText(summary);
+        resetZoom.setEnabled(false);
+    }
+
+    private void showBreakdown(FrameKey frame) {
+        if (frame == null) {
+            return;
+        }
+        breakdownTitle.setText(frame.getClassInternal().replace('/', '.') + "." + frame.getMethod());
+        breakdownModel.setRowCount(0);
+        for (Map.Entry<String, FleetProfiles.Weights> e : FleetProfiles.breakdown(frame, weightsByMember)
+                .entrySet()) {
+            long total = samplesByMember.getOrDefault(e.getKey(), 0L);
+            FleetProfiles.Weights w = e.getValue();
+            breakdownModel.addRow(new Object[]{fleet.label(e.getKey()), String.format("%,d", w.self),
+                    String.format("%,d", w.inclusive), total == 0 ? "" : percent(w.inclusive / (double) total)});
+        }
+    }
+
+    /** The fleet profile as built off the EDT: the merged tree and each member's per-method weights. */
+    private static final class Profile {
+        final CallTreeNode merged;
+        final Map<String, Map<String, FleetProfiles.Weights>> weights;
+        final Map<String, Long> samples;
+
+        Profile(CallTreeNode merged, Map<String, Map<String, FleetProfiles.Weights>> weights,
+                Map<String, Long> samples) {
+            this.merged = merged;
+            this.weights = weights;
+            this.samples = samples;
+        }
+    }
+
+    // ---- helpers ----
+
+    /** Sends {@code request} to every member off the EDT and hands the results to {@code show} on the EDT. */
+    private <T> void request(String what, LiveFleet.Request<T> request, Consumer<List<LiveFleet.Result<T>>> show) {
+        if (fleet.size() == 0) {
+            status.setText("Attach to one or more JVMs first.");
+            return;
+        }
+        status.setText("Requesting " + what + " from " + fleet.size() + " JVM(s)...");
+        long start = System.nanoTime();
+        SwingWorkers.run(() -> fleet.call(request), results -> {
+            status.setText(String.format("%s: %d JVM(s) in %,d ms.%s", what, results.size(),
+                    (System.nanoTime() - start) / 1_000_000, failures(results)));
+            show.accept(results);
+        }, err -> status.setText(what + " failed: " + err.getMessage()));
+    }
+
+    private String label(LiveFleet.Result<?> result) {
+        return fleet.label(result.getPid());
+    }
+
+    private Object[] header(String first, List<? extends LiveFleet.Result<?>> results) {
+        Object[] header = new Object[results.size() + 1];
+        header[0] = first;
+        for (int i = 0; i < results.size(); i++) {
+            header[i + 1] = label(results.get(i));
+        }
+        return header;
+    }
+
+    private static String failures(List<? extends LiveFleet.Result<?>> results) {
+        StringBuilder sb = new StringBuilder();
+        for (LiveFleet.Result<?> r : results) {
+            if (!r.isOk()) {
+                sb.append(sb.length() == 0 ? "  Failed: " : "; ").append(r.getPid()).append(" (")
+                        .append(r.getError()).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static ThemedJPanel tablePanel(DefaultTableModel model, Component... controls) {
+        ThemedJPanel strip = new ThemedJPanel(BackgroundStyle.PRIMARY, new FlowLayout(FlowLayout.LEFT, 8, 4));
+        for (Component c : controls) {
+            strip.add(c);
+        }
+        ThemedJPanel panel = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
+        panel.add(strip, BorderLayout.NORTH);
+        panel.add(new ThemedJScrollPane(new ThemedJTable(model)), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private static JButton button(String text, Runnable action) {
+        JButton b = new JButton(text);
+        b.setFocusable(false);
+        b.addActionListener(e -> action.run());
+        return b;
+    }
+
+    private static String internalName(String text) {
+        return text.trim().replace('.', '/');
+    }
+
+    private static String shortName(String displayName) {
+        String main = displayName.split(" ", 2)[0];
+        int slash = Math.max(main.lastIndexOf('/'), main.lastIndexOf('\\'));
+        return slash >= 0 ? main.substring(slash + 1) : main;
+    }
+
+    private static String currentPid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : "";
+    }
+
+    private static String mb(long bytes) {
+        return bytes < 0 ? "-" : String.format("%,.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String percent(double fraction) {
+        return fraction < 0 ? "-" : String.format("%.1f%%", fraction * 100);
+    }
+
+    private static long gcCount(MetricsSnapshot m) {
+        long n = 0;
+        for (MetricsSnapshot.GcStat gc : m.gcStats) {
+            n += gc.collectionCount;
+        }
+        return n;
+    }
+
+    private static long gcTime(MetricsSnapshot m) {
+        long t = 0;
+        for (MetricsSnapshot.GcStat gc : m.gcStats) {
+            t += gc.collectionTimeMs;
+        }
+        return t;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,34 +1,64 @@
 package com.tonic.ui.live.profiler;
 
 import com.tonic.live.LiveSession;
+import com.tonic.live.protocol.LiveEvent;
+import com.tonic.live.protocol.LiveProtocol;
+import com.tonic.live.protocol.MetricsBatch;
 import com.tonic.live.protocol.MetricsSnapshot;
+import com.tonic.ui.MainFrame;
 import com.tonic.ui.core.SwingWorkers;
 import com.tonic.ui.core.component.ThemedJPanel;
 import com.tonic.ui.core.component.ThemedJScrollPane;
+import com.tonic.ui.core.component.ThemedJTable;
+import com.tonic.ui.core.util.JvmDescriptorFormatter;
 import com.tonic.ui.live.LiveAttachService;
+import com.tonic.ui.live.LiveProbeService;
+import com.tonic.ui.live.LiveSamplerService;
 import com.tonic.ui.theme.JStudioTheme;
 
 import javax.swing.Box;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Right-dock tool (shown only while attached): live graphs of the target JVM's CPU, heap, metaspace, GC,
- * threads, and loaded classes, sampled once a second from its JMX MXBeans via the agent. Sampling pauses
- * while the tab is not visible, and at most one request is outstanding at a time (the connection is serial).
+ * threads, and loaded classes from its JMX MXBeans. Agents that support it push samples four times a second
+ * (a metrics subscription); older ones are polled once a second, with at most one request outstanding. The
+ * charts keep minute and hour means, so the range selector and dragging a chart scroll back hours without
+ * asking the agent again. Below the charts, a table lists the method timing probes added from the navigator with
+ * their call rate and latency percentiles over the last minute, another the busiest tracked allocation sites, and
+ * a strip drives the agent's stack sampler (a CPU flame graph that does not need JFR).
  */
 public final class LiveProfilerPanel extends ThemedJPanel {
 
     private static final int INTERVAL_MS = 1000;
+    private static final int STREAM_PERIOD_MS = 250;
+    private static final String[] RANGE_LABELS = {"3 min", "15 min", "1 hour", "6 hours", "24 hours", "7 days"};
+    private static final long[] RANGE_SPANS_MS = {3 * 60_000L, 15 * 60_000L, 3_600_000L, 6 * 3_600_000L,
+            24 * 3_600_000L, 7 * 24 * 3_600_000L};
+    private static final Integer[] SAMPLE_INTERVALS_MS = {5, 10, 20, 50, 100};
 
     private final JLabel status = new JLabel("Attached - sampling...");
     private final Timer timer = new Timer(INTERVAL_MS, e -> poll());
+    private final JComboBox<String> range = new JComboBox<>(RANGE_LABELS);
+    private final JButton liveButton = new JButton("Live");
+    private final JLabel position = new JLabel();
 
     private final MetricChart cpu = new MetricChart("CPU", 100.0);
     private final MetricChart heap = new MetricChart("Heap", null);
@@ -45,12 +75,57 @@ public final class LiveProfilerPanel extends ThemedJPanel {
     private final int threadSeries;
     private final int classSeries;
 
+    private final List<LiveProbeService.ProbeStats> probeRows = new ArrayList<>();
+    private final DefaultTableModel probeModel = new DefaultTableModel(
+            new Object[]{"Method", "Calls/s", "Mean", "p50", "p90", "p99", "Max"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final ThemedJTable probeTable = new ThemedJTable(probeModel);
+    private final JButton removeProbeButton = new JButton("Remove Probe");
+
+    private final List<LiveProbeService.AllocationStats> allocRows = new ArrayList<>();
+    private final DefaultTableModel allocModel = new DefaultTableModel(
+            new Object[]{"Site", "Type", "Allocs/s", "Total"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final ThemedJTable allocTable = new ThemedJTable(allocModel);
+    private final JButton untrackButton = new JButton("Stop Tracking Class");
+    private final JLabel allocStatus = new JLabel();
+
+    private final MainFrame mainFrame;
+    private final JComboBox<Integer> sampleInterval = new JComboBox<>(SAMPLE_INTERVALS_MS);
+    private final JButton samplingButton = new JButton("Start Sampling");
+    private final JButton flameButton = new JButton("Flame Graph");
+    private final JLabel samplingStatus = new JLabel();
+    private SampledProfileWindow flameWindow;
+
+    private final Consumer<LiveEvent> metricsHook = e -> {
+        if (e.getKind() == LiveEvent.Kind.METRICS) {
+            MetricsBatch batch = e.getMetricsBatch();
+            SwingUtilities.invokeLater(() -> applyBatch(batch));
+        }
+    };
+    /** The session whose samples the charts hold; a different one (a re-attach) starts them over. */
+    private LiveSession chartedSession;
+    /** The session we are subscribed to, if its agent pushes metrics. */
+    private LiveSession streamSession;
+    private boolean streamFailed;
+
     private boolean inFlight;
     private long prevGcTimeTotal = -1;
     private long prevUptime = -1;
+    private long viewSpanMs = MetricChart.DEFAULT_SPAN_MS;
+    private long viewBackMs;
 
-    public LiveProfilerPanel() {
+    public LiveProfilerPanel(MainFrame mainFrame) {
         super(BackgroundStyle.SECONDARY, new BorderLayout());
+        this.mainFrame = mainFrame;
 
         cpuProc = cpu.addSeries(new Color(90, 200, 130));
         cpuSys = cpu.addSeries(new Color(230, 170, 70));
@@ -64,20 +139,159 @@ public final class LiveProfilerPanel extends ThemedJPanel {
         status.setForeground(JStudioTheme.getTextSecondary());
         status.setFont(JStudioTheme.getUIFont(11));
         topBar.add(status);
+        range.setToolTipText("Time window shown by the charts");
+        range.addActionListener(e -> {
+            viewSpanMs = RANGE_SPANS_MS[range.getSelectedIndex()];
+            updateView();
+        });
+        topBar.add(range);
+        liveButton.setFocusable(false);
+        liveButton.setToolTipText("Follow the newest samples (drag a chart to scroll back)");
+        liveButton.addActionListener(e -> {
+            viewBackMs = 0;
+            updateView();
+        });
+        topBar.add(liveButton);
+        position.setForeground(JStudioTheme.getTextSecondary());
+        position.setFont(JStudioTheme.getUIFont(11));
+        topBar.add(position);
         add(topBar, BorderLayout.NORTH);
 
+        MouseAdapter pan = new MouseAdapter() {
+            private int pressX;
+            private long pressBack;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                pressX = e.getX();
+                pressBack = viewBackMs;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                int width = Math.max(1, e.getComponent().getWidth());
+                viewBackMs = pressBack + (long) ((e.getX() - pressX) / (double) width * viewSpanMs);
+                updateView();
+            }
+        };
         Box stack = Box.createVerticalBox();
         for (MetricChart chart : new MetricChart[]{cpu, heap, meta, gc, threads, classes}) {
+            chart.addMouseListener(pan);
+            chart.addMouseMotionListener(pan);
             chart.setAlignmentX(Component.LEFT_ALIGNMENT);
             chart.setMaximumSize(new Dimension(Integer.MAX_VALUE, 92));
             stack.add(chart);
             stack.add(Box.createVerticalStrut(6));
         }
+        JComponent probes = buildProbesPanel();
+        probes.setAlignmentX(Component.LEFT_ALIGNMENT);
+        stack.add(probes);
+        JComponent allocations = buildAllocationsPanel();
+        allocations.setAlignmentX(Component.LEFT_ALIGNMENT);
+        stack.add(allocations);
+        JComponent sampling = buildSamplingStrip();
+        sampling.setAlignmentX(Component.LEFT_ALIGNMENT);
+        stack.add(sampling);
         ThemedJPanel holder = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
         holder.add(stack, BorderLayout.NORTH);
         add(new ThemedJScrollPane(holder), BorderLayout.CENTER);
     }
 
+    private JComponent buildProbesPanel() {
+        ThemedJPanel panel = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
+        ThemedJPanel header = new ThemedJPanel(BackgroundStyle.SECONDARY, new FlowLayout(FlowLayout.LEFT, 8, 2));
+        JLabel title = new JLabel("Method probes (last minute)");
+        title.setForeground(JStudioTheme.getTextSecondary());
+        title.setFont(JStudioTheme.getUIFont(11));
+        header.add(title);
+        removeProbeButton.setFocusable(false);
+        removeProbeButton.setToolTipText("Remove the selected probe and restore the method");
+        removeProbeButton.setEnabled(false);
+        removeProbeButton.addActionListener(e -> removeSelectedProbe());
+        header.add(removeProbeButton);
+        panel.add(header, BorderLayout.NORTH);
+
+        probeTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+        probeTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        probeTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                removeProbeButton.setEnabled(probeTable.getSelectedRow() >= 0);
+            }
+        });
+        ThemedJScrollPane scroll = new ThemedJScrollPane(probeTable);
+        scroll.setPreferredSize(new Dimension(200, 140));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 180));
+        return panel;
+    }
+
+    private JComponent buildAllocationsPanel() {
+        ThemedJPanel panel = new ThemedJPanel(BackgroundStyle.SECONDARY, new BorderLayout());
+        ThemedJPanel header = new ThemedJPanel(BackgroundStyle.SECONDARY, new FlowLayout(FlowLayout.LEFT, 8, 2));
+        JLabel title = new JLabel("Allocation sites (last minute)");
+        title.setForeground(JStudioTheme.getTextSecondary());
+        title.setFont(JStudioTheme.getUIFont(11));
+        header.add(title);
+        untrackButton.setFocusable(false);
+        untrackButton.setToolTipText("Stop counting allocations in the selected site's class and restore it");
+        untrackButton.setEnabled(false);
+        untrackButton.addActionListener(e -> untrackSelectedClass());
+        header.add(untrackButton);
+        allocStatus.setForeground(JStudioTheme.getTextSecondary());
+        allocStatus.setFont(JStudioTheme.getUIFont(11));
+        header.add(allocStatus);
+        panel.add(header, BorderLayout.NORTH);
+
+        allocTable.getColumnModel().getColumn(0).setPreferredWidth(220);
+        allocTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        allocTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                untrackButton.setEnabled(allocTable.getSelectedRow() >= 0);
+            }
+        });
+        allocTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = allocTable.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0 && row < allocRows.size()) {
+                    LiveProbeService.AllocationSite site = allocRows.get(row).getSite();
+                    mainFrame.navigateToPC(site.getClassName(), site.getMethodName(), site.getDescriptor(),
+                            site.getPc());
+                }
+            }
+        });
+        allocTable.setToolTipText("Double-click a site to show its instruction");
+        ThemedJScrollPane scroll = new ThemedJScrollPane(allocTable);
+        scroll.setPreferredSize(new Dimension(200, 140));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 180));
+        return panel;
+    }
+
+    private JComponent buildSamplingStrip() {
+        ThemedJPanel strip = new ThemedJPanel(BackgroundStyle.SECONDARY, new FlowLayout(FlowLayout.LEFT, 8, 2));
+        JLabel title = new JLabel("CPU sampling every");
+        title.setForeground(JStudioTheme.getTextSecondary());
+        title.setFont(JStudioTheme.getUIFont(11));
+        strip.add(title);
+        sampleInterval.setSelectedItem(20);
+        sampleInterval.setToolTipText("Milliseconds between stack samples");
+        strip.add(sampleInterval);
+        samplingButton.setFocusable(false);
+        samplingButton.setToolTipText("Sample runnable threads' stacks in the agent (works without JFR)");
+        samplingButton.addActionListener(e -> toggleSampling());
+        strip.add(samplingButton);
+        flameButton.setFocusable(false);
+        flameButton.addActionListener(e -> showFlameGraph());
+        strip.add(flameButton);
+        samplingStatus.setForeground(JStudioTheme.getTextSecondary());
+        samplingStatus.setFont(JStudioTheme.getUIFont(11));
+        strip.add(samplingStatus);
+        strip.setMaximumSize(new Dimension(Integer.MAX_VALUE, 34));
+        refreshSampling();
+        return strip;
+    }
+
     @Override
     public void addNotify() {
         super.addNotify();
@@ -88,73 +302,350 @@ public final class LiveProfilerPanel extends ThemedJPanel {
     @Override
     public void removeNotify() {
         timer.stop();
+        unsubscribe();
         super.removeNotify();
     }
 
     private void poll() {
-        // Poll regardless of whether the side tab is currently visible, so sampling starts as soon as the panel is
+        // Runs regardless of whether the side tab is currently visible, so sampling starts as soon as the panel is
         // added on attach (the timer stops on removeNotify/detach). Metrics are global JVM stats, not view-specific.
-        if (inFlight) {
-            return;
-        }
         LiveSession session = LiveAttachService.getInstance().getSession();
         if (session == null) {
             status.setText("Not attached.");
             return;
         }
+        if (session != chartedSession) {
+            startOver(session);
+        }
+        if (streamSession == session) {
+            return;
+        }
+        if (inFlight) {
+            return;
+        }
         inFlight = true;
+        if (session.supportsMetricsStream() && !streamFailed) {
+            session.addEventListener(metricsHook);
+            SwingWorkers.run(
+                    () -> {
+                        session.subscribeMetrics(STREAM_PERIOD_MS);
+                        return null;
+                    },
+                    ignored -> {
+                        inFlight = false;
+                        streamSession = session;
+                        if (!timer.isRunning() || session != chartedSession) {
+                            unsubscribe();
+                        }
+                    },
+                    err -> {
+                        inFlight = false;
+                        session.removeEventListener(metricsHook);
+                        streamFailed = true;
+                        status.setText("Metrics stream unavailable, polling: " + err.getMessage());
+                    });
+            return;
+        }
         SwingWorkers.run(
                 session::getMetrics,
-                this::apply,
+                m -> {
+                    inFlight = false;
+                    if (session == chartedSession) {
+                        apply(row(m));
+                        refresh();
+                    }
+                },
                 err -> {
                     inFlight = false;
                     status.setText("Profiler error: " + err.getMessage());
                 });
     }
 
-    private void apply(MetricsSnapshot m) {
-        inFlight = false;
-
-        cpu.push(cpuProc, percentValue(m.processCpuLoad));
-        cpu.push(cpuSys, percentValue(m.systemCpuLoad));
-        cpu.setReadout(percent(m.processCpuLoad) + " / " + percent(m.systemCpuLoad));
+    /** A new target: forget the previous one's history and subscription state. */
+    private void startOver(LiveSession session) {
+        unsubscribe();
+        chartedSession = session;
+        streamFailed = false;
+        prevGcTimeTotal = -1;
+        prevUptime = -1;
+        viewBackMs = 0;
+        for (MetricChart chart : new MetricChart[]{cpu, heap, meta, gc, threads, classes}) {
+            chart.clear();
+        }
+    }
 
-        heap.push(heapUsed, m.heapUsed);
-        heap.setReadout(bytes(m.heapUsed) + " / " + bytes(m.heapMax > 0 ? m.heapMax : m.heapCommitted));
+    private void unsubscribe() {
+        LiveSession session = streamSession;
+        if (session == null) {
+            return;
+        }
+        streamSession = null;
+        session.removeEventListener(metricsHook);
+        // Fails harmlessly once detached; the agent also ends the stream when the connection closes.
+        SwingWorkers.run(
+                () -> {
+                    session.unsubscribeMetrics();
+                    return null;
+                },
+                ignored -> { },
+                err -> { });
+    }
 
-        MetricsSnapshot.MemoryPool metaspace = findPool(m, "Metaspace");
-        if (metaspace != null) {
-            meta.push(metaUsed, metaspace.used);
-            meta.setReadout(bytes(metaspace.used) + " / " + bytes(metaspace.committed));
+    private void applyBatch(MetricsBatch batch) {
+        if (streamSession == null || streamSession != chartedSession) {
+            return;
         }
+        for (long[] row : batch.rows) {
+            apply(row);
+        }
+        if (batch.dropped > 0) {
+            status.setText(status.getText() + "  -  " + batch.dropped + " samples dropped");
+        }
+        refresh();
+    }
 
-        long gcTimeTotal = 0;
-        long gcCountTotal = 0;
-        for (MetricsSnapshot.GcStat g : m.gcStats) {
-            gcTimeTotal += g.collectionTimeMs;
-            gcCountTotal += g.collectionCount;
+    /** Pushes one sample (indexed by {@code LiveProtocol.METRIC_*}) to the charts and their readouts. */
+    private void apply(long[] m) {
+        long time = m[LiveProtocol.METRIC_UPTIME_MS];
+        double processCpu = MetricsBatch.cpuLoad(m[LiveProtocol.METRIC_PROCESS_CPU]);
+        double systemCpu = MetricsBatch.cpuLoad(m[LiveProtocol.METRIC_SYSTEM_CPU]);
+        cpu.push(cpuProc, time, percentValue(processCpu));
+        cpu.push(cpuSys, time, percentValue(systemCpu));
+        cpu.setReadout(percent(processCpu) + " / " + percent(systemCpu));
+
+        long heapMax = m[LiveProtocol.METRIC_HEAP_MAX];
+        heap.push(heapUsed, time, m[LiveProtocol.METRIC_HEAP_USED]);
+        heap.setReadout(bytes(m[LiveProtocol.METRIC_HEAP_USED]) + " / "
+                + bytes(heapMax > 0 ? heapMax : m[LiveProtocol.METRIC_HEAP_COMMITTED]));
+
+        if (m[LiveProtocol.METRIC_METASPACE_USED] >= 0) {
+            meta.push(metaUsed, time, m[LiveProtocol.METRIC_METASPACE_USED]);
+            meta.setReadout(bytes(m[LiveProtocol.METRIC_METASPACE_USED]) + " / "
+                    + bytes(m[LiveProtocol.METRIC_METASPACE_COMMITTED]));
         }
+
+        long gcTimeTotal = m[LiveProtocol.METRIC_GC_TIME_MS];
         double msPerSec = 0;
-        if (prevGcTimeTotal >= 0 && prevUptime >= 0 && m.uptimeMs > prevUptime) {
-            double intervalSec = (m.uptimeMs - prevUptime) / 1000.0;
+        if (prevGcTimeTotal >= 0 && prevUptime >= 0 && time > prevUptime) {
+            double intervalSec = (time - prevUptime) / 1000.0;
             msPerSec = Math.max(0, (gcTimeTotal - prevGcTimeTotal) / intervalSec);
         }
-        gc.push(gcSeries, msPerSec);
-        gc.setReadout(gcCountTotal + " GCs - " + (long) msPerSec + " ms/s");
+        gc.push(gcSeries, time, msPerSec);
+        gc.setReadout(m[LiveProtocol.METRIC_GC_COUNT] + " GCs - " + (long) msPerSec + " ms/s");
         prevGcTimeTotal = gcTimeTotal;
-        prevUptime = m.uptimeMs;
+        prevUptime = time;
+
+        threads.push(threadSeries, time, m[LiveProtocol.METRIC_THREADS]);
+        threads.setReadout(m[LiveProtocol.METRIC_THREADS] + " (" + m[LiveProtocol.METRIC_DAEMON_THREADS]
+                + " daemon, peak " + m[LiveProtocol.METRIC_PEAK_THREADS] + ")");
 
-        threads.push(threadSeries, m.threadCount);
-        threads.setReadout(m.threadCount + " (" + m.daemonThreadCount + " daemon, peak " + m.peakThreadCount + ")");
+        classes.push(classSeries, time, m[LiveProtocol.METRIC_LOADED_CLASSES]);
+        classes.setReadout(m[LiveProtocol.METRIC_LOADED_CLASSES] + " loaded, "
+                + m[LiveProtocol.METRIC_UNLOADED_CLASSES] + " unloaded");
 
-        classes.push(classSeries, m.loadedClassCount);
-        classes.setReadout(m.loadedClassCount + " loaded, " + m.unloadedClassCount + " unloaded");
+        status.setText("Uptime " + uptime(time) + "  -  " + m[LiveProtocol.METRIC_PROCESSORS] + " CPUs");
+    }
 
-        status.setText("Uptime " + uptime(m.uptimeMs) + "  -  " + m.availableProcessors + " CPUs");
+    private void refresh() {
+        updateView();
+        refreshProbes();
+        refreshAllocations();
+        refreshSampling();
+    }
 
-        for (JComponent chart : new JComponent[]{cpu, heap, meta, gc, threads, classes}) {
+    /** Applies the range and scroll position to every chart, keeping the position inside the history. */
+    private void updateView() {
+        long latest = cpu.latestTime();
+        long oldest = cpu.oldestTime();
+        long maxBack = latest < 0 ? 0 : Math.max(0, latest - oldest - viewSpanMs);
+        viewBackMs = Math.max(0, Math.min(viewBackMs, maxBack));
+        for (MetricChart chart : new MetricChart[]{cpu, heap, meta, gc, threads, classes}) {
+            chart.setView(viewSpanMs, viewBackMs);
             chart.repaint();
         }
+        liveButton.setEnabled(viewBackMs > 0);
+        position.setText(viewBackMs > 0 ? "ending " + uptime(viewBackMs) + " ago" : "");
+    }
+
+    /** A polled snapshot as a metrics-stream row. */
+    private static long[] row(MetricsSnapshot m) {
+        long[] row = new long[LiveProtocol.METRIC_FIELDS];
+        row[LiveProtocol.METRIC_UPTIME_MS] = m.uptimeMs;
+        row[LiveProtocol.METRIC_HEAP_USED] = m.heapUsed;
+        row[LiveProtocol.METRIC_HEAP_COMMITTED] = m.heapCommitted;
+        row[LiveProtocol.METRIC_HEAP_MAX] = m.heapMax;
+        row[LiveProtocol.METRIC_NON_HEAP_USED] = m.nonHeapUsed;
+        MetricsSnapshot.MemoryPool metaspace = findPool(m, "Metaspace");
+        row[LiveProtocol.METRIC_METASPACE_USED] = metaspace != null ? metaspace.used : -1;
+        row[LiveProtocol.METRIC_METASPACE_COMMITTED] = metaspace != null ? metaspace.committed : -1;
+        row[LiveProtocol.METRIC_PROCESS_CPU] = m.processCpuLoad < 0 ? -1 : Math.round(m.processCpuLoad * 10_000);
+        row[LiveProtocol.METRIC_SYSTEM_CPU] = m.systemCpuLoad < 0 ? -1 : Math.round(m.systemCpuLoad * 10_000);
+        row[LiveProtocol.METRIC_PROCESSORS] = m.availableProcessors;
+        row[LiveProtocol.METRIC_THREADS] = m.threadCount;
+        row[LiveProtocol.METRIC_DAEMON_THREADS] = m.daemonThreadCount;
+        row[LiveProtocol.METRIC_PEAK_THREADS] = m.peakThreadCount;
+        row[LiveProtocol.METRIC_LOADED_CLASSES] = m.loadedClassCount;
+        row[LiveProtocol.METRIC_UNLOADED_CLASSES] = m.unloadedClassCount;
+        for (MetricsSnapshot.GcStat g : m.gcStats) {
+            row[LiveProtocol.METRIC_GC_COUNT] += g.collectionCount;
+            row[LiveProtocol.METRIC_GC_TIME_MS] += g.collectionTimeMs;
+        }
+        return row;
+    }
+
+    private void refreshSampling() {
+        LiveSamplerService sampler = LiveSamplerService.get();
+        LiveSession session = LiveAttachService.getInstance().getSession();
+        boolean supported = session != null && session.supportsSampling();
+        boolean running = sampler.isRunning();
+        samplingButton.setText(running ? "Stop Sampling" : "Start Sampling");
+        samplingButton.setEnabled(supported);
+        sampleInterval.setEnabled(supported && !running);
+        long samples = sampler.samples();
+        flameButton.setEnabled(samples > 0);
+        samplingStatus.setText(!supported ? "Not supported by this agent"
+                : samples > 0 ? String.format("%,d samples", samples) : "");
+    }
+
+    private void toggleSampling() {
+        LiveSession session = LiveAttachService.getInstance().getSession();
+        if (session == null) {
+            return;
+        }
+        boolean stopping = LiveSamplerService.get().isRunning();
+        int interval = (Integer) sampleInterval.getSelectedItem();
+        samplingButton.setEnabled(false);
+        SwingWorkers.run(
+                () -> {
+                    if (stopping) {
+                        LiveSamplerService.get().stop();
+                    } else {
+                        LiveSamplerService.get().start(session, interval);
+                    }
+                    return null;
+                },
+                ignored -> refreshSampling(),
+                err -> {
+                    status.setText("Sampling failed: " + err.getMessage());
+                    refreshSampling();
+                });
+    }
+
+    private void showFlameGraph() {
+        if (flameWindow == null) {
+            flameWindow = new SampledProfileWindow(mainFrame);
+        }
+        flameWindow.refresh();
+        flameWindow.setVisible(true);
+        flameWindow.toFront();
+    }
+
+    /** Rebuilds the probe table from the service's windows, keeping the selection on the same probe. */
+    private void refreshProbes() {
+        int selected = probeTable.getSelectedRow();
+        int selectedId = selected >= 0 && selected < probeRows.size()
+                ? probeRows.get(selected).getProbe().getId() : -1;
+        probeRows.clear();
+        probeRows.addAll(LiveProbeService.get().stats());
+        probeModel.setRowCount(0);
+        int reselect = -1;
+        for (LiveProbeService.ProbeStats st : probeRows) {
+            LiveProbeService.Probe probe = st.getProbe();
+            String owner = probe.getClassName().substring(probe.getClassName().lastIndexOf('/') + 1);
+            probeModel.addRow(new Object[]{
+                    owner + "." + probe.getMethodName(),
+                    String.format("%.1f", st.getCallsPerSecond()),
+                    nanos((long) st.getMeanNanos()),
+                    nanos(st.getP50Nanos()),
+                    nanos(st.getP90Nanos()),
+                    nanos(st.getP99Nanos()),
+                    nanos(st.getMaxNanos())});
+            if (probe.getId() == selectedId) {
+                reselect = probeModel.getRowCount() - 1;
+            }
+        }
+        if (reselect >= 0) {
+            probeTable.setRowSelectionInterval(reselect, reselect);
+        }
+    }
+
+    private void removeSelectedProbe() {
+        int row = probeTable.getSelectedRow();
+        if (row < 0 || row >= probeRows.size()) {
+            return;
+        }
+        LiveProbeService.Probe probe = probeRows.get(row).getProbe();
+        removeProbeButton.setEnabled(false);
+        SwingWorkers.run(
+                () -> {
+                    LiveProbeService.get().removeProbe(probe);
+                    return null;
+                },
+                ignored -> refreshProbes(),
+                err -> {
+                    status.setText("Remove probe failed: " + err.getMessage());
+                    refreshProbes();
+                });
+    }
+
+    /** Rebuilds the allocation table from the service's windows, keeping the selection on the same site. */
+    private void refreshAllocations() {
+        LiveProbeService service = LiveProbeService.get();
+        int selected = allocTable.getSelectedRow();
+        int selectedId = selected >= 0 && selected < allocRows.size()
+                ? allocRows.get(selected).getSite().getId() : -1;
+        allocRows.clear();
+        allocRows.addAll(service.allocationStats());
+        allocModel.setRowCount(0);
+        int reselect = -1;
+        for (LiveProbeService.AllocationStats st : allocRows) {
+            LiveProbeService.AllocationSite site = st.getSite();
+            String owner = JvmDescriptorFormatter.getSimpleClassName(site.getClassName());
+            allocModel.addRow(new Object[]{
+                    owner + "." + site.getMethodName() + (site.getLine() > 0 ? ":" + site.getLine() : ""),
+                    typeName(site.getType()),
+                    String.format("%,.0f", st.getAllocationsPerSecond()),
+                    String.format("%,d", st.getTotalAllocations())});
+            if (site.getId() == selectedId) {
+                reselect = allocModel.getRowCount() - 1;
+            }
+        }
+        if (reselect >= 0) {
+            allocTable.setRowSelectionInterval(reselect, reselect);
+        }
+        double other = service.otherAllocationsPerSecond();
+        int classCount = service.trackedAllocationClasses().size();
+        allocStatus.setText(classCount == 0 ? "Track classes from the navigator"
+                : classCount + (classCount == 1 ? " class" : " classes")
+                + (other >= 1 ? String.format(", %,.0f/s at other sites", other) : ""));
+    }
+
+    private void untrackSelectedClass() {
+        int row = allocTable.getSelectedRow();
+        if (row < 0 || row >= allocRows.size()) {
+            return;
+        }
+        String className = allocRows.get(row).getSite().getClassName();
+        untrackButton.setEnabled(false);
+        SwingWorkers.run(
+                () -> {
+                    LiveProbeService.get().untrackAllocations(className);
+                    return null;
+                },
+                ignored -> refreshAllocations(),
+                err -> {
+                    status.setText("Stop tracking failed: " + err.getMessage());
+                    refreshAllocations();
+                });
+    }
+
+    /** An allocated type for display: {@code java/lang/String -> String}, {@code [[I -> int[][]}. */
+    private static String typeName(String type) {
+        if (!type.startsWith("[")) {
+            return JvmDescriptorFormatter.getSimpleClassName(type);
+        }
+        String params = JvmDescriptorFormatter.formatDescriptorParams("(" + type + ")");
+        return params.substring(1, params.length() - 1);
     }
 
     private static MetricsSnapshot.MemoryPool findPool(MetricsSnapshot m, String nameContains) {
@@ -192,6 +683,19 @@ public final class LiveProfilerPanel extends ThemedJPanel {
         return String.format("%.1f GB", mb / 1024.0);
     }
 
+    private static String nanos(long ns) {
+        if (ns < 1_000) {
+            return ns + " ns";
+        }
+        if (ns < 1_000_000) {
+            return String.format("%.1f us", ns / 1e3);
+        }
+        if (ns < 1_000_000_000) {
+            return String.format("%.1f ms", ns / 1e6);
+        }
+        return String.format("%.2f s", ns / 1e9);
+    }
+
     private static String uptime(long ms) {
         long s = ms / 1000;
         return String.format("%d:%02d:%02d", s / 3600, (s % 3600) / 60, s % 60);
@@ -15,20 +15,26 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A compact live time-series chart card: a title, a caller-set value readout, and one or more colored series
- * backed by fixed-capacity ring buffers. The first series is drawn as a filled area, the rest as lines. The
- * Y axis auto-scales to the window's max unless a fixed maximum is given (e.g. 100 for a percentage).
- * Push samples each tick and {@link #repaint()}.
+ * A compact live time-series chart card: a title, a caller-set value readout, and one or more colored series,
+ * each with a {@link MetricHistory} (raw samples plus minute and hour means). The chart shows a time window of
+ * {@link #setView span}, ending at the newest sample or scrolled back from it, drawn from the finest tier that
+ * covers the span. The first series is drawn as a filled area, the rest as lines; a gap in the samples breaks
+ * the line. The Y axis auto-scales to the window's max unless a fixed maximum is given (e.g. 100 for a
+ * percentage). Push samples as they arrive and {@link #repaint()}.
  */
 final class MetricChart extends JComponent {
 
-    /** Samples retained per series (~3 minutes at one sample/second). */
-    static final int CAPACITY = 180;
+    /** Default window: the last three minutes. */
+    static final long DEFAULT_SPAN_MS = 3 * MetricHistory.MINUTE_MS;
+    /** Raw samples further apart than this are drawn as a gap. */
+    private static final long RAW_GAP_MS = 5_000;
 
     private final String title;
     private final Double fixedMax;
     private final List<Series> series = new ArrayList<>();
     private String readout = "";
+    private long spanMs = DEFAULT_SPAN_MS;
+    private long backMs;
 
     MetricChart(String title, Double fixedMax) {
         this.title = title;
@@ -43,8 +49,30 @@ final class MetricChart extends JComponent {
         return series.size() - 1;
     }
 
-    void push(int seriesIndex, double value) {
-        series.get(seriesIndex).push(value);
+    void push(int seriesIndex, long timeMs, double value) {
+        series.get(seriesIndex).history.push(timeMs, value);
+    }
+
+    /** Shows {@code spanMs} of history ending {@code backMs} before the newest sample. */
+    void setView(long spanMs, long backMs) {
+        this.spanMs = spanMs;
+        this.backMs = backMs;
+    }
+
+    /** Time of the newest sample, or -1 before the first. */
+    long latestTime() {
+        return series.isEmpty() ? -1 : series.get(0).history.latestTime();
+    }
+
+    /** Time of the oldest sample still retained, or -1 before the first. */
+    long oldestTime() {
+        return series.isEmpty() ? -1 : series.get(0).history.oldestTime();
+    }
+
+    void clear() {
+        for (Series s : series) {
+            s.history.clear();
+        }
     }
 
     void setReadout(String text) {
@@ -71,10 +99,12 @@ final class MetricChart extends JComponent {
             return;
         }
 
+        long end = latestTime() - backMs;
+        long start = end - spanMs;
         double max = fixedMax != null ? fixedMax : 1.0;
         if (fixedMax == null) {
             for (Series s : series) {
-                max = Math.max(max, s.windowMax());
+                max = Math.max(max, s.windowMax(start, end, spanMs));
             }
             max *= 1.15;
         }
@@ -82,32 +112,33 @@ final class MetricChart extends JComponent {
         g.setColor(grid());
         g.drawLine(pad, bottom, right, bottom);
 
+        g.setClip(pad, 0, plotW, h);
         for (int si = 0; si < series.size(); si++) {
             Series s = series.get(si);
-            int n = s.size();
-            if (n < 2) {
-                continue;
-            }
+            MetricHistory.Tier tier = s.history.tierFor(spanMs);
+            long gap = tier.bucketMs() == 0 ? RAW_GAP_MS : 3 * tier.bucketMs();
+            int n = tier.size();
             int[] xs = new int[n];
             int[] ys = new int[n];
+            int run = 0;
+            long prevTime = Long.MIN_VALUE;
             for (int i = 0; i < n; i++) {
-                xs[i] = pad + (int) Math.round(plotW * (i / (double) (CAPACITY - 1)));
-                ys[i] = bottom - (int) Math.round(plotH * clamp(s.get(i) / max));
-            }
-            if (si == 0) {
-                Polygon area = new Polygon();
-                area.addPoint(xs[0], bottom);
-                for (int i = 0; i < n; i++) {
-                    area.addPoint(xs[i], ys[i]);
+                long t = tier.time(i);
+                if (t < start - gap || t > end + gap) {
+                    continue;
                 }
-                area.addPoint(xs[n - 1], bottom);
-                g.setColor(alpha(s.color, 45));
-                g.fillPolygon(area);
+                if (run > 0 && t - prevTime > gap) {
+                    drawRun(g, s.color, si == 0, xs, ys, run, bottom);
+                    run = 0;
+                }
+                xs[run] = pad + (int) Math.round(plotW * ((t - start) / (double) spanMs));
+                ys[run] = bottom - (int) Math.round(plotH * clamp(tier.value(i) / max));
+                run++;
+                prevTime = t;
             }
-            g.setColor(s.color);
-            g.setStroke(new BasicStroke(1.4f));
-            g.drawPolyline(xs, ys, n);
+            drawRun(g, s.color, si == 0, xs, ys, run, bottom);
         }
+        g.setClip(null);
 
         g.setFont(JStudioTheme.getUIFont(11));
         FontMetrics fm = g.getFontMetrics();
@@ -128,6 +159,25 @@ final class MetricChart extends JComponent {
         g.dispose();
     }
 
+    private static void drawRun(Graphics2D g, Color color, boolean filled, int[] xs, int[] ys, int n, int bottom) {
+        if (n < 2) {
+            return;
+        }
+        if (filled) {
+            Polygon area = new Polygon();
+            area.addPoint(xs[0], bottom);
+            for (int i = 0; i < n; i++) {
+                area.addPoint(xs[i], ys[i]);
+            }
+            area.addPoint(xs[n - 1], bottom);
+            g.setColor(alpha(color, 45));
+            g.fillPolygon(area);
+        }
+        g.setColor(color);
+        g.setStroke(new BasicStroke(1.4f));
+        g.drawPolyline(xs, ys, n);
+    }
+
     private static double clamp(double v) {
         if (v < 0) {
             return 0;
@@ -144,38 +194,23 @@ final class MetricChart extends JComponent {
         return new Color(c.getRed(), c.getGreen(), c.getBlue(), 60);
     }
 
-    /** One series: a fixed-capacity ring of samples in arrival order. */
+    /** One series: its color and history. */
     private static final class Series {
         final Color color;
-        private final double[] data = new double[CAPACITY];
-        private int count;
-        private int head;
+        final MetricHistory history = new MetricHistory();
 
         Series(Color color) {
             this.color = color;
         }
 
-        void push(double value) {
-            if (count < CAPACITY) {
-                data[count++] = value;
-            } else {
-                data[head] = value;
-                head = (head + 1) % CAPACITY;
-            }
-        }
-
-        int size() {
-            return count;
-        }
-
-        double get(int i) {
-            return data[(head + i) % CAPACITY];
-        }
-
-        double windowMax() {
+        double windowMax(long start, long end, long spanMs) {
+            MetricHistory.Tier tier = history.tierFor(spanMs);
             double m = 0;
-            for (int i = 0; i < count; i++) {
-                m = Math.max(m, get(i));
+            for (int i = 0; i < tier.size(); i++) {
+                long t = tier.time(i);
+                if (t >= start && t <= end) {
+                    m = Math.max(m, tier.value(i));
+                }
             }
             return m;
         }
@@ -0,0 +1,128 @@
+package com.tonic.ui.live.profiler;
+
+/**
+ * One chart series' history at three resolutions: the raw samples of the last few minutes, plus per-minute and
+ * per-hour means so the charts can scroll back hours (or weeks) without asking the agent again. Each tier is a
+ * fixed-capacity ring, so memory stays constant however long the session runs. Times are the target's uptime in
+ * ms, which keeps pushed and polled samples on one axis.
+ */
+final class MetricHistory {
+
+    static final long MINUTE_MS = 60_000;
+    static final long HOUR_MS = 60 * MINUTE_MS;
+    /** Raw samples kept: 10 minutes at the stream's four samples a second. */
+    static final int RAW_CAPACITY = 2400;
+    static final int MINUTE_CAPACITY = 24 * 60;
+    static final int HOUR_CAPACITY = 30 * 24;
+
+    private final Tier raw = new Tier(RAW_CAPACITY, 0);
+    private final Tier minutes = new Tier(MINUTE_CAPACITY, MINUTE_MS);
+    private final Tier hours = new Tier(HOUR_CAPACITY, HOUR_MS);
+
+    void push(long timeMs, double value) {
+        raw.add(timeMs, value);
+        minutes.add(timeMs, value);
+        hours.add(timeMs, value);
+    }
+
+    /** The finest tier that still covers {@code spanMs} back from its newest point. */
+    Tier tierFor(long spanMs) {
+        if (raw.size() < RAW_CAPACITY || raw.time(raw.size() - 1) - raw.time(0) >= spanMs) {
+            return raw;
+        }
+        return spanMs <= MINUTE_CAPACITY * MINUTE_MS ? minutes : hours;
+    }
+
+    /** Time of the newest sample, or -1 if there is none. */
+    long latestTime() {
+        return raw.size() == 0 ? -1 : raw.time(raw.size() - 1);
+    }
+
+    /** Time of the oldest sample still held by any tier, or -1 if there is none. */
+    long oldestTime() {
+        return hours.size() == 0 ? -1 : Math.min(hours.time(0), raw.time(0));
+    }
+
+    void clear() {
+        raw.clear();
+        minutes.clear();
+        hours.clear();
+    }
+
+    /**
+     * A ring of (time, value) points. With a bucket size, samples are averaged per bucket: the open bucket is
+     * reported as the newest point (so the coarse tiers stay current) and becomes permanent when the next
+     * bucket starts.
+     */
+    static final class Tier {
+        private final long bucketMs;
+        private final long[] times;
+        private final double[] values;
+        private int head;
+        private int count;
+
+        private long openBucket = -1;
+        private double openSum;
+        private int openCount;
+
+        Tier(int capacity, long bucketMs) {
+            this.bucketMs = bucketMs;
+            this.times = new long[capacity];
+            this.values = new double[capacity];
+        }
+
+        void add(long timeMs, double value) {
+            if (bucketMs == 0) {
+                store(timeMs, value);
+                return;
+            }
+            long bucket = timeMs - Math.floorMod(timeMs, bucketMs);
+            if (openCount > 0 && bucket != openBucket) {
+                store(openBucket, openSum / openCount);
+                openCount = 0;
+                openSum = 0;
+            }
+            openBucket = bucket;
+            openSum += value;
+            openCount++;
+        }
+
+        private void store(long timeMs, double value) {
+            int slot;
+            if (count == times.length) {
+                slot = head;
+                head = (head + 1) % times.length;
+            } else {
+                slot = (head + count++) % times.length;
+            }
+            times[slot] = timeMs;
+            values[slot] = value;
+        }
+
+        /** Points from oldest to newest, including the open bucket. */
+        int size() {
+            return count + (openCount > 0 ? 1 : 0);
+        }
+
+        long time(int i) {
+            return i == count ? openBucket : times[(head + i) % times.length];
+        }
+
+        double value(int i) {
+            return i == count ? openSum / openCount : values[(head + i) % values.length];
+        }
+
+        /** Spacing of the points (0 for raw samples). */
+        long bucketMs() {
+            return bucketMs;
+        }
+
+        void clear() {
+            head = 0;
+            count = 0;
+            openCount = 0;
+            openSum = 0;
+            openBucket = -1;
+        }
+    }
+}
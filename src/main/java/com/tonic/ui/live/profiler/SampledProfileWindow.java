@@ -0,0 +1,80 @@
+package com.tonic.ui.live.profiler;
+
+import com.tonic.ui.MainFrame;
+import com.tonic.ui.core.component.ThemedJPanel;
+import com.tonic.ui.core.component.ThemedJPanel.BackgroundStyle;
+import com.tonic.ui.core.component.ThemedJScrollPane;
+import com.tonic.ui.live.LiveSamplerService;
+import com.tonic.ui.live.recorder.jfr.FlameGraphPanel;
+import com.tonic.ui.live.recorder.jfr.FrameKey;
+import com.tonic.ui.theme.JStudioTheme;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+
+/**
+ * A reused window showing the agent sampler's profile as a flame graph (weight = samples). It is a snapshot:
+ * Refresh rebuilds it from the samples collected so far. Double-clicking a frame opens its method via
+ * {@link MainFrame#openLiveFrame}.
+ */
+final class SampledProfileWindow extends JFrame {
+
+    private final MainFrame mainFrame;
+    private final JButton resetZoom = new JButton("Reset zoom");
+    private final JLabel info = new JLabel();
+    private final ThemedJScrollPane scroll = new ThemedJScrollPane();
+    private FlameGraphPanel flame;
+    private String summary = "";
+
+    SampledProfileWindow(MainFrame mainFrame) {
+        super("CPU Samples");
+        this.mainFrame = mainFrame;
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+        setIconImages(mainFrame.getIconImages());
+        setSize(1100, 700);
+        setLocationRelativeTo(mainFrame);
+
+        JButton refresh = new JButton("Refresh");
+        refresh.setFocusable(false);
+        refresh.addActionListener(e -> refresh());
+        resetZoom.setFocusable(false);
+        resetZoom.addActionListener(e -> flame.reset());
+        info.setForeground(JStudioTheme.getTextSecondary());
+        info.setFont(JStudioTheme.getUIFont(12));
+
+        ThemedJPanel strip = new ThemedJPanel(BackgroundStyle.PRIMARY, new FlowLayout(FlowLayout.LEFT, 8, 4));
+        strip.add(refresh);
+        strip.add(resetZoom);
+        strip.add(info);
+
+        ThemedJPanel content = new ThemedJPanel(BackgroundStyle.PRIMARY, new BorderLayout());
+        content.add(strip, BorderLayout.NORTH);
+        content.add(scroll, BorderLayout.CENTER);
+        setContentPane(content);
+    }
+
+    /** Rebuilds the flame graph from the samples collected so far. */
+    void refresh() {
+        LiveSamplerService sampler = LiveSamplerService.get();
+        long samples = sampler.samples();
+        summary = String.format("%,d sample%s%s", samples, samples == 1 ? "" : "s",
+                sampler.isRunning() ? " (still sampling - Refresh for more)" : "");
+        flame = new FlameGraphPanel(sampler.callTree(), n -> String.format("%,d samples", n), this::navigate);
+        flame.setOnZoomChanged(() -> {
+            info.setText(flame.isZoomed() ? flame.pathLabel() : summary);
+            resetZoom.setEnabled(flame.isZoomed());
+        });
+        scroll.setViewportView(flame);
+        info.setText(summary);
+        resetZoom.setEnabled(false);
+    }
+
+    private void navigate(FrameKey frame) {
+        if (frame != null) {
+            mainFrame.openLiveFrame(frame.getClassInternal(), frame.getMethod());
+        }
+    }
+}
@@ -22,11 +22,14 @@ public final class FrameKey {
         this.line = line;
     }
 
-    /** Simple class name + method, for display (e.g. {@code Bar.doWork}). */
+    /**
+     * Simple class name + method, for display (e.g. {@code Bar.doWork}). A synthetic frame without a method, such as
+     * the sampler's {@code [truncated]} root, shows its class name alone.
+     */
     public String displayLabel() {
         int slash = classInternal.lastIndexOf('/');
         String simple = slash >= 0 ? classInternal.substring(slash + 1) : classInternal;
-        return simple + "." + method;
+        return method.isEmpty() ? simple : simple + "." + method;
     }
 
     @Override
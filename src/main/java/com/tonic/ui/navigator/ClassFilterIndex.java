@@ -0,0 +1,99 @@
+package com.tonic.ui.navigator;
+
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.MethodEntryModel;
+import com.tonic.parser.ClassFile;
+
+import java.util.BitSet;
+
+/**
+ * Precomputed lower-case search keys for the navigator filter. Each class's key is its simple name, internal
+ * name and method/constructor names joined with NUL (absent from identifiers), built once per class file and
+ * cached on the class node, so a filter keystroke is one {@code indexOf} per class with no allocation. Keys are
+ * built on the EDT by {@link #prepare}, where class edits happen, so matching never reads a class's members while
+ * an edit rebuilds them. Matching then runs off the EDT over an array snapshot of the class nodes; the EDT only
+ * applies the resulting {@link Match} as a visibility mask.
+ */
+final class ClassFilterIndex {
+
+    private ClassFilterIndex() {
+    }
+
+    /** A class's search text; matches starting before {@code nameEnd} hit the class name itself. */
+    static final class Key {
+        final ClassFile basis;
+        final String text;
+        final int nameEnd;
+
+        Key(ClassFile basis, String text, int nameEnd) {
+            this.basis = basis;
+            this.text = text;
+            this.nameEnd = nameEnd;
+        }
+    }
+
+    /** Result of matching one filter against a snapshot; bit {@code i} refers to {@code nodes[i]}. */
+    static final class Match {
+        final String lowerFilter;
+        final NavigatorNode.ClassNode[] nodes;
+        final BitSet matched;
+        final BitSet nameMatched;
+
+        Match(String lowerFilter, NavigatorNode.ClassNode[] nodes, BitSet matched, BitSet nameMatched) {
+            this.lowerFilter = lowerFilter;
+            this.nodes = nodes;
+            this.matched = matched;
+            this.nameMatched = nameMatched;
+        }
+    }
+
+    /**
+     * Builds the key of every node that has none yet, or whose class file was replaced since. Call on the EDT
+     * before handing {@code nodes} to {@link #match}.
+     */
+    static void prepare(NavigatorNode.ClassNode[] nodes) {
+        for (NavigatorNode.ClassNode node : nodes) {
+            ClassEntryModel entry = node.getClassEntry();
+            Key key = node.searchKey;
+            if (key == null || key.basis != entry.getClassFile()) {
+                node.searchKey = buildKey(entry);
+            }
+        }
+    }
+
+    private static Key buildKey(ClassEntryModel entry) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(entry.getSimpleName().toLowerCase()).append('\0');
+        sb.append(entry.getClassName().toLowerCase()).append('\0');
+        int nameEnd = sb.length();
+        for (MethodEntryModel method : entry.getMethods()) {
+            if (!method.isConstructor()) {
+                sb.append(method.getName().toLowerCase()).append('\0');
+            }
+        }
+        for (MethodEntryModel ctor : entry.getConstructors()) {
+            sb.append(ctor.getName().toLowerCase()).append('\0');
+        }
+        return new Key(entry.getClassFile(), sb.toString(), nameEnd);
+    }
+
+    /** Matches {@code lowerFilter} against every node. Safe to call off the EDT once the nodes are prepared. */
+    static Match match(NavigatorNode.ClassNode[] nodes, String lowerFilter) {
+        BitSet matched = new BitSet(nodes.length);
+        BitSet nameMatched = new BitSet(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            Key key = nodes[i].searchKey;
+            int pos = key.text.indexOf(lowerFilter);
+            if (pos >= 0) {
+                matched.set(i);
+                if (pos < key.nameEnd) {
+                    nameMatched.set(i);
+                }
+            }
+        }
+        return new Match(lowerFilter, nodes, matched, nameMatched);
+    }
+}
@@ -7,26 +7,52 @@ import com.tonic.model.ProjectModel;
 import com.tonic.model.ResourceEntryModel;
 import com.tonic.ui.theme.Icons;
 import com.tonic.ui.util.JdkClassFilter;
+import com.tonic.util.ErrorHandler;
 
+import javax.swing.SwingWorker;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 import java.util.*;
 
 /**
  * Tree model for the class navigator, backed by a ProjectModel.
+ * <p>
+ * The node tree always holds every project class; packages form a compacted trie (single-child package chains
+ * are merged into one node) that {@link #syncProject} updates in place with node inserts and removals, so
+ * classes appended or captured live don't rebuild the hierarchy. Filtering never touches the structure either:
+ * the filter is matched off the EDT against {@link ClassFilterIndex} keys, and the result is applied as a
+ * visibility mask that the {@code getChild}/{@code getChildCount} overrides honour.
  */
 public class ClassTreeModel extends DefaultTreeModel {
 
+    private static final String DEFAULT_PACKAGE = "(default package)";
+
+    /** Above this many added/removed classes a sync mutates silently and fires one structure change. */
+    private static final int BULK_SYNC_THRESHOLD = 2000;
+
     private ProjectModel project;
     private String filterText;
     private boolean showMembers = true;
 
+    private final Map<String, NavigatorNode.ClassNode> classNodes = new HashMap<>();
+    private final Map<String, NavigatorNode.PackageNode> packageNodes = new HashMap<>();
+    private NavigatorNode.ClassNode[] classSnapshot;
+    private NavigatorNode.ResourcesRootNode resourcesRoot;
+    private List<ResourceEntryModel> treeResources = Collections.emptyList();
+
+    private boolean filterActive;
+    private String activeFilter;
+    private int maskGeneration;
+    private final Map<TreeNode, TreeNode[]> visibleChildren = new IdentityHashMap<>();
+    private int filterRequest;
+    private SwingWorker<ClassFilterIndex.Match, Void> filterWorker;
+
     public ClassTreeModel() {
         super(new NavigatorNode.ProjectNode("No Project", 0));
     }
 
     /**
-     * Load a project into the tree model.
+     * Load a project into the tree model, replacing the whole tree.
      */
     public void loadProject(ProjectModel project) {
         this.project = project;
@@ -35,11 +61,113 @@ public class ClassTreeModel extends DefaultTreeModel {
     }
 
     /**
-     * Filter classes by name.
+     * Bring the tree in line with the project's current classes and resources by inserting and removing only
+     * the nodes that changed. Falls back to {@link #loadProject} for a different project.
+     *
+     * @return true if the tree was restructured wholesale (expansion state is lost), false if only incremental
+     *         node events were fired
+     */
+    public boolean syncProject(ProjectModel project) {
+        if (project == null || project != this.project) {
+            loadProject(project);
+            return true;
+        }
+
+        Map<String, NavigatorNode.ClassNode> stale = new HashMap<>(classNodes);
+        List<ClassEntryModel> added = new ArrayList<>();
+        for (ClassEntryModel entry : project.getAllClasses()) {
+            if (JdkClassFilter.isJdkClass(entry.getClassName())) {
+                continue;
+            }
+            NavigatorNode.ClassNode existing = stale.get(entry.getClassName());
+            if (existing != null && existing.getClassEntry() == entry) {
+                stale.remove(entry.getClassName());
+            } else {
+                added.add(entry);
+            }
+        }
+        boolean resourcesChanged = !sameResources(project.getAllResources());
+        if (stale.isEmpty() && added.isEmpty() && !resourcesChanged) {
+            return false;
+        }
+
+        boolean bulk = filterActive || stale.size() + added.size() > BULK_SYNC_THRESHOLD;
+        boolean notify = !bulk;
+        for (String className : stale.keySet()) {
+            removeClass(className, notify);
+        }
+        added.sort(Comparator.comparing(ClassEntryModel::getClassName));
+        for (ClassEntryModel entry : added) {
+            insertClass(entry, notify);
+        }
+        if (resourcesChanged) {
+            rebuildResources(notify);
+        }
+
+        NavigatorNode.ProjectNode root = (NavigatorNode.ProjectNode) getRoot();
+        if (filterActive) {
+            applyMask(matchActiveFilter());
+        } else {
+            root.setClassCount(classNodes.size());
+        }
+        if (bulk) {
+            nodeStructureChanged(root);
+        } else {
+            nodeChanged(root);
+        }
+        return bulk;
+    }
+
+    /**
+     * Filter classes by name. Matching runs in the background; the mask is applied on the EDT.
      */
     public void setFilter(String filterText) {
+        setFilter(filterText, null);
+    }
+
+    /**
+     * Filter classes by name, running {@code onApplied} on the EDT once the mask is in place. Superseded
+     * requests (e.g. earlier keystrokes) are dropped without applying or calling back.
+     */
+    public void setFilter(String filterText, Runnable onApplied) {
+        if (filterText == null || filterText.isEmpty()) {
+            clearFilter();
+            if (onApplied != null) {
+                onApplied.run();
+            }
+            return;
+        }
         this.filterText = filterText;
-        rebuildTree();
+        if (project == null) {
+            return;
+        }
+
+        int request = ++filterRequest;
+        String lowerFilter = filterText.toLowerCase();
+        NavigatorNode.ClassNode[] nodes = classSnapshot();
+        ClassFilterIndex.prepare(nodes);
+        if (filterWorker != null) {
+            filterWorker.cancel(true);
+        }
+        filterWorker = new SwingWorker<>() {
+            @Override
+            protected ClassFilterIndex.Match doInBackground() {
+                return ClassFilterIndex.match(nodes, lowerFilter);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || request != filterRequest) {
+                    return;
+                }
+                try {
+                    applyFilter(get(), onApplied);
+                } catch (Exception e) {
+                    ErrorHandler.handle(e, "Navigator filter failed");
+                }
+            }
+        };
+        filterWorker.execute();
     }
 
     /**
@@ -47,84 +175,320 @@ public class ClassTreeModel extends DefaultTreeModel {
      */
     public void clearFilter() {
         this.filterText = null;
-        rebuildTree();
+        filterRequest++;
+        if (filterWorker != null) {
+            filterWorker.cancel(true);
+            filterWorker = null;
+        }
+        if (!filterActive) {
+            return;
+        }
+        filterActive = false;
+        activeFilter = null;
+        visibleChildren.clear();
+        ((NavigatorNode.ProjectNode) getRoot()).setClassCount(classNodes.size());
+        if (resourcesRoot != null) {
+            resourcesRoot.setResourceCount(treeResources.size());
+        }
+        nodeStructureChanged((TreeNode) getRoot());
     }
 
     /**
      * Set whether to show class members (methods, fields).
      */
     public void setShowMembers(boolean showMembers) {
+        if (this.showMembers == showMembers) {
+            return;
+        }
         this.showMembers = showMembers;
-        rebuildTree();
+        for (NavigatorNode.ClassNode classNode : classNodes.values()) {
+            classNode.removeAllChildren();
+            if (showMembers) {
+                addMembersToClass(classNode, classNode.getClassEntry());
+            }
+        }
+        if (filterActive) {
+            applyMask(matchActiveFilter());
+        }
+        nodeStructureChanged((TreeNode) getRoot());
     }
 
     /**
      * Rebuild the tree structure from the project.
      */
     private void rebuildTree() {
+        classNodes.clear();
+        packageNodes.clear();
+        classSnapshot = null;
+        resourcesRoot = null;
+        treeResources = Collections.emptyList();
+        filterRequest++;
+        filterActive = false;
+        activeFilter = null;
+        visibleChildren.clear();
+
         if (project == null) {
             setRoot(new NavigatorNode.ProjectNode("No Project", 0));
-            reload();
             return;
         }
 
-        // Get filtered classes
-        List<ClassEntryModel> classes = getFilteredClasses();
+        List<ClassEntryModel> classes = new ArrayList<>();
+        for (ClassEntryModel entry : project.getAllClasses()) {
+            if (!JdkClassFilter.isJdkClass(entry.getClassName())) {
+                classes.add(entry);
+            }
+        }
+        // Sorted input keeps every insert at (or near) the end of its package's child list
+        classes.sort(Comparator.comparing(ClassEntryModel::getClassName));
+
+        NavigatorNode.ProjectNode root = new NavigatorNode.ProjectNode(project.getProjectName(), classes.size());
+        // Install the root before inserting so the trie walk starts from it; setRoot below fires the change
+        this.root = root;
+        for (ClassEntryModel entry : classes) {
+            insertClass(entry, false);
+        }
+        rebuildResources(false);
+
+        setRoot(root);
+    }
+
+    /** Matches the applied filter again, on the EDT, against the current classes. */
+    private ClassFilterIndex.Match matchActiveFilter() {
+        NavigatorNode.ClassNode[] nodes = classSnapshot();
+        ClassFilterIndex.prepare(nodes);
+        return ClassFilterIndex.match(nodes, activeFilter);
+    }
+
+    // ---- Incremental structure ----
+
+    private NavigatorNode.ClassNode[] classSnapshot() {
+        if (classSnapshot == null) {
+            classSnapshot = classNodes.values().toArray(new NavigatorNode.ClassNode[0]);
+        }
+        return classSnapshot;
+    }
+
+    private void insertClass(ClassEntryModel entry, boolean notify) {
+        String packageName = entry.getPackageName();
+        if (packageName.isEmpty()) {
+            packageName = DEFAULT_PACKAGE;
+        }
+        NavigatorNode.PackageNode packageNode = findOrCreatePackage(packageName, notify);
 
-        // Create root node
-        NavigatorNode.ProjectNode root = new NavigatorNode.ProjectNode(
-                project.getProjectName(), classes.size());
+        NavigatorNode.ClassNode classNode = new NavigatorNode.ClassNode(entry);
+        if (showMembers) {
+            addMembersToClass(classNode, entry);
+        }
+        insertChild(packageNode, classNode, notify);
+        classNodes.put(entry.getClassName(), classNode);
+        classSnapshot = null;
+    }
 
-        // Build package hierarchy
-        Map<String, NavigatorNode.PackageNode> packageNodes = new HashMap<>();
+    private void removeClass(String className, boolean notify) {
+        NavigatorNode.ClassNode classNode = classNodes.remove(className);
+        if (classNode == null) {
+            return;
+        }
+        classSnapshot = null;
+        NavigatorNode parent = (NavigatorNode) classNode.getParent();
+        removeChild(parent, classNode, notify);
+        if (parent instanceof NavigatorNode.PackageNode) {
+            prunePackage((NavigatorNode.PackageNode) parent, notify);
+        }
+    }
 
-        for (ClassEntryModel classEntry : classes) {
-            String packageName = classEntry.getPackageName();
+    /**
+     * Walks the package trie from the root towards {@code packageName}, splitting a compacted node where the new
+     * package branches off inside it, and creating the package's node if it doesn't exist yet.
+     */
+    private NavigatorNode.PackageNode findOrCreatePackage(String packageName, boolean notify) {
+        NavigatorNode.PackageNode existing = packageNodes.get(packageName);
+        if (existing != null) {
+            return existing;
+        }
+
+        NavigatorNode parent = (NavigatorNode) root;
+        String parentName = "";
+        while (true) {
+            NavigatorNode.PackageNode next = null;
+            for (int i = 0; i < parent.getChildCount(); i++) {
+                TreeNode child = parent.getChildAt(i);
+                if (!(child instanceof NavigatorNode.PackageNode)) {
+                    break;
+                }
+                NavigatorNode.PackageNode pkg = (NavigatorNode.PackageNode) child;
+                if (isSubPackage(pkg.getPackageName(), packageName)) {
+                    next = pkg;
+                    break;
+                }
+                String common = commonPackage(pkg.getPackageName(), packageName);
+                if (common.length() > parentName.length()) {
+                    next = splitPackage(parent, pkg, common, notify);
+                    break;
+                }
+            }
 
-            // Get or create package nodes
-            NavigatorNode.PackageNode packageNode = getOrCreatePackageNode(
-                    root, packageNodes, packageName);
+            if (next == null) {
+                NavigatorNode.PackageNode created = new NavigatorNode.PackageNode(packageName);
+                packageNodes.put(packageName, created);
+                insertChild(parent, created, notify);
+                return created;
+            }
+            if (next.getPackageName().equals(packageName)) {
+                return next;
+            }
+            parent = next;
+            parentName = next.getPackageName();
+        }
+    }
 
-            // Create class node
-            NavigatorNode.ClassNode classNode = new NavigatorNode.ClassNode(classEntry);
+    /** Inserts a node for {@code common} between {@code parent} and {@code child}. */
+    private NavigatorNode.PackageNode splitPackage(NavigatorNode parent, NavigatorNode.PackageNode child,
+                                                   String common, boolean notify) {
+        NavigatorNode.PackageNode middle = new NavigatorNode.PackageNode(common);
+        packageNodes.put(common, middle);
+        removeChild(parent, child, notify);
+        middle.add(child);
+        insertChild(parent, middle, notify);
+        return middle;
+    }
 
-            // Add members if enabled
-            if (showMembers) {
-                addMembersToClass(classNode, classEntry);
+    /**
+     * Restores the trie invariants after a child was removed from {@code pkg}: an empty package is removed, and a
+     * package left holding only one sub-package is merged into it.
+     */
+    private void prunePackage(NavigatorNode.PackageNode pkg, boolean notify) {
+        NavigatorNode parent = (NavigatorNode) pkg.getParent();
+        if (parent == null) {
+            return;
+        }
+        if (pkg.getChildCount() == 0) {
+            packageNodes.remove(pkg.getPackageName());
+            removeChild(parent, pkg, notify);
+            if (parent instanceof NavigatorNode.PackageNode) {
+                prunePackage((NavigatorNode.PackageNode) parent, notify);
+            }
+        } else if (pkg.getChildCount() == 1 && pkg.getChildAt(0) instanceof NavigatorNode.PackageNode) {
+            NavigatorNode.PackageNode only = (NavigatorNode.PackageNode) pkg.getChildAt(0);
+            packageNodes.remove(pkg.getPackageName());
+            removeChild(parent, pkg, notify);
+            pkg.remove(only);
+            insertChild(parent, only, notify);
+        }
+    }
+
+    /** Whether {@code pkg} is {@code ancestor} or nested inside it. */
+    private static boolean isSubPackage(String ancestor, String pkg) {
+        return pkg.startsWith(ancestor)
+                && (pkg.length() == ancestor.length() || pkg.charAt(ancestor.length()) == '.');
+    }
+
+    /** Longest common dot-segment prefix of two package names. */
+    private static String commonPackage(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int lastBoundary = 0;
+        for (int i = 0; i < n; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return a.substring(0, lastBoundary);
             }
+            if (a.charAt(i) == '.') {
+                lastBoundary = i;
+            }
+        }
+        boolean aEnds = a.length() == n || a.charAt(n) == '.';
+        boolean bEnds = b.length() == n || b.charAt(n) == '.';
+        return aEnds && bEnds ? a.substring(0, n) : a.substring(0, lastBoundary);
+    }
 
-            packageNode.add(classNode);
+    /** Inserts {@code child} at its sorted position: packages, then classes, then the resources root. */
+    private void insertChild(NavigatorNode parent, NavigatorNode child, boolean notify) {
+        int low = 0;
+        int high = parent.getChildCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareChildren(parent, (NavigatorNode) parent.getChildAt(mid), child) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        parent.insert(child, low);
+        if (notify) {
+            nodesWereInserted(parent, new int[]{low});
         }
+    }
 
-        collapseEmptyPackages(root);
+    private void removeChild(NavigatorNode parent, NavigatorNode child, boolean notify) {
+        int index = parent.getIndex(child);
+        if (index < 0) {
+            return;
+        }
+        parent.remove(index);
+        if (notify) {
+            nodesWereRemoved(parent, new int[]{index}, new Object[]{child});
+        }
+    }
 
-        List<ResourceEntryModel> resources = getFilteredResources();
-        if (!resources.isEmpty()) {
-            addResourceTree(root, resources);
+    private static int compareChildren(NavigatorNode parent, NavigatorNode a, NavigatorNode b) {
+        int rankA = rank(a);
+        int rankB = rank(b);
+        if (rankA != rankB) {
+            return Integer.compare(rankA, rankB);
+        }
+        if (a instanceof NavigatorNode.PackageNode) {
+            String nameA = NavigatorNode.PackageNode.relativeName(parent, ((NavigatorNode.PackageNode) a).getPackageName());
+            String nameB = NavigatorNode.PackageNode.relativeName(parent, ((NavigatorNode.PackageNode) b).getPackageName());
+            return nameA.compareToIgnoreCase(nameB);
         }
+        if (a instanceof NavigatorNode.ClassNode) {
+            return ((NavigatorNode.ClassNode) a).getClassEntry().getClassName()
+                    .compareTo(((NavigatorNode.ClassNode) b).getClassEntry().getClassName());
+        }
+        return 0;
+    }
 
-        setRoot(root);
-        reload();
+    private static int rank(NavigatorNode node) {
+        if (node instanceof NavigatorNode.PackageNode) {
+            return 0;
+        }
+        if (node instanceof NavigatorNode.ClassNode) {
+            return 1;
+        }
+        return 2;
     }
 
-    private List<ResourceEntryModel> getFilteredResources() {
-        List<ResourceEntryModel> resources = new ArrayList<>(project.getAllResources());
-        if (filterText != null && !filterText.isEmpty()) {
-            String lowerFilter = filterText.toLowerCase();
-            List<ResourceEntryModel> filtered = new ArrayList<>();
-            for (ResourceEntryModel res : resources) {
-                if (res.getName().toLowerCase().contains(lowerFilter) ||
-                        res.getPath().toLowerCase().contains(lowerFilter)) {
-                    filtered.add(res);
-                }
+    // ---- Resources ----
+
+    private boolean sameResources(Collection<ResourceEntryModel> resources) {
+        if (resources.size() != treeResources.size()) {
+            return false;
+        }
+        Set<ResourceEntryModel> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(treeResources);
+        for (ResourceEntryModel resource : resources) {
+            if (!current.contains(resource)) {
+                return false;
             }
-            resources = filtered;
         }
+        return true;
+    }
+
+    private void rebuildResources(boolean notify) {
+        NavigatorNode root = (NavigatorNode) getRoot();
+        if (resourcesRoot != null) {
+            removeChild(root, resourcesRoot, notify);
+            resourcesRoot = null;
+        }
+        List<ResourceEntryModel> resources = new ArrayList<>(project.getAllResources());
         resources.sort(Comparator.comparing(ResourceEntryModel::getPath));
-        return resources;
+        treeResources = resources;
+        if (!resources.isEmpty()) {
+            resourcesRoot = buildResourceTree(resources);
+            insertChild(root, resourcesRoot, notify);
+        }
     }
 
-    private void addResourceTree(NavigatorNode.ProjectNode root, List<ResourceEntryModel> resources) {
+    private NavigatorNode.ResourcesRootNode buildResourceTree(List<ResourceEntryModel> resources) {
         NavigatorNode.ResourcesRootNode resourcesRoot = new NavigatorNode.ResourcesRootNode(resources.size());
         Map<String, NavigatorNode.ResourceFolderNode> folderNodes = new HashMap<>();
 
@@ -142,7 +506,7 @@ public class ClassTreeModel extends DefaultTreeModel {
         }
 
         collapseEmptyResourceFolders(resourcesRoot);
-        root.add(resourcesRoot);
+        return resourcesRoot;
     }
 
     private NavigatorNode.ResourceFolderNode getOrCreateResourceFolder(
@@ -236,280 +600,223 @@ public class ClassTreeModel extends DefaultTreeModel {
         return null;
     }
 
-    private void collapseEmptyPackages(NavigatorNode.ProjectNode root) {
-        Deque<NavigatorNode> stack = new ArrayDeque<>();
-        for (int i = 0; i < root.getChildCount(); i++) {
-            TreeNode child = root.getChildAt(i);
-            if (child instanceof NavigatorNode.PackageNode) {
-                stack.push((NavigatorNode.PackageNode) child);
-            }
-        }
+    // ---- Members ----
 
-        while (!stack.isEmpty()) {
-            NavigatorNode node = stack.pop();
-            if (!(node instanceof NavigatorNode.PackageNode)) {
-                continue;
+    private void addMembersToClass(NavigatorNode.ClassNode classNode, ClassEntryModel classEntry) {
+        List<FieldEntryModel> fields = classEntry.getFields();
+        if (!fields.isEmpty()) {
+            NavigatorNode.CategoryNode fieldsCategory = new NavigatorNode.CategoryNode("Fields", Icons.getIcon("field"));
+            for (FieldEntryModel field : fields) {
+                fieldsCategory.add(new NavigatorNode.FieldNode(field));
             }
+            classNode.add(fieldsCategory);
+        }
 
-            NavigatorNode.PackageNode pkgNode = (NavigatorNode.PackageNode) node;
-
-            while (hasSinglePackageChild(pkgNode)) {
-                NavigatorNode.PackageNode childPkg = getSinglePackageChild(pkgNode);
-                if (childPkg == null) {
-                    break;
-                }
-                String combinedName = pkgNode.getPackageName() + "." + getLastSegment(childPkg.getPackageName());
-                pkgNode.setDisplayName(combinedName);
-
-                List<TreeNode> grandChildren = new ArrayList<>();
-                for (int i = 0; i < childPkg.getChildCount(); i++) {
-                    grandChildren.add(childPkg.getChildAt(i));
-                }
-
-                pkgNode.remove(childPkg);
-
-                for (TreeNode grandChild : grandChildren) {
-                    if (grandChild instanceof NavigatorNode) {
-                        pkgNode.add((NavigatorNode) grandChild);
-                    }
-                }
+        List<MethodEntryModel> constructors = classEntry.getConstructors();
+        if (!constructors.isEmpty()) {
+            NavigatorNode.CategoryNode ctorCategory = new NavigatorNode.CategoryNode("Constructors", Icons.getIcon("constructor"));
+            for (MethodEntryModel ctor : constructors) {
+                ctorCategory.add(new NavigatorNode.MethodNode(ctor));
             }
+            classNode.add(ctorCategory);
+        }
 
-            for (int i = 0; i < pkgNode.getChildCount(); i++) {
-                TreeNode child = pkgNode.getChildAt(i);
-                if (child instanceof NavigatorNode.PackageNode) {
-                    stack.push((NavigatorNode.PackageNode) child);
-                }
+        List<MethodEntryModel> staticInits = new ArrayList<>();
+        List<MethodEntryModel> methods = new ArrayList<>();
+        for (MethodEntryModel method : classEntry.getMethods()) {
+            if (method.isStaticInitializer()) {
+                staticInits.add(method);
+            } else if (!method.isConstructor()) {
+                methods.add(method);
             }
         }
-    }
-
-    private boolean hasSinglePackageChild(NavigatorNode.PackageNode node) {
-        if (node.getChildCount() != 1) {
-            return false;
+        if (!staticInits.isEmpty()) {
+            NavigatorNode.CategoryNode clinitCategory = new NavigatorNode.CategoryNode("Static Initializers", Icons.getIcon("constructor"));
+            for (MethodEntryModel clinit : staticInits) {
+                clinitCategory.add(new NavigatorNode.MethodNode(clinit));
+            }
+            classNode.add(clinitCategory);
         }
-        return node.getChildAt(0) instanceof NavigatorNode.PackageNode;
-    }
 
-    private NavigatorNode.PackageNode getSinglePackageChild(NavigatorNode.PackageNode node) {
-        if (node.getChildCount() == 1 && node.getChildAt(0) instanceof NavigatorNode.PackageNode) {
-            return (NavigatorNode.PackageNode) node.getChildAt(0);
+        if (!methods.isEmpty()) {
+            NavigatorNode.CategoryNode methodsCategory = new NavigatorNode.CategoryNode("Methods", Icons.getIcon("method_public"));
+            for (MethodEntryModel method : methods) {
+                methodsCategory.add(new NavigatorNode.MethodNode(method));
+            }
+            classNode.add(methodsCategory);
         }
-        return null;
     }
 
-    private String getLastSegment(String packageName) {
-        int lastDot = packageName.lastIndexOf('.');
-        return lastDot >= 0 ? packageName.substring(lastDot + 1) : packageName;
-    }
+    // ---- Visibility mask ----
 
-    private List<ClassEntryModel> getFilteredClasses() {
-        List<ClassEntryModel> classes = new ArrayList<>();
-        for (ClassEntryModel entry : project.getAllClasses()) {
-            if (!JdkClassFilter.isJdkClass(entry.getClassName())) {
-                classes.add(entry);
+    /**
+     * Marks the matched classes (and their ancestors and matching members) visible in a new mask generation.
+     * Nodes not stamped with the current generation are hidden from the tree while the filter is active.
+     */
+    private void applyMask(ClassFilterIndex.Match match) {
+        int generation = ++maskGeneration;
+        visibleChildren.clear();
+        NavigatorNode root = (NavigatorNode) getRoot();
+        root.maskStamp = generation;
+
+        int shownClasses = 0;
+        for (int i = match.matched.nextSetBit(0); i >= 0; i = match.matched.nextSetBit(i + 1)) {
+            NavigatorNode.ClassNode classNode = match.nodes[i];
+            if (classNode.getParent() == null) {
+                continue;
             }
+            stampWithAncestors(classNode, generation);
+            stampMembers(classNode, match.nameMatched.get(i), match.lowerFilter, generation);
+            shownClasses++;
         }
+        ((NavigatorNode.ProjectNode) root).setClassCount(shownClasses);
 
-        if (filterText != null && !filterText.isEmpty()) {
-            String lowerFilter = filterText.toLowerCase();
-            List<ClassEntryModel> filtered = new ArrayList<>();
-            for (ClassEntryModel entry : classes) {
-                if (matchesFilter(entry, lowerFilter)) {
-                    filtered.add(entry);
-                }
-            }
-            classes = filtered;
+        if (resourcesRoot != null) {
+            int shownResources = stampResources(resourcesRoot, match.lowerFilter, generation);
+            resourcesRoot.setResourceCount(shownResources);
         }
 
-        classes.sort(Comparator.comparing(ClassEntryModel::getClassName));
-
-        return classes;
+        filterActive = true;
+        activeFilter = match.lowerFilter;
     }
 
-    private boolean matchesFilter(ClassEntryModel entry, String lowerFilter) {
-        if (entry.getSimpleName().toLowerCase().contains(lowerFilter) ||
-                entry.getClassName().toLowerCase().contains(lowerFilter)) {
-            return true;
+    /** Applies {@code match}; {@code onApplied} runs once a match covering the current classes is in place. */
+    private void applyFilter(ClassFilterIndex.Match match, Runnable onApplied) {
+        applyMask(match);
+        nodeStructureChanged((TreeNode) getRoot());
+        if (match.nodes != classSnapshot()) {
+            // Classes were added while matching ran; match again so they are covered, and call back after that
+            setFilter(filterText, onApplied);
+        } else if (onApplied != null) {
+            onApplied.run();
         }
+    }
 
-        for (MethodEntryModel method : entry.getMethods()) {
-            if (method.getName().toLowerCase().contains(lowerFilter)) {
-                return true;
-            }
+    private static void stampWithAncestors(NavigatorNode node, int generation) {
+        TreeNode current = node;
+        while (current instanceof NavigatorNode && ((NavigatorNode) current).maskStamp != generation) {
+            ((NavigatorNode) current).maskStamp = generation;
+            current = current.getParent();
         }
+    }
 
-        for (MethodEntryModel ctor : entry.getConstructors()) {
-            if (ctor.getName().toLowerCase().contains(lowerFilter)) {
-                return true;
+    private static void stampMembers(NavigatorNode.ClassNode classNode, boolean classNameMatches,
+                                     String lowerFilter, int generation) {
+        for (int c = 0; c < classNode.getChildCount(); c++) {
+            NavigatorNode category = (NavigatorNode) classNode.getChildAt(c);
+            boolean anyShown = false;
+            for (int m = 0; m < category.getChildCount(); m++) {
+                NavigatorNode member = (NavigatorNode) category.getChildAt(m);
+                if (classNameMatches || memberMatches(member, lowerFilter)) {
+                    member.maskStamp = generation;
+                    anyShown = true;
+                }
+            }
+            if (anyShown) {
+                category.maskStamp = generation;
             }
         }
-
-        return false;
     }
 
-    private NavigatorNode.PackageNode getOrCreatePackageNode(
-            NavigatorNode.ProjectNode root,
-            Map<String, NavigatorNode.PackageNode> packageNodes,
-            String packageName) {
-
-        if (packageName.isEmpty()) {
-            packageName = "(default package)";
+    private static boolean memberMatches(NavigatorNode member, String lowerFilter) {
+        if (!(member instanceof NavigatorNode.MethodNode)) {
+            // Fields are only listed when the class itself matches
+            return false;
         }
-
-        NavigatorNode.PackageNode node = packageNodes.get(packageName);
-        if (node != null) {
-            return node;
+        MethodEntryModel method = ((NavigatorNode.MethodNode) member).getMethodEntry();
+        if (method.getName().toLowerCase().contains(lowerFilter)) {
+            return true;
         }
+        return method.isStaticInitializer() && ("clinit".contains(lowerFilter) || "static".contains(lowerFilter));
+    }
 
-        // Create package node hierarchy
-        String[] parts = packageName.split("\\.");
-        StringBuilder fullName = new StringBuilder();
-        NavigatorNode parent = root;
-
-        for (int i = 0; i < parts.length; i++) {
-            if (i > 0) fullName.append(".");
-            fullName.append(parts[i]);
-
-            String currentFullName = fullName.toString();
-            NavigatorNode.PackageNode current = packageNodes.get(currentFullName);
-
-            if (current == null) {
-                current = new NavigatorNode.PackageNode(currentFullName);
-                packageNodes.put(currentFullName, current);
-
-                // Insert in sorted order
-                insertSorted(parent, current);
+    private static int stampResources(NavigatorNode node, String lowerFilter, int generation) {
+        int shown = 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            NavigatorNode child = (NavigatorNode) node.getChildAt(i);
+            if (child instanceof NavigatorNode.ResourceNode) {
+                ResourceEntryModel res = ((NavigatorNode.ResourceNode) child).getResource();
+                if (res.getName().toLowerCase().contains(lowerFilter) ||
+                        res.getPath().toLowerCase().contains(lowerFilter)) {
+                    stampWithAncestors(child, generation);
+                    shown++;
+                }
+            } else {
+                shown += stampResources(child, lowerFilter, generation);
             }
-
-            parent = current;
         }
-
-        return packageNodes.get(packageName);
+        return shown;
     }
 
-    private void insertSorted(NavigatorNode parent, NavigatorNode child) {
-        int count = parent.getChildCount();
-        for (int i = 0; i < count; i++) {
-            TreeNode existing = parent.getChildAt(i);
-            if (existing instanceof NavigatorNode) {
-                String existingText = ((NavigatorNode) existing).getDisplayText();
-                String newText = child.getDisplayText();
-
-                // Packages before classes
-                boolean existingIsPackage = existing instanceof NavigatorNode.PackageNode;
-                boolean newIsPackage = child instanceof NavigatorNode.PackageNode;
+    /** Whether {@code node} is currently shown (always true without a filter). */
+    public boolean isShown(Object node) {
+        return !filterActive || !(node instanceof NavigatorNode)
+                || ((NavigatorNode) node).maskStamp == maskGeneration;
+    }
 
-                if (existingIsPackage == newIsPackage) {
-                    if (newText.compareToIgnoreCase(existingText) < 0) {
-                        parent.insert(child, i);
-                        return;
-                    }
-                } else if (newIsPackage) {
-                    parent.insert(child, i);
-                    return;
+    private TreeNode[] visibleChildrenOf(Object parent) {
+        TreeNode node = (TreeNode) parent;
+        TreeNode[] children = visibleChildren.get(node);
+        if (children == null) {
+            List<TreeNode> shown = new ArrayList<>();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                TreeNode child = node.getChildAt(i);
+                if (isShown(child)) {
+                    shown.add(child);
                 }
             }
+            children = shown.toArray(new TreeNode[0]);
+            visibleChildren.put(node, children);
         }
-        parent.add(child);
+        return children;
     }
 
-    private void addMembersToClass(NavigatorNode.ClassNode classNode, ClassEntryModel classEntry) {
-        String lowerFilter = (filterText != null && !filterText.isEmpty()) ? filterText.toLowerCase() : null;
-        boolean classNameMatches = lowerFilter == null ||
-                classEntry.getSimpleName().toLowerCase().contains(lowerFilter) ||
-                classEntry.getClassName().toLowerCase().contains(lowerFilter);
-
-        if (lowerFilter == null || classNameMatches) {
-            List<FieldEntryModel> fields = classEntry.getFields();
-            if (!fields.isEmpty()) {
-                NavigatorNode.CategoryNode fieldsCategory = new NavigatorNode.CategoryNode("Fields", Icons.getIcon("field"));
-                for (FieldEntryModel field : fields) {
-                    fieldsCategory.add(new NavigatorNode.FieldNode(field));
-                }
-                classNode.add(fieldsCategory);
-            }
+    @Override
+    public Object getChild(Object parent, int index) {
+        if (!filterActive) {
+            return super.getChild(parent, index);
         }
+        return visibleChildrenOf(parent)[index];
+    }
 
-        List<MethodEntryModel> constructors = classEntry.getConstructors();
-        List<MethodEntryModel> filteredCtors = new ArrayList<>();
-        for (MethodEntryModel ctor : constructors) {
-            if (lowerFilter == null || classNameMatches ||
-                    ctor.getName().toLowerCase().contains(lowerFilter)) {
-                filteredCtors.add(ctor);
-            }
-        }
-        if (!filteredCtors.isEmpty()) {
-            NavigatorNode.CategoryNode ctorCategory = new NavigatorNode.CategoryNode("Constructors", Icons.getIcon("constructor"));
-            for (MethodEntryModel ctor : filteredCtors) {
-                ctorCategory.add(new NavigatorNode.MethodNode(ctor));
-            }
-            classNode.add(ctorCategory);
+    @Override
+    public int getChildCount(Object parent) {
+        if (!filterActive) {
+            return super.getChildCount(parent);
         }
+        return visibleChildrenOf(parent).length;
+    }
 
-        List<MethodEntryModel> staticInits = new ArrayList<>();
-        for (MethodEntryModel method : classEntry.getMethods()) {
-            if (method.isStaticInitializer()) {
-                if (lowerFilter == null || classNameMatches ||
-                        method.getName().toLowerCase().contains(lowerFilter) ||
-                        "clinit".contains(lowerFilter) || "static".contains(lowerFilter)) {
-                    staticInits.add(method);
-                }
-            }
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!filterActive) {
+            return super.getIndexOfChild(parent, child);
         }
-        if (!staticInits.isEmpty()) {
-            NavigatorNode.CategoryNode clinitCategory = new NavigatorNode.CategoryNode("Static Initializers", Icons.getIcon("constructor"));
-            for (MethodEntryModel clinit : staticInits) {
-                clinitCategory.add(new NavigatorNode.MethodNode(clinit));
-            }
-            classNode.add(clinitCategory);
+        if (parent == null || child == null) {
+            return -1;
         }
-
-        List<MethodEntryModel> filteredMethods = new ArrayList<>();
-        for (MethodEntryModel method : classEntry.getMethods()) {
-            if (!method.isConstructor() && !method.isStaticInitializer()) {
-                if (lowerFilter == null || classNameMatches ||
-                        method.getName().toLowerCase().contains(lowerFilter)) {
-                    filteredMethods.add(method);
-                }
+        TreeNode[] children = visibleChildrenOf(parent);
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] == child) {
+                return i;
             }
         }
+        return -1;
+    }
 
-        if (!filteredMethods.isEmpty()) {
-            NavigatorNode.CategoryNode methodsCategory = new NavigatorNode.CategoryNode("Methods", Icons.getIcon("method_public"));
-            for (MethodEntryModel method : filteredMethods) {
-                methodsCategory.add(new NavigatorNode.MethodNode(method));
-            }
-            classNode.add(methodsCategory);
+    @Override
+    public boolean isLeaf(Object node) {
+        if (!filterActive) {
+            return super.isLeaf(node);
         }
+        return ((TreeNode) node).isLeaf() || visibleChildrenOf(node).length == 0;
     }
 
     /**
      * Find a class node in the tree.
      */
     public NavigatorNode.ClassNode findClassNode(String className) {
-        return findClassNode((NavigatorNode) getRoot(), className);
-    }
-
-    private NavigatorNode.ClassNode findClassNode(NavigatorNode node, String className) {
-        if (node instanceof NavigatorNode.ClassNode) {
-            NavigatorNode.ClassNode classNode = (NavigatorNode.ClassNode) node;
-            if (classNode.getClassEntry().getClassName().equals(className)) {
-                return classNode;
-            }
-        }
-
-        for (int i = 0; i < node.getChildCount(); i++) {
-            TreeNode child = node.getChildAt(i);
-            if (child instanceof NavigatorNode) {
-                NavigatorNode.ClassNode found = findClassNode((NavigatorNode) child, className);
-                if (found != null) {
-                    return found;
-                }
-            }
-        }
-
-        return null;
+        return classNodes.get(className);
     }
 
     /**
@@ -518,7 +825,6 @@ public class ClassTreeModel extends DefaultTreeModel {
     public void clear() {
         this.project = null;
         this.filterText = null;
-        setRoot(new NavigatorNode.ProjectNode("No Project", 0));
-        reload();
+        rebuildTree();
     }
 }
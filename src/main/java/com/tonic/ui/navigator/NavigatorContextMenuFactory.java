@@ -3,7 +3,9 @@ package com.tonic.ui.navigator;
 import com.tonic.ui.MainFrame;
 import com.tonic.ui.core.util.JvmDescriptorFormatter;
 import com.tonic.ui.editor.ViewMode;
+import com.tonic.live.LiveSession;
 import com.tonic.ui.live.LiveAttachService;
+import com.tonic.ui.live.LiveProbeService;
 import com.tonic.event.EventBus;
 import com.tonic.event.events.ClassSelectedEvent;
 import com.tonic.event.events.FindUsagesEvent;
@@ -11,10 +13,12 @@ import com.tonic.event.events.ResourceSelectedEvent;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.FieldEntryModel;
 import com.tonic.model.MethodEntryModel;
+import com.tonic.model.ProjectModel;
 import com.tonic.model.ResourceEntryModel;
 import com.tonic.plugin.api.ui.NavigatorAction;
 import com.tonic.plugin.api.ui.NavigatorActionProvider;
 import com.tonic.plugin.api.ui.NavigatorContext;
+import com.tonic.service.ProjectService;
 import com.tonic.ui.theme.JStudioTheme;
 
 import javax.swing.BorderFactory;
@@ -25,6 +29,7 @@ import java.awt.Component;
 import java.awt.Toolkit;
 import java.awt.datatransfer.StringSelection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -150,6 +155,11 @@ final class NavigatorContextMenuFactory {
 
         addMenuItem(menu, "Fuzz & Generate Tests...", () -> actions.openFuzzTestDialog(method));
 
+        LiveSession session = LiveAttachService.getInstance().getSession();
+        if (session != null && session.supportsProbes()) {
+            addMenuItem(menu, "Add Timing Probe", () -> mainFrame.addLiveProbe(method));
+        }
+
         menu.addSeparator();
 
         addMenuItem(menu, "Rename Method...", () -> mainFrame.showRenameMethodDialog(method.getOwner(), method));
@@ -224,6 +234,16 @@ final class NavigatorContextMenuFactory {
 
         addMenuItem(menu, "Export Class...", () -> mainFrame.exportClass(classEntry));
 
+        LiveSession session = LiveAttachService.getInstance().getSession();
+        if (session != null && session.supportsAllocationSites()) {
+            if (LiveProbeService.get().isTrackingAllocations(classEntry.getClassName())) {
+                addMenuItem(menu, "Stop Tracking Allocations", () -> mainFrame.untrackLiveAllocations(classEntry));
+            } else {
+                addMenuItem(menu, "Track Allocations", () -> mainFrame.trackLiveAllocations(
+                        Collections.singletonList(classEntry), classEntry.getSimpleName()));
+            }
+        }
+
         menu.addSeparator();
 
         addMenuItem(menu, "Copy Class Name", () -> copyToClipboard(classEntry.getClassName().replace('/', '.')));
@@ -235,6 +255,21 @@ final class NavigatorContextMenuFactory {
 
     private void buildPackageMenu(JPopupMenu menu, NavigatorNode.PackageNode node) {
         addMenuItem(menu, "Add New Class...", () -> actions.showNewClassDialog(node.getPackageName()));
+
+        LiveSession session = LiveAttachService.getInstance().getSession();
+        ProjectModel project = ProjectService.getInstance().getCurrentProject();
+        if (session != null && session.supportsAllocationSites() && project != null) {
+            String pkg = node.getPackageName();
+            addMenuItem(menu, "Track Allocations in Package", () -> {
+                List<ClassEntryModel> classes = new ArrayList<>();
+                for (ClassEntryModel cls : project.getClassesInPackage(pkg)) {
+                    if (cls.getPackageName().equals(pkg) || cls.getPackageName().startsWith(pkg + ".")) {
+                        classes.add(cls);
+                    }
+                }
+                mainFrame.trackLiveAllocations(classes, pkg);
+            });
+        }
     }
 
     private void buildProjectMenu(JPopupMenu menu) {
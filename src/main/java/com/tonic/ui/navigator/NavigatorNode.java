@@ -7,6 +7,7 @@ import com.tonic.model.ResourceEntryModel;
 import com.tonic.simulation.metrics.ComplexityMetrics;
 import com.tonic.ui.theme.Icons;
 import com.tonic.ui.theme.RunnableOverlayIcon;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import javax.swing.Icon;
@@ -17,6 +18,9 @@ import javax.swing.tree.DefaultMutableTreeNode;
  */
 public abstract class NavigatorNode extends DefaultMutableTreeNode {
 
+    /** Filter-mask generation this node was last marked visible in; see {@link ClassTreeModel}. */
+    int maskStamp;
+
     public NavigatorNode(Object userObject) {
         super(userObject);
     }
@@ -55,7 +59,7 @@ public abstract class NavigatorNode extends DefaultMutableTreeNode {
      */
     public static class ProjectNode extends NavigatorNode {
         private final String name;
-        private final int classCount;
+        private int classCount;
 
         public ProjectNode(String name, int classCount) {
             super(name);
@@ -63,6 +67,10 @@ public abstract class NavigatorNode extends DefaultMutableTreeNode {
             this.classCount = classCount;
         }
 
+        public void setClassCount(int classCount) {
+            this.classCount = classCount;
+        }
+
         @Override
         public String getDisplayText() {
             return name + " (" + classCount + " classes)";
@@ -80,28 +88,33 @@ public abstract class NavigatorNode extends DefaultMutableTreeNode {
     }
 
     /**
-     * Node representing a package.
+     * Node representing a package. Chains of packages that only contain a single sub-package are compacted into
+     * one node, so a node stands for its full {@link #getPackageName() package} and displays the part of it
+     * below its parent package.
      */
     public static class PackageNode extends NavigatorNode {
         @Getter
         private final String packageName;
-        private String displayName;
 
         public PackageNode(String packageName) {
             super(packageName);
             this.packageName = packageName;
-            // Show last segment of package name
-            int lastDot = packageName.lastIndexOf('.');
-            this.displayName = lastDot >= 0 ? packageName.substring(lastDot + 1) : packageName;
         }
 
-        public void setDisplayName(String displayName) {
-            this.displayName = displayName;
+        /** The segments of {@code packageName} below {@code parent}'s package (all of it under the root). */
+        static String relativeName(Object parent, String packageName) {
+            if (parent instanceof PackageNode) {
+                String parentName = ((PackageNode) parent).packageName;
+                if (packageName.length() > parentName.length() && packageName.startsWith(parentName)) {
+                    return packageName.substring(parentName.length() + 1);
+                }
+            }
+            return packageName;
         }
 
         @Override
         public String getDisplayText() {
-            return sanitizeDisplayText(displayName);
+            return sanitizeDisplayText(relativeName(getParent(), packageName));
         }
 
         @Override
@@ -121,6 +134,9 @@ public abstract class NavigatorNode extends DefaultMutableTreeNode {
     @Getter
     public static class ClassNode extends NavigatorNode {
         private final ClassEntryModel classEntry;
+        /** Filter key, built on the EDT by {@link ClassFilterIndex#prepare}. */
+        @Getter(AccessLevel.NONE)
+        volatile ClassFilterIndex.Key searchKey;
 
         public ClassNode(ClassEntryModel classEntry) {
             super(classEntry);
@@ -239,13 +255,17 @@ public abstract class NavigatorNode extends DefaultMutableTreeNode {
 
     @Getter
     public static class ResourcesRootNode extends NavigatorNode {
-        private final int resourceCount;
+        private int resourceCount;
 
         public ResourcesRootNode(int resourceCount) {
             super("Resources");
             this.resourceCount = resourceCount;
         }
 
+        public void setResourceCount(int resourceCount) {
+            this.resourceCount = resourceCount;
+        }
+
         @Override
         public String getDisplayText() {
             return "Resources (" + resourceCount + ")";
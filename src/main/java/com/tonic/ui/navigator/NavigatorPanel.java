@@ -266,10 +266,7 @@ public class NavigatorPanel extends ThemedJPanel {
         if (text.isEmpty()) {
             treeModel.clearFilter();
         } else {
-            treeModel.setFilter(text);
-        }
-        if (!text.isEmpty()) {
-            expandAll();
+            treeModel.setFilter(text, this::expandAll);
         }
     }
 
@@ -344,6 +341,17 @@ public class NavigatorPanel extends ThemedJPanel {
         treeState.expandToLevel(1);
     }
 
+    /**
+     * Applies class additions/removals from the project (appends, live capture, deletes) to the existing tree
+     * without rebuilding it, keeping expansion and selection.
+     */
+    public void updateProject(ProjectModel project) {
+        treeState.capture();
+        if (treeModel.syncProject(project)) {
+            treeState.restore();
+        }
+    }
+
     public void clear() {
         treeModel.clear();
         searchField.setText("");
@@ -372,7 +380,7 @@ public class NavigatorPanel extends ThemedJPanel {
 
     public void selectClass(String className) {
         NavigatorNode.ClassNode node = treeModel.findClassNode(className);
-        if (node != null) {
+        if (node != null && treeModel.isShown(node)) {
             TreePath path = new TreePath(treeModel.getPathToRoot(node));
             tree.setSelectionPath(path);
             tree.scrollPathToVisible(path);
@@ -81,8 +81,10 @@ final class NavigatorTreeStateManager {
             return;
         }
         tree.expandPath(path);
-        for (int i = 0; i < node.getChildCount(); i++) {
-            Object child = node.getChildAt(i);
+        // Walk through the model so nodes hidden by the filter mask are skipped
+        int count = treeModel.getChildCount(node);
+        for (int i = 0; i < count; i++) {
+            Object child = treeModel.getChild(node, i);
             if (child instanceof NavigatorNode) {
                 restoreNode((NavigatorNode) child, path.pathByAddingChild(child), expandedKeys, selectedKey, false);
             }
@@ -124,8 +126,9 @@ final class NavigatorTreeStateManager {
         TreePath path = new TreePath(treeModel.getPathToRoot(node));
         tree.expandPath(path);
 
-        for (int i = 0; i < node.getChildCount(); i++) {
-            Object child = node.getChildAt(i);
+        int count = treeModel.getChildCount(node);
+        for (int i = 0; i < count; i++) {
+            Object child = treeModel.getChild(node, i);
             if (child instanceof NavigatorNode) {
                 expandToLevel((NavigatorNode) child, currentLevel + 1, targetLevel);
             }
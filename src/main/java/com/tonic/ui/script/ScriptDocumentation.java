@@ -246,6 +246,20 @@ public class ScriptDocumentation {
                 "\n" +
                 "<span class='cmt'>// Find annotated methods</span>\n" +
                 "<span class='kw'>let</span> injected = project.<span class='fn'>findAnnotated</span>(<span class='str'>\"javax/inject/Inject\"</span>);</pre>\n" +
+                "<h2>Lazy Queries</h2>\n" +
+                "<p><code>classes()</code>, <code>methods()</code> and <code>fields()</code> return lazy sequences. " +
+                "Elements are only visited and wrapped as far as the query needs them; " +
+                "<code>methods()</code> and <code>classes()</code> accept the same criteria objects as the find functions.</p>\n" +
+                "<pre><span class='cmt'>// Stops after the first 10 matches</span>\n" +
+                "<span class='kw'>let</span> first = project.<span class='fn'>methods</span>({ name: <span class='str'>\"*Handler\"</span> })\n" +
+                "    .<span class='fn'>filter</span>((m) => m.codeLength > <span class='num'>100</span>)\n" +
+                "    .<span class='fn'>take</span>(<span class='num'>10</span>)\n" +
+                "    .<span class='fn'>toArray</span>();\n" +
+                "\n" +
+                "<span class='cmt'>// map, skip, first, some, forEach and count are also available</span>\n" +
+                "<span class='kw'>let</span> n = project.<span class='fn'>classes</span>().<span class='fn'>parallel</span>().<span class='fn'>filter</span>((c) => c.isInterface).<span class='fn'>count</span>();</pre>\n" +
+                "<p><code>parallel()</code> runs callbacks concurrently and in no particular order, " +
+                "so they should not assign outer variables.</p>\n" +
                 "<h2>Properties</h2>\n" +
                 "<pre><span class='fn'>log</span>(<span class='str'>\"Classes: \"</span> + project.<span class='fn'>classCount</span>());\n" +
                 "<span class='fn'>log</span>(<span class='str'>\"Methods: \"</span> + project.<span class='fn'>methodCount</span>());</pre>\n";
@@ -622,7 +636,20 @@ public class ScriptDocumentation {
                 "\n" +
                 "<span class='cmt'>// Check status</span>\n" +
                 "<span class='kw'>let</span> status = pipeline.<span class='fn'>getStatus</span>();\n" +
-                "<span class='fn'>log</span>(<span class='str'>\"Total time: \"</span> + pipeline.<span class='fn'>getTotalTime</span>() + <span class='str'>\"ms\"</span>);</pre>\n";
+                "<span class='fn'>log</span>(<span class='str'>\"Total time: \"</span> + pipeline.<span class='fn'>getTotalTime</span>() + <span class='str'>\"ms\"</span>);</pre>\n" +
+                "<h2>Dependencies and Caching</h2>\n" +
+                "<p>A stage reads the previous stage's result unless a third argument names the stages it depends on " +
+                "(comma-separated, <code>\"\"</code> for none). Stages whose inputs are ready run in parallel, and a " +
+                "stage with several dependencies receives an object of their results by name.</p>\n" +
+                "<pre>pipeline.<span class='fn'>stage</span>(<span class='str'>\"calls\"</span>, () => callgraph.<span class='fn'>build</span>(), <span class='str'>\"\"</span>);\n" +
+                "pipeline.<span class='fn'>stage</span>(<span class='str'>\"deps\"</span>, () => dependencies.<span class='fn'>build</span>(), <span class='str'>\"\"</span>);\n" +
+                "pipeline.<span class='fn'>stage</span>(<span class='str'>\"report\"</span>, (inputs) => ..., <span class='str'>\"calls, deps\"</span>);\n" +
+                "\n" +
+                "<span class='cmt'>// Reuse results until the bytecode, the stage or anything upstream of it changes</span>\n" +
+                "pipeline.<span class='fn'>setMemoize</span>(<span class='kw'>true</span>);\n" +
+                "pipeline.<span class='fn'>run</span>();</pre>\n" +
+                "<p>Memoized stages should only return values: writes to the context or to outer variables are not " +
+                "replayed when a cached result is reused.</p>\n";
     }
 
     public static String getSecurityExample() {
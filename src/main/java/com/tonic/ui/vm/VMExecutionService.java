@@ -21,6 +21,7 @@ import com.tonic.event.events.StatusMessageEvent;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
 import com.tonic.service.ConsoleLogService;
+import com.tonic.service.ProjectScope;
 import com.tonic.service.ProjectService;
 import com.tonic.ui.vm.model.ExecutionResult;
 import com.tonic.ui.vm.model.MethodCall;
@@ -60,11 +61,18 @@ public class VMExecutionService {
 
     // Cached defensive snapshot of the project's user-class bytes, reused across isolated VM instances until the
     // project's bytecode changes.
+    private ProjectModel cachedSnapshotProject;
     private long cachedSnapshotVersion = -1;
     private Map<String, byte[]> cachedFrozenClasses;
 
     private VMExecutionService() {
-        EventBus.getInstance().register(ProjectLoadedEvent.class, this::onProjectLoaded);
+        this(true);
+    }
+
+    private VMExecutionService(boolean followProjectLoads) {
+        if (followProjectLoads) {
+            EventBus.getInstance().register(ProjectLoadedEvent.class, this::onProjectLoaded);
+        }
     }
 
     private void onProjectLoaded(ProjectLoadedEvent event) {
@@ -73,7 +81,15 @@ public class VMExecutionService {
         }
     }
 
+    /**
+     * The application VM service, or inside a {@link ProjectScope} that scope's own instance, bound to the scope's
+     * project so concurrent headless targets never share heap, resolver or snapshot state.
+     */
     public static VMExecutionService getInstance() {
+        ProjectScope scope = ProjectScope.current();
+        if (scope != null) {
+            return scope.service(VMExecutionService.class, () -> new VMExecutionService(false));
+        }
         return INSTANCE;
     }
 
@@ -521,7 +537,7 @@ public class VMExecutionService {
             throw new IllegalStateException("No project loaded. Load a project before starting a VM session.");
         }
         long version = project.getBytecodeVersion();
-        if (cachedFrozenClasses == null || cachedSnapshotVersion != version) {
+        if (cachedFrozenClasses == null || cachedSnapshotProject != project || cachedSnapshotVersion != version) {
             Map<String, byte[]> frozen = new HashMap<>();
             for (ClassEntryModel entry : project.getUserClasses()) {
                 try {
@@ -531,6 +547,7 @@ public class VMExecutionService {
                 }
             }
             cachedFrozenClasses = frozen;
+            cachedSnapshotProject = project;
             cachedSnapshotVersion = version;
         }
         SnapshotClassPool pool = new SnapshotClassPool(cachedFrozenClasses, project.getClassPool());
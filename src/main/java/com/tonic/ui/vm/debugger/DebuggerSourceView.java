@@ -1,6 +1,5 @@
 package com.tonic.ui.vm.debugger;
 
-import com.tonic.analysis.source.decompile.ClassDecompiler;
 import com.tonic.analysis.source.decompile.DecompileResult;
 import com.tonic.model.ClassEntryModel;
 import com.tonic.model.ProjectModel;
@@ -306,7 +305,7 @@ public class DebuggerSourceView extends JPanel {
         decompileWorker = new SwingWorker<>() {
             @Override
             protected DecompileResult doInBackground() {
-                return new ClassDecompiler(target.getClassFile()).decompileWithLineMap();
+                return target.decompile();
             }
 
             @Override
@@ -25,6 +25,12 @@ public class Settings {
     private static final String PREF_FONT_FAMILY = "editor.fontFamily";
     private static final String PREF_WORD_WRAP = "editor.wordWrap";
     private static final String PREF_USAGE_LENS = "editor.usageLens";
+    private static final String PREF_DECOMPILE_CACHE_MB = "decompile.cacheMb";
+    private static final String PREF_DECOMPILE_SPILL = "decompile.spillToDisk";
+    private static final String PREF_DECOMPILE_PREFETCH = "decompile.prefetch";
+    private static final String PREF_SIM_MAX_INSTRUCTIONS = "simulation.maxInstructions";
+    private static final String PREF_SIM_MAX_MILLIS = "simulation.maxMillis";
+    private static final String PREF_SIM_CACHE_MB = "simulation.cacheMb";
     private static final String PREF_LIVE_AGENT_PATH = "live.agentPath";
     private static final String PREF_LAST_DIR = "file.lastDirectory";
 
@@ -33,6 +39,7 @@ public class Settings {
     private static final String PREF_THEME = "appearance.theme";
     private static final String PREF_LOAD_JDK_CLASSES = "classpool.loadJdk";
     private static final String PREF_DEBUG_SUSPEND_ALL = "debug.suspendAll";
+    private static final String PREF_DEBUG_PREFETCH_DEPTH = "debug.prefetchDepth";
 
     private static final String PREF_UPDATE_CHECK = "update.checkOnStartup";
     private static final String PREF_UPDATE_SKIPPED = "update.skippedVersion";
@@ -101,6 +108,22 @@ public class Settings {
     public boolean isUsageLensEnabled() { return prefs.getBoolean(PREF_USAGE_LENS, true); }
     public void setUsageLensEnabled(boolean enabled) { prefs.putBoolean(PREF_USAGE_LENS, enabled); }
 
+    // Decompilation cache: in-memory budget, optional gzip spill of evicted sources, background prefetch
+    public int getDecompileCacheMb() { return prefs.getInt(PREF_DECOMPILE_CACHE_MB, 128); }
+    public void setDecompileCacheMb(int mb) { prefs.putInt(PREF_DECOMPILE_CACHE_MB, mb); }
+    public boolean isDecompileSpillEnabled() { return prefs.getBoolean(PREF_DECOMPILE_SPILL, false); }
+    public void setDecompileSpillEnabled(boolean enabled) { prefs.putBoolean(PREF_DECOMPILE_SPILL, enabled); }
+    public boolean isDecompilePrefetchEnabled() { return prefs.getBoolean(PREF_DECOMPILE_PREFETCH, true); }
+    public void setDecompilePrefetchEnabled(boolean enabled) { prefs.putBoolean(PREF_DECOMPILE_PREFETCH, enabled); }
+
+    // Project-wide simulation: per-method budgets and the result cache size
+    public int getSimulationMaxInstructions() { return prefs.getInt(PREF_SIM_MAX_INSTRUCTIONS, 500_000); }
+    public void setSimulationMaxInstructions(int max) { prefs.putInt(PREF_SIM_MAX_INSTRUCTIONS, max); }
+    public int getSimulationMaxMillis() { return prefs.getInt(PREF_SIM_MAX_MILLIS, 5_000); }
+    public void setSimulationMaxMillis(int millis) { prefs.putInt(PREF_SIM_MAX_MILLIS, millis); }
+    public int getSimulationCacheMb() { return prefs.getInt(PREF_SIM_CACHE_MB, 64); }
+    public void setSimulationCacheMb(int mb) { prefs.putInt(PREF_SIM_CACHE_MB, mb); }
+
     public String getLiveAgentPath() { return prefs.get(PREF_LIVE_AGENT_PATH, ""); }
     public void setLiveAgentPath(String path) { prefs.put(PREF_LIVE_AGENT_PATH, path != null ? path : ""); }
 
@@ -181,6 +204,10 @@ public class Settings {
     public boolean isDebuggerSuspendAll() { return prefs.getBoolean(PREF_DEBUG_SUSPEND_ALL, true); }
     public void setDebuggerSuspendAll(boolean enabled) { prefs.putBoolean(PREF_DEBUG_SUSPEND_ALL, enabled); }
 
+    // Debugger (JDI): levels of object fields fetched along with a paused frame's variables (default 0: on expand only)
+    public int getDebuggerPrefetchDepth() { return prefs.getInt(PREF_DEBUG_PREFETCH_DEPTH, 0); }
+    public void setDebuggerPrefetchDepth(int depth) { prefs.putInt(PREF_DEBUG_PREFETCH_DEPTH, depth); }
+
     // Update checks
     public boolean isUpdateCheckEnabled() { return prefs.getBoolean(PREF_UPDATE_CHECK, true); }
     public void setUpdateCheckEnabled(boolean enabled) { prefs.putBoolean(PREF_UPDATE_CHECK, enabled); }
@@ -0,0 +1,163 @@
+package com.tonic.deobfuscation;
+
+import com.tonic.deobfuscation.model.DecryptorCandidate;
+import com.tonic.deobfuscation.model.DeobfuscationResult;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ClassPool;
+import com.tonic.parser.MethodEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchDecryptorTest {
+
+    private static final String CIPHER = "com/tonic/deobfuscation/BatchDecryptorTest$Cipher";
+    private static final String COUNTER = "com/tonic/deobfuscation/BatchDecryptorTest$Counter";
+
+    /** A decryptor whose key table is built by its static initializer. */
+    static final class Cipher {
+        static final char[] KEY;
+
+        static {
+            KEY = new char[]{'k', '3', 'y'};
+        }
+
+        static String decrypt(String s) {
+            char[] c = new char[s.length()];
+            for (int i = 0; i < c.length; i++) {
+                c[i] = (char) (s.charAt(i) ^ KEY[i % KEY.length]);
+            }
+            return new String(c);
+        }
+    }
+
+    /** A decryptor with static state that a failed call leaves behind. */
+    static final class Counter {
+        static int calls;
+
+        static String next(String s) {
+            calls++;
+            if (s.equals("boom")) {
+                throw new IllegalStateException(s);
+            }
+            return s + calls;
+        }
+    }
+
+    @Test
+    void decryptsEveryEntryInOrder() throws Exception {
+        String[] plain = {"alpha", "beta", "alpha", "gamma", "beta", "delta"};
+        List<DeobfuscationResult> pending = new ArrayList<>();
+        for (int i = 0; i < plain.length; i++) {
+            pending.add(new DeobfuscationResult("p/User", i + 1, Cipher.decrypt(plain[i])));
+        }
+        Set<Integer> reported = ConcurrentHashMap.newKeySet();
+
+        List<DeobfuscationResult> results = decryptor().decryptAll(pending, 3,
+                (result, position) -> reported.add(position));
+
+        assertEquals(plain.length, results.size());
+        for (int i = 0; i < plain.length; i++) {
+            DeobfuscationResult result = results.get(i);
+            assertTrue(result.isSuccess(), result.getErrorMessage());
+            assertEquals(i + 1, result.getConstantPoolIndex());
+            assertEquals(plain[i], result.getDecryptedValue());
+        }
+        assertEquals(plain.length, reported.size());
+    }
+
+    @Test
+    void staticStateStartsFreshForEachClassAndAfterAFailure() throws Exception {
+        List<DeobfuscationResult> pending = new ArrayList<>();
+        pending.add(new DeobfuscationResult("p/A", 1, "a"));
+        pending.add(new DeobfuscationResult("p/A", 2, "b"));
+        pending.add(new DeobfuscationResult("p/B", 1, "c"));
+        pending.add(new DeobfuscationResult("p/C", 1, "boom"));
+        pending.add(new DeobfuscationResult("p/C", 2, "d"));
+
+        List<DeobfuscationResult> results = decryptor("BatchDecryptorTest$Counter.class", COUNTER, "next")
+                .decryptAll(pending, 2, null);
+
+        assertEquals("a1", results.get(0).getDecryptedValue());
+        assertEquals("b2", results.get(1).getDecryptedValue());
+        assertEquals("c1", results.get(2).getDecryptedValue());
+        assertFalse(results.get(3).isSuccess());
+        assertEquals("d1", results.get(4).getDecryptedValue());
+    }
+
+    @Test
+    void sameValueInAnotherClassIsDecryptedAgain() throws Exception {
+        List<DeobfuscationResult> pending = new ArrayList<>();
+        pending.add(new DeobfuscationResult("p/A", 1, "x"));
+        pending.add(new DeobfuscationResult("p/A", 2, "x"));
+        pending.add(new DeobfuscationResult("p/B", 1, "y"));
+        pending.add(new DeobfuscationResult("p/B", 2, "x"));
+
+        List<DeobfuscationResult> results = decryptor("BatchDecryptorTest$Counter.class", COUNTER, "next")
+                .decryptAll(pending, 1, null);
+
+        assertEquals("x1", results.get(0).getDecryptedValue());
+        assertEquals("x1", results.get(1).getDecryptedValue(), "shared within the class");
+        assertEquals("x2", results.get(3).getDecryptedValue(), "not reused from p/A");
+    }
+
+    @Test
+    void errorInDecryptorIsSharedWithEveryCallerOfTheKey() {
+        Map<String, CompletableFuture<String>> memo = new ConcurrentHashMap<>();
+        Supplier<String> overflow = () -> {
+            throw new StackOverflowError();
+        };
+        Supplier<String> unreachable = () -> fail("a duplicate key must not decrypt again");
+
+        CompletionException first = assertThrows(CompletionException.class,
+                () -> BatchDecryptor.memoized(memo, "p/A#x", overflow));
+        assertInstanceOf(StackOverflowError.class, first.getCause());
+        CompletionException duplicate = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(CompletionException.class,
+                        () -> BatchDecryptor.memoized(memo, "p/A#x", unreachable)));
+        assertInstanceOf(StackOverflowError.class, duplicate.getCause());
+    }
+
+    @Test
+    void emptyBatchReturnsNoResults() throws Exception {
+        assertTrue(decryptor().decryptAll(new ArrayList<>(), 4, null).isEmpty());
+    }
+
+    private static BatchDecryptor decryptor() throws IOException {
+        return decryptor("BatchDecryptorTest$Cipher.class", CIPHER, "decrypt");
+    }
+
+    private static BatchDecryptor decryptor(String resource, String className, String methodName) throws IOException {
+        ClassPool classPool = new ClassPool();
+        ClassFile owner;
+        try (InputStream in = BatchDecryptorTest.class.getResourceAsStream(resource)) {
+            assertNotNull(in);
+            owner = new ClassFile(in);
+        }
+        classPool.put(owner);
+        assertEquals(className, owner.getClassName());
+
+        MethodEntry decrypt = null;
+        for (MethodEntry m : owner.getMethods()) {
+            if (m.getName().equals(methodName)) {
+                decrypt = m;
+            }
+        }
+        assertNotNull(decrypt);
+        DecryptorCandidate candidate = new DecryptorCandidate(owner, decrypt,
+                DecryptorCandidate.DecryptorType.STRING_TO_STRING, 1.0);
+        return new BatchDecryptor(classPool, List.of(owner), candidate, 1_000_000, 100);
+    }
+}
@@ -0,0 +1,101 @@
+package com.tonic.deobfuscation.patch;
+
+import com.tonic.deobfuscation.model.DeobfuscationResult;
+import com.tonic.parser.ClassFile;
+import com.tonic.parser.ConstPool;
+import com.tonic.parser.constpool.Item;
+import com.tonic.parser.constpool.StringRefItem;
+import com.tonic.parser.constpool.Utf8Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConstantPoolPatcherTest {
+
+    private static final String CLASS_NAME = "p/Obf";
+
+    private final ConstantPoolPatcher patcher = new ConstantPoolPatcher();
+    private final List<Item<?>> items = new ArrayList<>();
+    private final ClassFile classFile = mock(ClassFile.class);
+
+    ConstantPoolPatcherTest() {
+        ConstPool cp = mock(ConstPool.class);
+        when(cp.getItems()).thenReturn(items);
+        when(classFile.getConstPool()).thenReturn(cp);
+        when(classFile.getClassName()).thenReturn(CLASS_NAME);
+        items.add(null);
+    }
+
+    @Test
+    void sharedUtf8IsWrittenOnceForAllItsStrings() {
+        Utf8Item utf8 = addUtf8();
+        int first = addStringRef(utf8);
+        int second = addStringRef(utf8);
+
+        List<DeobfuscationResult> results = Arrays.asList(decrypted(first, "hello"), decrypted(second, "hello"));
+
+        assertEquals(2, patcher.applyResults(classFile, results));
+        verify(utf8, times(1)).setValue("hello");
+        assertTrue(results.get(0).isApplied());
+        assertTrue(results.get(1).isApplied());
+    }
+
+    @Test
+    void sharedUtf8WithConflictingValuesIsLeftAlone() {
+        Utf8Item shared = addUtf8();
+        int first = addStringRef(shared);
+        int second = addStringRef(shared);
+        Utf8Item own = addUtf8();
+        int third = addStringRef(own);
+
+        List<DeobfuscationResult> results = Arrays.asList(
+                decrypted(first, "a"), decrypted(second, "b"), decrypted(third, "c"));
+
+        assertEquals(1, patcher.applyResults(classFile, results));
+        verify(shared, never()).setValue(any());
+        verify(own).setValue("c");
+        assertFalse(results.get(0).isApplied());
+        assertFalse(results.get(1).isApplied());
+        assertTrue(results.get(2).isApplied());
+    }
+
+    @Test
+    void unusableResultsAreSkipped() {
+        Utf8Item utf8 = addUtf8();
+        int ref = addStringRef(utf8);
+
+        DeobfuscationResult outOfRange = decrypted(99, "x");
+        DeobfuscationResult notAStringRef = decrypted(1, "x");
+        DeobfuscationResult failed = DeobfuscationResult.failure(CLASS_NAME, ref, "enc", "boom");
+        DeobfuscationResult otherClass = DeobfuscationResult.success("p/Other", ref, "enc", "x", null, 0);
+        DeobfuscationResult alreadyApplied = decrypted(ref, "x");
+        alreadyApplied.setApplied(true);
+
+        int applied = patcher.applyResults(classFile,
+                Arrays.asList(outOfRange, notAStringRef, failed, otherClass, alreadyApplied));
+
+        assertEquals(0, applied);
+        verify(utf8, never()).setValue(any());
+    }
+
+    private Utf8Item addUtf8() {
+        items.add(mock(Utf8Item.class));
+        return (Utf8Item) items.get(items.size() - 1);
+    }
+
+    private int addStringRef(Utf8Item target) {
+        StringRefItem ref = mock(StringRefItem.class);
+        when(ref.getValue()).thenReturn(items.indexOf(target));
+        items.add(ref);
+        return items.size() - 1;
+    }
+
+    private static DeobfuscationResult decrypted(int cpIndex, String value) {
+        return DeobfuscationResult.success(CLASS_NAME, cpIndex, "enc", value, null, 0);
+    }
+}
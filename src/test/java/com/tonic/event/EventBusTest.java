@@ -1,5 +1,6 @@
 package com.tonic.event;
 
+import com.tonic.event.events.StatusMessageEvent;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -146,6 +147,105 @@ class EventBusTest {
         assertEquals(source, event.getSource());
     }
 
+    @Test
+    void testOffEdtPostsAreDeliveredInOrder() throws Exception {
+        List<String> received = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+
+        eventBus.register(TestEvent.class, event -> {
+            received.add(event.getPayload());
+            latch.countDown();
+        });
+
+        eventBus.post(new TestEvent("s", "a"));
+        eventBus.post(new TestEvent("s", "b"));
+        eventBus.post(new TestEvent("s", "c"));
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b", "c"), received);
+    }
+
+    @Test
+    void testCoalescibleEventsMergeWhileQueued() throws Exception {
+        List<Integer> received = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        eventBus.register(CountEvent.class, event -> {
+            received.add(event.count);
+            latch.countDown();
+        });
+
+        // Hold the EDT so every post lands in the same pending batch
+        CountDownLatch release = holdEdt();
+        for (int i = 0; i < 10; i++) {
+            eventBus.post(new CountEvent("s", 1));
+        }
+        release.countDown();
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(List.of(10), received);
+
+        EventDispatchStats stats = eventBus.getDispatchStats().get(CountEvent.class);
+        assertEquals(10, stats.getPosted());
+        assertEquals(9, stats.getCoalesced());
+        assertEquals(1, stats.getDelivered());
+    }
+
+    @Test
+    void testCoalescingKeepsOrderAroundOtherEvents() throws Exception {
+        List<String> received = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+
+        eventBus.register(CountEvent.class, event -> {
+            received.add("count" + event.count);
+            latch.countDown();
+        });
+        eventBus.register(TestEvent.class, event -> {
+            received.add(event.getPayload());
+            latch.countDown();
+        });
+
+        CountDownLatch release = holdEdt();
+        eventBus.post(new CountEvent("s", 1));
+        eventBus.post(new TestEvent("s", "x"));
+        eventBus.post(new CountEvent("s", 1));
+        eventBus.post(new CountEvent("s", 1));
+        release.countDown();
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(List.of("count1", "x", "count2"), received);
+    }
+
+    @Test
+    void testStatusMessagesNeverDowngradeSeverity() {
+        StatusMessageEvent error = new StatusMessageEvent("s", "failed", StatusMessageEvent.MessageType.ERROR);
+        StatusMessageEvent warning = new StatusMessageEvent("s", "slow", StatusMessageEvent.MessageType.WARNING);
+        StatusMessageEvent info = new StatusMessageEvent("s", "ready");
+
+        assertSame(error, info.coalesce(error));
+        assertSame(error, warning.coalesce(error));
+        assertSame(warning, info.coalesce(warning));
+        assertSame(error, error.coalesce(warning));
+        assertSame(info, info.coalesce(new StatusMessageEvent("s", "loading")));
+    }
+
+    /** Blocks the EDT until the returned latch is released, so posts made meanwhile share one batch. */
+    private static CountDownLatch holdEdt() throws InterruptedException {
+        CountDownLatch edtBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            edtBlocked.countDown();
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(edtBlocked.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
     static class TestEvent extends Event {
         private final String payload;
 
@@ -159,6 +259,20 @@ class EventBusTest {
         }
     }
 
+    static class CountEvent extends Event implements Coalescible<CountEvent> {
+        final int count;
+
+        CountEvent(Object source, int count) {
+            super(source);
+            this.count = count;
+        }
+
+        @Override
+        public CountEvent coalesce(CountEvent previous) {
+            return new CountEvent(getSource(), previous.count + count);
+        }
+    }
+
     static class OtherEvent extends Event {
         OtherEvent(Object source) {
             super(source);
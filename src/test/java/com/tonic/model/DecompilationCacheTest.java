@@ -0,0 +1,138 @@
+package com.tonic.model;
+
+import com.tonic.parser.ClassFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DecompilationCacheTest {
+
+    private final DecompilationCache cache = DecompilationCache.getInstance();
+    private long savedBudget;
+
+    @BeforeEach
+    void setUp() {
+        savedBudget = cache.getBudgetBytes();
+        cache.clear();
+        cache.setSpillEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.clear();
+        cache.setSpillEnabled(false);
+        cache.setBudgetBytes(savedBudget);
+    }
+
+    private static ClassEntryModel classEntry(String name) {
+        ClassFile cf = mock(ClassFile.class);
+        when(cf.getClassName()).thenReturn(name);
+        when(cf.getMethods()).thenReturn(new ArrayList<>());
+        when(cf.getFields()).thenReturn(new ArrayList<>());
+        return new ClassEntryModel(cf);
+    }
+
+    private static String text(int chars) {
+        return String.join("", Collections.nCopies(chars, "x"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPastBudget() {
+        cache.setBudgetBytes(5_000);
+        ClassEntryModel a = classEntry("p/A");
+        ClassEntryModel b = classEntry("p/B");
+        ClassEntryModel c = classEntry("p/C");
+
+        a.setDecompilationCache(text(1_000));
+        b.setDecompilationCache(text(1_000));
+        assertNotNull(a.getDecompilationCache(), "reading A makes B the eldest");
+        c.setDecompilationCache(text(1_000));
+
+        assertNotNull(a.getDecompilationCache());
+        assertNull(b.getDecompilationCache());
+        assertNotNull(c.getDecompilationCache());
+        assertTrue(cache.getUsedBytes() <= 5_000);
+    }
+
+    @Test
+    void invalidateReleasesAccountedBytes() {
+        cache.setBudgetBytes(1_000_000);
+        ClassEntryModel a = classEntry("p/A");
+        a.setDecompilationCache(text(1_000));
+        assertTrue(cache.getUsedBytes() > 0);
+
+        a.invalidateDecompilationCache();
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(a.getDecompilationCache());
+    }
+
+    @Test
+    void spilledEntryIsRestoredWithoutSpans() throws InterruptedException {
+        cache.setSpillEnabled(true);
+        cache.setBudgetBytes(3_000);
+        ClassEntryModel a = classEntry("p/A");
+        ClassEntryModel b = classEntry("p/B");
+        NavigableMap<Integer, Integer> lines = new TreeMap<>();
+        lines.put(0, 3);
+        lines.put(4, 5);
+        Map<String, NavigableMap<Integer, Integer>> lineMaps = Collections.singletonMap("run()V", lines);
+
+        String source = "class A {}\n" + text(1_000);
+        a.setDecompilationCache(source, lineMaps, null, null, null);
+        b.setDecompilationCache(text(1_000));
+
+        DecompiledSource restored = null;
+        for (int i = 0; i < 100 && restored == null; i++) {
+            Thread.sleep(20);
+            restored = a.getDecompiled();
+        }
+        assertNotNull(restored);
+        assertTrue(restored.isRestored());
+        assertEquals(source, restored.getSource());
+        assertEquals(lines, restored.getLineMaps().get("run()V"));
+        assertNull(restored.getMethodSpans());
+    }
+
+    @Test
+    void clearDropsEntriesAndSpilledFiles() throws InterruptedException {
+        cache.setSpillEnabled(true);
+        cache.setBudgetBytes(3_000);
+        ClassEntryModel a = classEntry("p/A");
+        ClassEntryModel b = classEntry("p/B");
+        a.setDecompilationCache(text(1_000));
+        b.setDecompilationCache(text(1_000));
+        File spillDir = new File(System.getProperty("java.io.tmpdir"),
+                "jstudio-decompile-" + ProcessHandle.current().pid());
+        for (int i = 0; i < 100 && spillFiles(spillDir) == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(spillFiles(spillDir) > 0);
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(b.getDecompilationCache());
+        // A write still in flight during clear() deletes its own file when it lands
+        for (int i = 0; i < 100 && spillFiles(spillDir) > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, spillFiles(spillDir));
+        assertNull(a.getDecompilationCache());
+    }
+
+    private static int spillFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files != null ? files.length : 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.tonic.model;
+
+import com.tonic.parser.ClassFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdkClassLayerTest {
+
+    private final JdkClassLayer layer = JdkClassLayer.getInstance();
+
+    @Test
+    void jdkClassIsParsedOnceAndShared() {
+        ClassFile first = layer.get("java/lang/String");
+
+        assertNotNull(first);
+        assertSame(first, layer.get("java/lang/String"));
+    }
+
+    @Test
+    void classesOutsideJavaBaseAreFound() {
+        assertNotNull(layer.get("java/util/logging/Logger"), "java.logging module");
+    }
+
+    @Test
+    void missingNamesResolveToNull() {
+        assertNull(layer.get("java/lang/NoSuchClass"));
+        assertNull(layer.get("no/such/pkg/Foo"));
+        assertNull(layer.get("Unpackaged"));
+        assertNull(layer.get("[Ljava/lang/String;"));
+        assertNull(layer.get(null));
+    }
+
+    @Test
+    void copiesAreFreshInstances() {
+        ClassFile copy = layer.copy("java/lang/String");
+
+        assertNotNull(copy);
+        assertNotSame(layer.get("java/lang/String"), copy);
+        assertNotSame(copy, layer.copy("java/lang/String"));
+        assertNull(layer.copy("java/lang/NoSuchClass"));
+    }
+
+    @Test
+    void classNamesCoverEveryModule() {
+        assertTrue(layer.classNames().contains("java/lang/Object"));
+        assertTrue(layer.classNames().contains("java/util/logging/Logger"));
+        assertFalse(layer.classNames().contains("module-info"));
+    }
+
+    @Test
+    void classNamesAreUniqueAfterClassesWereRead() {
+        layer.get("java/lang/Object");
+
+        List<String> names = layer.classNames();
+        assertEquals(new HashSet<>(names).size(), names.size());
+    }
+
+    @Test
+    void concurrentFirstLookupsGetTheSameInstance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Callable<ClassFile> lookup = () -> layer.get("java/util/concurrent/ConcurrentSkipListMap");
+            Future<ClassFile> a = executor.submit(lookup);
+            Future<ClassFile> b = executor.submit(lookup);
+            assertNotNull(a.get());
+            assertSame(a.get(), b.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
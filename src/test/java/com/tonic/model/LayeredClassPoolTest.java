@@ -0,0 +1,118 @@
+package com.tonic.model;
+
+import com.tonic.parser.ClassFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayeredClassPoolTest {
+
+    private final JdkClassLayer jdk = JdkClassLayer.getInstance();
+
+    @Test
+    void jdkLookupsFallThroughToTheSharedLayer() {
+        LayeredClassPool a = new LayeredClassPool(jdk);
+        LayeredClassPool b = new LayeredClassPool(jdk);
+
+        assertNotNull(a.get("java/lang/Object"));
+        assertSame(a.get("java/lang/Object"), b.get("java/lang/Object"));
+        assertTrue(a.ownClasses().isEmpty(), "JDK classes are not listed as the project's own");
+    }
+
+    @Test
+    void projectCopyShadowsTheJdkClassForThatPoolOnly() throws IOException {
+        LayeredClassPool edited = new LayeredClassPool(jdk);
+        LayeredClassPool other = new LayeredClassPool(jdk);
+        ClassFile copy;
+        try (InputStream in = Object.class.getResourceAsStream("/java/lang/Integer.class")) {
+            assertNotNull(in);
+            copy = new ClassFile(in);
+        }
+
+        edited.put(copy);
+
+        assertSame(copy, edited.get("java/lang/Integer"));
+        assertSame(jdk.get("java/lang/Integer"), other.get("java/lang/Integer"));
+        assertNotSame(copy, other.get("java/lang/Integer"));
+        assertEquals(1, edited.ownClasses().size());
+        assertEquals(jdk.classNames().size(), edited.getClasses().size(), "the copy replaces the JDK entry");
+    }
+
+    @Test
+    void getClassesListsTheJdkLayer() {
+        LayeredClassPool pool = new LayeredClassPool(jdk);
+
+        assertFalse(jdk.classNames().isEmpty());
+        assertEquals(jdk.classNames().size(), pool.getClasses().size());
+        assertEquals(jdk.classNames().get(0), pool.getClasses().get(0).getClassName());
+    }
+
+    @Test
+    void getClassesHandsOutTheSharedInstancesWithoutCopying() {
+        LayeredClassPool pool = new LayeredClassPool(jdk);
+        String first = jdk.classNames().get(0);
+
+        assertSame(jdk.get(first), pool.getClasses().get(0));
+        assertSame(jdk.get(first), pool.get(first), "reading through the list makes no private copy");
+    }
+
+    @Test
+    void listedJdkNamesFollowLaterShadowing() throws IOException {
+        LayeredClassPool pool = new LayeredClassPool(jdk);
+        assertEquals(jdk.classNames().size(), pool.getClasses().size());
+        ClassFile copy;
+        try (InputStream in = Object.class.getResourceAsStream("/java/lang/Integer.class")) {
+            assertNotNull(in);
+            copy = new ClassFile(in);
+        }
+
+        pool.put(copy);
+
+        List<ClassFile> classes = pool.getClasses();
+        assertEquals(jdk.classNames().size(), classes.size());
+        assertSame(copy, classes.get(0));
+    }
+
+    @Test
+    void jdkClassesReachedForEditingArePrivateToThePool() {
+        LayeredClassPool edited = new LayeredClassPool(jdk);
+        LayeredClassPool other = new LayeredClassPool(jdk);
+
+        ClassFile mine = edited.editable("java/lang/Object");
+
+        assertNotNull(mine);
+        assertNotSame(jdk.get("java/lang/Object"), mine);
+        assertSame(mine, edited.get("java/lang/Object"));
+        assertSame(mine, edited.editable("java/lang/Object"));
+        assertSame(jdk.get("java/lang/Object"), other.get("java/lang/Object"));
+    }
+
+    @Test
+    void removingAJdkClassHidesItFromThatPoolOnly() {
+        LayeredClassPool pool = new LayeredClassPool(jdk);
+        LayeredClassPool other = new LayeredClassPool(jdk);
+        String first = jdk.classNames().get(0);
+
+        pool.getClasses().remove(0);
+
+        assertNull(pool.get(first));
+        assertEquals(jdk.classNames().size() - 1, pool.getClasses().size());
+        assertNotNull(other.get(first));
+    }
+
+    @Test
+    void clearingTheListUnhidesRemovedJdkClasses() {
+        LayeredClassPool pool = new LayeredClassPool(jdk);
+        String first = jdk.classNames().get(0);
+        pool.getClasses().remove(0);
+
+        pool.getClasses().clear();
+
+        assertNotNull(pool.get(first));
+        assertEquals(jdk.classNames().size(), pool.getClasses().size());
+    }
+}
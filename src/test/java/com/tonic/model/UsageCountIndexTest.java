@@ -0,0 +1,66 @@
+package com.tonic.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsageCountIndexTest {
+
+    private static UsageCountIndex.ClassCounts countsFrom(String... sources) {
+        UsageCountIndex.ClassCounts.Builder builder = UsageCountIndex.ClassCounts.builder();
+        for (String source : sources) {
+            builder.methodRef("run", "()V", source);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void builderAggregatesPerMember() {
+        UsageCountIndex.ClassCounts counts = UsageCountIndex.ClassCounts.builder()
+                .methodRef("run", "()V", "a/A")
+                .methodRef("run", "()V", "a/B")
+                .methodRef("run", "(I)V", "a/A")
+                .fieldRef("x", "I", "a/B")
+                .classRef("a/C")
+                .build();
+
+        assertEquals(2, counts.getMethodCount("run", "()V"));
+        assertEquals(1, counts.getMethodCount("run", "(I)V"));
+        assertEquals(0, counts.getMethodCount("stop", "()V"));
+        assertEquals(1, counts.getFieldCount("x", "I"));
+        assertEquals(1, counts.getClassCount());
+        assertEquals(3, counts.getSourceClasses().size());
+    }
+
+    @Test
+    void editDropsOnlyAffectedEntries() {
+        UsageCountIndex index = new UsageCountIndex();
+        long stamp = index.stamp();
+        index.put("t/Target", countsFrom("s/Edited"), stamp);
+        index.put("t/NewTarget", countsFrom("s/Other"), stamp);
+        index.put("t/Unrelated", countsFrom("s/Other"), stamp);
+        index.put("s/Edited", countsFrom("s/Other"), stamp);
+
+        index.invalidateEditedClass("s/Edited", List.of("t/NewTarget"));
+
+        assertNull(index.get("t/Target"), "previously referenced by the edited class");
+        assertNull(index.get("t/NewTarget"), "referenced by the edited class's new bytecode");
+        assertNull(index.get("s/Edited"), "the edited class itself");
+        assertNotNull(index.get("t/Unrelated"));
+    }
+
+    @Test
+    void putComputedBeforeInvalidationIsDiscarded() {
+        UsageCountIndex index = new UsageCountIndex();
+        long stamp = index.stamp();
+        index.invalidateEditedClass("s/Edited", Collections.emptyList());
+        index.put("t/Target", countsFrom("s/Other"), stamp);
+        assertNull(index.get("t/Target"));
+
+        index.put("t/Target", countsFrom("s/Other"), index.stamp());
+        assertNotNull(index.get("t/Target"));
+    }
+}
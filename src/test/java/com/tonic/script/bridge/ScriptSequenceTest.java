@@ -0,0 +1,71 @@
+package com.tonic.script.bridge;
+
+import com.tonic.script.engine.ScriptFunction;
+import com.tonic.script.engine.ScriptInterpreter;
+import com.tonic.script.engine.ScriptLexer;
+import com.tonic.script.engine.ScriptParser;
+import com.tonic.script.engine.ScriptValue;
+import com.tonic.service.ProjectScope;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptSequenceTest {
+
+    private final ScriptInterpreter interpreter = new ScriptInterpreter();
+    private final AtomicInteger wrapped = new AtomicInteger();
+
+    private ScriptValue numbers(int size) {
+        return new ScriptSequence(interpreter, () -> IntStream.range(0, size)
+            .mapToObj(i -> {
+                wrapped.incrementAndGet();
+                return ScriptValue.number(i);
+            })).toScriptValue();
+    }
+
+    private ScriptValue eval(String script, ScriptValue seq) {
+        interpreter.getGlobalContext().define("seq", seq);
+        return interpreter.execute(new ScriptParser(new ScriptLexer(script).tokenize()).parse());
+    }
+
+    @Test
+    void takeStopsWrappingOnceSatisfied() {
+        ScriptValue result = eval("seq.filter((n) => n % 3 == 0).map((n) => n * 10).take(4).toArray().join(\",\")",
+            numbers(1_000_000));
+        assertEquals("0,30,60,90", result.asString());
+        assertEquals(10, wrapped.get());
+    }
+
+    @Test
+    void terminalOperationsWalkAgain() {
+        assertEquals(5.0, eval("let s = seq.skip(5); s.toArray(); s.toArray().length", numbers(10)).asNumber());
+        assertEquals(20, wrapped.get());
+        assertEquals(7.0, eval("seq.filter((n) => n > 6).first()", numbers(10)).asNumber());
+        assertTrue(eval("seq.some((n) => n == 9)", numbers(10)).asBoolean());
+    }
+
+    @Test
+    void parallelCountMatchesSequential() {
+        assertEquals(5000.0, eval("seq.parallel().filter((n) => n % 2 == 1).count()", numbers(10_000)).asNumber());
+    }
+
+    @Test
+    void parallelCallbacksMayLog() {
+        eval("seq.parallel().forEach((n) => log(n))", numbers(10_000));
+        assertEquals(10_000, interpreter.getLogs().size());
+    }
+
+    @Test
+    void parallelCallbacksRunInTheCallersScope() {
+        try (ProjectScope scope = ProjectScope.open()) {
+            ScriptValue seq = numbers(10_000);
+            interpreter.getGlobalContext().define("inScope", ScriptValue.function(
+                ScriptFunction.native1("inScope", n -> ScriptValue.bool(ProjectScope.current() == scope))));
+            assertEquals(10_000, eval("seq.parallel().filter((n) => inScope(n)).count()", seq).asNumber());
+        }
+        assertNull(ProjectScope.current());
+    }
+}
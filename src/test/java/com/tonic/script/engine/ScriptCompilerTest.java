@@ -0,0 +1,92 @@
+package com.tonic.script.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCompilerTest {
+
+    private static ScriptInterpreter run(String script) {
+        ScriptInterpreter interpreter = new ScriptInterpreter();
+        interpreter.execute(new ScriptParser(new ScriptLexer(script).tokenize()).parse());
+        return interpreter;
+    }
+
+    private static List<String> logs(String script) {
+        return run(script).getLogs();
+    }
+
+    @Test
+    void loopsAndCompoundAssignment() {
+        assertEquals(List.of("45"), logs("let s = 0; for (let i = 0; i < 10; i++) { s += i; } log(s);"));
+    }
+
+    @Test
+    void returnLeavesNestedBlocks() {
+        assertEquals(List.of("3"),
+            logs("let f = () => { for (let i = 0; i < 5; i++) { if (i == 3) { return i; } } return -1; }; log(f());"));
+    }
+
+    @Test
+    void returnInBranchLeavesFunction() {
+        assertEquals(List.of("1", "2"),
+            logs("let f = (x) => { if (x) { return 1; } return 2; }; log(f(true)); log(f(false));"));
+    }
+
+    @Test
+    void returnStillRunsFinally() {
+        assertEquals(List.of("fin", "5"),
+            logs("let h = () => { try { return 5; } finally { log(\"fin\"); } return 6; }; log(h());"));
+    }
+
+    @Test
+    void closuresCaptureEachIteration() {
+        assertEquals(List.of("a0 c2"),
+            logs("let fns = \"a,b,c\".split(\",\").map((x, i) => () => x + i); log(fns[0](), fns[2]());"));
+    }
+
+    @Test
+    void readsBeforeDeclarationSeeOuterVariable() {
+        assertEquals(List.of("1", "2"),
+            logs("let outer = 1; let k = () => { log(outer); let outer = 2; log(outer); }; k();"));
+    }
+
+    @Test
+    void laterDeclarationsVisibleToEarlierClosures() {
+        assertEquals(List.of("true"), logs("let t = () => { let ev = (n) => n == 0 ? true : od(n - 1);"
+            + " let od = (n) => n == 0 ? false : ev(n - 1); return ev(10); }; log(t());"));
+    }
+
+    @Test
+    void undeclaredAssignmentDefinesInInnermostScope() {
+        assertEquals(List.of("5", "null"), logs("{ y = 5; log(y); } log(y);"));
+        assertEquals(List.of("2"), logs("let count = 0; let inc = () => { count++; }; inc(); inc(); log(count);"));
+    }
+
+    @Test
+    void constantsCannotBeReassigned() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+            () -> run("let f = () => { const c = 1; c = 2; }; f();"));
+        assertEquals("Cannot reassign constant: c", e.getMessage());
+    }
+
+    @Test
+    void builtinMembersCalledAndBound() {
+        assertEquals(List.of("el 2 true", "ABC"),
+            logs("let m = \"hello\"; log(m.substring(1, 3), m.indexOf(\"l\"), m.contains(\"ell\"));"
+                + " let up = \"abc\".toUpperCase; log(up());"));
+    }
+
+    @Test
+    void breakOutsideLoopFails() {
+        assertThrows(RuntimeException.class, () -> run("let f = () => { break; }; f();"));
+    }
+
+    @Test
+    void breakInFunctionCalledFromLoopFails() {
+        assertThrows(RuntimeException.class,
+            () -> run("let g = () => { break; }; for (let i = 0; i < 3; i++) { g(); }"));
+    }
+}
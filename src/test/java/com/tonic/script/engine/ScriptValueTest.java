@@ -0,0 +1,94 @@
+package com.tonic.script.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptValueTest {
+
+    private static ScriptValue n(double d) {
+        return ScriptValue.number(d);
+    }
+
+    private static boolean isNegativeZero(ScriptValue v) {
+        return Double.doubleToRawLongBits(v.asNumber()) == Double.doubleToRawLongBits(-0.0);
+    }
+
+    @Test
+    void negativeZeroIsNotZero() {
+        assertTrue(isNegativeZero(n(-0.0)));
+        assertFalse(isNegativeZero(n(0.0)));
+        assertNotEquals(n(0), n(-0.0));
+        assertFalse(n(-0.0).asBoolean());
+        assertEquals(0, ScriptValue.compare(n(-0.0), n(-0.0)));
+    }
+
+    @Test
+    void integerOperationsProduceNegativeZeroLikeDoubles() {
+        assertTrue(isNegativeZero(ScriptValue.multiply(ScriptValue.number(0), ScriptValue.number(-5))));
+        assertTrue(isNegativeZero(ScriptValue.modulo(ScriptValue.number(-4), ScriptValue.number(2))));
+        assertTrue(isNegativeZero(ScriptValue.negate(ScriptValue.number(0))));
+        assertFalse(isNegativeZero(ScriptValue.multiply(ScriptValue.number(0), ScriptValue.number(5))));
+        assertFalse(isNegativeZero(ScriptValue.subtract(ScriptValue.number(3), ScriptValue.number(3))));
+    }
+
+    @Test
+    void intOverflowPromotesToDouble() {
+        ScriptValue max = ScriptValue.number(Integer.MAX_VALUE);
+        ScriptValue min = ScriptValue.number(Integer.MIN_VALUE);
+
+        assertEquals(2147483648.0, ScriptValue.add(max, ScriptValue.number(1)).asNumber());
+        assertEquals(2147483648.0, ScriptValue.increment(max, 1).asNumber());
+        assertEquals(-2147483649.0, ScriptValue.subtract(min, ScriptValue.number(1)).asNumber());
+        assertEquals(-2147483649.0, ScriptValue.increment(min, -1).asNumber());
+        assertEquals(2147483648.0, ScriptValue.negate(min).asNumber());
+        assertEquals(4294967296.0, ScriptValue.multiply(ScriptValue.number(65536), ScriptValue.number(65536)).asNumber());
+        assertEquals("2147483648", ScriptValue.add(max, ScriptValue.number(1)).asString());
+    }
+
+    @Test
+    void intAndEqualDoubleAreEqualWithEqualHashes() {
+        assertEquals(ScriptValue.number(1), n(1.0));
+        assertEquals(ScriptValue.number(1).hashCode(), n(1.0).hashCode());
+        assertEquals(ScriptValue.number(100_000), n(100_000.0));
+        assertEquals(ScriptValue.number(100_000).hashCode(), n(100_000.0).hashCode());
+
+        ScriptValue promoted = ScriptValue.add(ScriptValue.number(Integer.MAX_VALUE), ScriptValue.number(1));
+        assertEquals(n(2147483648.0), promoted);
+        assertEquals(n(2147483648.0).hashCode(), promoted.hashCode());
+
+        assertEquals(ScriptValue.number(3), ScriptValue.divide(ScriptValue.number(6), ScriptValue.number(2)));
+        assertNotEquals(ScriptValue.number(1), n(1.5));
+    }
+
+    @Test
+    void smallIntCacheEdges() {
+        assertSame(ScriptValue.number(-128), n(-128.0));
+        assertSame(ScriptValue.number(1023), n(1023.0));
+        assertNotSame(ScriptValue.number(-129), ScriptValue.number(-129));
+        assertNotSame(ScriptValue.number(1024), ScriptValue.number(1024));
+
+        for (int i : new int[]{-129, -128, 1023, 1024}) {
+            assertEquals(i, ScriptValue.number(i).asNumber());
+            assertEquals(ScriptValue.number(i), n(i));
+            assertEquals(ScriptValue.number(i).hashCode(), n(i).hashCode());
+            assertEquals(String.valueOf(i), ScriptValue.number(i).asString());
+        }
+        assertEquals(1024, ScriptValue.increment(ScriptValue.number(1023), 1).asNumber());
+        assertEquals(-129, ScriptValue.increment(ScriptValue.number(-128), -1).asNumber());
+    }
+
+    @Test
+    void nanEqualsItselfAndStaysTruthy() {
+        ScriptValue nan = n(Double.NaN);
+        ScriptValue zeroByZero = ScriptValue.divide(ScriptValue.number(0), ScriptValue.number(0));
+
+        assertTrue(Double.isNaN(zeroByZero.asNumber()));
+        assertEquals(nan, zeroByZero);
+        assertEquals(nan.hashCode(), zeroByZero.hashCode());
+        assertTrue(nan.asBoolean(), "a number is truthy when != 0, as before tagging");
+        assertTrue(Double.isNaN(ScriptValue.modulo(ScriptValue.number(5), ScriptValue.number(0)).asNumber()));
+        assertTrue(Double.isNaN(ScriptValue.add(nan, ScriptValue.number(1)).asNumber()));
+        assertNotEquals(nan, ScriptValue.number(0));
+    }
+}
@@ -0,0 +1,155 @@
+package com.tonic.script.pipeline;
+
+import com.tonic.model.ProjectModel;
+import com.tonic.script.engine.ScriptFunction;
+import com.tonic.script.engine.ScriptInterpreter;
+import com.tonic.script.engine.ScriptLexer;
+import com.tonic.script.engine.ScriptParser;
+import com.tonic.script.engine.ScriptValue;
+import com.tonic.service.ProjectScope;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptPipelineTest {
+
+    private final ProjectModel project = new ProjectModel();
+    private final List<String> calls = new ArrayList<>();
+
+    private ScriptValue run(String script) {
+        ScriptInterpreter interpreter = new ScriptInterpreter();
+        interpreter.getGlobalContext().define("pipeline",
+            new ScriptPipeline(interpreter, project).createPipelineObject());
+        interpreter.getGlobalContext().define("called", ScriptValue.function(ScriptFunction.native1("called", name -> {
+            synchronized (calls) {
+                calls.add(name.asString());
+            }
+            return ScriptValue.NULL;
+        })));
+        return interpreter.execute(new ScriptParser(new ScriptLexer(script).tokenize()).parse());
+    }
+
+    @Test
+    void stagesWithoutDependenciesChainInOrder() {
+        ScriptValue result = run("pipeline.stage(\"a\", (x) => 2); pipeline.stage(\"b\", (x) => x * 10);"
+            + " pipeline.stage(\"c\", (x) => x + 1); pipeline.run()");
+        assertEquals(21.0, result.asNumber());
+    }
+
+    @Test
+    void stagesReadNamedDependencies() {
+        ScriptValue result = run("pipeline.stage(\"a\", (x) => 2, \"\"); pipeline.stage(\"b\", (x) => 3, \"\");"
+            + " pipeline.stage(\"sum\", (inputs) => inputs.a * inputs.b, \"a, b\"); pipeline.run()");
+        assertEquals(6.0, result.asNumber());
+    }
+
+    @Test
+    void independentStagesRunConcurrently() {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ScriptPipeline pipeline = new ScriptPipeline(new ScriptInterpreter(), project);
+        ScriptValue obj = pipeline.createPipelineObject();
+        obj.getProperty("setParallelism").asFunction().call(null, List.of(ScriptValue.number(2)));
+        ScriptFunction stage = obj.getProperty("stage").asFunction();
+        for (String name : List.of("left", "right")) {
+            stage.call(null, List.of(ScriptValue.string(name), ScriptValue.function(ScriptFunction.native0(name, () -> {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException("stages did not overlap");
+                }
+                return ScriptValue.TRUE;
+            })), ScriptValue.string("")));
+        }
+        obj.getProperty("run").asFunction().call(null, List.of());
+        for (PipelineStage s : pipeline.getStages()) {
+            assertEquals(PipelineStage.StageStatus.COMPLETED, s.getStatus(), s.getName() + ": " + s.getError());
+        }
+    }
+
+    @Test
+    void memoizedStagesRerunOnlyFromTheEditedStage() {
+        String first = "(x) => { called(\"first\"); return 5; }";
+        String script = "pipeline.setMemoize(true); pipeline.stage(\"first\", " + first + ");"
+            + " pipeline.stage(\"second\", %s); pipeline.run()";
+
+        assertEquals(6.0, run(String.format(script, "(x) => { called(\"second\"); return x + 1; }")).asNumber());
+        assertEquals(6.0, run(String.format(script, "(x) => { called(\"second\"); return x + 1; }")).asNumber());
+        assertEquals(List.of("first", "second"), calls);
+
+        assertEquals(7.0, run(String.format(script, "(x) => { called(\"second\"); return x + 2; }")).asNumber());
+        assertEquals(List.of("first", "second", "second"), calls);
+
+        project.markDirty();
+        run(String.format(script, "(x) => { called(\"second\"); return x + 2; }"));
+        assertEquals(List.of("first", "second", "second", "first", "second"), calls);
+    }
+
+    @Test
+    void stagesReadingTheContextAreNotMemoized() {
+        String script = "pipeline.setMemoize(true); pipeline.getContext().factor = %d;"
+            + " pipeline.stage(\"scaled\", (x, ctx) => { called(\"scaled\"); return ctx.factor * 2; }); pipeline.run()";
+
+        assertEquals(6.0, run(String.format(script, 3)).asNumber());
+        assertEquals(10.0, run(String.format(script, 5)).asNumber());
+        assertEquals(List.of("scaled", "scaled"), calls);
+    }
+
+    @Test
+    void downstreamMutationDoesNotReachTheMemoizedResult() {
+        String script = "pipeline.setMemoize(true);"
+            + " pipeline.stage(\"list\", (x) => { called(\"list\");"
+            + " return \"a\".split(\",\").map((s) => \"1,2\".split(\",\")); });"
+            + " pipeline.stage(\"grow\", (x, ctx) => { x.push(0); x[0].push(3); return x.length * 10 + x[0].length; });"
+            + " pipeline.run()";
+
+        assertEquals(23.0, run(script).asNumber());
+        assertEquals(23.0, run(script).asNumber());
+        assertEquals(23.0, run(script).asNumber());
+        assertEquals(List.of("list"), calls, "the first stage ran once and was reused after");
+    }
+
+    @Test
+    void stagesRunOneAtATimeByDefault() {
+        ScriptValue result = run("let active = 0; let overlapped = false;"
+            + " let work = (x) => { active++; if (active > 1) { overlapped = true; }"
+            + " for (let i = 0; i < 20000; i++) {} active--; return 1; };"
+            + " pipeline.stage(\"a\", work, \"\"); pipeline.stage(\"b\", work, \"\");"
+            + " pipeline.stage(\"c\", work, \"\"); pipeline.run(); overlapped");
+        assertFalse(result.asBoolean());
+    }
+
+    @Test
+    void failureSkipsRemainingStages() {
+        ScriptValue result = run("pipeline.stage(\"a\", (x) => 1); pipeline.stage(\"b\", (x) => { throw \"boom\"; });"
+            + " pipeline.stage(\"c\", (x) => 99); pipeline.run()");
+        assertEquals(1.0, result.asNumber());
+    }
+
+    @Test
+    void stagesRunInTheCallersProjectScope() {
+        try (ProjectScope scope = ProjectScope.open()) {
+            ScriptPipeline pipeline = new ScriptPipeline(new ScriptInterpreter(), project);
+            ScriptValue obj = pipeline.createPipelineObject();
+            obj.getProperty("stage").asFunction().call(null, List.of(ScriptValue.string("scoped"),
+                ScriptValue.function(ScriptFunction.native0("scoped",
+                    () -> ScriptValue.bool(ProjectScope.current() == scope)))));
+
+            assertTrue(obj.getProperty("run").asFunction().call(null, List.of()).asBoolean());
+        }
+    }
+
+    @Test
+    void stageCacheIsDroppedWithTheProjectsClasses() {
+        StageCache cache = StageCache.forProject(project);
+        assertSame(cache, StageCache.forProject(project));
+
+        project.clear();
+
+        assertNotSame(cache, StageCache.forProject(project));
+    }
+}
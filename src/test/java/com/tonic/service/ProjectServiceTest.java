@@ -0,0 +1,95 @@
+package com.tonic.service;
+
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.DecompilationCache;
+import com.tonic.model.ProjectModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectServiceTest {
+
+    private static final String CLASS_NAME = "com/tonic/service/ProjectServiceTest";
+
+    private final ProjectService service = ProjectService.getInstance();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        service.closeProject();
+    }
+
+    @Test
+    void loadJarThenCloseProject() throws IOException {
+        ProjectModel project = service.loadJar(jarOfThisClass(), null);
+
+        assertSame(project, service.getCurrentProject());
+        assertTrue(service.hasProject());
+        assertNotNull(project.getClass(CLASS_NAME));
+
+        service.closeProject();
+
+        assertNull(service.getCurrentProject());
+        assertFalse(service.hasProject());
+    }
+
+    @Test
+    void createProjectBecomesCurrent() {
+        ProjectModel project = service.createProject("empty");
+
+        assertSame(project, service.getCurrentProject());
+        assertEquals("empty", project.getProjectName());
+    }
+
+    @Test
+    void loadingAnotherProjectDropsDecompilations() throws IOException {
+        ClassEntryModel entry = service.loadJar(jarOfThisClass(), null).getClass(CLASS_NAME);
+        entry.setDecompilationCache("class ProjectServiceTest {}");
+        assertTrue(DecompilationCache.getInstance().size() > 0);
+
+        service.loadJar(jarOfThisClass(), null);
+
+        assertEquals(0, DecompilationCache.getInstance().size());
+        assertNull(entry.getDecompilationCache());
+    }
+
+    @Test
+    void scopedLoadLeavesApplicationProjectAlone() throws IOException {
+        ProjectModel app = service.createProject("app");
+
+        try (ProjectScope scope = ProjectScope.open()) {
+            ProjectModel scoped = service.loadJar(jarOfThisClass(), null);
+            assertSame(scoped, scope.getProject());
+            assertSame(scoped, service.getCurrentProject());
+            service.closeProject();
+            assertNull(service.getCurrentProject());
+        }
+
+        assertSame(app, service.getCurrentProject());
+    }
+
+    /** A jar holding just this test class. */
+    private File jarOfThisClass() throws IOException {
+        File jar = tempDir.resolve("single.jar").toFile();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+             InputStream in = ProjectServiceTest.class.getResourceAsStream("ProjectServiceTest.class")) {
+            assertNotNull(in);
+            out.putNextEntry(new JarEntry(CLASS_NAME + ".class"));
+            in.transferTo(out);
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,54 @@
+package com.tonic.service.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodFingerprintTest {
+
+    // iload_0 iload_1 iadd bipush 10 imul invokestatic #2 ireturn
+    private static final byte[] BODY = {0x1A, 0x1B, 0x60, 0x10, 0x0A, 0x68, (byte) 0xB8, 0x00, 0x02, (byte) 0xAC};
+    // Same instructions, different constant-pool index
+    private static final byte[] RENAMED = {0x1A, 0x1B, 0x60, 0x10, 0x0A, 0x68, (byte) 0xB8, 0x00, 0x07, (byte) 0xAC};
+    // lconst_1 lload_0 ladd l2i iconst_0 ifeq +4 athrow ... nothing alike
+    private static final byte[] OTHER = {0x0A, 0x1E, 0x61, (byte) 0x88, 0x03, (byte) 0x99, 0x00, 0x04,
+            (byte) 0xBF, 0x00, (byte) 0xB1};
+
+    @Test
+    void decodesInstructionsAndCounts() {
+        MethodFingerprint fp = MethodFingerprint.of("a/A", "f", "(II)I", BODY);
+        assertEquals(7, fp.getInstructionCount());
+        assertEquals(1, fp.getCallCount());
+        assertEquals(0, fp.getBranchCount());
+
+        MethodFingerprint other = MethodFingerprint.of("a/A", "g", "(J)V", OTHER);
+        assertEquals(1, other.getBranchCount());
+    }
+
+    @Test
+    void operandOnlyChangesKeepOpcodeHash() {
+        MethodFingerprint a = MethodFingerprint.of("a/A", "f", "(II)I", BODY);
+        MethodFingerprint b = MethodFingerprint.of("b/B", "x", "(II)I", RENAMED);
+
+        assertNotEquals(a.getCodeHash(), b.getCodeHash());
+        assertEquals(a.getOpcodeHash(), b.getOpcodeHash());
+        assertEquals(1.0, a.estimateOpcodeSimilarity(b));
+        assertEquals(1.0, a.structuralSimilarity(b));
+    }
+
+    @Test
+    void unrelatedBodiesEstimateLow() {
+        MethodFingerprint a = MethodFingerprint.of("a/A", "f", "(II)I", BODY);
+        MethodFingerprint c = MethodFingerprint.of("a/A", "g", "(J)V", OTHER);
+
+        assertTrue(a.estimateOpcodeSimilarity(c) < 0.5);
+    }
+
+    @Test
+    void lowerThresholdsUseWiderBands() {
+        assertTrue(MethodSimilarityIndex.rowsFor(0.5) <= MethodSimilarityIndex.rowsFor(0.9));
+        int rows = MethodSimilarityIndex.rowsFor(0.8);
+        double midpoint = Math.pow(1.0 / (MethodFingerprint.SIGNATURE_LENGTH / rows), 1.0 / rows);
+        assertTrue(midpoint <= 0.8);
+    }
+}
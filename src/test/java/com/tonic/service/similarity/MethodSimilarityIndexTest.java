@@ -0,0 +1,136 @@
+package com.tonic.service.similarity;
+
+import com.tonic.analysis.similarity.SimilarityMetric;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodSimilarityIndexTest {
+
+    // iload_0 iload_1 iadd iload_0 imul ireturn
+    private static final byte[] ARITHMETIC = {0x1A, 0x1B, 0x60, 0x1A, 0x68, (byte) 0xAC};
+    // aload_0 aconst_null pop pop lconst_0 lreturn: same counts, no opcode in common
+    private static final byte[] SHUFFLE = {0x2A, 0x01, 0x57, 0x57, 0x09, (byte) 0xAD};
+    /** One-byte opcodes without branches or calls, so random bodies differ only in length and opcode mix. */
+    private static final byte[] PLAIN = {0x1A, 0x1B, 0x60, 0x68, 0x2A, 0x01, 0x57, 0x09, 0x0A, 0x61, 0x03, 0x59};
+
+    @Test
+    void structuralQueryFindsSameShapeWithDifferentOpcodes() {
+        MethodFingerprint a = MethodFingerprint.of("a/A", "f", "(II)I", ARITHMETIC);
+        MethodFingerprint b = MethodFingerprint.of("b/B", "g", "()J", SHUFFLE);
+        assertTrue(a.estimateOpcodeSimilarity(b) < 0.5, "no MinHash band would pair these");
+
+        MethodSimilarityIndex index = new MethodSimilarityIndex();
+        index.add(a);
+        index.add(b);
+        List<SimilarPair> pairs = index.findSimilar(SimilarityMetric.STRUCTURAL, 0.9, null);
+
+        assertEquals(1, pairs.size());
+        assertEquals(1.0, pairs.get(0).getScore());
+    }
+
+    @Test
+    void structuralQueryMatchesExhaustiveScan() {
+        Random random = new Random(34);
+        MethodSimilarityIndex index = new MethodSimilarityIndex();
+        List<MethodFingerprint> all = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            byte[] code = new byte[5 + random.nextInt(40)];
+            for (int k = 0; k < code.length; k++) {
+                code[k] = PLAIN[random.nextInt(PLAIN.length)];
+            }
+            MethodFingerprint fp = MethodFingerprint.of("p/C" + i, "m", "()V", code);
+            all.add(fp);
+            index.add(fp);
+        }
+
+        for (double threshold : new double[]{0.5, 0.8, 0.95}) {
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < all.size(); i++) {
+                for (int j = i + 1; j < all.size(); j++) {
+                    int small = Math.min(all.get(i).getInstructionCount(), all.get(j).getInstructionCount());
+                    int large = Math.max(all.get(i).getInstructionCount(), all.get(j).getInstructionCount());
+                    if (small < MethodSimilarityIndex.MIN_SIZE_RATIO * large) {
+                        continue;   // outside the size window, whatever the threshold
+                    }
+                    if (all.get(i).structuralSimilarity(all.get(j)) >= threshold) {
+                        expected.add(pairKey(all.get(i), all.get(j)));
+                    }
+                }
+            }
+            Set<String> found = new HashSet<>();
+            for (SimilarPair p : index.findSimilar(SimilarityMetric.STRUCTURAL, threshold, null)) {
+                found.add(pairKey(p.getMethod1(), p.getMethod2()));
+            }
+            assertEquals(expected, found, "threshold " + threshold);
+        }
+    }
+
+    @Test
+    void lowStructuralThresholdStaysWithinTheSizeWindow() {
+        List<MethodFingerprint> methods = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            byte[] code = new byte[(int) (5 * Math.pow(1.02, i))];
+            for (int k = 0; k < code.length; k++) {
+                code[k] = PLAIN[k % PLAIN.length];
+            }
+            methods.add(MethodFingerprint.of("p/C" + i, "m", "()V", code));
+        }
+        for (MethodFingerprint fp : methods) {
+            assertEquals(0, fp.getBranchCount() + fp.getCallCount(), "every pair scores at least 2/3");
+        }
+
+        Set<Long> candidates = MethodSimilarityIndex.structuralCandidates(methods, 0.5,
+                ConcurrentHashMap.newKeySet());
+
+        assertTrue(candidates.size() < 400 * 50,
+                candidates.size() + " candidates: sizes 2% apart leave about 46 neighbours within 2.5x");
+        for (long pair : candidates) {
+            MethodFingerprint a = methods.get((int) (pair >>> 32));
+            MethodFingerprint b = methods.get((int) pair);
+            int small = Math.min(a.getInstructionCount(), b.getInstructionCount());
+            int large = Math.max(a.getInstructionCount(), b.getInstructionCount());
+            assertTrue(small >= MethodSimilarityIndex.MIN_SIZE_RATIO * large);
+        }
+    }
+
+    @Test
+    void oversizedClustersAreReportedAsTruncated() {
+        MethodSimilarityIndex index = new MethodSimilarityIndex();
+        for (int i = 0; i < 300; i++) {
+            index.add(MethodFingerprint.of("p/C" + i, "m", "(II)I", ARITHMETIC));
+        }
+        index.add(MethodFingerprint.of("q/D", "m", "()J", SHUFFLE));
+
+        List<SimilarPair> pairs = index.findSimilar(SimilarityMetric.EXACT_BYTECODE, 1.0, null);
+
+        assertFalse(pairs.isEmpty());
+        assertTrue(pairs.size() < 300 * 299 / 2, "an identical cluster is chained, not paired exhaustively");
+        assertEquals(300, index.getTruncatedMethodCount());
+
+        index.findSimilar(SimilarityMetric.OPCODE_SEQUENCE, 0.9, null);
+        assertEquals(300, index.getTruncatedMethodCount(), "identical signatures cannot be split by another band");
+    }
+
+    @Test
+    void smallClustersArePairedExhaustively() {
+        MethodSimilarityIndex index = new MethodSimilarityIndex();
+        for (int i = 0; i < 20; i++) {
+            index.add(MethodFingerprint.of("p/C" + i, "m", "(II)I", ARITHMETIC));
+        }
+
+        assertEquals(20 * 19 / 2, index.findSimilar(SimilarityMetric.OPCODE_SEQUENCE, 0.9, null).size());
+        assertEquals(0, index.getTruncatedMethodCount());
+    }
+
+    private static String pairKey(MethodFingerprint a, MethodFingerprint b) {
+        return a.getKey().compareTo(b.getKey()) < 0 ? a.getKey() + "|" + b.getKey() : b.getKey() + "|" + a.getKey();
+    }
+}
@@ -0,0 +1,116 @@
+package com.tonic.simulation;
+
+import com.tonic.model.MethodEntryModel;
+import com.tonic.model.ProjectModel;
+import com.tonic.service.ProjectService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationServiceTest {
+
+    private static final String CLASS_NAME = "com/tonic/simulation/SimulationServiceTest";
+
+    private final SimulationService service = SimulationService.getInstance();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        ProjectService.getInstance().closeProject();
+    }
+
+    static int twice(int x) {
+        return x * 2;
+    }
+
+    @Test
+    void repeatedAnalysisIsServedFromCache() throws IOException {
+        MethodEntryModel method = twiceIn(load());
+
+        SimulationAnalysisResult first = service.runAnalysis(method);
+
+        assertNotNull(first);
+        assertSame(first, service.runAnalysis(method));
+    }
+
+    @Test
+    void classEditMakesResultsStale() throws IOException {
+        ProjectModel project = load();
+        MethodEntryModel method = twiceIn(project);
+        SimulationAnalysisResult first = service.runAnalysis(method);
+
+        project.getClass(CLASS_NAME).invalidateDecompilationCache();
+
+        assertNotSame(first, service.runAnalysis(method));
+    }
+
+    @Test
+    void projectEditMakesResultsStale() throws IOException {
+        ProjectModel project = load();
+        MethodEntryModel method = twiceIn(project);
+        SimulationAnalysisResult first = service.runAnalysis(method);
+
+        // A callee or a constant of this method may live in another class
+        project.markDirty();
+
+        assertNotSame(first, service.runAnalysis(method));
+    }
+
+    @Test
+    void editsInAnotherProjectLeaveResultsCached() throws IOException {
+        ProjectModel project = load();
+        MethodEntryModel method = twiceIn(project);
+        SimulationAnalysisResult first = service.runAnalysis(method);
+
+        new ProjectModel().markDirty();
+
+        assertSame(first, service.runAnalysis(method));
+    }
+
+    @Test
+    void reloadingTheProjectDropsResults() throws IOException {
+        SimulationAnalysisResult first = service.runAnalysis(twiceIn(load()));
+
+        ProjectService.getInstance().closeProject();
+        SimulationAnalysisResult reloaded = service.runAnalysis(twiceIn(load()));
+
+        assertNotNull(reloaded);
+        assertNotSame(first, reloaded);
+    }
+
+    private ProjectModel load() throws IOException {
+        return ProjectService.getInstance().loadJar(jarOfThisClass(), null);
+    }
+
+    private static MethodEntryModel twiceIn(ProjectModel project) {
+        MethodEntryModel method = project.getClass(CLASS_NAME).getMethod("twice", "(I)I");
+        assertNotNull(method);
+        return method;
+    }
+
+    /** A jar holding just this test class. */
+    private File jarOfThisClass() throws IOException {
+        File jar = Files.createTempFile(tempDir, "single", ".jar").toFile();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+             InputStream in = SimulationServiceTest.class.getResourceAsStream("SimulationServiceTest.class")) {
+            assertNotNull(in);
+            out.putNextEntry(new JarEntry(CLASS_NAME + ".class"));
+            in.transferTo(out);
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,56 @@
+package com.tonic.ui.editor.hex;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HexSearchTest {
+
+    private static final ByteBuffer DATA = ByteBuffer.wrap(new byte[]{
+            (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0x00, 0x00, 0x00, 0x37,
+            'm', 'a', 'i', 'n', 0x00, (byte) 0xCA, (byte) 0xFE, 0x01
+    });
+
+    @Test
+    void parsesSpacedAndCompactHex() {
+        assertEquals(4, HexSearch.parse("CA FE BA BE").length());
+        assertEquals(4, HexSearch.parse("cafebabe").length());
+        assertEquals(2, HexSearch.parse("0xCAFE").length());
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertNull(HexSearch.parse(""));
+        assertNull(HexSearch.parse("CAF"));
+        assertNull(HexSearch.parse("ZZ"));
+        assertNull(HexSearch.parse("\"\""));
+    }
+
+    @Test
+    void findsHexPatternFromOffset() {
+        HexSearch.Pattern magic = HexSearch.parse("CA FE");
+        assertEquals(0, HexSearch.indexOf(DATA, magic, 0));
+        assertEquals(13, HexSearch.indexOf(DATA, magic, 1));
+        assertEquals(-1, HexSearch.indexOf(DATA, magic, 14));
+    }
+
+    @Test
+    void wildcardMatchesAnyByte() {
+        assertEquals(0, HexSearch.indexOf(DATA, HexSearch.parse("CA ?? BA"), 0));
+        assertEquals(13, HexSearch.indexOf(DATA, HexSearch.parse("CA FE ??"), 1));
+    }
+
+    @Test
+    void quotedTextMatchesUtf8Bytes() {
+        assertEquals(8, HexSearch.indexOf(DATA, HexSearch.parse("\"main\""), 0));
+    }
+
+    @Test
+    void lastIndexOfSearchesBackwards() {
+        HexSearch.Pattern magic = HexSearch.parse("CAFE");
+        assertEquals(13, HexSearch.lastIndexOf(DATA, magic, DATA.limit()));
+        assertEquals(0, HexSearch.lastIndexOf(DATA, magic, 12));
+    }
+}
@@ -0,0 +1,62 @@
+package com.tonic.ui.live.eval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnippetCompilerTest {
+
+    /** An empty project classpath whose stamp the test moves by hand. */
+    private static final class FakeClasspath implements SnippetCompiler.Classpath {
+        long stamp;
+
+        @Override
+        public Set<String> classesInPackage(String packageName) {
+            return Set.of();
+        }
+
+        @Override
+        public Set<String> allClassNames() {
+            return Set.of();
+        }
+
+        @Override
+        public byte[] classBytes(String binaryName) {
+            return null;
+        }
+
+        @Override
+        public long stamp() {
+            return stamp;
+        }
+    }
+
+    @Test
+    void repeatedSnippetReusesResultUntilStampMoves() {
+        FakeClasspath classpath = new FakeClasspath();
+        try (SnippetCompiler compiler = new SnippetCompiler(classpath, 11)) {
+            SnippetCompiler.Result first = compiler.compile("return 1 + 1;");
+            assertTrue(first.isSuccess(), String.join("\n", first.getMessages()));
+            assertSame(first, compiler.compile("return 1 + 1;"));
+
+            classpath.stamp++;
+            SnippetCompiler.Result recompiled = compiler.compile("return 1 + 1;");
+            assertTrue(recompiled.isSuccess());
+            assertNotSame(first, recompiled);
+        }
+    }
+
+    @Test
+    void compilerStaysUsableAfterErrorsAndClose() {
+        SnippetCompiler compiler = new SnippetCompiler(new FakeClasspath(), 11);
+        assertFalse(compiler.compile("return undefinedName;").isSuccess());
+        assertTrue(compiler.compile("return \"ok\";").isSuccess());
+        compiler.close();
+        assertTrue(compiler.compile("return 2;").isSuccess());
+    }
+}
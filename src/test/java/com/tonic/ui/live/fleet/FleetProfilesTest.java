@@ -0,0 +1,79 @@
+package com.tonic.ui.live.fleet;
+
+import com.tonic.ui.live.recorder.jfr.CallTreeNode;
+import com.tonic.ui.live.recorder.jfr.FrameKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FleetProfilesTest {
+
+    private static final FrameKey MAIN = new FrameKey("app/Main", "main", -1);
+    private static final FrameKey WORK = new FrameKey("app/Worker", "work", 10);
+    private static final FrameKey WORK_OTHER_LINE = new FrameKey("app/Worker", "work", 20);
+    private static final FrameKey IDLE = new FrameKey("app/Worker", "idle", -1);
+
+    @Test
+    void mergeSumsMatchingCallPaths() {
+        CallTreeNode a = new CallTreeNode(null);
+        add(a, 5, MAIN, WORK);
+        add(a, 1, MAIN);
+        CallTreeNode b = new CallTreeNode(null);
+        add(b, 3, MAIN, WORK);
+        add(b, 2, MAIN, IDLE);
+
+        CallTreeNode merged = FleetProfiles.merge(Arrays.asList(a, b));
+
+        assertEquals(11, merged.getTotalWeight());
+        CallTreeNode main = merged.child(MAIN);
+        assertEquals(11, main.getTotalWeight());
+        assertEquals(1, main.getSelfWeight());
+        assertEquals(8, main.child(WORK).getTotalWeight());
+        assertEquals(2, main.child(IDLE).getSelfWeight());
+    }
+
+    @Test
+    void recursionCountsInclusiveSamplesOnce() {
+        CallTreeNode tree = new CallTreeNode(null);
+        add(tree, 4, MAIN, WORK, WORK_OTHER_LINE, WORK);
+        add(tree, 2, MAIN, WORK);
+
+        FleetProfiles.Weights work = FleetProfiles.methodWeights(tree).get("app/Worker.work");
+
+        assertEquals(6, work.self);
+        assertEquals(6, work.inclusive);
+        assertEquals(6, FleetProfiles.methodWeights(tree).get("app/Main.main").inclusive);
+    }
+
+    @Test
+    void breakdownHasARowPerMemberEvenWithoutSamples() {
+        CallTreeNode a = new CallTreeNode(null);
+        add(a, 7, MAIN, WORK);
+        CallTreeNode b = new CallTreeNode(null);
+        add(b, 3, MAIN, IDLE);
+        Map<String, Map<String, FleetProfiles.Weights>> byMember = new LinkedHashMap<>();
+        byMember.put("100", FleetProfiles.methodWeights(a));
+        byMember.put("200", FleetProfiles.methodWeights(b));
+
+        Map<String, FleetProfiles.Weights> rows = FleetProfiles.breakdown(WORK_OTHER_LINE, byMember);
+
+        assertEquals(Arrays.asList("100", "200"), Arrays.asList(rows.keySet().toArray()));
+        assertEquals(7, rows.get("100").inclusive);
+        assertEquals(0, rows.get("200").inclusive);
+    }
+
+    /** Adds {@code samples} ending in the last frame of {@code path}. */
+    private static void add(CallTreeNode root, long samples, FrameKey... path) {
+        CallTreeNode node = root;
+        root.addTotal(samples);
+        for (FrameKey frame : path) {
+            node = node.child(frame);
+            node.addTotal(samples);
+        }
+        node.addSelf(samples);
+    }
+}
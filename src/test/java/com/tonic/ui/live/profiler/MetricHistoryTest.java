@@ -0,0 +1,52 @@
+package com.tonic.ui.live.profiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MetricHistoryTest {
+
+    @Test
+    void bucketedTierAveragesEachBucketAndKeepsTheOpenOneCurrent() {
+        MetricHistory.Tier minutes = new MetricHistory.Tier(2, MetricHistory.MINUTE_MS);
+        for (long t = 0; t < 3 * MetricHistory.MINUTE_MS; t += 250) {
+            minutes.add(t, t < MetricHistory.MINUTE_MS ? 10 : 20);
+        }
+        minutes.add(3 * MetricHistory.MINUTE_MS + 5, 40);
+
+        // capacity 2: the first minute has been overwritten, the open fourth one is reported last
+        assertEquals(3, minutes.size());
+        assertEquals(MetricHistory.MINUTE_MS, minutes.time(0));
+        assertEquals(20, minutes.value(0), 1e-9);
+        assertEquals(20, minutes.value(1), 1e-9);
+        assertEquals(3 * MetricHistory.MINUTE_MS, minutes.time(2));
+        assertEquals(40, minutes.value(2), 1e-9);
+    }
+
+    @Test
+    void rawTierWhileItStillHoldsEverything() {
+        MetricHistory history = new MetricHistory();
+        for (long t = 0; t < 3 * MetricHistory.MINUTE_MS; t += 250) {
+            history.push(t, 1);
+        }
+        assertEquals(0, history.tierFor(24 * MetricHistory.HOUR_MS).bucketMs());
+        assertEquals(3 * MetricHistory.MINUTE_MS - 250, history.latestTime());
+    }
+
+    @Test
+    void coarserTierOnceRawNoLongerCoversTheSpan() {
+        MetricHistory history = new MetricHistory();
+        long t = 0;
+        for (int i = 0; i < MetricHistory.RAW_CAPACITY * 2; i++, t += 250) {
+            history.push(t, i);
+        }
+        MetricHistory.Tier raw = history.tierFor(60_000);
+        assertEquals(MetricHistory.RAW_CAPACITY, raw.size());
+        assertEquals(t - 250, raw.time(raw.size() - 1));
+        assertEquals(MetricHistory.MINUTE_MS, history.tierFor(MetricHistory.HOUR_MS).bucketMs());
+        assertEquals(MetricHistory.HOUR_MS, history.tierFor(7 * 24 * MetricHistory.HOUR_MS).bucketMs());
+        assertEquals(0, history.oldestTime());
+        assertSame(raw, history.tierFor(60_000));
+    }
+}
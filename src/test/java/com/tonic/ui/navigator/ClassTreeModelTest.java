@@ -0,0 +1,148 @@
+package com.tonic.ui.navigator;
+
+import com.tonic.model.ClassEntryModel;
+import com.tonic.model.MethodEntryModel;
+import com.tonic.model.ProjectModel;
+import com.tonic.parser.ClassFile;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ClassTreeModelTest {
+
+    private final List<ClassEntryModel> classes = new ArrayList<>();
+    private final ProjectModel project = mock(ProjectModel.class);
+    private final ClassTreeModel model = new ClassTreeModel();
+
+    ClassTreeModelTest() {
+        when(project.getProjectName()).thenReturn("test");
+        when(project.getAllClasses()).thenAnswer(inv -> new ArrayList<>(classes));
+        when(project.getAllResources()).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    void singleChildPackageChainsAreCompacted() {
+        classes.add(classEntry("com/acme/core/A"));
+        model.loadProject(project);
+
+        assertEquals(List.of("com.acme.core"), packagesUnder(model.getRoot()));
+    }
+
+    @Test
+    void branchingPackageSplitsAndRemovingItMergesBack() {
+        classes.add(classEntry("com/acme/core/A"));
+        model.loadProject(project);
+
+        ClassEntryModel util = classEntry("com/acme/util/B");
+        classes.add(util);
+        assertFalse(model.syncProject(project), "one added class is an incremental insert");
+        TreeNode acme = (TreeNode) model.getChild(model.getRoot(), 0);
+        assertEquals(List.of("com.acme"), packagesUnder(model.getRoot()));
+        assertEquals(List.of("com.acme.core", "com.acme.util"), packagesUnder(acme));
+
+        classes.remove(util);
+        model.syncProject(project);
+        assertEquals(List.of("com.acme.core"), packagesUnder(model.getRoot()));
+        assertNull(model.findClassNode("com/acme/util/B"));
+    }
+
+    @Test
+    void filterKeyMatchesClassNamesAndMethodNames() {
+        NavigatorNode.ClassNode parser = new NavigatorNode.ClassNode(classEntry("p/Parser", "readToken"));
+        NavigatorNode.ClassNode lexer = new NavigatorNode.ClassNode(classEntry("p/Lexer", "parseNumber"));
+        NavigatorNode.ClassNode other = new NavigatorNode.ClassNode(classEntry("p/Other", "run"));
+
+        NavigatorNode.ClassNode[] nodes = {parser, lexer, other};
+        ClassFilterIndex.prepare(nodes);
+        ClassFilterIndex.Match match = ClassFilterIndex.match(nodes, "pars");
+
+        assertTrue(match.matched.get(0));
+        assertTrue(match.nameMatched.get(0));
+        assertTrue(match.matched.get(1), "method name hit");
+        assertFalse(match.nameMatched.get(1));
+        assertFalse(match.matched.get(2));
+    }
+
+    @Test
+    void filterKeyCoversConstructorsAndFollowsClassFileEdits() {
+        ClassEntryModel entry = classEntry("p/Widget", "draw");
+        MethodEntryModel ctor = mock(MethodEntryModel.class);
+        when(ctor.getName()).thenReturn("<init>");
+        when(entry.getConstructors()).thenReturn(List.of(ctor));
+        NavigatorNode.ClassNode[] nodes = {new NavigatorNode.ClassNode(entry)};
+
+        ClassFilterIndex.prepare(nodes);
+        assertTrue(ClassFilterIndex.match(nodes, "<init>").matched.get(0));
+        assertFalse(ClassFilterIndex.match(nodes, "resize").matched.get(0));
+
+        MethodEntryModel resize = mock(MethodEntryModel.class);
+        when(resize.getName()).thenReturn("resize");
+        when(entry.getMethods()).thenReturn(List.of(resize));
+        when(entry.getClassFile()).thenReturn(mock(ClassFile.class));
+        ClassFilterIndex.prepare(nodes);
+        assertTrue(ClassFilterIndex.match(nodes, "resize").matched.get(0), "key rebuilt for the new class file");
+    }
+
+    @Test
+    void classAddedWhileMatchingIsCoveredBeforeCallback() throws Exception {
+        classes.add(classEntry("p/Alpha"));
+        SwingUtilities.invokeAndWait(() -> model.loadProject(project));
+
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger shownAtCallback = new AtomicInteger(-1);
+        CountDownLatch applied = new CountDownLatch(1);
+        // Both on one EDT turn, so the worker's done() sees a snapshot that predates the new class
+        SwingUtilities.invokeAndWait(() -> {
+            model.setFilter("alpha", () -> {
+                calls.incrementAndGet();
+                shownAtCallback.set(model.isShown(model.findClassNode("p/Alphabet")) ? 1 : 0);
+                applied.countDown();
+            });
+            classes.add(classEntry("p/Alphabet"));
+            model.syncProject(project);
+        });
+
+        assertTrue(applied.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        SwingUtilities.invokeAndWait(() -> { });
+        assertEquals(1, calls.get());
+        assertEquals(1, shownAtCallback.get(), "callback ran before the re-match was applied");
+    }
+
+    private static List<String> packagesUnder(Object parent) {
+        TreeNode node = (TreeNode) parent;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (node.getChildAt(i) instanceof NavigatorNode.PackageNode) {
+                names.add(((NavigatorNode.PackageNode) node.getChildAt(i)).getPackageName());
+            }
+        }
+        return names;
+    }
+
+    private static ClassEntryModel classEntry(String className, String... methodNames) {
+        ClassEntryModel entry = mock(ClassEntryModel.class);
+        int slash = className.lastIndexOf('/');
+        when(entry.getClassName()).thenReturn(className);
+        when(entry.getSimpleName()).thenReturn(className.substring(slash + 1));
+        when(entry.getPackageName()).thenReturn(slash < 0 ? "" : className.substring(0, slash).replace('/', '.'));
+        List<MethodEntryModel> methods = new ArrayList<>();
+        for (String name : methodNames) {
+            MethodEntryModel method = mock(MethodEntryModel.class);
+            when(method.getName()).thenReturn(name);
+            methods.add(method);
+        }
+        when(entry.getMethods()).thenReturn(methods);
+        return entry;
+    }
+}